@@ -1,21 +1,32 @@
 package com.posgateway.aml.config;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.posgateway.aml.service.cache.AerospikeCacheService;
+import com.posgateway.aml.service.cache.CacheInvalidationBus;
+import com.posgateway.aml.service.cache.TieredCacheManager;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
-import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.List;
+
 /**
  * Cache Configuration
- * Enables caching for model configs and aggregate features
+ * Enables caching for model configs, aggregate features and screening results.
+ * Caches are bounded Caffeine caches, optionally backed by Aerospike (see
+ * TieredCacheProperties for the per-cache policies).
  */
 @Configuration
 @EnableCaching
 public class CacheConfig {
 
     @Bean
-    public CacheManager cacheManager() {
-        return new ConcurrentMapCacheManager("modelConfig", "aggregateFeatures", "riskScores", "screeningResults");
+    public CacheManager cacheManager(TieredCacheProperties properties, AerospikeCacheService aerospikeCacheService,
+            ObjectMapper objectMapper, CacheInvalidationBus invalidationBus, MeterRegistry meterRegistry) {
+        return new TieredCacheManager(
+                List.of("modelConfig", "aggregateFeatures", "riskScores", "screeningResults"),
+                properties, aerospikeCacheService, objectMapper, invalidationBus, meterRegistry);
     }
 }
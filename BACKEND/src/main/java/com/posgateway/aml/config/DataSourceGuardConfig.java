@@ -0,0 +1,70 @@
+package com.posgateway.aml.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+
+/**
+ * DataSource Guard Configuration
+ * Wraps the application DataSource in a ConnectionPermitDataSource when the ultra
+ * executors run on virtual threads (or when ultra.throughput.db.guard.enabled=true).
+ *
+ * Permits default to the Hikari maximum pool size, so callers beyond the pool size
+ * wait on the semaphore rather than inside Hikari.
+ */
+@Configuration
+public class DataSourceGuardConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(DataSourceGuardConfig.class);
+
+    @Bean
+    public static BeanPostProcessor connectionPermitDataSourcePostProcessor(Environment environment) {
+        boolean virtualMode = UltraHighThroughputConfig.MODE_VIRTUAL.equalsIgnoreCase(
+                environment.getProperty("ultra.throughput.executor.mode", "platform"));
+        boolean enabled = environment.getProperty("ultra.throughput.db.guard.enabled", Boolean.class, virtualMode);
+        int poolSize = environment.getProperty("spring.datasource.hikari.maximum-pool-size", Integer.class, 10);
+        int permits = environment.getProperty("ultra.throughput.db.guard.permits", Integer.class, poolSize);
+        long timeoutMs = environment.getProperty("ultra.throughput.db.guard.timeout.ms", Long.class,
+                environment.getProperty("spring.datasource.hikari.connection-timeout", Long.class, 30000L));
+
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!enabled || !(bean instanceof DataSource) || bean instanceof ConnectionPermitDataSource) {
+                    return bean;
+                }
+                logger.info("Guarding DataSource '{}' with {} connection permits (timeout {}ms)",
+                        beanName, permits, timeoutMs);
+                return new ConnectionPermitDataSource((DataSource) bean, permits, timeoutMs);
+            }
+        };
+    }
+
+    /**
+     * Export permit usage when the guard is active
+     */
+    @Bean
+    public MeterBinder connectionPermitMetrics(ObjectProvider<DataSource> dataSources) {
+        return registry -> dataSources.orderedStream()
+                .filter(ConnectionPermitDataSource.class::isInstance)
+                .map(ConnectionPermitDataSource.class::cast)
+                .forEach(dataSource -> {
+                    Gauge.builder("aml_db_connection_permits_available", dataSource,
+                                    ConnectionPermitDataSource::getAvailablePermits)
+                            .description("Database connection permits not currently held")
+                            .register(registry);
+                    Gauge.builder("aml_db_connection_permit_waiters", dataSource,
+                                    ConnectionPermitDataSource::getQueueLength)
+                            .description("Callers waiting for a database connection permit")
+                            .register(registry);
+                });
+    }
+}
@@ -1,6 +1,7 @@
 package com.posgateway.aml.config;
 
 import com.posgateway.aml.service.psp.QuotaService;
+import com.posgateway.aml.service.ratelimit.RateLimitDecision;
 import jakarta.servlet.*;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -33,8 +34,18 @@ public class RateLimitingFilter implements Filter {
             String pspCode = httpRequest.getHeader("X-PSP-CODE");
 
             if (pspCode != null && !pspCode.isEmpty()) {
-                if (!quotaService.isRequestAllowed(pspCode)) {
+                RateLimitDecision decision = quotaService.checkQuota(pspCode,
+                        httpRequest.getHeader("X-MERCHANT-ID"));
+                if (decision.getLimit() > 0) {
+                    httpResponse.setHeader("X-RateLimit-Limit", String.valueOf(decision.getLimit()));
+                    httpResponse.setHeader("X-RateLimit-Remaining", String.valueOf(decision.getRemaining()));
+                    httpResponse.setHeader("X-RateLimit-Reset", String.valueOf(decision.getResetSeconds()));
+                }
+                if (!decision.isAllowed()) {
                     log.warn("Rate limit exceeded for PSP: {}", pspCode);
+                    if (decision.getRetryAfterSeconds() > 0) {
+                        httpResponse.setHeader("Retry-After", String.valueOf(decision.getRetryAfterSeconds()));
+                    }
                     httpResponse.setStatus(429); // Too Many Requests
                     httpResponse.getWriter().write("Quota Exceeded");
                     return;
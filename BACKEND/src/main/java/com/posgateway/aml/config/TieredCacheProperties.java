@@ -0,0 +1,103 @@
+package com.posgateway.aml.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Tiered Cache Configuration Properties
+ * Per-cache policies for the Caffeine (L1) / Aerospike (L2) cache manager.
+ *
+ * Example: cache.tiered.specs.screeningResults.maximum-size=50000
+ */
+@Component
+@ConfigurationProperties(prefix = "cache.tiered")
+public class TieredCacheProperties {
+
+    /** Master switch for the Aerospike tier (per-cache l2 must also be on) */
+    private boolean l2Enabled = true;
+
+    /** Aerospike set name prefix; the cache name is appended */
+    private String l2SetPrefix = "cache_";
+
+    private Map<String, Spec> specs = new LinkedHashMap<>();
+
+    public boolean isL2Enabled() {
+        return l2Enabled;
+    }
+
+    public void setL2Enabled(boolean l2Enabled) {
+        this.l2Enabled = l2Enabled;
+    }
+
+    public String getL2SetPrefix() {
+        return l2SetPrefix;
+    }
+
+    public void setL2SetPrefix(String l2SetPrefix) {
+        this.l2SetPrefix = l2SetPrefix;
+    }
+
+    public Map<String, Spec> getSpecs() {
+        return specs;
+    }
+
+    public void setSpecs(Map<String, Spec> specs) {
+        this.specs = specs;
+    }
+
+    /**
+     * Policy of a single cache
+     */
+    public static class Spec {
+        private long maximumSize = 10_000;
+        private long expireAfterWriteSeconds = 600;
+        /** Reload entries from L2 in the background after this age (0 = off, needs l2) */
+        private long refreshAfterWriteSeconds = 0;
+        private boolean l2 = false;
+        /** Aerospike TTL (0 = same as expireAfterWriteSeconds) */
+        private int l2TtlSeconds = 0;
+
+        public long getMaximumSize() {
+            return maximumSize;
+        }
+
+        public void setMaximumSize(long maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+
+        public long getExpireAfterWriteSeconds() {
+            return expireAfterWriteSeconds;
+        }
+
+        public void setExpireAfterWriteSeconds(long expireAfterWriteSeconds) {
+            this.expireAfterWriteSeconds = expireAfterWriteSeconds;
+        }
+
+        public long getRefreshAfterWriteSeconds() {
+            return refreshAfterWriteSeconds;
+        }
+
+        public void setRefreshAfterWriteSeconds(long refreshAfterWriteSeconds) {
+            this.refreshAfterWriteSeconds = refreshAfterWriteSeconds;
+        }
+
+        public boolean isL2() {
+            return l2;
+        }
+
+        public void setL2(boolean l2) {
+            this.l2 = l2;
+        }
+
+        public int getL2TtlSeconds() {
+            return l2TtlSeconds;
+        }
+
+        public void setL2TtlSeconds(int l2TtlSeconds) {
+            this.l2TtlSeconds = l2TtlSeconds;
+        }
+    }
+}
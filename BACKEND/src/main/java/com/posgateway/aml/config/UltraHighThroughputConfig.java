@@ -1,8 +1,11 @@
 package com.posgateway.aml.config;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
@@ -12,11 +15,20 @@ import java.util.concurrent.ThreadPoolExecutor;
 /**
  * Ultra High Throughput Configuration
  * Optimized for 30,000+ concurrent requests
+ *
+ * ultra.throughput.executor.mode selects how the ultra executors run tasks:
+ * - platform - bounded platform thread pools (default)
+ * - virtual  - one virtual thread per task, capped by ultra.throughput.virtual.concurrency.limit;
+ *              requires a Java 21+ runtime and falls back to platform pools otherwise
  */
 @Configuration
 @EnableAsync
 public class UltraHighThroughputConfig {
 
+    private static final Logger logger = LoggerFactory.getLogger(UltraHighThroughputConfig.class);
+
+    static final String MODE_VIRTUAL = "virtual";
+
     @Value("${ultra.throughput.core.pool.size:500}")
     private int corePoolSize;
 
@@ -26,42 +38,28 @@ public class UltraHighThroughputConfig {
     @Value("${ultra.throughput.queue.capacity:10000}")
     private int queueCapacity;
 
+    @Value("${ultra.throughput.executor.mode:platform}")
+    private String executorMode;
+
+    @Value("${ultra.throughput.virtual.concurrency.limit:30000}")
+    private int virtualConcurrencyLimit;
+
     /**
      * Ultra-high throughput executor for transaction processing
      * Designed for 30K+ concurrent requests
      */
     @Bean(name = "ultraTransactionExecutor")
     public Executor ultraTransactionExecutor() {
-        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(corePoolSize);
-        executor.setMaxPoolSize(maxPoolSize);
-        executor.setQueueCapacity(queueCapacity);
-        executor.setThreadNamePrefix("ultra-txn-");
-        executor.setWaitForTasksToCompleteOnShutdown(true);
-        executor.setAwaitTerminationSeconds(120);
-        
-        // Rejected execution policy: Caller runs for backpressure
-        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
-        
-        executor.initialize();
-        return executor;
+        return createExecutor("ultra-txn-", corePoolSize, maxPoolSize);
     }
 
     /**
      * Feature extraction executor for parallel processing
+     * Also runs the blocking repository fan-out of OptimizedFeatureExtractionService
      */
     @Bean(name = "ultraFeatureExtractionExecutor")
     public Executor ultraFeatureExtractionExecutor() {
-        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(corePoolSize / 2);
-        executor.setMaxPoolSize(maxPoolSize / 2);
-        executor.setQueueCapacity(queueCapacity);
-        executor.setThreadNamePrefix("ultra-feature-");
-        executor.setWaitForTasksToCompleteOnShutdown(true);
-        executor.setAwaitTerminationSeconds(120);
-        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
-        executor.initialize();
-        return executor;
+        return createExecutor("ultra-feature-", corePoolSize / 2, maxPoolSize / 2);
     }
 
     /**
@@ -69,16 +67,41 @@ public class UltraHighThroughputConfig {
      */
     @Bean(name = "ultraScoringExecutor")
     public Executor ultraScoringExecutor() {
+        return createExecutor("ultra-scoring-", corePoolSize, maxPoolSize);
+    }
+
+    private Executor createExecutor(String threadNamePrefix, int core, int max) {
+        if (MODE_VIRTUAL.equalsIgnoreCase(executorMode)) {
+            if (virtualThreadsSupported()) {
+                SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(threadNamePrefix);
+                executor.setVirtualThreads(true);
+                // Submitters block once the limit is reached (backpressure, like CallerRunsPolicy)
+                executor.setConcurrencyLimit(virtualConcurrencyLimit);
+                executor.setTaskTerminationTimeout(120_000);
+                logger.info("Executor {} using virtual threads (concurrency limit {})",
+                        threadNamePrefix, virtualConcurrencyLimit);
+                return executor;
+            }
+            logger.warn("Virtual thread mode requested but Java {} does not support it - "
+                    + "using platform thread pool for {}", Runtime.version().feature(), threadNamePrefix);
+        }
+
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(corePoolSize);
-        executor.setMaxPoolSize(maxPoolSize);
+        executor.setCorePoolSize(core);
+        executor.setMaxPoolSize(max);
         executor.setQueueCapacity(queueCapacity);
-        executor.setThreadNamePrefix("ultra-scoring-");
+        executor.setThreadNamePrefix(threadNamePrefix);
         executor.setWaitForTasksToCompleteOnShutdown(true);
         executor.setAwaitTerminationSeconds(120);
+
+        // Rejected execution policy: Caller runs for backpressure
         executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+
         executor.initialize();
         return executor;
     }
-}
 
+    static boolean virtualThreadsSupported() {
+        return Runtime.version().feature() >= 21;
+    }
+}
@@ -8,11 +8,12 @@ import com.posgateway.aml.entity.rules.RuleDefinition;
 import com.posgateway.aml.repository.UserRepository;
 import com.posgateway.aml.repository.rules.RuleDefinitionRepository;
 import com.posgateway.aml.service.ai.AiRuleGeneratorService;
-import com.posgateway.aml.service.rules.DroolsRulesService;
 import com.posgateway.aml.service.rules.DynamicRuleConverter;
+import com.posgateway.aml.service.rules.RuleDefinitionChangedEvent;
 import com.posgateway.aml.service.security.PspIsolationService;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -33,7 +34,7 @@ public class RulesController {
 
     private final RuleDefinitionRepository ruleRepository;
     private final AiRuleGeneratorService aiService;
-    private final DroolsRulesService droolsService;
+    private final ApplicationEventPublisher eventPublisher;
     private final DynamicRuleConverter converter;
     private final PspIsolationService pspIsolationService;
     private final UserRepository userRepository;
@@ -43,13 +44,13 @@ public class RulesController {
     public RulesController(
             RuleDefinitionRepository ruleRepository,
             AiRuleGeneratorService aiService,
-            DroolsRulesService droolsService,
+            ApplicationEventPublisher eventPublisher,
             DynamicRuleConverter converter,
             PspIsolationService pspIsolationService,
             UserRepository userRepository) {
         this.ruleRepository = ruleRepository;
         this.aiService = aiService;
-        this.droolsService = droolsService;
+        this.eventPublisher = eventPublisher;
         this.converter = converter;
         this.pspIsolationService = pspIsolationService;
         this.userRepository = userRepository;
@@ -116,7 +117,7 @@ public class RulesController {
         RuleDefinition saved = ruleRepository.save(rule);
         
         // Auto-reload rules engine
-        droolsService.reloadRules();
+        eventPublisher.publishEvent(new RuleDefinitionChangedEvent(this, saved.getId()));
         
         return ResponseEntity.ok(saved);
     }
@@ -139,7 +140,7 @@ public class RulesController {
 
     @PostMapping("/reload")
     public ResponseEntity<String> reloadRulesEngine() {
-        droolsService.reloadRules();
+        eventPublisher.publishEvent(new RuleDefinitionChangedEvent(this, null));
         return ResponseEntity.ok("Rules engine reloaded successfully.");
     }
 
@@ -185,7 +186,7 @@ public class RulesController {
         existing.setUpdatedBy(currentUser.getId());
 
         RuleDefinition saved = ruleRepository.save(existing);
-        droolsService.reloadRules();
+        eventPublisher.publishEvent(new RuleDefinitionChangedEvent(this, id));
         
         return ResponseEntity.ok(saved);
     }
@@ -221,7 +222,7 @@ public class RulesController {
         existing.setEnabled(true);
         existing.setUpdatedBy(currentUser.getId());
         RuleDefinition saved = ruleRepository.save(existing);
-        droolsService.reloadRules();
+        eventPublisher.publishEvent(new RuleDefinitionChangedEvent(this, id));
         return ResponseEntity.ok(saved);
     }
 
@@ -256,7 +257,7 @@ public class RulesController {
         existing.setEnabled(false);
         existing.setUpdatedBy(currentUser.getId());
         RuleDefinition saved = ruleRepository.save(existing);
-        droolsService.reloadRules();
+        eventPublisher.publishEvent(new RuleDefinitionChangedEvent(this, id));
         return ResponseEntity.ok(saved);
     }
 
@@ -312,7 +313,7 @@ public class RulesController {
         }
 
         ruleRepository.deleteById(id);
-        droolsService.reloadRules();
+        eventPublisher.publishEvent(new RuleDefinitionChangedEvent(this, id));
         return ResponseEntity.ok().build();
     }
 }
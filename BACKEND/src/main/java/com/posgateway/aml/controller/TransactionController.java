@@ -29,6 +29,7 @@ import com.posgateway.aml.service.security.PspIsolationService;
 import com.posgateway.aml.mapper.FraudDetectionMapper;
 import com.posgateway.aml.repository.TransactionRepository;
 import java.util.List;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
@@ -68,6 +69,9 @@ public class TransactionController {
     @Value("${app.transaction.asyncEnabled:true}")
     private boolean asyncEnabled;
 
+    @Value("${transactions.query.default.window.days:0}")
+    private int defaultWindowDays;
+
     @Autowired
     public TransactionController(TransactionIngestionService ingestionService,
             BatchTransactionIngestionService batchIngestionService,
@@ -119,20 +123,19 @@ public class TransactionController {
             // Convert DTO to service request
             TransactionIngestionService.TransactionRequest request = convertToServiceRequest(requestDTO);
 
-            // Step 1: Ingest transaction (store in database)
-            TransactionEntity transaction = ingestionService.ingestTransaction(request);
-
             // Check concurrent request limit
             int current = currentConcurrentRequests.incrementAndGet();
             try {
                 if (current > maxConcurrentRequests) {
+                    currentConcurrentRequests.decrementAndGet();
                     logger.warn("Max concurrent requests ({}) exceeded, current: {}",
                             maxConcurrentRequests, current);
-                    // Use buffering service if enabled
-                    if (ultraThroughputEnabled && requestBufferingService.hasCapacity()) {
-                        requestBufferingService.addRequest(requestDTO);
+                    // Use buffering service if enabled; buffered requests are ingested and
+                    // scored by RequestBufferDrainService
+                    request.setRequestId(UUID.randomUUID().toString());
+                    if (ultraThroughputEnabled && requestBufferingService.addRequest(request)) {
                         return CompletableFuture.completedFuture(
-                                ResponseEntity.accepted().build()); // 202 Accepted
+                                ResponseEntity.accepted().body(createAcceptedResponse(request.getRequestId())));
                     }
                     return CompletableFuture.completedFuture(
                             ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
@@ -140,6 +143,9 @@ public class TransactionController {
                                             "Service temporarily unavailable, too many concurrent requests")));
                 }
 
+                // Step 1: Ingest transaction (store in database)
+                TransactionEntity transaction = ingestionService.ingestTransaction(request);
+
                 // Step 2: Process through fraud detection pipeline (ultra-high throughput if
                 // enabled)
                 // Optimize orchestrator selection with early returns and cached flags
@@ -254,7 +260,7 @@ public class TransactionController {
             }
 
             // Wait for all futures
-            return CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+            return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
                     .thenApply(v -> {
                         List<FraudDetectionResponseDTO> results = futures.stream()
                                 .map(CompletableFuture::join)
@@ -288,6 +294,14 @@ public class TransactionController {
         return request;
     }
 
+    private FraudDetectionResponseDTO createAcceptedResponse(String requestId) {
+        FraudDetectionResponseDTO dto = new FraudDetectionResponseDTO();
+        dto.setAction("QUEUED");
+        dto.setRequestId(requestId);
+        dto.setReasons(java.util.List.of("Buffered for scoring - result follows in a TRANSACTION_SCORED webhook"));
+        return dto;
+    }
+
     private FraudDetectionResponseDTO createErrorResponse(String message) {
         FraudDetectionResponseDTO dto = new FraudDetectionResponseDTO();
         dto.setAction("ERROR");
@@ -313,13 +327,18 @@ public class TransactionController {
      * 
      * Security: PSP users can only see their own PSP's transactions.
      * Platform Administrators can see all transactions or filter by PSP.
+     * start/end (ISO date-time) bound txn_ts, so only the partitions of the window are
+     * scanned. Without them every transaction is listed, unless
+     * transactions.query.default.window.days (0 = unbounded) sets a default window.
      */
     @GetMapping
     @PreAuthorize("hasAnyRole('ADMIN', 'COMPLIANCE_OFFICER', 'ANALYST', 'PSP_ADMIN', 'PSP_ANALYST', 'VIEWER')")
     public ResponseEntity<org.springframework.data.domain.Page<TransactionEntity>> getAllTransactions(
             @RequestParam(required = false, defaultValue = "0") int page,
             @RequestParam(required = false, defaultValue = "25") int size,
-            @RequestParam(required = false) Long pspId) {
+            @RequestParam(required = false) Long pspId,
+            @RequestParam(required = false) @org.springframework.format.annotation.DateTimeFormat(iso = org.springframework.format.annotation.DateTimeFormat.ISO.DATE_TIME) java.time.LocalDateTime start,
+            @RequestParam(required = false) @org.springframework.format.annotation.DateTimeFormat(iso = org.springframework.format.annotation.DateTimeFormat.ISO.DATE_TIME) java.time.LocalDateTime end) {
         logger.info("Get all transactions request (page: {}, size: {}, pspId: {})", page, size, pspId);
         try {
             int safeSize = Math.max(1, Math.min(size, 100)); // Max 100 per page
@@ -337,8 +356,15 @@ public class TransactionController {
                 spec = spec.and((root, query, cb) -> cb.equal(root.get("pspId"), sanitizedPspId));
             }
             
-            // Filter out null timestamps
-            spec = spec.and((root, query, cb) -> cb.isNotNull(root.get("txnTs")));
+            // Bound txn_ts so only the partitions of the window are scanned (and counted)
+            java.time.LocalDateTime from = start != null ? start
+                    : defaultWindowDays > 0 ? java.time.LocalDateTime.now().minusDays(defaultWindowDays) : null;
+            if (from != null) {
+                spec = spec.and((root, query, cb) -> cb.greaterThanOrEqualTo(root.get("txnTs"), from));
+            }
+            if (end != null) {
+                spec = spec.and((root, query, cb) -> cb.lessThanOrEqualTo(root.get("txnTs"), end));
+            }
             
             // Create Pageable with sorting
             org.springframework.data.domain.Pageable pageable = 
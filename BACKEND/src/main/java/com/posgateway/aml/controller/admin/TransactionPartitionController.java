@@ -0,0 +1,104 @@
+package com.posgateway.aml.controller.admin;
+
+import com.posgateway.aml.service.partition.TransactionPartitionMigrationService;
+import com.posgateway.aml.service.partition.TransactionPartitionService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Partitioned transactions store: partition status, maintenance and the online migration
+ * (start -> copy -> verify -> cutover, see TransactionPartitionMigrationService)
+ */
+@RestController
+@RequestMapping("/admin/transaction-partitions")
+@PreAuthorize("hasRole('ADMIN')")
+public class TransactionPartitionController {
+
+    private final TransactionPartitionService partitionService;
+    private final TransactionPartitionMigrationService migrationService;
+
+    public TransactionPartitionController(TransactionPartitionService partitionService,
+            TransactionPartitionMigrationService migrationService) {
+        this.partitionService = partitionService;
+        this.migrationService = migrationService;
+    }
+
+    /**
+     * GET /api/v1/admin/transaction-partitions
+     */
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> status() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("partitionedTable", partitionService.partitionedTable());
+        response.put("partitions", partitionService.listPartitions());
+        response.put("migration", migrationService.getState());
+        response.put("copyRunningOnThisNode", migrationService.isCopying());
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Run partition maintenance now (create upcoming partitions, apply retention)
+     * POST /api/v1/admin/transaction-partitions/maintain
+     */
+    @PostMapping("/maintain")
+    public ResponseEntity<Map<String, Object>> maintain() {
+        partitionService.maintain();
+        return status();
+    }
+
+    /**
+     * Install the sync trigger and start (or resume) copying the existing rows
+     * POST /api/v1/admin/transaction-partitions/migration/start
+     */
+    @PostMapping("/migration/start")
+    public ResponseEntity<TransactionPartitionMigrationService.MigrationState> startMigration() {
+        TransactionPartitionMigrationService.MigrationState state = inState(migrationService::start);
+        migrationService.copyAsync();
+        return ResponseEntity.accepted().body(state);
+    }
+
+    /**
+     * Compare row counts and content checksums of the old and the partitioned table
+     * GET /api/v1/admin/transaction-partitions/migration/verify
+     */
+    @GetMapping("/migration/verify")
+    public ResponseEntity<Map<String, Object>> verifyMigration() {
+        return ResponseEntity.ok(migrationService.verify());
+    }
+
+    /**
+     * Swap the partitioned table in place of transactions
+     * POST /api/v1/admin/transaction-partitions/migration/cutover
+     */
+    @PostMapping("/migration/cutover")
+    public ResponseEntity<TransactionPartitionMigrationService.MigrationState> cutover() {
+        return ResponseEntity.ok(inState(migrationService::cutover));
+    }
+
+    /**
+     * Abandon the migration before cutover
+     * POST /api/v1/admin/transaction-partitions/migration/abort
+     */
+    @PostMapping("/migration/abort")
+    public ResponseEntity<TransactionPartitionMigrationService.MigrationState> abortMigration() {
+        return ResponseEntity.ok(inState(migrationService::abort));
+    }
+
+    private static <T> T inState(Supplier<T> action) {
+        try {
+            return action.get();
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
+        }
+    }
+}
@@ -3,8 +3,10 @@ package com.posgateway.aml.controller.analytics;
 import com.posgateway.aml.entity.Alert;
 import com.posgateway.aml.repository.AlertRepository;
 import com.posgateway.aml.repository.ComplianceCaseRepository;
-import com.posgateway.aml.repository.MerchantRepository;
 import com.posgateway.aml.repository.TransactionRepository;
+import com.posgateway.aml.service.analytics.AnalyticsViewService;
+import com.posgateway.aml.service.monitoring.TransactionRollupService;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -25,21 +27,25 @@ import java.util.Map;
 @RequestMapping("/dashboard")
 public class DashboardController {
 
-    private final MerchantRepository merchantRepository;
     private final ComplianceCaseRepository caseRepository;
     private final com.posgateway.aml.repository.UserRepository userRepository;
     private final TransactionRepository transactionRepository;
     private final AlertRepository alertRepository;
+    private final AnalyticsViewService analyticsViewService;
+    private final TransactionRollupService rollupService;
 
-    public DashboardController(MerchantRepository merchantRepository, ComplianceCaseRepository caseRepository,
+    public DashboardController(ComplianceCaseRepository caseRepository,
             com.posgateway.aml.repository.UserRepository userRepository,
             TransactionRepository transactionRepository,
-            AlertRepository alertRepository) {
-        this.merchantRepository = merchantRepository;
+            AlertRepository alertRepository,
+            AnalyticsViewService analyticsViewService,
+            TransactionRollupService rollupService) {
         this.caseRepository = caseRepository;
         this.userRepository = userRepository;
         this.transactionRepository = transactionRepository;
         this.alertRepository = alertRepository;
+        this.analyticsViewService = analyticsViewService;
+        this.rollupService = rollupService;
     }
 
     private com.posgateway.aml.entity.User getCurrentUser() {
@@ -56,23 +62,16 @@ public class DashboardController {
         com.posgateway.aml.entity.User user = getCurrentUser();
         Long pspId = (user != null && user.getPsp() != null) ? user.getPsp().getPspId() : null;
 
-        if (pspId != null) {
-            stats.put("totalMerchants", merchantRepository.countByPspPspId(pspId));
-            stats.put("activeMerchants", merchantRepository.countByPspPspIdAndStatus(pspId, "ACTIVE"));
-            stats.put("pendingScreening", merchantRepository.countByPspPspIdAndStatus(pspId, "PENDING_SCREENING"));
-
-            stats.put("openCases", caseRepository.countByPspIdAndStatus(pspId, com.posgateway.aml.model.CaseStatus.NEW)
-                    + caseRepository.countByPspIdAndStatus(pspId, com.posgateway.aml.model.CaseStatus.ASSIGNED)
-                    + caseRepository.countByPspIdAndStatus(pspId, com.posgateway.aml.model.CaseStatus.IN_PROGRESS));
-        } else {
-            stats.put("totalMerchants", merchantRepository.count());
-            stats.put("activeMerchants", merchantRepository.countByStatus("ACTIVE"));
-            stats.put("pendingScreening", merchantRepository.countByStatus("PENDING_SCREENING"));
+        // Read from the materialized analytics views (pspId null = all PSPs)
+        Map<String, Long> merchantsByStatus = analyticsViewService.getMerchantCountsByStatus(pspId);
+        stats.put("totalMerchants", merchantsByStatus.values().stream().mapToLong(Long::longValue).sum());
+        stats.put("activeMerchants", merchantsByStatus.getOrDefault("ACTIVE", 0L));
+        stats.put("pendingScreening", merchantsByStatus.getOrDefault("PENDING_SCREENING", 0L));
 
-            stats.put("openCases", caseRepository.countByStatus(com.posgateway.aml.model.CaseStatus.NEW)
-                    + caseRepository.countByStatus(com.posgateway.aml.model.CaseStatus.ASSIGNED)
-                    + caseRepository.countByStatus(com.posgateway.aml.model.CaseStatus.IN_PROGRESS));
-        }
+        Map<String, Long> openCasesByStatus = analyticsViewService.getOpenCaseCountsByStatus(pspId);
+        stats.put("openCases", openCasesByStatus.getOrDefault(com.posgateway.aml.model.CaseStatus.NEW.name(), 0L)
+                + openCasesByStatus.getOrDefault(com.posgateway.aml.model.CaseStatus.ASSIGNED.name(), 0L)
+                + openCasesByStatus.getOrDefault(com.posgateway.aml.model.CaseStatus.IN_PROGRESS.name(), 0L));
         stats.put("urgentCases", 0L); // Placeholder
 
         return ResponseEntity.ok(stats);
@@ -116,20 +115,13 @@ public class DashboardController {
         Long pspId = (user != null && user.getPsp() != null) ? user.getPsp().getPspId() : null;
 
         Map<String, Long> distribution = new HashMap<>();
+        Map<String, Long> merchantsByRiskLevel = analyticsViewService.getMerchantCountsByRiskLevel(pspId);
         
         // Risk levels to count
         String[] riskLevels = {"LOW", "MEDIUM", "HIGH", "CRITICAL"};
         
         for (String riskLevel : riskLevels) {
-            long count;
-            if (pspId != null) {
-                // PSP-filtered count
-                count = merchantRepository.countByPspPspIdAndRiskLevel(pspId, riskLevel);
-            } else {
-                // Global count
-                count = merchantRepository.countByRiskLevel(riskLevel);
-            }
-            distribution.put(riskLevel, count);
+            distribution.put(riskLevel, merchantsByRiskLevel.getOrDefault(riskLevel, 0L));
         }
         
         return ResponseEntity.ok(distribution);
@@ -145,13 +137,33 @@ public class DashboardController {
         return ResponseEntity.ok(status);
     }
 
+    /**
+     * Case outcome metrics over the last 30 days
+     * GET /api/v1/dashboard/fraud-metrics
+     *
+     * Precision is the share of closed cases confirmed (SAR filed, blocked or rejected),
+     * falsePositives the share cleared. Recall needs missed-fraud labels the case data
+     * does not have, so it is not reported.
+     */
     @GetMapping("/fraud-metrics")
     public ResponseEntity<Map<String, Object>> getFraudMetrics() {
+        com.posgateway.aml.entity.User user = getCurrentUser();
+        Long pspId = (user != null && user.getPsp() != null) ? user.getPsp().getPspId() : null;
+
+        LocalDate today = LocalDate.now();
+        Map<String, Long> closedByStatus = analyticsViewService.getClosedCaseCountsByStatus(pspId,
+                today.minusDays(29), today);
+        long cleared = closedByStatus.getOrDefault(com.posgateway.aml.model.CaseStatus.CLOSED_CLEARED.name(), 0L);
+        long confirmed = closedByStatus.getOrDefault(com.posgateway.aml.model.CaseStatus.CLOSED_SAR_FILED.name(), 0L)
+                + closedByStatus.getOrDefault(com.posgateway.aml.model.CaseStatus.CLOSED_BLOCKED.name(), 0L)
+                + closedByStatus.getOrDefault(com.posgateway.aml.model.CaseStatus.CLOSED_REJECTED.name(), 0L);
+        long closed = cleared + confirmed;
+
         Map<String, Object> metrics = new HashMap<>();
-        metrics.put("precision", "98.5%");
-        metrics.put("recall", "92.1%");
-        metrics.put("f1", "95.2%");
-        metrics.put("falsePositives", "0.4%");
+        metrics.put("precision", closed > 0 ? String.format("%.1f%%", confirmed * 100.0 / closed) : "N/A");
+        metrics.put("falsePositives", closed > 0 ? String.format("%.1f%%", cleared * 100.0 / closed) : "N/A");
+        metrics.put("closedCases", closed);
+        metrics.put("period", "Last 30 days");
         return ResponseEntity.ok(metrics);
     }
 
@@ -168,33 +180,21 @@ public class DashboardController {
         // Calculate date range (inclusive of today)
         // For 7 days: today + 6 previous days = 7 days total
         LocalDateTime now = LocalDateTime.now();
-        LocalDateTime endDate = now.withHour(23).withMinute(59).withSecond(59).plusDays(1); // Exclusive end for query
-        LocalDateTime startDate = now.minusDays(days - 1).withHour(0).withMinute(0).withSecond(0);
+        LocalDate today = now.toLocalDate();
+        LocalDate startDay = today.minusDays(Math.max(days, 1) - 1);
 
-        List<Object[]> results;
-        if (pspId != null) {
-            // Get data filtered by PSP
-            results = transactionRepository.getDailyTransactionCountByPspId(pspId, startDate, endDate);
-        } else {
-            // Admin view - all PSPs
-            results = transactionRepository.getDailyTransactionCountAll(startDate, endDate);
-        }
+        // Past days from the daily volume view, today from the live rollups (pspId null = all PSPs)
+        Map<LocalDate, Long> dateCountMap = new HashMap<>(
+                analyticsViewService.getDailyTransactionCounts(pspId, startDay, today.minusDays(1)));
+        dateCountMap.put(today, rollupService.sum(pspId, today.atStartOfDay(), now).getTotal());
 
         // Build response with labels and data arrays
         List<String> labels = new ArrayList<>();
         List<Long> data = new ArrayList<>();
 
-        // Create a map of date -> count from query results
-        Map<LocalDate, Long> dateCountMap = new HashMap<>();
-        for (Object[] row : results) {
-            LocalDate date = ((java.sql.Date) row[0]).toLocalDate();
-            Long count = ((Number) row[1]).longValue();
-            dateCountMap.put(date, count);
-        }
-
         // Fill in all dates in range (including days with 0 transactions)
-        LocalDate currentDate = startDate.toLocalDate();
-        LocalDate endDateLocal = endDate.toLocalDate();
+        LocalDate currentDate = startDay;
+        LocalDate endDateLocal = today;
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MMM d");
 
         while (!currentDate.isAfter(endDateLocal)) {
@@ -246,18 +246,14 @@ public class DashboardController {
         com.posgateway.aml.entity.User user = getCurrentUser();
         Long pspId = (user != null && user.getPsp() != null) ? user.getPsp().getPspId() : null;
 
+        PageRequest page = PageRequest.of(0, Math.max(1, Math.min(limit, 100)));
         List<com.posgateway.aml.entity.TransactionEntity> transactions;
         if (pspId != null) {
             // Get transactions filtered by PSP
-            transactions = transactionRepository.findByPspIdOrderByTxnTsDesc(pspId);
+            transactions = transactionRepository.findByPspIdAndTxnTsNotNullOrderByTxnTsDesc(pspId, page);
         } else {
             // Admin view - all PSPs
-            transactions = transactionRepository.findAllByOrderByTxnTsDesc();
-        }
-
-        // Limit results
-        if (transactions.size() > limit) {
-            transactions = transactions.subList(0, limit);
+            transactions = transactionRepository.findByTxnTsNotNullOrderByTxnTsDesc(page);
         }
 
         return ResponseEntity.ok(transactions);
@@ -269,40 +265,20 @@ public class DashboardController {
      */
     @GetMapping("/case-aging")
     public ResponseEntity<Map<String, Object>> getCaseAging() {
-        List<com.posgateway.aml.entity.compliance.ComplianceCase> openCases = 
-            caseRepository.findByStatusIn(java.util.List.of(
-                com.posgateway.aml.model.CaseStatus.NEW,
-                com.posgateway.aml.model.CaseStatus.ASSIGNED,
-                com.posgateway.aml.model.CaseStatus.IN_PROGRESS,
-                com.posgateway.aml.model.CaseStatus.PENDING_REVIEW,
-                com.posgateway.aml.model.CaseStatus.ESCALATED
-            ));
-        
+        // Open cases (NEW, ASSIGNED, IN_PROGRESS, PENDING_REVIEW, ESCALATED) by age, all PSPs
+        Map<String, Long> openCasesByAging = analyticsViewService.getOpenCaseCountsByAging(null);
+
         Map<String, Long> agingDistribution = new HashMap<>();
-        agingDistribution.put("0-7", 0L);
-        agingDistribution.put("8-14", 0L);
-        agingDistribution.put("15-30", 0L);
-        agingDistribution.put("31-60", 0L);
-        agingDistribution.put("60+", 0L);
-        
-        for (com.posgateway.aml.entity.compliance.ComplianceCase c : openCases) {
-            int daysOpen = c.getDaysOpen() != null ? c.getDaysOpen() : 0;
-            if (daysOpen <= 7) {
-                agingDistribution.put("0-7", agingDistribution.get("0-7") + 1);
-            } else if (daysOpen <= 14) {
-                agingDistribution.put("8-14", agingDistribution.get("8-14") + 1);
-            } else if (daysOpen <= 30) {
-                agingDistribution.put("15-30", agingDistribution.get("15-30") + 1);
-            } else if (daysOpen <= 60) {
-                agingDistribution.put("31-60", agingDistribution.get("31-60") + 1);
-            } else {
-                agingDistribution.put("60+", agingDistribution.get("60+") + 1);
-            }
+        long totalOpenCases = 0;
+        for (String bucket : new String[] { "0-7", "8-14", "15-30", "31-60", "60+" }) {
+            long count = openCasesByAging.getOrDefault(bucket, 0L);
+            agingDistribution.put(bucket, count);
+            totalOpenCases += count;
         }
         
         Map<String, Object> response = new HashMap<>();
         response.put("agingDistribution", agingDistribution);
-        response.put("totalOpenCases", openCases.size());
+        response.put("totalOpenCases", totalOpenCases);
         
         return ResponseEntity.ok(response);
     }
@@ -1,131 +1,138 @@
 package com.posgateway.aml.controller.analytics;
 
-import com.posgateway.aml.entity.AuditLog;
-import com.posgateway.aml.entity.compliance.ComplianceCase;
-import com.posgateway.aml.entity.compliance.SuspiciousActivityReport;
+import com.posgateway.aml.model.CasePriority;
 import com.posgateway.aml.model.CaseStatus;
 import com.posgateway.aml.model.SarStatus;
-import com.posgateway.aml.repository.AuditLogRepository;
-import com.posgateway.aml.repository.ComplianceCaseRepository;
-import com.posgateway.aml.repository.SuspiciousActivityReportRepository;
+import com.posgateway.aml.service.reporting.CsvExportService;
+import com.posgateway.aml.service.security.PspIsolationService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.List;
+import java.util.concurrent.Callable;
 
-// @RequiredArgsConstructor removed
+/**
+ * CSV exports, streamed page by page (see CsvExportService)
+ * All exports accept start/end (ISO date-time, inclusive), pspId (platform administrators
+ * only; PSP users always get their own PSP) and gzip=true for a .csv.gz download.
+ */
 @RestController
 @RequestMapping("/exports")
 public class ExportController {
 
-    private final ComplianceCaseRepository caseRepository;
-    private final SuspiciousActivityReportRepository sarRepository;
-    private final AuditLogRepository auditLogRepository;
+    private final CsvExportService exportService;
+    private final PspIsolationService pspIsolationService;
 
-    public ExportController(ComplianceCaseRepository caseRepository, SuspiciousActivityReportRepository sarRepository,
-            AuditLogRepository auditLogRepository) {
-        this.caseRepository = caseRepository;
-        this.sarRepository = sarRepository;
-        this.auditLogRepository = auditLogRepository;
+    public ExportController(CsvExportService exportService, PspIsolationService pspIsolationService) {
+        this.exportService = exportService;
+        this.pspIsolationService = pspIsolationService;
     }
 
-    @GetMapping(value = "/cases.csv", produces = "text/csv")
-    public ResponseEntity<byte[]> exportCases(@RequestParam(required = false) String status,
+    @GetMapping(value = "/cases.csv", produces = { "text/csv", "application/gzip" })
+    public ResponseEntity<StreamingResponseBody> exportCases(@RequestParam(required = false) String status,
             @RequestParam(required = false) String priority,
-            @RequestParam(required = false) String merchantId) {
-        List<ComplianceCase> cases = caseRepository.findAll();
-        if (status != null && !status.isEmpty()) {
-            try {
-                CaseStatus cs = CaseStatus.valueOf(status);
-                cases = cases.stream().filter(c -> cs.equals(c.getStatus())).toList();
-            } catch (IllegalArgumentException ignored) {
-            }
-        }
-        if (priority != null && !priority.isEmpty()) {
-            try {
-                com.posgateway.aml.model.CasePriority cp = com.posgateway.aml.model.CasePriority.valueOf(priority);
-                cases = cases.stream().filter(c -> cp.equals(c.getPriority())).toList();
-            } catch (IllegalArgumentException ignored) {
-            }
-        }
-        if (merchantId != null && !merchantId.isEmpty()) {
-            cases = cases.stream().filter(c -> merchantId.equals(c.getMerchantId())).toList();
-        }
+            @RequestParam(required = false) Long merchantId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end,
+            @RequestParam(required = false) Long pspId,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            HttpServletRequest request) {
+        CsvExportService.ExportFilter filter = new CsvExportService.ExportFilter(resolvePspId(pspId), start, end)
+                .where("status", parseEnum(CaseStatus.class, status))
+                .where("priority", parseEnum(CasePriority.class, priority))
+                .where("merchant_id", merchantId);
+        return csvResponse(CsvExportService.ExportType.CASES, filter, gzip, request);
+    }
 
-        StringBuilder sb = new StringBuilder();
-        sb.append("caseReference,status,priority,merchantId,assignedTo,createdAt,updatedAt\n");
-        for (ComplianceCase c : cases) {
-            sb.append(safe(c.getCaseReference())).append(",")
-                    .append(safe(c.getStatus() != null ? c.getStatus().name() : null)).append(",")
-                    .append(safe(c.getPriority() != null ? c.getPriority().name() : null)).append(",")
-                    .append(safe(c.getMerchantId())).append(",")
-                    .append(safe(c.getAssignedTo() != null ? String.valueOf(c.getAssignedTo().getId()) : null))
-                    .append(",")
-                    .append(safe(c.getCreatedAt())).append(",")
-                    .append(safe(c.getUpdatedAt())).append("\n");
-        }
-        return csvResponse("cases.csv", sb.toString());
+    @GetMapping(value = "/sars.csv", produces = { "text/csv", "application/gzip" })
+    public ResponseEntity<StreamingResponseBody> exportSars(@RequestParam(required = false) String status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end,
+            @RequestParam(required = false) Long pspId,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            HttpServletRequest request) {
+        CsvExportService.ExportFilter filter = new CsvExportService.ExportFilter(resolvePspId(pspId), start, end)
+                .where("status", parseEnum(SarStatus.class, status));
+        return csvResponse(CsvExportService.ExportType.SARS, filter, gzip, request);
     }
 
-    @GetMapping(value = "/sars.csv", produces = "text/csv")
-    public ResponseEntity<byte[]> exportSars(@RequestParam(required = false) String status) {
-        List<SuspiciousActivityReport> sars = sarRepository.findAll();
-        if (status != null && !status.isEmpty()) {
-            try {
-                SarStatus ss = SarStatus.valueOf(status);
-                sars = sars.stream().filter(s -> ss.equals(s.getStatus())).toList();
-            } catch (IllegalArgumentException ignored) {
-            }
-        }
-        StringBuilder sb = new StringBuilder();
-        sb.append("sarReference,status,type,jurisdiction,filedAt,createdAt\n");
-        for (SuspiciousActivityReport s : sars) {
-            sb.append(safe(s.getSarReference())).append(",")
-                    .append(safe(s.getStatus() != null ? s.getStatus().name() : null)).append(",")
-                    .append(safe(s.getSarType() != null ? s.getSarType().name() : null)).append(",")
-                    .append(safe(s.getJurisdiction())).append(",")
-                    .append(safe(s.getFiledAt())).append(",")
-                    .append(safe(s.getCreatedAt())).append("\n");
-        }
-        return csvResponse("sars.csv", sb.toString());
+    @GetMapping(value = "/audit.csv", produces = { "text/csv", "application/gzip" })
+    public ResponseEntity<StreamingResponseBody> exportAudit(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end,
+            @RequestParam(required = false) Long pspId,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            HttpServletRequest request) {
+        LocalDateTime from = start != null ? start : LocalDate.now().minusDays(1).atStartOfDay();
+        LocalDateTime to = end != null ? end : LocalDateTime.now();
+        CsvExportService.ExportFilter filter = new CsvExportService.ExportFilter(resolvePspId(pspId), from, to);
+        return csvResponse(CsvExportService.ExportType.AUDIT, filter, gzip, request);
     }
 
-    @GetMapping(value = "/audit.csv", produces = "text/csv")
-    public ResponseEntity<byte[]> exportAudit(@RequestParam(required = false) String start,
-            @RequestParam(required = false) String end) {
-        LocalDateTime from = start != null ? LocalDateTime.parse(start) : LocalDate.now().minusDays(1).atStartOfDay();
-        LocalDateTime to = end != null ? LocalDateTime.parse(end) : LocalDateTime.now();
-        List<AuditLog> logs = auditLogRepository.findByTimestampBetween(from, to);
-        StringBuilder sb = new StringBuilder();
-        sb.append("timestamp,user,action,entityType,entityId,success\n");
-        for (AuditLog l : logs) {
-            sb.append(safe(l.getTimestamp())).append(",")
-                    .append(safe(l.getUsername())).append(",")
-                    .append(safe(l.getActionType())).append(",")
-                    .append(safe(l.getEntityType())).append(",")
-                    .append(safe(l.getEntityId())).append(",")
-                    .append(l.isSuccess()).append("\n");
+    /**
+     * PSP to export: the user's own PSP, or for platform administrators the requested one
+     * (null = all). Resolved here because the body is written without the security context.
+     */
+    private Long resolvePspId(Long requestedPspId) {
+        Long userPspId = pspIsolationService.getCurrentUserPspId();
+        if (userPspId == null || userPspId == 0L) {
+            return requestedPspId;
+        }
+        if (requestedPspId != null && !requestedPspId.equals(userPspId)) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Cannot access data from another PSP");
         }
-        return csvResponse("audit.csv", sb.toString());
+        return userPspId;
     }
 
-    private ResponseEntity<byte[]> csvResponse(String filename, String content) {
-        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+    private ResponseEntity<StreamingResponseBody> csvResponse(CsvExportService.ExportType type,
+            CsvExportService.ExportFilter filter, boolean gzip, HttpServletRequest request) {
+        CsvExportService.Export body;
+        try {
+            body = exportService.open(type, filter, gzip);
+        } catch (CsvExportService.ExportLimitExceededException e) {
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, e.getMessage());
+        }
+        // The body runs on an async thread; if the request times out, errors or the client
+        // goes away before it starts, this returns the export slot instead
+        WebAsyncUtils.getAsyncManager(request).registerCallableInterceptor(CsvExportService.Export.class,
+                new CallableProcessingInterceptor() {
+                    @Override
+                    public <T> void afterCompletion(NativeWebRequest webRequest, Callable<T> task) {
+                        body.release();
+                    }
+                });
+        String filename = type.getName() + (gzip ? ".csv.gz" : ".csv");
         return ResponseEntity.ok()
                 .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
-                .contentType(new MediaType("text", "csv"))
-                .body(bytes);
+                .contentType(gzip ? new MediaType("application", "gzip") : new MediaType("text", "csv"))
+                .body(body);
     }
 
-    private String safe(Object o) {
-        return o == null ? "" : o.toString().replace(",", " ");
+    /**
+     * Enum filter value as stored, or null (no filter) when absent or unknown
+     */
+    private static <E extends Enum<E>> String parseEnum(Class<E> type, String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            return Enum.valueOf(type, value).name();
+        } catch (IllegalArgumentException ignored) {
+            return null;
+        }
     }
 }
@@ -1,9 +1,14 @@
 package com.posgateway.aml.controller.monitoring;
 
 import com.posgateway.aml.service.monitoring.TransactionMonitoringService;
+import com.posgateway.aml.service.monitoring.TransactionRollupService;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -15,9 +20,12 @@ import java.util.Map;
 public class TransactionMonitoringController {
 
     private final TransactionMonitoringService monitoringService;
+    private final TransactionRollupService rollupService;
 
-    public TransactionMonitoringController(TransactionMonitoringService monitoringService) {
+    public TransactionMonitoringController(TransactionMonitoringService monitoringService,
+            TransactionRollupService rollupService) {
         this.monitoringService = monitoringService;
+        this.rollupService = rollupService;
     }
 
     /**
@@ -89,5 +97,26 @@ public class TransactionMonitoringController {
     public ResponseEntity<Map<String, Object>> generateMonitoringSummary() {
         return ResponseEntity.ok(monitoringService.generateMonitoringSummary());
     }
-}
 
+    /**
+     * Rebuild the dashboard rollups of a past period from the transactions table
+     * POST /api/v1/monitoring/rollups/backfill?from=...&to=...
+     */
+    @PostMapping("/rollups/backfill")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> backfillRollups(
+            @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        LocalDateTime end = to != null ? to : LocalDateTime.now();
+        if (!from.isBefore(end)) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+        rollupService.backfillAsync(from, end);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", "STARTED");
+        response.put("from", from);
+        response.put("to", end);
+        return ResponseEntity.accepted().body(response);
+    }
+}
@@ -1,17 +1,35 @@
 package com.posgateway.aml.controller.reporting;
 
+import com.posgateway.aml.entity.RegulatoryReportRun;
+import com.posgateway.aml.entity.User;
+import com.posgateway.aml.repository.RegulatoryReportRunRepository;
+import com.posgateway.aml.service.reporting.RegulatoryReportEngine;
 import com.posgateway.aml.service.reporting.RegulatoryReportingService;
+import com.posgateway.aml.service.security.PspIsolationService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.File;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
 
 @RestController
 @RequestMapping("/regulatory")
@@ -20,9 +38,18 @@ public class RegulatoryReportingController {
     private static final Logger log = LoggerFactory.getLogger(RegulatoryReportingController.class);
 
     private final RegulatoryReportingService reportingService;
+    private final RegulatoryReportEngine reportEngine;
+    private final RegulatoryReportRunRepository runRepository;
+    private final PspIsolationService pspIsolationService;
 
-    public RegulatoryReportingController(RegulatoryReportingService reportingService) {
+    public RegulatoryReportingController(RegulatoryReportingService reportingService,
+            RegulatoryReportEngine reportEngine,
+            RegulatoryReportRunRepository runRepository,
+            PspIsolationService pspIsolationService) {
         this.reportingService = reportingService;
+        this.reportEngine = reportEngine;
+        this.runRepository = runRepository;
+        this.pspIsolationService = pspIsolationService;
     }
 
     /**
@@ -75,4 +102,133 @@ public class RegulatoryReportingController {
         log.info("Generating IFTR from {} to {}", startDate, endDate);
         return ResponseEntity.ok(reportingService.generateIftr(startDate, endDate));
     }
+
+    /**
+     * Stream a CTR, LCTR or IFTR report as CSV, XML or PDF
+     * GET /regulatory/export/{type}?format=csv
+     */
+    @GetMapping("/export/{type}")
+    @PreAuthorize("hasAnyRole('ADMIN', 'COMPLIANCE_OFFICER', 'PSP_ADMIN', 'PSP_COMPLIANCE_OFFICER')")
+    public ResponseEntity<StreamingResponseBody> exportReport(
+            @PathVariable String type,
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate) {
+
+        RegulatoryReportEngine.ReportType reportType = RegulatoryReportEngine.ReportType.valueOf(type.toUpperCase(Locale.ROOT));
+        RegulatoryReportEngine.Format reportFormat = RegulatoryReportEngine.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        LocalDateTime start = startDate != null ? startDate : LocalDateTime.now().minusDays(30);
+        LocalDateTime end = endDate != null ? endDate : LocalDateTime.now();
+        // Resolved here: the body is written on another thread, without the security context
+        Long pspId = reportPspId();
+
+        log.info("Streaming {} {} from {} to {}", reportType, reportFormat, start, end);
+        StreamingResponseBody body = out -> reportEngine.stream(reportType, reportFormat, start, end, pspId, out);
+        String filename = String.format("%s_%s_%s.%s", reportType, start.toLocalDate(), end.toLocalDate(),
+                reportFormat.getExtension());
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .contentType(MediaType.parseMediaType(reportFormat.getContentType()))
+                .body(body);
+    }
+
+    /**
+     * Generate a report into a file in the background (resumable; for long periods)
+     * POST /regulatory/reports?type=ctr&format=csv
+     */
+    @PostMapping("/reports")
+    @PreAuthorize("hasAnyRole('ADMIN', 'COMPLIANCE_OFFICER', 'PSP_ADMIN', 'PSP_COMPLIANCE_OFFICER')")
+    public ResponseEntity<RegulatoryReportRun> startReportRun(
+            @RequestParam String type,
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate) {
+
+        RegulatoryReportEngine.ReportType reportType = RegulatoryReportEngine.ReportType.valueOf(type.toUpperCase(Locale.ROOT));
+        RegulatoryReportEngine.Format reportFormat = RegulatoryReportEngine.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        if (startDate == null) startDate = LocalDateTime.now().minusDays(30);
+        if (endDate == null) endDate = LocalDateTime.now();
+
+        User user = pspIsolationService.getCurrentUser();
+        RegulatoryReportRun run = reportEngine.startRun(reportType, reportFormat, startDate, endDate,
+                reportPspId(), user != null ? user.getUsername() : null);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(run);
+    }
+
+    /**
+     * Latest report runs visible to the caller
+     * GET /regulatory/reports
+     */
+    @GetMapping("/reports")
+    @PreAuthorize("hasAnyRole('ADMIN', 'COMPLIANCE_OFFICER', 'PSP_ADMIN', 'PSP_COMPLIANCE_OFFICER')")
+    public ResponseEntity<List<RegulatoryReportRun>> listReportRuns(@RequestParam(defaultValue = "50") int limit) {
+        PageRequest page = PageRequest.of(0, Math.min(Math.max(limit, 1), 500));
+        Long pspId = reportPspId();
+        return ResponseEntity.ok(pspId != null
+                ? runRepository.findByPspIdOrderByCreatedAtDesc(pspId, page)
+                : runRepository.findAllByOrderByCreatedAtDesc(page));
+    }
+
+    /**
+     * Progress of a report run
+     * GET /regulatory/reports/{id}
+     */
+    @GetMapping("/reports/{id}")
+    @PreAuthorize("hasAnyRole('ADMIN', 'COMPLIANCE_OFFICER', 'PSP_ADMIN', 'PSP_COMPLIANCE_OFFICER')")
+    public ResponseEntity<RegulatoryReportRun> getReportRun(@PathVariable Long id) {
+        return ResponseEntity.ok(findAccessibleRun(id));
+    }
+
+    /**
+     * Resume a failed report run from its last checkpoint
+     * POST /regulatory/reports/{id}/resume
+     */
+    @PostMapping("/reports/{id}/resume")
+    @PreAuthorize("hasAnyRole('ADMIN', 'COMPLIANCE_OFFICER', 'PSP_ADMIN', 'PSP_COMPLIANCE_OFFICER')")
+    public ResponseEntity<RegulatoryReportRun> resumeReportRun(@PathVariable Long id) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(reportEngine.resumeRun(findAccessibleRun(id)));
+    }
+
+    /**
+     * Download the file of a completed report run
+     * GET /regulatory/reports/{id}/download
+     */
+    @GetMapping("/reports/{id}/download")
+    @PreAuthorize("hasAnyRole('ADMIN', 'COMPLIANCE_OFFICER', 'PSP_ADMIN', 'PSP_COMPLIANCE_OFFICER')")
+    public ResponseEntity<Resource> downloadReportRun(@PathVariable Long id) {
+        RegulatoryReportRun run = findAccessibleRun(id);
+        if (!RegulatoryReportRun.STATUS_COMPLETED.equals(run.getStatus())) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, "Report run " + id + " is " + run.getStatus());
+        }
+        File file = new File(run.getFilePath());
+        if (!file.isFile()) {
+            throw new ResponseStatusException(HttpStatus.GONE, "Report file of run " + id + " is no longer available");
+        }
+        RegulatoryReportEngine.Format format = RegulatoryReportEngine.Format.valueOf(run.getFormat());
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + file.getName() + "\"")
+                .contentType(MediaType.parseMediaType(format.getContentType()))
+                .contentLength(file.length())
+                .body(new FileSystemResource(file));
+    }
+
+    /**
+     * PSP the caller reports on: their own PSP, or null (all PSPs) for platform
+     * administrators, whose PSP ID is 0
+     */
+    private Long reportPspId() {
+        Long userPspId = pspIsolationService.getCurrentUserPspId();
+        return userPspId == null || userPspId == 0L ? null : userPspId;
+    }
+
+        private RegulatoryReportRun findAccessibleRun(Long id) {
+        RegulatoryReportRun run = runRepository.findById(id)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Report run not found: " + id));
+        try {
+            pspIsolationService.validatePspAccess(run.getPspId());
+        } catch (SecurityException e) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, e.getMessage());
+        }
+        return run;
+    }
 }
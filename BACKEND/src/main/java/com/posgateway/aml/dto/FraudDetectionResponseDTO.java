@@ -1,6 +1,7 @@
 package com.posgateway.aml.dto;
 
 import java.util.List;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 /**
@@ -15,6 +16,8 @@ public class FraudDetectionResponseDTO {
     private List<String> reasons;
     private Long latencyMs;
     private java.util.Map<String, Object> riskDetails;
+    // Only set on 202 Accepted: matches request_id in the TRANSACTION_SCORED webhook
+    private String requestId;
 
     // Getters and Setters
     public Long getTxnId() {
@@ -57,4 +60,13 @@ public class FraudDetectionResponseDTO {
     public void setLatencyMs(Long latencyMs) {
         this.latencyMs = latencyMs;
     }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public String getRequestId() {
+        return requestId;
+    }
+
+    public void setRequestId(String requestId) {
+        this.requestId = requestId;
+    }
 }
@@ -18,6 +18,9 @@ import java.util.List;
 })
 public class Merchant {
 
+    /** Days between periodic screenings */
+    public static final int SCREENING_INTERVAL_DAYS = 7;
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "merchant_id")
@@ -783,7 +786,7 @@ public class Merchant {
      */
     public void updateNextScreeningDue() {
         this.lastScreenedAt = LocalDateTime.now();
-        this.nextScreeningDue = LocalDate.now().plusDays(7);
+        this.nextScreeningDue = LocalDate.now().plusDays(SCREENING_INTERVAL_DAYS);
     }
 
     @PreUpdate
@@ -0,0 +1,66 @@
+package com.posgateway.aml.features;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Categorical Feature Registry
+ * Compile-time index of the string-valued features carried alongside the
+ * numeric slots of a FeatureVector.
+ */
+public enum CategoricalFeature {
+
+    CURRENCY("currency"),
+    MERCHANT_ID("merchant_id"),
+    TERMINAL_ID("terminal_id"),
+    CARD_BIN_HASH("card_bin_hash"),
+    PAN_HASH("pan_hash"),
+    COUNTRY_CODE("country_code"),
+    CHANNEL("channel"),
+    AID("aid"),
+    AIP_FLAGS("aip_flags"),
+    VFMP_STAGE("vfmp_stage"),
+    HECM_STAGE("hecm_stage");
+
+    private static final CategoricalFeature[] VALUES = values();
+    private static final Map<String, CategoricalFeature> BY_KEY = new HashMap<>();
+
+    static {
+        for (CategoricalFeature feature : VALUES) {
+            BY_KEY.put(feature.key, feature);
+        }
+    }
+
+    private final String key;
+
+    CategoricalFeature(String key) {
+        this.key = key;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Number of registered categorical features
+     */
+    public static int count() {
+        return VALUES.length;
+    }
+
+    /**
+     * Categorical feature at a given slot
+     */
+    public static CategoricalFeature at(int index) {
+        return VALUES[index];
+    }
+
+    /**
+     * Look up a categorical feature by wire name
+     *
+     * @return feature, or null if the key is not registered
+     */
+    public static CategoricalFeature byKey(String key) {
+        return BY_KEY.get(key);
+    }
+}
@@ -0,0 +1,116 @@
+package com.posgateway.aml.features;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Numeric Feature Registry
+ * Compile-time index of every numeric feature produced by feature extraction.
+ * The ordinal is the slot in FeatureVector's double[]; the key is the wire name
+ * used by the scoring service payload and the persisted feature JSON.
+ */
+public enum Feature {
+
+    // Transaction-level
+    AMOUNT("amount", Type.DOUBLE),
+    LOG_AMOUNT("log_amount", Type.DOUBLE),
+    TXN_HOUR_OF_DAY("txn_hour_of_day", Type.LONG),
+    TXN_DAY_OF_WEEK("txn_day_of_week", Type.LONG),
+
+    // Behavioral / velocity
+    MERCHANT_TXN_COUNT_1H("merchant_txn_count_1h", Type.LONG),
+    MERCHANT_TXN_AMOUNT_SUM_24H("merchant_txn_amount_sum_24h", Type.DOUBLE),
+    PAN_TXN_COUNT_1H("pan_txn_count_1h", Type.LONG),
+    PAN_TXN_AMOUNT_SUM_24H("pan_txn_amount_sum_24h", Type.DOUBLE),
+    PAN_TXN_AMOUNT_SUM_7D("pan_txn_amount_sum_7d", Type.DOUBLE),
+    DISTINCT_TERMINALS_LAST_30D_FOR_PAN("distinct_terminals_last_30d_for_pan", Type.LONG),
+    AVG_AMOUNT_BY_PAN_30D("avg_amount_by_pan_30d", Type.DOUBLE),
+    TIME_SINCE_LAST_TXN_FOR_PAN_MINUTES("time_since_last_txn_for_pan_minutes", Type.LONG),
+    ZSCORE_AMOUNT_VS_PAN_HISTORY("zscore_amount_vs_pan_history", Type.DOUBLE),
+
+    // EMV
+    IS_CHIP_PRESENT("is_chip_present", Type.BOOLEAN),
+    IS_CONTACTLESS("is_contactless", Type.BOOLEAN),
+    CVM_METHOD("cvm_method", Type.LONG),
+    APPROVAL_CODE_PRESENT("approval_code_present", Type.BOOLEAN),
+
+    // AML
+    CUMULATIVE_DEBITS_30D("cumulative_debits_30d", Type.DOUBLE),
+    NUM_HIGH_VALUE_TXN_7D("num_high_value_txn_7d", Type.LONG),
+
+    // Graph (Neo4j GDS)
+    PAGE_RANK("pageRank", Type.DOUBLE),
+    COMMUNITY_ID("communityId", Type.LONG),
+    BETWEENNESS("betweenness", Type.DOUBLE),
+    CONNECTION_COUNT("connectionCount", Type.LONG),
+    TRIANGLE_COUNT("triangle_count", Type.LONG),
+    CLUSTERING_COEFFICIENT("clustering_coefficient", Type.DOUBLE),
+
+    // Scheme simulators (VFMP/HECM)
+    MERCHANT_FRAUD_RATE("merchant_fraud_rate", Type.DOUBLE),
+    MERCHANT_CB_RATIO("merchant_cb_ratio", Type.DOUBLE),
+
+    // Model and risk scores
+    ML_SCORE("ml_score", Type.DOUBLE),
+    KRS_SCORE("krs_score", Type.DOUBLE),
+    CRA_SCORE("cra_score", Type.DOUBLE),
+    TRS_SCORE("trs_score", Type.DOUBLE);
+
+    /**
+     * Value type used when the feature leaves the vector (JSON payload, legacy map)
+     */
+    public enum Type {
+        DOUBLE, LONG, BOOLEAN
+    }
+
+    private static final Feature[] VALUES = values();
+    private static final Map<String, Feature> BY_KEY = new HashMap<>();
+
+    static {
+        if (VALUES.length > 64) {
+            throw new IllegalStateException("FeatureVector presence mask supports at most 64 features");
+        }
+        for (Feature feature : VALUES) {
+            BY_KEY.put(feature.key, feature);
+        }
+    }
+
+    private final String key;
+    private final Type type;
+
+    Feature(String key, Type type) {
+        this.key = key;
+        this.type = type;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Number of registered numeric features (length of FeatureVector's value array)
+     */
+    public static int count() {
+        return VALUES.length;
+    }
+
+    /**
+     * Feature at a given slot
+     */
+    public static Feature at(int index) {
+        return VALUES[index];
+    }
+
+    /**
+     * Look up a feature by wire name
+     *
+     * @return feature, or null if the key is not a registered numeric feature
+     */
+    public static Feature byKey(String key) {
+        return BY_KEY.get(key);
+    }
+}
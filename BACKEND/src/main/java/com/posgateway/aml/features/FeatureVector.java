@@ -0,0 +1,182 @@
+package com.posgateway.aml.features;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Feature Vector
+ * Typed, schema-driven features for one transaction.
+ *
+ * Numeric features live in a primitive double[] indexed by Feature ordinal, with a
+ * presence bitmask so "absent" stays distinguishable from 0. Categorical features
+ * live in a small String[] indexed by CategoricalFeature ordinal.
+ *
+ * Produced once per transaction by feature extraction and consumed directly by the
+ * rules engine, DL4J input building and the scoring payload serializer, avoiding
+ * a boxed HashMap per transaction. Not thread-safe; a vector belongs to one
+ * transaction's pipeline.
+ */
+@JsonSerialize(using = FeatureVectorSerializer.class)
+public final class FeatureVector {
+
+    private final double[] values = new double[Feature.count()];
+    private final String[] text = new String[CategoricalFeature.count()];
+    private long present;
+
+    public FeatureVector set(Feature feature, double value) {
+        values[feature.ordinal()] = value;
+        present |= 1L << feature.ordinal();
+        return this;
+    }
+
+    public FeatureVector set(Feature feature, boolean value) {
+        return set(feature, value ? 1.0 : 0.0);
+    }
+
+    /**
+     * Set a numeric feature from a possibly-null boxed value; null leaves it absent
+     */
+    public FeatureVector set(Feature feature, Number value) {
+        if (value != null) {
+            set(feature, value.doubleValue());
+        }
+        return this;
+    }
+
+    public FeatureVector setText(CategoricalFeature feature, String value) {
+        text[feature.ordinal()] = value;
+        return this;
+    }
+
+    public boolean has(Feature feature) {
+        return (present & (1L << feature.ordinal())) != 0;
+    }
+
+    /**
+     * Get a numeric feature, 0.0 when absent
+     */
+    public double get(Feature feature) {
+        return values[feature.ordinal()];
+    }
+
+    public double getOrDefault(Feature feature, double defaultValue) {
+        return has(feature) ? values[feature.ordinal()] : defaultValue;
+    }
+
+    public long getLong(Feature feature) {
+        return (long) values[feature.ordinal()];
+    }
+
+    public boolean getBoolean(Feature feature) {
+        return values[feature.ordinal()] != 0.0;
+    }
+
+    public String getText(CategoricalFeature feature) {
+        return text[feature.ordinal()];
+    }
+
+    public String getTextOrDefault(CategoricalFeature feature, String defaultValue) {
+        String value = text[feature.ordinal()];
+        return value != null ? value : defaultValue;
+    }
+
+    /**
+     * Raw numeric slots in Feature ordinal order (absent features are 0.0).
+     * Returned without copying for model input building; callers must not modify it.
+     */
+    public double[] values() {
+        return values;
+    }
+
+    /**
+     * Number of features present (numeric + categorical)
+     */
+    public int size() {
+        int size = Long.bitCount(present);
+        for (String value : text) {
+            if (value != null) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Reset for reuse by the next transaction
+     */
+    public void clear() {
+        Arrays.fill(values, 0.0);
+        Arrays.fill(text, null);
+        present = 0L;
+    }
+
+    /**
+     * Legacy map view for Map-based consumers (feature JSON persistence, batch scoring).
+     * Numeric features are boxed according to their registered Type.
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new HashMap<>(64);
+        for (int i = 0; i < values.length; i++) {
+            if ((present & (1L << i)) != 0) {
+                Feature feature = Feature.at(i);
+                map.put(feature.getKey(), box(feature, values[i]));
+            }
+        }
+        for (int i = 0; i < text.length; i++) {
+            if (text[i] != null) {
+                map.put(CategoricalFeature.at(i).getKey(), text[i]);
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Build a vector from a legacy feature map. Unknown keys are ignored.
+     */
+    public static FeatureVector fromMap(Map<String, Object> map) {
+        FeatureVector vector = new FeatureVector();
+        if (map == null) {
+            return vector;
+        }
+        for (Map.Entry<String, Object> entry : map.entrySet()) {
+            Object value = entry.getValue();
+            if (value == null) {
+                continue;
+            }
+            Feature feature = Feature.byKey(entry.getKey());
+            if (feature != null) {
+                if (value instanceof Number) {
+                    vector.set(feature, ((Number) value).doubleValue());
+                } else if (value instanceof Boolean) {
+                    vector.set(feature, (Boolean) value);
+                } else {
+                    try {
+                        vector.set(feature, Double.parseDouble(value.toString()));
+                    } catch (NumberFormatException e) {
+                        // Non-numeric value for a numeric feature - leave absent
+                    }
+                }
+                continue;
+            }
+            CategoricalFeature categorical = CategoricalFeature.byKey(entry.getKey());
+            if (categorical != null) {
+                vector.setText(categorical, value.toString());
+            }
+        }
+        return vector;
+    }
+
+    static Object box(Feature feature, double value) {
+        switch (feature.getType()) {
+            case LONG:
+                return (long) value;
+            case BOOLEAN:
+                return value != 0.0;
+            default:
+                return value;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.posgateway.aml.features;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+
+/**
+ * Feature Vector Serializer
+ * Writes a FeatureVector as the flat JSON object expected by the scoring service
+ * ({"amount": 12.5, "pan_txn_count_1h": 3, "is_chip_present": true, ...})
+ * straight from the primitive slots, without building an intermediate map.
+ */
+public class FeatureVectorSerializer extends StdSerializer<FeatureVector> {
+
+    private static final long serialVersionUID = 1L;
+
+    public FeatureVectorSerializer() {
+        super(FeatureVector.class);
+    }
+
+    @Override
+    public void serialize(FeatureVector vector, JsonGenerator gen, SerializerProvider provider)
+            throws IOException {
+        gen.writeStartObject();
+
+        double[] values = vector.values();
+        for (int i = 0; i < values.length; i++) {
+            Feature feature = Feature.at(i);
+            if (!vector.has(feature)) {
+                continue;
+            }
+            switch (feature.getType()) {
+                case LONG:
+                    gen.writeNumberField(feature.getKey(), (long) values[i]);
+                    break;
+                case BOOLEAN:
+                    gen.writeBooleanField(feature.getKey(), values[i] != 0.0);
+                    break;
+                default:
+                    gen.writeNumberField(feature.getKey(), values[i]);
+                    break;
+            }
+        }
+
+        for (int i = 0; i < CategoricalFeature.count(); i++) {
+            CategoricalFeature feature = CategoricalFeature.at(i);
+            String value = vector.getText(feature);
+            if (value != null) {
+                gen.writeStringField(feature.getKey(), value);
+            }
+        }
+
+        gen.writeEndObject();
+    }
+}
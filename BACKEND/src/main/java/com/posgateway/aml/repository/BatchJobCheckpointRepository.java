@@ -0,0 +1,12 @@
+package com.posgateway.aml.repository;
+
+import com.posgateway.aml.entity.BatchJobCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repository for Batch Job Checkpoints (keyed by job name)
+ */
+@Repository
+public interface BatchJobCheckpointRepository extends JpaRepository<BatchJobCheckpoint, String> {
+}
@@ -1,6 +1,7 @@
 package com.posgateway.aml.repository;
 
 import com.posgateway.aml.entity.merchant.BeneficialOwner;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -27,4 +28,20 @@ public interface BeneficialOwnerRepository extends JpaRepository<BeneficialOwner
     @Query("SELECT b FROM BeneficialOwner b WHERE b.fullName = :fullName AND b.dateOfBirth = :dob")
     List<BeneficialOwner> findPotentialDuplicates(@Param("fullName") String fullName,
             @Param("dob") java.time.LocalDate dob);
+
+    /**
+     * Fetch screened owner names [ownerId, merchantId, fullName] page by page using
+     * ownerId as keyset (owners of merchants not REJECTED or TERMINATED)
+     */
+    @Query("SELECT b.ownerId, b.merchant.merchantId, b.fullName FROM BeneficialOwner b " +
+            "WHERE b.merchant.status NOT IN ('REJECTED', 'TERMINATED') AND b.ownerId > :afterId ORDER BY b.ownerId")
+    List<Object[]> findScreeningNameRows(@Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * Fetch screened names [ownerId, merchantId, fullName] page by page using ownerId as keyset,
+     * whatever the merchant status (screened name block index backfill)
+     */
+    @Query("SELECT b.ownerId, b.merchant.merchantId, b.fullName FROM BeneficialOwner b " +
+            "WHERE b.ownerId > :afterId ORDER BY b.ownerId")
+    List<Object[]> findNameRows(@Param("afterId") Long afterId, Pageable pageable);
 }
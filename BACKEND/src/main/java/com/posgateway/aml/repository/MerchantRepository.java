@@ -1,13 +1,18 @@
 package com.posgateway.aml.repository;
 
 import com.posgateway.aml.entity.merchant.Merchant;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -30,6 +35,56 @@ public interface MerchantRepository extends JpaRepository<Merchant, Long>, JpaSp
             "AND (m.nextScreeningDue IS NULL OR m.nextScreeningDue <= :today)")
     List<Merchant> findMerchantsNeedingRescreening(@Param("today") LocalDate today);
 
+    /**
+     * Count merchants needing rescreening (same criteria as above)
+     */
+    @Query("SELECT COUNT(m) FROM Merchant m WHERE m.status NOT IN ('REJECTED', 'TERMINATED') " +
+            "AND (m.nextScreeningDue IS NULL OR m.nextScreeningDue <= :today)")
+    long countMerchantsNeedingRescreening(@Param("today") LocalDate today);
+
+    /**
+     * Keyset page of IDs of merchants needing rescreening, in ID order after afterId.
+     * Merchants screened since runStartedAt still qualify, so a batch run (or a
+     * concurrent one) rescheduling merchants does not shrink the set it is paging through.
+     */
+    @Query("SELECT m.merchantId FROM Merchant m WHERE m.status NOT IN ('REJECTED', 'TERMINATED') " +
+            "AND (m.nextScreeningDue IS NULL OR m.nextScreeningDue <= :today OR m.lastScreenedAt >= :runStartedAt) " +
+            "AND m.merchantId > :afterId ORDER BY m.merchantId")
+    List<Long> findMerchantIdsNeedingRescreening(@Param("today") LocalDate today,
+            @Param("runStartedAt") LocalDateTime runStartedAt, @Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * Fetch screened names [merchantId, legalName, tradingName] page by page using
+     * merchantId as keyset (merchants still screened, i.e. not REJECTED or TERMINATED)
+     */
+    @Query("SELECT m.merchantId, m.legalName, m.tradingName FROM Merchant m " +
+            "WHERE m.status NOT IN ('REJECTED', 'TERMINATED') AND m.merchantId > :afterId ORDER BY m.merchantId")
+    List<Object[]> findScreeningNameRows(@Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * Fetch screened names [merchantId, legalName, tradingName] page by page using merchantId as keyset,
+     * whatever the merchant status (screened name block index backfill)
+     */
+    @Query("SELECT m.merchantId, m.legalName, m.tradingName FROM Merchant m " +
+            "WHERE m.merchantId > :afterId ORDER BY m.merchantId")
+    List<Object[]> findNameRows(@Param("afterId") Long afterId, Pageable pageable);
+
+    /**
+     * Load merchants with their beneficial owners in one query
+     */
+    @EntityGraph(attributePaths = "beneficialOwners")
+    @Query("SELECT m FROM Merchant m WHERE m.merchantId IN :ids")
+    List<Merchant> findWithBeneficialOwnersByMerchantIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Record a screening without loading the merchants (bulk update, bypasses entity callbacks)
+     */
+    @Modifying
+    @Query("UPDATE Merchant m SET m.lastScreenedAt = :screenedAt, m.nextScreeningDue = :nextScreeningDue, " +
+            "m.updatedAt = :screenedAt WHERE m.merchantId IN :ids")
+    int markScreened(@Param("ids") Collection<Long> ids, @Param("screenedAt") LocalDateTime screenedAt,
+            @Param("nextScreeningDue") LocalDate nextScreeningDue);
+
     /**
      * Find merchants by status
      */
@@ -0,0 +1,31 @@
+package com.posgateway.aml.repository;
+
+import com.posgateway.aml.entity.RegulatoryReportRun;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Repository for Regulatory Report Runs
+ */
+@Repository
+public interface RegulatoryReportRunRepository extends JpaRepository<RegulatoryReportRun, Long> {
+
+    /**
+     * Runs in a status that have not checkpointed since the given time (stalled runs)
+     */
+    List<RegulatoryReportRun> findByStatusAndUpdatedAtBefore(String status, LocalDateTime updatedBefore);
+
+    /**
+     * Latest runs of a PSP
+     */
+    List<RegulatoryReportRun> findByPspIdOrderByCreatedAtDesc(Long pspId, Pageable pageable);
+
+    /**
+     * Latest runs across all PSPs
+     */
+    List<RegulatoryReportRun> findAllByOrderByCreatedAtDesc(Pageable pageable);
+}
@@ -1,6 +1,7 @@
 package com.posgateway.aml.repository;
 
 import com.posgateway.aml.entity.TransactionEntity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
@@ -12,20 +13,12 @@ import java.util.List;
 
 /**
  * Repository for Transaction Entity
+ * The transactions table is range-partitioned by month on txn_ts (V113), so every query
+ * here carries a txn_ts bound; without one PostgreSQL has to visit every partition.
  */
 @Repository
 public interface TransactionRepository extends JpaRepository<TransactionEntity, Long>, JpaSpecificationExecutor<TransactionEntity> {
 
-    /**
-     * Find transactions by merchant ID
-     */
-    List<TransactionEntity> findByMerchantId(String merchantId);
-
-    /**
-     * Find transactions by PAN hash
-     */
-    List<TransactionEntity> findByPanHash(String panHash);
-
     /**
      * Count transactions by merchant in time window
      */
@@ -75,22 +68,34 @@ public interface TransactionRepository extends JpaRepository<TransactionEntity,
             @Param("endTime") LocalDateTime endTime);
 
     /**
-     * Find last transaction timestamp for PAN
+     * Sum transaction amounts of several merchants in time window
+     */
+    @Query("SELECT COALESCE(SUM(t.amountCents), 0) FROM TransactionEntity t WHERE t.merchantId IN :merchantIds " +
+            "AND t.txnTs >= :startTime AND t.txnTs <= :endTime")
+    Long sumAmountByMerchantsInTimeWindow(@Param("merchantIds") List<String> merchantIds,
+            @Param("startTime") LocalDateTime startTime,
+            @Param("endTime") LocalDateTime endTime);
+
+    /**
+     * Find last transaction timestamp for PAN (unbounded: probes every partition; read
+     * pan_last_seen through PanLastSeenService instead)
      */
     @Query("SELECT MAX(t.txnTs) FROM TransactionEntity t WHERE t.panHash = :panHash")
     LocalDateTime findLastTransactionTimeByPan(@Param("panHash") String panHash);
 
     /**
-     * Find distinct merchant IDs by Device Fingerprint
+     * Find distinct merchant IDs by Device Fingerprint since the given time
      */
-    @Query("SELECT DISTINCT t.merchantId FROM TransactionEntity t WHERE t.deviceFingerprint = :deviceFingerprint")
-    List<String> findMerchantIdsByDeviceFingerprint(@Param("deviceFingerprint") String deviceFingerprint);
+    @Query("SELECT DISTINCT t.merchantId FROM TransactionEntity t WHERE t.deviceFingerprint = :deviceFingerprint AND t.txnTs >= :since")
+    List<String> findMerchantIdsByDeviceFingerprint(@Param("deviceFingerprint") String deviceFingerprint,
+            @Param("since") LocalDateTime since);
 
     /**
-     * Find distinct merchant IDs by IP Address
+     * Find distinct merchant IDs by IP Address since the given time
      */
-    @Query("SELECT DISTINCT t.merchantId FROM TransactionEntity t WHERE t.ipAddress = :ipAddress")
-    List<String> findMerchantIdsByIpAddress(@Param("ipAddress") String ipAddress);
+    @Query("SELECT DISTINCT t.merchantId FROM TransactionEntity t WHERE t.ipAddress = :ipAddress AND t.txnTs >= :since")
+    List<String> findMerchantIdsByIpAddress(@Param("ipAddress") String ipAddress,
+            @Param("since") LocalDateTime since);
 
     /**
      * Find transactions by merchant ID and timestamp range
@@ -108,11 +113,19 @@ public interface TransactionRepository extends JpaRepository<TransactionEntity,
                                                                @Param("startDate") LocalDateTime startDate);
 
     /**
-     * Find latest transaction timestamp before a date
+     * Find transactions in a timestamp range [startDate, endDate), oldest first
+     */
+    @Query("SELECT t FROM TransactionEntity t WHERE t.txnTs >= :startDate AND t.txnTs < :endDate ORDER BY t.txnTs, t.txnId")
+    List<TransactionEntity> findInTimeWindow(@Param("startDate") LocalDateTime startDate,
+                                             @Param("endDate") LocalDateTime endDate);
+
+    /**
+     * Find transactions since the given time that have no stored features, newest first
      */
-    @Query("SELECT MAX(t.txnTs) FROM TransactionEntity t WHERE t.merchantId = :merchantId AND t.txnTs < :beforeDate")
-    LocalDateTime findLatestTransactionTimestampBefore(@Param("merchantId") String merchantId,
-                                                       @Param("beforeDate") LocalDateTime beforeDate);
+    @Query("SELECT t FROM TransactionEntity t WHERE t.txnTs >= :since AND NOT EXISTS " +
+            "(SELECT f.txnId FROM TransactionFeatures f WHERE f.txnId = t.txnId AND f.featureJson IS NOT NULL) " +
+            "ORDER BY t.txnTs DESC")
+    List<TransactionEntity> findWithoutFeaturesSince(@Param("since") LocalDateTime since, Pageable pageable);
 
     /**
      * Get daily transaction volume (count) grouped by date, filtered by PSP ID
@@ -163,14 +176,79 @@ public interface TransactionRepository extends JpaRepository<TransactionEntity,
                                                  @Param("endDate") LocalDateTime endDate);
 
     /**
-     * Find recent transactions filtered by PSP ID
-     * Returns transactions ordered by timestamp descending
+     * Latest transactions of a PSP (dashboard activity feed). Bounded by the page rather than
+     * by txn_ts: the partitions are scanned newest first and the scan stops at the page size.
+     */
+    List<TransactionEntity> findByPspIdAndTxnTsNotNullOrderByTxnTsDesc(Long pspId, Pageable pageable);
+
+    /**
+     * Latest transactions across all PSPs (dashboard activity feed)
+     */
+    List<TransactionEntity> findByTxnTsNotNullOrderByTxnTsDesc(Pageable pageable);
+
+    /**
+     * Count PAN/IP pairs with 3 or more transactions since the given time (velocity violations)
+     */
+    @Query(value = "SELECT COUNT(*) FROM (SELECT 1 FROM transactions t WHERE t.txn_ts > :since " +
+            "GROUP BY COALESCE(t.pan_hash, ''), COALESCE(t.ip_address, '') HAVING COUNT(*) >= 3) v",
+            nativeQuery = true)
+    long countVelocityGroups(@Param("since") LocalDateTime since);
+
+    /**
+     * Count PAN/IP pairs of a PSP with 3 or more transactions since the given time
+     */
+    @Query(value = "SELECT COUNT(*) FROM (SELECT 1 FROM transactions t WHERE t.psp_id = :pspId AND t.txn_ts > :since " +
+            "GROUP BY COALESCE(t.pan_hash, ''), COALESCE(t.ip_address, '') HAVING COUNT(*) >= 3) v",
+            nativeQuery = true)
+    long countVelocityGroupsByPspId(@Param("pspId") Long pspId, @Param("since") LocalDateTime since);
+
+    /**
+     * Find highest transaction ID since the given time (warm-up ceiling for in-memory velocity counters)
+     */
+    @Query("SELECT MAX(t.txnId) FROM TransactionEntity t WHERE t.txnTs >= :since")
+    Long findMaxTxnId(@Param("since") LocalDateTime since);
+
+    /**
+     * Fetch velocity columns [txnId, panHash, merchantId, terminalId, amountCents, txnTs]
+     * page by page using txnId as keyset, for warming in-memory velocity counters
+     */
+    @Query("SELECT t.txnId, t.panHash, t.merchantId, t.terminalId, t.amountCents, t.txnTs FROM TransactionEntity t " +
+            "WHERE t.txnId > :afterTxnId AND t.txnId <= :maxTxnId AND t.txnTs >= :since ORDER BY t.txnId")
+    List<Object[]> findVelocityRows(@Param("afterTxnId") Long afterTxnId,
+                                    @Param("maxTxnId") Long maxTxnId,
+                                    @Param("since") LocalDateTime since,
+                                    Pageable pageable);
+
+    /**
+     * Find transactions for a regulatory report, with the PSP, period and amount
+     * predicates applied in SQL (pspId and minAmountCents are optional)
      */
-    List<TransactionEntity> findByPspIdOrderByTxnTsDesc(Long pspId);
+    @Query("SELECT t FROM TransactionEntity t WHERE t.txnTs >= :startDate AND t.txnTs <= :endDate " +
+            "AND (:pspId IS NULL OR t.pspId = :pspId) " +
+            "AND (:minAmountCents IS NULL OR t.amountCents >= :minAmountCents) ORDER BY t.txnTs, t.txnId")
+    List<TransactionEntity> findForRegulatoryReport(@Param("startDate") LocalDateTime startDate,
+                                                    @Param("endDate") LocalDateTime endDate,
+                                                    @Param("pspId") Long pspId,
+                                                    @Param("minAmountCents") Long minAmountCents);
 
     /**
-     * Find recent transactions for all PSPs (admin view)
-     * Returns transactions ordered by timestamp descending
+     * Fetch regulatory report columns [txnId, txnTs, amountCents, currency, terminalId, panHash,
+     * merchantId, pspId, ipAddress, deviceFingerprint, transactionType] page by page, using
+     * (txnTs, txnId) as keyset. The transaction type is derived in SQL so the ISO message
+     * is never fetched.
      */
-    List<TransactionEntity> findAllByOrderByTxnTsDesc();
+    @Query("SELECT t.txnId, t.txnTs, t.amountCents, t.currency, t.terminalId, t.panHash, t.merchantId, t.pspId, " +
+            "t.ipAddress, t.deviceFingerprint, " +
+            "CASE WHEN t.isoMsg LIKE '%0200%' THEN 'PURCHASE' WHEN t.isoMsg LIKE '%0400%' THEN 'REVERSAL' " +
+            "WHEN t.acquirerResponse LIKE '%APPROVED%' THEN 'PURCHASE' ELSE 'UNKNOWN' END " +
+            "FROM TransactionEntity t " +
+            "WHERE (t.txnTs > :afterTs OR (t.txnTs = :afterTs AND t.txnId > :afterTxnId)) AND t.txnTs <= :endDate " +
+            "AND (:pspId IS NULL OR t.pspId = :pspId) " +
+            "AND (:minAmountCents IS NULL OR t.amountCents >= :minAmountCents) ORDER BY t.txnTs, t.txnId")
+    List<Object[]> findRegulatoryReportRows(@Param("afterTs") LocalDateTime afterTs,
+                                            @Param("afterTxnId") Long afterTxnId,
+                                            @Param("endDate") LocalDateTime endDate,
+                                            @Param("pspId") Long pspId,
+                                            @Param("minAmountCents") Long minAmountCents,
+                                            Pageable pageable);
 }
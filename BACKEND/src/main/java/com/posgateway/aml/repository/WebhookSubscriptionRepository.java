@@ -9,4 +9,6 @@ import java.util.List;
 @Repository
 public interface WebhookSubscriptionRepository extends JpaRepository<WebhookSubscription, Long> {
     List<WebhookSubscription> findByEventTypeAndIsActiveTrue(String eventType);
+
+    List<WebhookSubscription> findByPspIdAndEventTypeAndIsActiveTrue(String pspId, String eventType);
 }
@@ -1,6 +1,7 @@
 package com.posgateway.aml.service;
 
 import com.posgateway.aml.entity.TransactionEntity;
+import com.posgateway.aml.features.FeatureVector;
 import com.posgateway.aml.service.DecisionEngine.DecisionResult;
 import com.posgateway.aml.service.ScoringService.ScoringResult;
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
@@ -11,7 +12,6 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
-import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -55,9 +55,9 @@ public class AsyncFraudDetectionOrchestrator {
 
         try {
             // Step 1: Extract features (can be parallelized)
-            CompletableFuture<Map<String, Object>> featuresFuture = 
+            CompletableFuture<FeatureVector> featuresFuture = 
                 CompletableFuture.supplyAsync(() -> 
-                    featureExtractionService.extractFeatures(transaction));
+                    featureExtractionService.extractFeatureVector(transaction));
 
             // Step 2: Score transaction (depends on features)
             CompletableFuture<ScoringResult> scoringFuture = featuresFuture.thenCompose(features ->
@@ -7,6 +7,8 @@ import com.posgateway.aml.repository.TransactionRepository;
 import com.posgateway.aml.repository.TransactionFeaturesRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -32,6 +34,9 @@ public class BatchScoringService {
     private final ScoringService scoringService;
     private final ObjectMapper objectMapper;
 
+    @Value("${batch.backfill.lookback.days:30}")
+    private int backfillLookbackDays;
+
     public BatchScoringService(TransactionRepository transactionRepository,
             TransactionFeaturesRepository featuresRepository,
             FeatureExtractionService featureExtractionService,
@@ -55,13 +60,9 @@ public class BatchScoringService {
 
         LocalDateTime yesterday = LocalDateTime.now().minusDays(1);
         LocalDateTime startOfDay = yesterday.toLocalDate().atStartOfDay();
-        LocalDateTime endOfDay = yesterday.toLocalDate().atTime(23, 59, 59);
+        LocalDateTime endOfDay = startOfDay.plusDays(1);
 
-        List<TransactionEntity> transactions = transactionRepository.findAll().stream()
-                .filter(t -> t.getTxnTs() != null &&
-                        !t.getTxnTs().isBefore(startOfDay) &&
-                        !t.getTxnTs().isAfter(endOfDay))
-                .toList();
+        List<TransactionEntity> transactions = transactionRepository.findInTimeWindow(startOfDay, endOfDay);
 
         logger.info("Found {} transactions to batch score", transactions.size());
 
@@ -112,13 +113,9 @@ public class BatchScoringService {
     public int backfillFeatures(int limit) {
         logger.info("Backfilling features for transactions without features (limit={})", limit);
 
-        List<TransactionEntity> transactions = transactionRepository.findAll().stream()
-                .filter(t -> {
-                    TransactionFeatures features = featuresRepository.findByTxnId(t.getTxnId());
-                    return features == null || features.getFeatureJson() == null;
-                })
-                .limit(limit)
-                .toList();
+        // Only the recent partitions are searched; older transactions are not backfilled
+        List<TransactionEntity> transactions = transactionRepository.findWithoutFeaturesSince(
+                LocalDateTime.now().minusDays(backfillLookbackDays), PageRequest.of(0, Math.max(1, limit)));
 
         int processed = 0;
         for (TransactionEntity transaction : transactions) {
@@ -3,6 +3,8 @@ package com.posgateway.aml.service;
 import com.posgateway.aml.entity.Alert;
 import com.posgateway.aml.entity.TransactionEntity;
 import com.posgateway.aml.entity.TransactionFeatures;
+import com.posgateway.aml.features.Feature;
+import com.posgateway.aml.features.FeatureVector;
 import com.posgateway.aml.repository.AlertRepository;
 import com.posgateway.aml.repository.TransactionFeaturesRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -52,6 +54,19 @@ public class DecisionEngine {
      */
     @Transactional
     public DecisionResult evaluate(TransactionEntity transaction, Double score, Map<String, Object> features) {
+        return evaluate(transaction, score, FeatureVector.fromMap(features));
+    }
+
+    /**
+     * Evaluate transaction and determine action
+     * 
+     * @param transaction Transaction entity
+     * @param score Fraud score from ML model
+     * @param features Feature vector
+     * @return Decision result
+     */
+    @Transactional
+    public DecisionResult evaluate(TransactionEntity transaction, Double score, FeatureVector features) {
         logger.info("Evaluating transaction {} with score {}", transaction.getTxnId(), score);
 
         // Check hard rules first (before scoring)
@@ -167,7 +182,7 @@ public class DecisionEngine {
         return null;
     }
 
-    private void checkAmlRules(TransactionEntity transaction, Map<String, Object> features, 
+    private void checkAmlRules(TransactionEntity transaction, FeatureVector features, 
                                DecisionResult decision, List<String> reasons) {
         Long amlThreshold = configService.getAmlHighValueThreshold();
         
@@ -193,20 +208,16 @@ public class DecisionEngine {
         }
 
         // Check cumulative amounts (from features) - optimize with early return
-        Object cumulativeDebits = features.get("cumulative_debits_30d");
-        if (cumulativeDebits == null) {
+        if (!features.has(Feature.CUMULATIVE_DEBITS_30D)) {
             return; // No cumulative data to check
         }
         
-        // Optimize type check and calculation
-        if (cumulativeDebits instanceof Number) {
-            double cumulative = ((Number) cumulativeDebits).doubleValue();
-            long cumulativeThreshold = thresholdValue * 10L; // 10x single transaction threshold
-            if (cumulative >= cumulativeThreshold) {
-                reasons.add(String.format("AML: Cumulative 30d amount %.2f >= threshold %d", 
-                    cumulative, cumulativeThreshold));
-                decision.setAction("ALERT");
-            }
+        double cumulative = features.get(Feature.CUMULATIVE_DEBITS_30D);
+        long cumulativeThreshold = thresholdValue * 10L; // 10x single transaction threshold
+        if (cumulative >= cumulativeThreshold) {
+            reasons.add(String.format("AML: Cumulative 30d amount %.2f >= threshold %d", 
+                cumulative, cumulativeThreshold));
+            decision.setAction("ALERT");
         }
     }
 
@@ -243,7 +254,7 @@ public class DecisionEngine {
     }
 
     private void saveFeaturesAndDecision(TransactionEntity transaction, Double score, 
-                                        Map<String, Object> features, DecisionResult decision) {
+                                        FeatureVector features, DecisionResult decision) {
         try {
             TransactionFeatures txnFeatures = new TransactionFeatures();
             txnFeatures.setTxnId(transaction.getTxnId());
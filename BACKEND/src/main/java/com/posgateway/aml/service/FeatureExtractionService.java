@@ -2,7 +2,14 @@ package com.posgateway.aml.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.posgateway.aml.entity.TransactionEntity;
+import com.posgateway.aml.features.CategoricalFeature;
+import com.posgateway.aml.features.Feature;
+import com.posgateway.aml.features.FeatureVector;
 import com.posgateway.aml.repository.TransactionRepository;
+import com.posgateway.aml.service.graph.GraphFeatureNearCache;
+import com.posgateway.aml.service.graph.GraphFeatureSnapshot;
+import com.posgateway.aml.service.velocity.VelocityEngine;
+import com.posgateway.aml.service.velocity.VelocityStats;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -10,7 +17,6 @@ import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
-import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -26,14 +32,23 @@ public class FeatureExtractionService {
     private final TransactionRepository transactionRepository;
     private final ObjectMapper objectMapper;
     private final com.posgateway.aml.service.graph.Neo4jGdsService neo4jGdsService;
+    private final VelocityEngine velocityEngine;
+    private final GraphFeatureNearCache graphFeatureNearCache;
+    private final PanLastSeenService panLastSeenService;
 
     @Autowired
     public FeatureExtractionService(TransactionRepository transactionRepository,
             ObjectMapper objectMapper,
-            @Autowired(required = false) com.posgateway.aml.service.graph.Neo4jGdsService neo4jGdsService) {
+            @Autowired(required = false) com.posgateway.aml.service.graph.Neo4jGdsService neo4jGdsService,
+            VelocityEngine velocityEngine,
+            GraphFeatureNearCache graphFeatureNearCache,
+            PanLastSeenService panLastSeenService) {
         this.transactionRepository = transactionRepository;
         this.objectMapper = objectMapper;
         this.neo4jGdsService = neo4jGdsService;
+        this.velocityEngine = velocityEngine;
+        this.graphFeatureNearCache = graphFeatureNearCache;
+        this.panLastSeenService = panLastSeenService;
     }
 
     /**
@@ -43,21 +58,38 @@ public class FeatureExtractionService {
      * @return Map of feature names to values
      */
     public Map<String, Object> extractFeatures(TransactionEntity transaction) {
+        return extractFeatureVector(transaction).toMap();
+    }
+
+    /**
+     * Extract features from transaction into a typed feature vector
+     * 
+     * @param transaction Transaction entity
+     * @return Feature vector consumed by scoring, rules and anomaly detection
+     */
+    public FeatureVector extractFeatureVector(TransactionEntity transaction) {
         logger.debug("Extracting features for transaction: {}", transaction.getTxnId());
 
-        Map<String, Object> features = new HashMap<>();
+        FeatureVector features = new FeatureVector();
 
         // Transaction-level features
         extractTransactionFeatures(transaction, features);
 
+        // Behavioral + AML velocity features from in-memory counters, SQL aggregates as fallback
+        boolean velocityFromMemory = extractVelocityFeatures(transaction, features);
+
         // Behavioral features (velocity, aggregates)
-        extractBehavioralFeatures(transaction, features);
+        if (!velocityFromMemory) {
+            extractBehavioralFeatures(transaction, features);
+        }
 
         // EMV-specific features
         extractEmvFeatures(transaction, features);
 
         // AML-specific features
-        extractAmlFeatures(transaction, features);
+        if (!velocityFromMemory) {
+            extractAmlFeatures(transaction, features);
+        }
 
         // Graph features from Neo4j GDS (PageRank, Community, Betweenness)
         extractGraphFeatures(transaction, features);
@@ -68,17 +100,32 @@ public class FeatureExtractionService {
 
     /**
      * Extract graph-based features from Neo4j GDS.
-     * These are computed by Neo4j algorithms and cached in Aerospike.
+     * These are computed by Neo4j algorithms and read from the local snapshot in the
+     * graph feature near-cache; Neo4j (via Aerospike) is only queried until one is loaded.
      */
-    private void extractGraphFeatures(TransactionEntity transaction, Map<String, Object> features) {
+    private void extractGraphFeatures(TransactionEntity transaction, FeatureVector features) {
+        GraphFeatureSnapshot snapshot = graphFeatureNearCache.getSnapshot();
+        if (snapshot != null && transaction.getMerchantId() != null) {
+            // Merchants missing from the snapshot had no graph node at the last refresh
+            int index = graphFeatureNearCache.lookup(snapshot, transaction.getMerchantId());
+            boolean found = index >= 0;
+            features.set(Feature.PAGE_RANK, found ? snapshot.getPageRank(index) : 0.0);
+            features.set(Feature.COMMUNITY_ID, found ? snapshot.getCommunityId(index) : 0L);
+            features.set(Feature.BETWEENNESS, found ? snapshot.getBetweenness(index) : 0.0);
+            features.set(Feature.CONNECTION_COUNT, found ? snapshot.getConnectionCount(index) : 0L);
+            features.set(Feature.TRIANGLE_COUNT, found ? snapshot.getTriangleCount(index) : 0L);
+            features.set(Feature.CLUSTERING_COEFFICIENT, found ? snapshot.getClusteringCoefficient(index) : 0.0);
+            return;
+        }
+
         if (neo4jGdsService == null) {
             // Neo4j not enabled - set default values
-            features.put("pageRank", 0.0);
-            features.put("communityId", 0L);
-            features.put("betweenness", 0.0);
-            features.put("connectionCount", 0L);
-            features.put("triangle_count", 0L);
-            features.put("clustering_coefficient", 0.0);
+            features.set(Feature.PAGE_RANK, 0.0);
+            features.set(Feature.COMMUNITY_ID, 0L);
+            features.set(Feature.BETWEENNESS, 0.0);
+            features.set(Feature.CONNECTION_COUNT, 0L);
+            features.set(Feature.TRIANGLE_COUNT, 0L);
+            features.set(Feature.CLUSTERING_COEFFICIENT, 0.0);
             return;
         }
 
@@ -90,12 +137,12 @@ public class FeatureExtractionService {
         try {
             Map<String, Object> graphMetrics = neo4jGdsService.getGraphMetrics(merchantId);
             if (graphMetrics != null) {
-                features.put("pageRank", graphMetrics.getOrDefault("pageRank", 0.0));
-                features.put("communityId", graphMetrics.getOrDefault("communityId", 0L));
-                features.put("betweenness", graphMetrics.getOrDefault("betweenness", 0.0));
-                features.put("connectionCount", graphMetrics.getOrDefault("connectionCount", 0L));
-                features.put("triangle_count", graphMetrics.getOrDefault("triangleCount", 0L));
-                features.put("clustering_coefficient", graphMetrics.getOrDefault("localClusteringCoefficient", 0.0));
+                features.set(Feature.PAGE_RANK, toNumber(graphMetrics.get("pageRank")));
+                features.set(Feature.COMMUNITY_ID, toNumber(graphMetrics.get("communityId")));
+                features.set(Feature.BETWEENNESS, toNumber(graphMetrics.get("betweenness")));
+                features.set(Feature.CONNECTION_COUNT, toNumber(graphMetrics.get("connectionCount")));
+                features.set(Feature.TRIANGLE_COUNT, toNumber(graphMetrics.get("triangleCount")));
+                features.set(Feature.CLUSTERING_COEFFICIENT, toNumber(graphMetrics.get("localClusteringCoefficient")));
                 logger.debug("Added graph features for merchant {}: pageRank={}, clustering={}", merchantId,
                         graphMetrics.get("pageRank"), graphMetrics.get("localClusteringCoefficient"));
             }
@@ -104,38 +151,87 @@ public class FeatureExtractionService {
         }
     }
 
-    private void extractTransactionFeatures(TransactionEntity transaction, Map<String, Object> features) {
+    private void extractTransactionFeatures(TransactionEntity transaction, FeatureVector features) {
         // Amount features - cache amountCents to avoid repeated method calls
         Long amountCents = transaction.getAmountCents();
         if (amountCents != null) {
             double amount = amountCents / 100.0;
-            features.put("amount", amount);
-            features.put("log_amount", Math.log(Math.max(amount, 0.01)));
+            features.set(Feature.AMOUNT, amount);
+            features.set(Feature.LOG_AMOUNT, Math.log(Math.max(amount, 0.01)));
         }
 
         // Currency - use null-safe default
         String currency = transaction.getCurrency();
-        features.put("currency", currency != null ? currency : "USD");
+        features.setText(CategoricalFeature.CURRENCY, currency != null ? currency : "USD");
 
         // Merchant features
-        features.put("merchant_id", transaction.getMerchantId());
-        features.put("terminal_id", transaction.getTerminalId());
+        features.setText(CategoricalFeature.MERCHANT_ID, transaction.getMerchantId());
+        features.setText(CategoricalFeature.TERMINAL_ID, transaction.getTerminalId());
 
         // Card BIN (first 6 digits) - extract from PAN hash if available
         String panHash = transaction.getPanHash();
         if (panHash != null && panHash.length() >= 6) {
-            features.put("card_bin_hash", panHash.substring(0, 6));
+            features.setText(CategoricalFeature.CARD_BIN_HASH, panHash.substring(0, 6));
         }
 
         // Time features
         LocalDateTime txnTime = transaction.getTxnTs();
         if (txnTime != null) {
-            features.put("txn_hour_of_day", txnTime.getHour());
-            features.put("txn_day_of_week", txnTime.getDayOfWeek().getValue());
+            features.set(Feature.TXN_HOUR_OF_DAY, txnTime.getHour());
+            features.set(Feature.TXN_DAY_OF_WEEK, txnTime.getDayOfWeek().getValue());
+        }
+    }
+
+    /**
+     * Populate behavioral and AML velocity features from the in-memory velocity engine.
+     * Returns false if the engine is not authoritative and SQL aggregates must be used.
+     */
+    private boolean extractVelocityFeatures(TransactionEntity transaction, FeatureVector features) {
+        String merchantId = transaction.getMerchantId();
+        String panHash = transaction.getPanHash();
+
+        VelocityStats merchantStats = merchantId != null ? velocityEngine.getMerchantStats(merchantId) : null;
+        VelocityStats panStats = panHash != null ? velocityEngine.getPanStats(panHash) : null;
+        if ((merchantId != null && merchantStats == null) || (panHash != null && panStats == null)) {
+            return false;
+        }
+
+        if (merchantStats != null) {
+            features.set(Feature.MERCHANT_TXN_COUNT_1H, merchantStats.getCount1h());
+            features.set(Feature.MERCHANT_TXN_AMOUNT_SUM_24H, merchantStats.getAmount24h() / 100.0);
         }
+
+        if (panStats != null) {
+            features.set(Feature.PAN_TXN_COUNT_1H, panStats.getCount1h());
+            features.set(Feature.PAN_TXN_AMOUNT_SUM_7D, panStats.getAmount7d() / 100.0);
+            features.set(Feature.DISTINCT_TERMINALS_LAST_30D_FOR_PAN, panStats.getDistinctTerminals30d());
+            features.set(Feature.AVG_AMOUNT_BY_PAN_30D, panStats.getAvgAmount30d() / 100.0);
+
+            LocalDateTime lastTxnTime = panStats.getLastSeen();
+            if (lastTxnTime != null && transaction.getTxnTs() != null) {
+                features.set(Feature.TIME_SINCE_LAST_TXN_FOR_PAN_MINUTES,
+                        ChronoUnit.MINUTES.between(lastTxnTime, transaction.getTxnTs()));
+            } else {
+                features.set(Feature.TIME_SINCE_LAST_TXN_FOR_PAN_MINUTES, -1); // New card
+            }
+
+            // Z-score of amount vs PAN history (same simplification as the SQL path)
+            Long amountCents = transaction.getAmountCents();
+            double avgAmount30d = panStats.getAvgAmount30d();
+            if (avgAmount30d > 0 && amountCents != null) {
+                double currentAmount = amountCents / 100.0;
+                double avgAmount = avgAmount30d / 100.0;
+                features.set(Feature.ZSCORE_AMOUNT_VS_PAN_HISTORY,
+                        (currentAmount - avgAmount) / Math.max(avgAmount, 1.0));
+            }
+
+            features.set(Feature.CUMULATIVE_DEBITS_30D, panStats.getAmount30d() / 100.0);
+            features.set(Feature.NUM_HIGH_VALUE_TXN_7D, panStats.getCount7d());
+        }
+        return true;
     }
 
-    private void extractBehavioralFeatures(TransactionEntity transaction, Map<String, Object> features) {
+    private void extractBehavioralFeatures(TransactionEntity transaction, FeatureVector features) {
         LocalDateTime now = LocalDateTime.now();
         LocalDateTime oneHourAgo = now.minus(1, ChronoUnit.HOURS);
         LocalDateTime twentyFourHoursAgo = now.minus(24, ChronoUnit.HOURS);
@@ -150,8 +246,8 @@ public class FeatureExtractionService {
             Long merchantAmountSum24h = transactionRepository.sumAmountByMerchantInTimeWindow(
                     merchantId, twentyFourHoursAgo, now);
 
-            features.put("merchant_txn_count_1h", merchantTxnCount1h);
-            features.put("merchant_txn_amount_sum_24h",
+            features.set(Feature.MERCHANT_TXN_COUNT_1H, merchantTxnCount1h);
+            features.set(Feature.MERCHANT_TXN_AMOUNT_SUM_24H,
                     merchantAmountSum24h != null ? merchantAmountSum24h / 100.0 : 0.0);
         }
 
@@ -166,21 +262,20 @@ public class FeatureExtractionService {
                     panHash, thirtyDaysAgo, now);
             Double avgAmount30d = transactionRepository.avgAmountByPanInTimeWindow(
                     panHash, thirtyDaysAgo, now);
-            LocalDateTime lastTxnTime = transactionRepository.findLastTransactionTimeByPan(
-                    panHash);
+            LocalDateTime lastTxnTime = panLastSeenService.findLastSeen(panHash);
 
-            features.put("pan_txn_count_1h", panTxnCount1h != null ? panTxnCount1h : 0L);
-            features.put("pan_txn_amount_sum_7d", panAmountSum7d != null ? panAmountSum7d / 100.0 : 0.0);
-            features.put("distinct_terminals_last_30d_for_pan",
+            features.set(Feature.PAN_TXN_COUNT_1H, panTxnCount1h != null ? panTxnCount1h : 0L);
+            features.set(Feature.PAN_TXN_AMOUNT_SUM_7D, panAmountSum7d != null ? panAmountSum7d / 100.0 : 0.0);
+            features.set(Feature.DISTINCT_TERMINALS_LAST_30D_FOR_PAN,
                     distinctTerminals30d != null ? distinctTerminals30d : 0L);
-            features.put("avg_amount_by_pan_30d", avgAmount30d != null ? avgAmount30d / 100.0 : 0.0);
+            features.set(Feature.AVG_AMOUNT_BY_PAN_30D, avgAmount30d != null ? avgAmount30d / 100.0 : 0.0);
 
             // Time since last transaction
             if (lastTxnTime != null && transaction.getTxnTs() != null) {
                 long minutesSince = ChronoUnit.MINUTES.between(lastTxnTime, transaction.getTxnTs());
-                features.put("time_since_last_txn_for_pan_minutes", minutesSince);
+                features.set(Feature.TIME_SINCE_LAST_TXN_FOR_PAN_MINUTES, minutesSince);
             } else {
-                features.put("time_since_last_txn_for_pan_minutes", -1); // New card
+                features.set(Feature.TIME_SINCE_LAST_TXN_FOR_PAN_MINUTES, -1); // New card
             }
 
             // Z-score of amount vs PAN history - optimize division operations
@@ -194,16 +289,16 @@ public class FeatureExtractionService {
                 // Simplified z-score (would need std dev for proper calculation)
                 double maxAvg = Math.max(avgAmount, 1.0);
                 double zScore = (currentAmount - avgAmount) / maxAvg;
-                features.put("zscore_amount_vs_pan_history", zScore);
+                features.set(Feature.ZSCORE_AMOUNT_VS_PAN_HISTORY, zScore);
             }
         }
     }
 
-    private void extractEmvFeatures(TransactionEntity transaction, Map<String, Object> features) {
+    private void extractEmvFeatures(TransactionEntity transaction, FeatureVector features) {
         if (transaction.getEmvTags() == null || transaction.getEmvTags().isEmpty()) {
-            features.put("is_chip_present", false);
-            features.put("is_contactless", false);
-            features.put("cvm_method", 0);
+            features.set(Feature.IS_CHIP_PRESENT, false);
+            features.set(Feature.IS_CONTACTLESS, false);
+            features.set(Feature.CVM_METHOD, 0);
             return;
         }
 
@@ -212,35 +307,37 @@ public class FeatureExtractionService {
             Map<String, Object> emvTags = objectMapper.readValue(transaction.getEmvTags(), Map.class);
 
             // Extract EMV-specific features
-            features.put("is_chip_present", emvTags.containsKey("9F7A") || emvTags.containsKey("95"));
-            features.put("is_contactless", emvTags.containsKey("9F6E") ||
+            features.set(Feature.IS_CHIP_PRESENT, emvTags.containsKey("9F7A") || emvTags.containsKey("95"));
+            features.set(Feature.IS_CONTACTLESS, emvTags.containsKey("9F6E") ||
                     (emvTags.containsKey("82") && emvTags.get("82").toString().contains("contactless")));
 
             // CVM method from CVMR (Tag 9F34)
             if (emvTags.containsKey("9F34")) {
-                features.put("cvm_method", parseCvmMethod(emvTags.get("9F34").toString()));
+                features.set(Feature.CVM_METHOD, parseCvmMethod(emvTags.get("9F34").toString()));
             } else {
-                features.put("cvm_method", 0);
+                features.set(Feature.CVM_METHOD, 0);
             }
 
             // AIP flags (Tag 82)
-            features.put("aip_flags", emvTags.containsKey("82") ? emvTags.get("82") : 0);
+            features.setText(CategoricalFeature.AIP_FLAGS,
+                    emvTags.containsKey("82") ? String.valueOf(emvTags.get("82")) : "0");
 
             // AID (Application ID - Tag 4F)
-            features.put("aid", emvTags.containsKey("4F") ? emvTags.get("4F") : "");
+            features.setText(CategoricalFeature.AID,
+                    emvTags.containsKey("4F") ? String.valueOf(emvTags.get("4F")) : "");
 
             // Approval code present
-            features.put("approval_code_present", emvTags.containsKey("8A"));
+            features.set(Feature.APPROVAL_CODE_PRESENT, emvTags.containsKey("8A"));
 
         } catch (Exception e) {
             logger.warn("Failed to parse EMV tags for transaction {}", transaction.getTxnId(), e);
-            features.put("is_chip_present", false);
-            features.put("is_contactless", false);
-            features.put("cvm_method", 0);
+            features.set(Feature.IS_CHIP_PRESENT, false);
+            features.set(Feature.IS_CONTACTLESS, false);
+            features.set(Feature.CVM_METHOD, 0);
         }
     }
 
-    private void extractAmlFeatures(TransactionEntity transaction, Map<String, Object> features) {
+    private void extractAmlFeatures(TransactionEntity transaction, FeatureVector features) {
         // Cache time calculations for performance
         LocalDateTime now = LocalDateTime.now();
         LocalDateTime thirtyDaysAgo = now.minus(30, ChronoUnit.DAYS);
@@ -252,15 +349,22 @@ public class FeatureExtractionService {
             // Cumulative debits/credits (simplified - would need transaction type)
             Long panAmountSum30d = transactionRepository.sumAmountByPanInTimeWindow(
                     panHash, thirtyDaysAgo, now);
-            features.put("cumulative_debits_30d", panAmountSum30d != null ? panAmountSum30d / 100.0 : 0.0);
+            features.set(Feature.CUMULATIVE_DEBITS_30D, panAmountSum30d != null ? panAmountSum30d / 100.0 : 0.0);
 
             // High value transaction count
             Long highValueCount = transactionRepository.countByPanInTimeWindow(
                     panHash, sevenDaysAgo, now);
-            features.put("num_high_value_txn_7d", highValueCount != null ? highValueCount : 0L);
+            features.set(Feature.NUM_HIGH_VALUE_TXN_7D, highValueCount != null ? highValueCount : 0L);
         }
     }
 
+    private Number toNumber(Object value) {
+        if (value instanceof Number) {
+            return (Number) value;
+        }
+        return 0;
+    }
+
     private int parseCvmMethod(Object cvmrValue) {
         // Simplified CVM parsing - CVMR is typically 3 bytes
         // This is a placeholder - actual implementation would parse CVMR properly
@@ -1,6 +1,7 @@
 package com.posgateway.aml.service;
 
 import com.posgateway.aml.entity.TransactionEntity;
+import com.posgateway.aml.features.FeatureVector;
 import com.posgateway.aml.service.DecisionEngine.DecisionResult;
 import com.posgateway.aml.service.ScoringService.ScoringResult;
 import org.slf4j.Logger;
@@ -51,7 +52,7 @@ public class FraudDetectionOrchestrator {
         long startTime = System.currentTimeMillis();
 
         // Step 1: Extract features
-        Map<String, Object> features = featureExtractionService.extractFeatures(transaction);
+        FeatureVector features = featureExtractionService.extractFeatureVector(transaction);
         logger.debug("Extracted {} features for transaction {}",
                 features.size(), transaction.getTxnId());
 
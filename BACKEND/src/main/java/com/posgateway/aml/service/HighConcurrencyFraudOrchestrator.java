@@ -1,6 +1,7 @@
 package com.posgateway.aml.service;
 
 import com.posgateway.aml.entity.TransactionEntity;
+import com.posgateway.aml.features.FeatureVector;
 import com.posgateway.aml.service.DecisionEngine.DecisionResult;
 import com.posgateway.aml.service.ScoringService.ScoringResult;
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
@@ -12,7 +13,6 @@ import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -58,7 +58,7 @@ public class HighConcurrencyFraudOrchestrator {
 
         try {
             // Step 1: Extract features (parallel if enabled)
-            Map<String, Object> features = featureExtractionService.extractFeatures(transaction);
+            FeatureVector features = featureExtractionService.extractFeatureVector(transaction);
 
             // Step 2: Score transaction
             ScoringResult scoringResult = scoringService.scoreTransaction(
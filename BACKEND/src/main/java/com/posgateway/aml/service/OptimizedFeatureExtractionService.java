@@ -2,19 +2,25 @@ package com.posgateway.aml.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.posgateway.aml.entity.TransactionEntity;
+import com.posgateway.aml.features.CategoricalFeature;
+import com.posgateway.aml.features.Feature;
+import com.posgateway.aml.features.FeatureVector;
 import com.posgateway.aml.repository.TransactionRepository;
+import com.posgateway.aml.service.velocity.VelocityEngine;
+import com.posgateway.aml.service.velocity.VelocityStats;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * Optimized Feature Extraction Service
@@ -27,15 +33,24 @@ public class OptimizedFeatureExtractionService {
 
     private final TransactionRepository transactionRepository;
     private final ObjectMapper objectMapper;
+    private final VelocityEngine velocityEngine;
+    private final Executor featureExecutor;
+    private final PanLastSeenService panLastSeenService;
 
     @Value("${throughput.parallel.feature.extraction:true}")
     private boolean parallelEnabled;
 
     @Autowired
     public OptimizedFeatureExtractionService(TransactionRepository transactionRepository,
-                                           ObjectMapper objectMapper) {
+                                           ObjectMapper objectMapper,
+                                           VelocityEngine velocityEngine,
+                                           @Qualifier("ultraFeatureExtractionExecutor") Executor featureExecutor,
+                                           PanLastSeenService panLastSeenService) {
         this.transactionRepository = transactionRepository;
         this.objectMapper = objectMapper;
+        this.velocityEngine = velocityEngine;
+        this.featureExecutor = featureExecutor;
+        this.panLastSeenService = panLastSeenService;
     }
 
     /**
@@ -43,49 +58,111 @@ public class OptimizedFeatureExtractionService {
      * Optimized for high concurrency with minimal object allocation
      */
     public Map<String, Object> extractFeatures(TransactionEntity transaction) {
-        // Pre-allocate HashMap with estimated capacity (64) to avoid resizing
-        Map<String, Object> features = new HashMap<>(64);
+        return extractFeatureVector(transaction).toMap();
+    }
+
+    /**
+     * Extract features into a typed feature vector (primitive slots, no boxing)
+     * Produced once per transaction and passed through scoring, rules and decision
+     */
+    public FeatureVector extractFeatureVector(TransactionEntity transaction) {
+        FeatureVector features = new FeatureVector();
 
         // Extract transaction-level features (fast, no I/O) - ~1ms
         extractTransactionFeatures(transaction, features);
 
+        // Behavioral + AML velocity features from in-memory counters (no I/O)
+        boolean velocityFromMemory = extractVelocityFeatures(transaction, features);
+
         // Extract behavioral features in parallel if enabled - ~5-10ms
-        if (parallelEnabled) {
-            extractBehavioralFeaturesParallel(transaction, features);
-        } else {
-            extractBehavioralFeatures(transaction, features);
+        if (!velocityFromMemory) {
+            if (parallelEnabled) {
+                extractBehavioralFeaturesParallel(transaction, features);
+            } else {
+                extractBehavioralFeatures(transaction, features);
+            }
         }
 
         // Extract EMV features (fast, no I/O) - ~1ms
         extractEmvFeatures(transaction, features);
 
         // Extract AML features - ~2-5ms
-        extractAmlFeatures(transaction, features);
+        if (!velocityFromMemory) {
+            extractAmlFeatures(transaction, features);
+        }
 
         return features;
     }
 
     /**
      * Extract features with minimal allocation (for ultra-high throughput)
-     * Reuses provided map to avoid allocation
+     * Reuses provided vector to avoid allocation
      */
-    public void extractFeaturesInto(TransactionEntity transaction, Map<String, Object> features) {
+    public void extractFeaturesInto(TransactionEntity transaction, FeatureVector features) {
+        features.clear();
         extractTransactionFeatures(transaction, features);
         
-        if (parallelEnabled) {
-            extractBehavioralFeaturesParallel(transaction, features);
-        } else {
-            extractBehavioralFeatures(transaction, features);
+        boolean velocityFromMemory = extractVelocityFeatures(transaction, features);
+        if (!velocityFromMemory) {
+            if (parallelEnabled) {
+                extractBehavioralFeaturesParallel(transaction, features);
+            } else {
+                extractBehavioralFeatures(transaction, features);
+            }
         }
         
         extractEmvFeatures(transaction, features);
-        extractAmlFeatures(transaction, features);
+        if (!velocityFromMemory) {
+            extractAmlFeatures(transaction, features);
+        }
+    }
+
+    /**
+     * Populate behavioral and AML velocity features from the in-memory velocity engine
+     * 
+     * @return false if the engine is not authoritative and SQL aggregates must be used
+     */
+    private boolean extractVelocityFeatures(TransactionEntity transaction, FeatureVector features) {
+        String merchantId = transaction.getMerchantId();
+        String panHash = transaction.getPanHash();
+
+        VelocityStats merchantStats = merchantId != null ? velocityEngine.getMerchantStats(merchantId) : null;
+        VelocityStats panStats = panHash != null ? velocityEngine.getPanStats(panHash) : null;
+        if ((merchantId != null && merchantStats == null) || (panHash != null && panStats == null)) {
+            return false;
+        }
+
+        if (merchantStats != null) {
+            features.set(Feature.MERCHANT_TXN_COUNT_1H, merchantStats.getCount1h());
+            features.set(Feature.MERCHANT_TXN_AMOUNT_SUM_24H, merchantStats.getAmount24h() / 100.0);
+        }
+
+        if (panStats != null) {
+            features.set(Feature.PAN_TXN_COUNT_1H, panStats.getCount1h());
+            features.set(Feature.PAN_TXN_AMOUNT_SUM_7D, panStats.getAmount7d() / 100.0);
+            features.set(Feature.DISTINCT_TERMINALS_LAST_30D_FOR_PAN, panStats.getDistinctTerminals30d());
+            features.set(Feature.AVG_AMOUNT_BY_PAN_30D, panStats.getAvgAmount30d() / 100.0);
+
+            LocalDateTime lastTxn = panStats.getLastSeen();
+            if (lastTxn != null && transaction.getTxnTs() != null) {
+                features.set(Feature.TIME_SINCE_LAST_TXN_FOR_PAN_MINUTES,
+                    ChronoUnit.MINUTES.between(lastTxn, transaction.getTxnTs()));
+            } else {
+                features.set(Feature.TIME_SINCE_LAST_TXN_FOR_PAN_MINUTES, -1);
+            }
+
+            features.set(Feature.CUMULATIVE_DEBITS_30D, panStats.getAmount30d() / 100.0);
+            features.set(Feature.NUM_HIGH_VALUE_TXN_7D, panStats.getCount7d());
+        }
+        return true;
     }
 
     /**
      * Extract behavioral features in parallel
+     * Queries block on JDBC, so they run on the feature executor rather than the
+     * common ForkJoinPool (which is sized for CPU-bound work)
      */
-    private void extractBehavioralFeaturesParallel(TransactionEntity transaction, Map<String, Object> features) {
+    private void extractBehavioralFeaturesParallel(TransactionEntity transaction, FeatureVector features) {
         LocalDateTime now = LocalDateTime.now();
         LocalDateTime oneHourAgo = now.minus(1, ChronoUnit.HOURS);
         LocalDateTime twentyFourHoursAgo = now.minus(24, ChronoUnit.HOURS);
@@ -106,54 +183,54 @@ public class OptimizedFeatureExtractionService {
 
         if (merchantId != null) {
             merchantCountFuture = CompletableFuture.supplyAsync(() ->
-                transactionRepository.countByMerchantInTimeWindow(merchantId, oneHourAgo, now));
+                transactionRepository.countByMerchantInTimeWindow(merchantId, oneHourAgo, now), featureExecutor);
             merchantAmountFuture = CompletableFuture.supplyAsync(() ->
-                transactionRepository.sumAmountByMerchantInTimeWindow(merchantId, twentyFourHoursAgo, now));
+                transactionRepository.sumAmountByMerchantInTimeWindow(merchantId, twentyFourHoursAgo, now), featureExecutor);
         }
 
         if (panHash != null) {
             panCountFuture = CompletableFuture.supplyAsync(() ->
-                transactionRepository.countByPanInTimeWindow(panHash, oneHourAgo, now));
+                transactionRepository.countByPanInTimeWindow(panHash, oneHourAgo, now), featureExecutor);
             panAmountFuture = CompletableFuture.supplyAsync(() ->
-                transactionRepository.sumAmountByPanInTimeWindow(panHash, sevenDaysAgo, now));
+                transactionRepository.sumAmountByPanInTimeWindow(panHash, sevenDaysAgo, now), featureExecutor);
             distinctTerminalsFuture = CompletableFuture.supplyAsync(() ->
-                transactionRepository.countDistinctTerminalsByPan(panHash, thirtyDaysAgo, now));
+                transactionRepository.countDistinctTerminalsByPan(panHash, thirtyDaysAgo, now), featureExecutor);
             avgAmountFuture = CompletableFuture.supplyAsync(() ->
-                transactionRepository.avgAmountByPanInTimeWindow(panHash, thirtyDaysAgo, now));
+                transactionRepository.avgAmountByPanInTimeWindow(panHash, thirtyDaysAgo, now), featureExecutor);
             lastTxnFuture = CompletableFuture.supplyAsync(() ->
-                transactionRepository.findLastTransactionTimeByPan(panHash));
+                panLastSeenService.findLastSeen(panHash), featureExecutor);
         }
 
         // Wait for all futures and populate features
         try {
             if (merchantCountFuture != null) {
-                features.put("merchant_txn_count_1h", merchantCountFuture.get());
+                features.set(Feature.MERCHANT_TXN_COUNT_1H, merchantCountFuture.get());
             }
             if (merchantAmountFuture != null) {
                 Long amount = merchantAmountFuture.get();
-                features.put("merchant_txn_amount_sum_24h", amount != null ? amount / 100.0 : 0.0);
+                features.set(Feature.MERCHANT_TXN_AMOUNT_SUM_24H, amount != null ? amount / 100.0 : 0.0);
             }
             if (panCountFuture != null) {
-                features.put("pan_txn_count_1h", panCountFuture.get());
+                features.set(Feature.PAN_TXN_COUNT_1H, panCountFuture.get());
             }
             if (panAmountFuture != null) {
                 Long amount = panAmountFuture.get();
-                features.put("pan_txn_amount_sum_7d", amount != null ? amount / 100.0 : 0.0);
+                features.set(Feature.PAN_TXN_AMOUNT_SUM_7D, amount != null ? amount / 100.0 : 0.0);
             }
             if (distinctTerminalsFuture != null) {
-                features.put("distinct_terminals_last_30d_for_pan", distinctTerminalsFuture.get());
+                features.set(Feature.DISTINCT_TERMINALS_LAST_30D_FOR_PAN, distinctTerminalsFuture.get());
             }
             if (avgAmountFuture != null) {
                 Double avg = avgAmountFuture.get();
-                features.put("avg_amount_by_pan_30d", avg != null ? avg / 100.0 : 0.0);
+                features.set(Feature.AVG_AMOUNT_BY_PAN_30D, avg != null ? avg / 100.0 : 0.0);
             }
             if (lastTxnFuture != null && transaction.getTxnTs() != null) {
                 LocalDateTime lastTxn = lastTxnFuture.get();
                 if (lastTxn != null) {
                     long minutesSince = ChronoUnit.MINUTES.between(lastTxn, transaction.getTxnTs());
-                    features.put("time_since_last_txn_for_pan_minutes", minutesSince);
+                    features.set(Feature.TIME_SINCE_LAST_TXN_FOR_PAN_MINUTES, minutesSince);
                 } else {
-                    features.put("time_since_last_txn_for_pan_minutes", -1);
+                    features.set(Feature.TIME_SINCE_LAST_TXN_FOR_PAN_MINUTES, -1);
                 }
             }
         } catch (Exception e) {
@@ -180,30 +257,30 @@ public class OptimizedFeatureExtractionService {
     }
 
     // Delegate to original FeatureExtractionService methods
-    private void extractTransactionFeatures(TransactionEntity transaction, Map<String, Object> features) {
+    private void extractTransactionFeatures(TransactionEntity transaction, FeatureVector features) {
         Long amountCents = transaction.getAmountCents();
         if (amountCents != null) {
             double amount = amountCents / 100.0;
-            features.put("amount", amount);
-            features.put("log_amount", Math.log(Math.max(amount, 0.01)));
+            features.set(Feature.AMOUNT, amount);
+            features.set(Feature.LOG_AMOUNT, Math.log(Math.max(amount, 0.01)));
         }
-        features.put("currency", transaction.getCurrency() != null ? transaction.getCurrency() : "USD");
-        features.put("merchant_id", transaction.getMerchantId());
-        features.put("terminal_id", transaction.getTerminalId());
+        features.setText(CategoricalFeature.CURRENCY, transaction.getCurrency() != null ? transaction.getCurrency() : "USD");
+        features.setText(CategoricalFeature.MERCHANT_ID, transaction.getMerchantId());
+        features.setText(CategoricalFeature.TERMINAL_ID, transaction.getTerminalId());
         
         String panHash = transaction.getPanHash();
         if (panHash != null && panHash.length() >= 6) {
-            features.put("card_bin_hash", panHash.substring(0, 6));
+            features.setText(CategoricalFeature.CARD_BIN_HASH, panHash.substring(0, 6));
         }
         
         LocalDateTime txnTime = transaction.getTxnTs();
         if (txnTime != null) {
-            features.put("txn_hour_of_day", txnTime.getHour());
-            features.put("txn_day_of_week", txnTime.getDayOfWeek().getValue());
+            features.set(Feature.TXN_HOUR_OF_DAY, txnTime.getHour());
+            features.set(Feature.TXN_DAY_OF_WEEK, txnTime.getDayOfWeek().getValue());
         }
     }
 
-    private void extractBehavioralFeatures(TransactionEntity transaction, Map<String, Object> features) {
+    private void extractBehavioralFeatures(TransactionEntity transaction, FeatureVector features) {
         // Direct queries for sequential fallback
         LocalDateTime now = LocalDateTime.now();
         LocalDateTime oneHourAgo = now.minus(1, ChronoUnit.HOURS);
@@ -213,61 +290,63 @@ public class OptimizedFeatureExtractionService {
 
         String merchantId = transaction.getMerchantId();
         if (merchantId != null) {
-            features.put("merchant_txn_count_1h", 
+            features.set(Feature.MERCHANT_TXN_COUNT_1H, 
                 transactionRepository.countByMerchantInTimeWindow(merchantId, oneHourAgo, now));
             Long amount = transactionRepository.sumAmountByMerchantInTimeWindow(merchantId, twentyFourHoursAgo, now);
-            features.put("merchant_txn_amount_sum_24h", amount != null ? amount / 100.0 : 0.0);
+            features.set(Feature.MERCHANT_TXN_AMOUNT_SUM_24H, amount != null ? amount / 100.0 : 0.0);
         }
 
         String panHash = transaction.getPanHash();
         if (panHash != null) {
-            features.put("pan_txn_count_1h", 
+            features.set(Feature.PAN_TXN_COUNT_1H, 
                 transactionRepository.countByPanInTimeWindow(panHash, oneHourAgo, now));
             Long amount = transactionRepository.sumAmountByPanInTimeWindow(panHash, sevenDaysAgo, now);
-            features.put("pan_txn_amount_sum_7d", amount != null ? amount / 100.0 : 0.0);
-            features.put("distinct_terminals_last_30d_for_pan",
+            features.set(Feature.PAN_TXN_AMOUNT_SUM_7D, amount != null ? amount / 100.0 : 0.0);
+            features.set(Feature.DISTINCT_TERMINALS_LAST_30D_FOR_PAN,
                 transactionRepository.countDistinctTerminalsByPan(panHash, thirtyDaysAgo, now));
             Double avg = transactionRepository.avgAmountByPanInTimeWindow(panHash, thirtyDaysAgo, now);
-            features.put("avg_amount_by_pan_30d", avg != null ? avg / 100.0 : 0.0);
+            features.set(Feature.AVG_AMOUNT_BY_PAN_30D, avg != null ? avg / 100.0 : 0.0);
             
-            LocalDateTime lastTxn = transactionRepository.findLastTransactionTimeByPan(panHash);
+            LocalDateTime lastTxn = panLastSeenService.findLastSeen(panHash);
             if (lastTxn != null && transaction.getTxnTs() != null) {
                 long minutesSince = ChronoUnit.MINUTES.between(lastTxn, transaction.getTxnTs());
-                features.put("time_since_last_txn_for_pan_minutes", minutesSince);
+                features.set(Feature.TIME_SINCE_LAST_TXN_FOR_PAN_MINUTES, minutesSince);
             } else {
-                features.put("time_since_last_txn_for_pan_minutes", -1);
+                features.set(Feature.TIME_SINCE_LAST_TXN_FOR_PAN_MINUTES, -1);
             }
         }
     }
 
-    private void extractEmvFeatures(TransactionEntity transaction, Map<String, Object> features) {
+    private void extractEmvFeatures(TransactionEntity transaction, FeatureVector features) {
         if (transaction.getEmvTags() == null || transaction.getEmvTags().isEmpty()) {
-            features.put("is_chip_present", false);
-            features.put("is_contactless", false);
-            features.put("cvm_method", 0);
+            features.set(Feature.IS_CHIP_PRESENT, false);
+            features.set(Feature.IS_CONTACTLESS, false);
+            features.set(Feature.CVM_METHOD, 0);
             return;
         }
 
         try {
             @SuppressWarnings("unchecked")
             Map<String, Object> emvTags = objectMapper.readValue(transaction.getEmvTags(), Map.class);
-            features.put("is_chip_present", emvTags.containsKey("9F7A") || emvTags.containsKey("95"));
-            features.put("is_contactless", emvTags.containsKey("9F6E") || 
+            features.set(Feature.IS_CHIP_PRESENT, emvTags.containsKey("9F7A") || emvTags.containsKey("95"));
+            features.set(Feature.IS_CONTACTLESS, emvTags.containsKey("9F6E") || 
                         (emvTags.containsKey("82") && emvTags.get("82").toString().contains("contactless")));
-            features.put("cvm_method", emvTags.containsKey("9F34") ? 
+            features.set(Feature.CVM_METHOD, emvTags.containsKey("9F34") ? 
                 parseCvmMethod(emvTags.get("9F34").toString()) : 0);
-            features.put("aip_flags", emvTags.containsKey("82") ? emvTags.get("82") : 0);
-            features.put("aid", emvTags.containsKey("4F") ? emvTags.get("4F") : "");
-            features.put("approval_code_present", emvTags.containsKey("8A"));
+            features.setText(CategoricalFeature.AIP_FLAGS,
+                emvTags.containsKey("82") ? String.valueOf(emvTags.get("82")) : "0");
+            features.setText(CategoricalFeature.AID,
+                emvTags.containsKey("4F") ? String.valueOf(emvTags.get("4F")) : "");
+            features.set(Feature.APPROVAL_CODE_PRESENT, emvTags.containsKey("8A"));
         } catch (Exception e) {
             logger.warn("Failed to parse EMV tags", e);
-            features.put("is_chip_present", false);
-            features.put("is_contactless", false);
-            features.put("cvm_method", 0);
+            features.set(Feature.IS_CHIP_PRESENT, false);
+            features.set(Feature.IS_CONTACTLESS, false);
+            features.set(Feature.CVM_METHOD, 0);
         }
     }
 
-    private void extractAmlFeatures(TransactionEntity transaction, Map<String, Object> features) {
+    private void extractAmlFeatures(TransactionEntity transaction, FeatureVector features) {
         LocalDateTime now = LocalDateTime.now();
         LocalDateTime thirtyDaysAgo = now.minus(30, ChronoUnit.DAYS);
         LocalDateTime sevenDaysAgo = now.minus(7, ChronoUnit.DAYS);
@@ -275,8 +354,8 @@ public class OptimizedFeatureExtractionService {
         String panHash = transaction.getPanHash();
         if (panHash != null) {
             Long amount = transactionRepository.sumAmountByPanInTimeWindow(panHash, thirtyDaysAgo, now);
-            features.put("cumulative_debits_30d", amount != null ? amount / 100.0 : 0.0);
-            features.put("num_high_value_txn_7d",
+            features.set(Feature.CUMULATIVE_DEBITS_30D, amount != null ? amount / 100.0 : 0.0);
+            features.set(Feature.NUM_HIGH_VALUE_TXN_7D,
                 transactionRepository.countByPanInTimeWindow(panHash, sevenDaysAgo, now));
         }
     }
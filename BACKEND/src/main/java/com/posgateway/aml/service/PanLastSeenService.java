@@ -0,0 +1,189 @@
+package com.posgateway.aml.service;
+
+import com.posgateway.aml.entity.TransactionEntity;
+import com.posgateway.aml.repository.TransactionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * PAN Last Seen Service
+ * Time of the latest transaction of every PAN (pan_last_seen, V116), the basis of
+ * TIME_SINCE_LAST_TXN_FOR_PAN_MINUTES.
+ *
+ * The previous transaction of a card can be arbitrarily old, so it is not looked up in the
+ * partitioned transactions table, where an unbounded search probes every month. The table
+ * is upserted once an ingested transaction commits, and filled from the existing
+ * transactions by a background backfill in checkpointed txn_id batches; until the
+ * backfill has completed, lookups read transactions directly.
+ */
+@Service
+public class PanLastSeenService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PanLastSeenService.class);
+
+    private static final String BUILT = "BUILT";
+
+    private static final String UPSERT_SQL = "INSERT INTO pan_last_seen (pan_hash, last_txn_ts) VALUES (?, ?) "
+            + "ON CONFLICT (pan_hash) DO UPDATE SET last_txn_ts = EXCLUDED.last_txn_ts "
+            + "WHERE pan_last_seen.last_txn_ts < EXCLUDED.last_txn_ts";
+    private static final String BACKFILL_SQL = "INSERT INTO pan_last_seen (pan_hash, last_txn_ts) "
+            + "SELECT pan_hash, MAX(txn_ts) FROM transactions WHERE txn_id > ? AND txn_id <= ? "
+            + "AND pan_hash IS NOT NULL AND txn_ts IS NOT NULL GROUP BY pan_hash "
+            + "ON CONFLICT (pan_hash) DO UPDATE SET last_txn_ts = EXCLUDED.last_txn_ts "
+            + "WHERE pan_last_seen.last_txn_ts < EXCLUDED.last_txn_ts";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionRepository transactionRepository;
+
+    /** Set once the backfill is known to be complete; it never goes back */
+    private volatile boolean built;
+
+    @Value("${features.pan.last.seen.backfill.on.startup:true}")
+    private boolean backfillOnStartup;
+
+    @Value("${features.pan.last.seen.backfill.batch.size:100000}")
+    private long batchSize;
+
+    @Autowired
+    public PanLastSeenService(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+            TransactionRepository transactionRepository) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.transactionRepository = transactionRepository;
+    }
+
+    /**
+     * Time of the latest transaction of a PAN, or null if it has none
+     */
+    public LocalDateTime findLastSeen(String panHash) {
+        if (!isBuilt()) {
+            return transactionRepository.findLastTransactionTimeByPan(panHash);
+        }
+        List<Timestamp> lastSeen = jdbcTemplate.queryForList(
+                "SELECT last_txn_ts FROM pan_last_seen WHERE pan_hash = ?", Timestamp.class, panHash);
+        return lastSeen.isEmpty() ? null : lastSeen.get(0).toLocalDateTime();
+    }
+
+    /**
+     * Record ingested transactions once the current database transaction commits
+     */
+    public void record(List<TransactionEntity> transactions) {
+        // Latest time per PAN, in key order so concurrent batches lock rows in the same order
+        Map<String, LocalDateTime> latest = new TreeMap<>();
+        for (TransactionEntity transaction : transactions) {
+            if (transaction.getPanHash() != null && transaction.getTxnTs() != null) {
+                latest.merge(transaction.getPanHash(), transaction.getTxnTs(),
+                        (a, b) -> a.isAfter(b) ? a : b);
+            }
+        }
+        if (latest.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    upsert(latest);
+                }
+            });
+        } else {
+            upsert(latest);
+        }
+    }
+
+    private void upsert(Map<String, LocalDateTime> latest) {
+        List<Object[]> rows = new ArrayList<>(latest.size());
+        latest.forEach((panHash, txnTs) -> rows.add(new Object[] { panHash, Timestamp.valueOf(txnTs) }));
+        try {
+            jdbcTemplate.batchUpdate(UPSERT_SQL, rows);
+        } catch (Exception e) {
+            // The transaction is committed; a missed update only ages the PAN's last-seen time
+            logger.warn("Could not update pan_last_seen for {} PANs: {}", rows.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * Fill pan_last_seen from the existing transactions, the first time the application
+     * starts with it
+     *
+     * Batches follow the shared checkpoint up to the current highest txn_id, so several
+     * nodes take turns instead of repeating each other's work.
+     */
+    @Async("backgroundTaskExecutor")
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfNotBuilt() {
+        if (!backfillOnStartup || isBuilt()) {
+            return;
+        }
+        try {
+            backfill();
+        } catch (Exception e) {
+            logger.error("pan_last_seen backfill failed: {}", e.getMessage(), e);
+        }
+    }
+
+    void backfill() {
+        long start = System.currentTimeMillis();
+        long batches = 0;
+        Boolean more;
+        do {
+            more = transactionTemplate.execute(status -> backfillBatch());
+            batches++;
+        } while (Boolean.TRUE.equals(more));
+        logger.info("pan_last_seen backfill finished after {} batches in {}ms", batches,
+                System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Aggregate the next txn_id range into pan_last_seen and advance the checkpoint
+     *
+     * @return true while there is more to do
+     */
+    private Boolean backfillBatch() {
+        Map<String, Object> state = jdbcTemplate.queryForMap(
+                "SELECT status, backfilled_up_to_txn_id FROM pan_last_seen_backfill WHERE id = 1 FOR UPDATE");
+        if (BUILT.equals(state.get("status"))) {
+            built = true;
+            return false;
+        }
+        long from = ((Number) state.get("backfilled_up_to_txn_id")).longValue();
+        Long highest = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(txn_id), 0) FROM transactions", Long.class);
+        long highWater = highest != null ? highest : 0L;
+        if (from >= highWater) {
+            jdbcTemplate.update("UPDATE pan_last_seen_backfill SET status = ?, built_at = now() WHERE id = 1", BUILT);
+            built = true;
+            return false;
+        }
+        long to = Math.min(from + batchSize, highWater);
+        jdbcTemplate.update(BACKFILL_SQL, from, to);
+        jdbcTemplate.update("UPDATE pan_last_seen_backfill SET backfilled_up_to_txn_id = ? WHERE id = 1", to);
+        return true;
+    }
+
+    boolean isBuilt() {
+        if (!built) {
+            List<String> status = jdbcTemplate.queryForList(
+                    "SELECT status FROM pan_last_seen_backfill WHERE id = 1", String.class);
+            built = !status.isEmpty() && BUILT.equals(status.get(0));
+        }
+        return built;
+    }
+}
@@ -0,0 +1,316 @@
+package com.posgateway.aml.service;
+
+import com.posgateway.aml.entity.TransactionEntity;
+import com.posgateway.aml.service.HighConcurrencyFraudOrchestrator.FraudDetectionResult;
+import com.posgateway.aml.service.psp.WebhookService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request Buffer Drain Service
+ * Worker threads that empty the RequestBufferingService overflow buffer.
+ *
+ * Each worker takes up to ultra.throughput.batch.processing.size requests, ingests them
+ * in one transaction through TransactionIngestionService (same enrichment and feeds as the
+ * synchronous path), scores the batch through HighConcurrencyFraudOrchestrator and
+ * publishes the results as TRANSACTION_SCORED webhooks, since the original callers
+ * already received 202 Accepted with a request ID.
+ *
+ * Results are grouped by PSP and each group is sent only to that PSP's subscriptions.
+ * Transactions without a PSP (unknown merchant) have no subscriber and are not sent.
+ *
+ * If a batch fails to ingest, its requests are ingested one by one so a bad row does not
+ * take the rest with it; requests that still fail go to request_buffer_dead_letters.
+ * Transactions still scoring at ultra.throughput.drain.scoring.timeout.ms are not
+ * abandoned: their results are sent on their own once they complete.
+ */
+@Service
+public class RequestBufferDrainService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RequestBufferDrainService.class);
+
+    static final String RESULT_EVENT_TYPE = "TRANSACTION_SCORED";
+
+    private final RequestBufferingService requestBufferingService;
+    private final TransactionIngestionService ingestionService;
+    private final HighConcurrencyFraudOrchestrator highConcurrencyOrchestrator;
+    private final WebhookService webhookService;
+    private final MeterRegistry meterRegistry;
+    private final JdbcTemplate jdbcTemplate;
+
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running = false;
+
+    private Counter drainedCounter;
+    private Counter failedCounter;
+    private Counter deadLetteredCounter;
+    private Timer batchTimer;
+
+    @Value("${ultra.throughput.drain.workers:2}")
+    private int workerCount;
+
+    @Value("${ultra.throughput.drain.poll.timeout.ms:100}")
+    private long pollTimeoutMs;
+
+    @Value("${ultra.throughput.drain.scoring.timeout.ms:30000}")
+    private long scoringTimeoutMs;
+
+    @Autowired
+    public RequestBufferDrainService(RequestBufferingService requestBufferingService,
+            TransactionIngestionService ingestionService,
+            HighConcurrencyFraudOrchestrator highConcurrencyOrchestrator,
+            WebhookService webhookService,
+            MeterRegistry meterRegistry,
+            JdbcTemplate jdbcTemplate) {
+        this.requestBufferingService = requestBufferingService;
+        this.ingestionService = ingestionService;
+        this.highConcurrencyOrchestrator = highConcurrencyOrchestrator;
+        this.webhookService = webhookService;
+        this.meterRegistry = meterRegistry;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void init() {
+        drainedCounter = Counter.builder("aml_request_buffer_drained_total")
+                .tag("result", "success")
+                .description("Buffered requests drained, ingested and scored")
+                .register(meterRegistry);
+        failedCounter = Counter.builder("aml_request_buffer_drained_total")
+                .tag("result", "failure")
+                .description("Buffered requests drained, ingested and scored")
+                .register(meterRegistry);
+        deadLetteredCounter = Counter.builder("aml_request_buffer_dead_letters_total")
+                .description("Buffered requests that could not be ingested and were dead-lettered")
+                .register(meterRegistry);
+        batchTimer = Timer.builder("aml_request_buffer_drain_batch_latency")
+                .description("Time to ingest and score one drained batch")
+                .register(meterRegistry);
+
+        if (workerCount <= 0) {
+            logger.info("Request buffer drain disabled (ultra.throughput.drain.workers={})", workerCount);
+            return;
+        }
+
+        running = true;
+        for (int i = 1; i <= workerCount; i++) {
+            Thread worker = new Thread(this::drainLoop, "request-buffer-drain-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+        logger.info("Request buffer drain started with {} workers (batchSize={})", workerCount,
+                requestBufferingService.getBatchProcessingSize());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        for (Thread worker : workers) {
+            try {
+                // Let the current batch finish; idle workers wake up within the poll timeout
+                worker.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        int remaining = requestBufferingService.getBufferSize();
+        if (remaining > 0) {
+            logger.warn("Request buffer drain stopped with {} requests still buffered", remaining);
+        }
+    }
+
+    private void drainLoop() {
+        int batchSize = requestBufferingService.getBatchProcessingSize();
+        while (running) {
+            try {
+                List<TransactionIngestionService.TransactionRequest> batch =
+                        requestBufferingService.pollRequests(batchSize, pollTimeoutMs, TimeUnit.MILLISECONDS);
+                if (!batch.isEmpty()) {
+                    batchTimer.record(() -> processBatch(batch));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                logger.error("Unexpected error in request buffer drain: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    void processBatch(List<TransactionIngestionService.TransactionRequest> batch) {
+        List<TransactionIngestionService.TransactionRequest> ingested = new ArrayList<>(batch.size());
+        List<TransactionEntity> transactions = ingest(batch, ingested);
+        if (transactions.isEmpty()) {
+            return;
+        }
+
+        // Saved entities come back in request order
+        Map<Long, String> requestIds = new HashMap<>();
+        Map<Long, Long> pspIds = new HashMap<>();
+        for (int i = 0; i < transactions.size(); i++) {
+            TransactionEntity transaction = transactions.get(i);
+            requestIds.put(transaction.getTxnId(), ingested.get(i).getRequestId());
+            pspIds.put(transaction.getTxnId(), transaction.getPspId());
+        }
+
+        List<CompletableFuture<FraudDetectionResult>> futures =
+                highConcurrencyOrchestrator.processTransactionsParallel(transactions);
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                    .get(scoringTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.warn("Scoring of buffered batch incomplete: {}", e.getMessage());
+        }
+
+        Map<Long, List<Map<String, Object>>> resultsByPsp = new HashMap<>();
+        int scored = 0;
+        int failed = 0;
+        int pending = 0;
+        int withoutPsp = 0;
+        for (CompletableFuture<FraudDetectionResult> future : futures) {
+            if (!future.isDone()) {
+                // Delivered on its own once it completes, rather than abandoned
+                pending++;
+                future.whenComplete((result, error) -> deliverLate(result, error, requestIds, pspIds));
+                continue;
+            }
+            if (future.isCompletedExceptionally()) {
+                failed++;
+                continue;
+            }
+            FraudDetectionResult result = future.join();
+            scored++;
+            Long pspId = pspIds.get(result.getTxnId());
+            if (pspId == null) {
+                withoutPsp++;
+                continue;
+            }
+            resultsByPsp.computeIfAbsent(pspId, id -> new ArrayList<>()).add(resultEntry(result, requestIds));
+        }
+
+        drainedCounter.increment(scored);
+        if (failed > 0) {
+            failedCounter.increment(failed);
+            logger.warn("{} of {} buffered transactions were not scored", failed, futures.size());
+        }
+        if (pending > 0) {
+            logger.warn("{} of {} buffered transactions still scoring after {}ms - results follow when done",
+                    pending, futures.size(), scoringTimeoutMs);
+        }
+        if (withoutPsp > 0) {
+            logger.warn("{} buffered transactions have no PSP - results not sent", withoutPsp);
+        }
+
+        resultsByPsp.forEach(this::sendResults);
+        logger.debug("Drained {} buffered transactions ({} scored, {} PSPs notified)", batch.size(), scored,
+                resultsByPsp.size());
+    }
+
+    /**
+     * Ingest a batch in one transaction; if that fails, ingest each request on its own so
+     * only the bad rows are lost, and dead-letter those
+     *
+     * @param ingested filled with the requests of the returned entities, in the same order
+     */
+    private List<TransactionEntity> ingest(List<TransactionIngestionService.TransactionRequest> batch,
+            List<TransactionIngestionService.TransactionRequest> ingested) {
+        try {
+            List<TransactionEntity> transactions = ingestionService.ingestTransactions(batch);
+            ingested.addAll(batch);
+            return transactions;
+        } catch (Exception e) {
+            logger.warn("Failed to ingest {} buffered transactions as a batch, retrying one by one: {}",
+                    batch.size(), e.getMessage());
+        }
+        List<TransactionEntity> transactions = new ArrayList<>(batch.size());
+        for (TransactionIngestionService.TransactionRequest request : batch) {
+            try {
+                transactions.add(ingestionService.ingestTransaction(request));
+                ingested.add(request);
+            } catch (Exception e) {
+                failedCounter.increment();
+                logger.error("Failed to ingest buffered transaction {}: {}", request.getRequestId(), e.getMessage(), e);
+                deadLetter(request, e);
+            }
+        }
+        return transactions;
+    }
+
+    private void deadLetter(TransactionIngestionService.TransactionRequest request, Exception error) {
+        try {
+            jdbcTemplate.update("INSERT INTO request_buffer_dead_letters (request_id, merchant_id, terminal_id, "
+                    + "amount_cents, currency, txn_ts, error) VALUES (?, ?, ?, ?, ?, ?, ?)",
+                    request.getRequestId(), request.getMerchantId(), request.getTerminalId(),
+                    request.getAmountCents(), request.getCurrency(),
+                    request.getTxnTs() != null ? Timestamp.valueOf(request.getTxnTs()) : null,
+                    String.valueOf(error.getMessage()));
+            deadLetteredCounter.increment();
+        } catch (Exception e) {
+            logger.error("Could not dead-letter buffered transaction {} (merchant {}): {}", request.getRequestId(),
+                    request.getMerchantId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Result of a transaction that was still scoring when its batch timed out
+     */
+    private void deliverLate(FraudDetectionResult result, Throwable error, Map<Long, String> requestIds,
+            Map<Long, Long> pspIds) {
+        if (error != null || result == null) {
+            failedCounter.increment();
+            logger.warn("Late scoring of buffered transaction failed: {}",
+                    error != null ? error.getMessage() : "no result");
+            return;
+        }
+        drainedCounter.increment();
+        Long pspId = pspIds.get(result.getTxnId());
+        if (pspId == null) {
+            return;
+        }
+        List<Map<String, Object>> results = new ArrayList<>(1);
+        results.add(resultEntry(result, requestIds));
+        sendResults(pspId, results);
+    }
+
+    private void sendResults(Long pspId, List<Map<String, Object>> results) {
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("psp_id", pspId);
+        payload.put("results", results);
+        webhookService.sendWebhook(RESULT_EVENT_TYPE, pspId, payload);
+    }
+
+    private static Map<String, Object> resultEntry(FraudDetectionResult result, Map<Long, String> requestIds) {
+        Map<String, Object> entry = new HashMap<>();
+        entry.put("request_id", requestIds.get(result.getTxnId()));
+        entry.put("txn_id", result.getTxnId());
+        entry.put("score", result.getScore());
+        entry.put("action", result.getAction());
+        entry.put("reasons", result.getReasons());
+        entry.put("latency_ms", result.getLatencyMs());
+        return entry;
+    }
+}
@@ -2,22 +2,30 @@ package com.posgateway.aml.service;
 
 
 
-import com.posgateway.aml.dto.TransactionRequestDTO;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Request Buffering Service
  * Buffers requests for batch processing to handle 30K+ concurrent requests
+ *
+ * Requests are buffered before ingestion and drained in batches by
+ * RequestBufferDrainService. Each entry keeps its enqueue time so the age of the
+ * oldest waiting request can be exported.
  */
 // @RequiredArgsConstructor removed
 @Service
@@ -25,7 +33,9 @@ public class RequestBufferingService {
 
     private static final Logger logger = LoggerFactory.getLogger(RequestBufferingService.class);
 
-    private BlockingQueue<TransactionRequestDTO> requestBuffer;
+    private final MeterRegistry meterRegistry;
+
+    private BlockingQueue<BufferedRequest> requestBuffer;
     private final AtomicInteger bufferSize = new AtomicInteger(0);
 
     @Value("${ultra.throughput.request.buffer.size:50000}")
@@ -34,26 +44,45 @@ public class RequestBufferingService {
     @Value("${ultra.throughput.batch.processing.size:500}")
     private int batchProcessingSize;
 
+    @Autowired
+    public RequestBufferingService(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
     @PostConstruct
     public void init() {
         // Initialize LinkedBlockingQueue after @Value injection
         this.requestBuffer = new LinkedBlockingQueue<>(bufferSizeLimit);
+
+        Gauge.builder("aml_request_buffer_depth", bufferSize, AtomicInteger::get)
+                .description("Transaction requests waiting in the overflow buffer")
+                .register(meterRegistry);
+        Gauge.builder("aml_request_buffer_oldest_age_seconds", this,
+                        service -> service.getOldestRequestAgeMillis() / 1000.0)
+                .description("Time the oldest buffered request has been waiting")
+                .register(meterRegistry);
+
         logger.info("RequestBufferingService initialized with buffer size: {}", bufferSizeLimit);
     }
 
     /**
      * Add request to buffer
-     * 
-     * @param request Transaction request
+     *
+     * @param request Transaction request (not yet ingested)
      * @return true if added, false if buffer full
      */
-    public boolean addRequest(TransactionRequestDTO request) {
+    public boolean addRequest(TransactionIngestionService.TransactionRequest request) {
         if (bufferSize.get() >= bufferSizeLimit) {
             logger.warn("Request buffer full, rejecting request");
             return false;
         }
 
-        boolean added = requestBuffer.offer(request);
+        // Keep the receipt time, not the time the buffer is drained
+        if (request.getTxnTs() == null) {
+            request.setTxnTs(LocalDateTime.now());
+        }
+
+        boolean added = requestBuffer.offer(new BufferedRequest(request, System.nanoTime()));
         if (added) {
             bufferSize.incrementAndGet();
         }
@@ -62,20 +91,20 @@ public class RequestBufferingService {
 
     /**
      * Poll requests from buffer for batch processing
-     * 
+     *
      * @param maxSize Maximum number of requests to poll
      * @return List of requests
      */
-    public List<TransactionRequestDTO> pollRequests(int maxSize) {
-        List<TransactionRequestDTO> requests = new ArrayList<>(maxSize);
+    public List<TransactionIngestionService.TransactionRequest> pollRequests(int maxSize) {
+        List<TransactionIngestionService.TransactionRequest> requests = new ArrayList<>(maxSize);
         int polled = 0;
 
         while (polled < maxSize) {
-            TransactionRequestDTO request = requestBuffer.poll();
-            if (request == null) {
+            BufferedRequest buffered = requestBuffer.poll();
+            if (buffered == null) {
                 break;
             }
-            requests.add(request);
+            requests.add(buffered.request);
             polled++;
             bufferSize.decrementAndGet();
         }
@@ -83,6 +112,26 @@ public class RequestBufferingService {
         return requests;
     }
 
+    /**
+     * Poll requests, waiting up to the timeout for the first one to arrive
+     *
+     * @param maxSize Maximum number of requests to poll
+     * @return List of requests (empty if none arrived before the timeout)
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public List<TransactionIngestionService.TransactionRequest> pollRequests(int maxSize, long timeout,
+            TimeUnit unit) throws InterruptedException {
+        BufferedRequest first = requestBuffer.poll(timeout, unit);
+        if (first == null) {
+            return new ArrayList<>(0);
+        }
+        bufferSize.decrementAndGet();
+
+        List<TransactionIngestionService.TransactionRequest> requests = pollRequests(maxSize - 1);
+        requests.add(0, first.request);
+        return requests;
+    }
+
     /**
      * Get current buffer size
      */
@@ -103,4 +152,32 @@ public class RequestBufferingService {
     public int getBufferCapacity() {
         return bufferSizeLimit;
     }
+
+    /**
+     * Get number of requests drained per batch
+     */
+    public int getBatchProcessingSize() {
+        return batchProcessingSize;
+    }
+
+    /**
+     * Get how long the oldest buffered request has been waiting (0 when empty)
+     */
+    public long getOldestRequestAgeMillis() {
+        BufferedRequest oldest = requestBuffer.peek();
+        if (oldest == null) {
+            return 0L;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - oldest.enqueuedAtNanos);
+    }
+
+    private static final class BufferedRequest {
+        private final TransactionIngestionService.TransactionRequest request;
+        private final long enqueuedAtNanos;
+
+        private BufferedRequest(TransactionIngestionService.TransactionRequest request, long enqueuedAtNanos) {
+            this.request = request;
+            this.enqueuedAtNanos = enqueuedAtNanos;
+        }
+    }
 }
@@ -2,17 +2,20 @@ package com.posgateway.aml.service;
 
 
 
+import com.posgateway.aml.service.ratelimit.GcraBucket;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Request Rate Limiter
  * Tracks and limits request rate for backpressure handling
+ * Node-wide limit over a sliding one-second window, backed by a lock-free GCRA bucket
  */
 // @RequiredArgsConstructor removed
 @Service
@@ -20,9 +23,10 @@ public class RequestRateLimiter {
 
     private static final Logger logger = LoggerFactory.getLogger(RequestRateLimiter.class);
 
-    private final AtomicInteger requestsPerSecond = new AtomicInteger(0);
+    private static final long ONE_SECOND_NANOS = TimeUnit.SECONDS.toNanos(1);
+
     private final AtomicLong totalRequests = new AtomicLong(0);
-    private volatile long lastResetTime = System.currentTimeMillis();
+    private volatile GcraBucket bucket;
 
     @Value("${ultra.throughput.max.requests.per.second:50000}")
     private int maxRequestsPerSecond;
@@ -30,24 +34,19 @@ public class RequestRateLimiter {
     @Value("${ultra.throughput.max.concurrent.requests:30000}")
     private int maxConcurrentRequests;
 
+    @PostConstruct
+    public void init() {
+        bucket = new GcraBucket(maxRequestsPerSecond, ONE_SECOND_NANOS, System.nanoTime());
+    }
+
     /**
      * Check if request can be processed
      * 
      * @return true if can process, false if rate limited
      */
     public boolean canProcess() {
-        // Reset counter every second
-        long now = System.currentTimeMillis();
-        if (now - lastResetTime >= 1000) {
-            requestsPerSecond.set(0);
-            lastResetTime = now;
-        }
-
-        // Check rate limit
-        int current = requestsPerSecond.incrementAndGet();
-        if (current > maxRequestsPerSecond) {
-            logger.warn("Rate limit exceeded: {}/{} requests per second", 
-                current, maxRequestsPerSecond);
+        if (!bucket.tryAcquire(System.nanoTime()).isAllowed()) {
+            logger.warn("Rate limit exceeded: {} requests per second", maxRequestsPerSecond);
             return false;
         }
 
@@ -59,7 +58,7 @@ public class RequestRateLimiter {
      * Get current requests per second
      */
     public int getCurrentRequestsPerSecond() {
-        return requestsPerSecond.get();
+        return bucket.getUsed(System.nanoTime());
     }
 
     /**
@@ -73,9 +72,8 @@ public class RequestRateLimiter {
      * Reset counters
      */
     public void reset() {
-        requestsPerSecond.set(0);
+        bucket = new GcraBucket(maxRequestsPerSecond, ONE_SECOND_NANOS, System.nanoTime());
         totalRequests.set(0);
-        lastResetTime = System.currentTimeMillis();
     }
 }
 
@@ -1,5 +1,10 @@
 package com.posgateway.aml.service;
 
+import com.posgateway.aml.features.CategoricalFeature;
+import com.posgateway.aml.features.Feature;
+import com.posgateway.aml.features.FeatureVector;
+import com.posgateway.aml.service.scoring.EmbeddedModelScorer;
+import com.posgateway.aml.service.scoring.MicroBatchScoringClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -8,6 +13,10 @@ import org.springframework.stereotype.Service;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Scoring Service
@@ -24,6 +33,8 @@ public class ScoringService {
     private final com.posgateway.aml.service.graph.AerospikeGraphCacheService aerospikeGraphCacheService;
     private final com.posgateway.aml.service.rules.DroolsRulesService droolsRulesService;
     private final com.posgateway.aml.service.deeplearning.DL4JAnomalyService dl4jAnomalyService;
+    private final MicroBatchScoringClient microBatchScoringClient;
+    private final EmbeddedModelScorer embeddedModelScorer;
 
     @Value("${scoring.service.enabled:true}")
     private boolean scoringEnabled;
@@ -37,17 +48,24 @@ public class ScoringService {
     @Value("${scoring.cache.enabled:true}")
     private boolean cacheEnabled;
 
+    @Value("${scoring.batch.timeout.ms:2000}")
+    private long batchTimeoutMs;
+
     @Autowired
     public ScoringService(RestClientService restClientService,
             com.posgateway.aml.service.risk.SchemeSimulatorService schemeSimulatorService,
             @org.springframework.beans.factory.annotation.Autowired(required = false) com.posgateway.aml.service.graph.AerospikeGraphCacheService aerospikeGraphCacheService,
             @org.springframework.beans.factory.annotation.Autowired(required = false) com.posgateway.aml.service.rules.DroolsRulesService droolsRulesService,
-            @org.springframework.beans.factory.annotation.Autowired(required = false) com.posgateway.aml.service.deeplearning.DL4JAnomalyService dl4jAnomalyService) {
+            @org.springframework.beans.factory.annotation.Autowired(required = false) com.posgateway.aml.service.deeplearning.DL4JAnomalyService dl4jAnomalyService,
+            MicroBatchScoringClient microBatchScoringClient,
+            EmbeddedModelScorer embeddedModelScorer) {
         this.restClientService = restClientService;
         this.schemeSimulatorService = schemeSimulatorService;
         this.aerospikeGraphCacheService = aerospikeGraphCacheService;
         this.droolsRulesService = droolsRulesService;
         this.dl4jAnomalyService = dl4jAnomalyService;
+        this.microBatchScoringClient = microBatchScoringClient;
+        this.embeddedModelScorer = embeddedModelScorer;
     }
 
     /**
@@ -55,10 +73,21 @@ public class ScoringService {
      * Optimized for high throughput with connection pooling
      *
      * @param txnId    Transaction ID
-     * @param features Feature map
+     * @param features Feature map (not modified; scored on a copy)
      * @return Scoring result with score and latency
      */
     public ScoringResult scoreTransaction(Long txnId, Map<String, Object> features) {
+        return scoreTransaction(txnId, FeatureVector.fromMap(features));
+    }
+
+    /**
+     * Score transaction using ML model
+     *
+     * @param txnId    Transaction ID
+     * @param features Feature vector (enriched in place with scheme simulator features)
+     * @return Scoring result with score and latency
+     */
+    public ScoringResult scoreTransaction(Long txnId, FeatureVector features) {
         // 0. Check Aerospike cache first for ultra-fast response
         if (cacheEnabled && aerospikeGraphCacheService != null) {
             Map<String, Object> cached = aerospikeGraphCacheService.getXGBoostScore(txnId);
@@ -76,14 +105,14 @@ public class ScoringService {
         // 1. Run Scheme Simulators (Local check)
         com.posgateway.aml.service.risk.SchemeSimulatorService.MerchantRiskAssessment assessment = null;
         try {
-            String merchantId = (String) features.getOrDefault("merchant_id", "UNKNOWN");
+            String merchantId = features.getTextOrDefault(CategoricalFeature.MERCHANT_ID, "UNKNOWN");
             assessment = schemeSimulatorService.assessMerchant(merchantId);
 
             // Enrich features for XGBoost
-            features.put("vfmp_stage", assessment.getVfmpResult().getStage().name());
-            features.put("hecm_stage", assessment.getHecmResult().getStage().name());
-            features.put("merchant_fraud_rate", assessment.getVfmpResult().getFraudRate());
-            features.put("merchant_cb_ratio", assessment.getHecmResult().getRatio());
+            features.setText(CategoricalFeature.VFMP_STAGE, assessment.getVfmpResult().getStage().name());
+            features.setText(CategoricalFeature.HECM_STAGE, assessment.getHecmResult().getStage().name());
+            features.set(Feature.MERCHANT_FRAUD_RATE, assessment.getVfmpResult().getFraudRate());
+            features.set(Feature.MERCHANT_CB_RATIO, assessment.getHecmResult().getRatio());
 
         } catch (Exception e) {
             logger.warn("Error running scheme simulators for txn {}: {}", txnId, e.getMessage());
@@ -99,13 +128,7 @@ public class ScoringService {
         long startTime = System.currentTimeMillis();
 
         try {
-            Map<String, Object> payload = new HashMap<>();
-            payload.put("txn_id", txnId);
-            payload.put("features", features);
-
-            String scoringUrl = scoringServiceUrl + "/score";
-            Map<String, Object> response = restClientService.postRequestWithRetry(
-                    scoringUrl, payload, maxRetries);
+            Map<String, Object> response = requestScore(txnId, features);
 
             // Prepare Risk Details
             Map<String, Object> riskDetails = new HashMap<>();
@@ -124,6 +147,13 @@ public class ScoringService {
 
                 // Add ML score to riskDetails as requested
                 riskDetails.put("ml_score", score);
+                if (response.get("model_version") != null) {
+                    riskDetails.put("model_version", response.get("model_version"));
+                }
+                if (response.get("shadow_score") != null) {
+                    riskDetails.put("shadow_score", response.get("shadow_score"));
+                    riskDetails.put("shadow_model_version", response.get("shadow_model_version"));
+                }
 
                 // --- KIE DROOLS RULES ENGINE INTEGRATION (PHASE 4) ---
                 if (droolsRulesService != null) {
@@ -194,6 +224,53 @@ public class ScoringService {
         }
     }
 
+    /**
+     * Get the model score: in-process when an embedded model is loaded, otherwise from the
+     * remote service, through the micro-batcher when enabled.
+     * If the batch queue is full the transaction is scored directly on the caller thread.
+     */
+    private Map<String, Object> requestScore(Long txnId, FeatureVector features) throws Exception {
+        if (embeddedModelScorer.isReady()) {
+            try {
+                EmbeddedModelScorer.EmbeddedScore embedded = embeddedModelScorer.score(features);
+                if (embedded != null) {
+                    Map<String, Object> response = new HashMap<>();
+                    response.put("score", embedded.getScore());
+                    response.put("latency_ms", TimeUnit.NANOSECONDS.toMillis(embedded.getLatencyNanos()));
+                    response.put("model_version", embedded.getModelVersion());
+                    if (embedded.getShadowScore() != null) {
+                        response.put("shadow_score", embedded.getShadowScore());
+                        response.put("shadow_model_version", embedded.getShadowModelVersion());
+                    }
+                    return response;
+                }
+            } catch (RuntimeException e) {
+                logger.warn("Embedded model failed for txn {}, falling back to remote scoring: {}",
+                        txnId, e.getMessage());
+            }
+        }
+
+        if (microBatchScoringClient.isEnabled()) {
+            CompletableFuture<Map<String, Object>> future = null;
+            try {
+                future = microBatchScoringClient.submit(txnId, features);
+                return future.get(batchTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                logger.debug("Score batch queue full, scoring txn {} directly", txnId);
+            } catch (TimeoutException e) {
+                future.cancel(false);
+                throw e;
+            }
+        }
+
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("txn_id", txnId);
+        payload.put("features", features);
+
+        String scoringUrl = scoringServiceUrl + "/score";
+        return restClientService.postRequestWithRetry(scoringUrl, payload, maxRetries);
+    }
+
     private Double extractDouble(Object value) {
         // Early return for null
         if (value == null) {
@@ -2,7 +2,11 @@ package com.posgateway.aml.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.posgateway.aml.entity.TransactionEntity;
+import com.posgateway.aml.entity.merchant.Merchant;
 import com.posgateway.aml.repository.TransactionRepository;
+import com.posgateway.aml.service.graph.Neo4jGraphIngestionService;
+import com.posgateway.aml.service.monitoring.TransactionRollupService;
+import com.posgateway.aml.service.velocity.VelocityEngine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -11,12 +15,18 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.security.MessageDigest;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 /**
  * Transaction Ingestion Service
  * Receives and stores transactions from all merchants
  * Tracks every transaction for AML and fraud analysis
+ *
+ * Single and batch ingestion share the same enrichment (PSP, KRS/TRS/CRA, risk level,
+ * decision) and the same downstream feeds (statistics, velocity, rollups, graph).
  */
 @Service
 public class TransactionIngestionService {
@@ -29,6 +39,10 @@ public class TransactionIngestionService {
 
     private final TransactionStatisticsService statisticsService;
     private final com.posgateway.aml.service.risk.RiskScoringService riskScoringService;
+    private final VelocityEngine velocityEngine;
+    private final TransactionRollupService rollupService;
+    private final Neo4jGraphIngestionService graphIngestionService;
+    private final PanLastSeenService panLastSeenService;
 
     @Autowired
     public TransactionIngestionService(TransactionRepository transactionRepository,
@@ -36,12 +50,20 @@ public class TransactionIngestionService {
             ObjectMapper objectMapper,
 
             TransactionStatisticsService statisticsService,
-            com.posgateway.aml.service.risk.RiskScoringService riskScoringService) {
+            com.posgateway.aml.service.risk.RiskScoringService riskScoringService,
+            VelocityEngine velocityEngine,
+            TransactionRollupService rollupService,
+            PanLastSeenService panLastSeenService,
+            @Autowired(required = false) Neo4jGraphIngestionService graphIngestionService) {
         this.transactionRepository = transactionRepository;
         this.merchantRepository = merchantRepository;
         this.objectMapper = objectMapper;
         this.statisticsService = statisticsService;
         this.riskScoringService = riskScoringService;
+        this.velocityEngine = velocityEngine;
+        this.rollupService = rollupService;
+        this.panLastSeenService = panLastSeenService;
+        this.graphIngestionService = graphIngestionService;
     }
 
     /**
@@ -54,6 +76,48 @@ public class TransactionIngestionService {
     public TransactionEntity ingestTransaction(TransactionRequest transactionRequest) {
         logger.info("Ingesting transaction from merchant: {}", transactionRequest.getMerchantId());
 
+        TransactionEntity saved = transactionRepository.save(buildTransaction(transactionRequest));
+        publish(saved);
+        panLastSeenService.record(List.of(saved));
+
+        logger.info("Transaction ingested successfully: txnId={}, merchantId={}, riskLevel={}, decision={}",
+                saved.getTxnId(), saved.getMerchantId(), saved.getRiskLevel(), saved.getDecision());
+
+        return saved;
+    }
+
+    /**
+     * Ingest a batch of transactions in one database transaction, with the same
+     * enrichment and feeds as ingestTransaction()
+     *
+     * @param transactionRequests Transaction data from merchants
+     * @return Saved transaction entities, in request order
+     */
+    @Transactional
+    public List<TransactionEntity> ingestTransactions(List<TransactionRequest> transactionRequests) {
+        logger.info("Batch ingesting {} transactions", transactionRequests.size());
+
+        // Merchants are loaded once per batch through the persistence context, so
+        // consecutive transactions of one merchant see each other's CRA update
+        List<TransactionEntity> transactions = new ArrayList<>(transactionRequests.size());
+        for (TransactionRequest transactionRequest : transactionRequests) {
+            transactions.add(buildTransaction(transactionRequest));
+        }
+
+        List<TransactionEntity> saved = transactionRepository.saveAll(transactions);
+        for (TransactionEntity transaction : saved) {
+            publish(transaction);
+        }
+        panLastSeenService.record(saved);
+
+        logger.info("Batch ingested {} transactions successfully", saved.size());
+        return saved;
+    }
+
+    /**
+     * Build the entity for a request: PSP and merchant risk scores, risk level and decision
+     */
+    private TransactionEntity buildTransaction(TransactionRequest transactionRequest) {
         TransactionEntity transaction = new TransactionEntity();
 
         // Store raw ISO message if provided
@@ -67,7 +131,7 @@ public class TransactionIngestionService {
         transaction.setMerchantId(transactionRequest.getMerchantId());
 
         // Lookup merchant for PSP association (Multi-tenancy)
-        merchantRepository.findById(Long.parseLong(transactionRequest.getMerchantId())) // Assuming merchantId is ID
+        findMerchant(transactionRequest.getMerchantId()) // Assuming merchantId is ID
                                                                                         // string, simplified. If it's
                                                                                         // alphanumeric ID, repo method
                                                                                         // needed.
@@ -153,8 +217,29 @@ public class TransactionIngestionService {
         transaction.setRiskLevel(riskLevel);
         transaction.setDecision(decision);
 
-        TransactionEntity saved = transactionRepository.save(transaction);
+        return transaction;
+    }
 
+    /**
+     * Merchant by its numeric ID; empty for unknown or non-numeric IDs (stored without PSP)
+     */
+    private Optional<Merchant> findMerchant(String merchantId) {
+        if (merchantId == null) {
+            return Optional.empty();
+        }
+        try {
+            return merchantRepository.findById(Long.parseLong(merchantId));
+        } catch (NumberFormatException e) {
+            logger.warn("Merchant ID '{}' is not numeric - transaction stored without PSP and merchant risk scores",
+                    merchantId);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Feed a saved transaction to statistics, velocity, rollups and the graph
+     */
+    private void publish(TransactionEntity saved) {
         // Automatically record transaction statistics for AML velocity checks
         statisticsService.recordTransaction(
                 saved.getMerchantId(),
@@ -162,10 +247,16 @@ public class TransactionIngestionService {
                 saved.getAmountCents(),
                 saved.getTerminalId());
 
-        logger.info("Transaction ingested successfully: txnId={}, merchantId={}, riskLevel={}, decision={}",
-                saved.getTxnId(), saved.getMerchantId(), riskLevel, decision);
+        // Update in-memory velocity counters read by feature extraction
+        velocityEngine.record(saved);
 
-        return saved;
+        // Count into the dashboard rollups once committed
+        rollupService.record(saved);
+
+        // Queue for the transaction graph (written after commit, in batches)
+        if (graphIngestionService != null) {
+            graphIngestionService.ingestTransaction(saved);
+        }
     }
 
     /**
@@ -228,6 +319,8 @@ public class TransactionIngestionService {
      * Transaction Request DTO
      */
     public static class TransactionRequest {
+        // Set when the request is buffered, echoed in the 202 response and the result webhook
+        private String requestId;
         private String isoMsg;
         private String pan;
         private String merchantId;
@@ -240,6 +333,14 @@ public class TransactionIngestionService {
         private String direction;
 
         // Getters and Setters
+        public String getRequestId() {
+            return requestId;
+        }
+
+        public void setRequestId(String requestId) {
+            this.requestId = requestId;
+        }
+
         public String getIsoMsg() {
             return isoMsg;
         }
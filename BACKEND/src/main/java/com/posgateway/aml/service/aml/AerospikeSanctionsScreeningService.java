@@ -11,6 +11,7 @@ import com.posgateway.aml.model.ScreeningResult.Match;
 import com.posgateway.aml.model.ScreeningResult.MatchType;
 import com.posgateway.aml.model.ScreeningResult.ScreeningStatus;
 import com.posgateway.aml.service.sanctions.NameMatchingService;
+import com.posgateway.aml.service.sanctions.SanctionsIndexService;
 import com.posgateway.aml.service.AerospikeConnectionService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
@@ -28,6 +29,8 @@ import java.util.List;
  * All sanctions lists are stored in Aerospike database for fast lookups.
  * This service queries Aerospike directly using phonetic codes for efficient matching.
  * The sanctions data is loaded into Aerospike by SanctionsListDownloadService.
+ * Once the in-memory SanctionsIndexService is loaded, names are screened against it
+ * instead and Aerospike is only queried while the index is unavailable.
  */
 @Service
 public class AerospikeSanctionsScreeningService {
@@ -40,6 +43,9 @@ public class AerospikeSanctionsScreeningService {
     @Autowired
     private NameMatchingService nameMatchingService;
 
+    @Autowired
+    private SanctionsIndexService sanctionsIndexService;
+
     @Value("${aerospike.namespace:sanctions}")
     private String namespace;
 
@@ -54,8 +60,12 @@ public class AerospikeSanctionsScreeningService {
 
     /**
      * Screen a name against Aerospike sanctions database
+     *
+     * The screeningResults cache is bypassed (neither read nor written) while the
+     * in-memory index is ready, so index results always reflect the current list.
      */
-    @org.springframework.cache.annotation.Cacheable(value = "screeningResults", key = "#name")
+    @org.springframework.cache.annotation.Cacheable(value = "screeningResults", key = "#name",
+            condition = "!@sanctionsIndexService.ready")
     public ScreeningResult screenName(String name, EntityType entityType) {
         if (name == null || name.trim().isEmpty()) {
             log.warn("Attempted to screen empty name");
@@ -71,6 +81,15 @@ public class AerospikeSanctionsScreeningService {
                     .build();
         }
 
+        // In-memory index: no network round trips, and the result cache is bypassed
+        if (sanctionsIndexService.isReady()) {
+            ScreeningResult indexed = sanctionsIndexService.screenName(name, entityType);
+            if (indexed != null) {
+                log.debug("Screened '{}' against in-memory index: {} matches", name, indexed.getMatchCount());
+                return indexed;
+            }
+        }
+
         log.info("Screening name '{}' against Aerospike sanctions (type: {})", name, entityType);
 
         // Check cache first
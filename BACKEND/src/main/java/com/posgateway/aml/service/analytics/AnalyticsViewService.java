@@ -0,0 +1,360 @@
+package com.posgateway.aml.service.analytics;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Analytics View Service
+ * Owns the materialized analytics views (V111) behind the dashboard and heatmap endpoints.
+ *
+ * - A scheduled check refreshes every view older than its max staleness with
+ *   REFRESH MATERIALIZED VIEW CONCURRENTLY, so readers are never blocked; a transaction
+ *   advisory lock per view keeps several nodes from refreshing the same view at once,
+ *   and the last refresh time is shared through analytics_view_refreshes
+ * - Reads go through a small result cache, dropped when this node refreshes a view and
+ *   otherwise expiring after a short TTL (so other nodes pick up refreshes)
+ * - Refresh duration, failures and per-view staleness are exported as metrics
+ */
+@Service
+public class AnalyticsViewService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AnalyticsViewService.class);
+
+    /**
+     * Managed materialized views
+     */
+    public enum AnalyticsView {
+        MERCHANT_RISK_SUMMARY("merchant_risk_summary_mv"),
+        CASE_GEO_RISK_DAILY("case_geo_risk_daily_mv"),
+        CASE_AGING("case_aging_mv"),
+        CASE_OUTCOME_DAILY("case_outcome_daily_mv"),
+        TRANSACTION_VOLUME_DAILY("transaction_volume_daily_mv");
+
+        private final String viewName;
+
+        AnalyticsView(String viewName) {
+            this.viewName = viewName;
+        }
+
+        public String getViewName() {
+            return viewName;
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<AnalyticsView, Duration> maxStaleness = new EnumMap<>(AnalyticsView.class);
+    private final Map<AnalyticsView, LocalDateTime> lastRefreshed = new ConcurrentHashMap<>();
+    private final Map<AnalyticsView, Timer> refreshTimers = new EnumMap<>(AnalyticsView.class);
+    private final Map<AnalyticsView, Counter> refreshFailures = new EnumMap<>(AnalyticsView.class);
+    private Cache<String, Object> resultCache;
+
+    @Value("${analytics.views.cache.ttl.ms:60000}")
+    private long cacheTtlMs;
+
+    @Value("${analytics.views.merchant.max.staleness.ms:300000}")
+    private long merchantMaxStalenessMs;
+
+    @Value("${analytics.views.case.max.staleness.ms:120000}")
+    private long caseMaxStalenessMs;
+
+    @Value("${analytics.views.heatmap.max.staleness.ms:900000}")
+    private long heatmapMaxStalenessMs;
+
+    @Value("${analytics.views.volume.max.staleness.ms:300000}")
+    private long volumeMaxStalenessMs;
+
+    @Autowired
+    public AnalyticsViewService(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+            MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        resultCache = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(cacheTtlMs))
+                .maximumSize(1_000)
+                .build();
+
+        maxStaleness.put(AnalyticsView.MERCHANT_RISK_SUMMARY, Duration.ofMillis(merchantMaxStalenessMs));
+        maxStaleness.put(AnalyticsView.CASE_GEO_RISK_DAILY, Duration.ofMillis(heatmapMaxStalenessMs));
+        maxStaleness.put(AnalyticsView.CASE_AGING, Duration.ofMillis(caseMaxStalenessMs));
+        maxStaleness.put(AnalyticsView.CASE_OUTCOME_DAILY, Duration.ofMillis(heatmapMaxStalenessMs));
+        maxStaleness.put(AnalyticsView.TRANSACTION_VOLUME_DAILY, Duration.ofMillis(volumeMaxStalenessMs));
+
+        for (AnalyticsView view : AnalyticsView.values()) {
+            refreshTimers.put(view, Timer.builder("aml_analytics_view_refresh_duration")
+                    .description("Time to refresh a materialized analytics view")
+                    .tag("view", view.getViewName())
+                    .register(meterRegistry));
+            refreshFailures.put(view, Counter.builder("aml_analytics_view_refresh_failures_total")
+                    .description("Failed materialized analytics view refreshes")
+                    .tag("view", view.getViewName())
+                    .register(meterRegistry));
+            Gauge.builder("aml_analytics_view_staleness_seconds", this, service -> service.stalenessSeconds(view))
+                    .description("Seconds since the materialized analytics view was last refreshed")
+                    .tag("view", view.getViewName())
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Refresh every view that is older than its max staleness
+     */
+    @Scheduled(fixedDelayString = "${analytics.views.refresh.check.interval.ms:30000}")
+    public void refreshStaleViews() {
+        Map<AnalyticsView, LocalDateTime> refreshTimes;
+        try {
+            refreshTimes = loadRefreshTimes();
+        } catch (Exception e) {
+            logger.warn("Could not read analytics view refresh times: {}", e.getMessage());
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        for (AnalyticsView view : AnalyticsView.values()) {
+            LocalDateTime refreshedAt = refreshTimes.get(view);
+            if (refreshedAt != null) {
+                lastRefreshed.put(view, refreshedAt);
+            }
+            if (refreshedAt == null || refreshedAt.plus(maxStaleness.get(view)).isBefore(now)) {
+                refresh(view, false);
+            }
+        }
+    }
+
+    /**
+     * Refresh a view now, regardless of its staleness
+     *
+     * @return true if this call refreshed the view (false if another node holds the lock)
+     */
+    public boolean refresh(AnalyticsView view) {
+        return refresh(view, true);
+    }
+
+    private boolean refresh(AnalyticsView view, boolean force) {
+        long start = System.nanoTime();
+        try {
+            Boolean refreshed = transactionTemplate.execute(status -> {
+                Boolean locked = jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(hashtext(?))",
+                        Boolean.class, view.getViewName());
+                if (!Boolean.TRUE.equals(locked)) {
+                    return false;
+                }
+                if (!force && !isStale(view)) {
+                    // Another node refreshed it since we looked
+                    return false;
+                }
+                jdbcTemplate.execute("REFRESH MATERIALIZED VIEW CONCURRENTLY " + view.getViewName());
+                long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                jdbcTemplate.update("INSERT INTO analytics_view_refreshes (view_name, refreshed_at, duration_ms) "
+                        + "VALUES (?, now(), ?) ON CONFLICT (view_name) DO UPDATE SET "
+                        + "refreshed_at = EXCLUDED.refreshed_at, duration_ms = EXCLUDED.duration_ms",
+                        view.getViewName(), durationMs);
+                return true;
+            });
+            if (Boolean.TRUE.equals(refreshed)) {
+                refreshTimers.get(view).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                lastRefreshed.put(view, LocalDateTime.now());
+                resultCache.invalidateAll();
+                logger.debug("Refreshed {} in {}ms", view.getViewName(),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                return true;
+            }
+            return false;
+        } catch (Exception e) {
+            refreshFailures.get(view).increment();
+            logger.error("Failed to refresh {}: {}", view.getViewName(), e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean isStale(AnalyticsView view) {
+        List<Timestamp> refreshedAt = jdbcTemplate.queryForList(
+                "SELECT refreshed_at FROM analytics_view_refreshes WHERE view_name = ?", Timestamp.class,
+                view.getViewName());
+        return refreshedAt.isEmpty() || refreshedAt.get(0).toLocalDateTime()
+                .plus(maxStaleness.get(view)).isBefore(LocalDateTime.now());
+    }
+
+    private Map<AnalyticsView, LocalDateTime> loadRefreshTimes() {
+        Map<String, AnalyticsView> byName = new HashMap<>();
+        for (AnalyticsView view : AnalyticsView.values()) {
+            byName.put(view.getViewName(), view);
+        }
+        Map<AnalyticsView, LocalDateTime> refreshTimes = new EnumMap<>(AnalyticsView.class);
+        jdbcTemplate.query("SELECT view_name, refreshed_at FROM analytics_view_refreshes", rs -> {
+            AnalyticsView view = byName.get(rs.getString(1));
+            if (view != null) {
+                refreshTimes.put(view, rs.getTimestamp(2).toLocalDateTime());
+            }
+        });
+        return refreshTimes;
+    }
+
+    private double stalenessSeconds(AnalyticsView view) {
+        LocalDateTime refreshedAt = lastRefreshed.get(view);
+        return refreshedAt != null ? Duration.between(refreshedAt, LocalDateTime.now()).toMillis() / 1000.0 : -1;
+    }
+
+    /**
+     * Merchant counts by status (pspId null = all PSPs)
+     */
+    public Map<String, Long> getMerchantCountsByStatus(Long pspId) {
+        return cached("merchantStatus:" + pspId, () -> countBy(
+                "SELECT status, SUM(merchant_count) FROM merchant_risk_summary_mv WHERE 1 = 1", pspId,
+                "GROUP BY status"));
+    }
+
+    /**
+     * Merchant counts by risk level (pspId null = all PSPs)
+     */
+    public Map<String, Long> getMerchantCountsByRiskLevel(Long pspId) {
+        return cached("merchantRiskLevel:" + pspId, () -> countBy(
+                "SELECT risk_level, SUM(merchant_count) FROM merchant_risk_summary_mv WHERE 1 = 1", pspId,
+                "GROUP BY risk_level"));
+    }
+
+    /**
+     * Countries with at least one merchant
+     */
+    public Set<String> getMerchantCountries() {
+        return cached("merchantCountries", () -> new TreeSet<>(jdbcTemplate.queryForList(
+                "SELECT DISTINCT country FROM merchant_risk_summary_mv", String.class)));
+    }
+
+    /**
+     * Open cases by status (pspId null = all PSPs)
+     */
+    public Map<String, Long> getOpenCaseCountsByStatus(Long pspId) {
+        return cached("openCaseStatus:" + pspId, () -> countBy(
+                "SELECT status, SUM(case_count) FROM case_aging_mv WHERE 1 = 1", pspId, "GROUP BY status"));
+    }
+
+    /**
+     * Open cases by age bucket (0-7, 8-14, 15-30, 31-60, 60+ days), pspId null = all PSPs
+     */
+    public Map<String, Long> getOpenCaseCountsByAging(Long pspId) {
+        return cached("openCaseAging:" + pspId, () -> countBy(
+                "SELECT aging_bucket, SUM(case_count) FROM case_aging_mv WHERE 1 = 1", pspId,
+                "GROUP BY aging_bucket"));
+    }
+
+    /**
+     * Cases closed between the given days (inclusive) by closing status, pspId null = all PSPs
+     */
+    public Map<String, Long> getClosedCaseCountsByStatus(Long pspId, LocalDate from, LocalDate to) {
+        return cached("closedCaseStatus:" + pspId + ":" + from + ":" + to, () -> countBy(
+                "SELECT status, SUM(case_count) FROM case_outcome_daily_mv WHERE day BETWEEN ? AND ?", pspId,
+                "GROUP BY status", Date.valueOf(from), Date.valueOf(to)));
+    }
+
+    /**
+     * Cases created between the given days (inclusive) per merchant country
+     */
+    public Map<String, CountryCaseRisk> getCaseRiskByCountry(LocalDate from, LocalDate to) {
+        return cached("caseRiskByCountry:" + from + ":" + to, () -> {
+            Map<String, CountryCaseRisk> byCountry = new TreeMap<>();
+            jdbcTemplate.query("SELECT country, SUM(case_count), SUM(risk_score_sum) FROM case_geo_risk_daily_mv "
+                    + "WHERE day BETWEEN ? AND ? GROUP BY country", rs -> {
+                        byCountry.put(rs.getString(1), new CountryCaseRisk(rs.getLong(2), rs.getDouble(3)));
+                    }, Date.valueOf(from), Date.valueOf(to));
+            return byCountry;
+        });
+    }
+
+    /**
+     * Transactions per day between the given days (inclusive), pspId null = all PSPs
+     */
+    public Map<LocalDate, Long> getDailyTransactionCounts(Long pspId, LocalDate from, LocalDate to) {
+        return cached("dailyTransactions:" + pspId + ":" + from + ":" + to, () -> {
+            List<Object> args = new ArrayList<>();
+            args.add(Date.valueOf(from));
+            args.add(Date.valueOf(to));
+            String sql = "SELECT day, SUM(txn_count) FROM transaction_volume_daily_mv WHERE day BETWEEN ? AND ?";
+            if (pspId != null) {
+                sql += " AND psp_id = ?";
+                args.add(pspId);
+            }
+            Map<LocalDate, Long> counts = new TreeMap<>();
+            jdbcTemplate.query(sql + " GROUP BY day", rs -> {
+                counts.put(rs.getDate(1).toLocalDate(), rs.getLong(2));
+            }, args.toArray());
+            return counts;
+        });
+    }
+
+    private Map<String, Long> countBy(String select, Long pspId, String groupBy, Object... args) {
+        List<Object> params = new ArrayList<>(List.of(args));
+        String sql = select;
+        if (pspId != null) {
+            sql += " AND psp_id = ?";
+            params.add(pspId);
+        }
+        Map<String, Long> counts = new HashMap<>();
+        jdbcTemplate.query(sql + " " + groupBy, rs -> {
+            counts.put(rs.getString(1), rs.getLong(2));
+        }, params.toArray());
+        return counts;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T cached(String key, Supplier<T> loader) {
+        return (T) resultCache.get(key, k -> loader.get());
+    }
+
+    /**
+     * Case count and summed priority score of one country
+     */
+    public static class CountryCaseRisk {
+        private final long caseCount;
+        private final double riskScoreSum;
+
+        public CountryCaseRisk(long caseCount, double riskScoreSum) {
+            this.caseCount = caseCount;
+            this.riskScoreSum = riskScoreSum;
+        }
+
+        public long getCaseCount() {
+            return caseCount;
+        }
+
+        public double getRiskScoreSum() {
+            return riskScoreSum;
+        }
+    }
+}
@@ -6,8 +6,10 @@ import com.posgateway.aml.entity.merchant.Merchant;
 import com.posgateway.aml.model.Transaction;
 import com.posgateway.aml.repository.MerchantRepository;
 import com.posgateway.aml.repository.TransactionRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -19,6 +21,9 @@ public class LinkAnalysisService {
     private final MerchantRepository merchantRepository;
     private final TransactionRepository transactionRepository;
 
+    @Value("${link.analysis.lookback.days:180}")
+    private int lookbackDays;
+
     public LinkAnalysisService(MerchantRepository merchantRepository, TransactionRepository transactionRepository) {
         this.merchantRepository = merchantRepository;
         this.transactionRepository = transactionRepository;
@@ -38,18 +43,19 @@ public class LinkAnalysisService {
         log.debug("Performing Link Analysis for Transaction: {}", transaction.getTransactionId());
 
         List<String> linkedBlockedMerchants = new ArrayList<>();
+        LocalDateTime since = LocalDateTime.now().minusDays(lookbackDays);
 
         // 1. Check Device Fingerprint Links
         if (transaction.getDeviceFingerprint() != null && !transaction.getDeviceFingerprint().isEmpty()) {
             List<String> linkedMerchantIds = transactionRepository
-                    .findMerchantIdsByDeviceFingerprint(transaction.getDeviceFingerprint());
+                    .findMerchantIdsByDeviceFingerprint(transaction.getDeviceFingerprint(), since);
             checkBlocked(linkedMerchantIds, merchant.getMerchantId(), linkedBlockedMerchants, "Device Fingerprint");
         }
 
         // 2. Check IP Address Links
         if (transaction.getIpAddress() != null && !transaction.getIpAddress().isEmpty()) {
             List<String> linkedMerchantIds = transactionRepository
-                    .findMerchantIdsByIpAddress(transaction.getIpAddress());
+                    .findMerchantIdsByIpAddress(transaction.getIpAddress(), since);
             checkBlocked(linkedMerchantIds, merchant.getMerchantId(), linkedBlockedMerchants, "IP Address");
         }
 
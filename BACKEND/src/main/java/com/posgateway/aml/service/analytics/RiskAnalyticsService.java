@@ -1,9 +1,8 @@
 package com.posgateway.aml.service.analytics;
 
 import com.posgateway.aml.entity.compliance.ComplianceCase;
-import com.posgateway.aml.entity.merchant.Merchant;
+import com.posgateway.aml.entity.risk.HighRiskCountry;
 import com.posgateway.aml.repository.ComplianceCaseRepository;
-import com.posgateway.aml.repository.MerchantRepository;
 import com.posgateway.aml.repository.risk.HighRiskCountryRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -23,16 +22,16 @@ public class RiskAnalyticsService {
     private static final Logger logger = LoggerFactory.getLogger(RiskAnalyticsService.class);
 
     private final ComplianceCaseRepository caseRepository;
-    private final MerchantRepository merchantRepository;
     private final HighRiskCountryRepository highRiskCountryRepository;
+    private final AnalyticsViewService analyticsViewService;
 
     @Autowired
     public RiskAnalyticsService(ComplianceCaseRepository caseRepository,
-                                MerchantRepository merchantRepository,
-                                HighRiskCountryRepository highRiskCountryRepository) {
+                                HighRiskCountryRepository highRiskCountryRepository,
+                                AnalyticsViewService analyticsViewService) {
         this.caseRepository = caseRepository;
-        this.merchantRepository = merchantRepository;
         this.highRiskCountryRepository = highRiskCountryRepository;
+        this.analyticsViewService = analyticsViewService;
     }
 
     /**
@@ -60,62 +59,47 @@ public class RiskAnalyticsService {
 
     /**
      * Generate risk heatmap by geography
-     * Aggregates risk data by country based on merchants and cases
+     * Aggregates risk data by country based on merchants and cases, read from the
+     * materialized analytics views (whole days: the window is widened to the days it touches)
      */
     public Map<String, RiskHeatmapData> getGeographicRiskHeatmap(LocalDateTime startDate, LocalDateTime endDate) {
         Map<String, RiskHeatmapData> heatmap = new HashMap<>();
-        
-        // Get cases in date range
-        List<ComplianceCase> cases = caseRepository.findByCreatedAtBetween(startDate, endDate);
-        
-        // Aggregate by merchant country
-        Map<String, List<ComplianceCase>> casesByCountry = new HashMap<>();
-        for (ComplianceCase complianceCase : cases) {
-            Long merchantId = complianceCase.getMerchantId();
-            if (merchantId != null) {
-                Optional<Merchant> merchantOpt = merchantRepository.findById(merchantId);
-                if (merchantOpt.isPresent()) {
-                    Merchant merchant = merchantOpt.get();
-                    String country = merchant.getCountry() != null ? merchant.getCountry() : "UNKNOWN";
-                    casesByCountry.computeIfAbsent(country, k -> new ArrayList<>()).add(complianceCase);
-                }
-            }
+
+        Set<String> highRiskCountries = new HashSet<>();
+        for (HighRiskCountry highRiskCountry : highRiskCountryRepository.findAll()) {
+            highRiskCountries.add(highRiskCountry.getCountryCode());
         }
-        
-        // Build heatmap data
-        for (Map.Entry<String, List<ComplianceCase>> entry : casesByCountry.entrySet()) {
+
+        // Cases in date range, aggregated by merchant country
+        Map<String, AnalyticsViewService.CountryCaseRisk> casesByCountry =
+                analyticsViewService.getCaseRiskByCountry(startDate.toLocalDate(), endDate.toLocalDate());
+        for (Map.Entry<String, AnalyticsViewService.CountryCaseRisk> entry : casesByCountry.entrySet()) {
             String country = entry.getKey();
-            List<ComplianceCase> countryCases = entry.getValue();
-            
+            AnalyticsViewService.CountryCaseRisk countryCases = entry.getValue();
+
             RiskHeatmapData data = new RiskHeatmapData(country, "GEOGRAPHY");
-            data.caseCount = countryCases.size();
-            
-            // Calculate average risk score
-            double totalRiskScore = countryCases.stream()
-                    .mapToDouble(c -> getPriorityRiskScore(c.getPriority()))
-                    .sum();
-            data.averageRiskScore = countryCases.isEmpty() ? 0.0 : totalRiskScore / countryCases.size();
-            
+            data.caseCount = (int) countryCases.getCaseCount();
+            data.averageRiskScore = countryCases.getCaseCount() == 0 ? 0.0
+                    : countryCases.getRiskScoreSum() / countryCases.getCaseCount();
+
             // Add high-risk country bonus
-            if (highRiskCountryRepository.existsByCountryCode(country)) {
+            if (highRiskCountries.contains(country)) {
                 data.averageRiskScore = Math.min(1.0, data.averageRiskScore + 0.2);
             }
-            
+
             heatmap.put(country, data);
         }
-        
+
         // Also include countries with merchants but no cases (for completeness)
-        List<Merchant> merchants = merchantRepository.findAll();
-        for (Merchant merchant : merchants) {
-            String country = merchant.getCountry();
-            if (country != null && !heatmap.containsKey(country)) {
+        for (String country : analyticsViewService.getMerchantCountries()) {
+            if (!heatmap.containsKey(country)) {
                 RiskHeatmapData data = new RiskHeatmapData(country, "GEOGRAPHY");
                 data.caseCount = 0;
-                data.averageRiskScore = highRiskCountryRepository.existsByCountryCode(country) ? 0.3 : 0.1;
+                data.averageRiskScore = highRiskCountries.contains(country) ? 0.3 : 0.1;
                 heatmap.put(country, data);
             }
         }
-        
+
         logger.debug("Generated geographic risk heatmap with {} countries", heatmap.size());
         return heatmap;
     }
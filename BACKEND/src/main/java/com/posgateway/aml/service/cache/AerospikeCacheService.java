@@ -187,6 +187,23 @@ public class AerospikeCacheService {
         }
     }
 
+    /**
+     * Remove all records of a set
+     */
+    public void truncate(String set) {
+        if (!aerospikeConnectionService.isConnected()) {
+            return;
+        }
+
+        try {
+            AerospikeClient client = aerospikeConnectionService.getClient();
+            client.truncate(null, namespace, set, null);
+            logger.debug("Truncated Aerospike cache set: {}", set);
+        } catch (Exception e) {
+            logger.warn("Failed to truncate Aerospike cache set: {} - {}", set, e.getMessage());
+        }
+    }
+
     /**
      * Put a map of values
      */
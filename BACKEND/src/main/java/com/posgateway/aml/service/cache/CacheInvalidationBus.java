@@ -0,0 +1,161 @@
+package com.posgateway.aml.service.cache;
+
+import com.aerospike.client.AerospikeClient;
+import com.aerospike.client.Bin;
+import com.aerospike.client.Key;
+import com.aerospike.client.Operation;
+import com.aerospike.client.Record;
+import com.aerospike.client.cdt.ListOperation;
+import com.aerospike.client.cdt.ListReturnType;
+import com.posgateway.aml.service.AerospikeConnectionService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Cache Invalidation Bus
+ * Propagates cache evictions between nodes through Aerospike.
+ *
+ * Each cache has one record in the invalidation set holding a generation counter and
+ * the keys of the most recent evictions (one list entry per generation). An eviction
+ * appends its key and bumps the generation in a single atomic operation. Every node
+ * polls the records and evicts the keys published since the generation it last saw;
+ * if it fell further behind than the log keeps, it clears its local copy entirely.
+ *
+ * Polling keeps this independent of Kafka (which may be disabled); remote nodes see an
+ * eviction within cache.invalidation.poll.interval.ms.
+ */
+@Service
+public class CacheInvalidationBus {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheInvalidationBus.class);
+
+    /** Log entry meaning "clear the whole cache" */
+    public static final String CLEAR_ALL = "*";
+
+    private static final String GENERATION_BIN = "gen";
+    private static final String LOG_BIN = "keys";
+
+    private final AerospikeConnectionService aerospikeConnectionService;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Consumer<String>> listeners = new ConcurrentHashMap<>();
+    private final Map<String, Long> seenGenerations = new ConcurrentHashMap<>();
+    private final Map<String, Counter> receivedCounters = new ConcurrentHashMap<>();
+
+    @Value("${cache.invalidation.enabled:true}")
+    private boolean enabled;
+
+    @Value("${cache.invalidation.set:cache_invalidation}")
+    private String setName;
+
+    @Value("${cache.invalidation.log.size:1000}")
+    private int logSize;
+
+    @Autowired
+    public CacheInvalidationBus(AerospikeConnectionService aerospikeConnectionService, MeterRegistry meterRegistry) {
+        this.aerospikeConnectionService = aerospikeConnectionService;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Register the local handler of remote evictions for a cache
+     *
+     * @param listener receives the evicted key, or CLEAR_ALL
+     */
+    public void register(String cacheName, Consumer<String> listener) {
+        listeners.put(cacheName, listener);
+        receivedCounters.put(cacheName, Counter.builder("aml_cache_invalidations_total")
+                .tag("cache", cacheName)
+                .tag("source", "remote")
+                .description("Cache evictions applied")
+                .register(meterRegistry));
+    }
+
+    public boolean isActive() {
+        return enabled && aerospikeConnectionService.isConnected();
+    }
+
+    /**
+     * Announce an eviction to the other nodes
+     */
+    public void publish(String cacheName, String key) {
+        if (!isActive()) {
+            return;
+        }
+        try {
+            AerospikeClient client = aerospikeConnectionService.getClient();
+            Record record = client.operate(null, recordKey(cacheName),
+                    ListOperation.append(LOG_BIN, com.aerospike.client.Value.get(key)),
+                    ListOperation.removeByIndexRange(LOG_BIN, -logSize, ListReturnType.NONE | ListReturnType.INVERTED),
+                    Operation.add(new Bin(GENERATION_BIN, 1L)),
+                    Operation.get(GENERATION_BIN));
+            // Our own eviction is already applied locally
+            seenGenerations.computeIfPresent(cacheName, (name, seen) ->
+                    seen == record.getLong(GENERATION_BIN) - 1 ? seen + 1 : seen);
+        } catch (Exception e) {
+            logger.warn("Failed to publish invalidation for cache {}: {}", cacheName, e.getMessage());
+        }
+    }
+
+    /**
+     * Apply evictions published by other nodes
+     */
+    @Scheduled(fixedDelayString = "${cache.invalidation.poll.interval.ms:1000}")
+    public void poll() {
+        if (listeners.isEmpty() || !isActive()) {
+            return;
+        }
+        try {
+            AerospikeClient client = aerospikeConnectionService.getClient();
+            String[] names = listeners.keySet().toArray(new String[0]);
+            Key[] keys = new Key[names.length];
+            for (int i = 0; i < names.length; i++) {
+                keys[i] = recordKey(names[i]);
+            }
+            Record[] records = client.get(null, keys);
+            for (int i = 0; i < names.length; i++) {
+                if (records[i] != null) {
+                    apply(names[i], records[i]);
+                }
+            }
+        } catch (Exception e) {
+            logger.debug("Cache invalidation poll failed: {}", e.getMessage());
+        }
+    }
+
+    private void apply(String cacheName, Record record) {
+        long generation = record.getLong(GENERATION_BIN);
+        Long seen = seenGenerations.putIfAbsent(cacheName, generation);
+        if (seen == null || generation <= seen) {
+            return; // First poll only establishes the starting point
+        }
+
+        Consumer<String> listener = listeners.get(cacheName);
+        List<?> log = record.getList(LOG_BIN);
+        long missed = generation - seen;
+        if (log == null || missed > log.size()) {
+            listener.accept(CLEAR_ALL);
+        } else {
+            for (int i = (int) (log.size() - missed); i < log.size(); i++) {
+                listener.accept(String.valueOf(log.get(i)));
+            }
+        }
+        receivedCounters.get(cacheName).increment(missed);
+        seenGenerations.put(cacheName, generation);
+    }
+
+    private Key recordKey(String cacheName) {
+        return new Key(aerospikeConnectionService.getNamespace(), setName, cacheName);
+    }
+}
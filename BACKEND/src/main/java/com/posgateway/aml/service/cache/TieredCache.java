@@ -0,0 +1,219 @@
+package com.posgateway.aml.service.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.posgateway.aml.config.TieredCacheProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+import org.springframework.cache.support.NullValue;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Tiered Cache
+ * Spring cache with a bounded Caffeine L1 and an optional Aerospike L2 shared by all nodes.
+ *
+ * - lookup: L1, then L2 (an L2 hit is promoted into L1)
+ * - put: L1 and L2 (values are stored as JSON with their class name)
+ * - evict/clear: L1 and L2, then announced to other nodes via CacheInvalidationBus
+ *
+ * With refresh-after-write, entries older than the refresh age are reloaded from L2 in
+ * the background on access, so updates written by other nodes are picked up without a
+ * blocking miss. Keys are stored by their string form in both tiers.
+ */
+public class TieredCache extends AbstractValueAdaptingCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(TieredCache.class);
+
+    private static final String TYPE_BIN = "type";
+    private static final String VALUE_BIN = "value";
+
+    private final String name;
+    private final LoadingCache<String, Object> l1;
+    private final AerospikeCacheService l2;
+    private final String l2Set;
+    private final int l2TtlSeconds;
+    private final ObjectMapper objectMapper;
+    private final CacheInvalidationBus invalidationBus;
+
+    private final Counter l2Hits;
+    private final Counter l2Misses;
+    private final Counter l2Errors;
+    private final Counter localInvalidations;
+
+    /**
+     * @param l2 Aerospike tier, or null for an L1-only cache
+     */
+    public TieredCache(String name, TieredCacheProperties.Spec spec, AerospikeCacheService l2, String l2Set,
+            ObjectMapper objectMapper, CacheInvalidationBus invalidationBus, MeterRegistry meterRegistry) {
+        super(true);
+        this.name = name;
+        this.l2 = l2;
+        this.l2Set = l2Set;
+        this.l2TtlSeconds = spec.getL2TtlSeconds() > 0 ? spec.getL2TtlSeconds()
+                : (int) Math.min(Integer.MAX_VALUE, spec.getExpireAfterWriteSeconds());
+        this.objectMapper = objectMapper;
+        this.invalidationBus = invalidationBus;
+
+        Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                .maximumSize(spec.getMaximumSize())
+                .recordStats();
+        if (spec.getExpireAfterWriteSeconds() > 0) {
+            builder.expireAfterWrite(Duration.ofSeconds(spec.getExpireAfterWriteSeconds()));
+        }
+        if (l2 != null && spec.getRefreshAfterWriteSeconds() > 0) {
+            builder.refreshAfterWrite(Duration.ofSeconds(spec.getRefreshAfterWriteSeconds()));
+        }
+        this.l1 = builder.build(this::readL2);
+
+        CaffeineCacheMetrics.monitor(meterRegistry, l1, name);
+        this.l2Hits = l2Counter(meterRegistry, "hit");
+        this.l2Misses = l2Counter(meterRegistry, "miss");
+        this.l2Errors = l2Counter(meterRegistry, "error");
+        this.localInvalidations = Counter.builder("aml_cache_invalidations_total")
+                .tag("cache", name)
+                .tag("source", "local")
+                .description("Cache evictions applied")
+                .register(meterRegistry);
+
+        invalidationBus.register(name, this::applyRemoteInvalidation);
+    }
+
+    private Counter l2Counter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("aml_cache_l2_requests_total")
+                .tag("cache", name)
+                .tag("result", result)
+                .description("Aerospike (L2) cache lookups")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return l1;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        // L1 miss loads from L2 through the cache loader
+        return l1.get(storeKey(key));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        String storeKey = storeKey(key);
+        Object value = l1.get(storeKey, k -> {
+            Object stored = readL2(k);
+            if (stored != null) {
+                return stored;
+            }
+            try {
+                Object loaded = toStoreValue(valueLoader.call());
+                writeL2(k, loaded);
+                return loaded;
+            } catch (Exception e) {
+                throw new ValueRetrievalException(key, valueLoader, e);
+            }
+        });
+        return (T) fromStoreValue(value);
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        String storeKey = storeKey(key);
+        Object storeValue = toStoreValue(value);
+        l1.put(storeKey, storeValue);
+        writeL2(storeKey, storeValue);
+    }
+
+    @Override
+    public void evict(Object key) {
+        String storeKey = storeKey(key);
+        l1.invalidate(storeKey);
+        if (l2 != null) {
+            l2.delete(l2Set, storeKey);
+        }
+        localInvalidations.increment();
+        invalidationBus.publish(name, storeKey);
+    }
+
+    @Override
+    public void clear() {
+        l1.invalidateAll();
+        if (l2 != null) {
+            l2.truncate(l2Set);
+        }
+        localInvalidations.increment();
+        invalidationBus.publish(name, CacheInvalidationBus.CLEAR_ALL);
+    }
+
+    private void applyRemoteInvalidation(String storeKey) {
+        if (CacheInvalidationBus.CLEAR_ALL.equals(storeKey)) {
+            l1.invalidateAll();
+        } else {
+            l1.invalidate(storeKey);
+        }
+    }
+
+    /**
+     * L2 lookup, also used as the L1 loader (null = not cached)
+     */
+    private Object readL2(String storeKey) {
+        if (l2 == null) {
+            return null;
+        }
+        try {
+            Map<String, Object> record = l2.getMap(l2Set, storeKey);
+            if (record == null || !(record.get(TYPE_BIN) instanceof String)) {
+                l2Misses.increment();
+                return null;
+            }
+            Class<?> type = Class.forName((String) record.get(TYPE_BIN), false, getClass().getClassLoader());
+            Object value = objectMapper.readValue((String) record.get(VALUE_BIN), type);
+            l2Hits.increment();
+            return value;
+        } catch (Exception e) {
+            l2Errors.increment();
+            logger.debug("Ignoring unreadable L2 entry {}/{}: {}", l2Set, storeKey, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeL2(String storeKey, Object storeValue) {
+        if (l2 == null || storeValue == null || storeValue == NullValue.INSTANCE) {
+            return;
+        }
+        try {
+            Map<String, Object> record = new HashMap<>(4);
+            record.put(TYPE_BIN, storeValue.getClass().getName());
+            record.put(VALUE_BIN, objectMapper.writeValueAsString(storeValue));
+            l2.putMap(l2Set, storeKey, record, l2TtlSeconds);
+        } catch (Exception e) {
+            l2Errors.increment();
+            logger.debug("Not writing {}/{} to L2: {}", l2Set, storeKey, e.getMessage());
+        }
+    }
+
+    /**
+     * String form of a key; non-String keys carry their type so "123" and 123L differ
+     */
+    static String storeKey(Object key) {
+        if (key instanceof String) {
+            return (String) key;
+        }
+        return key.getClass().getSimpleName() + ":" + key;
+    }
+}
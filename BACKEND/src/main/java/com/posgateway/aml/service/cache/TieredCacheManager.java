@@ -0,0 +1,48 @@
+package com.posgateway.aml.service.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.posgateway.aml.config.TieredCacheProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.AbstractCacheManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tiered Cache Manager
+ * Creates a fixed set of TieredCaches, each with its own size/TTL/refresh policy from
+ * TieredCacheProperties (caches without a spec get the default Spec values).
+ */
+public class TieredCacheManager extends AbstractCacheManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(TieredCacheManager.class);
+
+    private final List<Cache> caches = new ArrayList<>();
+
+    public TieredCacheManager(Collection<String> cacheNames, TieredCacheProperties properties,
+            AerospikeCacheService aerospikeCacheService, ObjectMapper objectMapper,
+            CacheInvalidationBus invalidationBus, MeterRegistry meterRegistry) {
+        Set<String> names = new LinkedHashSet<>(cacheNames);
+        names.addAll(properties.getSpecs().keySet());
+
+        for (String name : names) {
+            TieredCacheProperties.Spec spec = properties.getSpecs().getOrDefault(name, new TieredCacheProperties.Spec());
+            boolean useL2 = properties.isL2Enabled() && spec.isL2();
+            caches.add(new TieredCache(name, spec, useL2 ? aerospikeCacheService : null,
+                    properties.getL2SetPrefix() + name, objectMapper, invalidationBus, meterRegistry));
+            logger.info("Cache '{}': maxSize={}, ttl={}s, refresh={}s, l2={}", name, spec.getMaximumSize(),
+                    spec.getExpireAfterWriteSeconds(), spec.getRefreshAfterWriteSeconds(), useL2);
+        }
+    }
+
+    @Override
+    protected Collection<? extends Cache> loadCaches() {
+        return caches;
+    }
+}
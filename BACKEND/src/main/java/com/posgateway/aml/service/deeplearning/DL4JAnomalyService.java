@@ -1,5 +1,7 @@
 package com.posgateway.aml.service.deeplearning;
 
+import com.posgateway.aml.features.Feature;
+import com.posgateway.aml.features.FeatureVector;
 import com.posgateway.aml.service.graph.AerospikeGraphCacheService;
 import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
 import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
@@ -120,6 +122,17 @@ public class DL4JAnomalyService {
      * @return Anomaly detection result with score and flag
      */
     public AnomalyResult detectAnomaly(Long txnId, Map<String, Object> features) {
+        return detectAnomaly(txnId, FeatureVector.fromMap(features));
+    }
+
+    /**
+     * Compute anomaly score for a transaction from a typed feature vector.
+     *
+     * @param txnId    Transaction ID
+     * @param features Feature vector from FeatureExtractionService
+     * @return Anomaly detection result with score and flag
+     */
+    public AnomalyResult detectAnomaly(Long txnId, FeatureVector features) {
         if (!dl4jEnabled || autoencoder == null) {
             logger.debug("DL4J disabled, returning default anomaly score for txn {}", txnId);
             return new AnomalyResult(txnId, 0.0, false, "DL4J_DISABLED");
@@ -167,42 +180,41 @@ public class DL4JAnomalyService {
     }
 
     /**
-     * Convert feature map to ND4J array.
-     * Normalizes numeric features to [0, 1] range.
+     * Convert feature vector to ND4J array.
+     * Normalizes numeric features to [0, 1] range; absent features map to 0.
      */
-    private INDArray featuresToNDArray(Map<String, Object> features) {
+    private INDArray featuresToNDArray(FeatureVector features) {
         double[] featureArray = new double[INPUT_SIZE];
 
         // Map key features to array positions
-        featureArray[0] = normalize(features.get("amount"), 0, 100000);
-        featureArray[1] = normalize(features.get("log_amount"), 0, 12);
-        featureArray[2] = normalize(features.get("txn_hour_of_day"), 0, 24);
-        featureArray[3] = normalize(features.get("txn_day_of_week"), 1, 7);
-        featureArray[4] = normalize(features.get("merchant_txn_count_1h"), 0, 100);
-        featureArray[5] = normalize(features.get("merchant_txn_amount_sum_24h"), 0, 1000000);
-        featureArray[6] = normalize(features.get("pan_txn_count_1h"), 0, 50);
-        featureArray[7] = normalize(features.get("pan_txn_amount_sum_7d"), 0, 50000);
-        featureArray[8] = normalize(features.get("distinct_terminals_last_30d_for_pan"), 0, 20);
-        featureArray[9] = normalize(features.get("avg_amount_by_pan_30d"), 0, 10000);
-        featureArray[10] = normalize(features.get("time_since_last_txn_for_pan_minutes"), 0, 10080);
-        featureArray[11] = normalize(features.get("zscore_amount_vs_pan_history"), -5, 5);
+        featureArray[0] = normalize(features, Feature.AMOUNT, 0, 100000);
+        featureArray[1] = normalize(features, Feature.LOG_AMOUNT, 0, 12);
+        featureArray[2] = normalize(features, Feature.TXN_HOUR_OF_DAY, 0, 24);
+        featureArray[3] = normalize(features, Feature.TXN_DAY_OF_WEEK, 1, 7);
+        featureArray[4] = normalize(features, Feature.MERCHANT_TXN_COUNT_1H, 0, 100);
+        featureArray[5] = normalize(features, Feature.MERCHANT_TXN_AMOUNT_SUM_24H, 0, 1000000);
+        featureArray[6] = normalize(features, Feature.PAN_TXN_COUNT_1H, 0, 50);
+        featureArray[7] = normalize(features, Feature.PAN_TXN_AMOUNT_SUM_7D, 0, 50000);
+        featureArray[8] = normalize(features, Feature.DISTINCT_TERMINALS_LAST_30D_FOR_PAN, 0, 20);
+        featureArray[9] = normalize(features, Feature.AVG_AMOUNT_BY_PAN_30D, 0, 10000);
+        featureArray[10] = normalize(features, Feature.TIME_SINCE_LAST_TXN_FOR_PAN_MINUTES, 0, 10080);
+        featureArray[11] = normalize(features, Feature.ZSCORE_AMOUNT_VS_PAN_HISTORY, -5, 5);
 
         // Graph features from Neo4j GDS
-        featureArray[12] = normalize(features.get("pageRank"), 0, 1);
-        featureArray[13] = normalize(features.get("betweenness"), 0, 1);
-        featureArray[14] = normalize(features.get("connectionCount"), 0, 100);
+        featureArray[12] = normalize(features, Feature.PAGE_RANK, 0, 1);
+        featureArray[13] = normalize(features, Feature.BETWEENNESS, 0, 1);
+        featureArray[14] = normalize(features, Feature.CONNECTION_COUNT, 0, 100);
 
         // ML score from XGBoost
-        featureArray[15] = normalize(features.get("ml_score"), 0, 1);
+        featureArray[15] = normalize(features, Feature.ML_SCORE, 0, 1);
 
         // Boolean/categorical features
-        featureArray[16] = boolToDouble(features.get("is_chip_present"));
-        featureArray[17] = boolToDouble(features.get("is_contactless"));
-        featureArray[18] = normalize(features.get("cvm_method"), 0, 10);
+        featureArray[16] = features.getBoolean(Feature.IS_CHIP_PRESENT) ? 1.0 : 0.0;
+        featureArray[17] = features.getBoolean(Feature.IS_CONTACTLESS) ? 1.0 : 0.0;
+        featureArray[18] = normalize(features, Feature.CVM_METHOD, 0, 10);
 
         // Community ID (modulo for normalization)
-        Object communityId = features.get("communityId");
-        featureArray[19] = communityId != null ? (((Number) communityId).longValue() % 100) / 100.0 : 0.0;
+        featureArray[19] = (features.getLong(Feature.COMMUNITY_ID) % 100) / 100.0;
 
         return Nd4j.create(featureArray).reshape(1, INPUT_SIZE);
     }
@@ -216,21 +228,13 @@ public class DL4JAnomalyService {
         return squared.meanNumber().doubleValue();
     }
 
-    private double normalize(Object value, double min, double max) {
-        if (value == null)
+    private double normalize(FeatureVector features, Feature feature, double min, double max) {
+        if (!features.has(feature))
             return 0.0;
-        double v = value instanceof Number ? ((Number) value).doubleValue() : 0.0;
+        double v = features.get(feature);
         return Math.max(0.0, Math.min(1.0, (v - min) / (max - min)));
     }
 
-    private double boolToDouble(Object value) {
-        if (value == null)
-            return 0.0;
-        if (value instanceof Boolean)
-            return (Boolean) value ? 1.0 : 0.0;
-        return 0.0;
-    }
-
     /**
      * Cache anomaly result in Aerospike.
      */
@@ -0,0 +1,398 @@
+package com.posgateway.aml.service.download;
+
+import com.aerospike.client.AerospikeClient;
+import com.aerospike.client.BatchRecord;
+import com.aerospike.client.BatchResults;
+import com.aerospike.client.BatchWrite;
+import com.aerospike.client.Bin;
+import com.aerospike.client.Key;
+import com.aerospike.client.Operation;
+import com.aerospike.client.ResultCode;
+import com.aerospike.client.policy.BatchPolicy;
+import com.aerospike.client.policy.BatchWritePolicy;
+import com.aerospike.client.policy.ScanPolicy;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.posgateway.aml.service.AerospikeConnectionService;
+import com.posgateway.aml.service.sanctions.NameMatchingService;
+import com.posgateway.aml.service.sanctions.SanctionsIndexService;
+import com.posgateway.aml.service.sanctions.SanctionsNameIndex;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.apache.commons.codec.digest.MurmurHash3;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sanctions Ingest Pipeline
+ * Loads an OpenSanctions (FollowTheMoney NDJSON) export into Aerospike.
+ *
+ * Pipeline:
+ * 1. The file is streamed line by line (one entity per line) into batches
+ * 2. Worker threads parse each batch (JSON, names, aliases, phonetic codes, content
+ *    hash) and feed the in-memory screening index; a malformed line only loses itself
+ * 3. Changed entities are written with one Aerospike batch call per batch
+ *
+ * Delta loading: each record keeps a hash of its content. Existing hashes are read
+ * before the load, so unchanged entities are not rewritten, and records missing from
+ * a complete export are deleted afterwards. Records are keyed by the FtM entity id.
+ */
+@Service
+public class SanctionsIngestPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(SanctionsIngestPipeline.class);
+
+    static final String SET_NAME = "entities";
+    static final String HASH_BIN = "content_hash";
+    // Changes on every export without any change to the entity
+    private static final String VOLATILE_FIELD = "last_seen";
+
+    private final NameMatchingService nameMatchingService;
+    private final SanctionsIndexService sanctionsIndexService;
+    private final AerospikeConnectionService aerospikeService;
+    private final ObjectReader jsonReader;
+    private final MeterRegistry meterRegistry;
+
+    // Progress of the current (or last) load
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong unchanged = new AtomicLong();
+    private final AtomicLong deleted = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    private Counter entitiesCounter;
+    private Timer loadTimer;
+
+    @Value("${sanctions.ingest.batch.size:500}")
+    private int batchSize;
+
+    @Value("${sanctions.ingest.parallelism:0}")
+    private int parallelism;
+
+    @Value("${sanctions.ingest.delta.enabled:true}")
+    private boolean deltaEnabled;
+
+    @Value("${sanctions.ingest.timeout.minutes:60}")
+    private long timeoutMinutes;
+
+    @Autowired
+    public SanctionsIngestPipeline(NameMatchingService nameMatchingService,
+            SanctionsIndexService sanctionsIndexService, AerospikeConnectionService aerospikeService,
+            ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.nameMatchingService = nameMatchingService;
+        this.sanctionsIndexService = sanctionsIndexService;
+        this.aerospikeService = aerospikeService;
+        this.jsonReader = objectMapper.readerFor(JsonNode.class);
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (parallelism <= 0) {
+            parallelism = Math.max(1, Runtime.getRuntime().availableProcessors());
+        }
+        entitiesCounter = Counter.builder("aml_sanctions_ingest_entities_total")
+                .description("Sanctions entities read from list exports")
+                .register(meterRegistry);
+        loadTimer = Timer.builder("aml_sanctions_ingest_duration")
+                .description("Duration of sanctions list loads")
+                .register(meterRegistry);
+        registerProgressGauge("processed", processed);
+        registerProgressGauge("written", written);
+        registerProgressGauge("unchanged", unchanged);
+        registerProgressGauge("deleted", deleted);
+        registerProgressGauge("skipped", skipped);
+        registerProgressGauge("failed", failed);
+    }
+
+    private void registerProgressGauge(String stage, AtomicLong value) {
+        Gauge.builder("aml_sanctions_ingest_progress", value, AtomicLong::get)
+                .tag("stage", stage)
+                .description("Entities handled by the current or last sanctions load")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Load an export file into Aerospike and publish a new screening index
+     *
+     * @return number of entities read
+     */
+    public int load(Path filePath, String version) throws IOException {
+        long start = System.nanoTime();
+        processed.set(0);
+        written.set(0);
+        unchanged.set(0);
+        deleted.set(0);
+        skipped.set(0);
+        failed.set(0);
+
+        AerospikeClient client = aerospikeService.isConnected() ? aerospikeService.getClient() : null;
+        if (client == null) {
+            logger.warn("Aerospike not connected - sanctions list {} will only be loaded into the in-memory index",
+                    version);
+        }
+        String namespace = aerospikeService.getNamespace();
+
+        // Content hashes of the records already stored, by key digest
+        Map<ByteBuffer, Long> existing = client != null && deltaEnabled
+                ? readExistingHashes(client, namespace)
+                : new ConcurrentHashMap<>();
+        SanctionsNameIndex.Builder indexBuilder = sanctionsIndexService.newBuilder();
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "sanctions-ingest-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Bounds the batches parsed but not yet written
+        Semaphore inFlight = new Semaphore(parallelism * 2);
+        boolean complete = false;
+
+        try (BufferedReader reader = Files.newBufferedReader(filePath)) {
+            List<String> batch = new ArrayList<>(batchSize);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                batch.add(line);
+                if (batch.size() >= batchSize) {
+                    submit(workers, inFlight, batch, client, namespace, existing, indexBuilder);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                submit(workers, inFlight, batch, client, namespace, existing, indexBuilder);
+            }
+
+            workers.shutdown();
+            complete = workers.awaitTermination(timeoutMinutes, TimeUnit.MINUTES);
+            if (!complete) {
+                logger.error("Sanctions load {} did not finish within {} minutes", version, timeoutMinutes);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Sanctions load interrupted", e);
+        } finally {
+            workers.shutdownNow();
+        }
+
+        // Only a complete, clean run can tell which entities were removed from the list
+        if (complete && client != null && deltaEnabled && processed.get() > 0 && failed.get() == 0) {
+            deleteRemoved(client, namespace, existing);
+        } else if (!existing.isEmpty()) {
+            logger.warn("Skipping removal of {} stale sanctions records (incomplete load or {} failures)",
+                    existing.size(), failed.get());
+        }
+
+        if (complete) {
+            sanctionsIndexService.publish(indexBuilder, version);
+        }
+
+        long elapsed = System.nanoTime() - start;
+        loadTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        logger.info("Sanctions list {} loaded in {}s: {} entities, {} written, {} unchanged, {} deleted, "
+                + "{} skipped, {} failed", version, TimeUnit.NANOSECONDS.toSeconds(elapsed), processed.get(),
+                written.get(), unchanged.get(), deleted.get(), skipped.get(), failed.get());
+        return (int) processed.get();
+    }
+
+    private void submit(ExecutorService workers, Semaphore inFlight, List<String> batch, AerospikeClient client,
+            String namespace, Map<ByteBuffer, Long> existing, SanctionsNameIndex.Builder indexBuilder)
+            throws InterruptedException {
+        inFlight.acquire();
+        try {
+            workers.execute(() -> {
+                try {
+                    processBatch(batch, client, namespace, existing, indexBuilder);
+                } catch (Exception e) {
+                    failed.addAndGet(batch.size());
+                    logger.error("Sanctions batch failed: {}", e.getMessage(), e);
+                } finally {
+                    inFlight.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    private void processBatch(List<String> batch, AerospikeClient client, String namespace,
+            Map<ByteBuffer, Long> existing, SanctionsNameIndex.Builder indexBuilder) {
+        List<BatchRecord> writes = new ArrayList<>(batch.size());
+        BatchWritePolicy writePolicy = new BatchWritePolicy();
+        writePolicy.sendKey = true;
+        long now = System.currentTimeMillis();
+
+        for (String line : batch) {
+            JsonNode json;
+            try {
+                json = jsonReader.readTree(line);
+            } catch (IOException e) {
+                failed.incrementAndGet();
+                logger.warn("Failed to parse entity: {}", e.getMessage());
+                continue;
+            }
+            if (!json.isObject()) {
+                skipped.incrementAndGet();
+                continue;
+            }
+            SanctionsNameIndex.Entry entry = sanctionsIndexService.parseEntity(json);
+            if (entry == null || entry.getEntityId() == null) {
+                skipped.incrementAndGet(); // Nothing to screen against
+                continue;
+            }
+            processed.incrementAndGet();
+            entitiesCounter.increment();
+            sanctionsIndexService.addEntry(indexBuilder, entry);
+            if (client == null) {
+                continue;
+            }
+
+            ((ObjectNode) json).remove(VOLATILE_FIELD);
+            String rawData = json.toString();
+            long hash = contentHash(rawData);
+
+            Key key = new Key(namespace, SET_NAME, entry.getEntityId());
+            Long previousHash = existing.remove(ByteBuffer.wrap(key.digest));
+            if (previousHash != null && previousHash == hash) {
+                unchanged.incrementAndGet();
+                continue;
+            }
+            writes.add(new BatchWrite(writePolicy, key, toOperations(entry, rawData, hash, now)));
+        }
+
+        if (writes.isEmpty()) {
+            return;
+        }
+        try {
+            if (!client.operate((BatchPolicy) null, writes)) {
+                logger.warn("Aerospike batch write partially failed");
+            }
+        } catch (com.aerospike.client.AerospikeException e) {
+            logger.warn("Aerospike batch write failed: {}", e.getMessage());
+        }
+        for (BatchRecord record : writes) {
+            if (record.resultCode == ResultCode.OK) {
+                written.incrementAndGet();
+            } else {
+                failed.incrementAndGet();
+            }
+        }
+    }
+
+    private Operation[] toOperations(SanctionsNameIndex.Entry entry, String rawData, long hash, long now) {
+        String normalized = nameMatchingService.normalizeName(entry.getName());
+        return new Operation[] {
+                Operation.put(new Bin("full_name", entry.getName())),
+                Operation.put(new Bin("entity_type", entry.getEntityType().name())),
+                Operation.put(new Bin("name_metaphone",
+                        nameMatchingService.generatePhoneticCodeNormalized(normalized, false))),
+                Operation.put(new Bin("name_metaphone_alt",
+                        nameMatchingService.generatePhoneticCodeNormalized(normalized, true))),
+                Operation.put(new Bin("aliases", entry.getAliases())),
+                Operation.put(new Bin("list_name", entry.getListName())),
+                Operation.put(new Bin("sanction_type", entry.getSanctionType())),
+                Operation.put(new Bin("program", entry.getPrograms())),
+                Operation.put(new Bin("nationality", entry.getNationality())),
+                Operation.put(entry.getDateOfBirth() != null
+                        ? new Bin("date_of_birth", entry.getDateOfBirth().toEpochDay() * 86400L)
+                        : Bin.asNull("date_of_birth")),
+                Operation.put(new Bin("raw_data", rawData)),
+                Operation.put(new Bin(HASH_BIN, hash)),
+                Operation.put(new Bin("updated_at", now))
+        };
+    }
+
+    private Map<ByteBuffer, Long> readExistingHashes(AerospikeClient client, String namespace) {
+        Map<ByteBuffer, Long> hashes = new ConcurrentHashMap<>();
+        long start = System.currentTimeMillis();
+        try {
+            ScanPolicy policy = new ScanPolicy();
+            policy.includeBinData = true;
+            client.scanAll(policy, namespace, SET_NAME, (key, record) -> {
+                Object hash = record.bins.get(HASH_BIN);
+                // Records without a hash predate delta loading and are replaced or removed
+                hashes.put(ByteBuffer.wrap(key.digest), hash instanceof Long ? (Long) hash : 0L);
+            }, HASH_BIN);
+            logger.info("Read {} existing sanctions record hashes in {}ms", hashes.size(),
+                    System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            logger.warn("Could not read existing sanctions hashes - doing a full load: {}", e.getMessage());
+            hashes.clear();
+        }
+        return hashes;
+    }
+
+    private void deleteRemoved(AerospikeClient client, String namespace, Map<ByteBuffer, Long> removed) {
+        if (removed.isEmpty()) {
+            return;
+        }
+        List<Key> keys = new ArrayList<>(removed.size());
+        for (ByteBuffer digest : removed.keySet()) {
+            keys.add(new Key(namespace, digest.array(), SET_NAME, null));
+        }
+        for (int from = 0; from < keys.size(); from += batchSize) {
+            Key[] chunk = keys.subList(from, Math.min(keys.size(), from + batchSize)).toArray(new Key[0]);
+            try {
+                BatchResults results = client.delete(null, null, chunk);
+                for (BatchRecord record : results.records) {
+                    if (record.resultCode == ResultCode.OK || record.resultCode == ResultCode.KEY_NOT_FOUND_ERROR) {
+                        deleted.incrementAndGet();
+                    }
+                }
+            } catch (Exception e) {
+                logger.warn("Failed to delete removed sanctions records: {}", e.getMessage());
+            }
+        }
+    }
+
+    private static long contentHash(String rawData) {
+        long[] hash = MurmurHash3.hash128x64(rawData.getBytes(StandardCharsets.UTF_8));
+        return hash[0] ^ hash[1];
+    }
+
+    public long getProcessedCount() {
+        return processed.get();
+    }
+
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    public long getUnchangedCount() {
+        return unchanged.get();
+    }
+
+    public long getDeletedCount() {
+        return deleted.get();
+    }
+}
@@ -2,7 +2,6 @@ package com.posgateway.aml.service.download;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.posgateway.aml.service.sanctions.NameMatchingService;
 import com.posgateway.aml.service.sanctions.WatchlistUpdateTrackingService;
 import io.github.resilience4j.retry.annotation.Retry;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -18,8 +17,6 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -32,21 +29,18 @@ import java.util.concurrent.atomic.AtomicReference;
 public class SanctionsListDownloadService {
     private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(SanctionsListDownloadService.class);
 
-    private final NameMatchingService nameMatchingService;
-    private final com.posgateway.aml.service.AerospikeConnectionService aerospikeService;
     private final ObjectMapper objectMapper;
     private final RestTemplate restTemplate;
     private final WatchlistUpdateTrackingService watchlistUpdateTrackingService;
+    private final SanctionsIngestPipeline ingestPipeline;
 
     @Autowired
-    public SanctionsListDownloadService(NameMatchingService nameMatchingService,
-            com.posgateway.aml.service.AerospikeConnectionService aerospikeService, ObjectMapper objectMapper,
-            RestTemplate restTemplate, WatchlistUpdateTrackingService watchlistUpdateTrackingService) {
-        this.nameMatchingService = nameMatchingService;
-        this.aerospikeService = aerospikeService;
+    public SanctionsListDownloadService(ObjectMapper objectMapper, RestTemplate restTemplate,
+            WatchlistUpdateTrackingService watchlistUpdateTrackingService, SanctionsIngestPipeline ingestPipeline) {
         this.objectMapper = objectMapper;
         this.restTemplate = restTemplate;
         this.watchlistUpdateTrackingService = watchlistUpdateTrackingService;
+        this.ingestPipeline = ingestPipeline;
     }
 
     @Value("${sanctions.download.enabled:true}")
@@ -190,111 +184,16 @@ public class SanctionsListDownloadService {
 
     /**
      * Process downloaded file and load to Aerospike
+     * Streams the file through SanctionsIngestPipeline, which writes only changed entities
+     * and rebuilds the in-memory screening index from the same pass.
      */
     private int processAndLoadToAerospike(Path filePath, String version) throws IOException {
         log.info("Processing sanctions file: {}", filePath);
-
-        int recordCount = 0;
-        List<SanctionEntity> batch = new ArrayList<>();
-        int batchSize = 100;
-
-        try (BufferedReader reader = Files.newBufferedReader(filePath)) {
-            String line;
-
-            while ((line = reader.readLine()) != null) {
-                if (line.trim().isEmpty())
-                    continue;
-
-                try {
-                    JsonNode entityJson = objectMapper.readTree(line);
-                    SanctionEntity entity = parseSanctionEntity(entityJson);
-
-                    batch.add(entity);
-                    recordCount++;
-
-                    // Process in batches
-                    if (batch.size() >= batchSize) {
-                        insertBatchToAerospike(batch);
-                        batch.clear();
-                    }
-
-                } catch (Exception e) {
-                    log.warn("Failed to parse entity: {}", e.getMessage());
-                }
-            }
-
-            // Process remaining batch
-            if (!batch.isEmpty()) {
-                insertBatchToAerospike(batch);
-            }
-        }
-
+        int recordCount = ingestPipeline.load(filePath, version);
         log.info("Processed {} sanctions entities", recordCount);
         return recordCount;
     }
 
-    /**
-     * Parse JSON into SanctionEntity
-     */
-    private SanctionEntity parseSanctionEntity(JsonNode json) {
-        String fullName = json.has("name") ? json.get("name").asText() : "";
-        String entityType = json.has("schema") ? json.get("schema").asText() : "UNKNOWN";
-
-        // Generate phonetic codes
-        String phoneticCode = nameMatchingService.generatePhoneticCode(fullName);
-        String altPhoneticCode = nameMatchingService.generateAlternatePhoneticCode(fullName);
-
-        return new SanctionEntity(fullName, entityType, phoneticCode, altPhoneticCode, json.toString());
-    }
-
-    /**
-     * Insert batch of entities to Aerospike
-     */
-    /**
-     * Insert batch of entities to Aerospike
-     */
-    private void insertBatchToAerospike(List<SanctionEntity> batch) {
-        if (batch == null || batch.isEmpty())
-            return;
-
-        com.aerospike.client.AerospikeClient client = aerospikeService.getClient();
-        if (client == null) {
-            log.error("Aerospike client not available for batch insertion");
-            return;
-        }
-
-        try {
-            com.aerospike.client.policy.WritePolicy policy = new com.aerospike.client.policy.WritePolicy();
-            policy.sendKey = true;
-            // policy.expiration = -1; // Never expire by default, or set retention
-
-            for (SanctionEntity entity : batch) {
-                // Key: phoneticCode (for fast lookup) + hash of name (collision avoidance)
-                String keyStr = entity.getPhoneticCode() + ":" + entity.getFullName().hashCode();
-                com.aerospike.client.Key key = new com.aerospike.client.Key("sanctions", "entities", keyStr);
-
-                com.aerospike.client.Bin nameBin = new com.aerospike.client.Bin("full_name", entity.getFullName());
-                com.aerospike.client.Bin typeBin = new com.aerospike.client.Bin("entity_type", entity.getEntityType());
-                com.aerospike.client.Bin phoneCodeBin = new com.aerospike.client.Bin("name_metaphone",
-                        entity.getPhoneticCode());
-                com.aerospike.client.Bin altCodeBin = new com.aerospike.client.Bin("name_alt_metaphone",
-                        entity.getAltPhoneticCode());
-                com.aerospike.client.Bin rawBin = new com.aerospike.client.Bin("raw_data", entity.getRawData());
-                com.aerospike.client.Bin updatedBin = new com.aerospike.client.Bin("updated_at",
-                        System.currentTimeMillis());
-
-                client.put(policy, key, nameBin, typeBin, phoneCodeBin, altCodeBin, rawBin, updatedBin);
-            }
-
-            log.debug("Inserted batch of {} entities to Aerospike", batch.size());
-
-        } catch (com.aerospike.client.AerospikeException e) {
-            log.error("Aerospike batch write error: {}", e.getMessage());
-            // In production, might want to retry individual records or throw to trigger
-            // global retry
-        }
-    }
-
     /**
      * Manual trigger for download
      */
@@ -308,41 +207,4 @@ public class SanctionsListDownloadService {
             throw e;
         }
     }
-
-    private static class SanctionEntity {
-        private String fullName;
-        private String entityType;
-        private String phoneticCode;
-        private String altPhoneticCode;
-        private String rawData;
-
-        public SanctionEntity(String fullName, String entityType, String phoneticCode, String altPhoneticCode,
-                String rawData) {
-            this.fullName = fullName;
-            this.entityType = entityType;
-            this.phoneticCode = phoneticCode;
-            this.altPhoneticCode = altPhoneticCode;
-            this.rawData = rawData;
-        }
-
-        public String getFullName() {
-            return fullName;
-        }
-
-        public String getEntityType() {
-            return entityType;
-        }
-
-        public String getPhoneticCode() {
-            return phoneticCode;
-        }
-
-        public String getAltPhoneticCode() {
-            return altPhoneticCode;
-        }
-
-        public String getRawData() {
-            return rawData;
-        }
-    }
 }
@@ -1,9 +1,15 @@
 package com.posgateway.aml.service.graph;
 
 import com.aerospike.client.AerospikeClient;
+import com.aerospike.client.BatchRecord;
+import com.aerospike.client.BatchWrite;
 import com.aerospike.client.Bin;
 import com.aerospike.client.Key;
+import com.aerospike.client.Operation;
 import com.aerospike.client.Record;
+import com.aerospike.client.ResultCode;
+import com.aerospike.client.policy.BatchPolicy;
+import com.aerospike.client.policy.BatchWritePolicy;
 import com.aerospike.client.policy.WritePolicy;
 import com.posgateway.aml.service.AerospikeConnectionService;
 import org.slf4j.Logger;
@@ -12,7 +18,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -45,6 +53,9 @@ public class AerospikeGraphCacheService {
     @Value("${aerospike.xgboost.cache.ttl:300}")
     private int xgboostCacheTtlSeconds; // 5 minutes default
 
+    @Value("${aerospike.graph.batch.size:1000}")
+    private int batchSize;
+
     @Autowired
     public AerospikeGraphCacheService(AerospikeConnectionService aerospikeConnectionService) {
         this.aerospikeConnectionService = aerospikeConnectionService;
@@ -69,29 +80,7 @@ public class AerospikeGraphCacheService {
             WritePolicy policy = new WritePolicy();
             policy.expiration = graphCacheTtlSeconds;
 
-            // Cast to specific types - Aerospike Bin requires explicit types
-            double pageRankVal = metrics.get("pageRank") != null ? ((Number) metrics.get("pageRank")).doubleValue()
-                    : 0.0;
-            long communityIdVal = metrics.get("communityId") != null ? ((Number) metrics.get("communityId")).longValue()
-                    : 0L;
-            double betweennessVal = metrics.get("betweenness") != null
-                    ? ((Number) metrics.get("betweenness")).doubleValue()
-                    : 0.0;
-            long connectionCountVal = metrics.get("connectionCount") != null
-                    ? ((Number) metrics.get("connectionCount")).longValue()
-                    : 0L;
-            double clusterCoeffVal = metrics.get("clusteringCoefficient") != null
-                    ? ((Number) metrics.get("clusteringCoefficient")).doubleValue()
-                    : 0.0;
-
-            Bin pageRank = new Bin("pageRank", pageRankVal);
-            Bin communityId = new Bin("communityId", communityIdVal);
-            Bin betweenness = new Bin("betweenness", betweennessVal);
-            Bin connectionCount = new Bin("connectionCount", connectionCountVal);
-            Bin clusterCoeff = new Bin("clusterCoeff", clusterCoeffVal);
-            Bin updatedAt = new Bin("updatedAt", System.currentTimeMillis());
-
-            client.put(policy, key, pageRank, communityId, betweenness, connectionCount, clusterCoeff, updatedAt);
+            client.put(policy, key, toBins(metrics, System.currentTimeMillis()));
             logger.debug("Cached graph metrics for merchant {} in Aerospike", merchantId);
 
         } catch (Exception e) {
@@ -99,6 +88,38 @@ public class AerospikeGraphCacheService {
         }
     }
 
+    /**
+     * Metric bins of one merchant. Aerospike Bin requires explicit types, missing
+     * metrics are stored as 0.
+     */
+    private static Bin[] toBins(Map<String, Object> metrics, long updatedAt) {
+        return new Bin[] {
+                new Bin("pageRank", doubleOf(metrics.get("pageRank"))),
+                new Bin("communityId", longOf(metrics.get("communityId"))),
+                new Bin("betweenness", doubleOf(metrics.get("betweenness"))),
+                new Bin("connectionCount", longOf(metrics.get("connectionCount"))),
+                new Bin("triangleCount", longOf(metrics.get("triangleCount"))),
+                new Bin("clusterCoeff", doubleOf(metrics.get("localClusteringCoefficient"))),
+                new Bin("updatedAt", updatedAt)
+        };
+    }
+
+    private static Operation[] toOperations(Bin[] bins) {
+        Operation[] operations = new Operation[bins.length];
+        for (int i = 0; i < bins.length; i++) {
+            operations[i] = Operation.put(bins[i]);
+        }
+        return operations;
+    }
+
+    private static double doubleOf(Object value) {
+        return value instanceof Number ? ((Number) value).doubleValue() : 0.0;
+    }
+
+    private static long longOf(Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : 0L;
+    }
+
     /**
      * Retrieve cached graph metrics for a merchant.
      * Returns null if not cached or expired.
@@ -119,7 +140,8 @@ public class AerospikeGraphCacheService {
                 metrics.put("communityId", record.getLong("communityId"));
                 metrics.put("betweenness", record.getDouble("betweenness"));
                 metrics.put("connectionCount", record.getLong("connectionCount"));
-                metrics.put("clusteringCoefficient", record.getDouble("clusterCoeff"));
+                metrics.put("triangleCount", record.getLong("triangleCount"));
+                metrics.put("localClusteringCoefficient", record.getDouble("clusterCoeff"));
                 metrics.put("cachedAt", record.getLong("updatedAt"));
                 logger.debug("Retrieved cached graph metrics for merchant {}", merchantId);
                 return metrics;
@@ -269,9 +291,58 @@ public class AerospikeGraphCacheService {
 
     /**
      * Bulk cache graph metrics for multiple merchants.
+     * Written with one Aerospike batch write per batchSize merchants instead of a put each.
+     *
+     * @return number of merchants written
      */
-    public void bulkCacheGraphMetrics(Map<String, Map<String, Object>> merchantMetrics) {
-        merchantMetrics.forEach(this::cacheGraphMetrics);
-        logger.info("Bulk cached graph metrics for {} merchants in Aerospike", merchantMetrics.size());
+    public int bulkCacheGraphMetrics(Map<String, Map<String, Object>> merchantMetrics) {
+        if (merchantMetrics.isEmpty()) {
+            return 0;
+        }
+        try {
+            AerospikeClient client = aerospikeConnectionService.getClient();
+            if (client == null || !client.isConnected()) {
+                logger.warn("Aerospike not connected, skipping graph metrics cache for {} merchants",
+                        merchantMetrics.size());
+                return 0;
+            }
+
+            BatchWritePolicy policy = new BatchWritePolicy();
+            policy.expiration = graphCacheTtlSeconds;
+            long now = System.currentTimeMillis();
+            int written = 0;
+            List<BatchRecord> writes = new ArrayList<>(Math.min(batchSize, merchantMetrics.size()));
+            for (Map.Entry<String, Map<String, Object>> entry : merchantMetrics.entrySet()) {
+                writes.add(new BatchWrite(policy, new Key(namespace, SET_GRAPH_METRICS, entry.getKey()),
+                        toOperations(toBins(entry.getValue(), now))));
+                if (writes.size() == batchSize) {
+                    written += writeBatch(client, writes);
+                    writes.clear();
+                }
+            }
+            written += writeBatch(client, writes);
+            logger.debug("Bulk cached graph metrics for {} of {} merchants in Aerospike", written,
+                    merchantMetrics.size());
+            return written;
+
+        } catch (Exception e) {
+            logger.error("Error bulk caching graph metrics for {} merchants: {}", merchantMetrics.size(),
+                    e.getMessage());
+            return 0;
+        }
+    }
+
+    private static int writeBatch(AerospikeClient client, List<BatchRecord> writes) {
+        if (writes.isEmpty()) {
+            return 0;
+        }
+        client.operate((BatchPolicy) null, writes);
+        int written = 0;
+        for (BatchRecord write : writes) {
+            if (write.resultCode == ResultCode.OK) {
+                written++;
+            }
+        }
+        return written;
     }
 }
@@ -0,0 +1,255 @@
+package com.posgateway.aml.service.graph;
+
+import com.aerospike.client.AerospikeClient;
+import com.aerospike.client.BatchRecord;
+import com.aerospike.client.BatchWrite;
+import com.aerospike.client.Bin;
+import com.aerospike.client.Key;
+import com.aerospike.client.Operation;
+import com.aerospike.client.Record;
+import com.aerospike.client.ResultCode;
+import com.aerospike.client.policy.BatchPolicy;
+import com.aerospike.client.policy.BatchWritePolicy;
+import com.aerospike.client.policy.WritePolicy;
+import com.posgateway.aml.service.AerospikeConnectionService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Graph Feature Near-Cache
+ * Keeps the latest GraphFeatureSnapshot in every JVM so graph features are a local
+ * lookup on the scoring path instead of a Neo4j (or Aerospike) round trip.
+ *
+ * The GDS refresh publishes each snapshot to Aerospike: the bytes are split into
+ * chunk records, then a manifest record (version, chunk count, size, CRC32) is written
+ * last so readers never see a partial snapshot. Every node polls the manifest and loads
+ * a newer version in the background; lookups keep using the previous snapshot until
+ * the new one is complete. Chunks expire on their own once superseded.
+ */
+@Service
+public class GraphFeatureNearCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(GraphFeatureNearCache.class);
+
+    private static final String SET_GRAPH_SNAPSHOTS = "graph_snapshots";
+    private static final String MANIFEST_KEY = "manifest";
+
+    private final AerospikeConnectionService aerospikeConnectionService;
+    private final MeterRegistry meterRegistry;
+
+    private volatile GraphFeatureSnapshot snapshot;
+    private volatile long loadedAtMillis;
+
+    private Counter hits;
+    private Counter misses;
+
+    @Value("${aerospike.namespace:aml_fraud}")
+    private String namespace;
+
+    @Value("${graph.nearcache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${graph.nearcache.chunk.bytes:524288}")
+    private int chunkBytes;
+
+    @Value("${graph.nearcache.snapshot.ttl.seconds:10800}")
+    private int snapshotTtlSeconds;
+
+    @Autowired
+    public GraphFeatureNearCache(AerospikeConnectionService aerospikeConnectionService,
+            MeterRegistry meterRegistry) {
+        this.aerospikeConnectionService = aerospikeConnectionService;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        hits = lookupCounter("hit");
+        misses = lookupCounter("miss");
+        Gauge.builder("aml_graph_nearcache_merchants", this,
+                cache -> cache.snapshot != null ? cache.snapshot.size() : 0)
+                .description("Merchants in the loaded graph feature snapshot")
+                .register(meterRegistry);
+        Gauge.builder("aml_graph_nearcache_bytes", this,
+                cache -> cache.snapshot != null ? cache.snapshot.sizeInBytes() : 0)
+                .description("Off-heap bytes of the loaded graph feature snapshot")
+                .register(meterRegistry);
+        Gauge.builder("aml_graph_nearcache_age_seconds", this,
+                cache -> cache.snapshot != null ? (System.currentTimeMillis() - cache.snapshot.getVersion()) / 1000.0 : 0)
+                .description("Age of the GDS refresh behind the loaded graph feature snapshot")
+                .register(meterRegistry);
+    }
+
+    private Counter lookupCounter(String result) {
+        return Counter.builder("aml_graph_nearcache_lookups_total")
+                .tag("result", result)
+                .description("Graph feature lookups against the near-cache")
+                .register(meterRegistry);
+    }
+
+    /**
+     * The loaded snapshot, or null if none is available yet (callers fall back to Neo4j)
+     */
+    public GraphFeatureSnapshot getSnapshot() {
+        return enabled ? snapshot : null;
+    }
+
+    /**
+     * Position of a merchant in the given snapshot (-1 if absent), counting hits and misses
+     */
+    public int lookup(GraphFeatureSnapshot current, String merchantId) {
+        int index = current.indexOf(merchantId);
+        (index >= 0 ? hits : misses).increment();
+        return index;
+    }
+
+    /**
+     * Install a snapshot locally and publish it for the other nodes
+     *
+     * A snapshot older than the loaded one (a slower refresh on another node) is ignored,
+     * so the manifest never moves back to an older version.
+     */
+    public void publish(GraphFeatureSnapshot published) {
+        if (!install(published)) {
+            logger.info("Graph feature snapshot {} is older than the loaded one, not published",
+                    published.getVersion());
+            return;
+        }
+        if (!aerospikeConnectionService.isConnected()) {
+            logger.warn("Aerospike not connected, graph feature snapshot {} kept local only",
+                    published.getVersion());
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        byte[] bytes = published.toBytes();
+        int chunks = (bytes.length + chunkBytes - 1) / chunkBytes;
+        try {
+            AerospikeClient client = aerospikeConnectionService.getClient();
+            BatchWritePolicy chunkPolicy = new BatchWritePolicy();
+            chunkPolicy.expiration = snapshotTtlSeconds;
+            List<BatchRecord> writes = new ArrayList<>(chunks);
+            for (int i = 0; i < chunks; i++) {
+                byte[] chunk = Arrays.copyOfRange(bytes, i * chunkBytes, Math.min(bytes.length, (i + 1) * chunkBytes));
+                writes.add(new BatchWrite(chunkPolicy, chunkKey(published.getVersion(), i),
+                        Operation.array(Operation.put(new Bin("data", chunk)))));
+            }
+            if (!client.operate((BatchPolicy) null, writes)) {
+                for (BatchRecord write : writes) {
+                    if (write.resultCode != ResultCode.OK) {
+                        logger.warn("Failed to publish graph feature snapshot {}: chunk write returned {}",
+                                published.getVersion(), ResultCode.getResultString(write.resultCode));
+                        return;
+                    }
+                }
+            }
+
+            WritePolicy manifestPolicy = new WritePolicy();
+            manifestPolicy.expiration = snapshotTtlSeconds;
+            client.put(manifestPolicy, new Key(namespace, SET_GRAPH_SNAPSHOTS, MANIFEST_KEY),
+                    new Bin("version", published.getVersion()),
+                    new Bin("chunks", chunks),
+                    new Bin("size", bytes.length),
+                    new Bin("crc", crc(bytes)),
+                    new Bin("merchants", published.size()));
+            logger.info("Published graph feature snapshot {} ({} merchants, {} bytes in {} chunks) in {}ms",
+                    published.getVersion(), published.size(), bytes.length, chunks,
+                    System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            logger.warn("Failed to publish graph feature snapshot {}: {}", published.getVersion(), e.getMessage());
+        }
+    }
+
+    /**
+     * Load the published snapshot if it is newer than the local one
+     */
+    @Scheduled(fixedDelayString = "${graph.nearcache.poll.interval.ms:60000}")
+    public void refresh() {
+        if (!enabled || !aerospikeConnectionService.isConnected()) {
+            return;
+        }
+        try {
+            AerospikeClient client = aerospikeConnectionService.getClient();
+            Record manifest = client.get(null, new Key(namespace, SET_GRAPH_SNAPSHOTS, MANIFEST_KEY));
+            if (manifest == null) {
+                return;
+            }
+            long version = manifest.getLong("version");
+            GraphFeatureSnapshot current = snapshot;
+            if (current != null && current.getVersion() >= version) {
+                return;
+            }
+
+            int chunks = manifest.getInt("chunks");
+            int size = manifest.getInt("size");
+            Key[] keys = new Key[chunks];
+            for (int i = 0; i < chunks; i++) {
+                keys[i] = chunkKey(version, i);
+            }
+            Record[] records = client.get((BatchPolicy) null, keys);
+
+            byte[] bytes = new byte[size];
+            int offset = 0;
+            for (Record record : records) {
+                byte[] chunk = record != null ? (byte[]) record.getValue("data") : null;
+                if (chunk == null || offset + chunk.length > size) {
+                    logger.warn("Graph feature snapshot {} is incomplete, keeping version {}", version,
+                            current != null ? current.getVersion() : "none");
+                    return;
+                }
+                System.arraycopy(chunk, 0, bytes, offset, chunk.length);
+                offset += chunk.length;
+            }
+            if (offset != size || crc(bytes) != manifest.getLong("crc")) {
+                logger.warn("Graph feature snapshot {} failed its checksum, keeping version {}", version,
+                        current != null ? current.getVersion() : "none");
+                return;
+            }
+            install(GraphFeatureSnapshot.fromBytes(bytes));
+        } catch (Exception e) {
+            logger.warn("Failed to load graph feature snapshot: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @return false when the loaded snapshot is already as new
+     */
+    private synchronized boolean install(GraphFeatureSnapshot loaded) {
+        GraphFeatureSnapshot current = snapshot;
+        if (current != null && current.getVersion() >= loaded.getVersion()) {
+            return false;
+        }
+        snapshot = loaded;
+        loadedAtMillis = System.currentTimeMillis();
+        logger.info("Loaded graph feature snapshot {} ({} merchants, {} KB off-heap)", loaded.getVersion(),
+                loaded.size(), loaded.sizeInBytes() / 1024);
+        return true;
+    }
+
+    public long getLoadedAtMillis() {
+        return loadedAtMillis;
+    }
+
+    private Key chunkKey(long version, int index) {
+        return new Key(namespace, SET_GRAPH_SNAPSHOTS, version + ":" + index);
+    }
+
+    private static long crc(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return crc.getValue();
+    }
+}
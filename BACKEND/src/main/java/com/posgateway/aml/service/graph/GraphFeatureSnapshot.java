@@ -0,0 +1,234 @@
+package com.posgateway.aml.service.graph;
+
+import org.apache.commons.codec.digest.MurmurHash3;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Graph Feature Snapshot
+ * Immutable table of the GDS metrics of every merchant, held off-heap in a single
+ * direct buffer.
+ *
+ * Layout (little endian):
+ * - header: magic, format, version (epoch millis of the GDS refresh), merchant count
+ * - keys: 64-bit hash of each merchant ID, sorted ascending
+ * - rows: pageRank, communityId, betweenness, connectionCount, triangleCount and
+ *   localClusteringCoefficient of the merchant at the same position (48 bytes)
+ *
+ * The serialized form is the buffer itself, so publishing and loading a snapshot is a
+ * byte copy. Lookups binary search the keys and read fields by position, without
+ * allocating. Merchant IDs whose hashes collide are left out (and read as missing).
+ */
+public final class GraphFeatureSnapshot {
+
+    private static final int MAGIC = 0x47465331; // "GFS1"
+    private static final int FORMAT = 1;
+    private static final int HEADER_BYTES = 24;
+    private static final int KEY_BYTES = 8;
+    private static final int ROW_BYTES = 48;
+
+    private static final int PAGE_RANK = 0;
+    private static final int COMMUNITY_ID = 8;
+    private static final int BETWEENNESS = 16;
+    private static final int CONNECTION_COUNT = 24;
+    private static final int TRIANGLE_COUNT = 32;
+    private static final int CLUSTERING_COEFFICIENT = 40;
+
+    private final ByteBuffer buffer;
+    private final long version;
+    private final int size;
+    private final int rowsOffset;
+
+    private GraphFeatureSnapshot(ByteBuffer buffer) {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT) {
+            throw new IllegalArgumentException("Not a graph feature snapshot");
+        }
+        this.version = buffer.getLong(8);
+        this.size = buffer.getInt(16);
+        this.rowsOffset = HEADER_BYTES + size * KEY_BYTES;
+        if (size < 0 || buffer.capacity() != rowsOffset + size * ROW_BYTES) {
+            throw new IllegalArgumentException("Truncated graph feature snapshot");
+        }
+    }
+
+    /**
+     * Load a serialized snapshot into a new off-heap buffer
+     */
+    public static GraphFeatureSnapshot fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(bytes);
+        return new GraphFeatureSnapshot(buffer);
+    }
+
+    public static Builder builder(long version, int expectedSize) {
+        return new Builder(version, expectedSize);
+    }
+
+    /**
+     * Position of a merchant in the snapshot, or -1 if it is not in it
+     */
+    public int indexOf(String merchantId) {
+        long key = hash(merchantId);
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midKey = buffer.getLong(HEADER_BYTES + mid * KEY_BYTES);
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    public double getPageRank(int index) {
+        return buffer.getDouble(row(index) + PAGE_RANK);
+    }
+
+    public long getCommunityId(int index) {
+        return buffer.getLong(row(index) + COMMUNITY_ID);
+    }
+
+    public double getBetweenness(int index) {
+        return buffer.getDouble(row(index) + BETWEENNESS);
+    }
+
+    public long getConnectionCount(int index) {
+        return buffer.getLong(row(index) + CONNECTION_COUNT);
+    }
+
+    public long getTriangleCount(int index) {
+        return buffer.getLong(row(index) + TRIANGLE_COUNT);
+    }
+
+    public double getClusteringCoefficient(int index) {
+        return buffer.getDouble(row(index) + CLUSTERING_COEFFICIENT);
+    }
+
+    private int row(int index) {
+        return rowsOffset + index * ROW_BYTES;
+    }
+
+    /**
+     * Serialized form, for publishing
+     */
+    public byte[] toBytes() {
+        byte[] bytes = new byte[buffer.capacity()];
+        buffer.duplicate().clear().get(bytes);
+        return bytes;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int sizeInBytes() {
+        return buffer.capacity();
+    }
+
+    static long hash(String merchantId) {
+        byte[] bytes = merchantId.getBytes(StandardCharsets.UTF_8);
+        return MurmurHash3.hash128x64(bytes, 0, bytes.length, 0)[0];
+    }
+
+    /**
+     * Collects merchant metrics in heap arrays, then sorts them into the off-heap layout
+     */
+    public static final class Builder {
+        private final long version;
+        private long[] keys;
+        // pageRank, betweenness, clustering / communityId, connectionCount, triangleCount
+        private double[] doubles;
+        private long[] longs;
+        private int count;
+
+        private Builder(long version, int expectedSize) {
+            this.version = version;
+            int capacity = Math.max(16, expectedSize);
+            this.keys = new long[capacity];
+            this.doubles = new double[capacity * 3];
+            this.longs = new long[capacity * 3];
+        }
+
+        public Builder add(String merchantId, double pageRank, long communityId, double betweenness,
+                long connectionCount, long triangleCount, double clusteringCoefficient) {
+            if (merchantId == null) {
+                return this;
+            }
+            if (count == keys.length) {
+                keys = Arrays.copyOf(keys, count * 2);
+                doubles = Arrays.copyOf(doubles, count * 6);
+                longs = Arrays.copyOf(longs, count * 6);
+            }
+            keys[count] = hash(merchantId);
+            int base = count * 3;
+            doubles[base] = pageRank;
+            doubles[base + 1] = betweenness;
+            doubles[base + 2] = clusteringCoefficient;
+            longs[base] = communityId;
+            longs[base + 1] = connectionCount;
+            longs[base + 2] = triangleCount;
+            count++;
+            return this;
+        }
+
+        public int size() {
+            return count;
+        }
+
+        public GraphFeatureSnapshot build() {
+            // Sort positions by key, then drop every key that occurs more than once
+            Integer[] order = new Integer[count];
+            for (int i = 0; i < count; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> Long.compare(keys[a], keys[b]));
+
+            int[] kept = new int[count];
+            int size = 0;
+            for (int i = 0; i < count;) {
+                int j = i + 1;
+                while (j < count && keys[order[j]] == keys[order[i]]) {
+                    j++;
+                }
+                if (j == i + 1) {
+                    kept[size++] = order[i];
+                }
+                i = j;
+            }
+
+            int rowsOffset = HEADER_BYTES + size * KEY_BYTES;
+            ByteBuffer buffer = ByteBuffer.allocateDirect(rowsOffset + size * ROW_BYTES)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, FORMAT);
+            buffer.putLong(8, version);
+            buffer.putInt(16, size);
+            for (int i = 0; i < size; i++) {
+                int source = kept[i];
+                int base = source * 3;
+                int row = rowsOffset + i * ROW_BYTES;
+                buffer.putLong(HEADER_BYTES + i * KEY_BYTES, keys[source]);
+                buffer.putDouble(row + PAGE_RANK, doubles[base]);
+                buffer.putLong(row + COMMUNITY_ID, longs[base]);
+                buffer.putDouble(row + BETWEENNESS, doubles[base + 1]);
+                buffer.putLong(row + CONNECTION_COUNT, longs[base + 1]);
+                buffer.putLong(row + TRIANGLE_COUNT, longs[base + 2]);
+                buffer.putDouble(row + CLUSTERING_COEFFICIENT, doubles[base + 2]);
+            }
+            return new GraphFeatureSnapshot(buffer);
+        }
+    }
+}
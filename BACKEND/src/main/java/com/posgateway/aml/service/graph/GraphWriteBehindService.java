@@ -0,0 +1,476 @@
+package com.posgateway.aml.service.graph;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Session;
+import org.neo4j.driver.SessionConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Graph Write-Behind Service
+ * Buffers graph updates in memory and writes them to Neo4j in batches, off the
+ * ingestion path.
+ *
+ * - Transactions go through a bounded queue and are written by a single writer thread,
+ *   one UNWIND ... MERGE statement per batch (merchant node, transaction node and
+ *   FROM_MERCHANT edge)
+ * - Merchant-to-merchant links are summed per (from, to) pair in memory and each pair is
+ *   written once per flush as an increment of its TRANSACTS_WITH edge
+ * - A failed batch is kept and retried (with backoff) before anything newer is written.
+ *   Node and transaction writes are MERGEs on unique keys, so replaying them is harmless;
+ *   edge increments carry the batch ID and are skipped by edges that already applied it
+ * - When the queue (or the link map) is full, new updates are dropped and counted rather
+ *   than blocking transaction ingestion
+ *
+ * Merchants that are created or whose TRANSACTS_WITH edges change are flagged gdsDirty
+ * for the incremental GDS refresh in Neo4jGdsService.
+ *
+ * Lag (age of the oldest update not yet in the graph) and queue depth are exported as
+ * gauges.
+ */
+@Service
+@ConditionalOnProperty(name = "neo4j.enabled", havingValue = "true", matchIfMissing = false)
+public class GraphWriteBehindService {
+
+    private static final Logger logger = LoggerFactory.getLogger(GraphWriteBehindService.class);
+
+    private static final String TRANSACTIONS_CYPHER = """
+            UNWIND $rows AS row
+            MERGE (m:Merchant {merchantId: row.merchantId})
+              ON CREATE SET m.legalName = 'Merchant ' + row.merchantId, m.mcc = '0000', m.country = 'UNK',
+                            m.createdAt = row.timestamp, m.gdsDirty = true
+            MERGE (t:Transaction {txnId: row.txnId})
+            SET t.amount = row.amount, t.currency = row.currency, t.channel = row.channel,
+                t.timestamp = row.timestamp
+            MERGE (t)-[:FROM_MERCHANT]->(m)
+            """;
+
+    private static final String LINKS_CYPHER = """
+            UNWIND $rows AS row
+            MERGE (a:Merchant {merchantId: row.from})
+              ON CREATE SET a.legalName = 'Merchant ' + row.from, a.mcc = '0000', a.country = 'UNK',
+                            a.createdAt = row.firstTxnAt
+            MERGE (b:Merchant {merchantId: row.to})
+              ON CREATE SET b.legalName = 'Merchant ' + row.to, b.mcc = '0000', b.country = 'UNK',
+                            b.createdAt = row.firstTxnAt
+            MERGE (a)-[r:TRANSACTS_WITH]->(b)
+              ON CREATE SET r.totalAmount = 0.0, r.txnCount = 0, r.firstTxnAt = row.firstTxnAt
+            WITH r, row
+            WHERE r.lastBatchId IS NULL OR r.lastBatchId <> $batchId
+            SET r.totalAmount = r.totalAmount + row.amount, r.txnCount = r.txnCount + row.count
+            SET r.avgAmount = r.totalAmount / r.txnCount, r.lastTxnAt = row.lastTxnAt, r.lastBatchId = $batchId,
+                a.gdsDirty = true, b.gdsDirty = true
+            """;
+
+    private static final String[] CONSTRAINTS = {
+            "CREATE CONSTRAINT merchant_id_unique IF NOT EXISTS FOR (m:Merchant) REQUIRE m.merchantId IS UNIQUE",
+            "CREATE CONSTRAINT transaction_id_unique IF NOT EXISTS FOR (t:Transaction) REQUIRE t.txnId IS UNIQUE"
+    };
+
+    private final Driver neo4jDriver;
+    private final MeterRegistry meterRegistry;
+
+    private BlockingQueue<TransactionRow> queue;
+    // Merchant links accumulated since the last flush; swapped under the write lock
+    private final ReadWriteLock linksLock = new ReentrantReadWriteLock();
+    private Map<LinkKey, LinkAggregate> links = new ConcurrentHashMap<>();
+
+    // Batches written unsuccessfully, retried before newer data (writer thread only)
+    private volatile List<TransactionRow> failedTransactions;
+    private PendingLinks failedLinks;
+    private volatile long oldestFailedMillis;
+
+    private Thread writer;
+    private volatile boolean running;
+
+    private Counter transactionsWritten;
+    private Counter transactionsDropped;
+    private Counter linksWritten;
+    private Counter linksDropped;
+    private Counter flushFailures;
+    private Timer transactionFlushTimer;
+    private Timer linkFlushTimer;
+
+    @Value("${neo4j.ingest.queue.capacity:200000}")
+    private int queueCapacity;
+
+    @Value("${neo4j.ingest.max.links:100000}")
+    private int maxLinks;
+
+    @Value("${neo4j.ingest.batch.size:5000}")
+    private int batchSize;
+
+    @Value("${neo4j.ingest.flush.interval.ms:250}")
+    private long flushIntervalMs;
+
+    @Value("${neo4j.ingest.retry.backoff.ms:1000}")
+    private long retryBackoffMs;
+
+    @Autowired
+    public GraphWriteBehindService(Driver neo4jDriver, MeterRegistry meterRegistry) {
+        this.neo4jDriver = neo4jDriver;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        transactionsWritten = rowCounter("transactions", "written");
+        transactionsDropped = rowCounter("transactions", "dropped");
+        linksWritten = rowCounter("links", "written");
+        linksDropped = rowCounter("links", "dropped");
+        flushFailures = Counter.builder("aml_graph_ingest_flush_failures_total")
+                .description("Neo4j write-behind batches that failed and will be retried")
+                .register(meterRegistry);
+        transactionFlushTimer = flushTimer("transactions");
+        linkFlushTimer = flushTimer("links");
+        Gauge.builder("aml_graph_ingest_queue_size", this, service -> service.queue.size())
+                .description("Transactions waiting to be written to Neo4j")
+                .register(meterRegistry);
+        Gauge.builder("aml_graph_ingest_lag_seconds", this, GraphWriteBehindService::lagSeconds)
+                .description("Age of the oldest update not yet written to Neo4j")
+                .register(meterRegistry);
+
+        createConstraints();
+
+        running = true;
+        writer = new Thread(this::writeLoop, "neo4j-write-behind");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private Counter rowCounter(String kind, String result) {
+        return Counter.builder("aml_graph_ingest_rows_total")
+                .tag("kind", kind)
+                .tag("result", result)
+                .description("Graph updates handled by the Neo4j write-behind")
+                .register(meterRegistry);
+    }
+
+    private Timer flushTimer(String kind) {
+        return Timer.builder("aml_graph_ingest_flush_duration")
+                .tag("kind", kind)
+                .description("Time to write one write-behind batch to Neo4j")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Unique constraints back the MERGE keys with an index (and keep MERGE from
+     * creating duplicates)
+     */
+    private void createConstraints() {
+        try (Session session = neo4jDriver.session(SessionConfig.defaultConfig())) {
+            for (String constraint : CONSTRAINTS) {
+                session.run(constraint).consume();
+            }
+        } catch (Exception e) {
+            logger.warn("Could not create Neo4j constraints (existing duplicates?): {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Queue a transaction for the graph
+     *
+     * @return false if the queue is full and the transaction was dropped
+     */
+    public boolean enqueueTransaction(String txnId, String merchantId, String amount, String currency,
+            String channel, LocalDateTime timestamp) {
+        if (queue.offer(new TransactionRow(txnId, merchantId, amount, currency, channel, timestamp))) {
+            return true;
+        }
+        transactionsDropped.increment();
+        return false;
+    }
+
+    /**
+     * Add a merchant-to-merchant payment to the TRANSACTS_WITH edge aggregates
+     *
+     * @return false if too many distinct pairs are pending and the link was dropped
+     */
+    public boolean recordMerchantLink(String fromMerchantId, String toMerchantId, double amount,
+            LocalDateTime timestamp) {
+        LinkKey key = new LinkKey(fromMerchantId, toMerchantId);
+        linksLock.readLock().lock();
+        try {
+            LinkAggregate aggregate = links.get(key);
+            if (aggregate == null) {
+                if (links.size() >= maxLinks) {
+                    linksDropped.increment();
+                    return false;
+                }
+                aggregate = links.computeIfAbsent(key, k -> new LinkAggregate());
+            }
+            aggregate.add(amount, timestamp);
+            return true;
+        } finally {
+            linksLock.readLock().unlock();
+        }
+    }
+
+    private void writeLoop() {
+        List<TransactionRow> batch = new ArrayList<>(batchSize);
+        long lastLinkFlush = System.currentTimeMillis();
+
+        while (running || !queue.isEmpty()) {
+            try {
+                if (!retryFailed()) {
+                    Thread.sleep(retryBackoffMs);
+                    continue;
+                }
+
+                // Wait for the first row, then take whatever else is ready up to a batch
+                TransactionRow first = queue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                    if (!writeTransactions(batch)) {
+                        failedTransactions = new ArrayList<>(batch);
+                        oldestFailedMillis = batch.get(0).enqueuedAtMillis;
+                    }
+                    batch.clear();
+                }
+
+                if (System.currentTimeMillis() - lastLinkFlush >= flushIntervalMs) {
+                    lastLinkFlush = System.currentTimeMillis();
+                    PendingLinks pending = swapLinks();
+                    if (pending != null && !writeLinks(pending)) {
+                        failedLinks = pending;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                logger.error("Neo4j write-behind loop error: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Retry the batches that failed earlier, oldest data first
+     *
+     * @return true when nothing is left to retry
+     */
+    private boolean retryFailed() {
+        if (failedTransactions != null && writeTransactions(failedTransactions)) {
+            failedTransactions = null;
+        }
+        if (failedLinks != null && writeLinks(failedLinks)) {
+            failedLinks = null;
+        }
+        return failedTransactions == null && failedLinks == null;
+    }
+
+    private PendingLinks swapLinks() {
+        Map<LinkKey, LinkAggregate> taken;
+        linksLock.writeLock().lock();
+        try {
+            if (links.isEmpty()) {
+                return null;
+            }
+            taken = links;
+            links = new ConcurrentHashMap<>();
+        } finally {
+            linksLock.writeLock().unlock();
+        }
+
+        List<Map<String, Object>> rows = new ArrayList<>(taken.size());
+        for (Map.Entry<LinkKey, LinkAggregate> entry : taken.entrySet()) {
+            LinkAggregate aggregate = entry.getValue();
+            Map<String, Object> row = new HashMap<>(8);
+            row.put("from", entry.getKey().from);
+            row.put("to", entry.getKey().to);
+            row.put("amount", aggregate.amount);
+            row.put("count", aggregate.count);
+            row.put("firstTxnAt", aggregate.firstTxnAt);
+            row.put("lastTxnAt", aggregate.lastTxnAt);
+            rows.add(row);
+        }
+        return new PendingLinks(UUID.randomUUID().toString(), rows);
+    }
+
+    private boolean writeTransactions(List<TransactionRow> batch) {
+        List<Map<String, Object>> rows = new ArrayList<>(batch.size());
+        for (TransactionRow transaction : batch) {
+            rows.add(transaction.toParameters());
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try (Session session = neo4jDriver.session(SessionConfig.defaultConfig())) {
+            session.executeWriteWithoutResult(tx -> tx.run(TRANSACTIONS_CYPHER, Map.of("rows", rows)).consume());
+            transactionsWritten.increment(batch.size());
+            return true;
+        } catch (Exception e) {
+            flushFailures.increment();
+            logger.warn("Failed to write {} transactions to Neo4j, will retry: {}", batch.size(), e.getMessage());
+            return false;
+        } finally {
+            sample.stop(transactionFlushTimer);
+        }
+    }
+
+    private boolean writeLinks(PendingLinks pending) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try (Session session = neo4jDriver.session(SessionConfig.defaultConfig())) {
+            for (int from = 0; from < pending.rows.size(); from += batchSize) {
+                List<Map<String, Object>> chunk = pending.rows.subList(from,
+                        Math.min(pending.rows.size(), from + batchSize));
+                session.executeWriteWithoutResult(tx -> tx.run(LINKS_CYPHER,
+                        Map.of("rows", chunk, "batchId", pending.batchId)).consume());
+            }
+            linksWritten.increment(pending.rows.size());
+            return true;
+        } catch (Exception e) {
+            flushFailures.increment();
+            logger.warn("Failed to write {} merchant links to Neo4j, will retry: {}", pending.rows.size(),
+                    e.getMessage());
+            return false;
+        } finally {
+            sample.stop(linkFlushTimer);
+        }
+    }
+
+    private double lagSeconds() {
+        long oldest = Long.MAX_VALUE;
+        if (failedTransactions != null) {
+            oldest = oldestFailedMillis;
+        }
+        TransactionRow head = queue.peek();
+        if (head != null) {
+            oldest = Math.min(oldest, head.enqueuedAtMillis);
+        }
+        return oldest == Long.MAX_VALUE ? 0.0 : (System.currentTimeMillis() - oldest) / 1000.0;
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * Write what is buffered before shutdown (bounded by one flush interval per batch)
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        if (writer != null) {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+        }
+        PendingLinks pending = swapLinks();
+        if (pending != null) {
+            writeLinks(pending);
+        }
+        if (!queue.isEmpty()) {
+            logger.warn("{} transactions were not written to Neo4j before shutdown", queue.size());
+        }
+    }
+
+    private static final class TransactionRow {
+        private final String txnId;
+        private final String merchantId;
+        private final String amount;
+        private final String currency;
+        private final String channel;
+        private final LocalDateTime timestamp;
+        private final long enqueuedAtMillis = System.currentTimeMillis();
+
+        TransactionRow(String txnId, String merchantId, String amount, String currency, String channel,
+                LocalDateTime timestamp) {
+            this.txnId = txnId;
+            this.merchantId = merchantId;
+            this.amount = amount;
+            this.currency = currency;
+            this.channel = channel;
+            this.timestamp = timestamp;
+        }
+
+        Map<String, Object> toParameters() {
+            Map<String, Object> row = new HashMap<>(8);
+            row.put("txnId", txnId);
+            row.put("merchantId", merchantId);
+            row.put("amount", amount);
+            row.put("currency", currency);
+            row.put("channel", channel);
+            row.put("timestamp", timestamp);
+            return row;
+        }
+    }
+
+    private static final class LinkKey {
+        private final String from;
+        private final String to;
+
+        LinkKey(String from, String to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof LinkKey)) {
+                return false;
+            }
+            LinkKey other = (LinkKey) o;
+            return from.equals(other.from) && to.equals(other.to);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(from, to);
+        }
+    }
+
+    private static final class LinkAggregate {
+        private double amount;
+        private long count;
+        private LocalDateTime firstTxnAt;
+        private LocalDateTime lastTxnAt;
+
+        synchronized void add(double value, LocalDateTime timestamp) {
+            amount += value;
+            count++;
+            if (firstTxnAt == null || timestamp.isBefore(firstTxnAt)) {
+                firstTxnAt = timestamp;
+            }
+            if (lastTxnAt == null || timestamp.isAfter(lastTxnAt)) {
+                lastTxnAt = timestamp;
+            }
+        }
+    }
+
+    private static final class PendingLinks {
+        private final String batchId;
+        private final List<Map<String, Object>> rows;
+
+        PendingLinks(String batchId, List<Map<String, Object>> rows) {
+            this.batchId = batchId;
+            this.rows = rows;
+        }
+    }
+}
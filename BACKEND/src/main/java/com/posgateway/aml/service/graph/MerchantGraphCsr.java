@@ -0,0 +1,598 @@
+package com.posgateway.aml.service.graph;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+/**
+ * Merchant Graph CSR
+ * Immutable in-memory copy of the TRANSACTS_WITH graph in compressed sparse row form,
+ * with bounded traversal kernels for cycle, mule-proximity and money-trail queries.
+ *
+ * Merchants are numbered 0..n-1. Outgoing and incoming edges are each stored as an
+ * offsets array plus flat target / amount arrays; every row is sorted by amount,
+ * largest first, so a fan-out cap keeps the heaviest flows.
+ *
+ * Kernels never expand more than Limits.maxFanOut edges of a node or visit more than
+ * Limits.maxVisited nodes, and stop at Limits.budgetNanos. A result cut short by any
+ * of these is marked truncated: "not found" then means "not found within the limits".
+ */
+public final class MerchantGraphCsr {
+
+    private static final int CLOCK_CHECK_INTERVAL = 256;
+
+    private final String[] merchantIds;
+    private final Map<String, Integer> index;
+    private final int[] outOffsets;
+    private final int[] outTargets;
+    private final double[] outAmounts;
+    private final int[] inOffsets;
+    private final int[] inTargets;
+    private final double[] inAmounts;
+    private final BitSet risky;
+    private final long builtAtMillis;
+
+    private MerchantGraphCsr(String[] merchantIds, Map<String, Integer> index, int[] outOffsets, int[] outTargets,
+            double[] outAmounts, int[] inOffsets, int[] inTargets, double[] inAmounts, BitSet risky) {
+        this.merchantIds = merchantIds;
+        this.index = index;
+        this.outOffsets = outOffsets;
+        this.outTargets = outTargets;
+        this.outAmounts = outAmounts;
+        this.inOffsets = inOffsets;
+        this.inTargets = inTargets;
+        this.inAmounts = inAmounts;
+        this.risky = risky;
+        this.builtAtMillis = System.currentTimeMillis();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Node number of a merchant, or -1 if it is not in the graph
+     */
+    public int nodeOf(String merchantId) {
+        Integer node = index.get(merchantId);
+        return node != null ? node : -1;
+    }
+
+    public String merchantIdOf(int node) {
+        return merchantIds[node];
+    }
+
+    public int nodeCount() {
+        return merchantIds.length;
+    }
+
+    public int edgeCount() {
+        return outTargets.length;
+    }
+
+    public long getBuiltAtMillis() {
+        return builtAtMillis;
+    }
+
+    // =========================================================================
+    // KERNELS
+    // =========================================================================
+
+    /**
+     * Simple directed cycle through start (money leaving the merchant and coming back)
+     * of minLength..maxLength edges.
+     *
+     * Depth-first over outgoing edges. A reverse BFS first computes how many hops each
+     * nearby node is from start, and the search only steps to nodes that can still
+     * close the loop within maxLength, which keeps hub merchants from exploding it.
+     */
+    public Result findCycle(int start, int minLength, int maxLength, Limits limits) {
+        Clock clock = new Clock(limits);
+        IntIntMap hopsToStart = reverseDistances(start, maxLength - 1, limits, clock);
+
+        int[] path = new int[maxLength + 1];
+        int[] cursor = new int[maxLength + 1];
+        double[] amounts = new double[maxLength + 1];
+        path[0] = start;
+        cursor[0] = outOffsets[start];
+        int depth = 0;
+
+        while (depth >= 0) {
+            int node = path[depth];
+            int end = rowEnd(outOffsets, node, limits.maxFanOut);
+            if (outOffsets[node + 1] > end) {
+                clock.truncated = true;
+            }
+            if (cursor[depth] >= end || clock.expired()) {
+                depth--;
+                continue;
+            }
+            int edge = cursor[depth]++;
+            int next = outTargets[edge];
+            int length = depth + 1;
+
+            if (next == start) {
+                if (length >= minLength) {
+                    amounts[length] = amounts[depth] + outAmounts[edge];
+                    path[length] = start;
+                    return Result.found(Arrays.copyOf(path, length + 1), amounts[length], clock);
+                }
+                continue;
+            }
+            int remaining = hopsToStart.get(next);
+            if (length >= maxLength || remaining < 0 || length + remaining > maxLength || onPath(path, depth, next)) {
+                continue;
+            }
+            if (!clock.visit()) {
+                break;
+            }
+            depth = length;
+            path[depth] = next;
+            amounts[depth] = amounts[depth - 1] + outAmounts[edge];
+            cursor[depth] = outOffsets[next];
+        }
+        return Result.notFound(clock);
+    }
+
+    /**
+     * Nearest flagged high-risk merchant within maxHops, ignoring edge direction
+     */
+    public Result findNearestRisky(int start, int maxHops, Limits limits) {
+        return breadthFirst(start, maxHops, node -> node != start && risky.get(node), limits);
+    }
+
+    /**
+     * Shortest trail between two merchants within maxHops, ignoring edge direction
+     */
+    public Result findTrail(int from, int to, int maxHops, Limits limits) {
+        return breadthFirst(from, maxHops, node -> node == to, limits);
+    }
+
+    private Result breadthFirst(int start, int maxHops, IntPredicate isTarget, Limits limits) {
+        Clock clock = new Clock(limits);
+        if (isTarget.test(start)) {
+            return Result.found(new int[] { start }, 0.0, clock);
+        }
+        // node -> edge it was reached through, encoded as (edge << 1 | incoming)
+        IntIntMap parents = new IntIntMap(64);
+        parents.put(start, -1);
+        int[] frontier = { start };
+        int frontierSize = 1;
+
+        for (int hop = 1; hop <= maxHops && frontierSize > 0; hop++) {
+            int[] next = new int[Math.max(16, frontierSize * 4)];
+            int nextSize = 0;
+            for (int i = 0; i < frontierSize; i++) {
+                int node = frontier[i];
+                for (int direction = 0; direction < 2; direction++) {
+                    boolean incoming = direction == 1;
+                    int[] offsets = incoming ? inOffsets : outOffsets;
+                    int[] targets = incoming ? inTargets : outTargets;
+                    int end = rowEnd(offsets, node, limits.maxFanOut);
+                    if (offsets[node + 1] > end) {
+                        clock.truncated = true;
+                    }
+                    for (int edge = offsets[node]; edge < end; edge++) {
+                        int neighbour = targets[edge];
+                        if (parents.containsKey(neighbour)) {
+                            continue;
+                        }
+                        parents.put(neighbour, edge << 1 | direction);
+                        if (isTarget.test(neighbour)) {
+                            return tracePath(neighbour, parents, clock);
+                        }
+                        if (!clock.visit() || clock.expired()) {
+                            return Result.notFound(clock);
+                        }
+                        if (nextSize == next.length) {
+                            next = Arrays.copyOf(next, nextSize * 2);
+                        }
+                        next[nextSize++] = neighbour;
+                    }
+                }
+            }
+            frontier = next;
+            frontierSize = nextSize;
+        }
+        return Result.notFound(clock);
+    }
+
+    private Result tracePath(int target, IntIntMap parents, Clock clock) {
+        int[] reversed = new int[16];
+        int length = 0;
+        double amount = 0.0;
+        int node = target;
+        while (true) {
+            if (length == reversed.length) {
+                reversed = Arrays.copyOf(reversed, length * 2);
+            }
+            reversed[length++] = node;
+            int parent = parents.get(node);
+            if (parent < 0) {
+                break;
+            }
+            int edge = parent >>> 1;
+            boolean incoming = (parent & 1) == 1;
+            amount += incoming ? inAmounts[edge] : outAmounts[edge];
+            node = previousNode(edge, incoming);
+        }
+        int[] path = new int[length];
+        for (int i = 0; i < length; i++) {
+            path[i] = reversed[length - 1 - i];
+        }
+        return Result.found(path, amount, clock);
+    }
+
+    /**
+     * The node an edge row belongs to (binary search over the offsets)
+     */
+    private int previousNode(int edge, boolean incoming) {
+        int[] offsets = incoming ? inOffsets : outOffsets;
+        int low = 0;
+        int high = offsets.length - 2;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (offsets[mid] <= edge) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Hops from each node to start along outgoing edges, up to maxHops (BFS over
+     * incoming edges from start)
+     */
+    private IntIntMap reverseDistances(int start, int maxHops, Limits limits, Clock clock) {
+        IntIntMap distances = new IntIntMap(64);
+        distances.put(start, 0);
+        int[] frontier = { start };
+        int frontierSize = 1;
+        for (int hop = 1; hop <= maxHops && frontierSize > 0 && !clock.expired(); hop++) {
+            int[] next = new int[Math.max(16, frontierSize * 4)];
+            int nextSize = 0;
+            for (int i = 0; i < frontierSize; i++) {
+                if (distances.size() >= limits.maxVisited) {
+                    clock.truncated = true;
+                    break;
+                }
+                int node = frontier[i];
+                int end = rowEnd(inOffsets, node, limits.maxFanOut);
+                if (inOffsets[node + 1] > end) {
+                    clock.truncated = true;
+                }
+                for (int edge = inOffsets[node]; edge < end; edge++) {
+                    int neighbour = inTargets[edge];
+                    if (distances.containsKey(neighbour)) {
+                        continue;
+                    }
+                    distances.put(neighbour, hop);
+                    if (nextSize == next.length) {
+                        next = Arrays.copyOf(next, nextSize * 2);
+                    }
+                    next[nextSize++] = neighbour;
+                }
+            }
+            frontier = next;
+            frontierSize = nextSize;
+        }
+        return distances;
+    }
+
+    /**
+     * End of the first maxFanOut edges of a row (without overflowing for large caps)
+     */
+    private static int rowEnd(int[] offsets, int node, int maxFanOut) {
+        return offsets[node + 1] - offsets[node] > maxFanOut ? offsets[node] + maxFanOut : offsets[node + 1];
+    }
+
+        private static boolean onPath(int[] path, int depth, int node) {
+        for (int i = 0; i <= depth; i++) {
+            if (path[i] == node) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // =========================================================================
+    // TYPES
+    // =========================================================================
+
+    /**
+     * Bounds for one traversal
+     */
+    public static final class Limits {
+        private final int maxFanOut;
+        private final int maxVisited;
+        private final long budgetNanos;
+
+        public Limits(int maxFanOut, int maxVisited, long budgetNanos) {
+            this.maxFanOut = maxFanOut;
+            this.maxVisited = maxVisited;
+            this.budgetNanos = budgetNanos;
+        }
+    }
+
+    /**
+     * Outcome of a traversal: the node path (start first) and the summed edge amounts
+     */
+    public static final class Result {
+        private final int[] path;
+        private final double totalAmount;
+        private final boolean truncated;
+        private final int visited;
+
+        private Result(int[] path, double totalAmount, boolean truncated, int visited) {
+            this.path = path;
+            this.totalAmount = totalAmount;
+            this.truncated = truncated;
+            this.visited = visited;
+        }
+
+        static Result found(int[] path, double totalAmount, Clock clock) {
+            return new Result(path, totalAmount, clock.truncated, clock.visited);
+        }
+
+        static Result notFound(Clock clock) {
+            return new Result(null, 0.0, clock.truncated, clock.visited);
+        }
+
+        public boolean isFound() {
+            return path != null;
+        }
+
+        public int[] getPath() {
+            return path;
+        }
+
+        public int getHops() {
+            return path != null ? path.length - 1 : -1;
+        }
+
+        public double getTotalAmount() {
+            return totalAmount;
+        }
+
+        public boolean isTruncated() {
+            return truncated;
+        }
+
+        public int getVisited() {
+            return visited;
+        }
+    }
+
+    /**
+     * Visit count and deadline of one traversal
+     */
+    private static final class Clock {
+        private final int maxVisited;
+        private final long deadline;
+        private int visited;
+        private int ticks;
+        private boolean expired;
+        private boolean truncated;
+
+        Clock(Limits limits) {
+            this.maxVisited = limits.maxVisited;
+            this.deadline = System.nanoTime() + limits.budgetNanos;
+        }
+
+        boolean visit() {
+            if (++visited > maxVisited) {
+                truncated = true;
+                return false;
+            }
+            return true;
+        }
+
+        boolean expired() {
+            if (!expired && ++ticks % CLOCK_CHECK_INTERVAL == 0 && System.nanoTime() > deadline) {
+                expired = true;
+                truncated = true;
+            }
+            return expired;
+        }
+    }
+
+    /**
+     * Open addressing int -> int map for non-negative keys (visited sets, parents)
+     */
+    private static final class IntIntMap {
+        private int[] keys;
+        private int[] values;
+        private int size;
+
+        IntIntMap(int capacity) {
+            keys = new int[Integer.highestOneBit(Math.max(4, capacity) * 2 - 1) << 1];
+            values = new int[keys.length];
+            Arrays.fill(keys, -1);
+        }
+
+        boolean containsKey(int key) {
+            return keys[slot(key)] == key;
+        }
+
+        /**
+         * @return the value, or -1 if absent
+         */
+        int get(int key) {
+            int slot = slot(key);
+            return keys[slot] == key ? values[slot] : -1;
+        }
+
+        void put(int key, int value) {
+            int slot = slot(key);
+            if (keys[slot] != key) {
+                keys[slot] = key;
+                if (++size * 2 > keys.length) {
+                    values[slot] = value;
+                    rehash();
+                    return;
+                }
+            }
+            values[slot] = value;
+        }
+
+        int size() {
+            return size;
+        }
+
+        private int slot(int key) {
+            int mask = keys.length - 1;
+            int hash = key * 0x9E3779B9;
+            int slot = (hash ^ hash >>> 16) & mask;
+            while (keys[slot] != -1 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void rehash() {
+            int[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new int[oldKeys.length * 2];
+            values = new int[keys.length];
+            Arrays.fill(keys, -1);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != -1) {
+                    int slot = slot(oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+    }
+
+    // =========================================================================
+    // BUILDER
+    // =========================================================================
+
+    /**
+     * Collects merchants and edges, then lays them out as CSR
+     */
+    public static final class Builder {
+        private final Map<String, Integer> index = new HashMap<>();
+        private String[] merchantIds = new String[1024];
+        private int[] sources = new int[4096];
+        private int[] targets = new int[4096];
+        private double[] amounts = new double[4096];
+        private int edges;
+        private final BitSet risky = new BitSet();
+
+        private Builder() {
+        }
+
+        public int addMerchant(String merchantId) {
+            Integer node = index.get(merchantId);
+            if (node != null) {
+                return node;
+            }
+            int created = index.size();
+            if (created == merchantIds.length) {
+                merchantIds = Arrays.copyOf(merchantIds, created * 2);
+            }
+            merchantIds[created] = merchantId;
+            index.put(merchantId, created);
+            return created;
+        }
+
+        public Builder markRisky(String merchantId) {
+            risky.set(addMerchant(merchantId));
+            return this;
+        }
+
+        public Builder addEdge(String fromMerchantId, String toMerchantId, double amount) {
+            int from = addMerchant(fromMerchantId);
+            int to = addMerchant(toMerchantId);
+            if (from == to) {
+                return this;
+            }
+            if (edges == sources.length) {
+                sources = Arrays.copyOf(sources, edges * 2);
+                targets = Arrays.copyOf(targets, edges * 2);
+                amounts = Arrays.copyOf(amounts, edges * 2);
+            }
+            sources[edges] = from;
+            targets[edges] = to;
+            amounts[edges] = amount;
+            edges++;
+            return this;
+        }
+
+        public MerchantGraphCsr build() {
+            int nodes = index.size();
+            int[] outOffsets = new int[nodes + 1];
+            int[] outTargets = new int[edges];
+            double[] outAmounts = new double[edges];
+            layout(sources, targets, nodes, outOffsets, outTargets, outAmounts);
+
+            int[] inOffsets = new int[nodes + 1];
+            int[] inTargets = new int[edges];
+            double[] inAmounts = new double[edges];
+            layout(targets, sources, nodes, inOffsets, inTargets, inAmounts);
+
+            return new MerchantGraphCsr(Arrays.copyOf(merchantIds, nodes), index, outOffsets, outTargets,
+                    outAmounts, inOffsets, inTargets, inAmounts, risky);
+        }
+
+        /**
+         * Counting sort of the edges by row, then each row by amount (descending)
+         */
+        private void layout(int[] rows, int[] columns, int nodes, int[] offsets, int[] rowTargets,
+                double[] rowAmounts) {
+            for (int i = 0; i < edges; i++) {
+                offsets[rows[i] + 1]++;
+            }
+            for (int node = 0; node < nodes; node++) {
+                offsets[node + 1] += offsets[node];
+            }
+            int[] fill = Arrays.copyOf(offsets, nodes);
+            for (int i = 0; i < edges; i++) {
+                int position = fill[rows[i]]++;
+                rowTargets[position] = columns[i];
+                rowAmounts[position] = amounts[i];
+            }
+            for (int node = 0; node < nodes; node++) {
+                sortRow(rowTargets, rowAmounts, offsets[node], offsets[node + 1]);
+            }
+        }
+
+        private static void sortRow(int[] rowTargets, double[] rowAmounts, int from, int to) {
+            if (to - from > 32) {
+                Integer[] order = new Integer[to - from];
+                for (int i = 0; i < order.length; i++) {
+                    order[i] = from + i;
+                }
+                Arrays.sort(order, (a, b) -> Double.compare(rowAmounts[b], rowAmounts[a]));
+                int[] sortedTargets = new int[order.length];
+                double[] sortedAmounts = new double[order.length];
+                for (int i = 0; i < order.length; i++) {
+                    sortedTargets[i] = rowTargets[order[i]];
+                    sortedAmounts[i] = rowAmounts[order[i]];
+                }
+                System.arraycopy(sortedTargets, 0, rowTargets, from, order.length);
+                System.arraycopy(sortedAmounts, 0, rowAmounts, from, order.length);
+                return;
+            }
+            // Insertion sort for the (many) short rows
+            for (int i = from + 1; i < to; i++) {
+                int target = rowTargets[i];
+                double amount = rowAmounts[i];
+                int j = i - 1;
+                while (j >= from && rowAmounts[j] < amount) {
+                    rowTargets[j + 1] = rowTargets[j];
+                    rowAmounts[j + 1] = rowAmounts[j];
+                    j--;
+                }
+                rowTargets[j + 1] = target;
+                rowAmounts[j + 1] = amount;
+            }
+        }
+    }
+}
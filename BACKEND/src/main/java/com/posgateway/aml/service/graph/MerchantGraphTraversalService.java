@@ -0,0 +1,235 @@
+package com.posgateway.aml.service.graph;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Result;
+import org.neo4j.driver.Session;
+import org.neo4j.driver.SessionConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merchant Graph Traversal Service
+ * Answers cycle, mule-proximity and money-trail queries from an in-memory CSR copy of
+ * the merchant graph (MerchantGraphCsr) instead of variable-length Cypher patterns,
+ * which explode on hub merchants.
+ *
+ * The copy is reloaded from Neo4j on a fixed delay, so results can lag the graph by
+ * up to one interval. Every query runs under the configured fan-out cap, visit cap and
+ * time budget; results cut short are flagged "truncated".
+ */
+@Service
+@ConditionalOnProperty(name = "neo4j.enabled", havingValue = "true", matchIfMissing = false)
+public class MerchantGraphTraversalService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MerchantGraphTraversalService.class);
+
+    private static final int CYCLE_MIN_LENGTH = 3;
+    private static final int CYCLE_MAX_LENGTH = 6;
+    private static final int MULE_MAX_HOPS = 3;
+    private static final int TRAIL_MAX_HOPS = 10;
+
+    private final Driver neo4jDriver;
+    private final MeterRegistry meterRegistry;
+
+    private volatile MerchantGraphCsr graph;
+
+    @Value("${neo4j.traversal.max.fanout:1000}")
+    private int maxFanOut;
+
+    @Value("${neo4j.traversal.max.visited:200000}")
+    private int maxVisited;
+
+    @Value("${neo4j.traversal.budget.ms:200}")
+    private long budgetMs;
+
+    @Value("${neo4j.traversal.risk.threshold:0.9}")
+    private double riskThreshold;
+
+    @Autowired
+    public MerchantGraphTraversalService(Driver neo4jDriver, MeterRegistry meterRegistry) {
+        this.neo4jDriver = neo4jDriver;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("aml_graph_traversal_nodes", this, service -> service.graph != null ? service.graph.nodeCount() : 0)
+                .description("Merchants in the in-memory traversal graph")
+                .register(meterRegistry);
+        Gauge.builder("aml_graph_traversal_edges", this, service -> service.graph != null ? service.graph.edgeCount() : 0)
+                .description("TRANSACTS_WITH edges in the in-memory traversal graph")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Reload the CSR copy of the merchant graph from Neo4j
+     */
+    @Scheduled(fixedDelayString = "${neo4j.traversal.refresh.interval.ms:300000}")
+    public void reload() {
+        long start = System.currentTimeMillis();
+        MerchantGraphCsr.Builder builder = MerchantGraphCsr.builder();
+        try (Session session = neo4jDriver.session(SessionConfig.defaultConfig())) {
+            Result merchants = session.run("""
+                    MATCH (m:Merchant)
+                    RETURN m.merchantId AS merchantId, coalesce(m.riskScore, 0.0) > $threshold AS risky
+                    """, Map.of("threshold", riskThreshold));
+            while (merchants.hasNext()) {
+                Record record = merchants.next();
+                String merchantId = record.get("merchantId").asString(null);
+                if (merchantId == null) {
+                    continue;
+                }
+                builder.addMerchant(merchantId);
+                if (record.get("risky").asBoolean(false)) {
+                    builder.markRisky(merchantId);
+                }
+            }
+
+            Result edges = session.run("""
+                    MATCH (a:Merchant)-[r:TRANSACTS_WITH]->(b:Merchant)
+                    RETURN a.merchantId AS source, b.merchantId AS target, coalesce(r.totalAmount, 0.0) AS amount
+                    """);
+            while (edges.hasNext()) {
+                Record record = edges.next();
+                String source = record.get("source").asString(null);
+                String target = record.get("target").asString(null);
+                if (source != null && target != null) {
+                    builder.addEdge(source, target, record.get("amount").asDouble(0.0));
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Error loading merchant graph for traversal, keeping the previous copy: {}", e.getMessage());
+            return;
+        }
+
+        MerchantGraphCsr loaded = builder.build();
+        graph = loaded;
+        logger.info("Loaded merchant traversal graph: {} merchants, {} edges in {}ms", loaded.nodeCount(),
+                loaded.edgeCount(), System.currentTimeMillis() - start);
+    }
+
+    public boolean isLoaded() {
+        return graph != null;
+    }
+
+    /**
+     * Money loop of 3-6 transfers leaving and returning to the merchant
+     *
+     * @return cycle (merchant IDs, starting and ending at the merchant) and loop amount,
+     *         or null if none was found
+     */
+    public Map<String, Object> detectCycle(String merchantId) {
+        MerchantGraphCsr current = graph;
+        int node = current.nodeOf(merchantId);
+        if (node < 0) {
+            return null;
+        }
+        long start = System.nanoTime();
+        MerchantGraphCsr.Result result = current.findCycle(node, CYCLE_MIN_LENGTH, CYCLE_MAX_LENGTH, limits());
+        record("cycle", start, result);
+        if (!result.isFound()) {
+            return null;
+        }
+        Map<String, Object> anomaly = new HashMap<>();
+        anomaly.put("cycle", merchantIds(current, result));
+        anomaly.put("totalLoopAmount", result.getTotalAmount());
+        anomaly.put("truncated", result.isTruncated());
+        return anomaly;
+    }
+
+    /**
+     * Nearest high-risk merchant within 3 hops
+     *
+     * @return the risky merchant, hop count and path, or null if none was found
+     */
+    public Map<String, Object> detectMuleProximity(String merchantId) {
+        MerchantGraphCsr current = graph;
+        int node = current.nodeOf(merchantId);
+        if (node < 0) {
+            return null;
+        }
+        long start = System.nanoTime();
+        MerchantGraphCsr.Result result = current.findNearestRisky(node, MULE_MAX_HOPS, limits());
+        record("mule_proximity", start, result);
+        if (!result.isFound()) {
+            return null;
+        }
+        int[] path = result.getPath();
+        Map<String, Object> anomaly = new HashMap<>();
+        anomaly.put("riskyEntity", current.merchantIdOf(path[path.length - 1]));
+        anomaly.put("hops", result.getHops());
+        anomaly.put("path", merchantIds(current, result));
+        anomaly.put("truncated", result.isTruncated());
+        return anomaly;
+    }
+
+    /**
+     * Shortest chain of counterparties between two merchants, up to 10 hops
+     *
+     * @return merchants on the trail, its length and summed amounts, or null if none was found
+     */
+    public Map<String, Object> findMoneyTrail(String fromMerchantId, String toMerchantId) {
+        MerchantGraphCsr current = graph;
+        int from = current.nodeOf(fromMerchantId);
+        int to = current.nodeOf(toMerchantId);
+        if (from < 0 || to < 0) {
+            return null;
+        }
+        long start = System.nanoTime();
+        MerchantGraphCsr.Result result = current.findTrail(from, to, TRAIL_MAX_HOPS, limits());
+        record("money_trail", start, result);
+        if (!result.isFound()) {
+            return null;
+        }
+        Map<String, Object> trail = new HashMap<>();
+        trail.put("merchants", merchantIds(current, result));
+        trail.put("pathLength", (long) result.getHops());
+        trail.put("totalAmount", result.getTotalAmount());
+        trail.put("truncated", result.isTruncated());
+        return trail;
+    }
+
+    private MerchantGraphCsr.Limits limits() {
+        return new MerchantGraphCsr.Limits(maxFanOut, maxVisited, TimeUnit.MILLISECONDS.toNanos(budgetMs));
+    }
+
+    private void record(String query, long startNanos, MerchantGraphCsr.Result result) {
+        Timer.builder("aml_graph_traversal_duration")
+                .tag("query", query)
+                .description("Time to answer a graph traversal query in memory")
+                .register(meterRegistry)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        if (result.isTruncated()) {
+            Counter.builder("aml_graph_traversal_truncated_total")
+                    .tag("query", query)
+                    .description("Graph traversal queries cut short by the fan-out, visit or time limits")
+                    .register(meterRegistry)
+                    .increment();
+        }
+    }
+
+    private static List<String> merchantIds(MerchantGraphCsr graph, MerchantGraphCsr.Result result) {
+        List<String> merchantIds = new ArrayList<>(result.getPath().length);
+        for (int node : result.getPath()) {
+            merchantIds.add(graph.merchantIdOf(node));
+        }
+        return merchantIds;
+    }
+}
@@ -1,5 +1,10 @@
 package com.posgateway.aml.service.graph;
 
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.neo4j.driver.Driver;
 import org.neo4j.driver.Record;
 import org.neo4j.driver.Result;
@@ -8,12 +13,24 @@ import org.neo4j.driver.SessionConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Neo4j Graph Data Science (GDS) Service.
@@ -26,8 +43,10 @@ import java.util.Map;
  * - Degree Centrality: Connection counting
  * - Triangle Count: Network density
  * 
- * Results are cached in Aerospike for fast retrieval during transaction
- * scoring.
+ * Results are cached in Aerospike and published as a GraphFeatureSnapshot, which
+ * transaction scoring reads from the in-JVM GraphFeatureNearCache. The scheduled
+ * refresh recomputes only the neighbourhood of merchants whose relationships changed,
+ * with a periodic full rebuild.
  */
 @Service
 @ConditionalOnProperty(name = "neo4j.enabled", havingValue = "true", matchIfMissing = false)
@@ -37,15 +56,86 @@ public class Neo4jGdsService {
 
     private final Driver neo4jDriver;
     private final AerospikeGraphCacheService aerospikeCache;
+    private final GraphFeatureNearCache nearCache;
+    private final MerchantGraphTraversalService traversalService;
+    private final MeterRegistry meterRegistry;
+
+    private ExecutorService algorithmPool;
+    private final AtomicLong dirtyMerchants = new AtomicLong();
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private volatile long lastFullRefreshMillis;
+
+    @Value("${neo4j.gds.export.batch.size:1000}")
+    private int exportBatchSize;
+
+    @Value("${neo4j.gds.incremental.enabled:true}")
+    private boolean incrementalEnabled;
+
+    @Value("${neo4j.gds.incremental.halo.hops:1}")
+    private int haloHops;
+
+    @Value("${neo4j.gds.incremental.max.dirty.ratio:0.1}")
+    private double maxDirtyRatio;
+
+    @Value("${neo4j.gds.full.refresh.interval.ms:86400000}")
+    private long fullRefreshIntervalMs;
+
+    @Value("${neo4j.gds.algorithm.parallelism:4}")
+    private int algorithmParallelism;
 
     // Graph projection name
     private static final String GRAPH_NAME = "aml-merchant-graph";
 
+    private static final String MODE_FULL = "full";
+    private static final String MODE_INCREMENTAL = "incremental";
+
+    private static final String PAGE_RANK_MUTATE =
+            "CALL gds.pageRank.mutate($graphName, {maxIterations: 20, dampingFactor: 0.85, mutateProperty: 'pageRank'})";
+    private static final String TRIANGLE_COUNT_MUTATE =
+            "CALL gds.triangleCount.mutate($graphName, {mutateProperty: 'triangleCount'})";
+    private static final String CLUSTERING_MUTATE =
+            "CALL gds.localClusteringCoefficient.mutate($graphName, {mutateProperty: 'localClusteringCoefficient'})";
+
     @Autowired
     public Neo4jGdsService(Driver neo4jDriver,
-            @Autowired(required = false) AerospikeGraphCacheService aerospikeCache) {
+            @Autowired(required = false) AerospikeGraphCacheService aerospikeCache,
+            @Autowired(required = false) GraphFeatureNearCache nearCache,
+            @Autowired(required = false) MerchantGraphTraversalService traversalService,
+            MeterRegistry meterRegistry) {
         this.neo4jDriver = neo4jDriver;
         this.aerospikeCache = aerospikeCache;
+        this.nearCache = nearCache;
+        this.traversalService = traversalService;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        algorithmPool = Executors.newFixedThreadPool(algorithmParallelism, runnable -> {
+            Thread thread = new Thread(runnable, "gds-algorithm-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Gauge.builder("aml_graph_gds_dirty_merchants", dirtyMerchants, AtomicLong::get)
+                .description("Merchants with changed relationships picked up by the last graph metrics refresh")
+                .register(meterRegistry);
+
+        // Indexes for the change tracking properties set by the write-behind and the refresh
+        try (Session session = neo4jDriver.session(SessionConfig.defaultConfig())) {
+            session.run("CREATE INDEX merchant_gds_dirty IF NOT EXISTS FOR (m:Merchant) ON (m.gdsDirty)").consume();
+            session.run("CREATE INDEX merchant_gds_run IF NOT EXISTS FOR (m:Merchant) ON (m.gdsRun)").consume();
+            session.run("CREATE INDEX merchant_gds_core IF NOT EXISTS FOR (m:Merchant) ON (m.gdsCore)").consume();
+        } catch (Exception e) {
+            logger.warn("Could not create graph change tracking indexes: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (algorithmPool != null) {
+            algorithmPool.shutdownNow();
+        }
     }
 
     // =========================================================================
@@ -54,8 +144,10 @@ public class Neo4jGdsService {
 
     /**
      * Create/refresh the in-memory graph projection for GDS algorithms.
+     *
+     * @return true if the projection was created
      */
-    public void createGraphProjection() {
+    public boolean createGraphProjection() {
         try (Session session = neo4jDriver.session(SessionConfig.defaultConfig())) {
             // Drop existing projection if it exists
             session.run("CALL gds.graph.drop($name, false)", Map.of("name", GRAPH_NAME));
@@ -85,8 +177,10 @@ public class Neo4jGdsService {
                         record.get("nodeCount").asLong(),
                         record.get("relationshipCount").asLong());
             }
+            return true;
         } catch (Exception e) {
             logger.error("Error creating graph projection: {}", e.getMessage());
+            return false;
         }
     }
 
@@ -305,45 +399,287 @@ public class Neo4jGdsService {
     // =========================================================================
 
     /**
-     * Scheduled task to recompute all graph metrics.
-     * Runs every hour by default.
+     * Scheduled task to recompute graph metrics.
+     * Runs every hour by default (measured from the end of the previous run).
+     *
+     * Merchants whose TRANSACTS_WITH edges changed are flagged gdsDirty by the graph
+     * write-behind. Each run claims the flagged merchants and then either:
+     * - refreshes incrementally: only the changed merchants and their neighbours are
+     *   recomputed, on a projection of their neighbourhood; or
+     * - rebuilds everything, when incremental mode is off, on the first run, when the
+     *   last full rebuild is older than neo4j.gds.full.refresh.interval.ms, or when more
+     *   than neo4j.gds.incremental.max.dirty.ratio of the merchants changed.
+     * Claims are released only after a successful run, so a failed run is retried.
+     * A refresh started while another is running on this node is skipped.
      */
-    @Scheduled(fixedRateString = "${neo4j.gds.refresh.interval:3600000}")
+    @Scheduled(fixedDelayString = "${neo4j.gds.refresh.interval:3600000}")
     public void refreshAllGraphMetrics() {
+        if (!refreshing.compareAndSet(false, true)) {
+            logger.warn("Graph metrics refresh already running, skipping");
+            return;
+        }
         logger.info("Starting scheduled graph metrics refresh...");
         long startTime = System.currentTimeMillis();
+        String runId = UUID.randomUUID().toString();
 
         try {
-            // 1. Create/refresh graph projection
-            createGraphProjection();
+            long merchants = countMerchants();
+            long dirty = claimDirtyMerchants(runId);
+            dirtyMerchants.set(dirty);
+
+            boolean full = !incrementalEnabled
+                    || lastFullRefreshMillis == 0
+                    || startTime - lastFullRefreshMillis >= fullRefreshIntervalMs
+                    || dirty > merchants * maxDirtyRatio;
+            String mode = full ? MODE_FULL : MODE_INCREMENTAL;
+            if (!full && dirty == 0) {
+                logger.info("No merchant graph changes since the last refresh, skipping");
+                return;
+            }
 
-            // 2. Run all algorithms
-            runPageRank();
-            runCommunityDetection();
-            runBetweennessCentrality();
-            // Note: Degree centrality is typically computed as part of node properties,
-            // skipping separate call
-            runTriangleCount();
-            runLocalClusteringCoefficient();
+            logger.info("Running {} graph metrics refresh ({} of {} merchants changed)", mode, dirty, merchants);
+            boolean computed = full ? runFullRefresh() : runIncrementalRefresh(runId);
+            if (!computed) {
+                logger.warn("Graph metrics refresh ({}) failed; {} changed merchants stay claimed for the next run",
+                        mode, dirty);
+                return;
+            }
 
-            // 3. Cache all metrics in Aerospike
-            cacheAllMerchantMetrics();
+            // Cache the recomputed metrics in Aerospike and publish the snapshot
+            cacheAllMerchantMetrics(full ? null : runId);
+            releaseClaims(runId);
+            if (full) {
+                lastFullRefreshMillis = startTime;
+            }
 
             long duration = System.currentTimeMillis() - startTime;
-            logger.info("Graph metrics refresh completed in {}ms", duration);
+            refreshTimer(mode).record(duration, TimeUnit.MILLISECONDS);
+            logger.info("Graph metrics refresh ({}) completed in {}ms", mode, duration);
 
         } catch (Exception e) {
             logger.error("Error during graph metrics refresh: {}", e.getMessage());
+        } finally {
+            refreshing.set(false);
         }
     }
 
     /**
-     * Cache all merchant metrics in Aerospike for fast retrieval.
+     * Full rebuild: project every merchant, run all algorithms concurrently into the
+     * projection, then write all properties back in one pass.
      */
-    private void cacheAllMerchantMetrics() {
-        if (aerospikeCache == null) {
-            return;
+    private boolean runFullRefresh() {
+        if (!createGraphProjection()) {
+            return false;
+        }
+        Map<String, String> algorithms = new LinkedHashMap<>();
+        algorithms.put("pageRank", PAGE_RANK_MUTATE);
+        algorithms.put("louvain", "CALL gds.louvain.mutate($graphName, {mutateProperty: 'communityId'})");
+        algorithms.put("betweenness", "CALL gds.betweenness.mutate($graphName, {mutateProperty: 'betweenness'})");
+        algorithms.put("triangleCount", TRIANGLE_COUNT_MUTATE);
+        algorithms.put("localClusteringCoefficient", CLUSTERING_MUTATE);
+        // Degree centrality is typically computed as part of node properties, skipping separate call
+
+        if (!runAlgorithms(GRAPH_NAME, MODE_FULL, algorithms)) {
+            return false;
+        }
+        return writeProperties(GRAPH_NAME, MODE_FULL,
+                List.of("pageRank", "communityId", "betweenness", "triangleCount", "localClusteringCoefficient"),
+                "*");
+    }
+
+    /**
+     * Incremental refresh around the claimed merchants.
+     *
+     * - core: the changed merchants and their direct neighbours, whose metrics can change
+     * - projection: the core plus neo4j.gds.incremental.halo.hops more hops, so the
+     *   algorithms see the core's surroundings
+     * - PageRank runs on the projection (GDS scores are not normalised by graph size,
+     *   so the halo makes core scores a close approximation of a global run); Louvain is
+     *   warm-started from the current community IDs; triangle count and clustering
+     *   coefficient are exact for the core
+     * - only core merchants are written back
+     *
+     * Betweenness depends on shortest paths across the whole graph and is left to the
+     * next full rebuild.
+     */
+    private boolean runIncrementalRefresh(String runId) {
+        String graphName = GRAPH_NAME + "-incremental";
+        try (Session session = neo4jDriver.session(SessionConfig.defaultConfig())) {
+            session.run("CALL gds.graph.drop($name, false)", Map.of("name", graphName)).consume();
+
+            long core = session.run("""
+                    MATCH (d:Merchant {gdsRun: $runId})
+                    OPTIONAL MATCH (d)-[:TRANSACTS_WITH]-(n:Merchant)
+                    WITH collect(DISTINCT d) + collect(DISTINCT n) AS core
+                    UNWIND core AS m
+                    WITH DISTINCT m
+                    SET m.gdsCore = $runId
+                    RETURN count(m) AS core
+                    """, Map.of("runId", runId)).single().get("core").asLong();
+
+            String projection = """
+                    MATCH (c:Merchant {gdsCore: $runId})
+                    MATCH (c)-[:TRANSACTS_WITH*0..%d]-(m:Merchant)
+                    WITH collect(DISTINCT m) AS nodes
+                    UNWIND nodes AS s
+                    OPTIONAL MATCH (s)-[r:TRANSACTS_WITH]->(t:Merchant)
+                    WHERE t IN nodes
+                    WITH gds.graph.project($name, s, t, {
+                        sourceNodeLabels: CASE WHEN s.gdsCore = $runId THEN ['Merchant', 'Core'] ELSE ['Merchant'] END,
+                        targetNodeLabels: CASE WHEN t.gdsCore = $runId THEN ['Merchant', 'Core'] ELSE ['Merchant'] END,
+                        sourceNodeProperties: CASE WHEN s.communityId IS NULL THEN {} ELSE {seedCommunity: s.communityId} END,
+                        targetNodeProperties: CASE WHEN t.communityId IS NULL THEN {} ELSE {seedCommunity: t.communityId} END,
+                        relationshipProperties: {totalAmount: coalesce(r.totalAmount, 0.0), txnCount: coalesce(r.txnCount, 0)}
+                    }, {undirectedRelationshipTypes: ['*']}) AS g
+                    RETURN g.nodeCount AS nodeCount, g.relationshipCount AS relationshipCount
+                    """.formatted(haloHops);
+            Record projected = session.run(projection, Map.of("runId", runId, "name", graphName)).single();
+            logger.info("Created incremental graph projection: {} core merchants, {} nodes, {} relationships",
+                    core, projected.get("nodeCount").asLong(), projected.get("relationshipCount").asLong());
+
+            Map<String, String> algorithms = new LinkedHashMap<>();
+            algorithms.put("pageRank", PAGE_RANK_MUTATE);
+            algorithms.put("louvain", """
+                    CALL gds.louvain.mutate($graphName, {mutateProperty: 'communityId', seedProperty: 'seedCommunity'})
+                    """);
+            algorithms.put("triangleCount", TRIANGLE_COUNT_MUTATE);
+            algorithms.put("localClusteringCoefficient", CLUSTERING_MUTATE);
+
+            return runAlgorithms(graphName, MODE_INCREMENTAL, algorithms)
+                    && writeProperties(graphName, MODE_INCREMENTAL,
+                            List.of("pageRank", "communityId", "triangleCount", "localClusteringCoefficient"), "Core");
+
+        } catch (Exception e) {
+            logger.error("Error running incremental graph refresh: {}", e.getMessage());
+            return false;
+        } finally {
+            try (Session session = neo4jDriver.session(SessionConfig.defaultConfig())) {
+                session.run("CALL gds.graph.drop($name, false)", Map.of("name", graphName)).consume();
+            } catch (Exception e) {
+                logger.warn("Could not drop incremental graph projection: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Run independent algorithms concurrently, each mutating its own property of the
+     * in-memory projection (mutate mode takes no database locks, so they do not contend)
+     *
+     * @return true if all of them succeeded
+     */
+    private boolean runAlgorithms(String graphName, String mode, Map<String, String> algorithms) {
+        Map<String, Future<Boolean>> running = new LinkedHashMap<>();
+        algorithms.forEach((algorithm, cypher) -> running.put(algorithm, algorithmPool.submit(() -> {
+            long start = System.nanoTime();
+            try (Session session = neo4jDriver.session(SessionConfig.defaultConfig())) {
+                session.run(cypher, Map.of("graphName", graphName)).consume();
+                long elapsed = System.nanoTime() - start;
+                algorithmTimer(algorithm, mode).record(elapsed, TimeUnit.NANOSECONDS);
+                logger.info("{} ({}) completed in {}ms", algorithm, mode, TimeUnit.NANOSECONDS.toMillis(elapsed));
+                return true;
+            } catch (Exception e) {
+                logger.error("Error running {} ({}): {}", algorithm, mode, e.getMessage());
+                return false;
+            }
+        })));
+
+        boolean succeeded = true;
+        for (Map.Entry<String, Future<Boolean>> entry : running.entrySet()) {
+            try {
+                succeeded &= entry.getValue().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (ExecutionException e) {
+                logger.error("Error running {} ({}): {}", entry.getKey(), mode, e.getCause().getMessage());
+                succeeded = false;
+            }
+        }
+        return succeeded;
+    }
+
+    private boolean writeProperties(String graphName, String mode, List<String> properties, String label) {
+        long start = System.nanoTime();
+        try (Session session = neo4jDriver.session(SessionConfig.defaultConfig())) {
+            Record record = session.run("""
+                    CALL gds.graph.nodeProperties.write($graphName, $properties, [$label])
+                    YIELD propertiesWritten
+                    RETURN propertiesWritten
+                    """, Map.of("graphName", graphName, "properties", properties, "label", label)).single();
+            long elapsed = System.nanoTime() - start;
+            algorithmTimer("write", mode).record(elapsed, TimeUnit.NANOSECONDS);
+            logger.info("Wrote {} graph metric values ({}) in {}ms", record.get("propertiesWritten").asLong(), mode,
+                    TimeUnit.NANOSECONDS.toMillis(elapsed));
+            return true;
+        } catch (Exception e) {
+            logger.error("Error writing graph metrics ({}): {}", mode, e.getMessage());
+            return false;
         }
+    }
+
+    private long countMerchants() {
+        try (Session session = neo4jDriver.session(SessionConfig.defaultConfig())) {
+            return session.run("MATCH (m:Merchant) RETURN count(m) AS merchants").single().get("merchants").asLong();
+        }
+    }
+
+    /**
+     * Tag every merchant changed since the last successful run (including those left
+     * claimed by a failed run) with this run's ID
+     *
+     * @return number of claimed merchants
+     */
+    private long claimDirtyMerchants(String runId) {
+        try (Session session = neo4jDriver.session(SessionConfig.defaultConfig())) {
+            return session.run("""
+                    MATCH (m:Merchant)
+                    WHERE m.gdsDirty = true OR m.gdsRun IS NOT NULL
+                    CALL { WITH m SET m.gdsRun = $runId REMOVE m.gdsDirty } IN TRANSACTIONS OF 10000 ROWS
+                    RETURN count(m) AS claimed
+                    """, Map.of("runId", runId)).single().get("claimed").asLong();
+        }
+    }
+
+    private void releaseClaims(String runId) {
+        try (Session session = neo4jDriver.session(SessionConfig.defaultConfig())) {
+            session.run("""
+                    MATCH (m:Merchant)
+                    WHERE m.gdsRun = $runId OR m.gdsCore = $runId
+                    CALL { WITH m REMOVE m.gdsRun, m.gdsCore } IN TRANSACTIONS OF 10000 ROWS
+                    """, Map.of("runId", runId)).consume();
+        }
+    }
+
+    private Timer algorithmTimer(String algorithm, String mode) {
+        return Timer.builder("aml_graph_gds_algorithm_duration")
+                .tag("algorithm", algorithm)
+                .tag("mode", mode)
+                .description("Time to run one GDS algorithm during a graph metrics refresh")
+                .register(meterRegistry);
+    }
+
+    private Timer refreshTimer(String mode) {
+        return Timer.builder("aml_graph_gds_refresh_duration")
+                .tag("mode", mode)
+                .description("Duration of graph metrics refreshes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Cache all merchant metrics in Aerospike for fast retrieval, and publish them as a
+     * graph feature snapshot for the scoring near-cache.
+     * Metrics are streamed from Neo4j and written with one Aerospike batch per
+     * neo4j.gds.export.batch.size merchants.
+     *
+     * @param coreRunId after an incremental refresh, only that run's core merchants are
+     *                  rewritten in Aerospike (the snapshot always covers every merchant);
+     *                  null to rewrite all
+     */
+    private void cacheAllMerchantMetrics(String coreRunId) {
+        long start = System.currentTimeMillis();
+        GraphFeatureSnapshot.Builder snapshot = GraphFeatureSnapshot.builder(start, 0);
+        Map<String, Map<String, Object>> batch = new HashMap<>(exportBatchSize * 2);
+        int cached = 0;
 
         try (Session session = neo4jDriver.session(SessionConfig.defaultConfig())) {
             String cypher = """
@@ -354,28 +690,56 @@ public class Neo4jGdsService {
                            m.betweenness AS betweenness,
                            m.connectionCount AS connectionCount,
                            m.triangleCount AS triangleCount,
-                           m.localClusteringCoefficient AS localClusteringCoefficient
+                           m.localClusteringCoefficient AS localClusteringCoefficient,
+                           m.gdsCore AS gdsCore
                     """;
 
             Result result = session.run(cypher);
-            int count = 0;
             while (result.hasNext()) {
                 Record record = result.next();
-                String merchantId = record.get("merchantId").asString();
-                Map<String, Object> metrics = new HashMap<>();
-                metrics.put("pageRank", record.get("pageRank").asDouble(0.0));
-                metrics.put("communityId", record.get("communityId").asLong(0));
-                metrics.put("betweenness", record.get("betweenness").asDouble(0.0));
-                metrics.put("connectionCount", record.get("connectionCount").asLong(0));
-                metrics.put("triangleCount", record.get("triangleCount").asLong(0));
-                metrics.put("localClusteringCoefficient", record.get("localClusteringCoefficient").asDouble(0.0));
-                aerospikeCache.cacheGraphMetrics(merchantId, metrics);
-                count++;
+                String merchantId = record.get("merchantId").asString(null);
+                if (merchantId == null) {
+                    continue;
+                }
+                double pageRank = record.get("pageRank").asDouble(0.0);
+                long communityId = record.get("communityId").asLong(0);
+                double betweenness = record.get("betweenness").asDouble(0.0);
+                long connectionCount = record.get("connectionCount").asLong(0);
+                long triangleCount = record.get("triangleCount").asLong(0);
+                double clusteringCoefficient = record.get("localClusteringCoefficient").asDouble(0.0);
+
+                snapshot.add(merchantId, pageRank, communityId, betweenness, connectionCount, triangleCount,
+                        clusteringCoefficient);
+
+                boolean changed = coreRunId == null || coreRunId.equals(record.get("gdsCore").asString(null));
+                if (aerospikeCache != null && changed) {
+                    Map<String, Object> metrics = new HashMap<>(8);
+                    metrics.put("pageRank", pageRank);
+                    metrics.put("communityId", communityId);
+                    metrics.put("betweenness", betweenness);
+                    metrics.put("connectionCount", connectionCount);
+                    metrics.put("triangleCount", triangleCount);
+                    metrics.put("localClusteringCoefficient", clusteringCoefficient);
+                    batch.put(merchantId, metrics);
+                    if (batch.size() >= exportBatchSize) {
+                        cached += aerospikeCache.bulkCacheGraphMetrics(batch);
+                        batch.clear();
+                    }
+                }
             }
-            logger.info("Cached graph metrics for {} merchants in Aerospike", count);
+            if (aerospikeCache != null) {
+                cached += aerospikeCache.bulkCacheGraphMetrics(batch);
+            }
+            logger.info("Cached graph metrics for {} of {} merchants in Aerospike in {}ms", cached,
+                    snapshot.size(), System.currentTimeMillis() - start);
 
         } catch (Exception e) {
             logger.error("Error caching merchant metrics: {}", e.getMessage());
+            return;
+        }
+
+        if (nearCache != null) {
+            nearCache.publish(snapshot.build());
         }
     }
 
@@ -386,8 +750,12 @@ public class Neo4jGdsService {
     /**
      * Find shortest money trail between two merchants.
      * Used for AML investigation of fund flows.
+     * Answered from the in-memory traversal graph once it is loaded.
      */
     public Map<String, Object> findMoneyTrail(String fromMerchantId, String toMerchantId) {
+        if (traversalService != null && traversalService.isLoaded()) {
+            return traversalService.findMoneyTrail(fromMerchantId, toMerchantId);
+        }
         try (Session session = neo4jDriver.session(SessionConfig.defaultConfig())) {
             String cypher = """
                     MATCH path = shortestPath(
@@ -461,8 +829,13 @@ public class Neo4jGdsService {
     /**
      * Detect Circular Trading (Money Loops).
      * Finds cycles of length 3-6 ending at the merchant.
+     * Answered from the in-memory traversal graph once it is loaded, where loops follow
+     * the direction of the money (merchant -> ... -> merchant).
      */
     public Map<String, Object> detectCycles(String merchantId) {
+        if (traversalService != null && traversalService.isLoaded()) {
+            return traversalService.detectCycle(merchantId);
+        }
         try (Session session = neo4jDriver.session(SessionConfig.defaultConfig())) {
             String cypher = """
                     MATCH path = (m:Merchant {merchantId: $merchantId})-[*3..6]-(m)
@@ -488,8 +861,12 @@ public class Neo4jGdsService {
     /**
      * Detect Proximity to High Risk Nodes (Mules).
      * Checks if merchant is within 3 hops of a known high-risk entity.
+     * Answered from the in-memory traversal graph once it is loaded.
      */
     public Map<String, Object> detectMuleProximity(String merchantId) {
+        if (traversalService != null && traversalService.isLoaded()) {
+            return traversalService.detectMuleProximity(merchantId);
+        }
         try (Session session = neo4jDriver.session(SessionConfig.defaultConfig())) {
             // Assuming 'highRisk' property or riskScore > 0.9 identifies bad actors
             String cypher = """
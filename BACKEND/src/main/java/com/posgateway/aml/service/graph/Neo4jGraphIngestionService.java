@@ -1,15 +1,15 @@
 package com.posgateway.aml.service.graph;
 
-import com.posgateway.aml.entity.graph.*;
 import com.posgateway.aml.entity.TransactionEntity;
 import com.posgateway.aml.repository.graph.MerchantNodeRepository;
-import com.posgateway.aml.repository.graph.TransactionNodeRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -17,6 +17,9 @@ import java.time.LocalDateTime;
 /**
  * Service for ingesting transactions into Neo4j graph database.
  * Converts relational transaction data into graph nodes and relationships.
+ *
+ * Writes are handed to the GraphWriteBehindService and reach the graph in batches
+ * shortly after the relational commit, so ingestion never waits on Neo4j.
  */
 @Service
 @ConditionalOnProperty(name = "neo4j.enabled", havingValue = "true", matchIfMissing = false)
@@ -25,78 +28,65 @@ public class Neo4jGraphIngestionService {
     private static final Logger logger = LoggerFactory.getLogger(Neo4jGraphIngestionService.class);
 
     private final MerchantNodeRepository merchantNodeRepository;
-    private final TransactionNodeRepository transactionNodeRepository;
+    private final GraphWriteBehindService writeBehindService;
 
     @Autowired
     public Neo4jGraphIngestionService(
             MerchantNodeRepository merchantNodeRepository,
-            TransactionNodeRepository transactionNodeRepository) {
+            GraphWriteBehindService writeBehindService) {
         this.merchantNodeRepository = merchantNodeRepository;
-        this.transactionNodeRepository = transactionNodeRepository;
+        this.writeBehindService = writeBehindService;
     }
 
     /**
      * Ingest a transaction into the Neo4j graph.
-     * Creates/updates nodes and relationships.
+     * Creates/updates the merchant and transaction nodes once the surrounding database
+     * transaction (if any) has committed, so rolled back transactions never reach the graph.
      */
-    @Transactional
     public void ingestTransaction(TransactionEntity tx) {
-        logger.debug("Ingesting transaction {} into Neo4j graph", tx.getTxnId());
-
-        try {
-            // 1. Get or create merchant node
-            MerchantNode merchantNode = getOrCreateMerchant(tx);
-
-            // 2. Create transaction node
-            TransactionNode txnNode = new TransactionNode(
-                    tx.getTxnId().toString(),
-                    tx.getAmountCents() != null
-                            ? BigDecimal.valueOf(tx.getAmountCents()).divide(BigDecimal.valueOf(100))
-                            : BigDecimal.ZERO,
-                    tx.getCurrency(),
-                    "POS"); // Default channel when not available
-            txnNode.setFromMerchant(merchantNode);
-            txnNode.setTimestamp(tx.getTxnTs() != null ? tx.getTxnTs() : LocalDateTime.now());
-
-            // 3. Save transaction
-            transactionNodeRepository.save(txnNode);
-
-            logger.info("Transaction {} ingested into Neo4j graph", tx.getTxnId());
-
-        } catch (Exception e) {
-            logger.error("Error ingesting transaction {} into Neo4j: {}", tx.getTxnId(), e.getMessage());
+        if (tx.getTxnId() == null) {
+            return;
         }
+        String txnId = tx.getTxnId().toString();
+        String merchantId = tx.getMerchantId() != null ? tx.getMerchantId() : "UNKNOWN";
+        String amount = tx.getAmountCents() != null
+                ? BigDecimal.valueOf(tx.getAmountCents()).movePointLeft(2).toPlainString()
+                : BigDecimal.ZERO.toPlainString();
+        LocalDateTime timestamp = tx.getTxnTs() != null ? tx.getTxnTs() : LocalDateTime.now();
+        String currency = tx.getCurrency();
+
+        // Default channel when not available
+        afterCommit(() -> {
+            if (!writeBehindService.enqueueTransaction(txnId, merchantId, amount, currency, "POS", timestamp)) {
+                logger.debug("Graph write-behind queue full, transaction {} not ingested into Neo4j", txnId);
+            }
+        });
     }
 
     /**
-     * Get or create a MerchantNode for the given transaction.
-     */
-    private MerchantNode getOrCreateMerchant(TransactionEntity tx) {
-        String merchantId = tx.getMerchantId() != null ? tx.getMerchantId().toString() : "UNKNOWN";
-
-        return merchantNodeRepository.findByMerchantId(merchantId)
-                .orElseGet(() -> {
-                    MerchantNode newMerchant = new MerchantNode(
-                            merchantId,
-                            "Merchant " + merchantId,
-                            "0000", // Default MCC - TransactionEntity doesn't have this
-                            "UNK"); // Default country - TransactionEntity doesn't have this
-                    return merchantNodeRepository.save(newMerchant);
-                });
-    }
-
-    /**
-     * Create a relationship between two merchants based on a transaction.
+     * Record a payment between two merchants on their TRANSACTS_WITH relationship.
+     * Payments are summed per merchant pair and written with the next flush.
      */
-    @Transactional
     public void linkMerchants(String fromMerchantId, String toMerchantId, BigDecimal amount) {
-        MerchantNode from = merchantNodeRepository.findByMerchantId(fromMerchantId).orElse(null);
-        MerchantNode to = merchantNodeRepository.findByMerchantId(toMerchantId).orElse(null);
+        LocalDateTime now = LocalDateTime.now();
+        afterCommit(() -> {
+            if (!writeBehindService.recordMerchantLink(fromMerchantId, toMerchantId, amount.doubleValue(), now)) {
+                logger.debug("Graph write-behind link buffer full, link {} -> {} not recorded",
+                        fromMerchantId, toMerchantId);
+            }
+        });
+    }
 
-        if (from != null && to != null) {
-            from.addTransactionWith(to, amount.doubleValue(), 1L);
-            merchantNodeRepository.save(from);
-            logger.info("Linked merchants {} -> {} with amount {}", fromMerchantId, toMerchantId, amount);
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
         }
     }
 
@@ -373,23 +373,11 @@ public class LimitsManagementService {
                     .map(m -> String.valueOf(m.getMerchantId()))
                     .collect(Collectors.toList());
             
-            // Query transactions for today
-            List<com.posgateway.aml.entity.TransactionEntity> todayTransactions = 
-                transactionRepository.findAll().stream()
-                    .filter(tx -> tx.getMerchantId() != null &&
-                            merchantIdStrings.contains(tx.getMerchantId()) &&
-                            tx.getTxnTs() != null &&
-                            tx.getTxnTs().isAfter(startOfDay) &&
-                            tx.getTxnTs().isBefore(endOfDay))
-                    .collect(Collectors.toList());
-            
-            // Sum transaction amounts
-            for (com.posgateway.aml.entity.TransactionEntity tx : todayTransactions) {
-                if (tx.getAmountCents() != null) {
-                    totalDailyUsage = totalDailyUsage.add(
-                        BigDecimal.valueOf(tx.getAmountCents()).divide(BigDecimal.valueOf(100))
-                    );
-                }
+            // Sum today's transaction amounts in the database (today's partition only)
+            Long todayCents = transactionRepository.sumAmountByMerchantsInTimeWindow(
+                merchantIdStrings, startOfDay, endOfDay);
+            if (todayCents != null) {
+                totalDailyUsage = BigDecimal.valueOf(todayCents).divide(BigDecimal.valueOf(100));
             }
         } else {
             // For global admin, sum from global limits
@@ -7,6 +7,7 @@ import com.posgateway.aml.repository.TransactionRepository;
 import com.posgateway.aml.repository.SuspiciousActivityReportRepository;
 import com.posgateway.aml.repository.AlertRepository;
 import com.posgateway.aml.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
@@ -28,16 +29,22 @@ public class TransactionMonitoringService {
     private final SuspiciousActivityReportRepository sarRepository;
     private final AlertRepository alertRepository;
     private final UserRepository userRepository;
+    private final TransactionRollupService rollupService;
+
+    @Value("${transactions.query.default.window.days:0}")
+    private int defaultWindowDays;
 
     public TransactionMonitoringService(
             TransactionRepository transactionRepository,
             SuspiciousActivityReportRepository sarRepository,
             AlertRepository alertRepository,
-            UserRepository userRepository) {
+            UserRepository userRepository,
+            TransactionRollupService rollupService) {
         this.transactionRepository = transactionRepository;
         this.sarRepository = sarRepository;
         this.alertRepository = alertRepository;
         this.userRepository = userRepository;
+        this.rollupService = rollupService;
     }
 
     /**
@@ -53,41 +60,18 @@ public class TransactionMonitoringService {
                 .orElse(null);
     }
 
-    /**
-     * Get transactions filtered by PSP ID
-     */
-    private List<TransactionEntity> getTransactionsByPsp(Long pspId, LocalDateTime startTime) {
-        if (pspId == null) {
-            // Admin view - all transactions
-            return transactionRepository.findAll().stream()
-                    .filter(t -> t.getTxnTs() != null && (startTime == null || t.getTxnTs().isAfter(startTime)))
-                    .collect(Collectors.toList());
-        } else {
-            // Filter by PSP ID
-            return transactionRepository.findByPspIdOrderByTxnTsDesc(pspId).stream()
-                    .filter(t -> t.getTxnTs() != null && (startTime == null || t.getTxnTs().isAfter(startTime)))
-                    .collect(Collectors.toList());
-        }
-    }
-
     /**
      * Get dashboard statistics for last 24 hours, filtered by PSP
      */
     public Map<String, Object> getDashboardStats() {
         Long pspId = getCurrentPspId();
-        LocalDateTime last24Hours = LocalDateTime.now().minusHours(24);
-        List<TransactionEntity> recentTransactions = getTransactionsByPsp(pspId, last24Hours);
-
-        long totalMonitored = recentTransactions.size();
-        long flagged = recentTransactions.stream()
-                .filter(t -> isFlagged(t))
-                .count();
-        long highRisk = recentTransactions.stream()
-                .filter(t -> isHighRisk(t))
-                .count();
-        long blocked = recentTransactions.stream()
-                .filter(t -> isBlocked(t))
-                .count();
+        LocalDateTime now = LocalDateTime.now();
+        TransactionRollupService.RollupTotals totals = rollupService.sum(pspId, now.minusHours(24), now);
+
+        long totalMonitored = totals.getTotal();
+        long flagged = totals.getFlagged();
+        long highRisk = totals.getHighRisk();
+        long blocked = totals.getBlocked();
 
         Map<String, Object> stats = new HashMap<>();
         stats.put("totalMonitored", totalMonitored);
@@ -103,21 +87,13 @@ public class TransactionMonitoringService {
      */
     public Map<String, Object> getRiskDistribution() {
         Long pspId = getCurrentPspId();
-        LocalDateTime last24Hours = LocalDateTime.now().minusHours(24);
-        List<TransactionEntity> recentTransactions = getTransactionsByPsp(pspId, last24Hours);
-
-        long low = recentTransactions.stream()
-                .filter(t -> getRiskScore(t) >= 0 && getRiskScore(t) <= 25)
-                .count();
-        long medium = recentTransactions.stream()
-                .filter(t -> getRiskScore(t) >= 26 && getRiskScore(t) <= 50)
-                .count();
-        long high = recentTransactions.stream()
-                .filter(t -> getRiskScore(t) >= 51 && getRiskScore(t) <= 75)
-                .count();
-        long critical = recentTransactions.stream()
-                .filter(t -> getRiskScore(t) >= 76 && getRiskScore(t) <= 100)
-                .count();
+        LocalDateTime now = LocalDateTime.now();
+        TransactionRollupService.RollupTotals totals = rollupService.sum(pspId, now.minusHours(24), now);
+
+        long low = totals.getRiskLow();
+        long medium = totals.getRiskMedium();
+        long high = totals.getRiskHigh();
+        long critical = totals.getRiskCritical();
 
         Map<String, Object> distribution = new HashMap<>();
         distribution.put("low", low);
@@ -132,8 +108,9 @@ public class TransactionMonitoringService {
      */
     public List<Map<String, Object>> getTopRiskIndicators() {
         Long pspId = getCurrentPspId();
-        LocalDateTime last24Hours = LocalDateTime.now().minusHours(24);
-        List<TransactionEntity> recentTransactions = getTransactionsByPsp(pspId, last24Hours);
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime last24Hours = now.minusHours(24);
+        TransactionRollupService.RollupTotals totals = rollupService.sum(pspId, last24Hours, now);
         
         // Get alerts for this PSP
         List<Alert> alerts;
@@ -146,15 +123,10 @@ public class TransactionMonitoringService {
         List<Map<String, Object>> indicators = new ArrayList<>();
         
         // Calculate Velocity Violations (multiple transactions from same PAN/IP in short time)
-        long velocityCount = recentTransactions.stream()
-                .collect(Collectors.groupingBy(t -> {
-                    String key = (t.getPanHash() != null ? t.getPanHash() : "") + "_" + 
-                                (t.getIpAddress() != null ? t.getIpAddress() : "");
-                    return key;
-                }))
-                .values().stream()
-                .filter(list -> list.size() >= 3) // 3+ transactions in 24h
-                .count();
+        // 3+ transactions in 24h; grouped in the database, not a rollup counter
+        long velocityCount = pspId != null
+                ? transactionRepository.countVelocityGroupsByPspId(pspId, last24Hours)
+                : transactionRepository.countVelocityGroups(last24Hours);
         
         Map<String, Object> velocity = new HashMap<>();
         velocity.put("name", "Velocity Violations");
@@ -163,9 +135,7 @@ public class TransactionMonitoringService {
         indicators.add(velocity);
 
         // Calculate High Amount transactions
-        long highAmountCount = recentTransactions.stream()
-                .filter(t -> t.getAmountCents() != null && t.getAmountCents() > 50000) // > $500
-                .count();
+        long highAmountCount = totals.getHighAmount(); // > $500
         
         Map<String, Object> amount = new HashMap<>();
         amount.put("name", "High Amount Transactions");
@@ -174,9 +144,7 @@ public class TransactionMonitoringService {
         indicators.add(amount);
 
         // Calculate High Risk Score transactions
-        long highRiskScoreCount = recentTransactions.stream()
-                .filter(t -> getRiskScore(t) >= 75)
-                .count();
+        long highRiskScoreCount = totals.getHighScore();
         
         Map<String, Object> riskScore = new HashMap<>();
         riskScore.put("name", "High Risk Score");
@@ -212,16 +180,9 @@ public class TransactionMonitoringService {
         // Get recent transactions filtered by PSP
         List<TransactionEntity> recent;
         if (pspId != null) {
-            recent = transactionRepository.findByPspIdOrderByTxnTsDesc(pspId).stream()
-                    .filter(t -> t.getTxnTs() != null)
-                    .limit(10)
-                    .collect(Collectors.toList());
+            recent = transactionRepository.findByPspIdAndTxnTsNotNullOrderByTxnTsDesc(pspId, PageRequest.of(0, 10));
         } else {
-            recent = transactionRepository.findAll().stream()
-                    .filter(t -> t.getTxnTs() != null)
-                    .sorted((a, b) -> b.getTxnTs().compareTo(a.getTxnTs()))
-                    .limit(10)
-                    .collect(Collectors.toList());
+            recent = transactionRepository.findByTxnTsNotNullOrderByTxnTsDesc(PageRequest.of(0, 10));
         }
 
         for (TransactionEntity txn : recent) {
@@ -257,8 +218,11 @@ public class TransactionMonitoringService {
             spec = spec.and((root, query, cb) -> cb.equal(root.get("pspId"), pspId));
         }
         
-        // Filter out null timestamps
-        spec = spec.and((root, query, cb) -> cb.isNotNull(root.get("txnTs")));
+        // Optional recent window, so the page and its count touch only the latest partitions
+        if (defaultWindowDays > 0) {
+            LocalDateTime from = LocalDateTime.now().minusDays(defaultWindowDays);
+            spec = spec.and((root, query, cb) -> cb.greaterThanOrEqualTo(root.get("txnTs"), from));
+        }
         
         // Apply risk level filter at database level (using stored column)
         if (riskLevel != null && !riskLevel.equals("All") && !riskLevel.isBlank()) {
@@ -416,18 +380,6 @@ public class TransactionMonitoringService {
         return indicators;
     }
 
-    private boolean isFlagged(TransactionEntity txn) {
-        return getRiskScore(txn) >= 50;
-    }
-
-    private boolean isHighRisk(TransactionEntity txn) {
-        return getRiskScore(txn) >= 51;
-    }
-
-    private boolean isBlocked(TransactionEntity txn) {
-        return "DECLINED".equals(getDecision(txn));
-    }
-
     private String getActivityType(TransactionEntity txn) {
         String decision = getDecision(txn);
         if ("DECLINED".equals(decision)) return "blocked";
@@ -452,28 +404,19 @@ public class TransactionMonitoringService {
      */
     public Map<String, Object> generateDeclineReport() {
         Long pspId = getCurrentPspId();
-        LocalDateTime last30Days = LocalDateTime.now().minusDays(30);
-        List<TransactionEntity> transactions = getTransactionsByPsp(pspId, last30Days);
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime last30Days = now.minusDays(30);
+        TransactionRollupService.RollupTotals totals = rollupService.sum(pspId, last30Days, now);
 
-        // Filter declined transactions
-        List<TransactionEntity> declinedTransactions = transactions.stream()
-                .filter(t -> isBlocked(t) || "DECLINED".equals(getDecision(t)))
-                .collect(Collectors.toList());
-
-        long totalDeclines = declinedTransactions.size();
+        long totalDeclines = totals.getBlocked();
         
-        // Calculate decline reasons
+        // Only critical-risk transactions are declined
         Map<String, Long> declineReasons = new HashMap<>();
-        for (TransactionEntity txn : declinedTransactions) {
-            String reason = getRiskLevel(txn) + "_RISK";
-            declineReasons.put(reason, declineReasons.getOrDefault(reason, 0L) + 1);
+        if (totalDeclines > 0) {
+            declineReasons.put("CRITICAL_RISK", totalDeclines);
         }
 
-        // Calculate total declined amount
-        long totalDeclinedAmount = declinedTransactions.stream()
-                .filter(t -> t.getAmountCents() != null)
-                .mapToLong(TransactionEntity::getAmountCents)
-                .sum();
+        long totalDeclinedAmount = totals.getBlockedAmountCents();
 
         Map<String, Object> report = new HashMap<>();
         report.put("totalDeclines", totalDeclines);
@@ -483,7 +426,7 @@ public class TransactionMonitoringService {
         report.put("totalDeclinedAmount", totalDeclinedAmount);
         report.put("totalDeclinedAmountFormatted", String.format("%.2f", totalDeclinedAmount / 100.0));
         report.put("averageDeclineAmount", totalDeclines > 0 ? totalDeclinedAmount / totalDeclines : 0);
-        report.put("declinesByDay", calculateDeclinesByDay(declinedTransactions));
+        report.put("declinesByDay", rollupService.blockedByDay(pspId, last30Days, now));
         
         return report;
     }
@@ -494,18 +437,12 @@ public class TransactionMonitoringService {
     public Map<String, Object> generateMonitoringSummary() {
         Long pspId = getCurrentPspId();
         LocalDateTime last30Days = LocalDateTime.now().minusDays(30);
-        List<TransactionEntity> transactions = getTransactionsByPsp(pspId, last30Days);
-
-        long totalMonitored = transactions.size();
-        long flagged = transactions.stream()
-                .filter(t -> isFlagged(t))
-                .count();
-        long highRisk = transactions.stream()
-                .filter(t -> isHighRisk(t))
-                .count();
-        long blocked = transactions.stream()
-                .filter(t -> isBlocked(t))
-                .count();
+        TransactionRollupService.RollupTotals totals = rollupService.sum(pspId, last30Days, LocalDateTime.now());
+
+        long totalMonitored = totals.getTotal();
+        long flagged = totals.getFlagged();
+        long highRisk = totals.getHighRisk();
+        long blocked = totals.getBlocked();
 
         // Get alerts count
         List<Alert> alerts;
@@ -529,19 +466,5 @@ public class TransactionMonitoringService {
         
         return summary;
     }
-
-    /**
-     * Calculate declines by day for the report
-     */
-    private Map<String, Long> calculateDeclinesByDay(List<TransactionEntity> declinedTransactions) {
-        Map<String, Long> declinesByDay = new HashMap<>();
-        for (TransactionEntity txn : declinedTransactions) {
-            if (txn.getTxnTs() != null) {
-                String dateKey = txn.getTxnTs().format(java.time.format.DateTimeFormatter.ISO_LOCAL_DATE);
-                declinesByDay.put(dateKey, declinesByDay.getOrDefault(dateKey, 0L) + 1);
-            }
-        }
-        return declinesByDay;
-    }
 }
 
@@ -0,0 +1,631 @@
+package com.posgateway.aml.service.monitoring;
+
+import com.posgateway.aml.entity.TransactionEntity;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Transaction Rollup Service
+ * Maintains per-PSP transaction counters in minute and hour buckets (transaction_rollups)
+ * so monitoring dashboards sum a few hundred buckets instead of loading transactions.
+ *
+ * - Ingest records each committed transaction into in-memory deltas keyed by
+ *   (PSP, minute); a scheduled flush upserts them as minute and hour increments in one
+ *   database transaction, adding back to the counters already stored
+ * - Windows are answered from minute buckets at the edges and hour buckets in between;
+ *   minute buckets are kept for a short retention, older windows use whole hours
+ * - backfill() rebuilds the buckets of a past period from the transactions table, in
+ *   day chunks. Only hours that ended before the flush cutoff (the previous full hour)
+ *   are rebuilt: a more recent hour can still receive deltas of transactions the rebuild
+ *   already counted, on this or another node, and is left to the incremental path
+ * - the startup backfill runs until transaction_rollup_backfill (V118) is marked BUILT,
+ *   whatever buckets the incremental path has written meanwhile
+ *
+ * Deltas not yet flushed when a node dies are lost; a backfill over the period repairs them.
+ */
+@Service
+public class TransactionRollupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransactionRollupService.class);
+
+    static final String MINUTE = "MINUTE";
+    static final String HOUR = "HOUR";
+
+    private static final String BUILT = "BUILT";
+
+    // PSP ID stored for transactions without a PSP
+    private static final long NO_PSP = -1L;
+
+    private static final int TOTAL = 0;
+    private static final int FLAGGED = 1;
+    private static final int HIGH_RISK = 2;
+    private static final int BLOCKED = 3;
+    private static final int RISK_LOW = 4;
+    private static final int RISK_MEDIUM = 5;
+    private static final int RISK_HIGH = 6;
+    private static final int RISK_CRITICAL = 7;
+    private static final int HIGH_AMOUNT = 8;
+    private static final int HIGH_SCORE = 9;
+    private static final int AMOUNT_CENTS = 10;
+    private static final int BLOCKED_AMOUNT_CENTS = 11;
+
+    private static final String[] COLUMNS = {
+            "total_count", "flagged_count", "high_risk_count", "blocked_count",
+            "risk_low_count", "risk_medium_count", "risk_high_count", "risk_critical_count",
+            "high_amount_count", "high_score_count", "amount_cents", "blocked_amount_cents" };
+
+    // Same scoring as the dashboard: TRS if present, otherwise the amount-based fallback
+    private static final String RISK_SCORE_SQL = "CASE WHEN trs IS NOT NULL THEN CAST(trunc(trs) AS INTEGER) "
+            + "WHEN amount_cents > 100000 THEN 75 WHEN amount_cents > 50000 THEN 95 ELSE 25 END";
+
+    private static final String UPSERT_SQL = buildUpsertSql();
+    private static final String BACKFILL_SQL = buildBackfillSql();
+    private static final String SUM_SQL = buildSumSql();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    private final ReentrantReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private volatile ConcurrentHashMap<BucketKey, AtomicLongArray> pending = new ConcurrentHashMap<>();
+
+    private Timer flushTimer;
+    private Counter flushFailures;
+
+    @Value("${monitoring.rollup.minute.retention.hours:48}")
+    private int minuteRetentionHours;
+
+    @Value("${monitoring.rollup.hour.retention.days:400}")
+    private int hourRetentionDays;
+
+    @Value("${monitoring.rollup.backfill.on.startup:true}")
+    private boolean backfillOnStartup;
+
+    @Value("${monitoring.rollup.backfill.days:35}")
+    private int backfillDays;
+
+    @Autowired
+    public TransactionRollupService(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+            MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        flushTimer = Timer.builder("aml_rollup_flush_duration")
+                .description("Time to upsert pending rollup deltas")
+                .register(meterRegistry);
+        flushFailures = Counter.builder("aml_rollup_flush_failures_total")
+                .description("Rollup flushes that failed and were retried with the next flush")
+                .register(meterRegistry);
+        Gauge.builder("aml_rollup_pending_buckets", this, service -> service.pending.size())
+                .description("Minute buckets with deltas not yet written")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Count a transaction once the current database transaction commits
+     */
+    public void record(TransactionEntity transaction) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    add(transaction);
+                }
+            });
+        } else {
+            add(transaction);
+        }
+    }
+
+    private void add(TransactionEntity transaction) {
+        if (transaction.getTxnTs() == null) {
+            return;
+        }
+        long[] delta = counters(transaction.getAmountCents(), transaction.getTrs());
+        BucketKey key = new BucketKey(transaction.getPspId() != null ? transaction.getPspId() : NO_PSP,
+                transaction.getTxnTs().truncatedTo(ChronoUnit.MINUTES));
+        swapLock.readLock().lock();
+        try {
+            AtomicLongArray bucket = pending.computeIfAbsent(key, k -> new AtomicLongArray(COLUMNS.length));
+            for (int i = 0; i < delta.length; i++) {
+                if (delta[i] != 0) {
+                    bucket.addAndGet(i, delta[i]);
+                }
+            }
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Counter increments of one transaction
+     */
+    static long[] counters(Long amountCents, Double trs) {
+        int score = riskScore(amountCents, trs);
+        long amount = amountCents != null ? amountCents : 0L;
+        long[] delta = new long[COLUMNS.length];
+        delta[TOTAL] = 1;
+        delta[FLAGGED] = score >= 50 ? 1 : 0;
+        delta[HIGH_RISK] = score >= 51 ? 1 : 0;
+        delta[BLOCKED] = score >= 76 ? 1 : 0;
+        delta[RISK_LOW] = score >= 0 && score <= 25 ? 1 : 0;
+        delta[RISK_MEDIUM] = score >= 26 && score <= 50 ? 1 : 0;
+        delta[RISK_HIGH] = score >= 51 && score <= 75 ? 1 : 0;
+        delta[RISK_CRITICAL] = score >= 76 && score <= 100 ? 1 : 0;
+        delta[HIGH_AMOUNT] = amount > 50000 ? 1 : 0;
+        delta[HIGH_SCORE] = score >= 75 ? 1 : 0;
+        delta[AMOUNT_CENTS] = amount;
+        delta[BLOCKED_AMOUNT_CENTS] = score >= 76 ? amount : 0;
+        return delta;
+    }
+
+    static int riskScore(Long amountCents, Double trs) {
+        if (trs != null) {
+            return trs.intValue();
+        }
+        if (amountCents != null && amountCents > 100000) return 75;
+        if (amountCents != null && amountCents > 50000) return 95;
+        return 25;
+    }
+
+    /**
+     * Write pending deltas as minute and hour increments
+     */
+    @Scheduled(fixedDelayString = "${monitoring.rollup.flush.interval.ms:5000}")
+    public synchronized void flush() {
+        Map<BucketKey, AtomicLongArray> batch;
+        swapLock.writeLock().lock();
+        try {
+            batch = pending;
+            if (batch.isEmpty()) {
+                return;
+            }
+            pending = new ConcurrentHashMap<>();
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+
+        // Sorted so concurrent flushes from several nodes lock rows in the same order
+        Map<BucketKey, long[]> minutes = new TreeMap<>();
+        Map<BucketKey, long[]> hours = new TreeMap<>();
+        batch.forEach((key, counts) -> {
+            long[] values = new long[COLUMNS.length];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = counts.get(i);
+            }
+            minutes.put(key, values);
+            long[] hour = hours.computeIfAbsent(key.toHour(), k -> new long[COLUMNS.length]);
+            for (int i = 0; i < values.length; i++) {
+                hour[i] += values[i];
+            }
+        });
+
+        List<Object[]> rows = new ArrayList<>(minutes.size() + hours.size());
+        minutes.forEach((key, values) -> rows.add(upsertArgs(MINUTE, key, values)));
+        hours.forEach((key, values) -> rows.add(upsertArgs(HOUR, key, values)));
+
+        long start = System.nanoTime();
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(UPSERT_SQL, rows));
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        } catch (Exception e) {
+            flushFailures.increment();
+            logger.warn("Failed to write {} rollup buckets, retrying with the next flush: {}", rows.size(),
+                    e.getMessage());
+            requeue(minutes);
+        }
+    }
+
+    private void requeue(Map<BucketKey, long[]> minutes) {
+        swapLock.readLock().lock();
+        try {
+            minutes.forEach((key, values) -> {
+                AtomicLongArray bucket = pending.computeIfAbsent(key, k -> new AtomicLongArray(COLUMNS.length));
+                for (int i = 0; i < values.length; i++) {
+                    bucket.addAndGet(i, values[i]);
+                }
+            });
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * Sum the buckets covering [from, to] for one PSP (or all PSPs when pspId is null)
+     *
+     * Partial hours at the edges come from minute buckets (whole minutes); windows reaching
+     * back past the minute retention are widened to whole hours.
+     */
+    public RollupTotals sum(Long pspId, LocalDateTime from, LocalDateTime to) {
+        LocalDateTime minuteFrom = from.truncatedTo(ChronoUnit.MINUTES);
+        LocalDateTime hourFrom = ceilHour(from);
+        LocalDateTime hourTo = to.truncatedTo(ChronoUnit.HOURS);
+        LocalDateTime minuteRetentionStart = LocalDateTime.now().minusHours(minuteRetentionHours);
+
+        List<Object> args = new ArrayList<>();
+        StringBuilder ranges = new StringBuilder();
+        if (from.isBefore(minuteRetentionStart)) {
+            addRange(ranges, args, HOUR, from.truncatedTo(ChronoUnit.HOURS), ceilHour(to));
+        } else if (!hourFrom.isBefore(hourTo)) {
+            addRange(ranges, args, MINUTE, minuteFrom, to.plusNanos(1));
+        } else {
+            addRange(ranges, args, MINUTE, minuteFrom, hourFrom);
+            addRange(ranges, args, HOUR, hourFrom, hourTo);
+            addRange(ranges, args, MINUTE, hourTo, to.plusNanos(1));
+        }
+
+        String sql = SUM_SQL + " WHERE (" + ranges + ")";
+        if (pspId != null) {
+            sql += " AND psp_id = ?";
+            args.add(pspId);
+        }
+        long[] totals = jdbcTemplate.queryForObject(sql, (rs, rowNum) -> {
+            long[] values = new long[COLUMNS.length];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = rs.getLong(i + 1);
+            }
+            return values;
+        }, args.toArray());
+        return new RollupTotals(totals);
+    }
+
+    /**
+     * Blocked transactions per day (ISO date) over whole hours of [from, to]
+     */
+    public Map<String, Long> blockedByDay(Long pspId, LocalDateTime from, LocalDateTime to) {
+        List<Object> args = new ArrayList<>();
+        args.add(HOUR);
+        args.add(Timestamp.valueOf(from.truncatedTo(ChronoUnit.HOURS)));
+        args.add(Timestamp.valueOf(ceilHour(to)));
+        String sql = "SELECT CAST(bucket_start AS DATE) AS day, SUM(blocked_count) FROM transaction_rollups "
+                + "WHERE granularity = ? AND bucket_start >= ? AND bucket_start < ? AND blocked_count > 0";
+        if (pspId != null) {
+            sql += " AND psp_id = ?";
+            args.add(pspId);
+        }
+        sql += " GROUP BY CAST(bucket_start AS DATE) ORDER BY day";
+
+        Map<String, Long> byDay = new LinkedHashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            byDay.put(rs.getDate(1).toLocalDate().toString(), rs.getLong(2));
+        }, args.toArray());
+        return byDay;
+    }
+
+    /**
+     * Rebuild the buckets of a past period from the transactions table
+     *
+     * @return number of buckets written
+     */
+    public int backfill(LocalDateTime from, LocalDateTime to) {
+        // Deltas of older hours (late transactions) are counted by the rebuild as well
+        flush();
+        LocalDateTime start = from.truncatedTo(ChronoUnit.HOURS);
+        LocalDateTime currentHour = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
+        LocalDateTime cutoff = backfillCutoff(currentHour);
+        LocalDateTime end = ceilHour(to).isAfter(cutoff) ? cutoff : ceilHour(to);
+        LocalDateTime minuteRetentionStart = currentHour.minusHours(minuteRetentionHours);
+
+        long begin = System.currentTimeMillis();
+        int buckets = 0;
+        for (LocalDateTime chunk = start; chunk.isBefore(end); chunk = chunk.plusDays(1)) {
+            LocalDateTime chunkStart = chunk;
+            LocalDateTime chunkEnd = chunk.plusDays(1).isAfter(end) ? end : chunk.plusDays(1);
+            LocalDateTime minuteStart = chunkStart.isBefore(minuteRetentionStart) ? minuteRetentionStart : chunkStart;
+            Integer written = transactionTemplate.execute(status -> {
+                int count = rebuild(HOUR, "hour", chunkStart, chunkEnd);
+                if (minuteStart.isBefore(chunkEnd)) {
+                    count += rebuild(MINUTE, "minute", minuteStart, chunkEnd);
+                }
+                return count;
+            });
+            buckets += written != null ? written : 0;
+            heartbeat();
+        }
+        logger.info("Rollup backfill from {} to {} wrote {} buckets in {}ms", start, end, buckets,
+                System.currentTimeMillis() - begin);
+        return buckets;
+    }
+
+    /**
+     * End of the hours a backfill rebuilds: the start of the previous hour. Its
+     * transactions committed and were flushed at least one flush interval ago, so no
+     * pending delta of a counted transaction can still be added to them.
+     */
+    static LocalDateTime backfillCutoff(LocalDateTime currentHour) {
+        return currentHour.minusHours(1);
+    }
+
+    private int rebuild(String granularity, String truncateTo, LocalDateTime from, LocalDateTime to) {
+        Timestamp fromTs = Timestamp.valueOf(from);
+        Timestamp toTs = Timestamp.valueOf(to);
+        jdbcTemplate.update("DELETE FROM transaction_rollups WHERE granularity = ? AND bucket_start >= ? AND bucket_start < ?",
+                granularity, fromTs, toTs);
+        return jdbcTemplate.update(BACKFILL_SQL, granularity, truncateTo, fromTs, toTs);
+    }
+
+    /**
+     * Background backfill, for the admin endpoint
+     */
+    @Async("backgroundTaskExecutor")
+    public void backfillAsync(LocalDateTime from, LocalDateTime to) {
+        try {
+            backfill(from, to);
+        } catch (Exception e) {
+            logger.error("Rollup backfill from {} to {} failed: {}", from, to, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Build the rollups of the recent past the first time the application starts with them
+     *
+     * Runs until transaction_rollup_backfill is marked BUILT; one node at a time claims it.
+     */
+    @Async("backgroundTaskExecutor")
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfNotBuilt() {
+        if (!backfillOnStartup) {
+            return;
+        }
+        try {
+            if (!claimBackfill()) {
+                return;
+            }
+            logger.info("Transaction rollups not built yet, backfilling the last {} days", backfillDays);
+            LocalDateTime now = LocalDateTime.now();
+            backfill(now.minusDays(backfillDays), now);
+            jdbcTemplate.update("UPDATE transaction_rollup_backfill SET status = ?, built_at = now() WHERE id = 1",
+                    BUILT);
+        } catch (Exception e) {
+            logger.error("Startup rollup backfill failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Claim the startup backfill unless it is built or another node claimed it recently
+     */
+    boolean claimBackfill() {
+        return jdbcTemplate.update("UPDATE transaction_rollup_backfill SET claimed_at = now() "
+                + "WHERE id = 1 AND status <> ? "
+                + "AND (claimed_at IS NULL OR claimed_at < now() - INTERVAL '15 minutes')", BUILT) == 1;
+    }
+
+    private void heartbeat() {
+        jdbcTemplate.update("UPDATE transaction_rollup_backfill SET claimed_at = now() WHERE id = 1 AND status <> ?",
+                BUILT);
+    }
+
+    /**
+     * Drop minute and hour buckets past their retention
+     */
+    @Scheduled(fixedDelayString = "${monitoring.rollup.cleanup.interval.ms:3600000}")
+    public void purgeExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        int minutes = jdbcTemplate.update("DELETE FROM transaction_rollups WHERE granularity = ? AND bucket_start < ?",
+                MINUTE, Timestamp.valueOf(now.minusHours(minuteRetentionHours).truncatedTo(ChronoUnit.HOURS)));
+        int hours = jdbcTemplate.update("DELETE FROM transaction_rollups WHERE granularity = ? AND bucket_start < ?",
+                HOUR, Timestamp.valueOf(now.minusDays(hourRetentionDays).truncatedTo(ChronoUnit.HOURS)));
+        if (minutes > 0 || hours > 0) {
+            logger.debug("Purged {} minute and {} hour rollup buckets", minutes, hours);
+        }
+    }
+
+    private static void addRange(StringBuilder ranges, List<Object> args, String granularity, LocalDateTime from,
+            LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            return;
+        }
+        if (ranges.length() > 0) {
+            ranges.append(" OR ");
+        }
+        ranges.append("(granularity = ? AND bucket_start >= ? AND bucket_start < ?)");
+        args.add(granularity);
+        args.add(Timestamp.valueOf(from));
+        args.add(Timestamp.valueOf(to));
+    }
+
+    private static LocalDateTime ceilHour(LocalDateTime time) {
+        LocalDateTime hour = time.truncatedTo(ChronoUnit.HOURS);
+        return hour.equals(time) ? hour : hour.plusHours(1);
+    }
+
+    private static Object[] upsertArgs(String granularity, BucketKey key, long[] values) {
+        Object[] args = new Object[3 + values.length];
+        args[0] = granularity;
+        args[1] = key.pspId;
+        args[2] = Timestamp.valueOf(key.bucketStart);
+        for (int i = 0; i < values.length; i++) {
+            args[3 + i] = values[i];
+        }
+        return args;
+    }
+
+    private static String buildUpsertSql() {
+        StringBuilder sql = new StringBuilder("INSERT INTO transaction_rollups (granularity, psp_id, bucket_start, ");
+        sql.append(String.join(", ", COLUMNS)).append(", updated_at) VALUES (?, ?, ?");
+        for (int i = 0; i < COLUMNS.length; i++) {
+            sql.append(", ?");
+        }
+        sql.append(", now()) ON CONFLICT (granularity, psp_id, bucket_start) DO UPDATE SET ");
+        for (String column : COLUMNS) {
+            sql.append(column).append(" = transaction_rollups.").append(column).append(" + EXCLUDED.")
+                    .append(column).append(", ");
+        }
+        return sql.append("updated_at = EXCLUDED.updated_at").toString();
+    }
+
+    private static String buildBackfillSql() {
+        return "INSERT INTO transaction_rollups (granularity, psp_id, bucket_start, " + String.join(", ", COLUMNS)
+                + ", updated_at) SELECT ?, psp_id, bucket_start, COUNT(*), "
+                + "COUNT(*) FILTER (WHERE score >= 50), "
+                + "COUNT(*) FILTER (WHERE score >= 51), "
+                + "COUNT(*) FILTER (WHERE score >= 76), "
+                + "COUNT(*) FILTER (WHERE score BETWEEN 0 AND 25), "
+                + "COUNT(*) FILTER (WHERE score BETWEEN 26 AND 50), "
+                + "COUNT(*) FILTER (WHERE score BETWEEN 51 AND 75), "
+                + "COUNT(*) FILTER (WHERE score BETWEEN 76 AND 100), "
+                + "COUNT(*) FILTER (WHERE amount > 50000), "
+                + "COUNT(*) FILTER (WHERE score >= 75), "
+                + "COALESCE(SUM(amount), 0), "
+                + "COALESCE(SUM(amount) FILTER (WHERE score >= 76), 0), now() "
+                + "FROM (SELECT COALESCE(psp_id, " + NO_PSP + ") AS psp_id, date_trunc(?, txn_ts) AS bucket_start, "
+                + "COALESCE(amount_cents, 0) AS amount, " + RISK_SCORE_SQL + " AS score "
+                + "FROM transactions WHERE txn_ts >= ? AND txn_ts < ?) t "
+                + "GROUP BY psp_id, bucket_start";
+    }
+
+    private static String buildSumSql() {
+        StringBuilder sql = new StringBuilder("SELECT ");
+        for (int i = 0; i < COLUMNS.length; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append("COALESCE(SUM(").append(COLUMNS[i]).append("), 0)");
+        }
+        return sql.append(" FROM transaction_rollups").toString();
+    }
+
+    /**
+     * (PSP, bucket start) of pending deltas, ordered by start then PSP
+     */
+    private static final class BucketKey implements Comparable<BucketKey> {
+        private static final Comparator<BucketKey> ORDER = Comparator
+                .comparing((BucketKey key) -> key.bucketStart)
+                .thenComparingLong(key -> key.pspId);
+
+        private final long pspId;
+        private final LocalDateTime bucketStart;
+
+        private BucketKey(long pspId, LocalDateTime bucketStart) {
+            this.pspId = pspId;
+            this.bucketStart = bucketStart;
+        }
+
+        private BucketKey toHour() {
+            return new BucketKey(pspId, bucketStart.truncatedTo(ChronoUnit.HOURS));
+        }
+
+        @Override
+        public int compareTo(BucketKey other) {
+            return ORDER.compare(this, other);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof BucketKey)) {
+                return false;
+            }
+            BucketKey other = (BucketKey) o;
+            return pspId == other.pspId && bucketStart.equals(other.bucketStart);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(pspId, bucketStart);
+        }
+    }
+
+    /**
+     * Counter sums over a window
+     */
+    public static class RollupTotals {
+        private final long[] values;
+
+        RollupTotals(long[] values) {
+            this.values = values;
+        }
+
+        public long getTotal() {
+            return values[TOTAL];
+        }
+
+        public long getFlagged() {
+            return values[FLAGGED];
+        }
+
+        public long getHighRisk() {
+            return values[HIGH_RISK];
+        }
+
+        public long getBlocked() {
+            return values[BLOCKED];
+        }
+
+        public long getRiskLow() {
+            return values[RISK_LOW];
+        }
+
+        public long getRiskMedium() {
+            return values[RISK_MEDIUM];
+        }
+
+        public long getRiskHigh() {
+            return values[RISK_HIGH];
+        }
+
+        public long getRiskCritical() {
+            return values[RISK_CRITICAL];
+        }
+
+        public long getHighAmount() {
+            return values[HIGH_AMOUNT];
+        }
+
+        public long getHighScore() {
+            return values[HIGH_SCORE];
+        }
+
+        public long getAmountCents() {
+            return values[AMOUNT_CENTS];
+        }
+
+        public long getBlockedAmountCents() {
+            return values[BLOCKED_AMOUNT_CENTS];
+        }
+    }
+}
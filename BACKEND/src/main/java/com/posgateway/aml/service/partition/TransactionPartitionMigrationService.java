@@ -0,0 +1,647 @@
+package com.posgateway.aml.service.partition;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Transaction Partition Migration Service
+ * Moves the existing transactions table into the partitioned store (V113) without downtime.
+ *
+ * 1. start: create partitions from the oldest txn_ts month onwards, then, under a short
+ *    SHARE ROW EXCLUSIVE lock, record the highest txn_id (high-water mark) and install the
+ *    sync trigger, which mirrors every later insert, update and delete into transactions_p
+ * 2. copy: rows up to the high-water mark are copied in txn_id ranges (keyset on the primary
+ *    key, one short transaction per batch, checkpointed), resumable after a restart or failure
+ * 3. verify: compare the row count and a content checksum of every txn_id range of both
+ *    tables, one short snapshot per range
+ * 4. cutover: one transaction under ACCESS EXCLUSIVE (bounded by lock_timeout) replaces the
+ *    foreign keys that reference transactions(txn_id) (a partitioned table cannot be
+ *    referenced by txn_id alone) with trigger checks (V115, recorded in
+ *    transaction_references), drops the sync trigger, renames transactions to
+ *    transactions_legacy and transactions_p to transactions, and hands the txn_id sequence
+ *    to the new table. Dropping transactions_legacy is left to the operator.
+ *
+ * The foreign keys are not recreated on the partitioned table. A key referencing it has to
+ * cover its primary key (txn_id, txn_ts), so every referencing table (features, alerts,
+ * SARs, case transactions) would need a txn_ts column, backfilled and kept in step by the
+ * application. The V115 triggers keep the guarantees on txn_id alone: a referencing row
+ * needs an existing transaction, locked FOR KEY SHARE as a foreign key check locks it, and
+ * a referenced transaction cannot be deleted or renumbered. Partition retention does not
+ * drop partitions that are still referenced.
+ *
+ * Rows without txn_ts are copied and mirrored with created_at as their timestamp. A row
+ * deleted from transactions while its batch is being copied, or updated to another txn_ts,
+ * can leave a stale copy behind; transactions are not deleted by the application and
+ * txn_ts is set once, so this is left to verify to catch rather than locked against.
+ */
+@Service
+public class TransactionPartitionMigrationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransactionPartitionMigrationService.class);
+
+    private static final String LOCK_NAME = "transactions_partition_migration";
+    private static final String TRIGGER_NAME = "transactions_partition_sync";
+    private static final String LEGACY_TABLE = "transactions_legacy";
+    private static final String REFERENCED_TRIGGER_NAME = "transactions_referenced_check";
+    private static final int MAX_REPORTED_MISMATCHES = 20;
+
+    /**
+     * Migration progress
+     */
+    public enum Status {
+        NOT_STARTED, COPYING, COPIED, CUT_OVER, FAILED
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionPartitionService partitionService;
+    private final MeterRegistry meterRegistry;
+
+    private final AtomicBoolean copying = new AtomicBoolean();
+    private Counter rowsCopied;
+    private volatile long remaining;
+
+    @Value("${transactions.partition.migration.batch.size:50000}")
+    private int batchSize;
+
+    @Value("${transactions.partition.migration.batch.pause.ms:100}")
+    private long batchPauseMs;
+
+    @Value("${transactions.partition.migration.lock.timeout.ms:10000}")
+    private long lockTimeoutMs;
+
+    @Value("${transactions.partition.migration.verify.bucket.size:1000000}")
+    private long verifyBucketSize;
+
+    @Value("${transactions.partition.premake.months:3}")
+    private int premakeMonths;
+
+    @Autowired
+    public TransactionPartitionMigrationService(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+            TransactionPartitionService partitionService, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.partitionService = partitionService;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        rowsCopied = Counter.builder("aml_transaction_partition_migration_rows_copied_total")
+                .description("Existing transactions copied into the partitioned table")
+                .register(meterRegistry);
+        Gauge.builder("aml_transaction_partition_migration_remaining_ids", this, service -> service.remaining)
+                .description("txn_id range still to be copied into the partitioned table")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Install the sync trigger and record the high-water mark (or resume a failed copy)
+     *
+     * @throws IllegalStateException if the migration is past the copy phase or the tables differ
+     */
+    public MigrationState start() {
+        MigrationState state = getState();
+        if (state.getStatus() == Status.COPYING) {
+            return state;
+        }
+        if (state.getStatus() == Status.FAILED && state.getHighWaterTxnId() != null) {
+            jdbcTemplate.update("UPDATE transaction_partition_migration SET status = ?, last_error = NULL, "
+                    + "updated_at = now() WHERE id = 1 AND status = ?", Status.COPYING.name(), Status.FAILED.name());
+            logger.info("Resuming transaction partition copy after txn_id {}", state.getCopiedUpToTxnId());
+            return getState();
+        }
+        if (state.getStatus() != Status.NOT_STARTED && state.getStatus() != Status.FAILED) {
+            throw new IllegalStateException("Transaction partition migration is already " + state.getStatus());
+        }
+        requireMatchingColumns();
+
+        Timestamp oldest = jdbcTemplate.queryForObject(
+                "SELECT MIN(txn_ts) FROM " + TransactionPartitionService.LIVE_TABLE, Timestamp.class);
+        YearMonth current = YearMonth.now();
+        YearMonth first = oldest != null ? YearMonth.from(oldest.toLocalDateTime()) : current;
+        int created = partitionService.ensurePartitions(first.isAfter(current) ? current : first,
+                current.plusMonths(premakeMonths));
+        logger.info("Created {} transaction partitions from {} for the migration", created, first);
+
+        transactionTemplate.execute(status -> {
+            lockMigration();
+            jdbcTemplate.execute("SET LOCAL lock_timeout = " + lockTimeoutMs);
+            // Waits for in-flight writes and blocks new ones until commit, so every row is either
+            // at or below the high-water mark or seen by the trigger
+            jdbcTemplate.execute("LOCK TABLE " + TransactionPartitionService.LIVE_TABLE
+                    + " IN SHARE ROW EXCLUSIVE MODE");
+            Long highWater = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(txn_id), 0) FROM "
+                    + TransactionPartitionService.LIVE_TABLE, Long.class);
+            jdbcTemplate.execute("DROP TRIGGER IF EXISTS " + TRIGGER_NAME + " ON "
+                    + TransactionPartitionService.LIVE_TABLE);
+            jdbcTemplate.execute("CREATE TRIGGER " + TRIGGER_NAME + " AFTER INSERT OR UPDATE OR DELETE ON "
+                    + TransactionPartitionService.LIVE_TABLE + " FOR EACH ROW EXECUTE FUNCTION transactions_partition_sync()");
+            jdbcTemplate.update("UPDATE transaction_partition_migration SET status = ?, high_water_txn_id = ?, "
+                    + "copied_up_to_txn_id = 0, rows_copied = 0, started_at = now(), copy_completed_at = NULL, "
+                    + "last_error = NULL, updated_at = now() WHERE id = 1", Status.COPYING.name(), highWater);
+            return null;
+        });
+        MigrationState started = getState();
+        logger.info("Transaction partition migration started, copying txn_id <= {}", started.getHighWaterTxnId());
+        return started;
+    }
+
+    /**
+     * Copy rows up to the high-water mark in the background, batch by batch
+     */
+    @Async("backgroundTaskExecutor")
+    public void copyAsync() {
+        copy();
+    }
+
+    /**
+     * Pick up an unfinished copy after a restart
+     */
+    @Async("backgroundTaskExecutor")
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeOnStartup() {
+        try {
+            if (getState().getStatus() == Status.COPYING) {
+                logger.info("Resuming transaction partition copy");
+                copy();
+            }
+        } catch (Exception e) {
+            logger.debug("Transaction partition migration state not available: {}", e.getMessage());
+        }
+    }
+
+    private void copy() {
+        if (!copying.compareAndSet(false, true)) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        long copied = 0;
+        try {
+            while (true) {
+                Long batch = transactionTemplate.execute(status -> copyBatch());
+                if (batch == null) {
+                    break;
+                }
+                copied += batch;
+                if (batchPauseMs > 0) {
+                    Thread.sleep(batchPauseMs);
+                }
+            }
+            logger.info("Transaction partition copy pass finished: {} rows in {}ms", copied,
+                    System.currentTimeMillis() - start);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Transaction partition copy interrupted after {} rows", copied);
+        } catch (Exception e) {
+            logger.error("Transaction partition copy failed after {} rows: {}", copied, e.getMessage(), e);
+            jdbcTemplate.update("UPDATE transaction_partition_migration SET status = ?, last_error = ?, "
+                    + "updated_at = now() WHERE id = 1 AND status = ?", Status.FAILED.name(),
+                    String.valueOf(e.getMessage()), Status.COPYING.name());
+        } finally {
+            copying.set(false);
+        }
+    }
+
+    /**
+     * Copy the next txn_id range and advance the checkpoint
+     *
+     * @return rows copied, or null when there is nothing left to do on this node
+     */
+    private Long copyBatch() {
+        Boolean locked = jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(hashtext(?))",
+                Boolean.class, LOCK_NAME);
+        if (!Boolean.TRUE.equals(locked)) {
+            // Another node is copying (or cutting over)
+            return null;
+        }
+        MigrationState state = jdbcTemplate.queryForObject(
+                "SELECT * FROM transaction_partition_migration WHERE id = 1 FOR UPDATE", (rs, rowNum) -> mapState(rs));
+        if (state == null || state.getStatus() != Status.COPYING) {
+            return null;
+        }
+        long from = state.getCopiedUpToTxnId() != null ? state.getCopiedUpToTxnId() : 0L;
+        long highWater = state.getHighWaterTxnId() != null ? state.getHighWaterTxnId() : 0L;
+        long to = Math.min(from + batchSize, highWater);
+
+        int rows = 0;
+        if (to > from) {
+            rows = jdbcTemplate.update(copySql(), from, to);
+        }
+        boolean done = to >= highWater;
+        jdbcTemplate.update("UPDATE transaction_partition_migration SET copied_up_to_txn_id = ?, "
+                + "rows_copied = rows_copied + ?, status = ?, copy_completed_at = " + (done ? "now()" : "NULL")
+                + ", updated_at = now() WHERE id = 1", to, rows, done ? Status.COPIED.name() : Status.COPYING.name());
+        rowsCopied.increment(rows);
+        remaining = highWater - to;
+        if (done) {
+            logger.info("Transaction partition copy completed up to txn_id {}", highWater);
+        }
+        return (long) rows;
+    }
+
+    /**
+     * Row count and content checksum per txn_id range of both tables
+     *
+     * Each range is summed from an MD5 of every row, so a missing, extra or differing row
+     * shows up as a mismatched range. Rows without txn_ts are compared with created_at as
+     * their timestamp, as they were copied. Every range is read in its own short
+     * REPEATABLE READ transaction (both tables in one snapshot, so rows the sync trigger is
+     * mirroring are seen on both sides or neither) by primary key range, so no snapshot is
+     * held for the whole scan and vacuum is not held back. Rows inserted after verify
+     * started are beyond its last range.
+     */
+    public Map<String, Object> verify() {
+        boolean cutOver = TransactionPartitionService.LIVE_TABLE.equals(partitionService.partitionedTable());
+        String source = cutOver ? LEGACY_TABLE : TransactionPartitionService.LIVE_TABLE;
+        String target = cutOver ? TransactionPartitionService.LIVE_TABLE : TransactionPartitionService.SHADOW_TABLE;
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("status", getState().getStatus());
+        Boolean sourceExists = jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class,
+                source);
+        if (!Boolean.TRUE.equals(sourceExists)) {
+            result.put("message", source + " no longer exists");
+            return result;
+        }
+        long start = System.currentTimeMillis();
+        List<String> names = columnNames(source);
+        String sourceSql = rangeChecksumSql(source, names);
+        String targetSql = rangeChecksumSql(target, names);
+        long[] bounds = jdbcTemplate.queryForObject("SELECT LEAST((SELECT MIN(txn_id) FROM " + source
+                + "), (SELECT MIN(txn_id) FROM " + target + ")), GREATEST((SELECT MAX(txn_id) FROM " + source
+                + "), (SELECT MAX(txn_id) FROM " + target + "))",
+                (rs, rowNum) -> rs.getObject(1) == null ? null : new long[] { rs.getLong(1), rs.getLong(2) });
+
+        TransactionTemplate snapshot = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        snapshot.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        snapshot.setReadOnly(true);
+        List<String> mismatched = new ArrayList<>();
+        int mismatches = 0;
+        int ranges = 0;
+        long sourceRows = 0;
+        long targetRows = 0;
+        if (bounds != null) {
+            for (long bucket = Math.floorDiv(bounds[0], verifyBucketSize);
+                    bucket <= Math.floorDiv(bounds[1], verifyBucketSize); bucket++) {
+                long from = bucket * verifyBucketSize;
+                long to = from + verifyBucketSize;
+                RangeChecksum[] pair = snapshot.execute(status -> new RangeChecksum[] {
+                        rangeChecksum(sourceSql, from, to), rangeChecksum(targetSql, from, to) });
+                if (pair == null || (pair[0].rows == 0 && pair[1].rows == 0)) {
+                    continue;
+                }
+                ranges++;
+                sourceRows += pair[0].rows;
+                targetRows += pair[1].rows;
+                if (!pair[0].equals(pair[1]) && ++mismatches <= MAX_REPORTED_MISMATCHES) {
+                    mismatched.add(from + "-" + (to - 1));
+                }
+            }
+        }
+        result.put("sourceTable", source);
+        result.put("sourceRows", sourceRows);
+        result.put("partitionedTable", target);
+        result.put("partitionedRows", targetRows);
+        result.put("txnIdRanges", ranges);
+        result.put("mismatchedRanges", mismatches);
+        result.put("mismatchedTxnIdRanges", mismatched);
+        result.put("match", mismatches == 0);
+        logger.info("Transaction partition verify: {} of {} txn_id ranges differ ({}ms)", mismatches, ranges,
+                System.currentTimeMillis() - start);
+        return result;
+    }
+
+    private static String rangeChecksumSql(String table, List<String> names) {
+        String row = names.stream()
+                .map(name -> "txn_ts".equals(name) ? "COALESCE(txn_ts, created_at)" : "\"" + name + "\"")
+                .collect(Collectors.joining(", "));
+        return "SELECT COUNT(*), SUM(('x' || left(md5(ROW(" + row + ")::text), 16))::bit(64)::bigint) FROM "
+                + table + " WHERE txn_id >= ? AND txn_id < ?";
+    }
+
+    private RangeChecksum rangeChecksum(String sql, long from, long to) {
+        return jdbcTemplate.queryForObject(sql,
+                (rs, rowNum) -> new RangeChecksum(rs.getLong(1), rs.getBigDecimal(2)), from, to);
+    }
+
+    /**
+     * Swap the partitioned table in place of transactions
+     *
+     * @throws IllegalStateException unless the copy has completed
+     */
+    public MigrationState cutover() {
+        MigrationState state = getState();
+        if (state.getStatus() != Status.COPIED) {
+            throw new IllegalStateException("Cutover needs a completed copy, migration is " + state.getStatus());
+        }
+        requireMatchingColumns();
+
+        transactionTemplate.execute(status -> {
+            lockMigration();
+            if (getState().getStatus() != Status.COPIED) {
+                throw new IllegalStateException("Transaction partition migration changed state, retry the cutover");
+            }
+            jdbcTemplate.execute("SET LOCAL lock_timeout = " + lockTimeoutMs);
+            jdbcTemplate.execute("LOCK TABLE " + TransactionPartitionService.LIVE_TABLE + ", "
+                    + TransactionPartitionService.SHADOW_TABLE + " IN ACCESS EXCLUSIVE MODE");
+
+            // Rows without txn_ts that a migration started before V115 let the trigger skip
+            int stamped = jdbcTemplate.update(copySql("txn_ts IS NULL AND NOT EXISTS (SELECT 1 FROM "
+                    + TransactionPartitionService.SHADOW_TABLE + " p WHERE p.txn_id = "
+                    + TransactionPartitionService.LIVE_TABLE + ".txn_id)"));
+
+            List<ForeignKey> foreignKeys = jdbcTemplate.query(
+                    "SELECT c.conrelid::regclass::text, a.attname, c.conname FROM pg_constraint c "
+                            + "JOIN pg_attribute a ON a.attrelid = c.conrelid AND a.attnum = c.conkey[1] "
+                            + "WHERE c.contype = 'f' AND c.confrelid = to_regclass(?) AND cardinality(c.conkey) = 1",
+                    (rs, rowNum) -> new ForeignKey(rs.getString(1), rs.getString(2), rs.getString(3)),
+                    TransactionPartitionService.LIVE_TABLE);
+            for (ForeignKey foreignKey : foreignKeys) {
+                jdbcTemplate.execute("ALTER TABLE " + foreignKey.table + " DROP CONSTRAINT \"" + foreignKey.name + "\"");
+            }
+            String sequence = jdbcTemplate.queryForObject("SELECT pg_get_serial_sequence(?, 'txn_id')",
+                    String.class, TransactionPartitionService.LIVE_TABLE);
+
+            jdbcTemplate.execute("DROP TRIGGER IF EXISTS " + TRIGGER_NAME + " ON "
+                    + TransactionPartitionService.LIVE_TABLE);
+            jdbcTemplate.execute("ALTER TABLE " + TransactionPartitionService.LIVE_TABLE + " RENAME TO "
+                    + LEGACY_TABLE);
+            jdbcTemplate.execute("ALTER TABLE " + TransactionPartitionService.SHADOW_TABLE + " RENAME TO "
+                    + TransactionPartitionService.LIVE_TABLE);
+            if (sequence != null) {
+                jdbcTemplate.execute("ALTER SEQUENCE " + sequence + " OWNED BY "
+                        + TransactionPartitionService.LIVE_TABLE + ".txn_id");
+            }
+            replaceForeignKeys(foreignKeys);
+            jdbcTemplate.update("UPDATE transaction_partition_migration SET status = ?, cut_over_at = now(), "
+                    + "updated_at = now() WHERE id = 1", Status.CUT_OVER.name());
+            logger.info("Transaction partition cutover: replaced {} foreign keys with trigger checks, "
+                    + "copied {} rows without txn_ts", foreignKeys.size(), stamped);
+            return null;
+        });
+        logger.info("transactions is now partitioned; the old table was kept as {}", LEGACY_TABLE);
+        return getState();
+    }
+
+    /**
+     * Abandon a migration before cutover: drop the trigger and empty the partitioned copy
+     */
+    public MigrationState abort() {
+        MigrationState state = getState();
+        if (state.getStatus() == Status.CUT_OVER) {
+            throw new IllegalStateException("Migration has already cut over");
+        }
+        transactionTemplate.execute(status -> {
+            lockMigration();
+            jdbcTemplate.execute("SET LOCAL lock_timeout = " + lockTimeoutMs);
+            jdbcTemplate.execute("DROP TRIGGER IF EXISTS " + TRIGGER_NAME + " ON "
+                    + TransactionPartitionService.LIVE_TABLE);
+            jdbcTemplate.execute("TRUNCATE " + TransactionPartitionService.SHADOW_TABLE);
+            jdbcTemplate.update("UPDATE transaction_partition_migration SET status = ?, high_water_txn_id = NULL, "
+                    + "copied_up_to_txn_id = NULL, rows_copied = 0, started_at = NULL, copy_completed_at = NULL, "
+                    + "last_error = NULL, updated_at = now() WHERE id = 1", Status.NOT_STARTED.name());
+            return null;
+        });
+        logger.info("Transaction partition migration aborted");
+        return getState();
+    }
+
+    public MigrationState getState() {
+        MigrationState state = jdbcTemplate.queryForObject("SELECT * FROM transaction_partition_migration WHERE id = 1",
+                (rs, rowNum) -> mapState(rs));
+        if (state != null && state.getHighWaterTxnId() != null && state.getCopiedUpToTxnId() != null) {
+            remaining = Math.max(0L, state.getHighWaterTxnId() - state.getCopiedUpToTxnId());
+        }
+        return state;
+    }
+
+    public boolean isCopying() {
+        return copying.get();
+    }
+
+    private void lockMigration() {
+        Boolean locked = jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(hashtext(?))",
+                Boolean.class, LOCK_NAME);
+        if (!Boolean.TRUE.equals(locked)) {
+            throw new IllegalStateException("Transaction partition migration is busy on another node");
+        }
+    }
+
+    /**
+     * Foreign keys to transactions(txn_id) become trigger checks on the new table: the
+     * referencing row needs an existing transaction, and a referenced transaction cannot
+     * be deleted (V115)
+     */
+    private void replaceForeignKeys(List<ForeignKey> foreignKeys) {
+        for (ForeignKey foreignKey : foreignKeys) {
+            jdbcTemplate.update("INSERT INTO transaction_references (table_name, column_name, constraint_name) "
+                    + "VALUES (?, ?, ?) ON CONFLICT (table_name, column_name) DO UPDATE SET "
+                    + "constraint_name = EXCLUDED.constraint_name", foreignKey.table, foreignKey.column,
+                    foreignKey.name);
+            jdbcTemplate.execute("DROP TRIGGER IF EXISTS \"" + foreignKey.name + "\" ON " + foreignKey.table);
+            jdbcTemplate.execute("CREATE TRIGGER \"" + foreignKey.name + "\" AFTER INSERT OR UPDATE OF \""
+                    + foreignKey.column + "\" ON " + foreignKey.table
+                    + " FOR EACH ROW EXECUTE FUNCTION transactions_reference_check('" + foreignKey.column + "')");
+        }
+        jdbcTemplate.execute("DROP TRIGGER IF EXISTS " + REFERENCED_TRIGGER_NAME + " ON "
+                + TransactionPartitionService.LIVE_TABLE);
+        jdbcTemplate.execute("CREATE TRIGGER " + REFERENCED_TRIGGER_NAME + " AFTER DELETE OR UPDATE OF txn_id ON "
+                + TransactionPartitionService.LIVE_TABLE + " FOR EACH ROW EXECUTE FUNCTION transactions_referenced_check()");
+    }
+
+    /**
+     * Both tables need the same columns, and the sync trigger (V115) has to copy every one
+     */
+    private void requireMatchingColumns() {
+        List<String> live = columns(TransactionPartitionService.LIVE_TABLE);
+        List<String> shadow = columns(TransactionPartitionService.SHADOW_TABLE);
+        if (!new TreeSet<>(live).equals(new TreeSet<>(shadow))) {
+            throw new IllegalStateException("transactions and transactions_p have different columns: " + live
+                    + " vs " + shadow);
+        }
+        String function = jdbcTemplate.queryForObject("SELECT prosrc FROM pg_proc WHERE oid = to_regproc(?)",
+                String.class, TRIGGER_NAME);
+        List<String> unsynced = columnNames(TransactionPartitionService.LIVE_TABLE).stream()
+                .filter(name -> function == null || !function.contains("NEW." + name))
+                .collect(Collectors.toList());
+        if (!unsynced.isEmpty()) {
+            throw new IllegalStateException("The " + TRIGGER_NAME + "() trigger function does not copy " + unsynced);
+        }
+    }
+
+    private List<String> columns(String table) {
+        return jdbcTemplate.queryForList("SELECT attname || ' ' || format_type(atttypid, atttypmod) FROM pg_attribute "
+                + "WHERE attrelid = to_regclass(?) AND attnum > 0 AND NOT attisdropped ORDER BY attnum",
+                String.class, table);
+    }
+
+    private List<String> columnNames(String table) {
+        return jdbcTemplate.queryForList("SELECT attname FROM pg_attribute "
+                + "WHERE attrelid = to_regclass(?) AND attnum > 0 AND NOT attisdropped ORDER BY attnum",
+                String.class, table);
+    }
+
+    /**
+     * Copy of a txn_id range (txn_id > ? AND txn_id <= ?)
+     */
+    private String copySql() {
+        return copySql("txn_id > ? AND txn_id <= ?");
+    }
+
+    /**
+     * Copy of the rows matching a condition; rows without txn_ts get created_at, as in the
+     * sync trigger
+     */
+    private String copySql(String condition) {
+        List<String> names = columnNames(TransactionPartitionService.LIVE_TABLE);
+        String insertColumns = names.stream().map(name -> "\"" + name + "\"").collect(Collectors.joining(", "));
+        String selectColumns = names.stream()
+                .map(name -> "txn_ts".equals(name) ? "COALESCE(txn_ts, created_at, now())" : "\"" + name + "\"")
+                .collect(Collectors.joining(", "));
+        return "INSERT INTO " + TransactionPartitionService.SHADOW_TABLE + " (" + insertColumns + ") SELECT "
+                + selectColumns + " FROM " + TransactionPartitionService.LIVE_TABLE
+                + " WHERE " + condition + " ON CONFLICT DO NOTHING";
+    }
+
+    private static MigrationState mapState(ResultSet rs) throws SQLException {
+        MigrationState state = new MigrationState();
+        state.status = Status.valueOf(rs.getString("status"));
+        state.highWaterTxnId = rs.getObject("high_water_txn_id", Long.class);
+        state.copiedUpToTxnId = rs.getObject("copied_up_to_txn_id", Long.class);
+        state.rowsCopied = rs.getLong("rows_copied");
+        state.startedAt = toLocalDateTime(rs.getTimestamp("started_at"));
+        state.copyCompletedAt = toLocalDateTime(rs.getTimestamp("copy_completed_at"));
+        state.cutOverAt = toLocalDateTime(rs.getTimestamp("cut_over_at"));
+        state.updatedAt = toLocalDateTime(rs.getTimestamp("updated_at"));
+        state.lastError = rs.getString("last_error");
+        return state;
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+
+    /**
+     * Single-column foreign key to transactions(txn_id)
+     */
+    private static final class ForeignKey {
+        private final String table;
+        private final String column;
+        private final String name;
+
+        ForeignKey(String table, String column, String name) {
+            this.table = table;
+            this.column = column;
+            this.name = name;
+        }
+    }
+
+    /**
+     * Row count and checksum of one txn_id range
+     */
+    private static final class RangeChecksum {
+        private final long rows;
+        private final BigDecimal checksum;
+
+        RangeChecksum(long rows, BigDecimal checksum) {
+            this.rows = rows;
+            this.checksum = checksum;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof RangeChecksum)) {
+                return false;
+            }
+            RangeChecksum other = (RangeChecksum) o;
+            return rows == other.rows && Objects.equals(checksum, other.checksum);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(rows, checksum);
+        }
+    }
+
+    /**
+     * Snapshot of transaction_partition_migration
+     */
+    public static class MigrationState {
+        private Status status;
+        private Long highWaterTxnId;
+        private Long copiedUpToTxnId;
+        private long rowsCopied;
+        private LocalDateTime startedAt;
+        private LocalDateTime copyCompletedAt;
+        private LocalDateTime cutOverAt;
+        private LocalDateTime updatedAt;
+        private String lastError;
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public Long getHighWaterTxnId() {
+            return highWaterTxnId;
+        }
+
+        public Long getCopiedUpToTxnId() {
+            return copiedUpToTxnId;
+        }
+
+        public long getRowsCopied() {
+            return rowsCopied;
+        }
+
+        public LocalDateTime getStartedAt() {
+            return startedAt;
+        }
+
+        public LocalDateTime getCopyCompletedAt() {
+            return copyCompletedAt;
+        }
+
+        public LocalDateTime getCutOverAt() {
+            return cutOverAt;
+        }
+
+        public LocalDateTime getUpdatedAt() {
+            return updatedAt;
+        }
+
+        public String getLastError() {
+            return lastError;
+        }
+    }
+}
@@ -0,0 +1,412 @@
+package com.posgateway.aml.service.partition;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Transaction Partition Service
+ * Maintains the monthly partitions of the range-partitioned transactions store (V113).
+ *
+ * - Partitions are named transactions_YYYY_MM and cover [first of month, first of next month)
+ *   on txn_ts; a scheduled run keeps the configured number of future months created so
+ *   ingestion never lands in the default partition
+ * - Rows that did land in transactions_default (late or far-future timestamps) are moved
+ *   into their month's partition when it is created, in the same transaction as the attach
+ * - After the retention period a partition is detached and either moved to the
+ *   transactions_archive schema or dropped. A partition whose rows are still referenced
+ *   from a table in transaction_references (features, alerts, SARs, cases) is not dropped,
+ *   just as the replaced foreign keys would not have allowed it. Plain DETACH is used:
+ *   DETACH CONCURRENTLY is not allowed while a default partition exists, so every DDL runs
+ *   under a short lock_timeout and is retried on the next run instead of queueing in front
+ *   of ingestion
+ * - Before the online migration cuts over, the partitioned table is transactions_p; after,
+ *   it is transactions. Retention only runs after cutover, while the old table is still
+ *   the source of truth nothing is detached
+ * - A transaction advisory lock keeps several nodes from changing partitions at once
+ */
+@Service
+public class TransactionPartitionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransactionPartitionService.class);
+
+    public static final String LIVE_TABLE = "transactions";
+    public static final String SHADOW_TABLE = "transactions_p";
+    public static final String DEFAULT_PARTITION = "transactions_default";
+    public static final String ARCHIVE_SCHEMA = "transactions_archive";
+
+    private static final String LOCK_NAME = "transactions_partition_maintenance";
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+    private static final Pattern PARTITION_NAME = Pattern.compile("transactions_(\\d{4})_(\\d{2})");
+
+    /**
+     * What happens to a partition past retention once it is detached
+     */
+    public enum ArchiveMode {
+        /** Move the table to the transactions_archive schema */
+        ARCHIVE,
+        /** Drop the table */
+        DROP
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    private Counter partitionsCreated;
+    private Counter partitionsDetached;
+    private Counter rowsMoved;
+    private Counter maintenanceFailures;
+    private volatile int attachedPartitions;
+    private volatile int monthsAhead;
+
+    @Value("${transactions.partition.maintenance.enabled:true}")
+    private boolean enabled;
+
+    @Value("${transactions.partition.premake.months:3}")
+    private int premakeMonths;
+
+    @Value("${transactions.partition.retention.months:84}")
+    private int retentionMonths;
+
+    @Value("${transactions.partition.archive.mode:ARCHIVE}")
+    private ArchiveMode archiveMode;
+
+    @Value("${transactions.partition.lock.timeout.ms:5000}")
+    private long lockTimeoutMs;
+
+    @Autowired
+    public TransactionPartitionService(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+            MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        partitionsCreated = Counter.builder("aml_transaction_partitions_created_total")
+                .description("Monthly transaction partitions created")
+                .register(meterRegistry);
+        partitionsDetached = Counter.builder("aml_transaction_partitions_detached_total")
+                .description("Transaction partitions detached after the retention period")
+                .tag("mode", archiveMode.name().toLowerCase())
+                .register(meterRegistry);
+        rowsMoved = Counter.builder("aml_transaction_partition_default_rows_moved_total")
+                .description("Rows moved out of the default partition into a new monthly partition")
+                .register(meterRegistry);
+        maintenanceFailures = Counter.builder("aml_transaction_partition_maintenance_failures_total")
+                .description("Partition operations that failed (lock timeout or error) and are retried next run")
+                .register(meterRegistry);
+        Gauge.builder("aml_transaction_partitions", this, service -> service.attachedPartitions)
+                .description("Monthly partitions attached to the partitioned transactions table")
+                .register(meterRegistry);
+        Gauge.builder("aml_transaction_partition_months_ahead", this, service -> service.monthsAhead)
+                .description("Future months already covered by a partition")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Create upcoming partitions, rehome rows from the default partition and apply retention
+     */
+    @Scheduled(fixedDelayString = "${transactions.partition.maintenance.interval.ms:3600000}")
+    public void maintain() {
+        if (!enabled) {
+            return;
+        }
+        String parent;
+        try {
+            parent = partitionedTable();
+        } catch (Exception e) {
+            logger.warn("Could not resolve the partitioned transactions table: {}", e.getMessage());
+            return;
+        }
+        if (parent == null) {
+            logger.debug("No partitioned transactions table, skipping partition maintenance");
+            return;
+        }
+
+        YearMonth current = YearMonth.now();
+        ensurePartitions(current, current.plusMonths(premakeMonths));
+        try {
+            for (YearMonth month : monthsInDefaultPartition()) {
+                // Months already past retention are not recreated just to be detached again
+                if (retentionMonths <= 0 || !month.isBefore(current.minusMonths(retentionMonths))) {
+                    ensurePartition(parent, month);
+                }
+            }
+        } catch (Exception e) {
+            maintenanceFailures.increment();
+            logger.warn("Could not inspect the default transaction partition: {}", e.getMessage());
+        }
+        if (LIVE_TABLE.equals(parent)) {
+            applyRetention(parent);
+        }
+        updateGauges(parent);
+    }
+
+    /**
+     * Make sure a partition exists for every month in [from, to]
+     *
+     * @return number of partitions created
+     */
+    public int ensurePartitions(YearMonth from, YearMonth to) {
+        String parent = partitionedTable();
+        if (parent == null) {
+            throw new IllegalStateException("No partitioned transactions table (is V113 applied?)");
+        }
+        int created = 0;
+        for (YearMonth month = from; !month.isAfter(to); month = month.plusMonths(1)) {
+            if (ensurePartition(parent, month)) {
+                created++;
+            }
+        }
+        return created;
+    }
+
+    /**
+     * The partitioned transactions table: transactions after cutover, transactions_p before,
+     * null if neither exists
+     */
+    public String partitionedTable() {
+        List<String> kinds = jdbcTemplate.queryForList(
+                "SELECT relkind::text FROM pg_class WHERE oid = to_regclass(?)", String.class, LIVE_TABLE);
+        if (!kinds.isEmpty() && "p".equals(kinds.get(0))) {
+            return LIVE_TABLE;
+        }
+        return relationExists(SHADOW_TABLE) ? SHADOW_TABLE : null;
+    }
+
+    /**
+     * Attached partitions of the partitioned table: name and bound expression, in name order
+     */
+    public List<Map<String, Object>> listPartitions() {
+        String parent = partitionedTable();
+        if (parent == null) {
+            return new ArrayList<>();
+        }
+        return jdbcTemplate.query("SELECT c.relname, pg_get_expr(c.relpartbound, c.oid), c.reltuples::bigint "
+                + "FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid "
+                + "WHERE i.inhparent = to_regclass(?) ORDER BY c.relname", (rs, rowNum) -> {
+                    Map<String, Object> partition = new LinkedHashMap<>();
+                    partition.put("name", rs.getString(1));
+                    partition.put("bound", rs.getString(2));
+                    partition.put("estimatedRows", Math.max(0L, rs.getLong(3)));
+                    return partition;
+                }, parent);
+    }
+
+    public static String partitionName(YearMonth month) {
+        return "transactions_" + month.format(SUFFIX);
+    }
+
+    private boolean ensurePartition(String parent, YearMonth month) {
+        String name = partitionName(month);
+        if (relationExists(name)) {
+            return false;
+        }
+        String from = month.atDay(1).atStartOfDay().toString().replace('T', ' ');
+        String to = month.plusMonths(1).atDay(1).atStartOfDay().toString().replace('T', ' ');
+        try {
+            Long moved = transactionTemplate.execute(status -> {
+                if (!tryLock()) {
+                    return null;
+                }
+                if (relationExists(name)) {
+                    return null;
+                }
+                Timestamp start = Timestamp.valueOf(month.atDay(1).atStartOfDay());
+                Timestamp end = Timestamp.valueOf(month.plusMonths(1).atDay(1).atStartOfDay());
+                List<Integer> inDefault = jdbcTemplate.queryForList("SELECT 1 FROM " + DEFAULT_PARTITION
+                        + " WHERE txn_ts >= ? AND txn_ts < ? LIMIT 1", Integer.class, start, end);
+                if (inDefault.isEmpty()) {
+                    jdbcTemplate.execute("CREATE TABLE " + name + " PARTITION OF " + parent
+                            + " FOR VALUES FROM ('" + from + "') TO ('" + to + "')");
+                    return 0L;
+                }
+                // Attaching would fail while the default partition holds rows of the range
+                jdbcTemplate.execute("CREATE TABLE " + name + " (LIKE " + parent
+                        + " INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+                // The moved rows are briefly outside the table; skip the referenced-row check (V115)
+                jdbcTemplate.execute("SET LOCAL aml.transactions_rehoming = 'on'");
+                int count = jdbcTemplate.update("WITH moved AS (DELETE FROM " + DEFAULT_PARTITION
+                        + " WHERE txn_ts >= ? AND txn_ts < ? RETURNING *) INSERT INTO " + name
+                        + " SELECT * FROM moved", start, end);
+                jdbcTemplate.execute("ALTER TABLE " + parent + " ATTACH PARTITION " + name
+                        + " FOR VALUES FROM ('" + from + "') TO ('" + to + "')");
+                return (long) count;
+            });
+            if (moved == null) {
+                return false;
+            }
+            partitionsCreated.increment();
+            if (moved > 0) {
+                rowsMoved.increment(moved);
+                logger.info("Created transaction partition {} and moved {} rows from {}", name, moved,
+                        DEFAULT_PARTITION);
+            } else {
+                logger.info("Created transaction partition {}", name);
+            }
+            return true;
+        } catch (Exception e) {
+            maintenanceFailures.increment();
+            logger.warn("Could not create transaction partition {}: {}", name, e.getMessage());
+            return false;
+        }
+    }
+
+    private void applyRetention(String parent) {
+        if (retentionMonths <= 0) {
+            return;
+        }
+        YearMonth cutoff = YearMonth.now().minusMonths(retentionMonths);
+        List<String> partitions;
+        try {
+            partitions = attachedPartitionNames(parent);
+        } catch (Exception e) {
+            maintenanceFailures.increment();
+            logger.warn("Could not list transaction partitions: {}", e.getMessage());
+            return;
+        }
+        for (String name : partitions) {
+            YearMonth month = monthOf(name);
+            if (month == null || !month.isBefore(cutoff)) {
+                continue;
+            }
+            try {
+                if (archiveMode == ArchiveMode.DROP) {
+                    String referencedBy = referencedBy(name);
+                    if (referencedBy != null) {
+                        logger.warn("Not dropping transaction partition {}: rows are still referenced by {}", name,
+                                referencedBy);
+                        continue;
+                    }
+                }
+                Boolean detached = transactionTemplate.execute(status -> {
+                    if (!tryLock()) {
+                        return false;
+                    }
+                    jdbcTemplate.execute("ALTER TABLE " + parent + " DETACH PARTITION " + name);
+                    if (archiveMode == ArchiveMode.DROP) {
+                        jdbcTemplate.execute("DROP TABLE " + name);
+                    } else {
+                        jdbcTemplate.execute("ALTER TABLE " + name + " SET SCHEMA " + ARCHIVE_SCHEMA);
+                    }
+                    return true;
+                });
+                if (Boolean.TRUE.equals(detached)) {
+                    partitionsDetached.increment();
+                    logger.info("Detached transaction partition {} ({})", name,
+                            archiveMode == ArchiveMode.DROP ? "dropped" : "archived to " + ARCHIVE_SCHEMA);
+                }
+            } catch (Exception e) {
+                maintenanceFailures.increment();
+                logger.warn("Could not detach transaction partition {}: {}", name, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * First table of transaction_references with a row pointing into the partition, or null
+     */
+    private String referencedBy(String partition) {
+        List<Map<String, Object>> references = jdbcTemplate.queryForList(
+                "SELECT table_name, column_name FROM transaction_references ORDER BY table_name");
+        for (Map<String, Object> reference : references) {
+            String table = (String) reference.get("table_name");
+            Boolean referenced = jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM " + table
+                    + " r JOIN " + partition + " p ON p.txn_id = r.\"" + reference.get("column_name") + "\")",
+                    Boolean.class);
+            if (Boolean.TRUE.equals(referenced)) {
+                return table;
+            }
+        }
+        return null;
+    }
+
+    private List<YearMonth> monthsInDefaultPartition() {
+        if (!relationExists(DEFAULT_PARTITION)) {
+            return new ArrayList<>();
+        }
+        TreeSet<YearMonth> months = new TreeSet<>();
+        jdbcTemplate.query("SELECT DISTINCT date_trunc('month', txn_ts) FROM " + DEFAULT_PARTITION,
+                rs -> {
+                    months.add(YearMonth.from(rs.getTimestamp(1).toLocalDateTime()));
+                });
+        return new ArrayList<>(months);
+    }
+
+    private void updateGauges(String parent) {
+        try {
+            List<String> partitions = attachedPartitionNames(parent);
+            YearMonth current = YearMonth.now();
+            int count = 0;
+            int ahead = 0;
+            for (String name : partitions) {
+                YearMonth month = monthOf(name);
+                if (month == null) {
+                    continue;
+                }
+                count++;
+                if (month.isAfter(current)) {
+                    ahead++;
+                }
+            }
+            attachedPartitions = count;
+            monthsAhead = ahead;
+        } catch (Exception e) {
+            logger.debug("Could not refresh transaction partition gauges: {}", e.getMessage());
+        }
+    }
+
+    private List<String> attachedPartitionNames(String parent) {
+        return jdbcTemplate.queryForList("SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid "
+                + "WHERE i.inhparent = to_regclass(?) ORDER BY c.relname", String.class, parent);
+    }
+
+    /**
+     * Take the maintenance advisory lock and bound DDL lock waits for the current transaction
+     */
+    private boolean tryLock() {
+        Boolean locked = jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(hashtext(?))",
+                Boolean.class, LOCK_NAME);
+        if (!Boolean.TRUE.equals(locked)) {
+            return false;
+        }
+        jdbcTemplate.execute("SET LOCAL lock_timeout = " + lockTimeoutMs);
+        return true;
+    }
+
+    private boolean relationExists(String name) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL",
+                Boolean.class, name));
+    }
+
+    private static YearMonth monthOf(String partitionName) {
+        Matcher matcher = PARTITION_NAME.matcher(partitionName);
+        if (!matcher.matches()) {
+            return null;
+        }
+        return YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+    }
+}
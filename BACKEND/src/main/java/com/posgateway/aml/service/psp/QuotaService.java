@@ -1,45 +1,117 @@
 package com.posgateway.aml.service.psp;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.posgateway.aml.entity.psp.Psp;
 import com.posgateway.aml.repository.PspRepository;
+import com.posgateway.aml.service.ratelimit.RateLimitDecision;
+import com.posgateway.aml.service.ratelimit.TokenBucketRateLimiter;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.time.Duration;
 
 /**
  * Service to handle PSP rate limiting/quotas.
- * Implements a simple fixed-window rate limiter (per minute).
+ * Per-PSP (and optionally per-merchant) token buckets refilled over one minute.
+ * The PSP plan lookup is cached so the quota check does no database I/O per request;
+ * unknown PSP codes are remembered only briefly, so a newly onboarded PSP is not
+ * rejected for the whole cache TTL.
  */
 @Service
 public class QuotaService {
     private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(QuotaService.class);
 
+    private static final Duration QUOTA_PERIOD = Duration.ofMinutes(1);
+
     private final PspRepository pspRepository;
+    private final TokenBucketRateLimiter rateLimiter;
 
-    public QuotaService(PspRepository pspRepository) {
-        this.pspRepository = pspRepository;
-    }
+    // key: pspCode, value: requests per minute
+    private Cache<String, Integer> pspLimits;
 
-    // key: pspCode, value: RequestCounter
-    private final Map<String, RequestCounter> limits = new ConcurrentHashMap<>();
+    // PSP codes not found, kept for ratelimit.psp.unknown.cache.ttl.ms
+    private Cache<String, Boolean> unknownPsps;
 
     // Defaults - normally configured in DB/Properties
     private static final int LIMIT_ENTERPRISE = 1000; // req/min
     private static final int LIMIT_BASIC = 100; // req/min
     private static final int LIMIT_DEFAULT = 50; // req/min
 
+    @Value("${ratelimit.merchant.requests.per.minute:0}")
+    private int merchantLimit;
+
+    @Value("${ratelimit.psp.cache.ttl.ms:60000}")
+    private long pspCacheTtlMs;
+
+    @Value("${ratelimit.psp.unknown.cache.ttl.ms:5000}")
+    private long unknownPspCacheTtlMs;
+
+    public QuotaService(PspRepository pspRepository, TokenBucketRateLimiter rateLimiter) {
+        this.pspRepository = pspRepository;
+        this.rateLimiter = rateLimiter;
+    }
+
+    @PostConstruct
+    public void init() {
+        pspLimits = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(pspCacheTtlMs))
+                .maximumSize(10_000)
+                .build();
+        unknownPsps = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(unknownPspCacheTtlMs))
+                .maximumSize(10_000)
+                .build();
+    }
+
     public boolean isRequestAllowed(String pspCode) {
+        return checkQuota(pspCode, null).isAllowed();
+    }
+
+    /**
+     * Check and consume quota for a request. The PSP and merchant buckets are both
+     * checked before either is consumed, so a merchant over its limit does not use up
+     * its PSP's quota.
+     *
+     * @param pspCode    PSP code
+     * @param merchantId Merchant ID, or null to check the PSP quota only
+     * @return decision with the values for the rate limit response headers
+     */
+    public RateLimitDecision checkQuota(String pspCode, String merchantId) {
+        Integer limit = getLimit(pspCode);
+        if (limit == null) {
+            return RateLimitDecision.rejected(0, 0L, 0L);
+        }
+
+        TokenBucketRateLimiter.Limit pspQuota = new TokenBucketRateLimiter.Limit("psp:" + pspCode, limit,
+                QUOTA_PERIOD);
+        if (merchantLimit > 0 && merchantId != null && !merchantId.isEmpty()) {
+            return rateLimiter.tryAcquireAll(pspQuota, new TokenBucketRateLimiter.Limit(
+                    "merchant:" + pspCode + ":" + merchantId, merchantLimit, QUOTA_PERIOD));
+        }
+        return rateLimiter.tryAcquireAll(pspQuota);
+    }
+
+    private Integer getLimit(String pspCode) {
+        if (unknownPsps.getIfPresent(pspCode) != null) {
+            return null;
+        }
+        Integer limit = pspLimits.get(pspCode, this::loadLimit);
+        if (limit == null) {
+            unknownPsps.put(pspCode, Boolean.TRUE);
+        }
+        return limit;
+    }
+
+    // Returns null for unknown PSPs, which Caffeine does not store
+    private Integer loadLimit(String pspCode) {
         Psp psp = pspRepository.findByPspCode(pspCode).orElse(null);
         if (psp == null) {
             log.warn("Quota check failed: Unknown PSP code {}", pspCode);
-            return false;
+            return null;
         }
-
-        int limit = getLimitForPlan(psp.getBillingPlan());
-
-        return limits.computeIfAbsent(pspCode, k -> new RequestCounter())
-                .tryAcquire(limit);
+        return getLimitForPlan(psp.getBillingPlan());
     }
 
     private int getLimitForPlan(String plan) {
@@ -39,8 +39,22 @@ public class WebhookService {
     public void sendWebhook(String eventType, Map<String, Object> payload) {
         log.debug("Processing webhooks for event: {}", eventType);
 
-        List<WebhookSubscription> subscriptions = subscriptionRepository.findByEventTypeAndIsActiveTrue(eventType);
+        deliver(eventType, subscriptionRepository.findByEventTypeAndIsActiveTrue(eventType), payload);
+    }
+
+    /**
+     * Send the payload only to the given PSP's subscriptions for the event.
+     * Use this for anything carrying tenant data.
+     */
+    @Async("amlTaskExecutor")
+    public void sendWebhook(String eventType, Long pspId, Map<String, Object> payload) {
+        log.debug("Processing webhooks for event: {} (PSP {})", eventType, pspId);
+
+        deliver(eventType, subscriptionRepository.findByPspIdAndEventTypeAndIsActiveTrue(String.valueOf(pspId),
+                eventType), payload);
+    }
 
+    private void deliver(String eventType, List<WebhookSubscription> subscriptions, Map<String, Object> payload) {
         for (WebhookSubscription sub : subscriptions) {
             try {
                 // In real app: Add HMAC signature header using sub.getSecretKey()
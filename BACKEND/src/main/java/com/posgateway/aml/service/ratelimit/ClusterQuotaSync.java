@@ -0,0 +1,208 @@
+package com.posgateway.aml.service.ratelimit;
+
+import com.aerospike.client.AerospikeClient;
+import com.aerospike.client.Bin;
+import com.aerospike.client.Key;
+import com.aerospike.client.Operation;
+import com.aerospike.client.Record;
+import com.aerospike.client.policy.WritePolicy;
+import com.posgateway.aml.service.AerospikeConnectionService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cluster Quota Sync
+ * Shares rate limit quotas between nodes through Aerospike counters.
+ *
+ * Each key has one counter record per period window (e.g. per minute). Instead of a
+ * round trip per request, a node leases a slice of the quota (ratelimit.cluster.lease.fraction
+ * of the limit) with a single atomic add-and-get, then serves requests from the lease
+ * locally. Once the shared counter reaches the limit, nodes reject until the next window.
+ * Unused lease slices are lost at the end of a window, so the cluster may admit up to
+ * (nodes x lease size) fewer requests than the limit, never more.
+ *
+ * If Aerospike is unavailable, requests fall back to the per-node limits.
+ */
+@Service
+public class ClusterQuotaSync {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterQuotaSync.class);
+
+    private static final String USED_BIN = "used";
+
+    private final AerospikeConnectionService aerospikeConnectionService;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+
+    private Counter leaseCounter;
+    private Counter errorCounter;
+
+    @Value("${ratelimit.cluster.enabled:false}")
+    private boolean enabled;
+
+    @Value("${ratelimit.cluster.set:rate_limits}")
+    private String setName;
+
+    @Value("${ratelimit.cluster.lease.fraction:0.05}")
+    private double leaseFraction;
+
+    @Autowired
+    public ClusterQuotaSync(AerospikeConnectionService aerospikeConnectionService, MeterRegistry meterRegistry) {
+        this.aerospikeConnectionService = aerospikeConnectionService;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        leaseCounter = Counter.builder("aml_rate_limit_cluster_leases_total")
+                .description("Quota slices leased from the shared Aerospike counters")
+                .register(meterRegistry);
+        errorCounter = Counter.builder("aml_rate_limit_cluster_errors_total")
+                .description("Failed quota leases (requests fell back to per-node limits)")
+                .register(meterRegistry);
+        if (enabled) {
+            logger.info("Cluster rate limiting enabled (set={}, leaseFraction={})", setName, leaseFraction);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled && aerospikeConnectionService.isConnected();
+    }
+
+    /**
+     * Consume one request from the cluster-wide quota
+     *
+     * @param localDecision The (allowed) per-node decision
+     * @return localDecision, with remaining capped by the cluster quota, or a rejection
+     */
+    public RateLimitDecision tryConsume(String key, int limit, Duration period, RateLimitDecision localDecision) {
+        long periodMillis = period.toMillis();
+        long nowMillis = System.currentTimeMillis();
+        long window = nowMillis / periodMillis;
+
+        long untilNextWindow = TimeUnit.MILLISECONDS.toNanos((window + 1) * periodMillis - nowMillis);
+
+        Lease lease = leases.get(key);
+        if (lease == null || lease.window != window || !lease.tryTake()) {
+            if (lease != null && lease.window == window && lease.exhausted) {
+                return RateLimitDecision.rejected(limit, untilNextWindow, untilNextWindow);
+            }
+            // The round trip runs outside the map so other keys (and this one's lease
+            // holders) are not blocked on it; slices leased concurrently are added together
+            Lease acquired = acquireLease(key, window, limit, periodMillis);
+            if (acquired == null) {
+                return localDecision;
+            }
+            lease = leases.merge(key, acquired, (current, fresh) ->
+                    current.window == fresh.window ? current.add(fresh) : fresh);
+            if (!lease.tryTake()) {
+                return RateLimitDecision.rejected(limit, untilNextWindow, untilNextWindow);
+            }
+        }
+
+        int clusterRemaining = lease.globalRemaining + lease.remaining.get();
+        return RateLimitDecision.allowed(limit, Math.min(localDecision.getRemaining(), clusterRemaining),
+                untilNextWindow);
+    }
+
+    /**
+     * Give back one request taken by tryConsume to this node's lease, e.g. when another
+     * limit rejected the request
+     */
+    public void release(String key, Duration period) {
+        Lease lease = leases.get(key);
+        if (lease != null && lease.window == System.currentTimeMillis() / period.toMillis()) {
+            lease.remaining.incrementAndGet();
+        }
+    }
+
+    private Lease acquireLease(String key, long window, int limit, long periodMillis) {
+        int leaseSize = Math.max(1, (int) Math.ceil(limit * leaseFraction));
+        try {
+            AerospikeClient client = aerospikeConnectionService.getClient();
+            WritePolicy writePolicy = new WritePolicy();
+            writePolicy.expiration = (int) Math.max(1L, TimeUnit.MILLISECONDS.toSeconds(periodMillis * 2));
+
+            Key recordKey = new Key(aerospikeConnectionService.getNamespace(), setName, key + ":" + window);
+            Record record = client.operate(writePolicy, recordKey,
+                    Operation.add(new Bin(USED_BIN, leaseSize)),
+                    Operation.get(USED_BIN));
+
+            long used = record.getLong(USED_BIN);
+            long usedBefore = used - leaseSize;
+            int granted = (int) Math.max(0L, Math.min(leaseSize, limit - usedBefore));
+            leaseCounter.increment();
+            return new Lease(window, periodMillis, granted, (int) Math.max(0L, limit - used), usedBefore + granted >= limit);
+        } catch (Exception e) {
+            errorCounter.increment();
+            logger.warn("Cluster quota lease failed for {} - using per-node limit: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Drop leases of past windows
+     */
+    @Scheduled(fixedDelayString = "${ratelimit.eviction.interval.ms:60000}")
+    public void evictExpiredLeases() {
+        long nowMillis = System.currentTimeMillis();
+        leases.values().removeIf(lease -> lease.window < nowMillis / lease.periodMillis);
+    }
+
+    private static final class Lease {
+        private final long window;
+        private final long periodMillis;
+        private final AtomicInteger remaining;
+        private volatile int globalRemaining;
+        private volatile boolean exhausted;
+
+        private Lease(long window, long periodMillis, int granted, int globalRemaining, boolean exhausted) {
+            this.window = window;
+            this.periodMillis = periodMillis;
+            this.remaining = new AtomicInteger(granted);
+            this.globalRemaining = globalRemaining;
+            this.exhausted = exhausted;
+        }
+
+        /**
+         * Take one request if any is left (never goes negative)
+         */
+        private boolean tryTake() {
+            while (true) {
+                int current = remaining.get();
+                if (current <= 0) {
+                    return false;
+                }
+                if (remaining.compareAndSet(current, current - 1)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Add a slice leased later in the same window; its counter read is the newer one
+         */
+        private Lease add(Lease slice) {
+            remaining.addAndGet(slice.remaining.get());
+            globalRemaining = slice.globalRemaining;
+            if (slice.exhausted) {
+                exhausted = true;
+            }
+            return this;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.posgateway.aml.service.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * GCRA Bucket
+ * Lock-free token bucket implemented as the Generic Cell Rate Algorithm.
+ *
+ * The whole bucket state is one "theoretical arrival time" (TAT): the instant at
+ * which the bucket would be full again. Each request advances the TAT by one
+ * emission interval (period / limit) with a single CAS; a request is rejected
+ * when that would push the TAT more than one period ahead of now. This gives the
+ * same limit and burst as a bucket of `limit` tokens refilled evenly over the
+ * period, without a refill thread or a lock.
+ *
+ * Times are System.nanoTime() values.
+ */
+public final class GcraBucket {
+
+    private final int limit;
+    private final long periodNanos;
+    private final long emissionIntervalNanos;
+    private final AtomicLong theoreticalArrival;
+
+    public GcraBucket(int limit, long periodNanos, long nowNanos) {
+        if (limit <= 0 || periodNanos <= 0) {
+            throw new IllegalArgumentException("limit and period must be positive");
+        }
+        this.limit = limit;
+        this.periodNanos = periodNanos;
+        this.emissionIntervalNanos = Math.max(1L, periodNanos / limit);
+        this.theoreticalArrival = new AtomicLong(nowNanos);
+    }
+
+    /**
+     * Take one token if available
+     */
+    public RateLimitDecision tryAcquire(long nowNanos) {
+        while (true) {
+            long tat = theoreticalArrival.get();
+            long base = tat - nowNanos > 0 ? tat : nowNanos;
+            long newTat = base + emissionIntervalNanos;
+            long backlog = newTat - nowNanos;
+
+            if (backlog > periodNanos) {
+                return RateLimitDecision.rejected(limit, base - nowNanos, backlog - periodNanos);
+            }
+            if (theoreticalArrival.compareAndSet(tat, newTat)) {
+                int remaining = (int) ((periodNanos - backlog) / emissionIntervalNanos);
+                return RateLimitDecision.allowed(limit, remaining, backlog);
+            }
+        }
+    }
+
+    /**
+     * Decision tryAcquire would make now, without taking a token
+     */
+    public RateLimitDecision check(long nowNanos) {
+        long tat = theoreticalArrival.get();
+        long base = tat - nowNanos > 0 ? tat : nowNanos;
+        long backlog = base + emissionIntervalNanos - nowNanos;
+        if (backlog > periodNanos) {
+            return RateLimitDecision.rejected(limit, base - nowNanos, backlog - periodNanos);
+        }
+        return RateLimitDecision.allowed(limit, (int) ((periodNanos - backlog) / emissionIntervalNanos), backlog);
+    }
+
+    /**
+     * Give back one token taken by tryAcquire, e.g. when another limit rejected the request
+     */
+    public void release(long nowNanos) {
+        while (true) {
+            long tat = theoreticalArrival.get();
+            if (tat - nowNanos <= 0) {
+                // Already full
+                return;
+            }
+            long newTat = tat - emissionIntervalNanos;
+            if (newTat - nowNanos < 0) {
+                newTat = nowNanos;
+            }
+            if (theoreticalArrival.compareAndSet(tat, newTat)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Tokens consumed within the trailing period
+     */
+    public int getUsed(long nowNanos) {
+        long backlog = theoreticalArrival.get() - nowNanos;
+        if (backlog <= 0) {
+            return 0;
+        }
+        return (int) Math.min(limit, (backlog + emissionIntervalNanos - 1) / emissionIntervalNanos);
+    }
+
+    /**
+     * True when the bucket has been full for at least idleNanos
+     */
+    public boolean isIdle(long nowNanos, long idleNanos) {
+        return nowNanos - theoreticalArrival.get() >= idleNanos;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public long getPeriodNanos() {
+        return periodNanos;
+    }
+}
@@ -0,0 +1,83 @@
+package com.posgateway.aml.service.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rate Limit Decision
+ * Outcome of a limiter check, with the values reported in the RateLimit-* headers.
+ */
+public final class RateLimitDecision {
+
+    private final boolean allowed;
+    private final int limit;
+    private final int remaining;
+    private final long resetNanos;
+    private final long retryAfterNanos;
+
+    private RateLimitDecision(boolean allowed, int limit, int remaining, long resetNanos, long retryAfterNanos) {
+        this.allowed = allowed;
+        this.limit = limit;
+        this.remaining = remaining;
+        this.resetNanos = resetNanos;
+        this.retryAfterNanos = retryAfterNanos;
+    }
+
+    public static RateLimitDecision allowed(int limit, int remaining, long resetNanos) {
+        return new RateLimitDecision(true, limit, remaining, resetNanos, 0L);
+    }
+
+    public static RateLimitDecision rejected(int limit, long resetNanos, long retryAfterNanos) {
+        return new RateLimitDecision(false, limit, 0, resetNanos, retryAfterNanos);
+    }
+
+    /**
+     * Combine two checks that must both pass (e.g. PSP and merchant limits):
+     * the stricter one is reported
+     */
+    public RateLimitDecision and(RateLimitDecision other) {
+        if (other == null) {
+            return this;
+        }
+        if (allowed != other.allowed) {
+            return allowed ? other : this;
+        }
+        if (!allowed) {
+            return retryAfterNanos >= other.retryAfterNanos ? this : other;
+        }
+        return remaining <= other.remaining ? this : other;
+    }
+
+    public boolean isAllowed() {
+        return allowed;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getRemaining() {
+        return remaining;
+    }
+
+    /**
+     * Seconds until the full quota is available again (rounded up)
+     */
+    public long getResetSeconds() {
+        return toSecondsCeil(resetNanos);
+    }
+
+    /**
+     * Seconds until the next request would be allowed (rounded up, 0 when allowed)
+     */
+    public long getRetryAfterSeconds() {
+        return toSecondsCeil(retryAfterNanos);
+    }
+
+    private static long toSecondsCeil(long nanos) {
+        if (nanos <= 0) {
+            return 0L;
+        }
+        long unit = TimeUnit.SECONDS.toNanos(1);
+        return (nanos + unit - 1) / unit;
+    }
+}
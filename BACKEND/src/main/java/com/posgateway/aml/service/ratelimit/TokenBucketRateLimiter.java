@@ -0,0 +1,180 @@
+package com.posgateway.aml.service.ratelimit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token Bucket Rate Limiter
+ * Keyed (per PSP, per merchant, ...) rate limiting on lock-free GCRA buckets.
+ *
+ * Buckets live in a ConcurrentHashMap and are created on first use. A bucket that has
+ * been full for ratelimit.bucket.idle.timeout.ms is evicted; since a new bucket also
+ * starts full, eviction never changes a decision.
+ *
+ * With ratelimit.cluster.enabled, requests allowed locally must also fit the quota shared
+ * across nodes through ClusterQuotaSync.
+ */
+@Service
+public class TokenBucketRateLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenBucketRateLimiter.class);
+
+    private final ClusterQuotaSync clusterQuotaSync;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, GcraBucket> buckets = new ConcurrentHashMap<>();
+
+    private Counter allowedCounter;
+    private Counter rejectedCounter;
+
+    @Value("${ratelimit.bucket.idle.timeout.ms:300000}")
+    private long idleTimeoutMs;
+
+    @Autowired
+    public TokenBucketRateLimiter(ClusterQuotaSync clusterQuotaSync, MeterRegistry meterRegistry) {
+        this.clusterQuotaSync = clusterQuotaSync;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        allowedCounter = Counter.builder("aml_rate_limit_requests_total")
+                .tag("result", "allowed")
+                .description("Requests checked against keyed rate limits")
+                .register(meterRegistry);
+        rejectedCounter = Counter.builder("aml_rate_limit_requests_total")
+                .tag("result", "rejected")
+                .description("Requests checked against keyed rate limits")
+                .register(meterRegistry);
+        Gauge.builder("aml_rate_limit_buckets", buckets, Map::size)
+                .description("Active rate limit buckets")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Take one request from the bucket for the key
+     *
+     * @param key    Bucket key, e.g. "psp:ACME" or "merchant:ACME:12345"
+     * @param limit  Requests allowed per period
+     * @param period Refill period
+     */
+    public RateLimitDecision tryAcquire(String key, int limit, Duration period) {
+        return tryAcquireAll(new Limit(key, limit, period));
+    }
+
+    /**
+     * Take one request from every bucket, or from none
+     *
+     * All buckets are checked first, so a request rejected by one limit (e.g. its
+     * merchant's) does not use up another (its PSP's). Tokens taken before a concurrent
+     * request won the last token of a later bucket are given back.
+     *
+     * @return the strictest decision, or the first rejection
+     */
+    public RateLimitDecision tryAcquireAll(Limit... limits) {
+        long now = System.nanoTime();
+        GcraBucket[] selected = new GcraBucket[limits.length];
+        RateLimitDecision rejection = null;
+        for (int i = 0; i < limits.length; i++) {
+            selected[i] = bucket(limits[i], now);
+            RateLimitDecision check = selected[i].check(now);
+            if (!check.isAllowed()) {
+                rejection = check.and(rejection);
+            }
+        }
+        if (rejection != null) {
+            rejectedCounter.increment();
+            return rejection;
+        }
+
+        RateLimitDecision decision = null;
+        boolean cluster = clusterQuotaSync.isEnabled();
+        for (int i = 0; i < limits.length; i++) {
+            RateLimitDecision acquired = selected[i].tryAcquire(now);
+            if (acquired.isAllowed() && cluster) {
+                acquired = clusterQuotaSync.tryConsume(limits[i].key, limits[i].limit, limits[i].period, acquired);
+                if (!acquired.isAllowed()) {
+                    selected[i].release(now);
+                }
+            }
+            if (!acquired.isAllowed()) {
+                for (int j = 0; j < i; j++) {
+                    selected[j].release(now);
+                    if (cluster) {
+                        clusterQuotaSync.release(limits[j].key, limits[j].period);
+                    }
+                }
+                rejectedCounter.increment();
+                return acquired;
+            }
+            decision = acquired.and(decision);
+        }
+        allowedCounter.increment();
+        return decision;
+    }
+
+    private GcraBucket bucket(Limit limit, long now) {
+        long periodNanos = limit.period.toNanos();
+        GcraBucket bucket = buckets.get(limit.key);
+        if (bucket == null || bucket.getLimit() != limit.limit || bucket.getPeriodNanos() != periodNanos) {
+            // New key or the configured limit changed
+            bucket = buckets.compute(limit.key, (k, existing) ->
+                    existing != null && existing.getLimit() == limit.limit && existing.getPeriodNanos() == periodNanos
+                            ? existing
+                            : new GcraBucket(limit.limit, periodNanos, now));
+        }
+        return bucket;
+    }
+
+    /**
+     * Drop buckets that have been full (unused) for longer than the idle timeout
+     */
+    @Scheduled(fixedDelayString = "${ratelimit.eviction.interval.ms:60000}")
+    public void evictIdleBuckets() {
+        long now = System.nanoTime();
+        long idleNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMs);
+        int before = buckets.size();
+        buckets.values().removeIf(bucket -> bucket.isIdle(now, idleNanos));
+        int evicted = before - buckets.size();
+        if (evicted > 0) {
+            logger.debug("Evicted {} idle rate limit buckets ({} active)", evicted, buckets.size());
+        }
+    }
+
+    public int getBucketCount() {
+        return buckets.size();
+    }
+
+    /**
+     * One keyed limit of a tryAcquireAll call
+     */
+    public static final class Limit {
+        private final String key;
+        private final int limit;
+        private final Duration period;
+
+        /**
+         * @param key    Bucket key, e.g. "psp:ACME" or "merchant:ACME:12345"
+         * @param limit  Requests allowed per period
+         * @param period Refill period
+         */
+        public Limit(String key, int limit, Duration period) {
+            this.key = key;
+            this.limit = limit;
+            this.period = period;
+        }
+    }
+}
@@ -0,0 +1,391 @@
+package com.posgateway.aml.service.reporting;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * CSV Export Service
+ * Streams case, SAR and audit exports straight to the response, one keyset page at a time.
+ *
+ * - Rows are read with plain JDBC in (timestamp, id) order, a page per query, so the
+ *   connection goes back to the pool between pages and nothing accumulates in a
+ *   persistence context; only one page is in memory at a time
+ * - Each page is written and flushed before the next is read (optionally gzipped)
+ * - A semaphore bounds concurrent exports; a request that cannot get a permit within
+ *   the wait timeout is rejected instead of queueing on the connection pool
+ * - Text cells starting with =, +, - or @ are prefixed with ' so spreadsheets do not
+ *   evaluate them as formulas
+ */
+@Service
+public class CsvExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CsvExportService.class);
+
+    /**
+     * Exportable tables; the first two selected columns are the keyset (id, timestamp),
+     * the rest are the CSV columns
+     */
+    public enum ExportType {
+        CASES("cases", "compliance_cases", "created_at",
+                "case_reference, status, priority, merchant_id, assigned_to_user_id, created_at, updated_at",
+                "caseReference", "status", "priority", "merchantId", "assignedTo", "createdAt", "updatedAt"),
+        SARS("sars", "suspicious_activity_reports", "created_at",
+                "sar_reference, status, sar_type, jurisdiction, filed_at, created_at",
+                "sarReference", "status", "type", "jurisdiction", "filedAt", "createdAt"),
+        AUDIT("audit", "audit_logs_enhanced", "\"timestamp\"",
+                "\"timestamp\", username, action_type, entity_type, entity_id, success",
+                "timestamp", "user", "action", "entityType", "entityId", "success");
+
+        private final String name;
+        private final String table;
+        private final String timestampColumn;
+        private final String columns;
+        private final String[] header;
+
+        ExportType(String name, String table, String timestampColumn, String columns, String... header) {
+            this.name = name;
+            this.table = table;
+            this.timestampColumn = timestampColumn;
+            this.columns = columns;
+            this.header = header;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    /**
+     * Thrown when the maximum number of concurrent exports is running
+     */
+    public static class ExportLimitExceededException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public ExportLimitExceededException(String message) {
+            super(message);
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<ExportType, Counter> bytesCounters = new EnumMap<>(ExportType.class);
+    private final Map<ExportType, Counter> rowCounters = new EnumMap<>(ExportType.class);
+    private Semaphore permits;
+    private Counter rejectedCounter;
+
+    @Value("${export.page.size:1000}")
+    private int pageSize;
+
+    @Value("${export.max.concurrent:4}")
+    private int maxConcurrent;
+
+    @Value("${export.permit.wait.ms:2000}")
+    private long permitWaitMs;
+
+    @Autowired
+    public CsvExportService(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        permits = new Semaphore(maxConcurrent, true);
+        for (ExportType type : ExportType.values()) {
+            bytesCounters.put(type, Counter.builder("aml_export_bytes_total")
+                    .description("Bytes streamed by CSV exports (after compression)")
+                    .tag("export", type.getName())
+                    .register(meterRegistry));
+            rowCounters.put(type, Counter.builder("aml_export_rows_total")
+                    .description("Rows written by CSV exports")
+                    .tag("export", type.getName())
+                    .register(meterRegistry));
+        }
+        rejectedCounter = Counter.builder("aml_export_rejected_total")
+                .description("CSV exports rejected because the concurrent export limit was reached")
+                .register(meterRegistry);
+        Gauge.builder("aml_export_active", this, service -> service.maxConcurrent - service.permits.availablePermits())
+                .description("CSV exports currently streaming")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Reserve an export slot and return the body that streams the export. The slot is
+     * released when the body finishes; callers must also call Export.release() once the
+     * request completes, since the body never runs if the request fails or times out first.
+     *
+     * @throws ExportLimitExceededException if no slot frees up within the wait timeout
+     */
+    public Export open(ExportType type, ExportFilter filter, boolean gzip) {
+        try {
+            if (!permits.tryAcquire(permitWaitMs, TimeUnit.MILLISECONDS)) {
+                rejectedCounter.increment();
+                throw new ExportLimitExceededException("Too many exports in progress (" + maxConcurrent
+                        + "), try again later");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ExportLimitExceededException("Interrupted while waiting for an export slot");
+        }
+        return new Export(type, filter, gzip);
+    }
+
+    private void write(ExportType type, ExportFilter filter, boolean gzip, OutputStream out) throws IOException {
+        long start = System.nanoTime();
+        String outcome = "failed";
+        long rows = 0;
+        CountingOutputStream counting = new CountingOutputStream(out, bytesCounters.get(type));
+        GZIPOutputStream gzipStream = gzip ? new GZIPOutputStream(counting, 64 * 1024, true) : null;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(gzipStream != null ? gzipStream : counting,
+                StandardCharsets.UTF_8), 64 * 1024);
+        try {
+            writeRow(writer, type.header, 0);
+
+            LocalDateTime afterTs = null;
+            long afterId = 0;
+            while (true) {
+                List<Object[]> page = fetchPage(type, filter, afterTs, afterId);
+                for (Object[] row : page) {
+                    writeRow(writer, row, 2);
+                }
+                rows += page.size();
+                rowCounters.get(type).increment(page.size());
+                writer.flush();
+                if (page.size() < pageSize) {
+                    break;
+                }
+                Object[] last = page.get(page.size() - 1);
+                afterId = ((Number) last[0]).longValue();
+                afterTs = (LocalDateTime) last[1];
+            }
+            writer.flush();
+            if (gzipStream != null) {
+                gzipStream.finish();
+                counting.flush();
+            }
+            outcome = "completed";
+        } finally {
+            Timer.builder("aml_export_duration")
+                    .description("Time to stream a CSV export")
+                    .tag("export", type.getName())
+                    .tag("outcome", outcome)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            logger.info("CSV export {} {}: {} rows, {} bytes in {}ms", type.getName(), outcome, rows,
+                    counting.getCount(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+    }
+
+    private List<Object[]> fetchPage(ExportType type, ExportFilter filter, LocalDateTime afterTs, long afterId) {
+        String ts = type.timestampColumn;
+        StringBuilder sql = new StringBuilder("SELECT id, ").append(ts).append(", ").append(type.columns)
+                .append(" FROM ").append(type.table).append(" WHERE 1 = 1");
+        List<Object> args = new ArrayList<>();
+        if (afterTs != null) {
+            sql.append(" AND (").append(ts).append(" > ? OR (").append(ts).append(" = ? AND id > ?))");
+            args.add(Timestamp.valueOf(afterTs));
+            args.add(Timestamp.valueOf(afterTs));
+            args.add(afterId);
+        }
+        if (filter.getFrom() != null) {
+            sql.append(" AND ").append(ts).append(" >= ?");
+            args.add(Timestamp.valueOf(filter.getFrom()));
+        }
+        if (filter.getTo() != null) {
+            sql.append(" AND ").append(ts).append(" <= ?");
+            args.add(Timestamp.valueOf(filter.getTo()));
+        }
+        if (filter.getPspId() != null) {
+            sql.append(" AND psp_id = ?");
+            args.add(filter.getPspId());
+        }
+        for (Map.Entry<String, Object> condition : filter.getConditions().entrySet()) {
+            sql.append(" AND ").append(condition.getKey()).append(" = ?");
+            args.add(condition.getValue());
+        }
+        sql.append(" ORDER BY ").append(ts).append(", id LIMIT ?");
+        args.add(pageSize);
+
+        return jdbcTemplate.query(sql.toString(), (rs, rowNum) -> readRow(rs), args.toArray());
+    }
+
+    private static Object[] readRow(ResultSet rs) throws SQLException {
+        int columns = rs.getMetaData().getColumnCount();
+        Object[] row = new Object[columns];
+        for (int i = 0; i < columns; i++) {
+            Object value = rs.getObject(i + 1);
+            row[i] = value instanceof Timestamp timestamp ? timestamp.toLocalDateTime() : value;
+        }
+        return row;
+    }
+
+    /**
+     * RFC 4180 line from values[offset..]
+     */
+    static void writeRow(Writer writer, Object[] values, int offset) throws IOException {
+        for (int i = offset; i < values.length; i++) {
+            if (i > offset) {
+                writer.write(',');
+            }
+            if (values[i] == null) {
+                continue;
+            }
+            String value = values[i].toString();
+            if (values[i] instanceof CharSequence && !value.isEmpty() && "=+-@".indexOf(value.charAt(0)) >= 0) {
+                // Formula injection: make the cell plain text
+                value = "'" + value;
+            }
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0
+                    && value.indexOf('\r') < 0) {
+                writer.write(value);
+            } else {
+                writer.write('"');
+                writer.write(value.replace("\"", "\"\""));
+                writer.write('"');
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    /**
+     * An export holding a concurrent export slot until it is written or released
+     */
+    public final class Export implements StreamingResponseBody {
+        private final ExportType type;
+        private final ExportFilter filter;
+        private final boolean gzip;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Export(ExportType type, ExportFilter filter, boolean gzip) {
+            this.type = type;
+            this.filter = filter;
+            this.gzip = gzip;
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            if (released.get()) {
+                throw new IllegalStateException("Export slot already released");
+            }
+            try {
+                write(type, filter, gzip, out);
+            } finally {
+                release();
+            }
+        }
+
+        /**
+         * Give the slot back; safe to call more than once
+         */
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                permits.release();
+            }
+        }
+    }
+
+    /**
+     * Export filters: PSP, timestamp range (inclusive) and column equality conditions
+     */
+    public static class ExportFilter {
+        private final Long pspId;
+        private final LocalDateTime from;
+        private final LocalDateTime to;
+        private final Map<String, Object> conditions = new LinkedHashMap<>();
+
+        public ExportFilter(Long pspId, LocalDateTime from, LocalDateTime to) {
+            this.pspId = pspId;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Add a column = value condition; column names come from code, never from the request
+         */
+        public ExportFilter where(String column, Object value) {
+            if (value != null) {
+                conditions.put(column, value);
+            }
+            return this;
+        }
+
+        public Long getPspId() {
+            return pspId;
+        }
+
+        public LocalDateTime getFrom() {
+            return from;
+        }
+
+        public LocalDateTime getTo() {
+            return to;
+        }
+
+        public Map<String, Object> getConditions() {
+            return conditions;
+        }
+    }
+
+    /**
+     * Counts the bytes handed to the response into the export's byte counter
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private final Counter counter;
+        private long count;
+
+        private CountingOutputStream(OutputStream out, Counter counter) {
+            super(out);
+            this.counter = counter;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+            counter.increment();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+            counter.increment(len);
+        }
+
+        private long getCount() {
+            return count;
+        }
+    }
+}
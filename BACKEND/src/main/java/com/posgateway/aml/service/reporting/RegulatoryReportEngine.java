@@ -0,0 +1,719 @@
+package com.posgateway.aml.service.reporting;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.posgateway.aml.entity.RegulatoryReportRun;
+import com.posgateway.aml.entity.merchant.Merchant;
+import com.posgateway.aml.entity.psp.Psp;
+import com.posgateway.aml.repository.MerchantRepository;
+import com.posgateway.aml.repository.PspRepository;
+import com.posgateway.aml.repository.RegulatoryReportRunRepository;
+import com.posgateway.aml.repository.TransactionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Regulatory Report Engine
+ * Writes CTR, LCTR and IFTR reports as CSV, XML or PDF without loading the reporting
+ * period into memory.
+ *
+ * - PSP, period and threshold predicates run in SQL; rows are read in keyset pages on
+ *   (txn_ts, txn_id), projecting only the reported columns
+ * - Merchant and PSP details are batch-loaded per page into bounded LRU maps
+ * - Per-currency totals are accumulated as rows are written
+ * - Each page is written to the OutputStream before the next is read
+ *
+ * Reports can be streamed straight to a caller, or generated as a run into
+ * regulatory.report.dir. A run checkpoints the file length, keyset cursor and totals
+ * after every page; a run that dies is resumed by truncating the file to the checkpoint
+ * and continuing from the cursor (PDF runs restart, as a PDF cannot be appended to).
+ * Runs on several nodes need a shared report directory to resume each other's runs.
+ */
+@Service
+public class RegulatoryReportEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(RegulatoryReportEngine.class);
+
+    // Columns of TransactionRepository.findRegulatoryReportRows
+    private static final int TXN_ID = 0;
+    private static final int TXN_TS = 1;
+    private static final int AMOUNT_CENTS = 2;
+    private static final int CURRENCY = 3;
+    private static final int TERMINAL_ID = 4;
+    private static final int PAN_HASH = 5;
+    private static final int MERCHANT_ID = 6;
+    private static final int PSP_ID = 7;
+    private static final int IP_ADDRESS = 8;
+    private static final int DEVICE_FINGERPRINT = 9;
+    private static final int TRANSACTION_TYPE = 10;
+
+    private static final MerchantInfo NO_MERCHANT = new MerchantInfo(null);
+    private static final PspInfo NO_PSP = new PspInfo(null);
+
+    private final TransactionRepository transactionRepository;
+    private final MerchantRepository merchantRepository;
+    private final PspRepository pspRepository;
+    private final RegulatoryReportRunRepository runRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MeterRegistry meterRegistry;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // Runs executing on this node
+    private final Set<Long> activeRuns = ConcurrentHashMap.newKeySet();
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${regulatory.ctr.threshold:10000}")
+    private BigDecimal ctrThreshold;
+
+    @Value("${regulatory.lctr.threshold:100000}")
+    private BigDecimal lctrThreshold;
+
+    @Value("${regulatory.report.page.size:1000}")
+    private int pageSize;
+
+    @Value("${regulatory.report.lookup.cache.size:10000}")
+    private int lookupCacheSize;
+
+    @Value("${regulatory.report.dir:./reports/regulatory}")
+    private String reportDir;
+
+    @Value("${regulatory.report.run.stale.ms:600000}")
+    private long runStaleMs;
+
+    @Autowired
+    public RegulatoryReportEngine(TransactionRepository transactionRepository,
+            MerchantRepository merchantRepository,
+            PspRepository pspRepository,
+            RegulatoryReportRunRepository runRepository,
+            ApplicationEventPublisher eventPublisher,
+            MeterRegistry meterRegistry) {
+        this.transactionRepository = transactionRepository;
+        this.merchantRepository = merchantRepository;
+        this.pspRepository = pspRepository;
+        this.runRepository = runRepository;
+        this.eventPublisher = eventPublisher;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Report types and their columns (CSV header, XML element and PDF column names)
+     */
+    public enum ReportType {
+        CTR("Currency Transaction Report", "transactionId", "transactionDate", "amount", "currency",
+                "transactionType", "terminalId", "panHash", "ipAddress", "deviceFingerprint", "merchantName",
+                "merchantTradingName", "merchantAddress", "merchantCountry", "merchantRegistrationNumber",
+                "merchantTaxId", "merchantMcc", "financialInstitutionName", "financialInstitutionCode",
+                "financialInstitutionAddress", "financialInstitutionCountry"),
+        LCTR("Large Cash Transaction Report", "transactionId", "transactionDate", "amount", "currency",
+                "transactionType", "terminalId", "panHash", "ipAddress", "deviceFingerprint", "merchantName",
+                "merchantTradingName", "merchantAddress", "merchantCountry", "merchantRegistrationNumber",
+                "merchantTaxId", "financialInstitutionName", "financialInstitutionCode",
+                "financialInstitutionAddress"),
+        IFTR("International Funds Transfer Report", "transactionId", "transactionDate", "amount", "currency",
+                "transactionType", "transferType", "terminalId", "panHash", "ipAddress", "originCountry",
+                "financialInstitutionName", "financialInstitutionCode", "financialInstitutionAddress",
+                "destinationCountry", "merchantName", "merchantTradingName", "merchantAddress",
+                "merchantRegistrationNumber");
+
+        private final String title;
+        private final String[] columns;
+
+        ReportType(String title, String... columns) {
+            this.title = title;
+            this.columns = columns;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public String[] getColumns() {
+            return columns.clone();
+        }
+    }
+
+    /**
+     * Output formats; CSV and XML runs can be resumed mid-file, PDF runs restart
+     */
+    public enum Format {
+        CSV("text/csv", "csv", true),
+        XML("application/xml", "xml", true),
+        PDF("application/pdf", "pdf", false);
+
+        private final String contentType;
+        private final String extension;
+        private final boolean resumable;
+
+        Format(String contentType, String extension, boolean resumable) {
+            this.contentType = contentType;
+            this.extension = extension;
+            this.resumable = resumable;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public boolean isResumable() {
+            return resumable;
+        }
+    }
+
+    /**
+     * Write a report to the given stream
+     *
+     * @param pspId PSP to report on, or null for all PSPs
+     * @return totals of the rows written
+     */
+    public ReportTotals stream(ReportType type, Format format, LocalDateTime startDate, LocalDateTime endDate,
+            Long pspId, OutputStream out) throws IOException {
+        long start = System.nanoTime();
+        RegulatoryReportWriter writer = RegulatoryReportWriter.open(format, type, out);
+        writer.begin(startDate, endDate, thresholdLabel(type));
+        ReportTotals totals = new ReportTotals();
+        generate(type, endDate, pspId, new Cursor(startDate, 0L), writer, totals, (cursor, pageTotals) -> out.flush());
+        writer.end(totals);
+        out.flush();
+
+        record(type, format, "stream", start);
+        logger.info("Streamed {} {} from {} to {} (PSP {}): {} transactions in {}ms", type, format, startDate,
+                endDate, pspId != null ? pspId : "all", totals.getTransactionCount(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return totals;
+    }
+
+    /**
+     * Start generating a report into a file in the background
+     */
+    public RegulatoryReportRun startRun(ReportType type, Format format, LocalDateTime startDate,
+            LocalDateTime endDate, Long pspId, String requestedBy) {
+        String fileName = String.format("%s_%s_%s.%s", type, startDate.toLocalDate(), UUID.randomUUID(),
+                format.getExtension());
+        RegulatoryReportRun run = new RegulatoryReportRun();
+        run.setReportType(type.name());
+        run.setFormat(format.name());
+        run.setPspId(pspId);
+        run.setPeriodStart(startDate);
+        run.setPeriodEnd(endDate);
+        run.setStatus(RegulatoryReportRun.STATUS_RUNNING);
+        run.setFilePath(Paths.get(reportDir, fileName).toAbsolutePath().toString());
+        run.setLastTxnTs(startDate);
+        run.setRequestedBy(requestedBy);
+        run = runRepository.save(run);
+
+        logger.info("Starting regulatory report run {}: {} {} from {} to {} (PSP {})", run.getId(), type, format,
+                startDate, endDate, pspId != null ? pspId : "all");
+        eventPublisher.publishEvent(new RegulatoryReportRunRequestedEvent(this, run.getId(), run.getVersion()));
+        return run;
+    }
+
+    /**
+     * Resume a failed run from its last checkpoint (running and completed runs are left alone)
+     */
+    public RegulatoryReportRun resumeRun(RegulatoryReportRun run) {
+        if (!RegulatoryReportRun.STATUS_FAILED.equals(run.getStatus())) {
+            return run;
+        }
+        run.setStatus(RegulatoryReportRun.STATUS_RUNNING);
+        run.setErrorMessage(null);
+        run = runRepository.save(run);
+
+        logger.info("Resuming regulatory report run {} after {} rows", run.getId(), run.getRowCount());
+        eventPublisher.publishEvent(new RegulatoryReportRunRequestedEvent(this, run.getId(), run.getVersion()));
+        return run;
+    }
+
+    /**
+     * Pick up runs that stopped checkpointing (their node died or restarted)
+     */
+    @Scheduled(fixedDelayString = "${regulatory.report.resume.interval.ms:300000}")
+    public void resumeStalledRuns() {
+        LocalDateTime stalledBefore = LocalDateTime.now().minus(runStaleMs, ChronoUnit.MILLIS);
+        for (RegulatoryReportRun run : runRepository.findByStatusAndUpdatedAtBefore(
+                RegulatoryReportRun.STATUS_RUNNING, stalledBefore)) {
+            if (activeRuns.contains(run.getId())) {
+                continue;
+            }
+            logger.info("Regulatory report run {} stalled at {} rows, resuming", run.getId(), run.getRowCount());
+            eventPublisher.publishEvent(new RegulatoryReportRunRequestedEvent(this, run.getId(), run.getVersion()));
+        }
+    }
+
+    @Async("backgroundTaskExecutor")
+    @EventListener
+    public void onRunRequested(RegulatoryReportRunRequestedEvent event) {
+        Long runId = event.getRunId();
+        if (!activeRuns.add(runId)) {
+            return;
+        }
+        try {
+            RegulatoryReportRun run = runRepository.findById(runId).orElse(null);
+            if (run == null || !run.isRunning() || !Objects.equals(run.getVersion(), event.getVersion())) {
+                logger.debug("Regulatory report run {} already claimed or finished, skipping", runId);
+                return;
+            }
+            execute(run);
+        } finally {
+            activeRuns.remove(runId);
+        }
+    }
+
+    private void execute(RegulatoryReportRun run) {
+        ReportType type = ReportType.valueOf(run.getReportType());
+        Format format = Format.valueOf(run.getFormat());
+        Path file = Paths.get(run.getFilePath());
+        long start = System.nanoTime();
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            boolean resume = run.getBytesWritten() > 0 && format.isResumable() && Files.exists(file)
+                    && Files.size(file) >= run.getBytesWritten();
+            if (!resume) {
+                run.setBytesWritten(0L);
+                run.setLastTxnTs(run.getPeriodStart());
+                run.setLastTxnId(0L);
+                run.setRowCount(0L);
+                run.setTotalsJson(null);
+            }
+            // Saving bumps the version, so a second node resuming the same run fails here
+            RunCheckpointer checkpointer = new RunCheckpointer(runRepository.save(run));
+
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                long offset = resume ? run.getBytesWritten() : 0L;
+                channel.truncate(offset);
+                channel.position(offset);
+                checkpointer.channel = channel;
+
+                RegulatoryReportWriter writer = RegulatoryReportWriter.open(format, type,
+                        Channels.newOutputStream(channel));
+                ReportTotals totals = resume ? ReportTotals.fromJson(objectMapper, run.getTotalsJson())
+                        : new ReportTotals();
+                if (!resume) {
+                    writer.begin(run.getPeriodStart(), run.getPeriodEnd(), thresholdLabel(type));
+                } else {
+                    logger.info("Regulatory report run {} resumes after {} rows ({} bytes)", run.getId(),
+                            run.getRowCount(), offset);
+                }
+                generate(type, run.getPeriodEnd(), run.getPspId(),
+                        new Cursor(run.getLastTxnTs(), run.getLastTxnId()), writer, totals, checkpointer);
+                writer.end(totals);
+                channel.force(true);
+
+                RegulatoryReportRun completed = checkpointer.run;
+                completed.setBytesWritten(channel.size());
+                completed.setRowCount(totals.getTransactionCount());
+                completed.setTotalsJson(totals.toJson(objectMapper));
+                completed.setStatus(RegulatoryReportRun.STATUS_COMPLETED);
+                completed.setCompletedAt(LocalDateTime.now());
+                runRepository.save(completed);
+            }
+
+            record(type, format, "run", start);
+            logger.info("Regulatory report run {} completed in {}ms: {}", run.getId(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), file);
+        } catch (ObjectOptimisticLockingFailureException e) {
+            logger.warn("Regulatory report run {} was claimed by another node, stopping", run.getId());
+        } catch (Exception e) {
+            logger.error("Regulatory report run {} failed; it can be resumed from its last checkpoint: {}",
+                    run.getId(), e.getMessage(), e);
+            markFailed(run.getId(), e.getMessage());
+        }
+    }
+
+    private void markFailed(Long runId, String message) {
+        try {
+            runRepository.findById(runId).ifPresent(failed -> {
+                failed.setStatus(RegulatoryReportRun.STATUS_FAILED);
+                failed.setErrorMessage(message != null && message.length() > 1000 ? message.substring(0, 1000)
+                        : message);
+                runRepository.save(failed);
+            });
+        } catch (Exception e) {
+            logger.error("Could not mark regulatory report run {} failed: {}", runId, e.getMessage());
+        }
+    }
+
+    /**
+     * Write every reportable row after the cursor, one keyset page at a time
+     */
+    private void generate(ReportType type, LocalDateTime endDate, Long pspId, Cursor cursor,
+            RegulatoryReportWriter writer, ReportTotals totals, PageListener listener) throws IOException {
+        Lookups lookups = new Lookups();
+        Long minAmountCents = minAmountCents(type);
+        Counter rowsWritten = Counter.builder("aml_regulatory_report_rows_total")
+                .tag("report", type.name())
+                .description("Transactions written to regulatory reports")
+                .register(meterRegistry);
+
+        while (true) {
+            List<Object[]> page = transactionRepository.findRegulatoryReportRows(cursor.txnTs, cursor.txnId,
+                    endDate, pspId, minAmountCents, PageRequest.of(0, pageSize));
+            if (page.isEmpty()) {
+                break;
+            }
+            lookups.load(page);
+
+            int written = 0;
+            for (Object[] row : page) {
+                String[] values = values(type, row, lookups);
+                if (values == null) {
+                    continue;
+                }
+                writer.row(values);
+                totals.add(RegulatoryReportingService.normalizeCurrency((String) row[CURRENCY]), amountCents(row));
+                written++;
+            }
+            rowsWritten.increment(written);
+
+            Object[] last = page.get(page.size() - 1);
+            cursor.txnTs = (LocalDateTime) last[TXN_TS];
+            cursor.txnId = (Long) last[TXN_ID];
+            writer.flush();
+            // Nothing from the report is needed again; keep an open-in-view persistence context from growing
+            entityManager.clear();
+            listener.pageWritten(cursor, totals);
+
+            if (page.size() < pageSize) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Report columns of a transaction, or null if the transaction does not belong in the report
+     */
+    private String[] values(ReportType type, Object[] row, Lookups lookups) {
+        MerchantInfo merchant = lookups.merchant(merchantId(row));
+        PspInfo psp = lookups.psp((Long) row[PSP_ID]);
+        String currency = (String) row[CURRENCY];
+        String transactionId = String.valueOf(row[TXN_ID]);
+        String transactionDate = String.valueOf(row[TXN_TS]);
+        String amount = BigDecimal.valueOf(amountCents(row), 2).toPlainString();
+        String reportedCurrency = currency != null ? currency : "USD";
+
+        switch (type) {
+            case CTR:
+                return new String[] { transactionId, transactionDate, amount, reportedCurrency,
+                        (String) row[TRANSACTION_TYPE], (String) row[TERMINAL_ID], (String) row[PAN_HASH],
+                        (String) row[IP_ADDRESS], (String) row[DEVICE_FINGERPRINT], merchant.legalName,
+                        merchant.tradingName, merchant.address, merchant.country, merchant.registrationNumber,
+                        merchant.taxId, merchant.mcc, psp.legalName, psp.code, psp.address, psp.country };
+            case LCTR:
+                return new String[] { transactionId, transactionDate, amount, reportedCurrency,
+                        (String) row[TRANSACTION_TYPE], (String) row[TERMINAL_ID], (String) row[PAN_HASH],
+                        (String) row[IP_ADDRESS], (String) row[DEVICE_FINGERPRINT], merchant.legalName,
+                        merchant.tradingName, merchant.address, merchant.country, merchant.registrationNumber,
+                        merchant.taxId, psp.legalName, psp.code, psp.address };
+            default:
+                // IFTR rule: non-USD currency, or a merchant outside the US
+                boolean nonUsdCurrency = !"USD".equalsIgnoreCase(currency);
+                boolean foreignMerchant = merchant.country != null && !"US".equalsIgnoreCase(merchant.country);
+                if (!nonUsdCurrency && !foreignMerchant) {
+                    return null;
+                }
+                String originCountry = psp != NO_PSP ? psp.country : "US";
+                String destinationCountry = merchant != NO_MERCHANT ? merchant.country : "US";
+                boolean crossBorder = originCountry != null && destinationCountry != null
+                        && !originCountry.equals(destinationCountry);
+                String transferType = crossBorder ? "CROSS_BORDER" : (nonUsdCurrency ? "FOREIGN_CURRENCY" : "DOMESTIC");
+                return new String[] { transactionId, transactionDate, amount, reportedCurrency,
+                        (String) row[TRANSACTION_TYPE], transferType, (String) row[TERMINAL_ID], (String) row[PAN_HASH],
+                        (String) row[IP_ADDRESS], psp != NO_PSP ? psp.country : null, psp.legalName, psp.code,
+                        psp.address, merchant != NO_MERCHANT ? merchant.country : null, merchant.legalName,
+                        merchant.tradingName, merchant.address, merchant.registrationNumber };
+        }
+    }
+
+    private Long minAmountCents(ReportType type) {
+        return switch (type) {
+            case CTR -> ctrThreshold.multiply(new BigDecimal("100")).longValue();
+            case LCTR -> lctrThreshold.multiply(new BigDecimal("100")).longValue();
+            case IFTR -> null;
+        };
+    }
+
+    private String thresholdLabel(ReportType type) {
+        return switch (type) {
+            case CTR -> ctrThreshold.toPlainString();
+            case LCTR -> lctrThreshold.toPlainString();
+            case IFTR -> null;
+        };
+    }
+
+    private void record(ReportType type, Format format, String mode, long startNanos) {
+        Timer.builder("aml_regulatory_report_duration")
+                .tag("report", type.name())
+                .tag("format", format.name())
+                .tag("mode", mode)
+                .description("Time to generate a regulatory report")
+                .register(meterRegistry)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static long amountCents(Object[] row) {
+        return row[AMOUNT_CENTS] != null ? (Long) row[AMOUNT_CENTS] : 0L;
+    }
+
+    private static Long merchantId(Object[] row) {
+        String merchantId = (String) row[MERCHANT_ID];
+        if (merchantId == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(merchantId);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Keyset position: the last transaction written (or the period start and 0)
+     */
+    static final class Cursor {
+        private LocalDateTime txnTs;
+        private long txnId;
+
+        Cursor(LocalDateTime txnTs, long txnId) {
+            this.txnTs = txnTs;
+            this.txnId = txnId;
+        }
+    }
+
+    @FunctionalInterface
+    interface PageListener {
+        void pageWritten(Cursor cursor, ReportTotals totals) throws IOException;
+    }
+
+    /**
+     * Saves a run's checkpoint once a page is durably on disk
+     */
+    private final class RunCheckpointer implements PageListener {
+        private RegulatoryReportRun run;
+        private FileChannel channel;
+
+        private RunCheckpointer(RegulatoryReportRun run) {
+            this.run = run;
+        }
+
+        @Override
+        public void pageWritten(Cursor cursor, ReportTotals totals) throws IOException {
+            channel.force(false);
+            run.setBytesWritten(channel.position());
+            run.setLastTxnTs(cursor.txnTs);
+            run.setLastTxnId(cursor.txnId);
+            run.setRowCount(totals.getTransactionCount());
+            run.setTotalsJson(totals.toJson(objectMapper));
+            run = runRepository.save(run);
+        }
+    }
+
+    /**
+     * Transaction count and amounts per currency of the rows written so far
+     */
+    public static class ReportTotals {
+        private long transactionCount;
+        private long totalCents;
+        private final Map<String, Long> centsByCurrency = new LinkedHashMap<>();
+
+        void add(String currency, long amountCents) {
+            transactionCount++;
+            totalCents += amountCents;
+            centsByCurrency.merge(currency, amountCents, Long::sum);
+        }
+
+        public long getTransactionCount() {
+            return transactionCount;
+        }
+
+        public BigDecimal getTotalAmount() {
+            return BigDecimal.valueOf(totalCents, 2);
+        }
+
+        /**
+         * Totals clustered by currency code, without FX conversion
+         */
+        public Map<String, BigDecimal> getTotalAmountByCurrency() {
+            Map<String, BigDecimal> totals = new LinkedHashMap<>();
+            centsByCurrency.forEach((currency, cents) -> totals.put(currency, BigDecimal.valueOf(cents, 2)));
+            return totals;
+        }
+
+        String toJson(ObjectMapper objectMapper) throws IOException {
+            Map<String, Object> json = new LinkedHashMap<>();
+            json.put("transactionCount", transactionCount);
+            json.put("centsByCurrency", centsByCurrency);
+            return objectMapper.writeValueAsString(json);
+        }
+
+        static ReportTotals fromJson(ObjectMapper objectMapper, String json) throws IOException {
+            ReportTotals totals = new ReportTotals();
+            if (json == null) {
+                return totals;
+            }
+            Map<String, Object> parsed = objectMapper.readValue(json, new TypeReference<Map<String, Object>>() {});
+            totals.transactionCount = ((Number) parsed.get("transactionCount")).longValue();
+            @SuppressWarnings("unchecked")
+            Map<String, Number> byCurrency = (Map<String, Number>) parsed.get("centsByCurrency");
+            byCurrency.forEach((currency, cents) -> {
+                totals.centsByCurrency.put(currency, cents.longValue());
+                totals.totalCents += cents.longValue();
+            });
+            return totals;
+        }
+    }
+
+    /**
+     * Merchant and PSP details of one report, loaded a page at a time and kept in LRU maps
+     */
+    private final class Lookups {
+        private final Map<Long, MerchantInfo> merchants = lru();
+        private final Map<Long, PspInfo> psps = lru();
+
+        private <V> Map<Long, V> lru() {
+            int capacity = Math.max(lookupCacheSize, pageSize * 2);
+            return new LinkedHashMap<>(1024, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, V> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        /**
+         * Batch-load the merchants and PSPs of a page that are not cached yet
+         */
+        void load(List<Object[]> page) {
+            Set<Long> merchantIds = new HashSet<>();
+            Set<Long> pspIds = new HashSet<>();
+            for (Object[] row : page) {
+                Long merchantId = merchantId(row);
+                if (merchantId != null && !merchants.containsKey(merchantId)) {
+                    merchantIds.add(merchantId);
+                }
+                Long pspId = (Long) row[PSP_ID];
+                if (pspId != null && !psps.containsKey(pspId)) {
+                    pspIds.add(pspId);
+                }
+            }
+            if (!merchantIds.isEmpty()) {
+                for (Merchant merchant : merchantRepository.findAllById(merchantIds)) {
+                    merchants.put(merchant.getMerchantId(), new MerchantInfo(merchant));
+                    merchantIds.remove(merchant.getMerchantId());
+                }
+                merchantIds.forEach(missing -> merchants.put(missing, NO_MERCHANT));
+            }
+            if (!pspIds.isEmpty()) {
+                for (Psp psp : pspRepository.findAllById(pspIds)) {
+                    psps.put(psp.getPspId(), new PspInfo(psp));
+                    pspIds.remove(psp.getPspId());
+                }
+                pspIds.forEach(missing -> psps.put(missing, NO_PSP));
+            }
+        }
+
+        MerchantInfo merchant(Long merchantId) {
+            if (merchantId == null) {
+                return NO_MERCHANT;
+            }
+            MerchantInfo merchant = merchants.get(merchantId);
+            if (merchant == null) {
+                merchant = merchantRepository.findById(merchantId).map(MerchantInfo::new).orElse(NO_MERCHANT);
+                merchants.put(merchantId, merchant);
+            }
+            return merchant;
+        }
+
+        PspInfo psp(Long pspId) {
+            if (pspId == null) {
+                return NO_PSP;
+            }
+            PspInfo psp = psps.get(pspId);
+            if (psp == null) {
+                psp = pspRepository.findById(pspId).map(PspInfo::new).orElse(NO_PSP);
+                psps.put(pspId, psp);
+            }
+            return psp;
+        }
+    }
+
+    /**
+     * Reported merchant fields (all null for an unknown merchant)
+     */
+    private static final class MerchantInfo {
+        private final String legalName;
+        private final String tradingName;
+        private final String address;
+        private final String country;
+        private final String registrationNumber;
+        private final String taxId;
+        private final String mcc;
+
+        private MerchantInfo(Merchant merchant) {
+            this.legalName = merchant != null ? merchant.getLegalName() : null;
+            this.tradingName = merchant != null ? merchant.getTradingName() : null;
+            this.address = merchant != null ? RegulatoryReportingService.buildAddress(merchant) : null;
+            this.country = merchant == null ? null
+                    : merchant.getAddressCountry() != null ? merchant.getAddressCountry() : merchant.getCountry();
+            this.registrationNumber = merchant != null ? merchant.getRegistrationNumber() : null;
+            this.taxId = merchant != null ? merchant.getTaxId() : null;
+            this.mcc = merchant != null ? merchant.getMcc() : null;
+        }
+    }
+
+    /**
+     * Reported PSP (financial institution) fields (all null for an unknown PSP)
+     */
+    private static final class PspInfo {
+        private final String legalName;
+        private final String code;
+        private final String address;
+        private final String country;
+
+        private PspInfo(Psp psp) {
+            this.legalName = psp != null ? psp.getLegalName() : null;
+            this.code = psp != null ? psp.getPspCode() : null;
+            this.address = psp != null ? psp.getContactAddress() : null;
+            this.country = psp != null ? psp.getCountry() : null;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.posgateway.aml.service.reporting;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published when a regulatory report run is started or resumed; the run is picked up
+ * only if it is still at the given version (nobody else has claimed it since).
+ */
+public class RegulatoryReportRunRequestedEvent extends ApplicationEvent {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Long runId;
+    private final Long version;
+
+    public RegulatoryReportRunRequestedEvent(Object source, Long runId, Long version) {
+        super(source);
+        this.runId = runId;
+        this.version = version;
+    }
+
+    public Long getRunId() {
+        return runId;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,302 @@
+package com.posgateway.aml.service.reporting;
+
+import com.lowagie.text.Document;
+import com.lowagie.text.DocumentException;
+import com.lowagie.text.Font;
+import com.lowagie.text.FontFactory;
+import com.lowagie.text.PageSize;
+import com.lowagie.text.Paragraph;
+import com.lowagie.text.Phrase;
+import com.lowagie.text.pdf.PdfPCell;
+import com.lowagie.text.pdf.PdfPTable;
+import com.lowagie.text.pdf.PdfWriter;
+
+import java.awt.Color;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Regulatory Report Writer
+ * Writes a report row by row to an OutputStream, holding at most one buffer of output.
+ *
+ * begin() writes the preamble, row() one transaction, end() the per-currency totals and
+ * whatever closes the document. flush() pushes everything written so far to the stream;
+ * for CSV and XML the bytes on the stream after a flush are a prefix of the final file,
+ * so a run can be resumed by truncating the file to a checkpoint and writing on without
+ * calling begin() again. The underlying stream is never closed.
+ */
+abstract class RegulatoryReportWriter {
+
+    protected final RegulatoryReportEngine.ReportType type;
+
+    protected RegulatoryReportWriter(RegulatoryReportEngine.ReportType type) {
+        this.type = type;
+    }
+
+    static RegulatoryReportWriter open(RegulatoryReportEngine.Format format, RegulatoryReportEngine.ReportType type,
+            OutputStream out) {
+        return switch (format) {
+            case CSV -> new Csv(type, out);
+            case XML -> new Xml(type, out);
+            case PDF -> new Pdf(type, out);
+        };
+    }
+
+    /**
+     * @param threshold reporting threshold, or null for reports without one (IFTR)
+     */
+    abstract void begin(LocalDateTime startDate, LocalDateTime endDate, String threshold) throws IOException;
+
+    abstract void row(String[] values) throws IOException;
+
+    abstract void end(RegulatoryReportEngine.ReportTotals totals) throws IOException;
+
+    abstract void flush() throws IOException;
+
+    private static Writer textWriter(OutputStream out) {
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+    }
+
+    /**
+     * RFC 4180 CSV: a header line, then one line per transaction (totals are kept on the run)
+     */
+    static final class Csv extends RegulatoryReportWriter {
+        private final Writer writer;
+
+        Csv(RegulatoryReportEngine.ReportType type, OutputStream out) {
+            super(type);
+            this.writer = textWriter(out);
+        }
+
+        @Override
+        void begin(LocalDateTime startDate, LocalDateTime endDate, String threshold) throws IOException {
+            row(type.getColumns());
+        }
+
+        @Override
+        void row(String[] values) throws IOException {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writeField(values[i]);
+            }
+            writer.write("\r\n");
+        }
+
+        private void writeField(String value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0
+                    && value.indexOf('\r') < 0) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+
+        @Override
+        void end(RegulatoryReportEngine.ReportTotals totals) throws IOException {
+            flush();
+        }
+
+        @Override
+        void flush() throws IOException {
+            writer.flush();
+        }
+    }
+
+    /**
+     * XML: one Transaction element per row, column names as child elements, Totals last
+     */
+    static final class Xml extends RegulatoryReportWriter {
+        private final Writer writer;
+        private final String[] columns;
+
+        Xml(RegulatoryReportEngine.ReportType type, OutputStream out) {
+            super(type);
+            this.writer = textWriter(out);
+            this.columns = type.getColumns();
+        }
+
+        @Override
+        void begin(LocalDateTime startDate, LocalDateTime endDate, String threshold) throws IOException {
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            writer.write("<RegulatoryReport type=\"" + type.name() + "\" periodStart=\"" + startDate
+                    + "\" periodEnd=\"" + endDate + "\"");
+            if (threshold != null) {
+                writer.write(" threshold=\"" + escape(threshold) + "\"");
+            }
+            writer.write(" generatedAt=\"" + LocalDateTime.now() + "\">\n");
+            writer.write("  <Transactions>\n");
+        }
+
+        @Override
+        void row(String[] values) throws IOException {
+            writer.write("    <Transaction>");
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] == null || values[i].isEmpty()) {
+                    continue;
+                }
+                writer.write('<');
+                writer.write(columns[i]);
+                writer.write('>');
+                writer.write(escape(values[i]));
+                writer.write("</");
+                writer.write(columns[i]);
+                writer.write('>');
+            }
+            writer.write("</Transaction>\n");
+        }
+
+        @Override
+        void end(RegulatoryReportEngine.ReportTotals totals) throws IOException {
+            writer.write("  </Transactions>\n");
+            writer.write("  <Totals transactionCount=\"" + totals.getTransactionCount() + "\" totalAmount=\""
+                    + totals.getTotalAmount().toPlainString() + "\">\n");
+            for (Map.Entry<String, BigDecimal> total : totals.getTotalAmountByCurrency().entrySet()) {
+                writer.write("    <Total currency=\"" + escape(total.getKey()) + "\">"
+                        + total.getValue().toPlainString() + "</Total>\n");
+            }
+            writer.write("  </Totals>\n");
+            writer.write("</RegulatoryReport>\n");
+            flush();
+        }
+
+        @Override
+        void flush() throws IOException {
+            writer.flush();
+        }
+
+        private static String escape(String value) {
+            StringBuilder escaped = null;
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                String replacement = switch (c) {
+                    case '&' -> "&amp;";
+                    case '<' -> "&lt;";
+                    case '>' -> "&gt;";
+                    case '"' -> "&quot;";
+                    case '\'' -> "&apos;";
+                    default -> c < 0x20 && c != '\t' && c != '\n' && c != '\r' ? "" : null;
+                };
+                if (replacement != null && escaped == null) {
+                    escaped = new StringBuilder(value.length() + 16).append(value, 0, i);
+                }
+                if (escaped != null) {
+                    if (replacement != null) {
+                        escaped.append(replacement);
+                    } else {
+                        escaped.append(c);
+                    }
+                }
+            }
+            return escaped != null ? escaped.toString() : value;
+        }
+    }
+
+    /**
+     * PDF (OpenPDF): a landscape table whose completed rows are handed to the document every
+     * few hundred rows, so finished pages are written out instead of accumulating
+     */
+    static final class Pdf extends RegulatoryReportWriter {
+        private static final int ROWS_PER_ADD = 200;
+
+        private final Document document;
+        private final Font titleFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 12);
+        private final Font headerFont = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 6);
+        private final Font cellFont = FontFactory.getFont(FontFactory.HELVETICA, 6);
+        private PdfPTable table;
+        private int pendingRows;
+
+        Pdf(RegulatoryReportEngine.ReportType type, OutputStream out) {
+            super(type);
+            this.document = new Document(PageSize.A4.rotate(), 18, 18, 18, 18);
+            PdfWriter pdfWriter = PdfWriter.getInstance(document, out);
+            pdfWriter.setCloseStream(false);
+        }
+
+        @Override
+        void begin(LocalDateTime startDate, LocalDateTime endDate, String threshold) throws IOException {
+            try {
+                document.open();
+                document.add(new Paragraph(type.getTitle() + " (" + type.name() + ")", titleFont));
+                document.add(new Paragraph("Period: " + startDate + " to " + endDate
+                        + (threshold != null ? "    Threshold: " + threshold : "")
+                        + "    Generated: " + LocalDateTime.now(), cellFont));
+                document.add(new Paragraph(" ", cellFont));
+
+                table = new PdfPTable(type.getColumns().length);
+                table.setWidthPercentage(100);
+                table.setHeaderRows(1);
+                table.setComplete(false);
+                for (String column : type.getColumns()) {
+                    PdfPCell cell = new PdfPCell(new Phrase(column, headerFont));
+                    cell.setBackgroundColor(Color.LIGHT_GRAY);
+                    table.addCell(cell);
+                }
+            } catch (DocumentException e) {
+                throw new IOException("Failed to start PDF report", e);
+            }
+        }
+
+        @Override
+        void row(String[] values) throws IOException {
+            for (String value : values) {
+                table.addCell(new Phrase(value != null ? value : "", cellFont));
+            }
+            if (++pendingRows >= ROWS_PER_ADD) {
+                flush();
+            }
+        }
+
+        @Override
+        void end(RegulatoryReportEngine.ReportTotals totals) throws IOException {
+            try {
+                table.setComplete(true);
+                document.add(table);
+
+                document.add(new Paragraph(" ", cellFont));
+                document.add(new Paragraph("Transactions: " + totals.getTransactionCount()
+                        + "    Total amount: " + totals.getTotalAmount().toPlainString(), headerFont));
+                PdfPTable summary = new PdfPTable(2);
+                summary.setWidthPercentage(30);
+                summary.setHorizontalAlignment(PdfPTable.ALIGN_LEFT);
+                summary.addCell(new Phrase("currency", headerFont));
+                summary.addCell(new Phrase("totalAmount", headerFont));
+                for (Map.Entry<String, BigDecimal> total : totals.getTotalAmountByCurrency().entrySet()) {
+                    summary.addCell(new Phrase(total.getKey(), cellFont));
+                    summary.addCell(new Phrase(total.getValue().toPlainString(), cellFont));
+                }
+                document.add(summary);
+            } catch (DocumentException e) {
+                throw new IOException("Failed to finish PDF report", e);
+            } finally {
+                document.close();
+            }
+        }
+
+        @Override
+        void flush() throws IOException {
+            if (pendingRows == 0) {
+                return;
+            }
+            try {
+                document.add(table);
+                pendingRows = 0;
+            } catch (DocumentException e) {
+                throw new IOException("Failed to write PDF report rows", e);
+            }
+        }
+    }
+}
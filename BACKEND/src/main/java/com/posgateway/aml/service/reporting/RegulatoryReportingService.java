@@ -116,20 +116,8 @@ public class RegulatoryReportingService {
      */
     public InternationalFundsTransferReport generateIftr(LocalDateTime startDate, LocalDateTime endDate) {
         // Find all transactions in date range, respecting PSP isolation
-        Long pspId = pspIsolationService.getCurrentUserPspId();
-        List<TransactionEntity> allTxns; 
-        
-        // Note: Ideally use a custom repository method findByTxnTsBetweenAndPspId
-        // but for now reusing findAll and filtering or using internal helper logic
-        if (pspId != null) {
-            // Need a repository method for this efficiency, but effectively:
-            // For now, let's fetch all and filter in memory if repo method missing, 
-            // OR use the helper method pattern as below.
-            // Using a helper fetching method for consistency:
-            allTxns = fetchTransactions(startDate, endDate, pspId);
-        } else {
-            allTxns = SimpleTransactionFetcher(startDate, endDate);
-        }
+        Long pspId = reportPspId();
+        List<TransactionEntity> allTxns = transactionRepository.findForRegulatoryReport(startDate, endDate, pspId, null);
 
         List<TransactionEntity> iftrTxns = new ArrayList<>();
 
@@ -181,47 +169,22 @@ public class RegulatoryReportingService {
     }
 
     /**
-     * Find transactions above threshold
-     */
-    /**
-     * Find transactions above threshold
+     * Find transactions above threshold (PSP, period and threshold are applied in SQL)
      */
     private List<TransactionEntity> findTransactionsAboveThreshold(BigDecimal threshold,
             LocalDateTime startDate,
             LocalDateTime endDate) {
-        Long pspId = pspIsolationService.getCurrentUserPspId();
+        Long pspId = reportPspId();
         BigDecimal thresholdCents = threshold.multiply(new BigDecimal("100"));
-        
-        List<TransactionEntity> allTransactions = fetchTransactions(startDate, endDate, pspId);
-
-        return allTransactions.stream()
-                .filter(tx -> tx.getAmountCents() != null &&
-                        tx.getAmountCents() >= thresholdCents.longValue())
-                .toList();
+        return transactionRepository.findForRegulatoryReport(startDate, endDate, pspId, thresholdCents.longValue());
     }
-    
-    private List<TransactionEntity> fetchTransactions(LocalDateTime startDate, LocalDateTime endDate, Long pspId) {
-        if (pspId != null) {
-            // Use specific repository method if available, or findAll and filter
-            // Ideally: transactionRepository.findByPspIdAndTxnTsBetween(pspId, startDate, endDate);
-            // Assuming simplified retrieval for now to match interface:
-            return transactionRepository.findAll().stream()
-                    .filter(tx -> tx.getPspId() != null && tx.getPspId().equals(pspId))
-                    .filter(tx -> tx.getTxnTs() != null && 
-                            !tx.getTxnTs().isBefore(startDate) && 
-                            !tx.getTxnTs().isAfter(endDate))
-                    .collect(Collectors.toList());
-        } else {
-            return SimpleTransactionFetcher(startDate, endDate);
-        }
-    }
-    
-    private List<TransactionEntity> SimpleTransactionFetcher(LocalDateTime startDate, LocalDateTime endDate) {
-         return transactionRepository.findAll().stream()
-                .filter(tx -> tx.getTxnTs() != null &&
-                        !tx.getTxnTs().isBefore(startDate) &&
-                        !tx.getTxnTs().isAfter(endDate))
-                .collect(Collectors.toList());
+
+    /**
+     * PSP filter for the current user; admins (PSP ID 0) report across all PSPs
+     */
+    private Long reportPspId() {
+        Long userPspId = pspIsolationService.getCurrentUserPspId();
+        return userPspId == null || userPspId == 0L ? null : userPspId;
     }
 
     /**
@@ -251,7 +214,7 @@ public class RegulatoryReportingService {
         return totals;
     }
 
-    private String normalizeCurrency(String currency) {
+    static String normalizeCurrency(String currency) {
         if (currency == null) return "USD";
         String c = currency.trim().toUpperCase();
         if (c.isEmpty()) return "USD";
@@ -432,7 +395,7 @@ public class RegulatoryReportingService {
     /**
      * Build full address string from merchant
      */
-    private String buildAddress(Merchant merchant) {
+    static String buildAddress(Merchant merchant) {
         List<String> parts = new ArrayList<>();
         if (merchant.getAddressStreet() != null) parts.add(merchant.getAddressStreet());
         if (merchant.getAddressCity() != null) parts.add(merchant.getAddressCity());
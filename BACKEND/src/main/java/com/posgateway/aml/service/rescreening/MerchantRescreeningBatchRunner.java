@@ -0,0 +1,254 @@
+package com.posgateway.aml.service.rescreening;
+
+import com.posgateway.aml.entity.BatchJobCheckpoint;
+import com.posgateway.aml.repository.BatchJobCheckpointRepository;
+import com.posgateway.aml.repository.MerchantRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Merchant Rescreening Batch Runner
+ * Runs a rescreening job over all merchants due for screening, in chunks.
+ *
+ * - Merchant IDs are paged by keyset (merchant_id > cursor), never loaded all at once
+ * - Chunks are handed to a fixed pool of workers; at most 2x parallelism chunks are
+ *   in flight, so paging never runs far ahead of screening
+ * - After each chunk the checkpoint row advances to the highest ID below which every
+ *   chunk has completed; a run that dies is resumed from there by the next trigger
+ *   on the same day
+ *
+ * What a chunk does (screening, persisting, alerting) is up to the ChunkProcessor.
+ */
+@Service
+public class MerchantRescreeningBatchRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(MerchantRescreeningBatchRunner.class);
+
+    private final MerchantRepository merchantRepository;
+    private final BatchJobCheckpointRepository checkpointRepository;
+    private final MeterRegistry meterRegistry;
+
+    private final Set<String> runningJobs = ConcurrentHashMap.newKeySet();
+    // Merchants per second of the current (or last) run, by job
+    private final Map<String, AtomicLong> throughput = new ConcurrentHashMap<>();
+
+    @Value("${rescreening.batch.chunk.size:200}")
+    private int chunkSize;
+
+    @Value("${rescreening.batch.parallelism:8}")
+    private int parallelism;
+
+    @Autowired
+    public MerchantRescreeningBatchRunner(MerchantRepository merchantRepository,
+            BatchJobCheckpointRepository checkpointRepository, MeterRegistry meterRegistry) {
+        this.merchantRepository = merchantRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Screens one chunk of merchants
+     */
+    @FunctionalInterface
+    public interface ChunkProcessor {
+        /**
+         * @param merchantIds IDs in ascending order
+         * @return number of merchants that failed
+         */
+        int process(List<Long> merchantIds) throws Exception;
+    }
+
+    /**
+     * Run (or resume) a job over the merchants due today
+     *
+     * @return the final checkpoint, or null if the job was already running
+     */
+    public BatchJobCheckpoint run(String jobName, ChunkProcessor processor) {
+        if (!runningJobs.add(jobName)) {
+            logger.warn("Batch job {} is already running, skipping", jobName);
+            return null;
+        }
+        try {
+            return execute(jobName, processor);
+        } finally {
+            runningJobs.remove(jobName);
+        }
+    }
+
+    private BatchJobCheckpoint execute(String jobName, ChunkProcessor processor) {
+        LocalDate today = LocalDate.now();
+        BatchJobCheckpoint checkpoint = startOrResume(jobName, today);
+        long processedAtStart = checkpoint.getProcessedCount();
+
+        Counter screened = merchantCounter(jobName, "screened");
+        Counter failed = merchantCounter(jobName, "failed");
+        Timer chunkTimer = Timer.builder("aml_rescreening_chunk_duration")
+                .tag("job", jobName)
+                .description("Time to screen one chunk of merchants")
+                .register(meterRegistry);
+        AtomicLong rate = throughput.computeIfAbsent(jobName, name -> {
+            AtomicLong value = new AtomicLong();
+            Gauge.builder("aml_rescreening_throughput", value, AtomicLong::get)
+                    .tag("job", name)
+                    .description("Merchants screened per second by the current or last run")
+                    .register(meterRegistry);
+            return value;
+        });
+        rate.set(0);
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, jobName + "-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Submitted chunks in ID order; the checkpoint only moves past completed ones at the head
+        Deque<PendingChunk> pending = new ArrayDeque<>();
+        long start = System.nanoTime();
+        long cursor = checkpoint.getLastMerchantId();
+
+        try {
+            while (true) {
+                List<Long> ids = merchantRepository.findMerchantIdsNeedingRescreening(today,
+                        checkpoint.getStartedAt(), cursor, PageRequest.of(0, chunkSize));
+                if (ids.isEmpty()) {
+                    break;
+                }
+                cursor = ids.get(ids.size() - 1);
+                pending.addLast(new PendingChunk(cursor, ids.size(), workers.submit(() -> {
+                    Timer.Sample sample = Timer.start(meterRegistry);
+                    try {
+                        return processor.process(ids);
+                    } finally {
+                        sample.stop(chunkTimer);
+                    }
+                })));
+
+                while (!pending.isEmpty() && (pending.size() >= parallelism * 2 || pending.peekFirst().future.isDone())) {
+                    complete(jobName, pending.pollFirst(), checkpoint, screened, failed);
+                    rate.set(perSecond(checkpoint.getProcessedCount() - processedAtStart, start));
+                }
+            }
+            while (!pending.isEmpty()) {
+                complete(jobName, pending.pollFirst(), checkpoint, screened, failed);
+            }
+
+            checkpoint.setStatus(BatchJobCheckpoint.STATUS_COMPLETED);
+            checkpoint.setCompletedAt(LocalDateTime.now());
+            checkpointRepository.save(checkpoint);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Batch job {} interrupted at merchant {}; it will resume from there",
+                    jobName, checkpoint.getLastMerchantId());
+        } catch (Exception e) {
+            logger.error("Batch job {} aborted at merchant {}; it will resume from there: {}",
+                    jobName, checkpoint.getLastMerchantId(), e.getMessage(), e);
+        } finally {
+            workers.shutdownNow();
+        }
+
+        long elapsed = System.nanoTime() - start;
+        long processedNow = checkpoint.getProcessedCount() - processedAtStart;
+        rate.set(perSecond(processedNow, start));
+        Timer.builder("aml_rescreening_run_duration")
+                .tag("job", jobName)
+                .description("Duration of rescreening batch runs")
+                .register(meterRegistry)
+                .record(elapsed, TimeUnit.NANOSECONDS);
+        logger.info("Batch job {} {} in {}s: {} merchants ({} failed) this run, {} total today, {}/s",
+                jobName, checkpoint.isRunning() ? "stopped" : "completed", TimeUnit.NANOSECONDS.toSeconds(elapsed),
+                processedNow, checkpoint.getFailedCount(), checkpoint.getProcessedCount(), rate.get());
+        return checkpoint;
+    }
+
+    /**
+     * Continue today's unfinished run, or start a new one
+     */
+    private BatchJobCheckpoint startOrResume(String jobName, LocalDate today) {
+        BatchJobCheckpoint checkpoint = checkpointRepository.findById(jobName)
+                .orElseGet(() -> new BatchJobCheckpoint(jobName));
+        if (checkpoint.isRunning() && today.equals(checkpoint.getRunDate())) {
+            logger.info("Resuming batch job {} after merchant {} ({} already processed)",
+                    jobName, checkpoint.getLastMerchantId(), checkpoint.getProcessedCount());
+            return checkpoint;
+        }
+
+        checkpoint.setRunDate(today);
+        checkpoint.setStatus(BatchJobCheckpoint.STATUS_RUNNING);
+        checkpoint.setLastMerchantId(0L);
+        checkpoint.setProcessedCount(0L);
+        checkpoint.setFailedCount(0L);
+        checkpoint.setStartedAt(LocalDateTime.now());
+        checkpoint.setCompletedAt(null);
+        logger.info("Starting batch job {} (chunk size {}, parallelism {})", jobName, chunkSize, parallelism);
+        return checkpointRepository.save(checkpoint);
+    }
+
+    private void complete(String jobName, PendingChunk chunk, BatchJobCheckpoint checkpoint, Counter screened,
+            Counter failed) throws InterruptedException {
+        int failures;
+        try {
+            failures = Math.min(chunk.size, chunk.future.get());
+        } catch (ExecutionException e) {
+            logger.error("Batch job {}: chunk ending at merchant {} failed: {}",
+                    jobName, chunk.lastMerchantId, e.getCause().getMessage(), e.getCause());
+            failures = chunk.size;
+        }
+        screened.increment(chunk.size - failures);
+        failed.increment(failures);
+
+        checkpoint.setLastMerchantId(chunk.lastMerchantId);
+        checkpoint.setProcessedCount(checkpoint.getProcessedCount() + chunk.size);
+        checkpoint.setFailedCount(checkpoint.getFailedCount() + failures);
+        checkpointRepository.save(checkpoint);
+    }
+
+    private Counter merchantCounter(String jobName, String outcome) {
+        return Counter.builder("aml_rescreening_merchants_total")
+                .tag("job", jobName)
+                .tag("outcome", outcome)
+                .description("Merchants handled by rescreening batch runs")
+                .register(meterRegistry);
+    }
+
+    private static long perSecond(long count, long startNanos) {
+        long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        return count * 1000 / elapsedMillis;
+    }
+
+    private static class PendingChunk {
+        private final long lastMerchantId;
+        private final int size;
+        private final Future<Integer> future;
+
+        PendingChunk(long lastMerchantId, int size, Future<Integer> future) {
+            this.lastMerchantId = lastMerchantId;
+            this.size = size;
+            this.future = future;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.posgateway.aml.service.rescreening;
 
 import com.posgateway.aml.entity.Alert;
 import com.posgateway.aml.entity.merchant.Merchant;
+import com.posgateway.aml.entity.merchant.MerchantScreeningResult;
 import com.posgateway.aml.model.ScreeningResult;
 import com.posgateway.aml.repository.AlertRepository;
 import com.posgateway.aml.repository.MerchantRepository;
@@ -11,7 +12,6 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.util.List;
@@ -24,6 +24,8 @@ import java.util.List;
 public class PeriodicRescreeningService {
     private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(PeriodicRescreeningService.class);
 
+    static final String JOB_NAME = "merchant-rescreening";
+
     @Autowired
     private MerchantRepository merchantRepository;
 
@@ -36,6 +38,9 @@ public class PeriodicRescreeningService {
     @Autowired
     private AmlScreeningOrchestrator screeningOrchestrator;
 
+    @Autowired
+    private MerchantRescreeningBatchRunner batchRunner;
+
     @Value("${rescreening.enabled:true}")
     private boolean rescreeningEnabled;
 
@@ -44,10 +49,11 @@ public class PeriodicRescreeningService {
 
     /**
      * Scheduled rescreening job
-     * Runs daily at 3:00 AM to check for merchants needing rescreening
+     * Runs daily at 3:00 AM to check for merchants needing rescreening.
+     * Merchants are rescreened in parallel chunks by MerchantRescreeningBatchRunner,
+     * each in its own transaction (AmlScreeningOrchestrator.screenMerchant).
      */
     @Scheduled(cron = "${rescreening.cron:0 0 3 * * *}")
-    @Transactional
     public void performScheduledRescreening() {
         if (!rescreeningEnabled) {
             log.info("Rescreening is disabled, skipping scheduled run");
@@ -55,51 +61,45 @@ public class PeriodicRescreeningService {
         }
 
         log.info("Starting scheduled merchant rescreening...");
+        batchRunner.run(JOB_NAME, this::rescreenChunk);
+    }
 
-        try {
-            // Find merchants needing rescreening
-            List<Merchant> merchantsToScreen = merchantRepository.findMerchantsNeedingRescreening(LocalDate.now());
-
-            log.info("Found {} merchants requiring rescreening", merchantsToScreen.size());
-
-            int successCount = 0;
-            int failureCount = 0;
-
-            for (Merchant merchant : merchantsToScreen) {
-                try {
-                    log.info("Rescreening merchant: {} (ID: {})", merchant.getLegalName(), merchant.getMerchantId());
-
-                    // Perform screening
-                    ScreeningResult result = screeningOrchestrator.screenMerchant(merchant);
+    /**
+     * @return number of merchants that failed
+     */
+    private int rescreenChunk(List<Long> merchantIds) {
+        int failureCount = 0;
 
-                    // Check if screening result changed
-                    boolean riskChanged = evaluateRiskChange(merchant, result);
+        for (Merchant merchant : merchantRepository.findAllById(merchantIds)) {
+            try {
+                log.debug("Rescreening merchant: {} (ID: {})", merchant.getLegalName(), merchant.getMerchantId());
 
-                    if (riskChanged) {
-                        log.warn("Risk status changed for merchant {}: {}",
-                                merchant.getLegalName(), result.getStatus());
-                        // Create monitoring alert
-                        createMonitoringAlert(merchant, result);
-                    }
+                // Status before this screening (screenMerchant stores the new result)
+                String previousStatus = screeningResultRepository.findLatestByMerchantId(merchant.getMerchantId())
+                        .map(MerchantScreeningResult::getScreeningStatus)
+                        .orElse(null);
 
-                    // Update next screening due date
-                    merchant.updateNextScreeningDue();
-                    merchantRepository.save(merchant);
+                // Perform screening (also updates the next screening due date)
+                ScreeningResult result = screeningOrchestrator.screenMerchant(merchant);
 
-                    successCount++;
+                // Check if screening result changed
+                boolean riskChanged = evaluateRiskChange(previousStatus, result);
 
-                } catch (Exception e) {
-                    log.error("Failed to rescreen merchant {}: {}",
-                            merchant.getMerchantId(), e.getMessage(), e);
-                    failureCount++;
+                if (riskChanged) {
+                    log.warn("Risk status changed for merchant {}: {}",
+                            merchant.getLegalName(), result.getStatus());
+                    // Create monitoring alert
+                    createMonitoringAlert(merchant, result);
                 }
-            }
-
-            log.info("Rescreening complete: {} successful, {} failed", successCount, failureCount);
 
-        } catch (Exception e) {
-            log.error("Error during scheduled rescreening: {}", e.getMessage(), e);
+            } catch (Exception e) {
+                log.error("Failed to rescreen merchant {}: {}",
+                        merchant.getMerchantId(), e.getMessage(), e);
+                failureCount++;
+            }
         }
+
+        return failureCount;
     }
 
     /**
@@ -123,15 +123,11 @@ public class PeriodicRescreeningService {
     /**
      * Evaluate if risk status has changed since last screening
      */
-    private boolean evaluateRiskChange(Merchant merchant, ScreeningResult currentResult) {
-        // Get previous screening result
-        var previousResult = screeningResultRepository.findLatestByMerchantId(merchant.getMerchantId());
-
-        if (previousResult.isEmpty()) {
+    private boolean evaluateRiskChange(String previousStatus, ScreeningResult currentResult) {
+        if (previousStatus == null) {
             return false; // No previous result to compare
         }
 
-        String previousStatus = previousResult.get().getScreeningStatus();
         String currentStatus = currentResult.getStatus().name();
 
         // Risk changed if status went from CLEAR to MATCH/POTENTIAL_MATCH
@@ -165,12 +161,12 @@ public class PeriodicRescreeningService {
      */
     public RescreeningStats getStats() {
         LocalDate today = LocalDate.now();
-        List<Merchant> needsRescreening = merchantRepository.findMerchantsNeedingRescreening(today);
+        long needsRescreening = merchantRepository.countMerchantsNeedingRescreening(today);
         long totalActive = merchantRepository.countByStatus("ACTIVE");
 
         return RescreeningStats.builder()
                 .totalActiveMerchants(totalActive)
-                .merchantsNeedingRescreening(needsRescreening.size())
+                .merchantsNeedingRescreening((int) needsRescreening)
                 .rescreeningFrequencyDays(rescreeningFrequencyDays)
                 .enabled(rescreeningEnabled)
                 .build();
@@ -1,7 +1,6 @@
 package com.posgateway.aml.service.risk;
 
 import com.posgateway.aml.entity.compliance.ComplianceCase;
-import com.posgateway.aml.entity.TransactionEntity;
 import com.posgateway.aml.repository.ComplianceCaseRepository;
 import com.posgateway.aml.repository.TransactionRepository;
 import com.posgateway.aml.repository.risk.HighRiskCountryRepository;
@@ -13,6 +12,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -35,6 +35,9 @@ public class CustomerRiskProfilingService {
     @Value("${risk.high-value.threshold:50000}")
     private BigDecimal highValueThreshold;
 
+    @Value("${risk.profile.transaction.lookback.days:365}")
+    private int transactionLookbackDays;
+
     @Autowired
     public CustomerRiskProfilingService(ComplianceCaseRepository caseRepository,
             TransactionRepository transactionRepository,
@@ -87,13 +90,13 @@ public class CustomerRiskProfilingService {
             logger.debug("Merchant ID '{}' is not numeric, skipping case history lookup", merchantId);
         }
 
-        // Get transaction history
-        List<TransactionEntity> transactions = transactionRepository.findByMerchantId(merchantId);
-        BigDecimal totalAmount = transactions.stream()
-                .map(tx -> tx.getAmountCents() != null
-                        ? BigDecimal.valueOf(tx.getAmountCents()).divide(new BigDecimal("100"))
-                        : BigDecimal.ZERO)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        // Transaction volume over the lookback window, summed in the database
+        LocalDateTime now = LocalDateTime.now();
+        Long totalCents = transactionRepository.sumAmountByMerchantInTimeWindow(merchantId,
+                now.minusDays(transactionLookbackDays), now);
+        BigDecimal totalAmount = totalCents != null
+                ? BigDecimal.valueOf(totalCents).divide(new BigDecimal("100"))
+                : BigDecimal.ZERO;
 
         // Calculate risk score
         double riskScore = 0.0;
@@ -1,19 +1,28 @@
 package com.posgateway.aml.service.rules;
 
 import com.posgateway.aml.entity.rules.RuleDefinition;
+import com.posgateway.aml.features.CategoricalFeature;
+import com.posgateway.aml.features.Feature;
+import com.posgateway.aml.features.FeatureVector;
 import com.posgateway.aml.repository.rules.RuleDefinitionRepository;
 import com.posgateway.aml.rules.RuleEvaluationResult;
 import com.posgateway.aml.rules.TransactionFact;
 import com.posgateway.aml.service.graph.AerospikeGraphCacheService;
+import org.kie.api.KieBase;
 import org.kie.api.KieServices;
 import org.kie.api.builder.KieBuilder;
 import org.kie.api.builder.KieFileSystem;
 import org.kie.api.builder.KieModule;
+import org.kie.api.event.rule.AfterMatchFiredEvent;
+import org.kie.api.event.rule.DefaultAgendaEventListener;
 import org.kie.api.runtime.KieContainer;
 import org.kie.api.runtime.KieSession;
+import org.kie.api.runtime.StatelessKieSession;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PostConstruct;
@@ -22,6 +31,7 @@ import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Drools Rules Engine Service for AML Regulatory Compliance.
@@ -35,6 +45,11 @@ import java.util.Map;
  * - Dynamic Rules from Database (RuleDefinition)
  * 
  * Results cached in Aerospike for audit trails and fast retrieval.
+ *
+ * The compiled KieBase is built off the request path on reload and swapped in
+ * atomically, so evaluations never wait for a rebuild. By default each evaluation
+ * runs in a stateless session created from the shared KieBase; batchEvaluate()
+ * inserts many facts into one session and fires once.
  */
 @Service
 public class DroolsRulesService {
@@ -44,8 +59,12 @@ public class DroolsRulesService {
     private final AerospikeGraphCacheService aerospikeCache;
     private final RuleDefinitionRepository ruleRepository;
     
-    private KieContainer kieContainer;
-    private boolean droolsEnabled = false;
+    // null means no compiled rules - programmatic fallback is used
+    private final AtomicReference<KieBase> kieBaseRef = new AtomicReference<>();
+    private final Object reloadLock = new Object();
+
+    @Value("${drools.session.stateless:true}")
+    private boolean statelessSessions;
 
     @Autowired
     public DroolsRulesService(
@@ -60,7 +79,31 @@ public class DroolsRulesService {
         reloadRules();
     }
 
-    public synchronized void reloadRules() {
+    @EventListener
+    public void onRuleDefinitionChanged(RuleDefinitionChangedEvent event) {
+        reloadRules();
+    }
+
+    /**
+     * Rebuild the KieBase from the bundled DRL and enabled database rules.
+     * Evaluations keep using the current KieBase until the new one is ready;
+     * if the new build fails, the current one stays active.
+     */
+    public void reloadRules() {
+        synchronized (reloadLock) {
+            KieBase rebuilt = buildKieBase();
+            if (rebuilt != null) {
+                kieBaseRef.set(rebuilt);
+                logger.info("Drools Rules Engine initialized successfully.");
+            } else if (kieBaseRef.get() != null) {
+                logger.warn("Drools rebuild failed - keeping previously compiled rules active.");
+            } else {
+                logger.info("Drools initialized with programmatic rules fallback.");
+            }
+        }
+    }
+
+    private KieBase buildKieBase() {
         logger.info("Initializing/Reloading Drools Rules Engine...");
         try {
             KieServices kieServices = KieServices.Factory.get();
@@ -90,29 +133,24 @@ public class DroolsRulesService {
                 }
             }
 
-            if (rulesFound) {
-                KieBuilder kieBuilder = kieServices.newKieBuilder(kfs).buildAll();
-
-                if (kieBuilder.getResults().hasMessages(org.kie.api.builder.Message.Level.ERROR)) {
-                    logger.error("Drools rule errors: {}", kieBuilder.getResults().getMessages());
-                    droolsEnabled = false;
-                } else {
-                    KieModule kieModule = kieBuilder.getKieModule();
-                    this.kieContainer = kieServices.newKieContainer(kieModule.getReleaseId());
-                    droolsEnabled = true;
-                    logger.info("Drools Rules Engine initialized successfully.");
-                }
-            } else {
+            if (!rulesFound) {
                 logger.warn("No rules found (static or dynamic). Using programmatic fallback only.");
-                droolsEnabled = false;
+                return null;
+            }
+
+            KieBuilder kieBuilder = kieServices.newKieBuilder(kfs).buildAll();
+            if (kieBuilder.getResults().hasMessages(org.kie.api.builder.Message.Level.ERROR)) {
+                logger.error("Drools rule errors: {}", kieBuilder.getResults().getMessages());
+                return null;
             }
 
+            KieModule kieModule = kieBuilder.getKieModule();
+            KieContainer kieContainer = kieServices.newKieContainer(kieModule.getReleaseId());
+            return kieContainer.getKieBase();
+
         } catch (Exception e) {
             logger.error("Unexpected error during Drools engine initialization: {}", e.getMessage(), e);
-            droolsEnabled = false;
-        }
-        if (!droolsEnabled) {
-            logger.info("Drools initialized with programmatic rules fallback.");
+            return null;
         }
     }
 
@@ -121,6 +159,13 @@ public class DroolsRulesService {
      * Uses Drools for rule evaluation, caches results in Aerospike.
      */
     public RuleEvaluationResult evaluate(Long txnId, Map<String, Object> features, Double mlScore) {
+        return evaluate(txnId, FeatureVector.fromMap(features), mlScore);
+    }
+
+    /**
+     * Evaluate transaction against all AML rules using a typed feature vector.
+     */
+    public RuleEvaluationResult evaluate(Long txnId, FeatureVector features, Double mlScore) {
         long startTime = System.currentTimeMillis();
 
         // Build transaction fact from features
@@ -158,48 +203,101 @@ public class DroolsRulesService {
     }
 
     public TransactionFact buildTransactionFactPublic(Long txnId, Map<String, Object> features, Double mlScore) {
-        return buildTransactionFact(txnId, features, mlScore);
+        return buildTransactionFact(txnId, FeatureVector.fromMap(features), mlScore);
     }
 
+    public TransactionFact buildTransactionFactPublic(Long txnId, FeatureVector features, Double mlScore) {
+        return buildTransactionFact(txnId, features, mlScore);
+    }
 
-
-    private TransactionFact buildTransactionFact(Long txnId, Map<String, Object> features, Double mlScore) {
+    private TransactionFact buildTransactionFact(Long txnId, FeatureVector features, Double mlScore) {
         return new TransactionFact(
                 txnId,
-                (String) features.getOrDefault("merchant_id", "UNKNOWN"),
-                toBigDecimal(features.get("amount")),
-                (String) features.getOrDefault("currency", "USD"),
-                (String) features.getOrDefault("country_code", "UNK"),
+                features.getTextOrDefault(CategoricalFeature.MERCHANT_ID, "UNKNOWN"),
+                BigDecimal.valueOf(features.get(Feature.AMOUNT)),
+                features.getTextOrDefault(CategoricalFeature.CURRENCY, "USD"),
+                features.getTextOrDefault(CategoricalFeature.COUNTRY_CODE, "UNK"),
                 LocalDateTime.now(),
-                (String) features.getOrDefault("channel", "POS"),
-                (String) features.get("pan_hash"),
+                features.getTextOrDefault(CategoricalFeature.CHANNEL, "POS"),
+                features.getText(CategoricalFeature.PAN_HASH),
                 mlScore,
-                toDouble(features.get("pageRank")),
-                toLong(features.get("communityId")),
-                toDouble(features.get("betweenness")),
-                toLong(features.get("connectionCount")),
-                toLong(features.get("pan_txn_count_1h")),
-                toDouble(features.get("pan_txn_amount_sum_24h")),
-                toDouble(features.get("merchant_txn_amount_sum_24h")),
-                toDouble(features.get("krs_score")),
-                toDouble(features.get("cra_score")),
-                toDouble(features.get("trs_score")));
+                features.get(Feature.PAGE_RANK),
+                features.getLong(Feature.COMMUNITY_ID),
+                features.get(Feature.BETWEENNESS),
+                features.getLong(Feature.CONNECTION_COUNT),
+                features.getLong(Feature.PAN_TXN_COUNT_1H),
+                features.get(Feature.PAN_TXN_AMOUNT_SUM_24H),
+                features.get(Feature.MERCHANT_TXN_AMOUNT_SUM_24H),
+                features.get(Feature.KRS_SCORE),
+                features.get(Feature.CRA_SCORE),
+                features.get(Feature.TRS_SCORE));
     }
 
-    private int evaluateRules(TransactionFact fact) {
-        if (droolsEnabled && kieContainer != null) {
-            // Use Drools session
-            KieSession session = kieContainer.newKieSession();
-            try {
-                session.insert(fact);
-                return session.fireAllRules();
-            } finally {
-                session.dispose();
-            }
+    /**
+     * Evaluate a batch of facts in a single session with one fireAllRules call.
+     * Facts are independent, so this is only equivalent to per-transaction evaluation
+     * for rules that match a single TransactionFact (true for the bundled DRL).
+     *
+     * @return one result per fact, in input order
+     */
+    public List<RuleEvaluationResult> batchEvaluate(List<TransactionFact> facts) {
+        long startTime = System.currentTimeMillis();
+
+        KieBase kieBase = kieBaseRef.get();
+        if (kieBase != null) {
+            fireAll(kieBase, facts);
         } else {
+            for (TransactionFact fact : facts) {
+                evaluateProgrammaticRules(fact);
+            }
+        }
+
+        long evaluationTime = System.currentTimeMillis() - startTime;
+        List<RuleEvaluationResult> results = new ArrayList<>(facts.size());
+        for (TransactionFact fact : facts) {
+            results.add(new RuleEvaluationResult(
+                    fact.getTxnId(),
+                    fact.getDecision(),
+                    new ArrayList<>(fact.getReasons()),
+                    new ArrayList<>(fact.getTriggeredRules()),
+                    fact.isSarRequired(),
+                    fact.isCtrRequired(),
+                    fact.getTriggeredRules().size(),
+                    evaluationTime));
+        }
+
+        logger.debug("Rules evaluated for batch of {} facts in {}ms", facts.size(), evaluationTime);
+        return results;
+    }
+
+    private int evaluateRules(TransactionFact fact) {
+        KieBase kieBase = kieBaseRef.get();
+        if (kieBase == null) {
             // Use programmatic rules
             return evaluateProgrammaticRules(fact);
         }
+        return fireAll(kieBase, List.of(fact));
+    }
+
+    private int fireAll(KieBase kieBase, List<TransactionFact> facts) {
+        if (statelessSessions) {
+            // Inserts all facts, fires once and disposes the working memory
+            StatelessKieSession session = kieBase.newStatelessKieSession();
+            FiredRuleCounter counter = new FiredRuleCounter();
+            session.addEventListener(counter);
+            session.execute(facts);
+            return counter.fired;
+        }
+
+        KieSession session = kieBase.newKieSession();
+        try {
+            for (TransactionFact fact : facts) {
+                session.insert(fact);
+            }
+            return session.fireAllRules();
+        } finally {
+            session.dispose();
+        }
     }
 
     /**
@@ -244,42 +342,12 @@ public class DroolsRulesService {
         return rulesTriggered;
     }
 
-    // Helper conversion methods
-    private BigDecimal toBigDecimal(Object value) {
-        if (value == null)
-            return BigDecimal.ZERO;
-        if (value instanceof BigDecimal)
-            return (BigDecimal) value;
-        if (value instanceof Number)
-            return BigDecimal.valueOf(((Number) value).doubleValue());
-        try {
-            return new BigDecimal(value.toString());
-        } catch (Exception e) {
-            return BigDecimal.ZERO;
-        }
-    }
+    private static final class FiredRuleCounter extends DefaultAgendaEventListener {
+        private int fired;
 
-    private Double toDouble(Object value) {
-        if (value == null)
-            return 0.0;
-        if (value instanceof Number)
-            return ((Number) value).doubleValue();
-        try {
-            return Double.parseDouble(value.toString());
-        } catch (Exception e) {
-            return 0.0;
-        }
-    }
-
-    private Long toLong(Object value) {
-        if (value == null)
-            return 0L;
-        if (value instanceof Number)
-            return ((Number) value).longValue();
-        try {
-            return Long.parseLong(value.toString());
-        } catch (Exception e) {
-            return 0L;
+        @Override
+        public void afterMatchFired(AfterMatchFiredEvent event) {
+            fired++;
         }
     }
 }
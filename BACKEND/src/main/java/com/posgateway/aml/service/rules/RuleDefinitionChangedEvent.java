@@ -0,0 +1,26 @@
+package com.posgateway.aml.service.rules;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published after a RuleDefinition is created, updated, enabled/disabled or deleted.
+ * Listeners rebuild their compiled rule state (Drools KieBase, SpEL rule set).
+ */
+public class RuleDefinitionChangedEvent extends ApplicationEvent {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Long ruleId;
+
+    public RuleDefinitionChangedEvent(Object source, Long ruleId) {
+        super(source);
+        this.ruleId = ruleId;
+    }
+
+    /**
+     * ID of the changed rule, or null for a full reload request
+     */
+    public Long getRuleId() {
+        return ruleId;
+    }
+}
@@ -0,0 +1,470 @@
+package com.posgateway.aml.service.rules;
+
+import com.posgateway.aml.rules.TransactionFact;
+import com.posgateway.aml.service.rules.RuleSetCache.CompiledRule;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.SpelNode;
+import org.springframework.expression.spel.ast.CompoundExpression;
+import org.springframework.expression.spel.ast.Literal;
+import org.springframework.expression.spel.ast.OpAnd;
+import org.springframework.expression.spel.ast.OpEQ;
+import org.springframework.expression.spel.ast.OpGE;
+import org.springframework.expression.spel.ast.OpGT;
+import org.springframework.expression.spel.ast.OpLE;
+import org.springframework.expression.spel.ast.OpLT;
+import org.springframework.expression.spel.ast.OpMinus;
+import org.springframework.expression.spel.ast.PropertyOrFieldReference;
+import org.springframework.expression.spel.ast.StringLiteral;
+import org.springframework.expression.spel.ast.VariableReference;
+import org.springframework.expression.spel.standard.SpelExpression;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Rule Predicate Index
+ * Narrows the SpEL rules evaluated for a transaction to those whose guards can all match.
+ *
+ * A guard is a simple comparison taken from the top-level AND chain of a rule
+ * expression, e.g. "amount > 10000", "countryCode == 'IR'" or "#tx.mlScore >= 0.8".
+ * Every indexable conjunct of a rule is a guard (the tightest one per field and
+ * direction), and a rule is a candidate only if all of its guards hold: the sets of
+ * rules passing each field's guards are intersected. Because every top-level conjunct
+ * must hold for the rule to match, skipping a rule with a false guard never changes
+ * the outcome.
+ *
+ * Guards are indexed per field:
+ * - string equality: value -> rules
+ * - numeric lower bounds (>, >=) and upper bounds (<, <=): thresholds sorted ascending,
+ *   so matching rules are a contiguous range found by binary search
+ *
+ * Rules without an indexable guard and non-SpEL rules are always evaluated. A numeric
+ * guard on a field that is null on the fact is treated as holding; a string equality
+ * guard on a null field cannot hold, so those rules are skipped. Candidates keep the
+ * snapshot's priority order.
+ * Only immutable TransactionFact inputs are indexed (never decision/flags set by rules).
+ */
+final class RulePredicateIndex {
+
+    private static final Map<String, Function<TransactionFact, Number>> NUMERIC_FIELDS = Map.ofEntries(
+            Map.entry("amount", TransactionFact::getAmount),
+            Map.entry("mlScore", TransactionFact::getMlScore),
+            Map.entry("pageRank", TransactionFact::getPageRank),
+            Map.entry("communityId", TransactionFact::getCommunityId),
+            Map.entry("betweenness", TransactionFact::getBetweenness),
+            Map.entry("connectionCount", TransactionFact::getConnectionCount),
+            Map.entry("panTxnCount1h", TransactionFact::getPanTxnCount1h),
+            Map.entry("panAmountSum24h", TransactionFact::getPanAmountSum24h),
+            Map.entry("merchantAmountSum24h", TransactionFact::getMerchantAmountSum24h),
+            Map.entry("krs", TransactionFact::getKrs),
+            Map.entry("cra", TransactionFact::getCra),
+            Map.entry("trs", TransactionFact::getTrs));
+
+    private static final Map<String, Function<TransactionFact, String>> STRING_FIELDS = Map.of(
+            "merchantId", TransactionFact::getMerchantId,
+            "currency", TransactionFact::getCurrency,
+            "countryCode", TransactionFact::getCountryCode,
+            "channel", TransactionFact::getChannel);
+
+    private final List<CompiledRule> rules;
+    private final Map<String, EqualityIndex> equalityIndexes;
+    private final Map<String, ThresholdIndex> lowerBoundIndexes;
+    private final Map<String, ThresholdIndex> upperBoundIndexes;
+    private final int indexedCount;
+
+    private RulePredicateIndex(List<CompiledRule> rules, Map<String, EqualityIndex> equalityIndexes,
+            Map<String, ThresholdIndex> lowerBoundIndexes, Map<String, ThresholdIndex> upperBoundIndexes,
+            int indexedCount) {
+        this.rules = rules;
+        this.equalityIndexes = equalityIndexes;
+        this.lowerBoundIndexes = lowerBoundIndexes;
+        this.upperBoundIndexes = upperBoundIndexes;
+        this.indexedCount = indexedCount;
+    }
+
+    /**
+     * Build an index over rules in priority order
+     */
+    static RulePredicateIndex build(List<CompiledRule> rules) {
+        Map<String, EqualityIndex> equalityIndexes = new HashMap<>();
+        Map<String, ThresholdIndex.Builder> lowerBounds = new HashMap<>();
+        Map<String, ThresholdIndex.Builder> upperBounds = new HashMap<>();
+        int indexedCount = 0;
+
+        for (int i = 0; i < rules.size(); i++) {
+            Collection<Guard> guards = guards(rules.get(i).getExpression());
+            if (!guards.isEmpty()) {
+                indexedCount++;
+            }
+            for (Guard guard : guards) {
+                switch (guard.kind) {
+                    case EQUALS:
+                        equalityIndexes.computeIfAbsent(guard.field, f -> new EqualityIndex()).add(guard.text, i);
+                        break;
+                    case GREATER:
+                    case GREATER_OR_EQUAL:
+                        lowerBounds.computeIfAbsent(guard.field, f -> new ThresholdIndex.Builder())
+                                .add(guard.threshold, guard.kind == GuardKind.GREATER_OR_EQUAL, i);
+                        break;
+                    default:
+                        upperBounds.computeIfAbsent(guard.field, f -> new ThresholdIndex.Builder())
+                                .add(guard.threshold, guard.kind == GuardKind.LESS_OR_EQUAL, i);
+                        break;
+                }
+            }
+        }
+
+        Map<String, ThresholdIndex> lowerBoundIndexes = new HashMap<>();
+        lowerBounds.forEach((field, builder) -> lowerBoundIndexes.put(field, builder.build()));
+        Map<String, ThresholdIndex> upperBoundIndexes = new HashMap<>();
+        upperBounds.forEach((field, builder) -> upperBoundIndexes.put(field, builder.build()));
+
+        return new RulePredicateIndex(rules, equalityIndexes, lowerBoundIndexes, upperBoundIndexes,
+                indexedCount);
+    }
+
+    /**
+     * Rules that may match the fact, in priority order
+     */
+    List<CompiledRule> candidates(TransactionFact fact) {
+        BitSet selected = new BitSet(rules.size());
+        selected.set(0, rules.size());
+        // Scratch sets: rules whose guard on the current field holds / does not hold
+        BitSet holding = new BitSet(rules.size());
+        BitSet failing = new BitSet(rules.size());
+
+        for (Map.Entry<String, EqualityIndex> entry : equalityIndexes.entrySet()) {
+            String value = STRING_FIELDS.get(entry.getKey()).apply(fact);
+            EqualityIndex index = entry.getValue();
+            holding.clear();
+            if (value != null) {
+                BitSet matching = index.byValue.get(value);
+                if (matching != null) {
+                    holding.or(matching);
+                }
+            }
+            exclude(selected, index.guarded, holding, failing);
+        }
+        for (Map.Entry<String, ThresholdIndex> entry : lowerBoundIndexes.entrySet()) {
+            Number value = NUMERIC_FIELDS.get(entry.getKey()).apply(fact);
+            if (value != null) {
+                ThresholdIndex index = entry.getValue();
+                holding.clear();
+                index.selectLowerBounds(value.doubleValue(), holding);
+                exclude(selected, index.guarded, holding, failing);
+            }
+        }
+        for (Map.Entry<String, ThresholdIndex> entry : upperBoundIndexes.entrySet()) {
+            Number value = NUMERIC_FIELDS.get(entry.getKey()).apply(fact);
+            if (value != null) {
+                ThresholdIndex index = entry.getValue();
+                holding.clear();
+                index.selectUpperBounds(value.doubleValue(), holding);
+                exclude(selected, index.guarded, holding, failing);
+            }
+        }
+
+        List<CompiledRule> candidates = new ArrayList<>(selected.cardinality());
+        for (int i = selected.nextSetBit(0); i >= 0; i = selected.nextSetBit(i + 1)) {
+            candidates.add(rules.get(i));
+        }
+        return candidates;
+    }
+
+    int getIndexedCount() {
+        return indexedCount;
+    }
+
+    /**
+     * Drop the rules guarded on this field whose guard does not hold
+     */
+    private static void exclude(BitSet selected, BitSet guarded, BitSet holding, BitSet failing) {
+        failing.clear();
+        failing.or(guarded);
+        failing.andNot(holding);
+        selected.andNot(failing);
+    }
+
+    /**
+     * Indexable conjuncts of a rule, keeping the tightest one per field and direction
+     */
+    private static Collection<Guard> guards(Expression expression) {
+        if (!(expression instanceof SpelExpression)) {
+            return List.of();
+        }
+        List<SpelNode> conjuncts = new ArrayList<>();
+        flattenAnd(((SpelExpression) expression).getAST(), conjuncts);
+
+        Map<String, Guard> guards = new LinkedHashMap<>();
+        for (SpelNode conjunct : conjuncts) {
+            Guard guard = toGuard(conjunct);
+            if (guard != null) {
+                guards.merge(guard.field + ':' + guard.kind.direction(), guard, Guard::tighter);
+            }
+        }
+        return guards.values();
+    }
+
+    private static void flattenAnd(SpelNode node, List<SpelNode> conjuncts) {
+        if (node instanceof OpAnd) {
+            for (int i = 0; i < node.getChildCount(); i++) {
+                flattenAnd(node.getChild(i), conjuncts);
+            }
+        } else {
+            conjuncts.add(node);
+        }
+    }
+
+    private static Guard toGuard(SpelNode node) {
+        GuardKind kind;
+        if (node instanceof OpEQ) {
+            kind = GuardKind.EQUALS;
+        } else if (node instanceof OpGT) {
+            kind = GuardKind.GREATER;
+        } else if (node instanceof OpGE) {
+            kind = GuardKind.GREATER_OR_EQUAL;
+        } else if (node instanceof OpLT) {
+            kind = GuardKind.LESS;
+        } else if (node instanceof OpLE) {
+            kind = GuardKind.LESS_OR_EQUAL;
+        } else {
+            return null;
+        }
+        if (node.getChildCount() != 2) {
+            return null;
+        }
+
+        SpelNode left = node.getChild(0);
+        SpelNode right = node.getChild(1);
+        String field = fieldName(left);
+        SpelNode literal = right;
+        if (field == null) {
+            // literal OP field - mirror the comparison
+            field = fieldName(right);
+            literal = left;
+            kind = kind.mirrored();
+        }
+        if (field == null) {
+            return null;
+        }
+
+        if (kind == GuardKind.EQUALS) {
+            if (STRING_FIELDS.containsKey(field) && literal instanceof StringLiteral) {
+                Object value = ((StringLiteral) literal).getLiteralValue().getValue();
+                return value instanceof String ? Guard.equalTo(field, (String) value) : null;
+            }
+            return null;
+        }
+
+        Double threshold = numericLiteral(literal);
+        if (threshold == null || !NUMERIC_FIELDS.containsKey(field)) {
+            return null;
+        }
+        return Guard.bound(field, kind, threshold);
+    }
+
+    /**
+     * Field name for "field" or "#tx.field", null for anything else
+     */
+    private static String fieldName(SpelNode node) {
+        if (node instanceof PropertyOrFieldReference) {
+            return ((PropertyOrFieldReference) node).getName();
+        }
+        if (node instanceof CompoundExpression && node.getChildCount() == 2
+                && node.getChild(0) instanceof VariableReference
+                && "#tx".equals(node.getChild(0).toStringAST())
+                && node.getChild(1) instanceof PropertyOrFieldReference) {
+            return ((PropertyOrFieldReference) node.getChild(1)).getName();
+        }
+        return null;
+    }
+
+    private static Double numericLiteral(SpelNode node) {
+        if (node instanceof OpMinus && node.getChildCount() == 1) {
+            Double value = numericLiteral(node.getChild(0));
+            return value != null ? -value : null;
+        }
+        if (node instanceof Literal && !(node instanceof StringLiteral)) {
+            Object value = ((Literal) node).getLiteralValue().getValue();
+            if (value instanceof Number) {
+                return ((Number) value).doubleValue();
+            }
+        }
+        return null;
+    }
+
+    private enum GuardKind {
+        EQUALS, GREATER, GREATER_OR_EQUAL, LESS, LESS_OR_EQUAL;
+
+        /**
+         * Guards of the same field and direction share one index
+         */
+        String direction() {
+            switch (this) {
+                case GREATER:
+                case GREATER_OR_EQUAL:
+                    return "lower";
+                case LESS:
+                case LESS_OR_EQUAL:
+                    return "upper";
+                default:
+                    return "equals";
+            }
+        }
+
+        GuardKind mirrored() {
+            switch (this) {
+                case GREATER:
+                    return LESS;
+                case GREATER_OR_EQUAL:
+                    return LESS_OR_EQUAL;
+                case LESS:
+                    return GREATER;
+                case LESS_OR_EQUAL:
+                    return GREATER_OR_EQUAL;
+                default:
+                    return this;
+            }
+        }
+    }
+
+    private static final class Guard {
+        private final String field;
+        private final GuardKind kind;
+        private final String text;
+        private final double threshold;
+
+        private Guard(String field, GuardKind kind, String text, double threshold) {
+            this.field = field;
+            this.kind = kind;
+            this.text = text;
+            this.threshold = threshold;
+        }
+
+        static Guard equalTo(String field, String value) {
+            return new Guard(field, GuardKind.EQUALS, value, 0.0);
+        }
+
+        static Guard bound(String field, GuardKind kind, double threshold) {
+            return new Guard(field, kind, null, threshold);
+        }
+
+        /**
+         * Of two guards on the same field and direction, the one that holds for fewer
+         * values (two different equalities cannot both hold, so either will do)
+         */
+        static Guard tighter(Guard a, Guard b) {
+            if (a.kind == GuardKind.EQUALS) {
+                return a;
+            }
+            if (a.threshold != b.threshold) {
+                boolean lower = a.kind == GuardKind.GREATER || a.kind == GuardKind.GREATER_OR_EQUAL;
+                return (a.threshold > b.threshold) == lower ? a : b;
+            }
+            // Same threshold: the strict comparison excludes the threshold itself
+            return a.kind == GuardKind.GREATER || a.kind == GuardKind.LESS ? a : b;
+        }
+    }
+
+    private static final class EqualityIndex {
+        private final Map<String, BitSet> byValue = new HashMap<>();
+        private final BitSet guarded = new BitSet();
+
+        void add(String value, int rule) {
+            byValue.computeIfAbsent(value, v -> new BitSet()).set(rule);
+            guarded.set(rule);
+        }
+    }
+
+    /**
+     * Thresholds for one field and direction, sorted ascending
+     */
+    private static final class ThresholdIndex {
+        private final double[] thresholds;
+        private final boolean[] inclusive;
+        private final int[] ruleIndexes;
+        private final BitSet guarded = new BitSet();
+
+        private ThresholdIndex(double[] thresholds, boolean[] inclusive, int[] ruleIndexes) {
+            this.thresholds = thresholds;
+            this.inclusive = inclusive;
+            this.ruleIndexes = ruleIndexes;
+            for (int rule : ruleIndexes) {
+                guarded.set(rule);
+            }
+        }
+
+        /**
+         * Select rules guarded by "field > t" / "field >= t" that hold for v
+         */
+        void selectLowerBounds(double v, BitSet selected) {
+            int end = firstAtLeast(v);
+            for (int i = 0; i < end; i++) {
+                selected.set(ruleIndexes[i]);
+            }
+            for (int i = end; i < thresholds.length && thresholds[i] == v; i++) {
+                if (inclusive[i]) {
+                    selected.set(ruleIndexes[i]);
+                }
+            }
+        }
+
+        /**
+         * Select rules guarded by "field < t" / "field <= t" that hold for v
+         */
+        void selectUpperBounds(double v, BitSet selected) {
+            int i = firstAtLeast(v);
+            for (; i < thresholds.length && thresholds[i] == v; i++) {
+                if (inclusive[i]) {
+                    selected.set(ruleIndexes[i]);
+                }
+            }
+            for (; i < thresholds.length; i++) {
+                selected.set(ruleIndexes[i]);
+            }
+        }
+
+        private int firstAtLeast(double v) {
+            int low = 0;
+            int high = thresholds.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (thresholds[mid] < v) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private static final class Builder {
+            private final List<double[]> entries = new ArrayList<>();
+
+            void add(double threshold, boolean inclusive, int rule) {
+                entries.add(new double[] { threshold, inclusive ? 1.0 : 0.0, rule });
+            }
+
+            ThresholdIndex build() {
+                double[][] sorted = entries.toArray(new double[0][]);
+                Arrays.sort(sorted, (a, b) -> Double.compare(a[0], b[0]));
+                double[] thresholds = new double[sorted.length];
+                boolean[] inclusive = new boolean[sorted.length];
+                int[] ruleIndexes = new int[sorted.length];
+                for (int i = 0; i < sorted.length; i++) {
+                    thresholds[i] = sorted[i][0];
+                    inclusive[i] = sorted[i][1] != 0.0;
+                    ruleIndexes[i] = (int) sorted[i][2];
+                }
+                return new ThresholdIndex(thresholds, inclusive, ruleIndexes);
+            }
+        }
+    }
+}
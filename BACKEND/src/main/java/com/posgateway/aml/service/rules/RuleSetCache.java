@@ -0,0 +1,273 @@
+package com.posgateway.aml.service.rules;
+
+import com.posgateway.aml.entity.rules.RuleDefinition;
+import com.posgateway.aml.repository.rules.RuleDefinitionRepository;
+import com.posgateway.aml.rules.TransactionFact;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.expression.Expression;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Rule Set Cache
+ * Immutable snapshot of the enabled RuleDefinitions with SpEL expressions parsed
+ * once, so rule evaluation does no database I/O.
+ *
+ * The snapshot is rebuilt on RuleDefinitionChangedEvent and, as a safety net for
+ * changes made through other nodes, on a fixed interval when the stored rules differ.
+ * Each snapshot carries a RulePredicateIndex so a transaction only evaluates rules
+ * whose guard predicate can match.
+ *
+ * Evaluation time is recorded per rule and outcome (match / no_match), tagged with the
+ * rule id so renames keep their series. Only the first rules.evaluation.metrics.max.rules
+ * SpEL rules in priority order get their own series, the rest share rule="other", and
+ * series of deleted or disabled rules are removed on reload, so the number of series
+ * stays bounded however many rules are defined.
+ */
+@Service
+public class RuleSetCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(RuleSetCache.class);
+
+    // rule tag of the SpEL rules past rules.evaluation.metrics.max.rules
+    static final String OTHER_RULES = "other";
+
+    private final RuleDefinitionRepository ruleRepository;
+    private final SpelRuleExecutor spelExecutor;
+    private final MeterRegistry meterRegistry;
+
+    private Timer otherMatchTimer;
+    private Timer otherNoMatchTimer;
+    // Per-rule timers (match, no_match) by rule id, guarded by reloadLock
+    private final Map<Long, Timer[]> ruleTimers = new HashMap<>();
+    private final AtomicReference<RuleSet> current = new AtomicReference<>(RuleSet.EMPTY);
+    private final Object reloadLock = new Object();
+
+    @Value("${rules.evaluation.histogram.enabled:false}")
+    private boolean histogramEnabled;
+
+    @Value("${rules.evaluation.metrics.max.rules:200}")
+    private int maxRuleTimers;
+
+    @Value("${rules.index.enabled:true}")
+    private boolean indexEnabled;
+
+    @Autowired
+    public RuleSetCache(RuleDefinitionRepository ruleRepository, SpelRuleExecutor spelExecutor,
+            MeterRegistry meterRegistry) {
+        this.ruleRepository = ruleRepository;
+        this.spelExecutor = spelExecutor;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        otherMatchTimer = evaluationTimer(OTHER_RULES, "match");
+        otherNoMatchTimer = evaluationTimer(OTHER_RULES, "no_match");
+        reload();
+    }
+
+    private Timer evaluationTimer(String rule, String outcome) {
+        return Timer.builder("aml_rule_evaluation_time")
+                .description("Evaluation time of a single dynamic rule")
+                .tag("rule", rule)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram(histogramEnabled)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Timer for an evaluation of the rule with the given outcome
+     */
+    public Timer getEvaluationTimer(CompiledRule rule, boolean matched) {
+        if (rule.timers == null) {
+            return matched ? otherMatchTimer : otherNoMatchTimer;
+        }
+        return rule.timers[matched ? 0 : 1];
+    }
+
+    /**
+     * Per-rule timers for the first maxRuleTimers SpEL rules; null (rule="other") past the cap
+     */
+    private Timer[] timersFor(RuleDefinition rule, int spelRules) {
+        if (rule.getId() == null || spelRules > maxRuleTimers) {
+            return null;
+        }
+        return ruleTimers.computeIfAbsent(rule.getId(), id -> new Timer[] {
+                evaluationTimer(String.valueOf(id), "match"), evaluationTimer(String.valueOf(id), "no_match") });
+    }
+
+    /**
+     * Current snapshot of enabled rules, ordered by priority (highest first)
+     */
+    public RuleSet getRuleSet() {
+        return current.get();
+    }
+
+    @EventListener
+    public void onRuleDefinitionChanged(RuleDefinitionChangedEvent event) {
+        reload();
+    }
+
+    @Scheduled(fixedDelayString = "${rules.cache.refresh.interval.ms:60000}",
+            initialDelayString = "${rules.cache.refresh.interval.ms:60000}")
+    public void refreshIfChanged() {
+        reload();
+    }
+
+    /**
+     * Rebuild the snapshot from the database; a no-op when nothing changed
+     */
+    public void reload() {
+        synchronized (reloadLock) {
+            try {
+                List<RuleDefinition> rules = ruleRepository.findByEnabledTrueOrderByPriorityDesc();
+                String fingerprint = fingerprint(rules);
+                RuleSet previous = current.get();
+                if (fingerprint.equals(previous.fingerprint)) {
+                    return;
+                }
+
+                List<CompiledRule> compiled = new ArrayList<>(rules.size());
+                Set<Long> timed = new HashSet<>();
+                int spelRules = 0;
+                for (RuleDefinition rule : rules) {
+                    Expression expression = null;
+                    Timer[] timers = null;
+                    if ("SPEL".equals(rule.getRuleType())) {
+                        expression = parse(rule);
+                        if (expression == null) {
+                            continue;
+                        }
+                        spelRules++;
+                        timers = timersFor(rule, spelRules);
+                        if (timers != null) {
+                            timed.add(rule.getId());
+                        }
+                    }
+                    compiled.add(new CompiledRule(rule, expression, timers));
+                }
+                removeTimersExcept(timed);
+
+                List<CompiledRule> snapshot = Collections.unmodifiableList(compiled);
+                RulePredicateIndex index = indexEnabled ? RulePredicateIndex.build(snapshot) : null;
+                current.set(new RuleSet(snapshot, index, fingerprint));
+                logger.info("Rule set reloaded: {} enabled rules ({} SpEL, {} indexed)", compiled.size(), spelRules,
+                        index != null ? index.getIndexedCount() : 0);
+            } catch (Exception e) {
+                logger.error("Failed to reload rule set - keeping previous snapshot: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Drop the series of rules that were deleted, disabled or pushed past the cap
+     */
+    private void removeTimersExcept(Set<Long> ruleIds) {
+        ruleTimers.entrySet().removeIf(entry -> {
+            if (ruleIds.contains(entry.getKey())) {
+                return false;
+            }
+            for (Timer timer : entry.getValue()) {
+                meterRegistry.remove(timer);
+            }
+            return true;
+        });
+    }
+
+    private Expression parse(RuleDefinition rule) {
+        if (rule.getRuleExpression() == null || rule.getRuleExpression().isBlank()) {
+            return null;
+        }
+        try {
+            return spelExecutor.compile(rule.getRuleExpression());
+        } catch (Exception e) {
+            logger.error("Skipping SpEL rule '{}' - invalid expression: {}", rule.getName(), e.getMessage());
+            return null;
+        }
+    }
+
+    private static String fingerprint(List<RuleDefinition> rules) {
+        StringBuilder sb = new StringBuilder(rules.size() * 24);
+        for (RuleDefinition rule : rules) {
+            sb.append(rule.getId()).append('@').append(rule.getUpdatedAt()).append(';');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Rule Set snapshot
+     */
+    public static final class RuleSet {
+        static final RuleSet EMPTY = new RuleSet(Collections.emptyList(), null, "");
+
+        private final List<CompiledRule> rules;
+        private final RulePredicateIndex index;
+        private final String fingerprint;
+
+        RuleSet(List<CompiledRule> rules, RulePredicateIndex index, String fingerprint) {
+            this.rules = rules;
+            this.index = index;
+            this.fingerprint = fingerprint;
+        }
+
+        public List<CompiledRule> getRules() {
+            return rules;
+        }
+
+        /**
+         * Rules that may match the fact, in priority order (all rules when indexing is off)
+         */
+        public List<CompiledRule> candidates(TransactionFact fact) {
+            return index != null ? index.candidates(fact) : rules;
+        }
+    }
+
+    /**
+     * A rule with its parsed expression (null for non-SpEL rules) and its evaluation
+     * timers (null when it shares rule="other")
+     */
+    public static final class CompiledRule {
+        private final RuleDefinition definition;
+        private final Expression expression;
+        private final Timer[] timers;
+
+        CompiledRule(RuleDefinition definition, Expression expression) {
+            this(definition, expression, null);
+        }
+
+        CompiledRule(RuleDefinition definition, Expression expression, Timer[] timers) {
+            this.definition = definition;
+            this.expression = expression;
+            this.timers = timers;
+        }
+
+        public RuleDefinition getDefinition() {
+            return definition;
+        }
+
+        public String getName() {
+            return definition.getName();
+        }
+
+        public Expression getExpression() {
+            return expression;
+        }
+    }
+}
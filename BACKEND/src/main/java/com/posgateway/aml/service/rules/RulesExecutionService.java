@@ -1,19 +1,19 @@
 package com.posgateway.aml.service.rules;
 
 import com.posgateway.aml.entity.rules.RuleDefinition;
-import com.posgateway.aml.repository.rules.RuleDefinitionRepository;
 import com.posgateway.aml.rules.RuleEvaluationResult;
 import com.posgateway.aml.rules.TransactionFact;
+import com.posgateway.aml.service.rules.RuleSetCache.CompiledRule;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.expression.EvaluationContext;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Unified Rules Execution Service.
@@ -24,15 +24,15 @@ public class RulesExecutionService {
 
     private static final Logger logger = LoggerFactory.getLogger(RulesExecutionService.class);
 
-    private final RuleDefinitionRepository ruleRepository;
+    private final RuleSetCache ruleSetCache;
     private final DroolsRulesService droolsService;
     private final SpelRuleExecutor spelExecutor;
 
     @Autowired
-    public RulesExecutionService(RuleDefinitionRepository ruleRepository,
+    public RulesExecutionService(RuleSetCache ruleSetCache,
                                  DroolsRulesService droolsService,
                                  SpelRuleExecutor spelExecutor) {
-        this.ruleRepository = ruleRepository;
+        this.ruleSetCache = ruleSetCache;
         this.droolsService = droolsService;
         this.spelExecutor = spelExecutor;
     }
@@ -51,20 +51,23 @@ public class RulesExecutionService {
         // 1. Convert to TransactionFact (Common Data Model)
         TransactionFact fact = droolsService.buildTransactionFactPublic(txnId, features, mlScore);
 
-        // 2. Load Enabled Rules (In production, cache these)
-        // Optimization: Use a cached service for rules list
-        List<RuleDefinition> allRules = ruleRepository.findByEnabledTrueOrderByPriorityDesc();
+        // 2. Enabled rules from the in-memory snapshot (no DB I/O), narrowed by the predicate index
+        List<CompiledRule> allRules = ruleSetCache.getRuleSet().candidates(fact);
+        EvaluationContext context = spelExecutor.createContext(fact);
 
         int rulesExecuted = 0;
         List<String> triggeredRuleNames = new ArrayList<>();
         List<String> reasons = new ArrayList<>();
 
         // 3. Execute Rules
-        for (RuleDefinition rule : allRules) {
+        for (CompiledRule compiled : allRules) {
+            RuleDefinition rule = compiled.getDefinition();
             boolean matched = false;
 
             if ("SPEL".equals(rule.getRuleType())) {
-                matched = spelExecutor.evaluate(rule, fact);
+                long start = System.nanoTime();
+                matched = spelExecutor.evaluate(rule.getName(), compiled.getExpression(), context);
+                ruleSetCache.getEvaluationTimer(compiled, matched).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
             } else if ("DROOLS_DRL".equals(rule.getRuleType())) {
                 // Drools rules are typically executed in batch via DroolsService,
                 // but if defined individually, we might handle them differently.
@@ -2,10 +2,15 @@ package com.posgateway.aml.service.rules;
 
 import com.posgateway.aml.entity.rules.RuleDefinition;
 import com.posgateway.aml.rules.TransactionFact;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.expression.EvaluationContext;
 import org.springframework.expression.Expression;
 import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
-import org.springframework.expression.spel.support.StandardEvaluationContext;
+import org.springframework.expression.spel.support.SimpleEvaluationContext;
 import org.springframework.stereotype.Service;
 
 import java.util.Map;
@@ -14,11 +19,19 @@ import java.util.concurrent.ConcurrentHashMap;
 /**
  * Executes SpEL (Spring Expression Language) based rules.
  * Thread-safe implementation with expression caching.
+ *
+ * Expressions are parsed in IMMEDIATE compiler mode, so after their first
+ * evaluation they run as generated bytecode instead of walking the AST.
+ * Rules are evaluated in a SimpleEvaluationContext: read-only property access and
+ * instance methods on the fact, no type references, constructors or bean lookups.
  */
 @Service
 public class SpelRuleExecutor {
 
-    private final ExpressionParser parser = new SpelExpressionParser();
+    private static final Logger logger = LoggerFactory.getLogger(SpelRuleExecutor.class);
+
+    private final ExpressionParser parser = new SpelExpressionParser(
+            new SpelParserConfiguration(SpelCompilerMode.IMMEDIATE, SpelRuleExecutor.class.getClassLoader()));
     private final Map<String, Expression> expressionCache = new ConcurrentHashMap<>();
 
     /**
@@ -35,25 +48,50 @@ public class SpelRuleExecutor {
 
         try {
             // Get or parse expression
-            Expression exp = expressionCache.computeIfAbsent(rule.getRuleExpression(), parser::parseExpression);
-
-            // Create context with transaction as root object (or variable)
-            StandardEvaluationContext context = new StandardEvaluationContext(fact);
-            // Allow accessing properties directly or via #tx alias
-            context.setVariable("tx", fact); 
+            Expression exp = expressionCache.computeIfAbsent(rule.getRuleExpression(), this::compile);
+            return evaluate(rule.getName(), exp, createContext(fact));
+        } catch (Exception e) {
+            // Log error but don't fail the whole transaction
+            logger.warn("Error evaluating SpEL rule '{}': {}", rule.getName(), e.getMessage());
+            return false;
+        }
+    }
 
-            // Evaluates to boolean
-            Boolean result = exp.getValue(context, Boolean.class);
+    /**
+     * Evaluate a pre-parsed expression in a context built by createContext()
+     */
+    public boolean evaluate(String ruleName, Expression expression, EvaluationContext context) {
+        try {
+            Boolean result = expression.getValue(context, Boolean.class);
             return result != null && result;
-
         } catch (Exception e) {
-            // Log error but don't fail the whole transaction
-            // Ideally use a Logger here
-            System.err.println("Error evaluating SpEL rule '" + rule.getName() + "': " + e.getMessage());
+            logger.warn("Error evaluating SpEL rule '{}': {}", ruleName, e.getMessage());
             return false;
         }
     }
-    
+
+    /**
+     * Parse an expression for repeated evaluation
+     *
+     * @throws org.springframework.expression.ParseException if the expression is invalid
+     */
+    public Expression compile(String expression) {
+        return parser.parseExpression(expression);
+    }
+
+    /**
+     * Build the evaluation context for one transaction, shared by every rule evaluated against it.
+     * The fact is the root object and is also available as #tx.
+     */
+    public EvaluationContext createContext(TransactionFact fact) {
+        SimpleEvaluationContext context = SimpleEvaluationContext.forReadOnlyDataBinding()
+                .withInstanceMethods()
+                .withRootObject(fact)
+                .build();
+        context.setVariable("tx", fact);
+        return context;
+    }
+
     /**
      * Clear cache (useful when reloading rules)
      */
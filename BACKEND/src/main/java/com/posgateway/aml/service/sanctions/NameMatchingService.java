@@ -1,10 +1,13 @@
 package com.posgateway.aml.service.sanctions;
 
 import org.apache.commons.codec.language.DoubleMetaphone;
-import org.apache.commons.text.similarity.LevenshteinDistance;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
 /**
  * Name Matching Service using hybrid Double Metaphone + Levenshtein approach
  * 
@@ -12,13 +15,20 @@ import org.springframework.stereotype.Service;
  * 1. Generate phonetic codes (Double Metaphone) for fast pre-filtering
  * 2. Calculate exact similarity (Levenshtein Distance) for precise scoring
  * 3. Combined approach provides both speed and accuracy
+ *
+ * Names are normalized once per comparison into per-thread char buffers and scored with
+ * the NameSimilarity kernels: a threshold-bounded edit distance where only the match
+ * decision is needed, the bit-parallel variant where the exact distance is reported.
  */
 @Service
 public class NameMatchingService {
     private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(NameMatchingService.class);
 
+    // Upper-casing can turn one char into up to three (e.g. the "ffi" ligature)
+    private static final int MAX_CASE_EXPANSION = 3;
+
     private final DoubleMetaphone doubleMetaphone;
-    private final LevenshteinDistance levenshteinDistance;
+    private final ThreadLocal<NameSimilarity.Scratch> scratch = ThreadLocal.withInitial(NameSimilarity.Scratch::new);
 
     @Value("${sanctions.matching.levenshtein.threshold:3}")
     private int levenshteinThreshold;
@@ -29,7 +39,6 @@ public class NameMatchingService {
     public NameMatchingService() {
         this.doubleMetaphone = new DoubleMetaphone();
         this.doubleMetaphone.setMaxCodeLen(10); // Longer codes for better accuracy
-        this.levenshteinDistance = new LevenshteinDistance();
     }
 
     /**
@@ -66,10 +75,13 @@ public class NameMatchingService {
             return Integer.MAX_VALUE;
         }
 
-        String cleaned1 = cleanName(name1);
-        String cleaned2 = cleanName(name2);
+        NameSimilarity.Scratch s = scratch.get();
+        char[] chars1 = s.chars1(name1.length() * MAX_CASE_EXPANSION);
+        int length1 = normalizeInto(name1, chars1);
+        char[] chars2 = s.chars2(name2.length() * MAX_CASE_EXPANSION);
+        int length2 = normalizeInto(name2, chars2);
 
-        return levenshteinDistance.apply(cleaned1, cleaned2);
+        return NameSimilarity.levenshtein(chars1, length1, chars2, length2, s);
     }
 
     /**
@@ -81,21 +93,37 @@ public class NameMatchingService {
             return 0.0;
         }
 
-        String cleaned1 = cleanName(name1);
-        String cleaned2 = cleanName(name2);
+        NameSimilarity.Scratch s = scratch.get();
+        char[] chars1 = s.chars1(name1.length() * MAX_CASE_EXPANSION);
+        int length1 = normalizeInto(name1, chars1);
+        char[] chars2 = s.chars2(name2.length() * MAX_CASE_EXPANSION);
+        int length2 = normalizeInto(name2, chars2);
 
-        if (cleaned1.equals(cleaned2)) {
-            return 1.0;
+        int maxLength = Math.max(length1, length2);
+        if (maxLength == 0) {
+            return 1.0; // Both names clean to the same (empty) string
         }
 
-        int distance = levenshteinDistance.apply(cleaned1, cleaned2);
-        int maxLength = Math.max(cleaned1.length(), cleaned2.length());
+        int distance = NameSimilarity.levenshtein(chars1, length1, chars2, length2, s);
+        return 1.0 - ((double) distance / maxLength);
+    }
 
-        if (maxLength == 0) {
+    /**
+     * Calculate Jaro-Winkler similarity (0.0 to 1.0)
+     * Weighs matching prefixes, which suits short names and transposed letters
+     */
+    public double calculateJaroWinkler(String name1, String name2) {
+        if (name1 == null || name2 == null) {
             return 0.0;
         }
 
-        return 1.0 - ((double) distance / maxLength);
+        NameSimilarity.Scratch s = scratch.get();
+        char[] chars1 = s.chars1(name1.length() * MAX_CASE_EXPANSION);
+        int length1 = normalizeInto(name1, chars1);
+        char[] chars2 = s.chars2(name2.length() * MAX_CASE_EXPANSION);
+        int length2 = normalizeInto(name2, chars2);
+
+        return NameSimilarity.jaroWinkler(chars1, length1, chars2, length2, s);
     }
 
     /**
@@ -109,36 +137,20 @@ public class NameMatchingService {
             return false;
         }
 
-        // Step 1: Check phonetic match (fast pre-filter)
-        String phonetic1 = generatePhoneticCode(name1);
-        String phonetic2 = generatePhoneticCode(name2);
-
-        boolean phoneticMatch = phonetic1.equals(phonetic2);
-
-        // Also check alternate phonetic codes
-        if (!phoneticMatch) {
-            String alt1 = generateAlternatePhoneticCode(name1);
-            String alt2 = generateAlternatePhoneticCode(name2);
-            phoneticMatch = alt1.equals(alt2) || phonetic1.equals(alt2) || alt1.equals(phonetic2);
-        }
+        String cleaned1 = cleanName(name1);
+        String cleaned2 = cleanName(name2);
 
-        // If no phonetic match, likely not a match
-        if (!phoneticMatch) {
+        // Step 1: Check phonetic match (fast pre-filter)
+        if (!isPhoneticMatch(cleaned1, cleaned2)) {
             return false;
         }
 
-        // Step 2: Calculate Levenshtein distance for precise matching
-        int distance = calculateLevenshteinDistance(name1, name2);
-
-        // Step 3: Calculate similarity score
-        double similarityScore = calculateSimilarityScore(name1, name2);
-
-        // Match if distance is within threshold OR similarity is high enough
-        boolean isMatch = distance <= levenshteinThreshold || similarityScore >= similarityThreshold;
+        // Step 2: Edit distance, bounded by the largest distance that can still match
+        int distance = boundedMatchDistance(cleaned1, cleaned2);
+        boolean isMatch = distance >= 0;
 
         if (isMatch) {
-            log.debug("Name match found: '{}' <-> '{}' (distance={}, similarity={:.2f})",
-                    name1, name2, distance, similarityScore);
+            log.debug("Name match found: '{}' <-> '{}' (distance={})", name1, name2, distance);
         }
 
         return isMatch;
@@ -152,24 +164,80 @@ public class NameMatchingService {
             return new MatchResult(name1, name2, "", "", false, Integer.MAX_VALUE, 0.0, false);
         }
 
-        String phonetic1 = generatePhoneticCode(name1);
-        String phonetic2 = generatePhoneticCode(name2);
-        boolean phoneticMatch = phonetic1.equals(phonetic2);
+        String cleaned1 = cleanName(name1);
+        String cleaned2 = cleanName(name2);
+        String phonetic1 = generatePhoneticCodeNormalized(cleaned1, false);
+        String phonetic2 = generatePhoneticCodeNormalized(cleaned2, false);
+        boolean phoneticMatch = isPhoneticMatch(cleaned1, phonetic1, cleaned2, phonetic2);
 
-        // Also check alternate phonetic codes
-        if (!phoneticMatch) {
-            String alt1 = generateAlternatePhoneticCode(name1);
-            String alt2 = generateAlternatePhoneticCode(name2);
-            phoneticMatch = alt1.equals(alt2) || phonetic1.equals(alt2) || alt1.equals(phonetic2);
-        }
+        NameSimilarity.Scratch s = scratch.get();
+        char[] chars1 = s.chars1(cleaned1.length());
+        cleaned1.getChars(0, cleaned1.length(), chars1, 0);
+        char[] chars2 = s.chars2(cleaned2.length());
+        cleaned2.getChars(0, cleaned2.length(), chars2, 0);
+
+        int distance = NameSimilarity.levenshtein(chars1, cleaned1.length(), chars2, cleaned2.length(), s);
+        int maxLength = Math.max(cleaned1.length(), cleaned2.length());
+        double similarityScore = maxLength == 0 ? 1.0 : 1.0 - ((double) distance / maxLength);
+        double jaroWinkler = NameSimilarity.jaroWinkler(chars1, cleaned1.length(), chars2, cleaned2.length(), s);
 
-        int distance = calculateLevenshteinDistance(name1, name2);
-        double similarityScore = calculateSimilarityScore(name1, name2);
-        
         // Calculate match directly without recursion
         boolean isMatch = phoneticMatch && (distance <= levenshteinThreshold || similarityScore >= similarityThreshold);
 
-        return new MatchResult(name1, name2, phonetic1, phonetic2, phoneticMatch, distance, similarityScore, isMatch);
+        return new MatchResult(name1, name2, phonetic1, phonetic2, phoneticMatch, distance, similarityScore,
+                jaroWinkler, isMatch);
+    }
+
+    /**
+     * Match one query against many candidate names
+     * The query is normalized and encoded once; candidates are normalized into reused
+     * buffers and only those within the edit distance bound are phonetically encoded.
+     *
+     * @return results for the matching candidates, in candidate order
+     */
+    public List<MatchResult> matchAll(String query, Collection<String> candidates) {
+        List<MatchResult> results = new ArrayList<>();
+        if (query == null || candidates == null || candidates.isEmpty()) {
+            return results;
+        }
+
+        String cleanedQuery = cleanName(query);
+        char[] queryChars = cleanedQuery.toCharArray();
+        int queryLength = queryChars.length;
+        String queryPhonetic = generatePhoneticCodeNormalized(cleanedQuery, false);
+        String queryAlternate = generatePhoneticCodeNormalized(cleanedQuery, true);
+
+        NameSimilarity.Scratch s = scratch.get();
+        for (String candidate : candidates) {
+            if (candidate == null) {
+                continue;
+            }
+            char[] chars = s.chars2(candidate.length() * MAX_CASE_EXPANSION);
+            int length = normalizeInto(candidate, chars);
+
+            int maxLength = Math.max(queryLength, length);
+            int distance = NameSimilarity.boundedLevenshtein(queryChars, queryLength, chars, length,
+                    maxMatchDistance(maxLength), s);
+            if (distance < 0) {
+                continue;
+            }
+            double similarityScore = maxLength == 0 ? 1.0 : 1.0 - ((double) distance / maxLength);
+            if (distance > levenshteinThreshold && similarityScore < similarityThreshold) {
+                continue;
+            }
+
+            String cleaned = new String(chars, 0, length);
+            String phonetic = generatePhoneticCodeNormalized(cleaned, false);
+            String alternate = generatePhoneticCodeNormalized(cleaned, true);
+            if (!phoneticCodesMatch(queryPhonetic, queryAlternate, phonetic, alternate)) {
+                continue;
+            }
+
+            double jaroWinkler = NameSimilarity.jaroWinkler(queryChars, queryLength, chars, length, s);
+            results.add(new MatchResult(query, candidate, queryPhonetic, phonetic, true, distance,
+                    similarityScore, jaroWinkler, true));
+        }
+        return results;
     }
 
     /**
@@ -179,14 +247,155 @@ public class NameMatchingService {
      * - Remove extra whitespace
      */
     private String cleanName(String name) {
+        return normalizeName(name);
+    }
+
+    /**
+     * Normalize a name once for repeated matching (uppercase A-Z/0-9, single spaces).
+     * Same result as the former regex-based cleaning, without the regex passes.
+     */
+    public String normalizeName(String name) {
         if (name == null) {
             return "";
         }
+        char[] chars = new char[name.length() * MAX_CASE_EXPANSION];
+        int length = normalizeInto(name, chars);
+        return new String(chars, 0, length);
+    }
 
-        return name.toUpperCase()
-                .replaceAll("[^A-Z0-9\\s]", "") // Remove special chars
-                .replaceAll("\\s+", " ") // Normalize whitespace
-                .trim();
+    /**
+     * Normalize into a caller-supplied buffer of at least MAX_CASE_EXPANSION times
+     * the name length
+     *
+     * @return number of chars written
+     */
+    static int normalizeInto(String name, char[] out) {
+        if (name == null) {
+            return 0;
+        }
+        int length = 0;
+        boolean pendingSpace = false;
+        String upper = null;
+        int n = name.length();
+        for (int i = 0; i < n; i++) {
+            if (name.charAt(i) >= 128) {
+                // Locale-aware case mapping can change the length; take the slow path
+                upper = name.toUpperCase();
+                n = upper.length();
+                break;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            char c = upper != null ? upper.charAt(i) : name.charAt(i);
+            if (c >= 'a' && c <= 'z' && upper == null) {
+                c = (char) (c - ('a' - 'A'));
+            }
+            if ((c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')) {
+                if (pendingSpace && length > 0) {
+                    out[length++] = ' ';
+                }
+                pendingSpace = false;
+                out[length++] = c;
+            } else if (isRegexWhitespace(c)) {
+                pendingSpace = true;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Phonetic code of a name already passed through normalizeName()
+     */
+    public String generatePhoneticCodeNormalized(String normalized, boolean alternate) {
+        if (normalized == null || normalized.isEmpty()) {
+            return "";
+        }
+        return doubleMetaphone.doubleMetaphone(normalized, alternate);
+    }
+
+    /**
+     * Similarity score of two normalized names, or -1 when it is below minScore.
+     * The edit distance is computed with a cutoff, so clear mismatches exit early.
+     */
+    public double calculateNormalizedSimilarity(String normalized1, String normalized2, double minScore) {
+        if (normalized1.equals(normalized2)) {
+            return 1.0; // Same as calculateSimilarityScore, including two empty names
+        }
+        int length1 = normalized1.length();
+        int length2 = normalized2.length();
+        int maxLength = Math.max(length1, length2);
+        int maxDistance = (int) Math.floor((1.0 - minScore) * maxLength + 1e-9);
+        if (Math.abs(length1 - length2) > maxDistance) {
+            return -1.0;
+        }
+
+        NameSimilarity.Scratch s = scratch.get();
+        char[] chars1 = s.chars1(length1);
+        normalized1.getChars(0, length1, chars1, 0);
+        char[] chars2 = s.chars2(length2);
+        normalized2.getChars(0, length2, chars2, 0);
+
+        int distance = NameSimilarity.boundedLevenshtein(chars1, length1, chars2, length2, maxDistance, s);
+        if (distance < 0) {
+            return -1.0;
+        }
+        double score = 1.0 - ((double) distance / maxLength);
+        return score >= minScore ? score : -1.0;
+    }
+
+    private boolean isPhoneticMatch(String cleaned1, String cleaned2) {
+        return isPhoneticMatch(cleaned1, generatePhoneticCodeNormalized(cleaned1, false),
+                cleaned2, generatePhoneticCodeNormalized(cleaned2, false));
+    }
+
+    private boolean isPhoneticMatch(String cleaned1, String phonetic1, String cleaned2, String phonetic2) {
+        if (phonetic1.equals(phonetic2)) {
+            return true;
+        }
+        // Also check alternate phonetic codes
+        return phoneticCodesMatch(phonetic1, generatePhoneticCodeNormalized(cleaned1, true),
+                phonetic2, generatePhoneticCodeNormalized(cleaned2, true));
+    }
+
+    private static boolean phoneticCodesMatch(String phonetic1, String alt1, String phonetic2, String alt2) {
+        return phonetic1.equals(phonetic2) || alt1.equals(alt2) || phonetic1.equals(alt2) || alt1.equals(phonetic2);
+    }
+
+    /**
+     * Edit distance of two cleaned names if they match on distance or similarity, otherwise -1
+     */
+    private int boundedMatchDistance(String cleaned1, String cleaned2) {
+        int length1 = cleaned1.length();
+        int length2 = cleaned2.length();
+        int maxLength = Math.max(length1, length2);
+
+        NameSimilarity.Scratch s = scratch.get();
+        char[] chars1 = s.chars1(length1);
+        cleaned1.getChars(0, length1, chars1, 0);
+        char[] chars2 = s.chars2(length2);
+        cleaned2.getChars(0, length2, chars2, 0);
+
+        int distance = NameSimilarity.boundedLevenshtein(chars1, length1, chars2, length2,
+                maxMatchDistance(maxLength), s);
+        if (distance < 0) {
+            return -1;
+        }
+        boolean matches = distance <= levenshteinThreshold
+                || (maxLength == 0 ? 1.0 : 1.0 - ((double) distance / maxLength)) >= similarityThreshold;
+        return matches ? distance : -1;
+    }
+
+    /**
+     * Largest distance accepted by either the absolute or the relative threshold
+     */
+    private int maxMatchDistance(int maxLength) {
+        int relative = (int) Math.floor((1.0 - similarityThreshold) * maxLength + 1e-9);
+        return Math.max(levenshteinThreshold, relative);
+    }
+
+    private static boolean isRegexWhitespace(char c) {
+        // Same set as \s in java.util.regex
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
     }
 
     /**
@@ -200,10 +409,18 @@ public class NameMatchingService {
         private boolean phoneticMatch;
         private int levenshteinDistance;
         private double similarityScore;
+        private double jaroWinklerScore;
         private boolean isMatch;
 
         public MatchResult(String name1, String name2, String phoneticCode1, String phoneticCode2,
                 boolean phoneticMatch, int levenshteinDistance, double similarityScore, boolean isMatch) {
+            this(name1, name2, phoneticCode1, phoneticCode2, phoneticMatch, levenshteinDistance, similarityScore,
+                    0.0, isMatch);
+        }
+
+        public MatchResult(String name1, String name2, String phoneticCode1, String phoneticCode2,
+                boolean phoneticMatch, int levenshteinDistance, double similarityScore, double jaroWinklerScore,
+                boolean isMatch) {
             this.name1 = name1;
             this.name2 = name2;
             this.phoneticCode1 = phoneticCode1;
@@ -211,6 +428,7 @@ public class NameMatchingService {
             this.phoneticMatch = phoneticMatch;
             this.levenshteinDistance = levenshteinDistance;
             this.similarityScore = similarityScore;
+            this.jaroWinklerScore = jaroWinklerScore;
             this.isMatch = isMatch;
         }
 
@@ -242,6 +460,10 @@ public class NameMatchingService {
             return similarityScore;
         }
 
+        public double getJaroWinklerScore() {
+            return jaroWinklerScore;
+        }
+
         public boolean isMatch() {
             return isMatch;
         }
@@ -0,0 +1,286 @@
+package com.posgateway.aml.service.sanctions;
+
+import java.util.Arrays;
+
+/**
+ * Name Similarity
+ * Allocation-free edit distance and Jaro-Winkler kernels over char arrays.
+ *
+ * Inputs are names already normalized by NameMatchingService (A-Z, 0-9 and single
+ * spaces), passed as array plus length so callers can reuse buffers. All working
+ * storage comes from a Scratch, which is not thread-safe: keep one per thread.
+ *
+ * - boundedLevenshtein: Ukkonen's cutoff, only the diagonal band of width 2k+1 is
+ *   computed and the scan stops as soon as every cell in a row exceeds k
+ * - myersLevenshtein: Myers' bit-parallel algorithm, one 64-bit word per text char,
+ *   for names of up to 64 characters
+ * - jaroWinkler: standard Jaro with the Winkler common-prefix boost
+ */
+public final class NameSimilarity {
+
+    /** Longest name handled by the bit-parallel variant */
+    public static final int MYERS_MAX_LENGTH = 64;
+
+    private static final int INFINITY = Integer.MAX_VALUE / 2;
+    private static final double WINKLER_SCALE = 0.1;
+    private static final int WINKLER_PREFIX = 4;
+    private static final double WINKLER_BOOST_THRESHOLD = 0.7;
+
+    private NameSimilarity() {
+    }
+
+    /**
+     * Edit distance, computed with the fastest applicable kernel
+     */
+    public static int levenshtein(char[] a, int aLength, char[] b, int bLength, Scratch scratch) {
+        if (Math.min(aLength, bLength) <= MYERS_MAX_LENGTH && isAscii(a, aLength) && isAscii(b, bLength)) {
+            return aLength <= bLength
+                    ? myersLevenshtein(a, aLength, b, bLength, scratch)
+                    : myersLevenshtein(b, bLength, a, aLength, scratch);
+        }
+        return boundedLevenshtein(a, aLength, b, bLength, Math.max(aLength, bLength), scratch);
+    }
+
+    /**
+     * Edit distance if it is at most maxDistance, otherwise -1
+     */
+    public static int boundedLevenshtein(char[] a, int aLength, char[] b, int bLength, int maxDistance,
+            Scratch scratch) {
+        if (maxDistance < 0) {
+            return -1;
+        }
+        // Band over the shorter string, rows over the longer one
+        if (aLength > bLength) {
+            char[] t = a;
+            a = b;
+            b = t;
+            int tl = aLength;
+            aLength = bLength;
+            bLength = tl;
+        }
+        if (bLength - aLength > maxDistance) {
+            return -1;
+        }
+        if (aLength == 0) {
+            return bLength;
+        }
+
+        int[] previous = scratch.rowA(aLength + 1);
+        int[] current = scratch.rowB(aLength + 1);
+        int boundary = Math.min(aLength, maxDistance) + 1;
+        for (int i = 0; i < boundary; i++) {
+            previous[i] = i;
+        }
+        Arrays.fill(previous, boundary, aLength + 1, INFINITY);
+        Arrays.fill(current, 0, aLength + 1, INFINITY);
+
+        for (int j = 1; j <= bLength; j++) {
+            char bj = b[j - 1];
+            current[0] = j;
+
+            int from = Math.max(1, j - maxDistance);
+            int to = (int) Math.min(aLength, (long) j + maxDistance);
+            if (from > 1) {
+                current[from - 1] = INFINITY;
+            }
+
+            int rowMin = from == 1 ? j : INFINITY;
+            for (int i = from; i <= to; i++) {
+                int cost;
+                if (a[i - 1] == bj) {
+                    cost = previous[i - 1];
+                } else {
+                    cost = 1 + Math.min(Math.min(current[i - 1], previous[i]), previous[i - 1]);
+                }
+                current[i] = cost;
+                if (cost < rowMin) {
+                    rowMin = cost;
+                }
+            }
+            if (rowMin > maxDistance) {
+                return -1;
+            }
+
+            int[] t = previous;
+            previous = current;
+            current = t;
+        }
+        return previous[aLength] <= maxDistance ? previous[aLength] : -1;
+    }
+
+    /**
+     * Edit distance with Myers' bit-vector algorithm (Hyyro's formulation)
+     *
+     * @param pattern       The shorter name, at most MYERS_MAX_LENGTH ASCII chars
+     * @param text          The other name (ASCII)
+     */
+    public static int myersLevenshtein(char[] pattern, int patternLength, char[] text, int textLength,
+            Scratch scratch) {
+        if (patternLength == 0) {
+            return textLength;
+        }
+        if (patternLength > MYERS_MAX_LENGTH) {
+            throw new IllegalArgumentException("Pattern longer than " + MYERS_MAX_LENGTH + " chars");
+        }
+
+        long[] peq = scratch.peq;
+        for (int i = 0; i < patternLength; i++) {
+            peq[pattern[i]] |= 1L << i;
+        }
+
+        long last = 1L << (patternLength - 1);
+        long pv = patternLength == 64 ? -1L : (1L << patternLength) - 1;
+        long mv = 0L;
+        int score = patternLength;
+
+        for (int j = 0; j < textLength; j++) {
+            long eq = peq[text[j]];
+            long xv = eq | mv;
+            long xh = (((eq & pv) + pv) ^ pv) | eq;
+            long ph = mv | ~(xh | pv);
+            long mh = pv & xh;
+            if ((ph & last) != 0) {
+                score++;
+            } else if ((mh & last) != 0) {
+                score--;
+            }
+            ph = (ph << 1) | 1L;
+            mh <<= 1;
+            pv = mh | ~(xv | ph);
+            mv = ph & xv;
+        }
+
+        for (int i = 0; i < patternLength; i++) {
+            peq[pattern[i]] = 0L;
+        }
+        return score;
+    }
+
+    /**
+     * Jaro-Winkler similarity (0.0 to 1.0)
+     */
+    public static double jaroWinkler(char[] a, int aLength, char[] b, int bLength, Scratch scratch) {
+        if (aLength == 0 || bLength == 0) {
+            return aLength == bLength ? 1.0 : 0.0;
+        }
+
+        int window = Math.max(0, Math.max(aLength, bLength) / 2 - 1);
+        boolean[] aMatched = scratch.flagsA(aLength);
+        boolean[] bMatched = scratch.flagsB(bLength);
+
+        int matches = 0;
+        for (int i = 0; i < aLength; i++) {
+            int from = Math.max(0, i - window);
+            int to = Math.min(bLength - 1, i + window);
+            for (int j = from; j <= to; j++) {
+                if (!bMatched[j] && a[i] == b[j]) {
+                    aMatched[i] = true;
+                    bMatched[j] = true;
+                    matches++;
+                    break;
+                }
+            }
+        }
+
+        double jaro = 0.0;
+        if (matches > 0) {
+            int transpositions = 0;
+            int k = 0;
+            for (int i = 0; i < aLength; i++) {
+                if (aMatched[i]) {
+                    while (!bMatched[k]) {
+                        k++;
+                    }
+                    if (a[i] != b[k]) {
+                        transpositions++;
+                    }
+                    k++;
+                }
+            }
+            double m = matches;
+            jaro = (m / aLength + m / bLength + (m - transpositions / 2.0) / m) / 3.0;
+        }
+        Arrays.fill(aMatched, 0, aLength, false);
+        Arrays.fill(bMatched, 0, bLength, false);
+
+        if (jaro < WINKLER_BOOST_THRESHOLD) {
+            return jaro;
+        }
+        int prefix = 0;
+        int maxPrefix = Math.min(WINKLER_PREFIX, Math.min(aLength, bLength));
+        while (prefix < maxPrefix && a[prefix] == b[prefix]) {
+            prefix++;
+        }
+        return jaro + prefix * WINKLER_SCALE * (1.0 - jaro);
+    }
+
+    private static boolean isAscii(char[] s, int length) {
+        for (int i = 0; i < length; i++) {
+            if (s[i] >= 128) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reusable working storage for one thread; buffers grow to the longest name seen
+     */
+    public static final class Scratch {
+        private final long[] peq = new long[128];
+        private int[] rowA = new int[64];
+        private int[] rowB = new int[64];
+        private boolean[] flagsA = new boolean[64];
+        private boolean[] flagsB = new boolean[64];
+        private char[] chars1 = new char[64];
+        private char[] chars2 = new char[64];
+
+        int[] rowA(int size) {
+            if (rowA.length < size) {
+                rowA = new int[Math.max(size, rowA.length * 2)];
+            }
+            return rowA;
+        }
+
+        int[] rowB(int size) {
+            if (rowB.length < size) {
+                rowB = new int[Math.max(size, rowB.length * 2)];
+            }
+            return rowB;
+        }
+
+        boolean[] flagsA(int size) {
+            if (flagsA.length < size) {
+                flagsA = new boolean[Math.max(size, flagsA.length * 2)];
+            }
+            return flagsA;
+        }
+
+        boolean[] flagsB(int size) {
+            if (flagsB.length < size) {
+                flagsB = new boolean[Math.max(size, flagsB.length * 2)];
+            }
+            return flagsB;
+        }
+
+        /**
+         * First char buffer, holding at least size chars
+         */
+        public char[] chars1(int size) {
+            if (chars1.length < size) {
+                chars1 = new char[Math.max(size, chars1.length * 2)];
+            }
+            return chars1;
+        }
+
+        /**
+         * Second char buffer, holding at least size chars
+         */
+        public char[] chars2(int size) {
+            if (chars2.length < size) {
+                chars2 = new char[Math.max(size, chars2.length * 2)];
+            }
+            return chars2;
+        }
+    }
+}
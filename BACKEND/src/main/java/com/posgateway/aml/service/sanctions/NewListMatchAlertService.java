@@ -1,43 +1,148 @@
 package com.posgateway.aml.service.sanctions;
 
 import com.posgateway.aml.entity.Alert;
+import com.posgateway.aml.entity.merchant.BeneficialOwner;
 import com.posgateway.aml.entity.merchant.Merchant;
 import com.posgateway.aml.entity.merchant.MerchantScreeningResult;
 import com.posgateway.aml.model.ScreeningResult;
+import com.posgateway.aml.model.ScreeningResult.EntityType;
 import com.posgateway.aml.repository.AlertRepository;
 import com.posgateway.aml.repository.MerchantRepository;
 import com.posgateway.aml.repository.MerchantScreeningResultRepository;
+import com.posgateway.aml.service.aml.AmlScreeningOrchestrator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
 
 /**
  * New List Match Alert Service
  * Alerts when customer appears on new sanctions list
+ *
+ * After each list load (WatchlistChangedEvent) only the merchants whose names, or
+ * whose beneficial owners' names, share a phonetic block with a changed list entry
+ * are rescreened (see ScreenedNameIndex), so the work follows the list churn rather
+ * than the portfolio size.
  */
 @Service
 public class NewListMatchAlertService {
 
     private static final Logger logger = LoggerFactory.getLogger(NewListMatchAlertService.class);
 
-    @SuppressWarnings("unused")
     private final MerchantRepository merchantRepository;
     private final MerchantScreeningResultRepository screeningResultRepository;
     private final AlertRepository alertRepository;
+    private final ScreenedNameIndex screenedNameIndex;
+    private final AmlScreeningOrchestrator screeningOrchestrator;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    private Counter rescreenedCounter;
+    private Counter failedCounter;
+
+    @Value("${sanctions.delta.rescreening.enabled:true}")
+    private boolean deltaRescreeningEnabled;
 
     @Autowired
     public NewListMatchAlertService(
             MerchantRepository merchantRepository,
             MerchantScreeningResultRepository screeningResultRepository,
-            AlertRepository alertRepository) {
+            AlertRepository alertRepository,
+            ScreenedNameIndex screenedNameIndex,
+            AmlScreeningOrchestrator screeningOrchestrator,
+            TransactionTemplate transactionTemplate,
+            MeterRegistry meterRegistry) {
         this.merchantRepository = merchantRepository;
         this.screeningResultRepository = screeningResultRepository;
         this.alertRepository = alertRepository;
+        this.screenedNameIndex = screenedNameIndex;
+        this.screeningOrchestrator = screeningOrchestrator;
+        this.transactionTemplate = transactionTemplate;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        rescreenedCounter = deltaCounter("rescreened");
+        failedCounter = deltaCounter("failed");
+    }
+
+    private Counter deltaCounter(String result) {
+        return Counter.builder("aml_sanctions_delta_rescreening_total")
+                .tag("result", result)
+                .description("Merchants rescreened because a sanctions list change touched their names")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Rescreen the merchants a sanctions list change can affect
+     */
+    @Async("backgroundTaskExecutor")
+    @EventListener
+    public void onWatchlistChanged(WatchlistChangedEvent event) {
+        WatchlistDiff diff = event.getDiff();
+        if (!deltaRescreeningEnabled || diff.isEmpty()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+
+        Set<String> organizationBlocks = screenedNameIndex.blocksOf(diff.affectedNames(EntityType.ORGANIZATION));
+        Set<String> personBlocks = screenedNameIndex.blocksOf(diff.affectedNames(EntityType.PERSON));
+        SortedSet<Long> merchantIds = screenedNameIndex.findMerchants(organizationBlocks, personBlocks);
+
+        int failures = 0;
+        for (Long merchantId : merchantIds) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> rescreenMerchant(merchantId));
+                rescreenedCounter.increment();
+            } catch (Exception e) {
+                logger.error("Delta rescreening failed for merchant {}: {}", merchantId, e.getMessage());
+                failedCounter.increment();
+                failures++;
+            }
+        }
+
+        logger.info("Delta rescreening for list changes {} done in {}ms: {} merchants rescreened, {} failed",
+                diff, System.currentTimeMillis() - start, merchantIds.size() - failures, failures);
+    }
+
+    /**
+     * Rescreen a merchant and its beneficial owners, alerting on new matches
+     * (runs inside a transaction, so owner flag changes are flushed)
+     */
+    private void rescreenMerchant(Long merchantId) {
+        Merchant merchant = merchantRepository.findById(merchantId).orElse(null);
+        if (merchant == null) {
+            return;
+        }
+        List<MerchantScreeningResult> previousResults = screeningResultRepository
+                .findByMerchant_MerchantIdOrderByScreenedAtDesc(merchantId);
+
+        ScreeningResult merchantResult = screeningOrchestrator.screenMerchant(merchant);
+        if (!previousResults.isEmpty() && isNewMatch(previousResults.get(0), merchantResult)) {
+            createNewListMatchAlert(merchant, merchantResult);
+        }
+
+        for (BeneficialOwner owner : merchant.getBeneficialOwners()) {
+            boolean wasSanctioned = Boolean.TRUE.equals(owner.getIsSanctioned());
+            ScreeningResult ownerResult = screeningOrchestrator.screenBeneficialOwner(owner, merchant);
+            if (!wasSanctioned && ownerResult.hasMatches()) {
+                createNewListMatchAlert(merchant, owner, ownerResult);
+            }
+        }
     }
 
     /**
@@ -54,18 +159,21 @@ public class NewListMatchAlertService {
             return;
         }
 
-        MerchantScreeningResult lastResult = previousResults.get(0);
-        
+        if (isNewMatch(previousResults.get(0), newScreeningResult)) {
+            createNewListMatchAlert(merchant, newScreeningResult);
+        }
+    }
+
+    private boolean isNewMatch(MerchantScreeningResult lastResult, ScreeningResult newScreeningResult) {
         // Compare matches
         if (lastResult.getMatchCount() != null && lastResult.getMatchCount() == 0 &&
             newScreeningResult.hasMatches()) {
             // New match appeared!
-            createNewListMatchAlert(merchant, newScreeningResult);
-        } else if (lastResult.getMatchCount() != null && lastResult.getMatchCount() > 0 &&
-                   newScreeningResult.getMatchCount() > lastResult.getMatchCount()) {
-            // Additional matches found
-            createNewListMatchAlert(merchant, newScreeningResult);
+            return true;
         }
+        // Additional matches found
+        return lastResult.getMatchCount() != null && lastResult.getMatchCount() > 0 &&
+               newScreeningResult.getMatchCount() > lastResult.getMatchCount();
     }
 
     /**
@@ -85,5 +193,23 @@ public class NewListMatchAlertService {
         logger.warn("Created alert for new list match: Merchant {} has {} new matches",
                 merchant.getMerchantId(), screeningResult.getMatchCount());
     }
+
+    /**
+     * Create alert for a beneficial owner newly matching a list
+     */
+    private void createNewListMatchAlert(Merchant merchant, BeneficialOwner owner, ScreeningResult screeningResult) {
+        Alert alert = new Alert();
+        alert.setMerchantId(merchant.getMerchantId());
+        alert.setAction("ALERT");
+        alert.setReason("New sanctions list match detected for beneficial owner: " + owner.getFullName() +
+                " of merchant " + merchant.getLegalName() + ". Match count: " + screeningResult.getMatchCount());
+        alert.setStatus("open");
+        alert.setSeverity("CRITICAL");
+        alert.setCreatedAt(LocalDateTime.now());
+
+        alertRepository.save(alert);
+        logger.warn("Created alert for new list match: UBO {} of merchant {} has {} matches",
+                owner.getOwnerId(), merchant.getMerchantId(), screeningResult.getMatchCount());
+    }
 }
 
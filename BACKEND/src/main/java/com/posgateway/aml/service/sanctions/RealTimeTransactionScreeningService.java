@@ -27,6 +27,7 @@ public class RealTimeTransactionScreeningService {
     private final MerchantRepository merchantRepository;
     private final ScreeningWhitelistService whitelistService;
     private final com.posgateway.aml.service.cache.ScreeningCacheService screeningCacheService; // Aerospike cache
+    private final SanctionsIndexService sanctionsIndexService;
 
     @Value("${screening.realtime.enabled:true}")
     private boolean realtimeScreeningEnabled;
@@ -45,11 +46,13 @@ public class RealTimeTransactionScreeningService {
             AerospikeSanctionsScreeningService aerospikeScreeningService,
             MerchantRepository merchantRepository,
             ScreeningWhitelistService whitelistService,
-            com.posgateway.aml.service.cache.ScreeningCacheService screeningCacheService) {
+            com.posgateway.aml.service.cache.ScreeningCacheService screeningCacheService,
+            SanctionsIndexService sanctionsIndexService) {
         this.aerospikeScreeningService = aerospikeScreeningService;
         this.merchantRepository = merchantRepository;
         this.whitelistService = whitelistService;
         this.screeningCacheService = screeningCacheService;
+        this.sanctionsIndexService = sanctionsIndexService;
     }
 
     /**
@@ -138,9 +141,13 @@ public class RealTimeTransactionScreeningService {
             return null;
         }
 
+        // With the in-memory index loaded, screening is cheaper than a cache round trip
+        boolean useResultCache = !sanctionsIndexService.isReady();
+
         // Check Aerospike cache first for screening result
-        ScreeningResult cachedResult = screeningCacheService.getCachedScreeningResult(
-                String.valueOf(merchant.getMerchantId()), "MERCHANT");
+        ScreeningResult cachedResult = useResultCache
+                ? screeningCacheService.getCachedScreeningResult(String.valueOf(merchant.getMerchantId()), "MERCHANT")
+                : null;
 
         ScreeningResult legalNameResult;
         if (cachedResult != null) {
@@ -152,8 +159,10 @@ public class RealTimeTransactionScreeningService {
                     merchant.getLegalName(),
                     ScreeningResult.EntityType.ORGANIZATION);
             // Cache the result for future lookups
-            screeningCacheService.cacheScreeningResult(
-                    String.valueOf(merchant.getMerchantId()), "MERCHANT", legalNameResult);
+            if (useResultCache) {
+                screeningCacheService.cacheScreeningResult(
+                        String.valueOf(merchant.getMerchantId()), "MERCHANT", legalNameResult);
+            }
         }
 
         if (legalNameResult.hasMatches()) {
@@ -0,0 +1,383 @@
+package com.posgateway.aml.service.sanctions;
+
+import com.aerospike.client.AerospikeClient;
+import com.aerospike.client.policy.ScanPolicy;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.posgateway.aml.model.ScreeningResult;
+import com.posgateway.aml.model.ScreeningResult.EntityType;
+import com.posgateway.aml.model.ScreeningResult.Match;
+import com.posgateway.aml.model.ScreeningResult.MatchType;
+import com.posgateway.aml.model.ScreeningResult.ScreeningStatus;
+import com.posgateway.aml.service.AerospikeConnectionService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Sanctions Index Service
+ * Holds the current in-memory SanctionsNameIndex and screens names against it without
+ * any network I/O.
+ *
+ * The index is rebuilt by SanctionsListDownloadService from each OpenSanctions load and
+ * swapped in atomically; screenings in flight finish on the snapshot they started with.
+ * On startup it is built from the entities already stored in Aerospike, so a restart
+ * does not wait for the next nightly download. Until an index is available, callers
+ * fall back to the Aerospike query path.
+ *
+ * Only that fallback path uses the screeningResults cache. Each published snapshot
+ * clears it on every node, so a result cached against an older list is never served.
+ */
+@Service
+public class SanctionsIndexService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SanctionsIndexService.class);
+
+    static final String PROVIDER = "IN_MEMORY_INDEX";
+
+    /** Cache of Aerospike fallback screenings, cleared whenever the list changes */
+    public static final String SCREENING_CACHE = "screeningResults";
+
+    private final NameMatchingService nameMatchingService;
+    private final AerospikeConnectionService aerospikeConnectionService;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final ApplicationEventPublisher eventPublisher;
+    private final CacheManager cacheManager;
+
+    private final AtomicReference<SanctionsNameIndex> current = new AtomicReference<>(SanctionsNameIndex.EMPTY);
+
+    private Timer searchTimer;
+    private Counter rebuildCounter;
+
+    @Value("${sanctions.index.enabled:true}")
+    private boolean enabled;
+
+    @Value("${sanctions.index.load.on.startup:true}")
+    private boolean loadOnStartup;
+
+    @Value("${sanctions.matching.similarity.threshold:0.8}")
+    private double similarityThreshold;
+
+    @Autowired
+    public SanctionsIndexService(NameMatchingService nameMatchingService,
+            AerospikeConnectionService aerospikeConnectionService, ObjectMapper objectMapper,
+            MeterRegistry meterRegistry, ApplicationEventPublisher eventPublisher, CacheManager cacheManager) {
+        this.nameMatchingService = nameMatchingService;
+        this.aerospikeConnectionService = aerospikeConnectionService;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.eventPublisher = eventPublisher;
+        this.cacheManager = cacheManager;
+    }
+
+    @PostConstruct
+    public void init() {
+        searchTimer = Timer.builder("aml_sanctions_index_search_latency")
+                .description("In-memory sanctions index screening time")
+                .register(meterRegistry);
+        rebuildCounter = Counter.builder("aml_sanctions_index_rebuild_total")
+                .description("Sanctions index snapshots published")
+                .register(meterRegistry);
+        Gauge.builder("aml_sanctions_index_names", current, ref -> ref.get().getNameCount())
+                .description("Names and aliases in the in-memory sanctions index")
+                .register(meterRegistry);
+
+        if (enabled && loadOnStartup) {
+            Thread loader = new Thread(this::loadFromAerospike, "sanctions-index-loader");
+            loader.setDaemon(true);
+            loader.start();
+        }
+    }
+
+    /**
+     * True when an index with at least one entity is loaded
+     */
+    public boolean isReady() {
+        return enabled && current.get().getEntityCount() > 0;
+    }
+
+    public SanctionsNameIndex getIndex() {
+        return current.get();
+    }
+
+    /**
+     * Start collecting entities for a new snapshot, or null when the index is disabled
+     */
+    public SanctionsNameIndex.Builder newBuilder() {
+        return enabled ? new SanctionsNameIndex.Builder() : null;
+    }
+
+    /**
+     * Build and atomically publish a snapshot
+     *
+     * Clears the screeningResults cache (locally and, through the invalidation bus, on the
+     * other nodes). When it replaces a loaded snapshot, the entities that changed between
+     * the two are announced with a WatchlistChangedEvent (after the swap, so rescreening
+     * sees them).
+     *
+     * @return changes from the previous snapshot, or null if there was none to compare with
+     */
+    public WatchlistDiff publish(SanctionsNameIndex.Builder builder, String version) {
+        if (builder == null) {
+            return null;
+        }
+        long start = System.currentTimeMillis();
+        SanctionsNameIndex index = builder.build(version);
+        if (index.getEntityCount() == 0) {
+            logger.warn("Sanctions index {} is empty - keeping {}", version, current.get().getVersion());
+            return null;
+        }
+        SanctionsNameIndex previous = current.getAndSet(index);
+        rebuildCounter.increment();
+        logger.info("Sanctions index {} published: {} entities, {} names (built in {}ms)",
+                version, index.getEntityCount(), index.getNameCount(), System.currentTimeMillis() - start);
+        clearScreeningCache();
+
+        if (previous.getEntityCount() == 0) {
+            return null;
+        }
+        WatchlistDiff diff = WatchlistDiff.between(previous, index);
+        logger.info("Sanctions list changes {}", diff);
+        eventPublisher.publishEvent(new WatchlistChangedEvent(this, diff));
+        return diff;
+    }
+
+    private void clearScreeningCache() {
+        Cache cache = cacheManager.getCache(SCREENING_CACHE);
+        if (cache == null) {
+            return;
+        }
+        try {
+            cache.clear();
+        } catch (Exception e) {
+            logger.warn("Failed to clear {} cache: {}", SCREENING_CACHE, e.getMessage());
+        }
+    }
+
+    /**
+     * Add one OpenSanctions (FollowTheMoney) entity to a builder
+     */
+    public void addEntity(SanctionsNameIndex.Builder builder, JsonNode json) {
+        addEntry(builder, parseEntity(json));
+    }
+
+    /**
+     * Add an already parsed entity to a builder
+     */
+    public void addEntry(SanctionsNameIndex.Builder builder, SanctionsNameIndex.Entry entry) {
+        if (builder == null || entry == null) {
+            return;
+        }
+        List<String> normalizedNames = new ArrayList<>(entry.getAliases().size() + 1);
+        List<String[]> codes = new ArrayList<>(entry.getAliases().size() + 1);
+        addName(entry.getName(), normalizedNames, codes);
+        for (String alias : entry.getAliases()) {
+            addName(alias, normalizedNames, codes);
+        }
+        builder.add(entry, normalizedNames, codes);
+    }
+
+    /**
+     * Parse an OpenSanctions (FollowTheMoney) entity
+     *
+     * @return the entity, or null when it has no name
+     */
+    public SanctionsNameIndex.Entry parseEntity(JsonNode json) {
+        JsonNode properties = json.path("properties");
+        String caption = json.path("caption").asText(json.path("name").asText(""));
+        if (caption.isEmpty()) {
+            caption = first(properties.path("name"));
+        }
+        if (caption == null || caption.isEmpty()) {
+            return null;
+        }
+
+        List<String> aliases = new ArrayList<>();
+        collect(properties.path("name"), aliases, caption);
+        collect(properties.path("alias"), aliases, caption);
+        collect(properties.path("weakAlias"), aliases, caption);
+
+        List<String> datasets = new ArrayList<>();
+        collect(json.path("datasets"), datasets, null);
+        List<String> topics = new ArrayList<>();
+        collect(properties.path("topics"), topics, null);
+        List<String> nationality = new ArrayList<>();
+        collect(properties.path("nationality"), nationality, null);
+
+        return new SanctionsNameIndex.Entry(
+                json.path("id").asText(null),
+                caption,
+                Collections.unmodifiableList(aliases),
+                mapSchema(json.path("schema").asText("")),
+                datasets.isEmpty() ? "OPENSANCTIONS" : datasets.get(0),
+                topics.isEmpty() ? null : topics.get(0),
+                Collections.unmodifiableList(datasets),
+                Collections.unmodifiableList(nationality),
+                parseDate(first(properties.path("birthDate"))));
+    }
+
+    /**
+     * Screen a name against the in-memory index
+     *
+     * @return result, or null when no index is loaded
+     */
+    public ScreeningResult screenName(String name, EntityType entityType) {
+        if (!isReady()) {
+            return null;
+        }
+        long start = System.nanoTime();
+        SanctionsNameIndex index = current.get();
+
+        String normalized = nameMatchingService.normalizeName(name);
+        List<SanctionsNameIndex.Hit> hits = index.search(normalized,
+                nameMatchingService.generatePhoneticCodeNormalized(normalized, false),
+                nameMatchingService.generatePhoneticCodeNormalized(normalized, true),
+                entityType, similarityThreshold, nameMatchingService);
+
+        List<Match> matches = new ArrayList<>(hits.size());
+        double highest = 0.0;
+        for (SanctionsNameIndex.Hit hit : hits) {
+            SanctionsNameIndex.Entry entry = hit.getEntry();
+            matches.add(Match.builder()
+                    .matchedName(entry.getName())
+                    .aliases(entry.getAliases())
+                    .similarityScore(hit.getScore())
+                    .listName(entry.getListName())
+                    .entityType(entry.getEntityType())
+                    .matchType(hit.isAlias() ? MatchType.ALIAS_MATCH : MatchType.NAME_MATCH)
+                    .dateOfBirth(entry.getDateOfBirth())
+                    .nationality(entry.getNationality())
+                    .sanctionType(entry.getSanctionType())
+                    .programs(entry.getPrograms())
+                    .build());
+            highest = Math.max(highest, hit.getScore());
+        }
+
+        ScreeningStatus status = matches.isEmpty() ? ScreeningStatus.CLEAR
+                : highest >= 0.95 ? ScreeningStatus.MATCH : ScreeningStatus.POTENTIAL_MATCH;
+        ScreeningResult result = ScreeningResult.builder()
+                .screenedName(name)
+                .entityType(entityType != null ? entityType : EntityType.PERSON)
+                .status(status)
+                .matchCount(matches.size())
+                .highestMatchScore(highest)
+                .matches(matches)
+                .screenedAt(LocalDateTime.now())
+                .screeningProvider(PROVIDER)
+                .build();
+        searchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return result;
+    }
+
+    /**
+     * Build the index from the entities already loaded into Aerospike
+     */
+    void loadFromAerospike() {
+        if (!aerospikeConnectionService.isConnected()) {
+            logger.info("Aerospike not available - sanctions index will be built on the next list download");
+            return;
+        }
+        try {
+            AerospikeClient client = aerospikeConnectionService.getClient();
+            long start = System.currentTimeMillis();
+            SanctionsNameIndex.Builder builder = new SanctionsNameIndex.Builder();
+            ScanPolicy policy = new ScanPolicy();
+            policy.includeBinData = true;
+            client.scanAll(policy, aerospikeConnectionService.getNamespace(), "entities", (key, record) -> {
+                Object raw = record.bins.get("raw_data");
+                if (raw instanceof String) {
+                    try {
+                        addEntity(builder, objectMapper.readTree((String) raw));
+                    } catch (Exception e) {
+                        logger.debug("Skipping unreadable sanctions record: {}", e.getMessage());
+                    }
+                }
+            }, "raw_data");
+            logger.info("Scanned {} sanctions entities from Aerospike in {}ms", builder.size(),
+                    System.currentTimeMillis() - start);
+            // A list download may have published a newer index while scanning
+            if (current.get() == SanctionsNameIndex.EMPTY) {
+                publish(builder, "aerospike@" + LocalDateTime.now());
+            }
+        } catch (Exception e) {
+            logger.error("Failed to build sanctions index from Aerospike: {}", e.getMessage(), e);
+        }
+    }
+
+    private void addName(String name, List<String> normalizedNames, List<String[]> codes) {
+        String normalized = nameMatchingService.normalizeName(name);
+        normalizedNames.add(normalized);
+        codes.add(new String[] {
+                nameMatchingService.generatePhoneticCodeNormalized(normalized, false),
+                nameMatchingService.generatePhoneticCodeNormalized(normalized, true) });
+    }
+
+    /**
+     * Map an FtM schema name to the screening entity type
+     */
+    public static EntityType mapSchema(String schema) {
+        switch (schema) {
+            case "Person":
+                return EntityType.PERSON;
+            case "Organization":
+            case "Company":
+            case "LegalEntity":
+            case "PublicBody":
+                return EntityType.ORGANIZATION;
+            case "Vessel":
+                return EntityType.VESSEL;
+            default:
+                return EntityType.UNKNOWN;
+        }
+    }
+
+    private static void collect(JsonNode node, List<String> target, String exclude) {
+        if (node.isArray()) {
+            for (JsonNode value : node) {
+                String text = value.asText("");
+                if (!text.isEmpty() && !text.equals(exclude) && !target.contains(text)) {
+                    target.add(text);
+                }
+            }
+        } else if (node.isTextual() && !node.asText().isEmpty() && !node.asText().equals(exclude)) {
+            target.add(node.asText());
+        }
+    }
+
+    private static String first(JsonNode node) {
+        if (node.isArray() && !node.isEmpty()) {
+            return node.get(0).asText(null);
+        }
+        return node.isTextual() ? node.asText() : null;
+    }
+
+    private static LocalDate parseDate(String value) {
+        if (value == null || value.length() < 10) {
+            return null; // Year-only or partial dates can't confirm a DOB
+        }
+        try {
+            return LocalDate.parse(value.substring(0, 10));
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,392 @@
+package com.posgateway.aml.service.sanctions;
+
+import com.posgateway.aml.model.ScreeningResult.EntityType;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Sanctions Name Index
+ * Immutable, memory-resident index of sanctioned entity names (primary names and aliases).
+ *
+ * Names are stored pre-normalized (NameMatchingService.normalizeName) and indexed two ways:
+ * - Double Metaphone buckets (primary and alternate code) for phonetic variants
+ * - character trigram postings over the space-padded name
+ *
+ * A candidate reaches the edit-distance check only if it shares a phonetic code with the
+ * query or enough trigrams to possibly meet the similarity threshold: k edits destroy at
+ * most 3k trigrams, so a name within k edits keeps at least |trigrams(query)| - 3k of them.
+ */
+public final class SanctionsNameIndex {
+
+    public static final SanctionsNameIndex EMPTY = new Builder().build("empty");
+
+    // Normalized names use space, A-Z and 0-9 only
+    private static final int ALPHABET = 37;
+    private static final int TRIGRAM_SPACE = ALPHABET * ALPHABET * ALPHABET;
+    private static final int[] NO_POSTINGS = new int[0];
+
+    private final String version;
+    private final List<Entry> entries;
+    private final String[] names;
+    private final int[] nameEntry;
+    private final boolean[] nameIsAlias;
+    private final Map<String, int[]> phoneticBuckets;
+    private final int[][] trigramPostings;
+    // Per-name counters, one array per concurrent search (arrays are zeroed again after use)
+    private final Queue<int[]> scratchPool = new ConcurrentLinkedQueue<>();
+
+    private SanctionsNameIndex(String version, List<Entry> entries, String[] names, int[] nameEntry,
+            boolean[] nameIsAlias, Map<String, int[]> phoneticBuckets, int[][] trigramPostings) {
+        this.version = version;
+        this.entries = entries;
+        this.names = names;
+        this.nameEntry = nameEntry;
+        this.nameIsAlias = nameIsAlias;
+        this.phoneticBuckets = phoneticBuckets;
+        this.trigramPostings = trigramPostings;
+    }
+
+    /**
+     * Find entities with a name or alias at least minScore similar to the query
+     *
+     * @param normalizedQuery Query passed through NameMatchingService.normalizeName()
+     * @param primaryCode     Primary Double Metaphone code of the query
+     * @param alternateCode   Alternate Double Metaphone code of the query
+     * @param entityType      Entity type filter (null for any; UNKNOWN entries always qualify)
+     * @return best hit per entity, highest score first
+     */
+    public List<Hit> search(String normalizedQuery, String primaryCode, String alternateCode,
+            EntityType entityType, double minScore, NameMatchingService matcher) {
+        if (normalizedQuery.isEmpty() || names.length == 0) {
+            return Collections.emptyList();
+        }
+
+        int queryLength = normalizedQuery.length();
+        // Longest edit distance that can still reach minScore against any name length
+        int maxEdits = (int) Math.floor((1.0 - minScore) * queryLength / Math.max(minScore, 1e-9) + 1e-9);
+
+        int[] pooled = scratchPool.poll();
+        int[] counts = pooled != null ? pooled : new int[names.length];
+        int[] touched = new int[64];
+        int touchedCount = 0;
+
+        // Phonetic buckets: always verified
+        int phoneticMark = Integer.MAX_VALUE / 2;
+        for (String code : new String[] { primaryCode, alternateCode }) {
+            if (code == null || code.isEmpty()) {
+                continue;
+            }
+            for (int nameId : phoneticBuckets.getOrDefault(code, NO_POSTINGS)) {
+                if (counts[nameId] == 0) {
+                    if (touchedCount == touched.length) {
+                        touched = Arrays.copyOf(touched, touchedCount * 2);
+                    }
+                    touched[touchedCount++] = nameId;
+                }
+                counts[nameId] = phoneticMark;
+            }
+        }
+
+        // Trigram postings: count shared distinct trigrams
+        int[] queryTrigrams = distinctTrigrams(normalizedQuery);
+        for (int trigram : queryTrigrams) {
+            int[] postings = trigramPostings[trigram];
+            if (postings == null) {
+                continue;
+            }
+            for (int nameId : postings) {
+                if (counts[nameId] == 0) {
+                    if (touchedCount == touched.length) {
+                        touched = Arrays.copyOf(touched, touchedCount * 2);
+                    }
+                    touched[touchedCount++] = nameId;
+                }
+                counts[nameId]++;
+            }
+        }
+        int minShared = Math.max(1, queryTrigrams.length - 3 * maxEdits);
+
+        Map<Integer, Hit> best = new HashMap<>();
+        try {
+            for (int i = 0; i < touchedCount; i++) {
+                int nameId = touched[i];
+                if (counts[nameId] < minShared) {
+                    continue;
+                }
+                String name = names[nameId];
+                if (Math.abs(name.length() - queryLength) > maxEdits) {
+                    continue;
+                }
+                Entry entry = entries.get(nameEntry[nameId]);
+                if (entityType != null && entry.entityType != EntityType.UNKNOWN && entry.entityType != entityType) {
+                    continue;
+                }
+                double score = matcher.calculateNormalizedSimilarity(normalizedQuery, name, minScore);
+                if (score < 0) {
+                    continue;
+                }
+                Hit current = best.get(nameEntry[nameId]);
+                if (current == null || score > current.score) {
+                    best.put(nameEntry[nameId], new Hit(entry, name, score, nameIsAlias[nameId]));
+                }
+            }
+        } finally {
+            for (int i = 0; i < touchedCount; i++) {
+                counts[touched[i]] = 0;
+            }
+            scratchPool.offer(counts);
+        }
+
+        List<Hit> hits = new ArrayList<>(best.values());
+        hits.sort((a, b) -> Double.compare(b.score, a.score));
+        return hits;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public int getEntityCount() {
+        return entries.size();
+    }
+
+    /**
+     * All indexed entities, in load order
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    public int getNameCount() {
+        return names.length;
+    }
+
+    static int[] distinctTrigrams(String normalized) {
+        String padded = "  " + normalized + " ";
+        int[] trigrams = new int[padded.length() - 2];
+        for (int i = 0; i < trigrams.length; i++) {
+            trigrams[i] = code(padded.charAt(i)) * ALPHABET * ALPHABET
+                    + code(padded.charAt(i + 1)) * ALPHABET
+                    + code(padded.charAt(i + 2));
+        }
+        Arrays.sort(trigrams);
+        int distinct = 0;
+        for (int i = 0; i < trigrams.length; i++) {
+            if (i == 0 || trigrams[i] != trigrams[i - 1]) {
+                trigrams[distinct++] = trigrams[i];
+            }
+        }
+        return Arrays.copyOf(trigrams, distinct);
+    }
+
+    private static int code(char c) {
+        if (c >= 'A' && c <= 'Z') {
+            return c - 'A' + 1;
+        }
+        if (c >= '0' && c <= '9') {
+            return c - '0' + 27;
+        }
+        return 0;
+    }
+
+    /**
+     * Collects entries during a list load; build() produces the immutable index
+     */
+    public static final class Builder {
+        private final List<Entry> entries = new ArrayList<>();
+        private final List<String> names = new ArrayList<>();
+        private final List<Integer> nameEntries = new ArrayList<>();
+        private final List<Boolean> aliasFlags = new ArrayList<>();
+        private final Map<String, List<Integer>> phonetic = new HashMap<>();
+
+        /**
+         * Add an entity
+         *
+         * @param normalizedNames Normalized primary name first, then aliases (duplicates are ignored)
+         * @param phoneticCodes   Primary and alternate codes per name, in the same order
+         */
+        public synchronized void add(Entry entry, List<String> normalizedNames, List<String[]> phoneticCodes) {
+            int entryId = entries.size();
+            entries.add(entry);
+            List<String> seen = new ArrayList<>(normalizedNames.size());
+            for (int i = 0; i < normalizedNames.size(); i++) {
+                String name = normalizedNames.get(i);
+                if (name == null || name.isEmpty() || seen.contains(name)) {
+                    continue;
+                }
+                seen.add(name);
+                int nameId = names.size();
+                names.add(name);
+                nameEntries.add(entryId);
+                aliasFlags.add(i > 0);
+                for (String code : phoneticCodes.get(i)) {
+                    if (code != null && !code.isEmpty()) {
+                        List<Integer> bucket = phonetic.computeIfAbsent(code, k -> new ArrayList<>());
+                        if (bucket.isEmpty() || bucket.get(bucket.size() - 1) != nameId) {
+                            bucket.add(nameId);
+                        }
+                    }
+                }
+            }
+        }
+
+        public synchronized int size() {
+            return entries.size();
+        }
+
+        public synchronized SanctionsNameIndex build(String version) {
+            int nameCount = names.size();
+            String[] nameArray = names.toArray(new String[0]);
+            int[] nameEntry = new int[nameCount];
+            boolean[] nameIsAlias = new boolean[nameCount];
+            for (int i = 0; i < nameCount; i++) {
+                nameEntry[i] = nameEntries.get(i);
+                nameIsAlias[i] = aliasFlags.get(i);
+            }
+
+            Map<String, int[]> buckets = new HashMap<>(phonetic.size() * 2);
+            phonetic.forEach((code, ids) -> buckets.put(code, ids.stream().mapToInt(Integer::intValue).toArray()));
+
+            // Two passes: size each posting list, then fill it
+            int[][] nameTrigrams = new int[nameCount][];
+            int[] postingSizes = new int[TRIGRAM_SPACE];
+            for (int i = 0; i < nameCount; i++) {
+                nameTrigrams[i] = distinctTrigrams(nameArray[i]);
+                for (int trigram : nameTrigrams[i]) {
+                    postingSizes[trigram]++;
+                }
+            }
+            int[][] postings = new int[TRIGRAM_SPACE][];
+            int[] fill = new int[TRIGRAM_SPACE];
+            for (int i = 0; i < nameCount; i++) {
+                for (int trigram : nameTrigrams[i]) {
+                    if (postings[trigram] == null) {
+                        postings[trigram] = new int[postingSizes[trigram]];
+                    }
+                    postings[trigram][fill[trigram]++] = i;
+                }
+                nameTrigrams[i] = null;
+            }
+
+            return new SanctionsNameIndex(version, Collections.unmodifiableList(new ArrayList<>(entries)),
+                    nameArray, nameEntry, nameIsAlias, buckets, postings);
+        }
+    }
+
+    /**
+     * Indexed sanctioned entity (display data only; the raw record stays in Aerospike)
+     */
+    public static final class Entry {
+        private final String entityId;
+        private final String name;
+        private final List<String> aliases;
+        private final EntityType entityType;
+        private final String listName;
+        private final String sanctionType;
+        private final List<String> programs;
+        private final List<String> nationality;
+        private final LocalDate dateOfBirth;
+
+        public Entry(String entityId, String name, List<String> aliases, EntityType entityType, String listName,
+                String sanctionType, List<String> programs, List<String> nationality, LocalDate dateOfBirth) {
+            this.entityId = entityId;
+            this.name = name;
+            this.aliases = aliases;
+            this.entityType = entityType;
+            this.listName = listName;
+            this.sanctionType = sanctionType;
+            this.programs = programs;
+            this.nationality = nationality;
+            this.dateOfBirth = dateOfBirth;
+        }
+
+        public String getEntityId() {
+            return entityId;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public List<String> getAliases() {
+            return aliases;
+        }
+
+        public EntityType getEntityType() {
+            return entityType;
+        }
+
+        public String getListName() {
+            return listName;
+        }
+
+        public String getSanctionType() {
+            return sanctionType;
+        }
+
+        public List<String> getPrograms() {
+            return programs;
+        }
+
+        public List<String> getNationality() {
+            return nationality;
+        }
+
+        public LocalDate getDateOfBirth() {
+            return dateOfBirth;
+        }
+
+        /**
+         * True if screening against either entry gives the same matches
+         * (same names, entity type and date of birth)
+         */
+        public boolean sameScreeningData(Entry other) {
+            return Objects.equals(name, other.name)
+                    && Objects.equals(aliases, other.aliases)
+                    && entityType == other.entityType
+                    && Objects.equals(dateOfBirth, other.dateOfBirth);
+        }
+    }
+
+    /**
+     * Search hit: the entity, the name variant that matched and its score
+     */
+    public static final class Hit {
+        private final Entry entry;
+        private final String matchedName;
+        private final double score;
+        private final boolean alias;
+
+        Hit(Entry entry, String matchedName, double score, boolean alias) {
+            this.entry = entry;
+            this.matchedName = matchedName;
+            this.score = score;
+            this.alias = alias;
+        }
+
+        public Entry getEntry() {
+            return entry;
+        }
+
+        public String getMatchedName() {
+            return matchedName;
+        }
+
+        public double getScore() {
+            return score;
+        }
+
+        public boolean isAlias() {
+            return alias;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.posgateway.aml.service.sanctions;
+
+import com.posgateway.aml.entity.merchant.BeneficialOwner;
+import com.posgateway.aml.entity.merchant.Merchant;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+
+/**
+ * Screened Name Block Listener
+ * Keeps the persisted screened name block index in step with merchant and beneficial
+ * owner names.
+ *
+ * Registered as a Hibernate post-insert/post-update listener, so every write path
+ * (repositories, cascades from a merchant to its owners) is covered. Updates that leave
+ * the screened names untouched - most merchant updates, e.g. the risk averages refreshed
+ * on each transaction - are skipped using Hibernate's dirty properties. Deletes need no
+ * handling: the block rows cascade with the merchant or owner.
+ */
+@Component
+public class ScreenedNameBlockListener implements PostInsertEventListener, PostUpdateEventListener {
+
+    private static final Set<String> MERCHANT_NAME_PROPERTIES = Set.of("legalName", "tradingName");
+    private static final Set<String> OWNER_NAME_PROPERTIES = Set.of("fullName", "merchant");
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final ScreenedNameIndex screenedNameIndex;
+
+    @Autowired
+    public ScreenedNameBlockListener(EntityManagerFactory entityManagerFactory, ScreenedNameIndex screenedNameIndex) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.screenedNameIndex = screenedNameIndex;
+    }
+
+    @PostConstruct
+    public void register() {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        index(event.getEntity());
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        Object entity = event.getEntity();
+        if (entity instanceof Merchant) {
+            if (namesChanged(event, MERCHANT_NAME_PROPERTIES)) {
+                index(entity);
+            }
+        } else if (entity instanceof BeneficialOwner) {
+            if (namesChanged(event, OWNER_NAME_PROPERTIES)) {
+                index(entity);
+            }
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+
+    private void index(Object entity) {
+        if (entity instanceof Merchant) {
+            Merchant merchant = (Merchant) entity;
+            screenedNameIndex.indexMerchant(merchant.getMerchantId(), merchant.getLegalName(),
+                    merchant.getTradingName());
+        } else if (entity instanceof BeneficialOwner) {
+            BeneficialOwner owner = (BeneficialOwner) entity;
+            if (owner.getMerchant() != null) {
+                screenedNameIndex.indexOwner(owner.getOwnerId(), owner.getMerchant().getMerchantId(),
+                        owner.getFullName());
+            }
+        }
+    }
+
+    /**
+     * True when one of the given properties is dirty, or when Hibernate could not tell
+     * (update of a detached instance without a snapshot)
+     */
+    private static boolean namesChanged(PostUpdateEvent event, Set<String> properties) {
+        int[] dirty = event.getDirtyProperties();
+        if (dirty == null) {
+            return true;
+        }
+        String[] names = event.getPersister().getPropertyNames();
+        for (int index : dirty) {
+            if (properties.contains(names[index])) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,317 @@
+package com.posgateway.aml.service.sanctions;
+
+import com.posgateway.aml.repository.BeneficialOwnerRepository;
+import com.posgateway.aml.repository.MerchantRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Screened Name Index
+ * Reverse index from phonetic blocks to the merchants whose screened names fall into
+ * them: legal and trading names (organization screening) and beneficial owner names
+ * (person screening).
+ *
+ * Blocks are the Double Metaphone codes (primary and alternate) the sanctions index
+ * buckets names by. Given the blocks touched by a list change, it returns the merchants
+ * that could now screen differently, so only those are rescreened.
+ *
+ * The blocks are persisted (merchant_name_blocks, owner_name_blocks) and kept current by
+ * ScreenedNameBlockListener whenever a name is inserted or changed, so a lookup reads
+ * only the rows of the requested blocks. Names that existed before the tables are
+ * indexed by a one-off backfill at startup; until it has completed, lookups fall back to
+ * a keyset scan over all screened names.
+ *
+ * Matches reachable only through trigram overlap (a misspelling that changes the
+ * phonetic code) are not found here and are left to the periodic rescreening.
+ */
+@Service
+public class ScreenedNameIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScreenedNameIndex.class);
+
+    private static final String BUILT = "BUILT";
+
+    private static final String FIND_MERCHANTS_SQL = "SELECT DISTINCT b.merchant_id FROM merchant_name_blocks b " +
+            "JOIN merchants m ON m.merchant_id = b.merchant_id " +
+            "WHERE b.block = ANY (?) AND m.status NOT IN ('REJECTED', 'TERMINATED')";
+    private static final String FIND_OWNER_MERCHANTS_SQL = "SELECT DISTINCT b.merchant_id FROM owner_name_blocks b " +
+            "JOIN merchants m ON m.merchant_id = b.merchant_id " +
+            "WHERE b.block = ANY (?) AND m.status NOT IN ('REJECTED', 'TERMINATED')";
+    private static final String INSERT_MERCHANT_BLOCK_SQL =
+            "INSERT INTO merchant_name_blocks (block, merchant_id) VALUES (?, ?) ON CONFLICT DO NOTHING";
+    private static final String INSERT_OWNER_BLOCK_SQL =
+            "INSERT INTO owner_name_blocks (block, owner_id, merchant_id) VALUES (?, ?, ?) " +
+            "ON CONFLICT (block, owner_id) DO UPDATE SET merchant_id = EXCLUDED.merchant_id";
+
+    private final MerchantRepository merchantRepository;
+    private final BeneficialOwnerRepository beneficialOwnerRepository;
+    private final NameMatchingService nameMatchingService;
+    private final JdbcTemplate jdbcTemplate;
+
+    /** Set once the backfill is known to be complete; it never goes back */
+    private volatile boolean built;
+
+    @Value("${sanctions.delta.scan.page.size:5000}")
+    private int pageSize;
+
+    @Value("${sanctions.delta.block.index.backfill.on.startup:true}")
+    private boolean backfillOnStartup;
+
+    @Autowired
+    public ScreenedNameIndex(MerchantRepository merchantRepository,
+            BeneficialOwnerRepository beneficialOwnerRepository, NameMatchingService nameMatchingService,
+            JdbcTemplate jdbcTemplate) {
+        this.merchantRepository = merchantRepository;
+        this.beneficialOwnerRepository = beneficialOwnerRepository;
+        this.nameMatchingService = nameMatchingService;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Phonetic blocks of a set of names
+     */
+    public Set<String> blocksOf(Collection<String> names) {
+        Set<String> blocks = new HashSet<>();
+        for (String name : names) {
+            addBlocks(name, blocks);
+        }
+        return blocks;
+    }
+
+    /**
+     * Merchants with a legal/trading name in organizationBlocks or a beneficial owner
+     * name in personBlocks
+     *
+     * @return merchant IDs in ascending order
+     */
+    public SortedSet<Long> findMerchants(Set<String> organizationBlocks, Set<String> personBlocks) {
+        if (!isBuilt()) {
+            return scanMerchants(organizationBlocks, personBlocks);
+        }
+        long start = System.currentTimeMillis();
+        SortedSet<Long> merchantIds = new TreeSet<>();
+        if (!organizationBlocks.isEmpty()) {
+            merchantIds.addAll(jdbcTemplate.queryForList(FIND_MERCHANTS_SQL, Long.class,
+                    (Object) organizationBlocks.toArray(new String[0])));
+        }
+        if (!personBlocks.isEmpty()) {
+            merchantIds.addAll(jdbcTemplate.queryForList(FIND_OWNER_MERCHANTS_SQL, Long.class,
+                    (Object) personBlocks.toArray(new String[0])));
+        }
+        logger.info("Matched {} organization and {} person blocks against the block index in {}ms: {} merchants",
+                organizationBlocks.size(), personBlocks.size(), System.currentTimeMillis() - start,
+                merchantIds.size());
+        return merchantIds;
+    }
+
+    /**
+     * Replace the blocks of a merchant's legal and trading names
+     *
+     * Runs in the caller's transaction, so the blocks commit or roll back with the names.
+     */
+    public void indexMerchant(Long merchantId, String legalName, String tradingName) {
+        Set<String> blocks = new HashSet<>(4);
+        addBlocks(legalName, blocks);
+        addBlocks(tradingName, blocks);
+        jdbcTemplate.update("DELETE FROM merchant_name_blocks WHERE merchant_id = ?", merchantId);
+        List<Object[]> rows = new ArrayList<>(blocks.size());
+        for (String block : blocks) {
+            rows.add(new Object[] { block, merchantId });
+        }
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_MERCHANT_BLOCK_SQL, rows);
+        }
+    }
+
+    /**
+     * Replace the blocks of a beneficial owner's name
+     *
+     * Runs in the caller's transaction, so the blocks commit or roll back with the name.
+     */
+    public void indexOwner(Long ownerId, Long merchantId, String fullName) {
+        Set<String> blocks = new HashSet<>(2);
+        addBlocks(fullName, blocks);
+        jdbcTemplate.update("DELETE FROM owner_name_blocks WHERE owner_id = ?", ownerId);
+        List<Object[]> rows = new ArrayList<>(blocks.size());
+        for (String block : blocks) {
+            rows.add(new Object[] { block, ownerId, merchantId });
+        }
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_OWNER_BLOCK_SQL, rows);
+        }
+    }
+
+    /**
+     * Index the names stored before the block tables existed, the first time the
+     * application starts with them
+     *
+     * Names written meanwhile are indexed by the listener; a name changed while its page
+     * is being backfilled can keep blocks of its old value as well, which only widens a
+     * later rescreening. Several nodes backfilling at once write the same rows.
+     */
+    @Async("backgroundTaskExecutor")
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfNotBuilt() {
+        if (!backfillOnStartup || isBuilt()) {
+            return;
+        }
+        try {
+            backfill();
+        } catch (Exception e) {
+            logger.error("Screened name block index backfill failed: {}", e.getMessage(), e);
+        }
+    }
+
+    void backfill() {
+        long start = System.currentTimeMillis();
+        Set<String> blocks = new HashSet<>(4);
+        List<Object[]> batch = new ArrayList<>();
+        int names = 0;
+
+        long afterId = 0L;
+        List<Object[]> rows;
+        do {
+            rows = merchantRepository.findNameRows(afterId, PageRequest.of(0, pageSize));
+            batch.clear();
+            for (Object[] row : rows) {
+                Long merchantId = (Long) row[0];
+                blocks.clear();
+                addBlocks((String) row[1], blocks);
+                addBlocks((String) row[2], blocks);
+                for (String block : blocks) {
+                    batch.add(new Object[] { block, merchantId });
+                }
+                afterId = merchantId;
+            }
+            if (!batch.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_MERCHANT_BLOCK_SQL, batch);
+            }
+            names += rows.size();
+        } while (rows.size() == pageSize);
+
+        afterId = 0L;
+        do {
+            rows = beneficialOwnerRepository.findNameRows(afterId, PageRequest.of(0, pageSize));
+            batch.clear();
+            for (Object[] row : rows) {
+                Long ownerId = (Long) row[0];
+                blocks.clear();
+                addBlocks((String) row[2], blocks);
+                for (String block : blocks) {
+                    batch.add(new Object[] { block, ownerId, row[1] });
+                }
+                afterId = ownerId;
+            }
+            if (!batch.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_OWNER_BLOCK_SQL, batch);
+            }
+            names += rows.size();
+        } while (rows.size() == pageSize);
+
+        jdbcTemplate.update("UPDATE screened_name_block_index SET status = ?, built_at = now() WHERE id = 1", BUILT);
+        built = true;
+        logger.info("Screened name block index built from {} merchant and owner rows in {}ms", names,
+                System.currentTimeMillis() - start);
+    }
+
+    boolean isBuilt() {
+        if (!built) {
+            List<String> status = jdbcTemplate.queryForList(
+                    "SELECT status FROM screened_name_block_index WHERE id = 1", String.class);
+            built = !status.isEmpty() && BUILT.equals(status.get(0));
+        }
+        return built;
+    }
+
+    /**
+     * Keyset scan over every screened name, used until the block index is built
+     */
+    private SortedSet<Long> scanMerchants(Set<String> organizationBlocks, Set<String> personBlocks) {
+        long start = System.currentTimeMillis();
+        SortedSet<Long> merchantIds = new TreeSet<>();
+        Set<String> nameBlocks = new HashSet<>(4);
+        int scanned = 0;
+
+        if (!organizationBlocks.isEmpty()) {
+            long afterId = 0L;
+            List<Object[]> rows;
+            do {
+                rows = merchantRepository.findScreeningNameRows(afterId, PageRequest.of(0, pageSize));
+                for (Object[] row : rows) {
+                    Long merchantId = (Long) row[0];
+                    nameBlocks.clear();
+                    addBlocks((String) row[1], nameBlocks);
+                    addBlocks((String) row[2], nameBlocks);
+                    if (intersects(nameBlocks, organizationBlocks)) {
+                        merchantIds.add(merchantId);
+                    }
+                    afterId = merchantId;
+                }
+                scanned += rows.size();
+            } while (rows.size() == pageSize);
+        }
+
+        if (!personBlocks.isEmpty()) {
+            long afterId = 0L;
+            List<Object[]> rows;
+            do {
+                rows = beneficialOwnerRepository.findScreeningNameRows(afterId, PageRequest.of(0, pageSize));
+                for (Object[] row : rows) {
+                    nameBlocks.clear();
+                    addBlocks((String) row[2], nameBlocks);
+                    if (intersects(nameBlocks, personBlocks)) {
+                        merchantIds.add((Long) row[1]);
+                    }
+                    afterId = (Long) row[0];
+                }
+                scanned += rows.size();
+            } while (rows.size() == pageSize);
+        }
+
+        logger.info("Matched {} organization and {} person blocks against {} screened names in {}ms: {} merchants",
+                organizationBlocks.size(), personBlocks.size(), scanned, System.currentTimeMillis() - start,
+                merchantIds.size());
+        return merchantIds;
+    }
+
+    private void addBlocks(String name, Set<String> blocks) {
+        if (name == null || name.isBlank()) {
+            return;
+        }
+        String normalized = nameMatchingService.normalizeName(name);
+        if (normalized.isEmpty()) {
+            return;
+        }
+        for (boolean alternate : new boolean[] { false, true }) {
+            String code = nameMatchingService.generatePhoneticCodeNormalized(normalized, alternate);
+            if (code != null && !code.isEmpty()) {
+                blocks.add(code);
+            }
+        }
+    }
+
+    private static boolean intersects(Set<String> small, Set<String> large) {
+        for (String block : small) {
+            if (large.contains(block)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,23 @@
+package com.posgateway.aml.service.sanctions;
+
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published after a sanctions list load replaced the screening index.
+ * Listeners rescreen the customers the changed entities could match.
+ */
+public class WatchlistChangedEvent extends ApplicationEvent {
+
+    private static final long serialVersionUID = 1L;
+
+    private final WatchlistDiff diff;
+
+    public WatchlistChangedEvent(Object source, WatchlistDiff diff) {
+        super(source);
+        this.diff = diff;
+    }
+
+    public WatchlistDiff getDiff() {
+        return diff;
+    }
+}
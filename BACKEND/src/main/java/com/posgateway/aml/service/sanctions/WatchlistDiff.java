@@ -0,0 +1,148 @@
+package com.posgateway.aml.service.sanctions;
+
+import com.posgateway.aml.model.ScreeningResult.EntityType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Watchlist Diff
+ * Entities added, modified or removed between two sanctions index snapshots.
+ *
+ * Only changes that can alter a screening outcome count as modifications (names,
+ * aliases, entity type, date of birth); metadata-only changes are ignored.
+ */
+public final class WatchlistDiff {
+
+    private final String previousVersion;
+    private final String version;
+    private final List<SanctionsNameIndex.Entry> added;
+    private final List<SanctionsNameIndex.Entry> removed;
+    private final List<Modification> modified;
+
+    private WatchlistDiff(String previousVersion, String version, List<SanctionsNameIndex.Entry> added,
+            List<SanctionsNameIndex.Entry> removed, List<Modification> modified) {
+        this.previousVersion = previousVersion;
+        this.version = version;
+        this.added = Collections.unmodifiableList(added);
+        this.removed = Collections.unmodifiableList(removed);
+        this.modified = Collections.unmodifiableList(modified);
+    }
+
+    /**
+     * Compare two snapshots by entity ID
+     */
+    public static WatchlistDiff between(SanctionsNameIndex previous, SanctionsNameIndex current) {
+        Map<String, SanctionsNameIndex.Entry> before = new HashMap<>(previous.getEntityCount() * 2);
+        for (SanctionsNameIndex.Entry entry : previous.getEntries()) {
+            if (entry.getEntityId() != null) {
+                before.put(entry.getEntityId(), entry);
+            }
+        }
+
+        List<SanctionsNameIndex.Entry> added = new ArrayList<>();
+        List<Modification> modified = new ArrayList<>();
+        for (SanctionsNameIndex.Entry entry : current.getEntries()) {
+            if (entry.getEntityId() == null) {
+                continue;
+            }
+            SanctionsNameIndex.Entry old = before.remove(entry.getEntityId());
+            if (old == null) {
+                added.add(entry);
+            } else if (!old.sameScreeningData(entry)) {
+                modified.add(new Modification(old, entry));
+            }
+        }
+        // Whatever is left was not in the new snapshot
+        List<SanctionsNameIndex.Entry> removed = new ArrayList<>(before.values());
+
+        return new WatchlistDiff(previous.getVersion(), current.getVersion(), added, removed, modified);
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty() && modified.isEmpty();
+    }
+
+    public int size() {
+        return added.size() + removed.size() + modified.size();
+    }
+
+    /**
+     * Every name and alias, before and after the change, of the changed entities that
+     * can match a screening of the given type (entities of UNKNOWN type match any)
+     */
+    public Set<String> affectedNames(EntityType screenedType) {
+        Set<String> names = new LinkedHashSet<>();
+        for (SanctionsNameIndex.Entry entry : added) {
+            collectNames(entry, screenedType, names);
+        }
+        for (SanctionsNameIndex.Entry entry : removed) {
+            collectNames(entry, screenedType, names);
+        }
+        for (Modification modification : modified) {
+            collectNames(modification.getPrevious(), screenedType, names);
+            collectNames(modification.getCurrent(), screenedType, names);
+        }
+        return names;
+    }
+
+    private static void collectNames(SanctionsNameIndex.Entry entry, EntityType screenedType, Set<String> names) {
+        if (entry.getEntityType() != EntityType.UNKNOWN && entry.getEntityType() != screenedType) {
+            return;
+        }
+        names.add(entry.getName());
+        names.addAll(entry.getAliases());
+    }
+
+    public String getPreviousVersion() {
+        return previousVersion;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public List<SanctionsNameIndex.Entry> getAdded() {
+        return added;
+    }
+
+    public List<SanctionsNameIndex.Entry> getRemoved() {
+        return removed;
+    }
+
+    public List<Modification> getModified() {
+        return modified;
+    }
+
+    @Override
+    public String toString() {
+        return previousVersion + " -> " + version + ": " + added.size() + " added, " + modified.size()
+                + " modified, " + removed.size() + " removed";
+    }
+
+    /**
+     * An entity whose screening data changed
+     */
+    public static final class Modification {
+        private final SanctionsNameIndex.Entry previous;
+        private final SanctionsNameIndex.Entry current;
+
+        Modification(SanctionsNameIndex.Entry previous, SanctionsNameIndex.Entry current) {
+            this.previous = previous;
+            this.current = current;
+        }
+
+        public SanctionsNameIndex.Entry getPrevious() {
+            return previous;
+        }
+
+        public SanctionsNameIndex.Entry getCurrent() {
+            return current;
+        }
+    }
+}
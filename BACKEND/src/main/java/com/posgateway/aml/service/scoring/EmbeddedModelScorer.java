@@ -0,0 +1,257 @@
+package com.posgateway.aml.service.scoring;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.posgateway.aml.entity.ModelConfig;
+import com.posgateway.aml.features.FeatureVector;
+import com.posgateway.aml.repository.ModelConfigRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Embedded Model Scorer
+ * Scores transactions in-process with an exported XGBoost JSON model, removing the
+ * HTTP round trip to the Python scoring service.
+ *
+ * The model file locations come from model_config:
+ * - model.xgboost.live.path   - model used for decisions
+ * - model.xgboost.shadow.path - optional candidate, scored alongside live and only recorded
+ *
+ * Both are polled; when a path or the file's modification time changes, the new model
+ * is parsed off the request path and swapped in atomically. A model that fails to load
+ * never replaces a working one. When no live model is loaded, ScoringService falls back
+ * to the remote scoring service.
+ */
+@Service
+public class EmbeddedModelScorer {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddedModelScorer.class);
+
+    static final String LIVE_MODEL_KEY = "model.xgboost.live.path";
+    static final String SHADOW_MODEL_KEY = "model.xgboost.shadow.path";
+
+    private final ModelConfigRepository modelConfigRepository;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    private final AtomicReference<LoadedModel> liveModel = new AtomicReference<>();
+    private final AtomicReference<LoadedModel> shadowModel = new AtomicReference<>();
+
+    private Timer scoringTimer;
+    private DistributionSummary shadowDeltaSummary;
+    private Counter shadowDisagreementCounter;
+    private Counter reloadSuccessCounter;
+    private Counter reloadFailureCounter;
+
+    @Value("${scoring.embedded.enabled:true}")
+    private boolean enabled;
+
+    @Value("${scoring.embedded.shadow.disagreement.threshold:0.2}")
+    private double shadowDisagreementThreshold;
+
+    @Autowired
+    public EmbeddedModelScorer(ModelConfigRepository modelConfigRepository, ObjectMapper objectMapper,
+            MeterRegistry meterRegistry) {
+        this.modelConfigRepository = modelConfigRepository;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        scoringTimer = Timer.builder("aml_embedded_scoring_latency")
+                .description("In-process model evaluation time")
+                .register(meterRegistry);
+        shadowDeltaSummary = DistributionSummary.builder("aml_embedded_shadow_score_delta")
+                .description("Absolute difference between shadow and live model scores")
+                .register(meterRegistry);
+        shadowDisagreementCounter = Counter.builder("aml_embedded_shadow_disagreement_total")
+                .description("Transactions where shadow and live scores differ by more than the threshold")
+                .register(meterRegistry);
+        reloadSuccessCounter = Counter.builder("aml_embedded_model_reload_total")
+                .tag("result", "success")
+                .description("Embedded model reloads")
+                .register(meterRegistry);
+        reloadFailureCounter = Counter.builder("aml_embedded_model_reload_total")
+                .tag("result", "failure")
+                .description("Embedded model reloads")
+                .register(meterRegistry);
+        Gauge.builder("aml_embedded_model_loaded", liveModel, ref -> ref.get() != null ? 1.0 : 0.0)
+                .description("1 when a model is loaded in-process for the role")
+                .tag("role", "live")
+                .register(meterRegistry);
+        Gauge.builder("aml_embedded_model_loaded", shadowModel, ref -> ref.get() != null ? 1.0 : 0.0)
+                .description("1 when a model is loaded in-process for the role")
+                .tag("role", "shadow")
+                .register(meterRegistry);
+
+        if (!enabled) {
+            logger.info("Embedded model scoring disabled - using remote scoring service");
+            return;
+        }
+        reloadModels();
+    }
+
+    /**
+     * Check whether a live model is loaded
+     */
+    public boolean isReady() {
+        return enabled && liveModel.get() != null;
+    }
+
+    /**
+     * Score with the live model (and the shadow model, if configured)
+     *
+     * @return result, or null when no live model is loaded
+     */
+    public EmbeddedScore score(FeatureVector features) {
+        LoadedModel live = liveModel.get();
+        if (!enabled || live == null) {
+            return null;
+        }
+
+        long start = System.nanoTime();
+        double score = live.model.score(features);
+        long elapsedNanos = System.nanoTime() - start;
+        scoringTimer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+
+        LoadedModel shadow = shadowModel.get();
+        Double shadowScore = null;
+        if (shadow != null) {
+            try {
+                shadowScore = shadow.model.score(features);
+                double delta = Math.abs(shadowScore - score);
+                shadowDeltaSummary.record(delta);
+                if (delta > shadowDisagreementThreshold) {
+                    shadowDisagreementCounter.increment();
+                }
+            } catch (RuntimeException e) {
+                logger.warn("Shadow model {} failed to score: {}", shadow.model.getVersion(), e.getMessage());
+            }
+        }
+
+        return new EmbeddedScore(score, live.model.getVersion(), shadowScore,
+                shadow != null ? shadow.model.getVersion() : null, elapsedNanos);
+    }
+
+    /**
+     * Poll model_config and swap models whose path or file changed
+     */
+    @Scheduled(fixedDelayString = "${scoring.embedded.reload.interval.ms:30000}",
+            initialDelayString = "${scoring.embedded.reload.interval.ms:30000}")
+    public void reloadModels() {
+        if (!enabled) {
+            return;
+        }
+        reload(LIVE_MODEL_KEY, liveModel);
+        reload(SHADOW_MODEL_KEY, shadowModel);
+    }
+
+    private void reload(String configKey, AtomicReference<LoadedModel> target) {
+        String path = null;
+        try {
+            Optional<ModelConfig> config = modelConfigRepository.findByConfigKey(configKey);
+            path = config.map(ModelConfig::getValue).map(String::trim).filter(v -> !v.isEmpty()).orElse(null);
+
+            LoadedModel current = target.get();
+            if (path == null) {
+                if (current != null) {
+                    target.set(null);
+                    logger.info("Unloaded embedded model for {} (config removed)", configKey);
+                }
+                return;
+            }
+
+            Path file = Paths.get(path);
+            long lastModified = Files.getLastModifiedTime(file).toMillis();
+            if (current != null && current.path.equals(path) && current.lastModified == lastModified) {
+                return;
+            }
+
+            long start = System.currentTimeMillis();
+            TreeEnsembleModel model;
+            try (InputStream in = Files.newInputStream(file)) {
+                model = TreeEnsembleModel.load(file.getFileName() + "@" + lastModified, in, objectMapper);
+            }
+            target.set(new LoadedModel(path, lastModified, model));
+            reloadSuccessCounter.increment();
+            logger.info("Loaded embedded model for {}: {} ({} trees) in {}ms",
+                    configKey, model.getVersion(), model.getTreeCount(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            reloadFailureCounter.increment();
+            LoadedModel current = target.get();
+            logger.error("Failed to load embedded model for {} from {} - keeping {}: {}", configKey, path,
+                    current != null ? current.model.getVersion() : "no model", e.getMessage());
+        }
+    }
+
+    private static final class LoadedModel {
+        private final String path;
+        private final long lastModified;
+        private final TreeEnsembleModel model;
+
+        private LoadedModel(String path, long lastModified, TreeEnsembleModel model) {
+            this.path = Objects.requireNonNull(path);
+            this.lastModified = lastModified;
+            this.model = model;
+        }
+    }
+
+    /**
+     * Embedded Score
+     */
+    public static class EmbeddedScore {
+        private final double score;
+        private final String modelVersion;
+        private final Double shadowScore;
+        private final String shadowModelVersion;
+        private final long latencyNanos;
+
+        public EmbeddedScore(double score, String modelVersion, Double shadowScore, String shadowModelVersion,
+                long latencyNanos) {
+            this.score = score;
+            this.modelVersion = modelVersion;
+            this.shadowScore = shadowScore;
+            this.shadowModelVersion = shadowModelVersion;
+            this.latencyNanos = latencyNanos;
+        }
+
+        public double getScore() {
+            return score;
+        }
+
+        public String getModelVersion() {
+            return modelVersion;
+        }
+
+        public Double getShadowScore() {
+            return shadowScore;
+        }
+
+        public String getShadowModelVersion() {
+            return shadowModelVersion;
+        }
+
+        public long getLatencyNanos() {
+            return latencyNanos;
+        }
+    }
+}
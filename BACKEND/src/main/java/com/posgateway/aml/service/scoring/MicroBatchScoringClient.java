@@ -0,0 +1,334 @@
+package com.posgateway.aml.service.scoring;
+
+import com.posgateway.aml.features.FeatureVector;
+import com.posgateway.aml.service.RestClientService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Micro-Batch Scoring Client
+ * Coalesces concurrent score requests into batched calls to ${scoring.service.url}/score/batch.
+ *
+ * A dispatcher thread takes the first queued request, then keeps collecting until
+ * the batch is full or the linger time has elapsed, and hands the batch to a small
+ * sender pool. Each caller gets a future completed with its own entry of the batch
+ * response (same shape as the single /score response: score, latency_ms).
+ *
+ * Backpressure: the request queue is bounded and the number of batches in flight is
+ * capped. When the queue is full, submit() rejects immediately so the caller can
+ * score the transaction directly instead of waiting.
+ *
+ * Batch request:  {"requests": [{"txn_id": 1, "features": {...}}, ...]}
+ * Batch response: {"results": [{"txn_id": 1, "score": 0.12, "latency_ms": 3}, ...]}
+ */
+@Service
+public class MicroBatchScoringClient {
+
+    private static final Logger logger = LoggerFactory.getLogger(MicroBatchScoringClient.class);
+
+    private final RestClientService restClientService;
+    private final MeterRegistry meterRegistry;
+
+    private BlockingQueue<PendingScore> queue;
+    private Semaphore inFlight;
+    private ExecutorService senderExecutor;
+    private Thread dispatcherThread;
+    private volatile boolean running = false;
+
+    private DistributionSummary fillRatioSummary;
+    private DistributionSummary batchSizeSummary;
+    private Timer batchLatencyTimer;
+    private Counter rejectedCounter;
+    private Counter failedBatchCounter;
+
+    @Value("${scoring.batch.enabled:false}")
+    private boolean enabled;
+
+    @Value("${scoring.service.url:http://localhost:8000}")
+    private String scoringServiceUrl;
+
+    @Value("${scoring.service.retry.max:3}")
+    private int maxRetries;
+
+    @Value("${scoring.batch.max.size:64}")
+    private int maxBatchSize;
+
+    @Value("${scoring.batch.linger.micros:2000}")
+    private long lingerMicros;
+
+    @Value("${scoring.batch.queue.capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${scoring.batch.max.in.flight:8}")
+    private int maxInFlight;
+
+    @Autowired
+    public MicroBatchScoringClient(RestClientService restClientService, MeterRegistry meterRegistry) {
+        this.restClientService = restClientService;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            logger.info("Micro-batch scoring disabled - transactions are scored with single /score calls");
+            return;
+        }
+
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        inFlight = new Semaphore(maxInFlight);
+
+        AtomicInteger senderIndex = new AtomicInteger(0);
+        senderExecutor = Executors.newFixedThreadPool(maxInFlight, runnable -> {
+            Thread thread = new Thread(runnable, "scoring-batch-sender-" + senderIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        fillRatioSummary = DistributionSummary.builder("aml_scoring_batch_fill_ratio")
+                .description("Batch size divided by the configured maximum batch size")
+                .register(meterRegistry);
+        batchSizeSummary = DistributionSummary.builder("aml_scoring_batch_size")
+                .description("Number of transactions per /score/batch call")
+                .register(meterRegistry);
+        batchLatencyTimer = Timer.builder("aml_scoring_batch_latency")
+                .description("Round trip time of /score/batch calls")
+                .register(meterRegistry);
+        rejectedCounter = Counter.builder("aml_scoring_batch_rejected_total")
+                .description("Score requests rejected because the batch queue was full")
+                .register(meterRegistry);
+        failedBatchCounter = Counter.builder("aml_scoring_batch_failed_total")
+                .description("Batches that failed after retries")
+                .register(meterRegistry);
+        Gauge.builder("aml_scoring_batch_queue_depth", queue, BlockingQueue::size)
+                .description("Score requests waiting to be batched")
+                .register(meterRegistry);
+
+        running = true;
+        dispatcherThread = new Thread(this::dispatchLoop, "scoring-batch-dispatcher");
+        dispatcherThread.setDaemon(true);
+        dispatcherThread.start();
+
+        logger.info("Micro-batch scoring started (maxBatchSize={}, lingerMicros={}, queueCapacity={}, maxInFlight={})",
+                maxBatchSize, lingerMicros, queueCapacity, maxInFlight);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        dispatcherThread.interrupt();
+        senderExecutor.shutdown();
+        try {
+            if (!senderExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                senderExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            senderExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        failPending(new IllegalStateException("Micro-batch scoring client stopped"));
+    }
+
+    public boolean isEnabled() {
+        return running;
+    }
+
+    /**
+     * Queue a transaction for batched scoring
+     *
+     * @param txnId    Transaction ID
+     * @param features Feature vector (must not be modified until the future completes)
+     * @return future completed with the scoring response for this transaction
+     * @throws RejectedExecutionException if the client is disabled or the queue is full
+     */
+    public CompletableFuture<Map<String, Object>> submit(Long txnId, FeatureVector features) {
+        if (!running) {
+            throw new RejectedExecutionException("Micro-batch scoring is not running");
+        }
+
+        PendingScore pending = new PendingScore(txnId, features);
+        if (!queue.offer(pending)) {
+            rejectedCounter.increment();
+            throw new RejectedExecutionException("Score batch queue full (" + queueCapacity + ")");
+        }
+        return pending.future;
+    }
+
+    private void dispatchLoop() {
+        long lingerNanos = TimeUnit.MICROSECONDS.toNanos(lingerMicros);
+        List<PendingScore> batch = new ArrayList<>(maxBatchSize);
+
+        while (running) {
+            try {
+                PendingScore first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                // Linger until the batch is full or the deadline passes
+                long deadline = System.nanoTime() + lingerNanos;
+                while (batch.size() < maxBatchSize) {
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= maxBatchSize || remaining <= 0) {
+                        break;
+                    }
+                    PendingScore next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                // Blocks when maxInFlight batches are outstanding; the queue absorbs the burst
+                inFlight.acquire();
+                List<PendingScore> toSend = batch;
+                batch = new ArrayList<>(maxBatchSize);
+                try {
+                    senderExecutor.execute(() -> {
+                        try {
+                            send(toSend);
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    inFlight.release();
+                    completeAllExceptionally(toSend, e);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        completeAllExceptionally(batch, new IllegalStateException("Micro-batch scoring client stopped"));
+    }
+
+    private void send(List<PendingScore> batch) {
+        // Skip callers that already gave up waiting
+        List<PendingScore> live = new ArrayList<>(batch.size());
+        for (PendingScore pending : batch) {
+            if (!pending.future.isDone()) {
+                live.add(pending);
+            }
+        }
+        if (live.isEmpty()) {
+            return;
+        }
+
+        fillRatioSummary.record((double) live.size() / maxBatchSize);
+        batchSizeSummary.record(live.size());
+
+        List<Map<String, Object>> requests = new ArrayList<>(live.size());
+        for (PendingScore pending : live) {
+            Map<String, Object> request = new HashMap<>(4);
+            request.put("txn_id", pending.txnId);
+            request.put("features", pending.features);
+            requests.add(request);
+        }
+        Map<String, Object> payload = new HashMap<>(2);
+        payload.put("requests", requests);
+
+        long startTime = System.nanoTime();
+        try {
+            Map<String, Object> response = restClientService.postRequestWithRetry(
+                    scoringServiceUrl + "/score/batch", payload, maxRetries);
+            batchLatencyTimer.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+            completeFromResponse(live, response);
+        } catch (Exception e) {
+            failedBatchCounter.increment();
+            logger.error("Score batch of {} transactions failed: {}", live.size(), e.getMessage());
+            completeAllExceptionally(live, e);
+        }
+    }
+
+    private void completeFromResponse(List<PendingScore> batch, Map<String, Object> response) {
+        Object resultsObject = response != null ? response.get("results") : null;
+        if (!(resultsObject instanceof List)) {
+            completeAllExceptionally(batch, new IllegalStateException("Batch response has no results"));
+            return;
+        }
+
+        List<?> results = (List<?>) resultsObject;
+        Map<Long, Map<String, Object>> byTxnId = new HashMap<>(results.size() * 2);
+        for (Object resultObject : results) {
+            if (resultObject instanceof Map) {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> result = (Map<String, Object>) resultObject;
+                Object txnId = result.get("txn_id");
+                if (txnId instanceof Number) {
+                    byTxnId.put(((Number) txnId).longValue(), result);
+                }
+            }
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            PendingScore pending = batch.get(i);
+            Map<String, Object> result = byTxnId.get(pending.txnId);
+            // Services that do not echo txn_id answer in request order
+            if (result == null && byTxnId.isEmpty() && i < results.size() && results.get(i) instanceof Map) {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> positional = (Map<String, Object>) results.get(i);
+                result = positional;
+            }
+            if (result != null) {
+                pending.future.complete(result);
+            } else {
+                pending.future.completeExceptionally(
+                        new IllegalStateException("No score returned for txn " + pending.txnId));
+            }
+        }
+    }
+
+    private void failPending(Exception cause) {
+        List<PendingScore> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        completeAllExceptionally(remaining, cause);
+    }
+
+    private static void completeAllExceptionally(List<PendingScore> batch, Exception cause) {
+        for (PendingScore pending : batch) {
+            pending.future.completeExceptionally(cause);
+        }
+    }
+
+    private static final class PendingScore {
+        private final Long txnId;
+        private final FeatureVector features;
+        private final CompletableFuture<Map<String, Object>> future = new CompletableFuture<>();
+
+        private PendingScore(Long txnId, FeatureVector features) {
+            this.txnId = txnId;
+            this.features = features;
+        }
+    }
+}
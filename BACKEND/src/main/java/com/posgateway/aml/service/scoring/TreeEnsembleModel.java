@@ -0,0 +1,228 @@
+package com.posgateway.aml.service.scoring;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.posgateway.aml.features.Feature;
+import com.posgateway.aml.features.FeatureVector;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Tree Ensemble Model
+ * Immutable in-memory form of an XGBoost gradient-boosted tree model, loaded from
+ * the JSON produced by Booster.save_model("model.json").
+ *
+ * Each tree is flattened into parallel arrays (children, split feature, threshold,
+ * default direction) so evaluation is a tight loop over primitives with no
+ * allocation. Split semantics follow XGBoost: go left when value < threshold,
+ * follow the default direction when the feature is missing. Split conditions and
+ * leaf values are float32 in XGBoost and feature values are cast to float32 before
+ * the comparison, so thresholds are kept as float and compared in float to take the
+ * same branch as the exported model.
+ *
+ * Model features are bound to FeatureVector slots by name (learner.feature_names);
+ * models exported without names are assumed to use the Feature enum order.
+ * Categorical splits (enable_categorical) are not supported and fail the load.
+ */
+public final class TreeEnsembleModel {
+
+    private final String version;
+    private final boolean logistic;
+    private final double baseMargin;
+    private final int[] featureSlots;
+    private final Tree[] trees;
+
+    private TreeEnsembleModel(String version, boolean logistic, double baseMargin, int[] featureSlots,
+            Tree[] trees) {
+        this.version = version;
+        this.logistic = logistic;
+        this.baseMargin = baseMargin;
+        this.featureSlots = featureSlots;
+        this.trees = trees;
+    }
+
+    /**
+     * Parse an XGBoost JSON model
+     *
+     * @param version Version label reported with scores (e.g. file name or config value)
+     * @throws IOException if the document is not a supported XGBoost JSON model
+     */
+    public static TreeEnsembleModel load(String version, InputStream json, ObjectMapper objectMapper)
+            throws IOException {
+        JsonNode learner = objectMapper.readTree(json).path("learner");
+        JsonNode booster = learner.path("gradient_booster");
+        String boosterName = booster.path("name").asText("gbtree");
+        if (!"gbtree".equals(boosterName)) {
+            throw new IOException("Unsupported booster: " + boosterName);
+        }
+
+        JsonNode modelParams = learner.path("learner_model_param");
+        int numClass = modelParams.path("num_class").asInt(0);
+        if (numClass > 1) {
+            throw new IOException("Multi-class models are not supported (num_class=" + numClass + ")");
+        }
+
+        String objective = learner.path("objective").path("name").asText("binary:logistic");
+        boolean logistic = objective.startsWith("binary:logistic") || objective.startsWith("reg:logistic");
+        double baseScore = parseBaseScore(modelParams.path("base_score").asText("0.5"));
+        // base_score is stored in output space; logistic models start from its margin
+        double baseMargin = logistic ? Math.log(baseScore / (1.0 - baseScore)) : baseScore;
+
+        int numFeature = modelParams.path("num_feature").asInt(Feature.count());
+        int[] featureSlots = bindFeatures(learner.path("feature_names"), numFeature);
+
+        JsonNode treeNodes = booster.path("model").path("trees");
+        if (!treeNodes.isArray() || treeNodes.isEmpty()) {
+            throw new IOException("Model has no trees");
+        }
+        Tree[] trees = new Tree[treeNodes.size()];
+        for (int t = 0; t < trees.length; t++) {
+            trees[t] = Tree.parse(treeNodes.get(t), numFeature);
+        }
+
+        return new TreeEnsembleModel(version, logistic, baseMargin, featureSlots, trees);
+    }
+
+    /**
+     * Score a feature vector
+     *
+     * @return probability for logistic objectives, raw margin otherwise
+     */
+    public double score(FeatureVector features) {
+        double[] values = features.values();
+        double margin = baseMargin;
+        for (Tree tree : trees) {
+            margin += tree.evaluate(values, features, featureSlots);
+        }
+        return logistic ? 1.0 / (1.0 + Math.exp(-margin)) : margin;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public int getTreeCount() {
+        return trees.length;
+    }
+
+    /**
+     * base_score is a plain number ("5E-1") up to XGBoost 2.0 and a one-element vector
+     * ("[5E-1]") from 2.1 on
+     */
+    static double parseBaseScore(String value) throws IOException {
+        String number = value.trim();
+        if (number.startsWith("[") && number.endsWith("]")) {
+            number = number.substring(1, number.length() - 1).trim();
+            if (number.indexOf(',') >= 0) {
+                throw new IOException("Multi-target models are not supported (base_score=" + value + ")");
+            }
+        }
+        try {
+            return Double.parseDouble(number);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid base_score: " + value, e);
+        }
+    }
+
+    private static int[] bindFeatures(JsonNode featureNames, int numFeature) throws IOException {
+        int[] slots = new int[numFeature];
+        if (featureNames.isArray() && !featureNames.isEmpty()) {
+            for (int i = 0; i < numFeature; i++) {
+                Feature feature = i < featureNames.size() ? Feature.byKey(featureNames.get(i).asText()) : null;
+                // Unknown model features are always treated as missing
+                slots[i] = feature != null ? feature.ordinal() : -1;
+            }
+            return slots;
+        }
+
+        if (numFeature > Feature.count()) {
+            throw new IOException("Model uses " + numFeature + " unnamed features but only "
+                    + Feature.count() + " are defined");
+        }
+        for (int i = 0; i < numFeature; i++) {
+            slots[i] = i;
+        }
+        return slots;
+    }
+
+    /**
+     * One regression tree in array form. Leaves have leftChildren[i] == -1 and
+     * carry their output in thresholds[i], as in the XGBoost JSON schema.
+     */
+    private static final class Tree {
+        private final int[] leftChildren;
+        private final int[] rightChildren;
+        private final int[] splitIndices;
+        private final float[] thresholds;
+        private final boolean[] defaultLeft;
+
+        private Tree(int[] leftChildren, int[] rightChildren, int[] splitIndices, float[] thresholds,
+                boolean[] defaultLeft) {
+            this.leftChildren = leftChildren;
+            this.rightChildren = rightChildren;
+            this.splitIndices = splitIndices;
+            this.thresholds = thresholds;
+            this.defaultLeft = defaultLeft;
+        }
+
+        static Tree parse(JsonNode tree, int numFeature) throws IOException {
+            JsonNode left = tree.path("left_children");
+            int nodes = left.size();
+            if (nodes == 0) {
+                throw new IOException("Tree " + tree.path("id").asText("?") + " has no nodes");
+            }
+
+            int[] leftChildren = new int[nodes];
+            int[] rightChildren = new int[nodes];
+            int[] splitIndices = new int[nodes];
+            float[] thresholds = new float[nodes];
+            boolean[] defaultLeft = new boolean[nodes];
+
+            JsonNode right = tree.path("right_children");
+            JsonNode indices = tree.path("split_indices");
+            JsonNode conditions = tree.path("split_conditions");
+            JsonNode defaults = tree.path("default_left");
+            JsonNode splitTypes = tree.path("split_type");
+            if (tree.path("categories_nodes").size() > 0) {
+                throw new IOException("Tree " + tree.path("id").asText("?")
+                        + " has categorical splits, which are not supported");
+            }
+            for (int i = 0; i < nodes; i++) {
+                leftChildren[i] = left.get(i).asInt();
+                rightChildren[i] = right.path(i).asInt(-1);
+                splitIndices[i] = indices.path(i).asInt(0);
+                thresholds[i] = (float) conditions.path(i).asDouble();
+                defaultLeft[i] = defaults.path(i).asInt(0) != 0 || defaults.path(i).asBoolean(false);
+
+                if (leftChildren[i] != -1) {
+                    // 0 = numerical, 1 = categorical
+                    if (splitTypes.path(i).asInt(0) != 0) {
+                        throw new IOException("Node " + i + " in tree " + tree.path("id").asText("?")
+                                + " is a categorical split, which is not supported");
+                    }
+                    if (leftChildren[i] >= nodes || rightChildren[i] < 0 || rightChildren[i] >= nodes
+                            || splitIndices[i] >= numFeature) {
+                        throw new IOException("Malformed node " + i + " in tree " + tree.path("id").asText("?"));
+                    }
+                }
+            }
+            return new Tree(leftChildren, rightChildren, splitIndices, thresholds, defaultLeft);
+        }
+
+        double evaluate(double[] values, FeatureVector features, int[] featureSlots) {
+            int node = 0;
+            while (leftChildren[node] != -1) {
+                int slot = featureSlots[splitIndices[node]];
+                boolean goLeft;
+                if (slot < 0 || !features.has(Feature.at(slot))) {
+                    goLeft = defaultLeft[node];
+                } else {
+                    goLeft = (float) values[slot] < thresholds[node];
+                }
+                node = goLeft ? leftChildren[node] : rightChildren[node];
+            }
+            return thresholds[node];
+        }
+    }
+}
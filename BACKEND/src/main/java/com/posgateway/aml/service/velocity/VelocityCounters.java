@@ -0,0 +1,171 @@
+package com.posgateway.aml.service.velocity;
+
+import java.util.Arrays;
+
+/**
+ * Velocity Counters
+ * Bucketed sliding-window counters for a single key (PAN hash or merchant ID).
+ *
+ * Three rings of fixed-width buckets cover the feature windows:
+ * - 12 x 5 minute buckets for the 1h window
+ * - 24 x 1 hour buckets for the 24h window
+ * - 30 x 1 day buckets for the 7d and 30d windows
+ *
+ * Each bucket remembers the slot it was last written for, so stale buckets are
+ * ignored on read and recycled on write without a background sweep.
+ * All access goes through the instance monitor; critical sections are a few
+ * array writes, so contention stays per key.
+ */
+final class VelocityCounters {
+
+    private static final long FIVE_MINUTES = 300L;
+    private static final long ONE_HOUR = 3_600L;
+    private static final long ONE_DAY = 86_400L;
+
+    private static final int MAX_TERMINALS = 64;
+
+    private final Ring minuteRing = new Ring(12, FIVE_MINUTES);
+    private final Ring hourRing = new Ring(24, ONE_HOUR);
+    private final Ring dayRing = new Ring(30, ONE_DAY);
+
+    // Distinct terminal sketch: terminal hash -> last day slot seen
+    private int[] terminalHashes = new int[4];
+    private long[] terminalDays = new long[4];
+    private int terminalCount;
+
+    private long lastSeenEpochSecond = Long.MIN_VALUE;
+
+    synchronized void record(long epochSecond, long amountCents, String terminalId) {
+        minuteRing.add(epochSecond, amountCents);
+        hourRing.add(epochSecond, amountCents);
+        dayRing.add(epochSecond, amountCents);
+
+        if (terminalId != null) {
+            recordTerminal(terminalId.hashCode(), epochSecond / ONE_DAY);
+        }
+        if (epochSecond > lastSeenEpochSecond) {
+            lastSeenEpochSecond = epochSecond;
+        }
+    }
+
+    synchronized VelocityStats read(long nowEpochSecond) {
+        long nowDay = nowEpochSecond / ONE_DAY;
+        return new VelocityStats(
+                minuteRing.count(nowEpochSecond, 12),
+                minuteRing.amount(nowEpochSecond, 12),
+                hourRing.count(nowEpochSecond, 24),
+                hourRing.amount(nowEpochSecond, 24),
+                dayRing.count(nowEpochSecond, 7),
+                dayRing.amount(nowEpochSecond, 7),
+                dayRing.count(nowEpochSecond, 30),
+                dayRing.amount(nowEpochSecond, 30),
+                distinctTerminals(nowDay, 30),
+                lastSeenEpochSecond == Long.MIN_VALUE ? null : lastSeenEpochSecond);
+    }
+
+    synchronized long lastSeenEpochSecond() {
+        return lastSeenEpochSecond;
+    }
+
+    private void recordTerminal(int hash, long day) {
+        for (int i = 0; i < terminalCount; i++) {
+            if (terminalHashes[i] == hash) {
+                if (day > terminalDays[i]) {
+                    terminalDays[i] = day;
+                }
+                return;
+            }
+        }
+
+        if (terminalCount == terminalHashes.length && terminalCount < MAX_TERMINALS) {
+            int newLength = Math.min(terminalHashes.length * 2, MAX_TERMINALS);
+            terminalHashes = Arrays.copyOf(terminalHashes, newLength);
+            terminalDays = Arrays.copyOf(terminalDays, newLength);
+        }
+
+        if (terminalCount < terminalHashes.length) {
+            terminalHashes[terminalCount] = hash;
+            terminalDays[terminalCount] = day;
+            terminalCount++;
+            return;
+        }
+
+        // Sketch is full - replace the terminal that was seen least recently
+        int oldest = 0;
+        for (int i = 1; i < terminalCount; i++) {
+            if (terminalDays[i] < terminalDays[oldest]) {
+                oldest = i;
+            }
+        }
+        if (day >= terminalDays[oldest]) {
+            terminalHashes[oldest] = hash;
+            terminalDays[oldest] = day;
+        }
+    }
+
+    private long distinctTerminals(long nowDay, int days) {
+        long distinct = 0;
+        for (int i = 0; i < terminalCount; i++) {
+            if (terminalDays[i] > nowDay - days && terminalDays[i] <= nowDay) {
+                distinct++;
+            }
+        }
+        return distinct;
+    }
+
+    /**
+     * Fixed-width ring of buckets indexed by (epochSecond / width) % size.
+     */
+    private static final class Ring {
+        private final int size;
+        private final long width;
+        private final long[] slots;
+        private final long[] counts;
+        private final long[] amounts;
+
+        Ring(int size, long width) {
+            this.size = size;
+            this.width = width;
+            this.slots = new long[size];
+            this.counts = new long[size];
+            this.amounts = new long[size];
+            Arrays.fill(slots, Long.MIN_VALUE);
+        }
+
+        void add(long epochSecond, long amountCents) {
+            long slot = Math.floorDiv(epochSecond, width);
+            int index = (int) Math.floorMod(slot, (long) size);
+            if (slots[index] == slot) {
+                counts[index]++;
+                amounts[index] += amountCents;
+            } else if (slots[index] < slot) {
+                slots[index] = slot;
+                counts[index] = 1;
+                amounts[index] = amountCents;
+            }
+            // Older than the bucket currently occupying the index: outside every window
+        }
+
+        long count(long nowEpochSecond, int buckets) {
+            long nowSlot = Math.floorDiv(nowEpochSecond, width);
+            long total = 0;
+            for (int i = 0; i < size; i++) {
+                if (slots[i] > nowSlot - buckets && slots[i] <= nowSlot) {
+                    total += counts[i];
+                }
+            }
+            return total;
+        }
+
+        long amount(long nowEpochSecond, int buckets) {
+            long nowSlot = Math.floorDiv(nowEpochSecond, width);
+            long total = 0;
+            for (int i = 0; i < size; i++) {
+                if (slots[i] > nowSlot - buckets && slots[i] <= nowSlot) {
+                    total += amounts[i];
+                }
+            }
+            return total;
+        }
+    }
+}
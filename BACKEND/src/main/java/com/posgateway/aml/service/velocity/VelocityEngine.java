@@ -0,0 +1,306 @@
+package com.posgateway.aml.service.velocity;
+
+import com.posgateway.aml.entity.TransactionEntity;
+import com.posgateway.aml.repository.TransactionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Velocity Engine
+ * In-memory sliding-window velocity counters per PAN hash and per merchant.
+ *
+ * Counters are updated on ingest and read in constant time during feature
+ * extraction, so scoring a transaction needs no aggregate SQL queries.
+ * On startup the last 30 days are replayed from PostgreSQL in the background;
+ * until that finishes (or whenever a key may have been dropped because of the
+ * key limit) reads return null and callers fall back to the repository queries.
+ *
+ * Transactions are counted once the ingest transaction commits, so rolled-back
+ * ingests never inflate the counters.
+ *
+ * Counters are node-local: each node only sees the transactions it ingested (plus
+ * its warm-up replay). There is no PAN/merchant routing or cross-node reconciliation
+ * here, so with several nodes behind a load balancer the counters under-count
+ * compared with the SQL aggregates. The engine is therefore off by default
+ * (velocity.engine.enabled=false, feature extraction uses the SQL aggregates); enable it
+ * only on a single node, or where each PAN/merchant is routed to a stable node.
+ */
+@Service
+public class VelocityEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(VelocityEngine.class);
+
+    private static final long RETENTION_SECONDS = 30L * 86_400L;
+
+    private final TransactionRepository transactionRepository;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, VelocityCounters> panCounters = new ConcurrentHashMap<>();
+    private final Map<String, VelocityCounters> merchantCounters = new ConcurrentHashMap<>();
+    private final AtomicInteger keyCount = new AtomicInteger(0);
+    private final AtomicLong warmupRows = new AtomicLong(0);
+
+    private volatile boolean warm = false;
+    private volatile long lastDropEpochSecond = Long.MIN_VALUE;
+
+    private Counter sqlFallbackCounter;
+    private Counter droppedKeyCounter;
+
+    @Value("${velocity.engine.enabled:false}")
+    private boolean enabled;
+
+    @Value("${velocity.engine.max.keys:2000000}")
+    private int maxKeys;
+
+    @Value("${velocity.engine.warmup.enabled:true}")
+    private boolean warmupEnabled;
+
+    @Value("${velocity.engine.warmup.page.size:5000}")
+    private int warmupPageSize;
+
+    @Autowired
+    public VelocityEngine(TransactionRepository transactionRepository, MeterRegistry meterRegistry) {
+        this.transactionRepository = transactionRepository;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        Gauge.builder("aml_velocity_keys", panCounters, Map::size)
+                .description("Number of keys tracked by the in-memory velocity engine")
+                .tag("type", "pan")
+                .register(meterRegistry);
+        Gauge.builder("aml_velocity_keys", merchantCounters, Map::size)
+                .description("Number of keys tracked by the in-memory velocity engine")
+                .tag("type", "merchant")
+                .register(meterRegistry);
+        Gauge.builder("aml_velocity_warm", this, engine -> engine.isReady() ? 1.0 : 0.0)
+                .description("1 when velocity counters are warm and served from memory")
+                .register(meterRegistry);
+        sqlFallbackCounter = Counter.builder("aml_velocity_sql_fallback_total")
+                .description("Velocity reads that had to fall back to SQL aggregates")
+                .register(meterRegistry);
+        droppedKeyCounter = Counter.builder("aml_velocity_dropped_keys_total")
+                .description("Velocity keys not tracked because the key limit was reached")
+                .register(meterRegistry);
+
+        if (!enabled) {
+            logger.info("Velocity engine is disabled - feature extraction will use SQL aggregates");
+            return;
+        }
+
+        if (!warmupEnabled) {
+            warm = true;
+            logger.info("Velocity engine started without warm-up (maxKeys={})", maxKeys);
+            return;
+        }
+
+        // Capture the ceiling before traffic starts so live ingest is never double counted
+        LocalDateTime since = LocalDateTime.now().minusDays(30);
+        Long maxTxnId = transactionRepository.findMaxTxnId(since);
+        if (maxTxnId == null) {
+            warm = true;
+            logger.info("Velocity engine started - no historical transactions to replay");
+            return;
+        }
+
+        Thread warmupThread = new Thread(() -> warmUp(maxTxnId, since), "velocity-warmup");
+        warmupThread.setDaemon(true);
+        warmupThread.start();
+    }
+
+    /**
+     * Record an ingested transaction once the current database transaction commits
+     */
+    public void record(TransactionEntity transaction) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    recordNow(transaction);
+                }
+            });
+        } else {
+            recordNow(transaction);
+        }
+    }
+
+    private void recordNow(TransactionEntity transaction) {
+        record(transaction.getMerchantId(), transaction.getPanHash(), transaction.getTerminalId(),
+                transaction.getAmountCents(), transaction.getTxnTs());
+    }
+
+    /**
+     * Record a transaction against its PAN and merchant counters
+     *
+     * @param merchantId Merchant ID (optional)
+     * @param panHash PAN hash (optional)
+     * @param terminalId Terminal ID (optional)
+     * @param amountCents Amount in cents (null counts as 0)
+     * @param txnTs Transaction timestamp (null means now)
+     */
+    public void record(String merchantId, String panHash, String terminalId, Long amountCents,
+            LocalDateTime txnTs) {
+        if (!enabled) {
+            return;
+        }
+
+        long epochSecond = toEpochSecond(txnTs != null ? txnTs : LocalDateTime.now());
+        long amount = amountCents != null ? amountCents : 0L;
+
+        if (panHash != null) {
+            VelocityCounters counters = countersFor(panCounters, panHash);
+            if (counters != null) {
+                counters.record(epochSecond, amount, terminalId);
+            }
+        }
+        if (merchantId != null) {
+            VelocityCounters counters = countersFor(merchantCounters, merchantId);
+            if (counters != null) {
+                counters.record(epochSecond, amount, terminalId);
+            }
+        }
+    }
+
+    /**
+     * Get velocity stats for a PAN hash
+     *
+     * @return stats, or null when memory is not authoritative and SQL must be used
+     */
+    public VelocityStats getPanStats(String panHash) {
+        return read(panCounters, panHash);
+    }
+
+    /**
+     * Get velocity stats for a merchant
+     *
+     * @return stats, or null when memory is not authoritative and SQL must be used
+     */
+    public VelocityStats getMerchantStats(String merchantId) {
+        return read(merchantCounters, merchantId);
+    }
+
+    /**
+     * Check whether reads are served from memory
+     */
+    public boolean isReady() {
+        return enabled && warm;
+    }
+
+    /**
+     * Drop keys that have had no activity for longer than the largest window
+     */
+    @Scheduled(fixedDelayString = "${velocity.engine.eviction.interval.ms:600000}")
+    public void evictIdleKeys() {
+        if (!enabled) {
+            return;
+        }
+
+        long cutoff = toEpochSecond(LocalDateTime.now()) - RETENTION_SECONDS;
+        int evicted = evictOlderThan(panCounters, cutoff) + evictOlderThan(merchantCounters, cutoff);
+        if (evicted > 0) {
+            logger.info("Velocity engine evicted {} idle keys, {} keys remain", evicted, keyCount.get());
+        }
+    }
+
+    private VelocityStats read(Map<String, VelocityCounters> counters, String key) {
+        if (!isReady() || key == null) {
+            sqlFallbackCounter.increment();
+            return null;
+        }
+
+        long now = toEpochSecond(LocalDateTime.now());
+        VelocityCounters keyCounters = counters.get(key);
+        if (keyCounters != null) {
+            return keyCounters.read(now);
+        }
+
+        // An absent key only means "no history" if nothing was dropped within the retention window
+        if (lastDropEpochSecond > now - RETENTION_SECONDS) {
+            sqlFallbackCounter.increment();
+            return null;
+        }
+        return VelocityStats.empty();
+    }
+
+    private VelocityCounters countersFor(Map<String, VelocityCounters> counters, String key) {
+        VelocityCounters existing = counters.get(key);
+        if (existing != null) {
+            return existing;
+        }
+
+        if (keyCount.get() >= maxKeys) {
+            lastDropEpochSecond = toEpochSecond(LocalDateTime.now());
+            droppedKeyCounter.increment();
+            return null;
+        }
+
+        return counters.computeIfAbsent(key, k -> {
+            keyCount.incrementAndGet();
+            return new VelocityCounters();
+        });
+    }
+
+    private int evictOlderThan(Map<String, VelocityCounters> counters, long cutoffEpochSecond) {
+        int evicted = 0;
+        for (Map.Entry<String, VelocityCounters> entry : counters.entrySet()) {
+            if (entry.getValue().lastSeenEpochSecond() < cutoffEpochSecond
+                    && counters.remove(entry.getKey(), entry.getValue())) {
+                keyCount.decrementAndGet();
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    private void warmUp(Long maxTxnId, LocalDateTime since) {
+        long start = System.currentTimeMillis();
+        long afterTxnId = 0L;
+
+        logger.info("Velocity engine warm-up started (txnId <= {}, since {})", maxTxnId, since);
+        try {
+            while (true) {
+                List<Object[]> rows = transactionRepository.findVelocityRows(
+                        afterTxnId, maxTxnId, since, PageRequest.of(0, warmupPageSize));
+                if (rows.isEmpty()) {
+                    break;
+                }
+                for (Object[] row : rows) {
+                    record((String) row[2], (String) row[1], (String) row[3], (Long) row[4],
+                            (LocalDateTime) row[5]);
+                }
+                afterTxnId = (Long) rows.get(rows.size() - 1)[0];
+                warmupRows.addAndGet(rows.size());
+            }
+            warm = true;
+            logger.info("Velocity engine warm-up completed: {} transactions, {} keys in {}ms",
+                    warmupRows.get(), keyCount.get(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            logger.error("Velocity engine warm-up failed after {} transactions - SQL aggregates remain in use",
+                    warmupRows.get(), e);
+        }
+    }
+
+    private static long toEpochSecond(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC);
+    }
+}
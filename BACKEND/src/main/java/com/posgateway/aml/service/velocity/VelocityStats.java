@@ -0,0 +1,101 @@
+package com.posgateway.aml.service.velocity;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Velocity Stats
+ * Immutable point-in-time view of the sliding-window counters for one key.
+ * Amounts are in cents, matching TransactionEntity.amountCents.
+ */
+public final class VelocityStats {
+
+    private static final VelocityStats EMPTY = new VelocityStats(0, 0, 0, 0, 0, 0, 0, 0, 0, null);
+
+    private final long count1h;
+    private final long amount1h;
+    private final long count24h;
+    private final long amount24h;
+    private final long count7d;
+    private final long amount7d;
+    private final long count30d;
+    private final long amount30d;
+    private final long distinctTerminals30d;
+    private final Long lastSeenEpochSecond;
+
+    VelocityStats(long count1h, long amount1h, long count24h, long amount24h,
+            long count7d, long amount7d, long count30d, long amount30d,
+            long distinctTerminals30d, Long lastSeenEpochSecond) {
+        this.count1h = count1h;
+        this.amount1h = amount1h;
+        this.count24h = count24h;
+        this.amount24h = amount24h;
+        this.count7d = count7d;
+        this.amount7d = amount7d;
+        this.count30d = count30d;
+        this.amount30d = amount30d;
+        this.distinctTerminals30d = distinctTerminals30d;
+        this.lastSeenEpochSecond = lastSeenEpochSecond;
+    }
+
+    /**
+     * Stats for a key that has no activity in any window
+     */
+    public static VelocityStats empty() {
+        return EMPTY;
+    }
+
+    public long getCount1h() {
+        return count1h;
+    }
+
+    public long getAmount1h() {
+        return amount1h;
+    }
+
+    public long getCount24h() {
+        return count24h;
+    }
+
+    public long getAmount24h() {
+        return amount24h;
+    }
+
+    public long getCount7d() {
+        return count7d;
+    }
+
+    public long getAmount7d() {
+        return amount7d;
+    }
+
+    public long getCount30d() {
+        return count30d;
+    }
+
+    public long getAmount30d() {
+        return amount30d;
+    }
+
+    /**
+     * Average amount in cents over 30 days, 0 when there is no activity
+     */
+    public double getAvgAmount30d() {
+        return count30d > 0 ? (double) amount30d / count30d : 0.0;
+    }
+
+    public long getDistinctTerminals30d() {
+        return distinctTerminals30d;
+    }
+
+    /**
+     * Timestamp of the most recent transaction recorded for the key, or null
+     */
+    public LocalDateTime getLastSeen() {
+        if (lastSeenEpochSecond == null) {
+            return null;
+        }
+        return LocalDateTime.ofInstant(Instant.ofEpochSecond(lastSeenEpochSecond), ZoneOffset.UTC);
+    }
+}
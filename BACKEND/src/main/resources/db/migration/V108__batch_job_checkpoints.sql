@@ -0,0 +1,16 @@
+-- Progress of chunked batch jobs (periodic merchant rescreening), so that a run
+-- interrupted by a crash or restart resumes after the last completed chunk.
+
+CREATE TABLE IF NOT EXISTS batch_job_checkpoints (
+    job_name VARCHAR(100) PRIMARY KEY,
+    run_date DATE NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    last_merchant_id BIGINT NOT NULL DEFAULT 0,
+    processed_count BIGINT NOT NULL DEFAULT 0,
+    failed_count BIGINT NOT NULL DEFAULT 0,
+    started_at TIMESTAMP NOT NULL,
+    updated_at TIMESTAMP NOT NULL,
+    completed_at TIMESTAMP
+);
+
+COMMENT ON COLUMN batch_job_checkpoints.last_merchant_id IS 'Highest merchant ID below which every chunk of the run has completed (keyset cursor).';
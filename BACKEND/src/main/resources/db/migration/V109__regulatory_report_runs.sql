@@ -0,0 +1,34 @@
+-- Regulatory report runs (CTR, LCTR, IFTR) written to file in pages, so that a run
+-- over a multi-month period interrupted by a crash or restart resumes after the last
+-- completed page instead of starting over.
+
+CREATE TABLE IF NOT EXISTS regulatory_report_runs (
+    id BIGSERIAL PRIMARY KEY,
+    report_type VARCHAR(10) NOT NULL,
+    format VARCHAR(10) NOT NULL,
+    psp_id BIGINT,
+    period_start TIMESTAMP NOT NULL,
+    period_end TIMESTAMP NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    file_path VARCHAR(500) NOT NULL,
+    bytes_written BIGINT NOT NULL DEFAULT 0,
+    last_txn_ts TIMESTAMP NOT NULL,
+    last_txn_id BIGINT NOT NULL DEFAULT 0,
+    row_count BIGINT NOT NULL DEFAULT 0,
+    totals_json TEXT,
+    error_message VARCHAR(1000),
+    requested_by VARCHAR(100),
+    version BIGINT NOT NULL DEFAULT 0,
+    created_at TIMESTAMP NOT NULL,
+    updated_at TIMESTAMP NOT NULL,
+    completed_at TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_regulatory_report_runs_status ON regulatory_report_runs(status, updated_at);
+
+COMMENT ON COLUMN regulatory_report_runs.bytes_written IS 'Length of the output file at the last checkpoint; anything past it is discarded on resume.';
+COMMENT ON COLUMN regulatory_report_runs.last_txn_ts IS 'Keyset cursor (last_txn_ts, last_txn_id) of the last transaction written at the checkpoint.';
+
+-- Keyset scans of a reporting period, all PSPs and per PSP
+CREATE INDEX IF NOT EXISTS idx_transactions_ts_id ON transactions(txn_ts, txn_id);
+CREATE INDEX IF NOT EXISTS idx_transactions_psp_ts_id ON transactions(psp_id, txn_ts, txn_id);
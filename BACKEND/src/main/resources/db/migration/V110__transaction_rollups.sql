@@ -0,0 +1,28 @@
+-- Per-PSP, per-minute and per-hour transaction counters behind the monitoring dashboards.
+-- Incremented on ingest (batched upserts of in-memory deltas) and rebuilt for past
+-- periods by the rollup backfill; dashboards sum buckets instead of scanning transactions.
+
+CREATE TABLE IF NOT EXISTS transaction_rollups (
+    granularity VARCHAR(6) NOT NULL,
+    psp_id BIGINT NOT NULL,
+    bucket_start TIMESTAMP NOT NULL,
+    total_count BIGINT NOT NULL DEFAULT 0,
+    flagged_count BIGINT NOT NULL DEFAULT 0,
+    high_risk_count BIGINT NOT NULL DEFAULT 0,
+    blocked_count BIGINT NOT NULL DEFAULT 0,
+    risk_low_count BIGINT NOT NULL DEFAULT 0,
+    risk_medium_count BIGINT NOT NULL DEFAULT 0,
+    risk_high_count BIGINT NOT NULL DEFAULT 0,
+    risk_critical_count BIGINT NOT NULL DEFAULT 0,
+    high_amount_count BIGINT NOT NULL DEFAULT 0,
+    high_score_count BIGINT NOT NULL DEFAULT 0,
+    amount_cents BIGINT NOT NULL DEFAULT 0,
+    blocked_amount_cents BIGINT NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (granularity, psp_id, bucket_start)
+);
+
+CREATE INDEX IF NOT EXISTS idx_transaction_rollups_bucket ON transaction_rollups(granularity, bucket_start);
+
+COMMENT ON COLUMN transaction_rollups.granularity IS 'MINUTE or HOUR';
+COMMENT ON COLUMN transaction_rollups.psp_id IS 'PSP of the transactions, -1 for transactions without a PSP';
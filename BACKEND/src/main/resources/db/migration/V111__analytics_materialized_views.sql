@@ -0,0 +1,102 @@
+-- Materialized analytics views behind the dashboard and risk heatmap endpoints.
+-- Refreshed with REFRESH MATERIALIZED VIEW CONCURRENTLY by AnalyticsViewService once
+-- they are older than their configured staleness; every view therefore has a unique
+-- index, and nullable dimensions are coalesced so the index covers every row.
+
+-- Merchant summary, now per PSP and risk level (the V3_1 version was never read or refreshed)
+DROP MATERIALIZED VIEW IF EXISTS merchant_risk_summary_mv;
+DROP FUNCTION IF EXISTS refresh_merchant_risk_summary();
+
+CREATE MATERIALIZED VIEW merchant_risk_summary_mv AS
+SELECT
+    COALESCE(m.psp_id, -1) AS psp_id,
+    COALESCE(m.country, 'UNKNOWN') AS country,
+    COALESCE(m.business_type, 'UNKNOWN') AS business_type,
+    COALESCE(m.status, 'UNKNOWN') AS status,
+    COALESCE(m.risk_level, 'UNKNOWN') AS risk_level,
+    COUNT(*) AS merchant_count,
+    AVG(CASE WHEN mrs.total_points > 0 THEN mrs.total_points ELSE NULL END) AS avg_risk_score
+FROM merchants m
+LEFT JOIN merchant_risk_scores mrs ON m.merchant_id = mrs.merchant_id
+GROUP BY 1, 2, 3, 4, 5;
+
+CREATE UNIQUE INDEX IF NOT EXISTS ux_merchant_risk_summary_mv
+    ON merchant_risk_summary_mv(psp_id, country, business_type, status, risk_level);
+
+-- Cases per creation day and merchant country, with the summed priority score (heatmap)
+CREATE MATERIALIZED VIEW IF NOT EXISTS case_geo_risk_daily_mv AS
+SELECT
+    CAST(c.created_at AS DATE) AS day,
+    COALESCE(c.psp_id, -1) AS psp_id,
+    COALESCE(m.country, 'UNKNOWN') AS country,
+    COUNT(*) AS case_count,
+    SUM(CASE c.priority
+            WHEN 'CRITICAL' THEN 1.0
+            WHEN 'HIGH' THEN 0.75
+            WHEN 'MEDIUM' THEN 0.5
+            ELSE 0.25 END) AS risk_score_sum
+FROM compliance_cases c
+JOIN merchants m ON m.merchant_id = c.merchant_id
+GROUP BY 1, 2, 3;
+
+CREATE UNIQUE INDEX IF NOT EXISTS ux_case_geo_risk_daily_mv ON case_geo_risk_daily_mv(day, psp_id, country);
+
+-- Open cases by status and age at refresh time (case aging chart, open case counts)
+CREATE MATERIALIZED VIEW IF NOT EXISTS case_aging_mv AS
+SELECT
+    COALESCE(c.psp_id, -1) AS psp_id,
+    c.status,
+    CASE
+        WHEN EXTRACT(DAY FROM (now() - c.created_at)) <= 7 THEN '0-7'
+        WHEN EXTRACT(DAY FROM (now() - c.created_at)) <= 14 THEN '8-14'
+        WHEN EXTRACT(DAY FROM (now() - c.created_at)) <= 30 THEN '15-30'
+        WHEN EXTRACT(DAY FROM (now() - c.created_at)) <= 60 THEN '31-60'
+        ELSE '60+' END AS aging_bucket,
+    COUNT(*) AS case_count
+FROM compliance_cases c
+WHERE c.status IN ('NEW', 'ASSIGNED', 'IN_PROGRESS', 'PENDING_REVIEW', 'ESCALATED')
+GROUP BY 1, 2, 3;
+
+CREATE UNIQUE INDEX IF NOT EXISTS ux_case_aging_mv ON case_aging_mv(psp_id, status, aging_bucket);
+
+-- Closed cases per resolution day and outcome (fraud metrics)
+CREATE MATERIALIZED VIEW IF NOT EXISTS case_outcome_daily_mv AS
+SELECT
+    CAST(c.resolved_at AS DATE) AS day,
+    COALESCE(c.psp_id, -1) AS psp_id,
+    c.status,
+    COUNT(*) AS case_count
+FROM compliance_cases c
+WHERE c.resolved_at IS NOT NULL
+  AND c.status IN ('CLOSED_CLEARED', 'CLOSED_SAR_FILED', 'CLOSED_BLOCKED', 'CLOSED_REJECTED')
+GROUP BY 1, 2, 3;
+
+CREATE UNIQUE INDEX IF NOT EXISTS ux_case_outcome_daily_mv ON case_outcome_daily_mv(day, psp_id, status);
+
+-- Transactions per day, built from the hour rollups (V110) rather than the transactions table
+CREATE MATERIALIZED VIEW IF NOT EXISTS transaction_volume_daily_mv AS
+SELECT
+    CAST(r.bucket_start AS DATE) AS day,
+    r.psp_id,
+    SUM(r.total_count) AS txn_count,
+    SUM(r.amount_cents) AS amount_cents
+FROM transaction_rollups r
+WHERE r.granularity = 'HOUR'
+GROUP BY 1, 2;
+
+CREATE UNIQUE INDEX IF NOT EXISTS ux_transaction_volume_daily_mv ON transaction_volume_daily_mv(day, psp_id);
+
+-- Last refresh of each view, shared by all nodes
+CREATE TABLE IF NOT EXISTS analytics_view_refreshes (
+    view_name VARCHAR(64) PRIMARY KEY,
+    refreshed_at TIMESTAMP NOT NULL,
+    duration_ms BIGINT NOT NULL
+);
+
+INSERT INTO analytics_view_refreshes (view_name, refreshed_at, duration_ms)
+VALUES ('merchant_risk_summary_mv', now(), 0),
+       ('case_geo_risk_daily_mv', now(), 0),
+       ('case_aging_mv', now(), 0),
+       ('case_outcome_daily_mv', now(), 0),
+       ('transaction_volume_daily_mv', now(), 0)
+ON CONFLICT (view_name) DO NOTHING;
@@ -0,0 +1,11 @@
+-- Keyset indexes for the streaming CSV exports: rows are read in (created_at / timestamp, id)
+-- order, page by page, optionally restricted to one PSP.
+
+CREATE INDEX IF NOT EXISTS idx_compliance_cases_created_id ON compliance_cases(created_at, id);
+CREATE INDEX IF NOT EXISTS idx_compliance_cases_psp_created_id ON compliance_cases(psp_id, created_at, id);
+
+CREATE INDEX IF NOT EXISTS idx_sars_created_id ON suspicious_activity_reports(created_at, id);
+CREATE INDEX IF NOT EXISTS idx_sars_psp_created_id ON suspicious_activity_reports(psp_id, created_at, id);
+
+CREATE INDEX IF NOT EXISTS idx_audit_logs_enhanced_timestamp_id ON audit_logs_enhanced("timestamp", id);
+CREATE INDEX IF NOT EXISTS idx_audit_logs_enhanced_psp_timestamp_id ON audit_logs_enhanced(psp_id, "timestamp", id);
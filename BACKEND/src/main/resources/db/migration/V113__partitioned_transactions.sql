@@ -0,0 +1,85 @@
+-- Monthly range-partitioned transactions store.
+-- transactions_p is a shadow of the live transactions table, partitioned by txn_ts. It is
+-- filled online by TransactionPartitionMigrationService (sync trigger + keyset copy of the
+-- existing rows) and then swapped in place of transactions in one short transaction.
+-- Partitions (transactions_YYYY_MM) are created ahead of time and detached/archived after
+-- the retention period by TransactionPartitionService.
+
+-- The unused V2_1 example table (two hard-coded 2024 partitions, different columns)
+DROP TABLE IF EXISTS transactions_partitioned CASCADE;
+
+-- Entity columns that were only ever created by Hibernate; metadata-only on a large table.
+-- Adding them here keeps transactions and its partitioned copy identical.
+ALTER TABLE transactions ADD COLUMN IF NOT EXISTS psp_id BIGINT;
+ALTER TABLE transactions ADD COLUMN IF NOT EXISTS ip_address VARCHAR(255);
+ALTER TABLE transactions ADD COLUMN IF NOT EXISTS device_fingerprint VARCHAR(255);
+ALTER TABLE transactions ADD COLUMN IF NOT EXISTS direction VARCHAR(10);
+ALTER TABLE transactions ADD COLUMN IF NOT EXISTS merchant_country VARCHAR(3);
+
+-- Rows without txn_ts cannot be routed to a partition; they are stamped before copying
+CREATE INDEX IF NOT EXISTS idx_transactions_txn_ts_null ON transactions(txn_id) WHERE txn_ts IS NULL;
+
+-- Same columns and column order (the sync trigger copies NEW.* positionally) and the same
+-- txn_id sequence default
+CREATE TABLE IF NOT EXISTS transactions_p (LIKE transactions INCLUDING DEFAULTS)
+    PARTITION BY RANGE (txn_ts);
+
+ALTER TABLE transactions_p ALTER COLUMN txn_ts SET NOT NULL;
+
+-- The partition key must be part of every unique constraint
+ALTER TABLE transactions_p ADD CONSTRAINT transactions_p_pkey PRIMARY KEY (txn_id, txn_ts);
+
+-- Every index carries txn_ts so lookups prune to the partitions of the requested window
+CREATE INDEX IF NOT EXISTS idx_transactions_p_ts_id ON transactions_p(txn_ts, txn_id);
+CREATE INDEX IF NOT EXISTS idx_transactions_p_pan_ts ON transactions_p(pan_hash, txn_ts);
+CREATE INDEX IF NOT EXISTS idx_transactions_p_merchant_ts ON transactions_p(merchant_id, txn_ts);
+CREATE INDEX IF NOT EXISTS idx_transactions_p_psp_ts_id ON transactions_p(psp_id, txn_ts, txn_id);
+CREATE INDEX IF NOT EXISTS idx_transactions_p_device_ts ON transactions_p(device_fingerprint, txn_ts);
+CREATE INDEX IF NOT EXISTS idx_transactions_p_ip_ts ON transactions_p(ip_address, txn_ts);
+CREATE INDEX IF NOT EXISTS idx_transactions_p_risk_level_ts ON transactions_p(risk_level, txn_ts);
+CREATE INDEX IF NOT EXISTS idx_transactions_p_decision_ts ON transactions_p(decision, txn_ts);
+
+-- Catches rows outside every monthly partition (late or far-future timestamps); the
+-- partition manager moves them into their month's partition when it creates it
+CREATE TABLE IF NOT EXISTS transactions_default PARTITION OF transactions_p DEFAULT;
+
+-- Detached partitions past retention are moved here (transactions.partition.archive.mode=ARCHIVE)
+CREATE SCHEMA IF NOT EXISTS transactions_archive;
+
+-- Keeps transactions_p in step with transactions while the existing rows are copied.
+-- Installed on transactions by the migration service, dropped at cutover.
+CREATE OR REPLACE FUNCTION transactions_partition_sync() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP IN ('UPDATE', 'DELETE') THEN
+        IF OLD.txn_ts IS NULL THEN
+            DELETE FROM transactions_p WHERE txn_id = OLD.txn_id;
+        ELSE
+            DELETE FROM transactions_p WHERE txn_id = OLD.txn_id AND txn_ts = OLD.txn_ts;
+        END IF;
+    END IF;
+    IF TG_OP IN ('INSERT', 'UPDATE') AND NEW.txn_ts IS NOT NULL THEN
+        INSERT INTO transactions_p SELECT NEW.* ON CONFLICT DO NOTHING;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Progress of the online migration (single row)
+CREATE TABLE IF NOT EXISTS transaction_partition_migration (
+    id SMALLINT PRIMARY KEY CHECK (id = 1),
+    status VARCHAR(20) NOT NULL,
+    high_water_txn_id BIGINT,
+    copied_up_to_txn_id BIGINT,
+    rows_copied BIGINT NOT NULL DEFAULT 0,
+    started_at TIMESTAMP,
+    copy_completed_at TIMESTAMP,
+    cut_over_at TIMESTAMP,
+    updated_at TIMESTAMP NOT NULL DEFAULT now(),
+    last_error TEXT
+);
+
+COMMENT ON COLUMN transaction_partition_migration.status IS 'NOT_STARTED, COPYING, COPIED, CUT_OVER, FAILED';
+COMMENT ON COLUMN transaction_partition_migration.high_water_txn_id IS 'Highest txn_id when the sync trigger was installed; later rows arrive through the trigger';
+
+INSERT INTO transaction_partition_migration (id, status) VALUES (1, 'NOT_STARTED')
+ON CONFLICT (id) DO NOTHING;
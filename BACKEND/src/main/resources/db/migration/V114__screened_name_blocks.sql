@@ -0,0 +1,36 @@
+-- Reverse index from phonetic blocks (Double Metaphone codes) to the merchants whose
+-- screened names fall into them, used to find the merchants a sanctions list change can
+-- affect without scanning every name. Rows are written by ScreenedNameIndex whenever a
+-- merchant or beneficial owner name is inserted or changed; the codes are computed in
+-- the application, so existing names are indexed by a one-off backfill at startup.
+
+-- Legal and trading names (organization screening)
+CREATE TABLE IF NOT EXISTS merchant_name_blocks (
+    block VARCHAR(16) NOT NULL,
+    merchant_id BIGINT NOT NULL REFERENCES merchants(merchant_id) ON DELETE CASCADE,
+    PRIMARY KEY (block, merchant_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_merchant_name_blocks_merchant ON merchant_name_blocks(merchant_id);
+
+-- Beneficial owner names (person screening)
+CREATE TABLE IF NOT EXISTS owner_name_blocks (
+    block VARCHAR(16) NOT NULL,
+    owner_id BIGINT NOT NULL REFERENCES beneficial_owners(owner_id) ON DELETE CASCADE,
+    merchant_id BIGINT NOT NULL,
+    PRIMARY KEY (block, owner_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_owner_name_blocks_owner ON owner_name_blocks(owner_id);
+
+-- Backfill state (single row); lookups scan the names until it is BUILT
+CREATE TABLE IF NOT EXISTS screened_name_block_index (
+    id SMALLINT PRIMARY KEY CHECK (id = 1),
+    status VARCHAR(20) NOT NULL,
+    built_at TIMESTAMP
+);
+
+COMMENT ON COLUMN screened_name_block_index.status IS 'NOT_BUILT, BUILT';
+
+INSERT INTO screened_name_block_index (id, status) VALUES (1, 'NOT_BUILT')
+ON CONFLICT (id) DO NOTHING;
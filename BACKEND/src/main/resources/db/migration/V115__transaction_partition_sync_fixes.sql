@@ -0,0 +1,108 @@
+-- Fixes to the online transactions partition migration (V113).
+
+-- Sync trigger, rewritten:
+-- - explicit column list, so it no longer depends on both tables having the same column
+--   order (TransactionPartitionMigrationService checks that every column is listed here)
+-- - rows without txn_ts are mirrored with created_at as their timestamp, the same value the
+--   copy uses, instead of being skipped (an update of a copied row without txn_ts used to
+--   delete it from transactions_p and never write it back)
+-- - an update that keeps txn_ts is applied in place with ON CONFLICT ... DO UPDATE
+CREATE OR REPLACE FUNCTION transactions_partition_sync() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'DELETE' OR (TG_OP = 'UPDATE' AND (OLD.txn_ts IS NULL OR OLD.txn_ts IS DISTINCT FROM NEW.txn_ts)) THEN
+        IF OLD.txn_ts IS NULL THEN
+            DELETE FROM transactions_p WHERE txn_id = OLD.txn_id;
+        ELSE
+            DELETE FROM transactions_p WHERE txn_id = OLD.txn_id AND txn_ts = OLD.txn_ts;
+        END IF;
+    END IF;
+    IF TG_OP IN ('INSERT', 'UPDATE') THEN
+        INSERT INTO transactions_p (txn_id, iso_msg, pan_hash, merchant_id, terminal_id, amount_cents, currency,
+                txn_ts, emv_tags, acquirer_response, created_at, krs, trs, cra, risk_level, decision, psp_id,
+                ip_address, device_fingerprint, direction, merchant_country)
+        VALUES (NEW.txn_id, NEW.iso_msg, NEW.pan_hash, NEW.merchant_id, NEW.terminal_id, NEW.amount_cents,
+                NEW.currency, COALESCE(NEW.txn_ts, NEW.created_at, now()), NEW.emv_tags, NEW.acquirer_response,
+                NEW.created_at, NEW.krs, NEW.trs, NEW.cra, NEW.risk_level, NEW.decision, NEW.psp_id,
+                NEW.ip_address, NEW.device_fingerprint, NEW.direction, NEW.merchant_country)
+        ON CONFLICT (txn_id, txn_ts) DO UPDATE SET
+            iso_msg = EXCLUDED.iso_msg,
+            pan_hash = EXCLUDED.pan_hash,
+            merchant_id = EXCLUDED.merchant_id,
+            terminal_id = EXCLUDED.terminal_id,
+            amount_cents = EXCLUDED.amount_cents,
+            currency = EXCLUDED.currency,
+            emv_tags = EXCLUDED.emv_tags,
+            acquirer_response = EXCLUDED.acquirer_response,
+            created_at = EXCLUDED.created_at,
+            krs = EXCLUDED.krs,
+            trs = EXCLUDED.trs,
+            cra = EXCLUDED.cra,
+            risk_level = EXCLUDED.risk_level,
+            decision = EXCLUDED.decision,
+            psp_id = EXCLUDED.psp_id,
+            ip_address = EXCLUDED.ip_address,
+            device_fingerprint = EXCLUDED.device_fingerprint,
+            direction = EXCLUDED.direction,
+            merchant_country = EXCLUDED.merchant_country;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- A partitioned table cannot be referenced by txn_id alone, so the foreign keys to
+-- transactions(txn_id) are replaced at cutover by the triggers below. The dropped keys
+-- are recorded here; the retention job also reads it before dropping a partition.
+CREATE TABLE IF NOT EXISTS transaction_references (
+    table_name TEXT NOT NULL,
+    column_name TEXT NOT NULL,
+    constraint_name TEXT NOT NULL,
+    PRIMARY KEY (table_name, column_name)
+);
+
+COMMENT ON TABLE transaction_references IS 'Foreign keys to transactions(txn_id) replaced by triggers at the partition cutover';
+
+-- Referencing side (one trigger per table, column name as argument): the referenced
+-- transaction must exist, and is locked against deletion as a foreign key would
+CREATE OR REPLACE FUNCTION transactions_reference_check() RETURNS trigger AS $$
+DECLARE
+    ref_txn_id BIGINT := (to_jsonb(NEW) ->> TG_ARGV[0])::BIGINT;
+BEGIN
+    IF ref_txn_id IS NOT NULL THEN
+        PERFORM 1 FROM transactions WHERE txn_id = ref_txn_id FOR KEY SHARE;
+        IF NOT FOUND THEN
+            RAISE EXCEPTION 'insert or update on table "%" violates reference to transactions: txn_id % does not exist',
+                TG_TABLE_NAME, ref_txn_id USING ERRCODE = 'foreign_key_violation';
+        END IF;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Referenced side: a transaction still referenced cannot be deleted or renumbered. Rows
+-- moved between partitions (an update of txn_ts, rehoming out of the default partition,
+-- which sets aml.transactions_rehoming) still exist afterwards and are let through.
+CREATE OR REPLACE FUNCTION transactions_referenced_check() RETURNS trigger AS $$
+DECLARE
+    ref RECORD;
+    referenced BOOLEAN;
+BEGIN
+    IF current_setting('aml.transactions_rehoming', true) = 'on' THEN
+        RETURN NULL;
+    END IF;
+    IF TG_OP = 'UPDATE' AND NEW.txn_id = OLD.txn_id THEN
+        RETURN NULL;
+    END IF;
+    IF EXISTS (SELECT 1 FROM transactions WHERE txn_id = OLD.txn_id) THEN
+        RETURN NULL;
+    END IF;
+    FOR ref IN SELECT table_name, column_name FROM transaction_references LOOP
+        EXECUTE format('SELECT EXISTS (SELECT 1 FROM %s WHERE %I = $1)', ref.table_name, ref.column_name)
+            INTO referenced USING OLD.txn_id;
+        IF referenced THEN
+            RAISE EXCEPTION 'update or delete on table "transactions" violates reference from "%": txn_id % is still referenced',
+                ref.table_name, OLD.txn_id USING ERRCODE = 'foreign_key_violation';
+        END IF;
+    END LOOP;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
@@ -0,0 +1,21 @@
+-- Latest transaction time per PAN, read for TIME_SINCE_LAST_TXN_FOR_PAN_MINUTES.
+-- A card's previous transaction can be years old; finding it in the partitioned
+-- transactions table would probe every monthly partition. Kept current by
+-- PanLastSeenService after each ingested transaction commits.
+CREATE TABLE IF NOT EXISTS pan_last_seen (
+    pan_hash TEXT PRIMARY KEY,
+    last_txn_ts TIMESTAMP NOT NULL
+);
+
+-- Backfill from the existing transactions (single row); lookups read transactions until BUILT
+CREATE TABLE IF NOT EXISTS pan_last_seen_backfill (
+    id SMALLINT PRIMARY KEY CHECK (id = 1),
+    status VARCHAR(20) NOT NULL,
+    backfilled_up_to_txn_id BIGINT NOT NULL DEFAULT 0,
+    built_at TIMESTAMP
+);
+
+COMMENT ON COLUMN pan_last_seen_backfill.status IS 'NOT_BUILT, BUILT';
+
+INSERT INTO pan_last_seen_backfill (id, status) VALUES (1, 'NOT_BUILT')
+ON CONFLICT (id) DO NOTHING;
@@ -0,0 +1,16 @@
+-- Buffered requests that were answered 202 Accepted but could not be ingested, even on their
+-- own after their batch failed (RequestBufferDrainService). The PAN is not stored.
+CREATE TABLE IF NOT EXISTS request_buffer_dead_letters (
+    id BIGSERIAL PRIMARY KEY,
+    request_id VARCHAR(64),
+    merchant_id VARCHAR(255),
+    terminal_id VARCHAR(255),
+    amount_cents BIGINT,
+    currency VARCHAR(3),
+    txn_ts TIMESTAMP,
+    error TEXT,
+    failed_at TIMESTAMP NOT NULL DEFAULT now()
+);
+
+CREATE INDEX IF NOT EXISTS idx_request_buffer_dead_letters_failed_at ON request_buffer_dead_letters(failed_at);
+CREATE INDEX IF NOT EXISTS idx_request_buffer_dead_letters_request ON request_buffer_dead_letters(request_id);
@@ -0,0 +1,14 @@
+-- Completion marker of the startup rollup backfill (single row). The backfill used to run
+-- only while no hour bucket existed, so a flush that wrote first skipped it for good.
+-- claimed_at is refreshed by the node running it; a claim older than 15 minutes is taken over.
+CREATE TABLE IF NOT EXISTS transaction_rollup_backfill (
+    id SMALLINT PRIMARY KEY CHECK (id = 1),
+    status VARCHAR(20) NOT NULL,
+    claimed_at TIMESTAMP,
+    built_at TIMESTAMP
+);
+
+COMMENT ON COLUMN transaction_rollup_backfill.status IS 'NOT_BUILT, BUILT';
+
+INSERT INTO transaction_rollup_backfill (id, status) VALUES (1, 'NOT_BUILT')
+ON CONFLICT (id) DO NOTHING;
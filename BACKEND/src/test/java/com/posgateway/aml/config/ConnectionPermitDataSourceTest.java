@@ -0,0 +1,117 @@
+package com.posgateway.aml.config;
+
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Permit accounting of the connection guard: one permit per open connection, returned
+ * exactly once on close or when the pool fails, and a bounded wait when none is free.
+ */
+class ConnectionPermitDataSourceTest {
+
+    @Test
+    void permitIsHeldUntilTheConnectionIsClosed() throws SQLException {
+        Connection pooled = mock(Connection.class);
+        DataSource target = mock(DataSource.class);
+        when(target.getConnection()).thenReturn(pooled);
+        ConnectionPermitDataSource dataSource = new ConnectionPermitDataSource(target, 2, 50);
+
+        Connection connection = dataSource.getConnection();
+        assertEquals(1, dataSource.getAvailablePermits());
+
+        connection.close();
+        connection.close();
+        assertEquals(2, dataSource.getAvailablePermits());
+        verify(pooled, times(2)).close();
+    }
+
+    @Test
+    void permitIsReturnedWhenThePoolFails() throws SQLException {
+        DataSource target = mock(DataSource.class);
+        when(target.getConnection()).thenThrow(new SQLException("pool exhausted"));
+        ConnectionPermitDataSource dataSource = new ConnectionPermitDataSource(target, 1, 50);
+
+        assertThrows(SQLException.class, dataSource::getConnection);
+        assertEquals(1, dataSource.getAvailablePermits());
+    }
+
+    @Test
+    void waitIsBoundedWhenNoPermitIsFree() throws SQLException {
+        DataSource target = mock(DataSource.class);
+        when(target.getConnection()).thenReturn(mock(Connection.class));
+        ConnectionPermitDataSource dataSource = new ConnectionPermitDataSource(target, 1, 20);
+
+        Connection held = dataSource.getConnection();
+        assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+
+        held.close();
+        dataSource.getConnection().close();
+    }
+
+    @Test
+    void unwrapToConnectionReturnsTheGuardedProxy() throws SQLException {
+        DataSource target = mock(DataSource.class);
+        when(target.getConnection()).thenReturn(mock(Connection.class));
+        ConnectionPermitDataSource dataSource = new ConnectionPermitDataSource(target, 1, 20);
+
+        Connection connection = dataSource.getConnection();
+        // Closing the unwrapped connection must still return the permit
+        connection.unwrap(Connection.class).close();
+        assertEquals(1, dataSource.getAvailablePermits());
+    }
+
+    @Test
+    void neverMoreConnectionsOpenThanPermits() throws Exception {
+        AtomicInteger open = new AtomicInteger();
+        AtomicInteger maxOpen = new AtomicInteger();
+        DataSource target = mock(DataSource.class);
+        when(target.getConnection()).thenAnswer(invocation -> {
+            maxOpen.accumulateAndGet(open.incrementAndGet(), Math::max);
+            Connection connection = mock(Connection.class);
+            doAnswer(close -> open.decrementAndGet()).when(connection).close();
+            return connection;
+        });
+        ConnectionPermitDataSource dataSource = new ConnectionPermitDataSource(target, 4, 5_000);
+
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                futures.add(executor.submit(() -> {
+                    try (Connection connection = dataSource.getConnection()) {
+                        connection.isValid(0);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue(maxOpen.get() <= 4, "max open connections " + maxOpen.get());
+        assertEquals(4, dataSource.getAvailablePermits());
+        assertEquals(0, open.get());
+    }
+}
@@ -0,0 +1,51 @@
+package com.posgateway.aml.controller.analytics;
+
+import com.posgateway.aml.repository.AlertRepository;
+import com.posgateway.aml.repository.ComplianceCaseRepository;
+import com.posgateway.aml.repository.TransactionRepository;
+import com.posgateway.aml.repository.UserRepository;
+import com.posgateway.aml.service.analytics.AnalyticsViewService;
+import com.posgateway.aml.service.monitoring.TransactionRollupService;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Transaction volume: completed days come from the daily volume view, today (not in the
+ * view yet) from the live rollups, and days in neither are zero.
+ */
+class DashboardControllerTest {
+
+    private final AnalyticsViewService analyticsViewService = mock(AnalyticsViewService.class);
+    private final TransactionRollupService rollupService = mock(TransactionRollupService.class);
+    private final DashboardController controller = new DashboardController(mock(ComplianceCaseRepository.class),
+            mock(UserRepository.class), mock(TransactionRepository.class), mock(AlertRepository.class),
+            analyticsViewService, rollupService);
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void pastDaysComeFromTheViewAndTodayFromTheRollups() {
+        LocalDate today = LocalDate.now();
+        when(analyticsViewService.getDailyTransactionCounts(null, today.minusDays(2), today.minusDays(1)))
+                .thenReturn(Map.of(today.minusDays(2), 40L, today, 999L));
+        TransactionRollupService.RollupTotals totals = mock(TransactionRollupService.RollupTotals.class);
+        when(totals.getTotal()).thenReturn(5L);
+        when(rollupService.sum(isNull(), eq(today.atStartOfDay()), any(LocalDateTime.class))).thenReturn(totals);
+
+        Map<String, Object> body = controller.getDailyTransactionVolume(3).getBody();
+
+        assertEquals(List.of(40L, 0L, 5L), (List<Long>) body.get("data"));
+        verify(analyticsViewService).getDailyTransactionCounts(null, today.minusDays(2), today.minusDays(1));
+    }
+}
@@ -0,0 +1,54 @@
+package com.posgateway.aml.controller.reporting;
+
+import com.posgateway.aml.repository.RegulatoryReportRunRepository;
+import com.posgateway.aml.service.reporting.RegulatoryReportEngine;
+import com.posgateway.aml.service.reporting.RegulatoryReportingService;
+import com.posgateway.aml.service.security.PspIsolationService;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDateTime;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Streamed reports cover all PSPs for platform administrators (PSP ID 0) and only their
+ * own PSP for PSP users.
+ */
+class RegulatoryReportingControllerTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2026, 3, 1, 0, 0);
+    private static final LocalDateTime END = LocalDateTime.of(2026, 3, 31, 0, 0);
+
+    private final RegulatoryReportEngine reportEngine = mock(RegulatoryReportEngine.class);
+    private final PspIsolationService pspIsolationService = mock(PspIsolationService.class);
+    private final RegulatoryReportingController controller = new RegulatoryReportingController(
+            mock(RegulatoryReportingService.class), reportEngine, mock(RegulatoryReportRunRepository.class),
+            pspIsolationService);
+
+    @Test
+    void administratorReportsOnAllPsps() throws IOException {
+        when(pspIsolationService.getCurrentUserPspId()).thenReturn(0L);
+
+        controller.exportReport("ctr", "csv", START, END).getBody().writeTo(new ByteArrayOutputStream());
+
+        verify(reportEngine).stream(eq(RegulatoryReportEngine.ReportType.CTR), eq(RegulatoryReportEngine.Format.CSV),
+                eq(START), eq(END), isNull(), any());
+    }
+
+    @Test
+    void pspUserReportsOnTheirOwnPsp() throws IOException {
+        when(pspIsolationService.getCurrentUserPspId()).thenReturn(5L);
+
+        controller.exportReport("iftr", "xml", START, END).getBody().writeTo(new ByteArrayOutputStream());
+
+        verify(reportEngine).stream(eq(RegulatoryReportEngine.ReportType.IFTR), eq(RegulatoryReportEngine.Format.XML),
+                eq(START), eq(END), eq(5L), any());
+    }
+}
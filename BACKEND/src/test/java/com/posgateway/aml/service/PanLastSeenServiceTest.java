@@ -0,0 +1,96 @@
+package com.posgateway.aml.service;
+
+import com.posgateway.aml.entity.TransactionEntity;
+import com.posgateway.aml.repository.TransactionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Last-seen upserts deferred to commit and collapsed per PAN, and the unbounded
+ * transactions lookup until the backfill has built the table.
+ */
+class PanLastSeenServiceTest {
+
+    private static final LocalDateTime T1 = LocalDateTime.of(2026, 3, 1, 10, 0);
+    private static final LocalDateTime T2 = T1.plusDays(400);
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final TransactionRepository transactionRepository = mock(TransactionRepository.class);
+    private final PanLastSeenService service = new PanLastSeenService(jdbcTemplate, mock(TransactionTemplate.class),
+            transactionRepository);
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void recordUpsertsTheLatestTimePerPanAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        service.record(List.of(transaction("B", T1), transaction("A", T2), transaction("A", T1),
+                transaction(null, T1), transaction("C", null)));
+        verifyNoInteractions(jdbcTemplate);
+
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCommit();
+        }
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), rows.capture());
+        assertEquals(2, rows.getValue().size());
+        assertArrayEquals(new Object[] { "A", Timestamp.valueOf(T2) }, rows.getValue().get(0));
+        assertArrayEquals(new Object[] { "B", Timestamp.valueOf(T1) }, rows.getValue().get(1));
+    }
+
+    @Test
+    void readsTransactionsUntilTheBackfillHasBuiltTheTable() {
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class))).thenReturn(List.of("NOT_BUILT"));
+        when(transactionRepository.findLastTransactionTimeByPan("A")).thenReturn(T1);
+
+        assertEquals(T1, service.findLastSeen("A"));
+        verify(jdbcTemplate, never()).queryForList(anyString(), eq(Timestamp.class), any(Object.class));
+    }
+
+    @Test
+    void readsPanLastSeenOnceBuilt() {
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class))).thenReturn(List.of("BUILT"));
+        when(jdbcTemplate.queryForList(anyString(), eq(Timestamp.class), eq("A")))
+                .thenReturn(List.of(Timestamp.valueOf(T2)));
+        when(jdbcTemplate.queryForList(anyString(), eq(Timestamp.class), eq("new")))
+                .thenReturn(List.of());
+
+        assertEquals(T2, service.findLastSeen("A"));
+        assertNull(service.findLastSeen("new"));
+        verifyNoInteractions(transactionRepository);
+    }
+
+    private static TransactionEntity transaction(String panHash, LocalDateTime txnTs) {
+        TransactionEntity transaction = new TransactionEntity();
+        transaction.setPanHash(panHash);
+        transaction.setTxnTs(txnTs);
+        return transaction;
+    }
+}
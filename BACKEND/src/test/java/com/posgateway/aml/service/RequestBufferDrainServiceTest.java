@@ -0,0 +1,158 @@
+package com.posgateway.aml.service;
+
+import com.posgateway.aml.entity.TransactionEntity;
+import com.posgateway.aml.service.HighConcurrencyFraudOrchestrator.FraudDetectionResult;
+import com.posgateway.aml.service.psp.WebhookService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Per-row retry and dead-lettering of batches that fail to ingest, and delivery of
+ * results that complete after the scoring timeout.
+ */
+class RequestBufferDrainServiceTest {
+
+    private static final long PSP = 7L;
+
+    private final TransactionIngestionService ingestionService = mock(TransactionIngestionService.class);
+    private final HighConcurrencyFraudOrchestrator orchestrator = mock(HighConcurrencyFraudOrchestrator.class);
+    private final WebhookService webhookService = mock(WebhookService.class);
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RequestBufferDrainService service = new RequestBufferDrainService(
+            mock(RequestBufferingService.class), ingestionService, orchestrator, webhookService, meterRegistry,
+            jdbcTemplate);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "workerCount", 0);
+        ReflectionTestUtils.setField(service, "scoringTimeoutMs", 50L);
+        service.init();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void failedBatchIsRetriedPerRowAndOnlyTheBadRowIsDeadLettered() {
+        TransactionIngestionService.TransactionRequest good1 = request("r1");
+        TransactionIngestionService.TransactionRequest bad = request("r2");
+        TransactionIngestionService.TransactionRequest good2 = request("r3");
+        when(ingestionService.ingestTransactions(anyList())).thenThrow(new IllegalStateException("batch"));
+        when(ingestionService.ingestTransaction(good1)).thenReturn(transaction(1L));
+        when(ingestionService.ingestTransaction(bad)).thenThrow(new IllegalArgumentException("bad row"));
+        when(ingestionService.ingestTransaction(good2)).thenReturn(transaction(3L));
+        when(orchestrator.processTransactionsParallel(anyList())).thenReturn(List.of(
+                CompletableFuture.completedFuture(result(1L)), CompletableFuture.completedFuture(result(3L))));
+
+        service.processBatch(List.of(good1, bad, good2));
+
+        verify(jdbcTemplate).update(anyString(), eq("r2"), eq("M1"), eq("T1"), eq(100L), eq("USD"), any(),
+                eq("bad row"));
+        ArgumentCaptor<Map<String, Object>> payload = ArgumentCaptor.forClass(Map.class);
+        verify(webhookService).sendWebhook(eq(RequestBufferDrainService.RESULT_EVENT_TYPE), eq(PSP),
+                payload.capture());
+        List<Map<String, Object>> results = (List<Map<String, Object>>) payload.getValue().get("results");
+        assertEquals(2, results.size());
+        assertEquals("r1", results.get(0).get("request_id"));
+        assertEquals("r3", results.get(1).get("request_id"));
+        assertEquals(2.0, meterRegistry.get("aml_request_buffer_drained_total").tag("result", "success")
+                .counter().count());
+        assertEquals(1.0, meterRegistry.get("aml_request_buffer_dead_letters_total").counter().count());
+    }
+
+    @Test
+    void successfulBatchIsNotRetried() {
+        TransactionIngestionService.TransactionRequest request = request("r1");
+        when(ingestionService.ingestTransactions(anyList())).thenReturn(List.of(transaction(1L)));
+        when(orchestrator.processTransactionsParallel(anyList()))
+                .thenReturn(List.of(CompletableFuture.completedFuture(result(1L))));
+
+        service.processBatch(List.of(request));
+
+        verify(ingestionService, never()).ingestTransaction(any());
+        verify(webhookService).sendWebhook(eq(RequestBufferDrainService.RESULT_EVENT_TYPE), eq(PSP), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void resultsCompletingAfterTheTimeoutAreSentWhenDone() {
+        when(ingestionService.ingestTransactions(anyList())).thenReturn(List.of(transaction(1L), transaction(2L)));
+        CompletableFuture<FraudDetectionResult> slow = new CompletableFuture<>();
+        when(orchestrator.processTransactionsParallel(anyList()))
+                .thenReturn(List.of(CompletableFuture.completedFuture(result(1L)), slow));
+
+        service.processBatch(List.of(request("r1"), request("r2")));
+
+        ArgumentCaptor<Map<String, Object>> payload = ArgumentCaptor.forClass(Map.class);
+        verify(webhookService).sendWebhook(eq(RequestBufferDrainService.RESULT_EVENT_TYPE), eq(PSP),
+                payload.capture());
+        assertEquals("r1", ((List<Map<String, Object>>) payload.getValue().get("results")).get(0).get("request_id"));
+
+        slow.complete(result(2L));
+
+        verify(webhookService, times(2)).sendWebhook(eq(RequestBufferDrainService.RESULT_EVENT_TYPE), eq(PSP),
+                payload.capture());
+        List<Map<String, Object>> late = (List<Map<String, Object>>) payload.getValue().get("results");
+        assertEquals(1, late.size());
+        assertEquals("r2", late.get(0).get("request_id"));
+        assertEquals(2.0, meterRegistry.get("aml_request_buffer_drained_total").tag("result", "success")
+                .counter().count());
+    }
+
+    @Test
+    void lateFailureIsCountedAndNotSent() {
+        when(ingestionService.ingestTransactions(anyList())).thenReturn(List.of(transaction(1L)));
+        CompletableFuture<FraudDetectionResult> slow = new CompletableFuture<>();
+        when(orchestrator.processTransactionsParallel(anyList())).thenReturn(List.of(slow));
+
+        service.processBatch(List.of(request("r1")));
+        slow.completeExceptionally(new IllegalStateException("model down"));
+
+        verify(webhookService, never()).sendWebhook(anyString(), any(Long.class), any());
+        assertEquals(1.0, meterRegistry.get("aml_request_buffer_drained_total").tag("result", "failure")
+                .counter().count());
+    }
+
+    private static TransactionIngestionService.TransactionRequest request(String requestId) {
+        TransactionIngestionService.TransactionRequest request = new TransactionIngestionService.TransactionRequest();
+        request.setRequestId(requestId);
+        request.setMerchantId("M1");
+        request.setTerminalId("T1");
+        request.setAmountCents(100L);
+        request.setCurrency("USD");
+        return request;
+    }
+
+    private static TransactionEntity transaction(long txnId) {
+        TransactionEntity transaction = new TransactionEntity();
+        transaction.setTxnId(txnId);
+        transaction.setPspId(PSP);
+        return transaction;
+    }
+
+    private static FraudDetectionResult result(long txnId) {
+        FraudDetectionResult result = new FraudDetectionResult();
+        result.setTxnId(txnId);
+        result.setScore(0.1);
+        result.setAction("APPROVE");
+        return result;
+    }
+}
@@ -0,0 +1,46 @@
+package com.posgateway.aml.service;
+
+import com.posgateway.aml.service.risk.HecmSimulator;
+import com.posgateway.aml.service.risk.SchemeSimulatorService;
+import com.posgateway.aml.service.risk.VfmpSimulator;
+import com.posgateway.aml.service.scoring.EmbeddedModelScorer;
+import com.posgateway.aml.service.scoring.MicroBatchScoringClient;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * The map overload scores a copy: the scheme simulator enrichment does not leak into
+ * the caller's feature map.
+ */
+class ScoringServiceTest {
+
+    private final SchemeSimulatorService schemeSimulatorService = mock(SchemeSimulatorService.class);
+    private final ScoringService service = new ScoringService(mock(RestClientService.class),
+            schemeSimulatorService, null, null, null, mock(MicroBatchScoringClient.class),
+            mock(EmbeddedModelScorer.class));
+
+    @Test
+    void callersFeatureMapIsNotModified() {
+        ReflectionTestUtils.setField(service, "scoringEnabled", false);
+        when(schemeSimulatorService.assessMerchant("M1")).thenReturn(new SchemeSimulatorService.MerchantRiskAssessment(
+                "M1", new VfmpSimulator.VfmpResult(VfmpSimulator.VfmpStage.WATCH, 0.02, 10L),
+                new HecmSimulator.HecmResult(HecmSimulator.HecmStage.NORMAL, 0.001, 1L), null));
+        Map<String, Object> features = new HashMap<>(Map.of("merchant_id", "M1", "amount", 125.0));
+
+        service.scoreTransaction(1L, features);
+        // Read-only maps are accepted as well
+        service.scoreTransaction(2L, Map.of("merchant_id", "M1", "amount", 125.0));
+
+        assertEquals(Map.of("merchant_id", "M1", "amount", 125.0), features);
+        verify(schemeSimulatorService, times(2)).assessMerchant("M1");
+    }
+}
@@ -0,0 +1,193 @@
+package com.posgateway.aml.service.analytics;
+
+import com.posgateway.aml.service.analytics.AnalyticsViewService.AnalyticsView;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Which views the scheduled check refreshes (stale or never refreshed, under the
+ * advisory lock), and the view queries: the PSP filter only when a PSP is given, and
+ * results cached until this node refreshes a view.
+ */
+class AnalyticsViewServiceTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AnalyticsViewService service = new AnalyticsViewService(jdbcTemplate, transactionTemplate,
+            meterRegistry);
+
+    // view_name -> refreshed_at in analytics_view_refreshes
+    private final Map<String, LocalDateTime> refreshes = new HashMap<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ReflectionTestUtils.setField(service, "cacheTtlMs", 60_000L);
+        ReflectionTestUtils.setField(service, "merchantMaxStalenessMs", 300_000L);
+        ReflectionTestUtils.setField(service, "caseMaxStalenessMs", 120_000L);
+        ReflectionTestUtils.setField(service, "heatmapMaxStalenessMs", 900_000L);
+        ReflectionTestUtils.setField(service, "volumeMaxStalenessMs", 300_000L);
+        service.init();
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                ((TransactionCallback<Object>) invocation.getArgument(0)).doInTransaction(null));
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (Map.Entry<String, LocalDateTime> refresh : refreshes.entrySet()) {
+                handler.processRow(row(refresh.getKey(), Timestamp.valueOf(refresh.getValue())));
+            }
+            return null;
+        }).when(jdbcTemplate).query(eq("SELECT view_name, refreshed_at FROM analytics_view_refreshes"),
+                any(RowCallbackHandler.class));
+        when(jdbcTemplate.queryForList(startsWith("SELECT refreshed_at FROM analytics_view_refreshes"),
+                eq(Timestamp.class), anyString())).thenAnswer(invocation -> {
+                    LocalDateTime refreshedAt = refreshes.get(invocation.<String>getArgument(2));
+                    return refreshedAt != null ? List.of(Timestamp.valueOf(refreshedAt)) : List.of();
+                });
+        when(jdbcTemplate.queryForObject(startsWith("SELECT pg_try_advisory_xact_lock"), eq(Boolean.class),
+                anyString())).thenReturn(true);
+    }
+
+    @Test
+    void onlyStaleAndNeverRefreshedViewsAreRefreshed() {
+        LocalDateTime now = LocalDateTime.now();
+        refreshes.put("merchant_risk_summary_mv", now.minusMinutes(1));
+        refreshes.put("case_aging_mv", now.minusMinutes(5));
+        refreshes.put("case_geo_risk_daily_mv", now.minusMinutes(10));
+        refreshes.put("case_outcome_daily_mv", now.minusMinutes(20));
+
+        service.refreshStaleViews();
+
+        verify(jdbcTemplate).execute("REFRESH MATERIALIZED VIEW CONCURRENTLY case_aging_mv");
+        verify(jdbcTemplate).execute("REFRESH MATERIALIZED VIEW CONCURRENTLY case_outcome_daily_mv");
+        verify(jdbcTemplate).execute("REFRESH MATERIALIZED VIEW CONCURRENTLY transaction_volume_daily_mv");
+        verify(jdbcTemplate, times(3)).execute(startsWith("REFRESH MATERIALIZED VIEW"));
+        verify(jdbcTemplate, times(3)).update(startsWith("INSERT INTO analytics_view_refreshes"), anyString(),
+                any(Long.class));
+        assertEquals(1, meterRegistry.get("aml_analytics_view_refresh_duration")
+                .tag("view", "case_aging_mv").timer().count());
+        assertEquals(0, meterRegistry.get("aml_analytics_view_refresh_duration")
+                .tag("view", "merchant_risk_summary_mv").timer().count());
+    }
+
+    @Test
+    void viewLockedByAnotherNodeIsLeftToIt() {
+        when(jdbcTemplate.queryForObject(startsWith("SELECT pg_try_advisory_xact_lock"), eq(Boolean.class),
+                eq("case_aging_mv"))).thenReturn(false);
+
+        assertFalse(service.refresh(AnalyticsView.CASE_AGING));
+        assertTrue(service.refresh(AnalyticsView.MERCHANT_RISK_SUMMARY));
+
+        verify(jdbcTemplate, never()).execute("REFRESH MATERIALIZED VIEW CONCURRENTLY case_aging_mv");
+        verify(jdbcTemplate).execute("REFRESH MATERIALIZED VIEW CONCURRENTLY merchant_risk_summary_mv");
+    }
+
+    @Test
+    void viewRefreshedElsewhereSinceTheCheckIsNotRefreshedAgain() {
+        // Stale when the check reads the refresh times, fresh once the lock is held
+        refreshes.put("merchant_risk_summary_mv", LocalDateTime.now().minusHours(1));
+        for (AnalyticsView view : AnalyticsView.values()) {
+            refreshes.putIfAbsent(view.getViewName(), LocalDateTime.now());
+        }
+        when(jdbcTemplate.queryForObject(startsWith("SELECT pg_try_advisory_xact_lock"), eq(Boolean.class),
+                anyString())).thenAnswer(invocation -> {
+                    refreshes.put("merchant_risk_summary_mv", LocalDateTime.now());
+                    return true;
+                });
+
+        service.refreshStaleViews();
+
+        verify(jdbcTemplate).queryForObject(startsWith("SELECT pg_try_advisory_xact_lock"), eq(Boolean.class),
+                eq("merchant_risk_summary_mv"));
+        verify(jdbcTemplate, never()).execute(startsWith("REFRESH MATERIALIZED VIEW"));
+    }
+
+    @Test
+    void failedRefreshIsCounted() {
+        doAnswer(invocation -> {
+            throw new IllegalStateException("cannot refresh concurrently");
+        }).when(jdbcTemplate).execute("REFRESH MATERIALIZED VIEW CONCURRENTLY case_aging_mv");
+
+        assertFalse(service.refresh(AnalyticsView.CASE_AGING));
+
+        assertEquals(1.0, meterRegistry.get("aml_analytics_view_refresh_failures_total")
+                .tag("view", "case_aging_mv").counter().count());
+    }
+
+    @Test
+    void pspFilterIsAddedOnlyForAPsp() {
+        List<String> sql = new ArrayList<>();
+        List<List<Object>> params = new ArrayList<>();
+        doAnswer(invocation -> {
+            sql.add(invocation.getArgument(0));
+            Object[] arguments = invocation.getArguments();
+            params.add(List.of(arguments).subList(2, arguments.length));
+            ((RowCallbackHandler) invocation.getArgument(1)).processRow(row("ACTIVE", 4L));
+            return null;
+        }).when(jdbcTemplate).query(startsWith("SELECT status, SUM(merchant_count)"), any(RowCallbackHandler.class),
+                any(Object[].class));
+
+        assertEquals(Map.of("ACTIVE", 4L), service.getMerchantCountsByStatus(null));
+        assertEquals(Map.of("ACTIVE", 4L), service.getMerchantCountsByStatus(7L));
+
+        assertEquals("SELECT status, SUM(merchant_count) FROM merchant_risk_summary_mv WHERE 1 = 1 "
+                + "GROUP BY status", sql.get(0));
+        assertEquals(List.of(), params.get(0));
+        assertEquals("SELECT status, SUM(merchant_count) FROM merchant_risk_summary_mv WHERE 1 = 1 "
+                + "AND psp_id = ? GROUP BY status", sql.get(1));
+        assertEquals(List.of(7L), params.get(1));
+    }
+
+    @Test
+    void resultsAreCachedUntilAViewIsRefreshed() {
+        when(jdbcTemplate.queryForList(startsWith("SELECT DISTINCT country"), eq(String.class)))
+                .thenReturn(List.of("KE", "GB"));
+
+        assertEquals(List.of("GB", "KE"), new ArrayList<>(service.getMerchantCountries()));
+        service.getMerchantCountries();
+        verify(jdbcTemplate, times(1)).queryForList(startsWith("SELECT DISTINCT country"), eq(String.class));
+
+        service.refresh(AnalyticsView.MERCHANT_RISK_SUMMARY);
+        service.getMerchantCountries();
+        verify(jdbcTemplate, times(2)).queryForList(startsWith("SELECT DISTINCT country"), eq(String.class));
+    }
+
+    private static ResultSet row(String key, Object value) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getString(1)).thenReturn(key);
+        if (value instanceof Timestamp) {
+            when(rs.getTimestamp(2)).thenReturn((Timestamp) value);
+        } else {
+            when(rs.getLong(2)).thenReturn((Long) value);
+        }
+        return rs;
+    }
+}
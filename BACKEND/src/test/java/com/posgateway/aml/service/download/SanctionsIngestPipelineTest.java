@@ -0,0 +1,158 @@
+package com.posgateway.aml.service.download;
+
+import com.aerospike.client.AerospikeClient;
+import com.aerospike.client.BatchRecord;
+import com.aerospike.client.BatchResults;
+import com.aerospike.client.Key;
+import com.aerospike.client.Record;
+import com.aerospike.client.ResultCode;
+import com.aerospike.client.ScanCallback;
+import com.aerospike.client.policy.ScanPolicy;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.posgateway.aml.service.AerospikeConnectionService;
+import com.posgateway.aml.service.sanctions.NameMatchingService;
+import com.posgateway.aml.service.sanctions.SanctionsIndexService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Records missing from the export are deleted only after a complete run in which every
+ * entity parsed and every write succeeded.
+ */
+class SanctionsIngestPipelineTest {
+
+    private static final String NAMESPACE = "aml";
+
+    private final AerospikeClient client = mock(AerospikeClient.class);
+    private final AerospikeConnectionService aerospikeService = mock(AerospikeConnectionService.class);
+    private SanctionsIngestPipeline pipeline;
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void setUp() {
+        when(aerospikeService.isConnected()).thenReturn(true);
+        when(aerospikeService.getClient()).thenReturn(client);
+        when(aerospikeService.getNamespace()).thenReturn(NAMESPACE);
+        SanctionsIndexService indexService = new SanctionsIndexService(new NameMatchingService(), aerospikeService,
+                new ObjectMapper(), new SimpleMeterRegistry(), mock(ApplicationEventPublisher.class),
+                mock(CacheManager.class));
+        pipeline = new SanctionsIngestPipeline(new NameMatchingService(), indexService, aerospikeService,
+                new ObjectMapper(), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(pipeline, "batchSize", 2);
+        ReflectionTestUtils.setField(pipeline, "parallelism", 2);
+        ReflectionTestUtils.setField(pipeline, "deltaEnabled", true);
+        ReflectionTestUtils.setField(pipeline, "timeoutMinutes", 1L);
+        pipeline.init();
+
+        // Stored before the load: one entity still listed, one removed from the list
+        doAnswer(invocation -> {
+            ScanCallback callback = invocation.getArgument(3);
+            for (String id : List.of("E1", "GONE")) {
+                callback.scanCallback(key(id), new Record(Map.of("content_hash", 1L), 1, 0));
+            }
+            return null;
+        }).when(client).scanAll(any(ScanPolicy.class), eq(NAMESPACE), eq("entities"), any(ScanCallback.class),
+                any(String[].class));
+        when(client.delete(isNull(), isNull(), any(Key[].class))).thenAnswer(invocation -> {
+            Key[] keys = invocation.getArgument(2);
+            BatchRecord[] records = new BatchRecord[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                records[i] = new BatchRecord(keys[i], null, ResultCode.OK, false, true);
+            }
+            return new BatchResults(records, true);
+        });
+    }
+
+    @Test
+    void completeCleanRunDeletesRemovedRecords() throws Exception {
+        writesSucceed();
+
+        assertEquals(3, pipeline.load(export(entity("E1"), entity("E2"), entity("E3")), "v1"));
+
+        ArgumentCaptor<Key[]> deletedKeys = ArgumentCaptor.forClass(Key[].class);
+        verify(client).delete(isNull(), isNull(), deletedKeys.capture());
+        assertEquals(1, deletedKeys.getValue().length);
+        assertArrayEquals(key("GONE").digest, deletedKeys.getValue()[0].digest);
+        assertEquals(1, pipeline.getDeletedCount());
+        assertEquals(3, pipeline.getWrittenCount());
+    }
+
+    @Test
+    void unparseableEntityKeepsRemovedRecords() throws Exception {
+        writesSucceed();
+
+        pipeline.load(export(entity("E1"), "{\"id\": \"E2\", broken", entity("E3")), "v1");
+
+        verify(client, never()).delete(any(), any(), any(Key[].class));
+        assertEquals(0, pipeline.getDeletedCount());
+    }
+
+    @Test
+    void failedWriteKeepsRemovedRecords() throws Exception {
+        when(client.operate(isNull(), anyList())).thenAnswer(invocation -> {
+            List<BatchRecord> records = invocation.getArgument(1);
+            for (BatchRecord record : records) {
+                record.resultCode = "E3".equals(record.key.userKey.toString()) ? ResultCode.TIMEOUT : ResultCode.OK;
+            }
+            return false;
+        });
+
+        pipeline.load(export(entity("E1"), entity("E2"), entity("E3")), "v1");
+
+        verify(client, never()).delete(any(), any(), any(Key[].class));
+        assertEquals(2, pipeline.getWrittenCount());
+    }
+
+    @Test
+    void exportWithoutEntitiesKeepsRemovedRecords() throws Exception {
+        assertEquals(0, pipeline.load(export("", "[]"), "v1"));
+
+        verify(client, never()).delete(any(), any(), any(Key[].class));
+    }
+
+    private void writesSucceed() {
+        when(client.operate(isNull(), anyList())).thenAnswer(invocation -> {
+            List<BatchRecord> records = invocation.getArgument(1);
+            records.forEach(record -> record.resultCode = ResultCode.OK);
+            return true;
+        });
+    }
+
+    private Path export(String... lines) throws Exception {
+        return Files.write(dir.resolve("export.json"), List.of(lines));
+    }
+
+    private static String entity(String id) {
+        return "{\"id\": \"" + id + "\", \"schema\": \"Person\", \"caption\": \"Person " + id
+                + "\", \"properties\": {\"name\": [\"Person " + id + "\"]}}";
+    }
+
+    private static Key key(String id) {
+        return new Key(NAMESPACE, "entities", id);
+    }
+}
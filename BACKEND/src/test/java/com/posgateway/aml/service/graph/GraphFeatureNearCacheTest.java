@@ -0,0 +1,153 @@
+package com.posgateway.aml.service.graph;
+
+import com.aerospike.client.AerospikeClient;
+import com.aerospike.client.BatchRecord;
+import com.aerospike.client.BatchWrite;
+import com.aerospike.client.Bin;
+import com.aerospike.client.Key;
+import com.aerospike.client.Operation;
+import com.aerospike.client.Record;
+import com.aerospike.client.policy.BatchPolicy;
+import com.aerospike.client.policy.Policy;
+import com.aerospike.client.policy.WritePolicy;
+import com.posgateway.aml.service.AerospikeConnectionService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Snapshot distribution through Aerospike: one node publishes in chunks, another
+ * loads the same bytes; older, incomplete or corrupted snapshots are never installed.
+ */
+class GraphFeatureNearCacheTest {
+
+    private final Map<Key, Map<String, Object>> store = new HashMap<>();
+    private AerospikeConnectionService aerospike;
+
+    @BeforeEach
+    void setUp() {
+        AerospikeClient client = mock(AerospikeClient.class);
+        when(client.operate(isNull(BatchPolicy.class), anyList())).thenAnswer(invocation -> {
+            List<BatchRecord> writes = invocation.getArgument(1);
+            for (BatchRecord write : writes) {
+                Map<String, Object> bins = new HashMap<>();
+                for (Operation operation : ((BatchWrite) write).ops) {
+                    bins.put(operation.binName, operation.value.getObject());
+                }
+                store.put(write.key, bins);
+            }
+            return true;
+        });
+        doAnswer(invocation -> {
+            Map<String, Object> bins = new HashMap<>();
+            for (int i = 2; i < invocation.getArguments().length; i++) {
+                Bin bin = invocation.getArgument(i);
+                // The server returns every integer as a long
+                Object value = bin.value.getObject();
+                bins.put(bin.name, value instanceof Integer ? Long.valueOf((Integer) value) : value);
+            }
+            store.put(invocation.getArgument(1), bins);
+            return null;
+        }).when(client).put(any(WritePolicy.class), any(Key.class), any(Bin[].class));
+        when(client.get(isNull(Policy.class), any(Key.class))).thenAnswer(invocation -> record(invocation.getArgument(1)));
+        when(client.get(isNull(BatchPolicy.class), any(Key[].class))).thenAnswer(invocation -> {
+            Key[] keys = invocation.getArgument(1);
+            Record[] records = new Record[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                records[i] = record(keys[i]);
+            }
+            return records;
+        });
+
+        aerospike = mock(AerospikeConnectionService.class);
+        when(aerospike.isConnected()).thenReturn(true);
+        when(aerospike.getClient()).thenReturn(client);
+    }
+
+    @Test
+    void anotherNodeLoadsThePublishedSnapshot() {
+        GraphFeatureNearCache publisher = nearCache();
+        GraphFeatureNearCache reader = nearCache();
+        GraphFeatureSnapshot published = snapshot(100L, 500);
+
+        publisher.publish(published);
+        assertTrue(store.size() > 3, "snapshot should span several chunks");
+        assertNull(reader.getSnapshot());
+
+        reader.refresh();
+        GraphFeatureSnapshot loaded = reader.getSnapshot();
+        assertArrayEquals(published.toBytes(), loaded.toBytes());
+        assertTrue(reader.lookup(loaded, "M1") >= 0);
+        assertEquals(-1, reader.lookup(loaded, "unknown"));
+    }
+
+    @Test
+    void olderSnapshotsAreNeitherInstalledNorPublished() {
+        GraphFeatureNearCache cache = nearCache();
+        cache.publish(snapshot(200L, 10));
+        cache.publish(snapshot(100L, 20));
+
+        assertEquals(200L, cache.getSnapshot().getVersion());
+        assertEquals(10, cache.getSnapshot().size());
+        assertEquals(200L, store.get(new Key("test", "graph_snapshots", "manifest")).get("version"));
+    }
+
+    @Test
+    void corruptedOrIncompleteSnapshotKeepsThePreviousOne() {
+        GraphFeatureNearCache publisher = nearCache();
+        GraphFeatureNearCache reader = nearCache();
+        publisher.publish(snapshot(100L, 50));
+        reader.refresh();
+
+        publisher.publish(snapshot(200L, 500));
+        Map<String, Object> chunk = store.get(new Key("test", "graph_snapshots", "200:1"));
+        byte[] data = ((byte[]) chunk.get("data")).clone();
+        data[10] ^= 1;
+        chunk.put("data", data);
+        reader.refresh();
+        assertEquals(100L, reader.getSnapshot().getVersion());
+
+        store.remove(new Key("test", "graph_snapshots", "200:2"));
+        reader.refresh();
+        assertEquals(100L, reader.getSnapshot().getVersion());
+    }
+
+    private GraphFeatureNearCache nearCache() {
+        GraphFeatureNearCache cache = new GraphFeatureNearCache(aerospike, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "namespace", "test");
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "chunkBytes", 4096);
+        ReflectionTestUtils.setField(cache, "snapshotTtlSeconds", 60);
+        cache.init();
+        return cache;
+    }
+
+    private Record record(Key key) {
+        Map<String, Object> bins = store.get(key);
+        return bins != null ? new Record(new HashMap<>(bins), 1, 0) : null;
+    }
+
+    private static GraphFeatureSnapshot snapshot(long version, int merchants) {
+        GraphFeatureSnapshot.Builder builder = GraphFeatureSnapshot.builder(version, merchants);
+        for (int i = 0; i < merchants; i++) {
+            builder.add("M" + i, i * 0.01, i % 7, i, i, i, 0.5);
+        }
+        return builder.build();
+    }
+}
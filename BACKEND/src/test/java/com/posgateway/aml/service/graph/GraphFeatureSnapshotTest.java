@@ -0,0 +1,89 @@
+package com.posgateway.aml.service.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Off-heap snapshot layout: every merchant added reads back its own metrics, unknown
+ * merchants read as missing, and the serialized form round-trips and is validated.
+ */
+class GraphFeatureSnapshotTest {
+
+    @Test
+    void everyMerchantReadsBackItsMetrics() {
+        Random random = new Random(11);
+        int merchants = 5_000;
+        double[][] metrics = new double[merchants][];
+        GraphFeatureSnapshot.Builder builder = GraphFeatureSnapshot.builder(1_700_000_000_000L, 16);
+        for (int i = 0; i < merchants; i++) {
+            metrics[i] = new double[] { random.nextDouble(), random.nextInt(50), random.nextDouble() * 1e4,
+                    random.nextInt(1_000), random.nextInt(200), random.nextDouble() };
+            builder.add("M" + i, metrics[i][0], (long) metrics[i][1], metrics[i][2], (long) metrics[i][3],
+                    (long) metrics[i][4], metrics[i][5]);
+        }
+        GraphFeatureSnapshot snapshot = builder.build();
+
+        assertEquals(merchants, snapshot.size());
+        assertEquals(24 + merchants * 56, snapshot.sizeInBytes());
+        for (int i = 0; i < merchants; i++) {
+            int index = snapshot.indexOf("M" + i);
+            assertEquals(metrics[i][0], snapshot.getPageRank(index));
+            assertEquals((long) metrics[i][1], snapshot.getCommunityId(index));
+            assertEquals(metrics[i][2], snapshot.getBetweenness(index));
+            assertEquals((long) metrics[i][3], snapshot.getConnectionCount(index));
+            assertEquals((long) metrics[i][4], snapshot.getTriangleCount(index));
+            assertEquals(metrics[i][5], snapshot.getClusteringCoefficient(index));
+        }
+        assertEquals(-1, snapshot.indexOf("M" + merchants));
+        assertEquals(-1, snapshot.indexOf(""));
+    }
+
+    @Test
+    void duplicateMerchantsAreLeftOut() {
+        GraphFeatureSnapshot snapshot = GraphFeatureSnapshot.builder(1L, 4)
+                .add("A", 0.1, 1, 0, 0, 0, 0)
+                .add("B", 0.2, 1, 0, 0, 0, 0)
+                .add("A", 0.3, 1, 0, 0, 0, 0)
+                .add(null, 0.4, 1, 0, 0, 0, 0)
+                .build();
+
+        assertEquals(1, snapshot.size());
+        assertEquals(-1, snapshot.indexOf("A"));
+        assertEquals(0.2, snapshot.getPageRank(snapshot.indexOf("B")));
+    }
+
+    @Test
+    void serializedFormRoundTrips() {
+        GraphFeatureSnapshot.Builder builder = GraphFeatureSnapshot.builder(42L, 0);
+        for (int i = 0; i < 100; i++) {
+            builder.add("M" + i, i, i, i, i, i, i);
+        }
+        GraphFeatureSnapshot snapshot = builder.build();
+        byte[] bytes = snapshot.toBytes();
+
+        GraphFeatureSnapshot loaded = GraphFeatureSnapshot.fromBytes(bytes);
+        assertEquals(42L, loaded.getVersion());
+        assertEquals(100, loaded.size());
+        assertEquals(57.0, loaded.getBetweenness(loaded.indexOf("M57")));
+        assertArrayEquals(bytes, loaded.toBytes());
+        assertEquals(0, GraphFeatureSnapshot.builder(7L, 0).build().size());
+    }
+
+    @Test
+    void rejectsForeignOrTruncatedBytes() {
+        byte[] bytes = GraphFeatureSnapshot.builder(1L, 1).add("A", 1, 1, 1, 1, 1, 1).build().toBytes();
+
+        byte[] truncated = new byte[bytes.length - 1];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+        assertThrows(IllegalArgumentException.class, () -> GraphFeatureSnapshot.fromBytes(truncated));
+
+        bytes[0] ^= 1;
+        assertThrows(IllegalArgumentException.class, () -> GraphFeatureSnapshot.fromBytes(bytes));
+        assertThrows(IllegalArgumentException.class, () -> GraphFeatureSnapshot.fromBytes(new byte[3]));
+    }
+}
@@ -0,0 +1,210 @@
+package com.posgateway.aml.service.graph;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Result;
+import org.neo4j.driver.Session;
+import org.neo4j.driver.SessionConfig;
+import org.neo4j.driver.TransactionContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Write-behind against a mocked Neo4j driver: per-pair link aggregation, batching of
+ * the transactions queued while a write is in flight, bounded buffers, and replay of a
+ * failed link batch under its original batch ID.
+ */
+class GraphWriteBehindServiceTest {
+
+    private static final LocalDateTime T1 = LocalDateTime.of(2026, 3, 1, 10, 0);
+    private static final LocalDateTime T2 = T1.plusMinutes(5);
+    private static final LocalDateTime T3 = T1.plusMinutes(9);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final BlockingQueue<Map<String, Object>> transactionWrites = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Map<String, Object>> linkWrites = new LinkedBlockingQueue<>();
+    private final AtomicInteger linkFailures = new AtomicInteger();
+    private final AtomicBoolean holdNextTransactionWrite = new AtomicBoolean();
+    private final CountDownLatch writerHeld = new CountDownLatch(1);
+    private final CountDownLatch releaseWriter = new CountDownLatch(1);
+
+    private GraphWriteBehindService service;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        TransactionContext tx = mock(TransactionContext.class);
+        when(tx.run(anyString(), anyMap())).thenAnswer(invocation -> {
+            String cypher = invocation.getArgument(0);
+            Map<String, Object> parameters = new HashMap<>(invocation.getArgument(1));
+            parameters.put("rows", new ArrayList<>((List<Object>) parameters.get("rows")));
+            if (cypher.contains("TRANSACTS_WITH")) {
+                if (linkFailures.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                    linkWrites.add(parameters);
+                    throw new IllegalStateException("Neo4j unavailable");
+                }
+                linkWrites.add(parameters);
+            } else {
+                if (holdNextTransactionWrite.compareAndSet(true, false)) {
+                    writerHeld.countDown();
+                    releaseWriter.await();
+                }
+                transactionWrites.add(parameters);
+            }
+            return mock(Result.class);
+        });
+
+        Session session = mock(Session.class);
+        when(session.run(anyString())).thenReturn(mock(Result.class));
+        doAnswer(invocation -> {
+            ((Consumer<TransactionContext>) invocation.getArgument(0)).accept(tx);
+            return null;
+        }).when(session).executeWriteWithoutResult(any());
+        Driver driver = mock(Driver.class);
+        when(driver.session(any(SessionConfig.class))).thenReturn(session);
+
+        service = new GraphWriteBehindService(driver, meterRegistry);
+        ReflectionTestUtils.setField(service, "queueCapacity", 3);
+        ReflectionTestUtils.setField(service, "maxLinks", 2);
+        ReflectionTestUtils.setField(service, "batchSize", 100);
+        ReflectionTestUtils.setField(service, "flushIntervalMs", 20L);
+        ReflectionTestUtils.setField(service, "retryBackoffMs", 10L);
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        releaseWriter.countDown();
+        service.shutdown();
+    }
+
+    @Test
+    void linksAreSummedPerPairAndWrittenOncePerFlush() throws InterruptedException {
+        holdWriter();
+        assertTrue(service.recordMerchantLink("A", "B", 10.0, T2));
+        assertTrue(service.recordMerchantLink("A", "B", 5.0, T1));
+        assertTrue(service.recordMerchantLink("A", "B", 2.5, T3));
+        assertTrue(service.recordMerchantLink("B", "A", 1.0, T1));
+        releaseWriter.countDown();
+
+        List<Map<String, Object>> rows = rows(take(linkWrites));
+        assertEquals(2, rows.size());
+        Map<String, Object> ab = pair(rows, "A", "B");
+        assertEquals(17.5, ab.get("amount"));
+        assertEquals(3L, ab.get("count"));
+        assertEquals(T1, ab.get("firstTxnAt"));
+        assertEquals(T3, ab.get("lastTxnAt"));
+        assertEquals(1L, pair(rows, "B", "A").get("count"));
+    }
+
+    @Test
+    void pairsBeyondTheLimitAreDroppedButKnownPairsStillAdd() throws InterruptedException {
+        holdWriter();
+        assertTrue(service.recordMerchantLink("A", "B", 1.0, T1));
+        assertTrue(service.recordMerchantLink("A", "C", 1.0, T1));
+        assertFalse(service.recordMerchantLink("A", "D", 1.0, T1));
+        assertTrue(service.recordMerchantLink("A", "B", 1.0, T2));
+        releaseWriter.countDown();
+
+        List<Map<String, Object>> rows = rows(take(linkWrites));
+        assertEquals(2, rows.size());
+        assertEquals(2L, pair(rows, "A", "B").get("count"));
+        assertEquals(1.0, droppedRows("links"));
+    }
+
+    @Test
+    void transactionsQueuedDuringAWriteGoOutInOneBatch() throws InterruptedException {
+        holdWriter();
+        assertTrue(service.enqueueTransaction("T1", "M1", "10.00", "USD", "POS", T1));
+        assertTrue(service.enqueueTransaction("T2", "M1", "20.00", "USD", "POS", T2));
+        assertTrue(service.enqueueTransaction("T3", "M2", "30.00", "USD", "POS", T3));
+        assertFalse(service.enqueueTransaction("T4", "M2", "40.00", "USD", "POS", T3));
+        assertEquals(3, service.getQueueSize());
+        releaseWriter.countDown();
+
+        assertEquals(1, rows(take(transactionWrites)).size());
+        List<Map<String, Object>> batch = rows(take(transactionWrites));
+        assertEquals(List.of("T1", "T2", "T3"), List.of(batch.get(0).get("txnId"), batch.get(1).get("txnId"),
+                batch.get(2).get("txnId")));
+        assertEquals(1.0, droppedRows("transactions"));
+    }
+
+    @Test
+    void failedLinkBatchIsReplayedWithItsBatchId() throws InterruptedException {
+        linkFailures.set(1);
+        holdWriter();
+        service.recordMerchantLink("A", "B", 4.0, T1);
+        releaseWriter.countDown();
+
+        Map<String, Object> failed = take(linkWrites);
+        Map<String, Object> retried = take(linkWrites);
+        assertEquals(failed.get("batchId"), retried.get("batchId"));
+        assertEquals(failed.get("rows"), retried.get("rows"));
+
+        service.recordMerchantLink("A", "B", 1.0, T2);
+        assertNotEquals(failed.get("batchId"), take(linkWrites).get("batchId"));
+    }
+
+    /**
+     * Park the writer thread inside a transaction write, so nothing is flushed until
+     * releaseWriter is counted down
+     */
+    private void holdWriter() throws InterruptedException {
+        holdNextTransactionWrite.set(true);
+        service.enqueueTransaction("T0", "M0", "1.00", "USD", "POS", T1);
+        assertTrue(writerHeld.await(5, TimeUnit.SECONDS), "writer did not pick up the transaction");
+    }
+
+    private double droppedRows(String kind) {
+        return meterRegistry.get("aml_graph_ingest_rows_total").tag("kind", kind).tag("result", "dropped")
+                .counter().count();
+    }
+
+    private static Map<String, Object> take(BlockingQueue<Map<String, Object>> writes)
+            throws InterruptedException {
+        Map<String, Object> write = writes.poll(5, TimeUnit.SECONDS);
+        assertNotNull(write, "no write within 5s");
+        return write;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> rows(Map<String, Object> write) {
+        return (List<Map<String, Object>>) write.get("rows");
+    }
+
+    private static Map<String, Object> pair(List<Map<String, Object>> rows, String from, String to) {
+        for (Map<String, Object> row : rows) {
+            if (from.equals(row.get("from")) && to.equals(row.get("to"))) {
+                return row;
+            }
+        }
+        throw new AssertionError("no row for " + from + " -> " + to);
+    }
+}
@@ -0,0 +1,287 @@
+package com.posgateway.aml.service.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Traversal kernels against brute-force references on random graphs: cycles exist
+ * exactly when an exhaustive search finds one, trails and risky merchants are found at
+ * the shortest undirected distance, every returned path uses real edges, and the
+ * limits mark results as truncated.
+ */
+class MerchantGraphCsrTest {
+
+    private static final MerchantGraphCsr.Limits UNLIMITED =
+            new MerchantGraphCsr.Limits(Integer.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE / 2);
+
+    @Test
+    void findCycleAgreesWithExhaustiveSearch() {
+        Random random = new Random(21);
+        int cycles = 0;
+        for (int round = 0; round < 40; round++) {
+            RandomGraph graph = new RandomGraph(random, 30, 45 + random.nextInt(30));
+            for (int start = 0; start < graph.nodes; start++) {
+                int minLength = 2 + random.nextInt(2);
+                int maxLength = minLength + random.nextInt(4);
+                MerchantGraphCsr.Result result = graph.csr.findCycle(graph.node(start), minLength, maxLength, UNLIMITED);
+
+                assertEquals(graph.hasCycle(start, minLength, maxLength), result.isFound(),
+                        "round " + round + " start " + start + " length " + minLength + ".." + maxLength);
+                assertFalse(result.isTruncated());
+                if (result.isFound()) {
+                    cycles++;
+                    int[] path = graph.merchants(result.getPath());
+                    assertEquals(start, path[0]);
+                    assertEquals(start, path[path.length - 1]);
+                    assertTrue(result.getHops() >= minLength && result.getHops() <= maxLength);
+                    assertEquals(path.length - 1, new HashSet<>(boxed(path, path.length - 1)).size(),
+                            "cycle revisits a merchant: " + Arrays.toString(path));
+                    assertEquals(graph.directedAmount(path), result.getTotalAmount(), 1e-9);
+                }
+            }
+        }
+        assertTrue(cycles > 100, "too few cycles to be meaningful: " + cycles);
+    }
+
+    @Test
+    void findTrailIsAShortestUndirectedPath() {
+        Random random = new Random(22);
+        for (int round = 0; round < 40; round++) {
+            RandomGraph graph = new RandomGraph(random, 40, 50 + random.nextInt(40));
+            for (int query = 0; query < 40; query++) {
+                int from = random.nextInt(graph.nodes);
+                int to = random.nextInt(graph.nodes);
+                int maxHops = 1 + random.nextInt(6);
+                int distance = graph.undirectedDistance(from, Set.of(to));
+                MerchantGraphCsr.Result result = graph.csr.findTrail(graph.node(from), graph.node(to), maxHops,
+                        UNLIMITED);
+
+                assertEquals(distance >= 0 && distance <= maxHops, result.isFound(), from + " -> " + to);
+                if (result.isFound()) {
+                    assertEquals(distance, result.getHops());
+                    int[] path = graph.merchants(result.getPath());
+                    assertEquals(from, path[0]);
+                    assertEquals(to, path[path.length - 1]);
+                    assertEquals(graph.undirectedAmount(path), result.getTotalAmount(), 1e-9);
+                }
+            }
+        }
+    }
+
+    @Test
+    void findNearestRiskyReturnsTheClosestFlaggedMerchant() {
+        Random random = new Random(23);
+        for (int round = 0; round < 40; round++) {
+            Set<Integer> risky = new HashSet<>();
+            for (int i = 0; i < 3; i++) {
+                risky.add(random.nextInt(40));
+            }
+            RandomGraph graph = new RandomGraph(random, 40, 60, risky);
+            for (int start = 0; start < graph.nodes; start++) {
+                Set<Integer> others = new HashSet<>(risky);
+                others.remove(start);
+                int distance = graph.undirectedDistance(start, others);
+                MerchantGraphCsr.Result result = graph.csr.findNearestRisky(graph.node(start), 4, UNLIMITED);
+
+                assertEquals(distance >= 0 && distance <= 4, result.isFound(), "start " + start);
+                if (result.isFound()) {
+                    assertEquals(distance, result.getHops());
+                    int[] path = graph.merchants(result.getPath());
+                    assertTrue(others.contains(path[path.length - 1]));
+                    assertEquals(graph.undirectedAmount(path), result.getTotalAmount(), 1e-9);
+                }
+            }
+        }
+    }
+
+    @Test
+    void rowsAreOrderedByAmountSoTheFanOutCapKeepsTheHeaviestFlow() {
+        MerchantGraphCsr.Builder builder = MerchantGraphCsr.builder();
+        for (int i = 0; i < 100; i++) {
+            builder.addEdge("HUB", "S" + i, 1.0 + i);
+            builder.addEdge("S" + i, "HUB", 1.0 + i);
+        }
+        MerchantGraphCsr csr = builder.build();
+
+        MerchantGraphCsr.Result capped = csr.findCycle(csr.nodeOf("HUB"), 2, 2,
+                new MerchantGraphCsr.Limits(1, 1_000, Long.MAX_VALUE / 2));
+        assertTrue(capped.isFound());
+        assertTrue(capped.isTruncated());
+        assertEquals("S99", csr.merchantIdOf(capped.getPath()[1]));
+        assertEquals(200.0, capped.getTotalAmount());
+
+        // HUB only expands its heaviest payee (S99), so the lightest loop is missed but flagged
+        MerchantGraphCsr.Result missed = csr.findCycle(csr.nodeOf("S0"), 2, 2,
+                new MerchantGraphCsr.Limits(1, 1_000, Long.MAX_VALUE / 2));
+        assertFalse(missed.isFound());
+        assertTrue(missed.isTruncated());
+    }
+
+    @Test
+    void visitLimitTruncatesTheSearch() {
+        MerchantGraphCsr.Builder builder = MerchantGraphCsr.builder();
+        for (int i = 0; i < 50; i++) {
+            builder.addEdge("M" + i, "M" + (i + 1), 1.0);
+        }
+        MerchantGraphCsr csr = builder.build();
+
+        MerchantGraphCsr.Result result = csr.findTrail(csr.nodeOf("M0"), csr.nodeOf("M50"), 60,
+                new MerchantGraphCsr.Limits(10, 10, Long.MAX_VALUE / 2));
+        assertFalse(result.isFound());
+        assertTrue(result.isTruncated());
+
+        MerchantGraphCsr.Result full = csr.findTrail(csr.nodeOf("M0"), csr.nodeOf("M50"), 60, UNLIMITED);
+        assertEquals(50, full.getHops());
+        assertFalse(full.isTruncated());
+        assertEquals(-1, csr.nodeOf("unknown"));
+    }
+
+    private static List<Integer> boxed(int[] values, int length) {
+        List<Integer> list = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+            list.add(values[i]);
+        }
+        return list;
+    }
+
+    /**
+     * Random directed graph with at most one edge per unordered pair, so an undirected
+     * path has a single amount, and adjacency lists for the reference searches
+     */
+    private static final class RandomGraph {
+        private final int nodes;
+        private final MerchantGraphCsr csr;
+        private final Map<Long, Double> directed = new HashMap<>();
+        private final List<List<Integer>> out = new ArrayList<>();
+        private final List<List<Integer>> undirected = new ArrayList<>();
+
+        RandomGraph(Random random, int nodes, int edges) {
+            this(random, nodes, edges, Set.of());
+        }
+
+        RandomGraph(Random random, int nodes, int edges, Set<Integer> risky) {
+            this.nodes = nodes;
+            for (int i = 0; i < nodes; i++) {
+                out.add(new ArrayList<>());
+                undirected.add(new ArrayList<>());
+            }
+            MerchantGraphCsr.Builder builder = MerchantGraphCsr.builder();
+            for (int i = 0; i < nodes; i++) {
+                builder.addMerchant(id(i));
+            }
+            for (int merchant : risky) {
+                builder.markRisky(id(merchant));
+            }
+            for (int e = 0; e < edges; e++) {
+                int from = random.nextInt(nodes);
+                int to = random.nextInt(nodes);
+                if (from == to || directed.containsKey(key(from, to)) || directed.containsKey(key(to, from))) {
+                    continue;
+                }
+                double amount = 1 + random.nextInt(1_000);
+                directed.put(key(from, to), amount);
+                out.get(from).add(to);
+                undirected.get(from).add(to);
+                undirected.get(to).add(from);
+                builder.addEdge(id(from), id(to), amount);
+            }
+            this.csr = builder.build();
+        }
+
+        int node(int merchant) {
+            return csr.nodeOf(id(merchant));
+        }
+
+        int[] merchants(int[] path) {
+            int[] merchants = new int[path.length];
+            for (int i = 0; i < path.length; i++) {
+                merchants[i] = Integer.parseInt(csr.merchantIdOf(path[i]).substring(1));
+            }
+            return merchants;
+        }
+
+        boolean hasCycle(int start, int minLength, int maxLength) {
+            boolean[] onPath = new boolean[nodes];
+            onPath[start] = true;
+            return extend(start, start, 0, minLength, maxLength, onPath);
+        }
+
+        private boolean extend(int start, int node, int length, int minLength, int maxLength, boolean[] onPath) {
+            for (int next : out.get(node)) {
+                if (next == start && length + 1 >= minLength) {
+                    return true;
+                }
+                if (next != start && !onPath[next] && length + 1 < maxLength) {
+                    onPath[next] = true;
+                    boolean found = extend(start, next, length + 1, minLength, maxLength, onPath);
+                    onPath[next] = false;
+                    if (found) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        int undirectedDistance(int from, Set<Integer> targets) {
+            int[] distance = new int[nodes];
+            Arrays.fill(distance, -1);
+            distance[from] = 0;
+            ArrayDeque<Integer> queue = new ArrayDeque<>(List.of(from));
+            while (!queue.isEmpty()) {
+                int node = queue.poll();
+                if (targets.contains(node)) {
+                    return distance[node];
+                }
+                for (int next : undirected.get(node)) {
+                    if (distance[next] < 0) {
+                        distance[next] = distance[node] + 1;
+                        queue.add(next);
+                    }
+                }
+            }
+            return -1;
+        }
+
+        double directedAmount(int[] path) {
+            double amount = 0;
+            for (int i = 1; i < path.length; i++) {
+                Double edge = directed.get(key(path[i - 1], path[i]));
+                assertTrue(edge != null, "no edge " + path[i - 1] + " -> " + path[i]);
+                amount += edge;
+            }
+            return amount;
+        }
+
+        double undirectedAmount(int[] path) {
+            double amount = 0;
+            for (int i = 1; i < path.length; i++) {
+                Double edge = directed.getOrDefault(key(path[i - 1], path[i]), directed.get(key(path[i], path[i - 1])));
+                assertTrue(edge != null, "no edge between " + path[i - 1] + " and " + path[i]);
+                amount += edge;
+            }
+            return amount;
+        }
+
+        private static long key(int from, int to) {
+            return (long) from << 32 | to;
+        }
+
+        private static String id(int merchant) {
+            return "M" + merchant;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.posgateway.aml.service.graph;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.neo4j.driver.Driver;
+import org.neo4j.driver.Record;
+import org.neo4j.driver.Result;
+import org.neo4j.driver.Session;
+import org.neo4j.driver.SessionConfig;
+import org.neo4j.driver.Value;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Claiming and releasing changed merchants around a refresh, against a mocked Neo4j
+ * driver: the algorithms run concurrently on the projection, claims are released under
+ * the run ID that took them only after every algorithm and the write-back succeeded, a
+ * failed run leaves them for the next one, and an overlapping refresh claims nothing.
+ */
+class Neo4jGdsServiceTest {
+
+    private final Driver driver = mock(Driver.class);
+    private final Neo4jGdsService service = new Neo4jGdsService(driver, null, null, null, new SimpleMeterRegistry());
+
+    // Run IDs passed to the claim and release queries, and the GDS calls made
+    private final List<String> claims = new CopyOnWriteArrayList<>();
+    private final List<String> releases = new CopyOnWriteArrayList<>();
+    private final List<String> algorithms = new CopyOnWriteArrayList<>();
+    private volatile Function<String, Boolean> algorithmOutcome = algorithm -> true;
+
+    @BeforeEach
+    void setUp() {
+        Session session = mock(Session.class);
+        when(driver.session(any(SessionConfig.class))).thenReturn(session);
+        when(session.run(anyString())).thenAnswer(invocation -> result(invocation.getArgument(0), Map.of()));
+        when(session.run(anyString(), anyMap())).thenAnswer(invocation ->
+                result(invocation.getArgument(0), invocation.getArgument(1)));
+        ReflectionTestUtils.setField(service, "algorithmParallelism", 4);
+        ReflectionTestUtils.setField(service, "incrementalEnabled", true);
+        ReflectionTestUtils.setField(service, "haloHops", 1);
+        ReflectionTestUtils.setField(service, "maxDirtyRatio", 0.1);
+        ReflectionTestUtils.setField(service, "fullRefreshIntervalMs", 86_400_000L);
+        ReflectionTestUtils.setField(service, "exportBatchSize", 100);
+        service.init();
+        // Past the first (full) run
+        ReflectionTestUtils.setField(service, "lastFullRefreshMillis", System.currentTimeMillis());
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void algorithmsRunConcurrentlyAndClaimsAreReleasedAfterTheWrite() {
+        // Each algorithm waits until all four are running
+        CountDownLatch allRunning = new CountDownLatch(4);
+        algorithmOutcome = algorithm -> {
+            allRunning.countDown();
+            try {
+                return allRunning.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                return false;
+            }
+        };
+
+        service.refreshAllGraphMetrics();
+
+        assertEquals(4, algorithms.size());
+        assertEquals(1, claims.size());
+        assertEquals(claims, releases);
+    }
+
+    @Test
+    void failedRunKeepsItsClaimsForTheNextRun() {
+        algorithmOutcome = algorithm -> !algorithm.contains("louvain");
+
+        service.refreshAllGraphMetrics();
+
+        assertEquals(1, claims.size());
+        assertTrue(releases.isEmpty());
+
+        algorithmOutcome = algorithm -> true;
+        service.refreshAllGraphMetrics();
+
+        // The retry takes the claims over under its own run ID and releases them
+        assertEquals(2, claims.size());
+        assertEquals(List.of(claims.get(1)), releases);
+    }
+
+    @Test
+    void overlappingRefreshClaimsNothing() throws Exception {
+        CountDownLatch firstRunning = new CountDownLatch(1);
+        CountDownLatch finishFirst = new CountDownLatch(1);
+        algorithmOutcome = algorithm -> {
+            if (algorithm.contains("pageRank")) {
+                firstRunning.countDown();
+                try {
+                    return finishFirst.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    return false;
+                }
+            }
+            return true;
+        };
+        CompletableFuture<Void> first = CompletableFuture.runAsync(service::refreshAllGraphMetrics);
+        assertTrue(firstRunning.await(5, TimeUnit.SECONDS));
+
+        service.refreshAllGraphMetrics();
+
+        assertEquals(1, claims.size());
+        finishFirst.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        assertEquals(claims, releases);
+
+        // Once the first run is done the next one goes ahead
+        service.refreshAllGraphMetrics();
+        assertEquals(2, claims.size());
+    }
+
+    private Result result(String cypher, Map<String, Object> parameters) {
+        Result result = mock(Result.class);
+        if (cypher.contains("RETURN count(m) AS merchants")) {
+            single(result, 100L);
+        } else if (cypher.contains("SET m.gdsRun = $runId")) {
+            claims.add((String) parameters.get("runId"));
+            single(result, 5L);
+        } else if (cypher.contains("REMOVE m.gdsRun")) {
+            releases.add((String) parameters.get("runId"));
+        } else if (cypher.contains("SET m.gdsCore = $runId")) {
+            single(result, 8L);
+        } else if (cypher.contains("gds.graph.project(")) {
+            single(result, 20L);
+        } else if (cypher.contains(".mutate(")) {
+            algorithms.add(cypher);
+            if (!algorithmOutcome.apply(cypher)) {
+                throw new IllegalStateException("GDS procedure failed");
+            }
+        } else if (cypher.contains("gds.graph.nodeProperties.write")) {
+            single(result, 32L);
+        }
+        return result;
+    }
+
+    private static void single(Result result, long value) {
+        Value column = mock(Value.class);
+        when(column.asLong()).thenReturn(value);
+        Record record = mock(Record.class);
+        when(record.get(anyString())).thenReturn(column);
+        when(result.single()).thenReturn(record);
+    }
+}
@@ -0,0 +1,194 @@
+package com.posgateway.aml.service.monitoring;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Counter increments per transaction, the minute/hour ranges a window is summed from,
+ * and the backfill cutoff and completion marker.
+ */
+class TransactionRollupServiceTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    private final TransactionRollupService service = new TransactionRollupService(jdbcTemplate,
+            transactionTemplate, new SimpleMeterRegistry());
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ReflectionTestUtils.setField(service, "minuteRetentionHours", 48);
+        ReflectionTestUtils.setField(service, "backfillOnStartup", true);
+        ReflectionTestUtils.setField(service, "backfillDays", 35);
+        service.init();
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                ((TransactionCallback<Object>) invocation.getArgument(0)).doInTransaction(null));
+    }
+
+    @Test
+    void riskScoreUsesTrsOrTheAmountFallback() {
+        assertEquals(82, TransactionRollupService.riskScore(200000L, 82.9));
+        assertEquals(75, TransactionRollupService.riskScore(100001L, null));
+        assertEquals(95, TransactionRollupService.riskScore(100000L, null));
+        assertEquals(95, TransactionRollupService.riskScore(50001L, null));
+        assertEquals(25, TransactionRollupService.riskScore(50000L, null));
+        assertEquals(25, TransactionRollupService.riskScore(null, null));
+    }
+
+    @Test
+    void countersFollowTheDashboardThresholds() {
+        // total, flagged, high risk, blocked, low, medium, high, critical, high amount,
+        // high score, amount, blocked amount
+        assertArrayEquals(new long[] { 1, 0, 0, 0, 1, 0, 0, 0, 0, 0, 1000, 0 },
+                TransactionRollupService.counters(1000L, 25.0));
+        assertArrayEquals(new long[] { 1, 1, 0, 0, 0, 1, 0, 0, 0, 0, 1000, 0 },
+                TransactionRollupService.counters(1000L, 50.0));
+        assertArrayEquals(new long[] { 1, 1, 1, 0, 0, 0, 1, 0, 0, 1, 1000, 0 },
+                TransactionRollupService.counters(1000L, 75.0));
+        assertArrayEquals(new long[] { 1, 1, 1, 1, 0, 0, 0, 1, 1, 1, 60000, 60000 },
+                TransactionRollupService.counters(60000L, null));
+        assertArrayEquals(new long[] { 1, 0, 0, 0, 1, 0, 0, 0, 0, 0, 0, 0 },
+                TransactionRollupService.counters(null, null));
+    }
+
+    @Test
+    void windowWithinAnHourIsSummedFromMinutes() {
+        LocalDateTime from = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).minusHours(2).plusMinutes(10);
+        LocalDateTime to = from.plusMinutes(20);
+
+        List<Object> args = sum(7L, from, to);
+
+        assertEquals(Arrays.asList(TransactionRollupService.MINUTE, ts(from), ts(to.plusNanos(1)), 7L), args);
+    }
+
+    @Test
+    void windowAcrossHoursUsesMinutesAtTheEdgesAndHoursBetween() {
+        LocalDateTime hour = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).minusHours(5);
+        LocalDateTime from = hour.plusMinutes(30).plusSeconds(15);
+        LocalDateTime to = hour.plusHours(3).plusMinutes(5);
+
+        List<Object> args = sum(null, from, to);
+
+        assertEquals(Arrays.asList(
+                TransactionRollupService.MINUTE, ts(hour.plusMinutes(30)), ts(hour.plusHours(1)),
+                TransactionRollupService.HOUR, ts(hour.plusHours(1)), ts(hour.plusHours(3)),
+                TransactionRollupService.MINUTE, ts(hour.plusHours(3)), ts(to.plusNanos(1))), args);
+    }
+
+    @Test
+    void windowOnHourBoundariesSkipsEmptyMinuteRanges() {
+        LocalDateTime from = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).minusHours(6);
+        LocalDateTime to = from.plusHours(4);
+
+        List<Object> args = sum(null, from, to);
+
+        assertEquals(Arrays.asList(TransactionRollupService.HOUR, ts(from), ts(to),
+                TransactionRollupService.MINUTE, ts(to), ts(to.plusNanos(1))), args);
+    }
+
+    @Test
+    void windowPastTheMinuteRetentionIsWidenedToWholeHours() {
+        LocalDateTime from = LocalDateTime.now().minusDays(10).withMinute(20);
+        LocalDateTime to = from.plusDays(2).withMinute(40);
+
+        List<Object> args = sum(3L, from, to);
+
+        assertEquals(Arrays.asList(TransactionRollupService.HOUR, ts(from.truncatedTo(ChronoUnit.HOURS)),
+                ts(to.truncatedTo(ChronoUnit.HOURS).plusHours(1)), 3L), args);
+    }
+
+    @Test
+    void backfillStopsAtTheFlushCutoff() {
+        LocalDateTime currentHour = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
+        List<Object[]> deletes = new ArrayList<>();
+        when(jdbcTemplate.update(startsWith("DELETE FROM transaction_rollups"), any(), any(), any()))
+                .thenAnswer(invocation -> {
+                    deletes.add(new Object[] { invocation.getArgument(1), invocation.getArgument(2),
+                            invocation.getArgument(3) });
+                    return 0;
+                });
+
+        service.backfill(currentHour.minusHours(3), currentHour.plusMinutes(10));
+
+        LocalDateTime cutoff = TransactionRollupService.backfillCutoff(currentHour);
+        assertEquals(currentHour.minusHours(1), cutoff);
+        assertEquals(2, deletes.size());
+        assertArrayEquals(new Object[] { TransactionRollupService.HOUR, ts(currentHour.minusHours(3)), ts(cutoff) },
+                deletes.get(0));
+        assertArrayEquals(new Object[] { TransactionRollupService.MINUTE, ts(currentHour.minusHours(3)),
+                ts(cutoff) }, deletes.get(1));
+    }
+
+    @Test
+    void startupBackfillRunsUntilMarkedBuilt() {
+        when(jdbcTemplate.update(startsWith("UPDATE transaction_rollup_backfill SET claimed_at"), anyString()))
+                .thenReturn(1);
+
+        service.backfillIfNotBuilt();
+
+        verify(jdbcTemplate).update(startsWith("UPDATE transaction_rollup_backfill SET status"), eq("BUILT"));
+    }
+
+    @Test
+    void startupBackfillIsSkippedWhenBuiltOrClaimed() {
+        when(jdbcTemplate.update(startsWith("UPDATE transaction_rollup_backfill SET claimed_at"), anyString()))
+                .thenReturn(0);
+
+        assertFalse(service.claimBackfill());
+        service.backfillIfNotBuilt();
+
+        verify(jdbcTemplate, never()).update(startsWith("DELETE FROM transaction_rollups"), any(), any(), any());
+        verify(jdbcTemplate, never()).update(startsWith("UPDATE transaction_rollup_backfill SET status"),
+                anyString());
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object> sum(Long pspId, LocalDateTime from, LocalDateTime to) {
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        List<Object> args = new ArrayList<>();
+        when(jdbcTemplate.queryForObject(sql.capture(), any(RowMapper.class), any(Object[].class)))
+                .thenAnswer(invocation -> {
+                    Object[] arguments = invocation.getArguments();
+                    for (int i = 2; i < arguments.length; i++) {
+                        args.add(arguments[i]);
+                    }
+                    return new long[12];
+                });
+
+        assertEquals(0, service.sum(pspId, from, to).getTotal());
+        assertTrue(sql.getValue().contains("FROM transaction_rollups WHERE ("));
+        assertEquals(pspId != null, sql.getValue().endsWith(" AND psp_id = ?"));
+        return args;
+    }
+
+    private static Timestamp ts(LocalDateTime time) {
+        return Timestamp.valueOf(time);
+    }
+}
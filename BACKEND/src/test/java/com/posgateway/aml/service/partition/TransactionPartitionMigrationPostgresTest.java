@@ -0,0 +1,185 @@
+package com.posgateway.aml.service.partition;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Online partition migration against PostgreSQL: the keyset copy, the sync trigger (V115)
+ * mirroring writes made during the copy, verify, and the cutover replacing the foreign
+ * keys with trigger checks. Runs in a throwaway schema.
+ * Run with: mvn test -Dtest=TransactionPartitionMigrationPostgresTest
+ *   -Dpostgres.test.url=jdbc:postgresql://localhost:5432/postgres
+ *   [-Dpostgres.test.user=postgres -Dpostgres.test.password=...]
+ * e.g. against docker run -e POSTGRES_PASSWORD=postgres -p 5432:5432 postgres:15
+ */
+@EnabledIfSystemProperty(named = "postgres.test.url", matches = ".+")
+class TransactionPartitionMigrationPostgresTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.now().withNano(0);
+
+    private final String schema = "partition_migration_test_" + System.nanoTime();
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionPartitionService partitionService;
+    private TransactionPartitionMigrationService migrationService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dataSource = new SingleConnectionDataSource(System.getProperty("postgres.test.url"),
+                System.getProperty("postgres.test.user", "postgres"),
+                System.getProperty("postgres.test.password", "postgres"), true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE SCHEMA " + schema);
+        jdbcTemplate.execute("SET search_path TO " + schema);
+
+        // transactions as V1, V104 and V105 leave it, and a table referencing it
+        jdbcTemplate.execute("CREATE TABLE transactions (txn_id BIGSERIAL PRIMARY KEY, iso_msg TEXT, "
+                + "pan_hash TEXT, merchant_id TEXT, terminal_id TEXT, amount_cents BIGINT, currency CHAR(3), "
+                + "txn_ts TIMESTAMP, emv_tags JSONB, acquirer_response TEXT, created_at TIMESTAMP DEFAULT now(), "
+                + "krs DOUBLE PRECISION, trs DOUBLE PRECISION, cra DOUBLE PRECISION, risk_level VARCHAR(20), "
+                + "decision VARCHAR(20))");
+        jdbcTemplate.execute("CREATE TABLE alerts (alert_id BIGSERIAL PRIMARY KEY, "
+                + "txn_id BIGINT REFERENCES transactions(txn_id), score FLOAT)");
+        for (int i = 1; i <= 5; i++) {
+            insertTransaction("M" + i, 1000L * i, NOW.minusDays(40L - i * 5));
+        }
+        insertTransaction("M6", 6000L, null);
+        jdbcTemplate.update("INSERT INTO alerts (txn_id, score) VALUES (1, 0.9)");
+
+        jdbcTemplate.execute(migration("V113__partitioned_transactions.sql"));
+        jdbcTemplate.execute(migration("V115__transaction_partition_sync_fixes.sql"));
+
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        partitionService = new TransactionPartitionService(jdbcTemplate, transactionTemplate, meterRegistry);
+        ReflectionTestUtils.setField(partitionService, "archiveMode", TransactionPartitionService.ArchiveMode.ARCHIVE);
+        ReflectionTestUtils.setField(partitionService, "lockTimeoutMs", 5000L);
+        partitionService.init();
+        migrationService = new TransactionPartitionMigrationService(jdbcTemplate, transactionTemplate,
+                partitionService, meterRegistry);
+        ReflectionTestUtils.setField(migrationService, "batchSize", 2);
+        ReflectionTestUtils.setField(migrationService, "lockTimeoutMs", 5000L);
+        ReflectionTestUtils.setField(migrationService, "verifyBucketSize", 2L);
+        ReflectionTestUtils.setField(migrationService, "premakeMonths", 1);
+        migrationService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP SCHEMA " + schema + " CASCADE");
+        dataSource.destroy();
+    }
+
+    @Test
+    void copyMirrorsConcurrentWritesAndVerifies() {
+        TransactionPartitionMigrationService.MigrationState started = migrationService.start();
+        assertEquals(TransactionPartitionMigrationService.Status.COPYING, started.getStatus());
+        assertEquals(6L, started.getHighWaterTxnId());
+
+        // Written while the copy is pending: an insert past the high-water mark, an update
+        // of a row below it, a move to another month and a row without txn_ts
+        insertTransaction("M7", 7000L, NOW.minusDays(1));
+        jdbcTemplate.update("UPDATE transactions SET amount_cents = 2500 WHERE txn_id = 2");
+        jdbcTemplate.update("UPDATE transactions SET txn_ts = ? WHERE txn_id = 3", Timestamp.valueOf(NOW));
+        insertTransaction("M8", 8000L, null);
+
+        migrationService.copyAsync();
+
+        assertEquals(TransactionPartitionMigrationService.Status.COPIED, migrationService.getState().getStatus());
+        assertEquals(8, count("transactions_p"));
+        assertEquals(2500L, jdbcTemplate.queryForObject(
+                "SELECT amount_cents FROM transactions_p WHERE txn_id = 2", Long.class));
+        assertEquals(1, count("transactions_p WHERE txn_id = 3 AND txn_ts = '" + Timestamp.valueOf(NOW) + "'"));
+        assertEquals(0, count("transactions_p WHERE txn_ts IS NULL"));
+        assertEquals(2, count("transactions_p p JOIN transactions t USING (txn_id) "
+                + "WHERE t.txn_ts IS NULL AND p.txn_ts = t.created_at"));
+
+        Map<String, Object> verified = migrationService.verify();
+        assertEquals(true, verified.get("match"));
+        assertEquals(8L, verified.get("sourceRows"));
+        assertEquals(8L, verified.get("partitionedRows"));
+
+        jdbcTemplate.update("UPDATE transactions_p SET amount_cents = 1 WHERE txn_id = 5");
+        Map<String, Object> tampered = migrationService.verify();
+        assertEquals(false, tampered.get("match"));
+        assertEquals(List.of("4-5"), tampered.get("mismatchedTxnIdRanges"));
+
+        jdbcTemplate.update("DELETE FROM transactions WHERE txn_id = 4");
+        assertEquals(0, count("transactions_p WHERE txn_id = 4"));
+    }
+
+    @Test
+    void cutoverSwapsTablesAndKeepsReferencesChecked() {
+        migrationService.start();
+        migrationService.copyAsync();
+
+        TransactionPartitionMigrationService.MigrationState cutOver = migrationService.cutover();
+
+        assertEquals(TransactionPartitionMigrationService.Status.CUT_OVER, cutOver.getStatus());
+        assertEquals(TransactionPartitionService.LIVE_TABLE, partitionService.partitionedTable());
+        assertEquals("p", jdbcTemplate.queryForObject(
+                "SELECT relkind::text FROM pg_class WHERE oid = to_regclass('transactions')", String.class));
+        assertEquals(6, count("transactions_legacy"));
+        assertEquals(0, count("pg_trigger WHERE tgname = 'transactions_partition_sync'"));
+        assertEquals(0, count("pg_constraint WHERE contype = 'f' AND conrelid = to_regclass('alerts')"));
+        assertEquals(1, count("transaction_references WHERE table_name = 'alerts' AND column_name = 'txn_id'"));
+
+        // The sequence moved with the table; new rows get ids after the copied ones
+        insertTransaction("M9", 9000L, NOW);
+        assertEquals(7L, jdbcTemplate.queryForObject("SELECT MAX(txn_id) FROM transactions", Long.class));
+
+        // The replaced foreign key, both ways
+        assertThrows(DataIntegrityViolationException.class,
+                () -> jdbcTemplate.update("INSERT INTO alerts (txn_id, score) VALUES (12345, 0.5)"));
+        jdbcTemplate.update("INSERT INTO alerts (txn_id, score) VALUES (7, 0.5)");
+        assertThrows(DataIntegrityViolationException.class,
+                () -> jdbcTemplate.update("DELETE FROM transactions WHERE txn_id = 1"));
+        jdbcTemplate.update("DELETE FROM transactions WHERE txn_id = 2");
+        assertEquals(0, count("transactions WHERE txn_id = 2"));
+
+        // A referenced row may still move to another month's partition
+        jdbcTemplate.update("UPDATE transactions SET txn_ts = ? WHERE txn_id = 1", Timestamp.valueOf(NOW));
+        assertNotNull(jdbcTemplate.queryForObject("SELECT txn_ts FROM transactions WHERE txn_id = 1",
+                Timestamp.class));
+    }
+
+    private void insertTransaction(String merchantId, long amountCents, LocalDateTime txnTs) {
+        jdbcTemplate.update("INSERT INTO transactions (merchant_id, amount_cents, currency, txn_ts) VALUES (?, ?, 'USD', ?)",
+                merchantId, amountCents, txnTs != null ? Timestamp.valueOf(txnTs) : null);
+    }
+
+    private int count(String from) {
+        Integer count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + from, Integer.class);
+        return count != null ? count : 0;
+    }
+
+    private static String migration(String name) throws IOException {
+        try (InputStream in = TransactionPartitionMigrationPostgresTest.class
+                .getResourceAsStream("/db/migration/" + name)) {
+            assertNotNull(in, name);
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
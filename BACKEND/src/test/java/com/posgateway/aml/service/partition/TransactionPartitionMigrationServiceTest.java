@@ -0,0 +1,133 @@
+package com.posgateway.aml.service.partition;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Verify compares both tables range by range, each range in its own short snapshot.
+ * The copy, sync trigger and cutover SQL are exercised against PostgreSQL in
+ * TransactionPartitionMigrationPostgresTest.
+ */
+class TransactionPartitionMigrationServiceTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final TransactionPartitionService partitionService = mock(TransactionPartitionService.class);
+    private final TransactionPartitionMigrationService service = new TransactionPartitionMigrationService(
+            jdbcTemplate, new TransactionTemplate(transactionManager), partitionService, new SimpleMeterRegistry());
+
+    // txn_id -> row checksum of each table
+    private final Map<Long, Long> source = new TreeMap<>();
+    private final Map<Long, Long> target = new TreeMap<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws Exception {
+        ReflectionTestUtils.setField(service, "verifyBucketSize", 1000L);
+        when(partitionService.partitionedTable()).thenReturn(TransactionPartitionService.SHADOW_TABLE);
+        when(jdbcTemplate.queryForObject(startsWithSql("SELECT * FROM transaction_partition_migration"),
+                any(RowMapper.class))).thenReturn(new TransactionPartitionMigrationService.MigrationState());
+        when(jdbcTemplate.queryForObject(startsWithSql("SELECT to_regclass"), eq(Boolean.class), anyString()))
+                .thenReturn(true);
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class), anyString()))
+                .thenReturn(List.of("txn_id", "txn_ts", "amount_cents"));
+        when(jdbcTemplate.queryForObject(startsWithSql("SELECT LEAST"), any(RowMapper.class)))
+                .thenAnswer(invocation -> {
+                    TreeMap<Long, Long> all = new TreeMap<>(source);
+                    all.putAll(target);
+                    return all.isEmpty() ? null : new long[] { all.firstKey(), all.lastKey() };
+                });
+        when(jdbcTemplate.queryForObject(anyString(), any(RowMapper.class), any(Long.class), any(Long.class)))
+                .thenAnswer(invocation -> {
+                    String sql = invocation.getArgument(0);
+                    Map<Long, Long> rows = sql.contains("FROM " + TransactionPartitionService.SHADOW_TABLE + " ")
+                            ? target : source;
+                    long from = invocation.getArgument(2);
+                    long to = invocation.getArgument(3);
+                    long count = 0;
+                    long sum = 0;
+                    for (Map.Entry<Long, Long> row : rows.entrySet()) {
+                        if (row.getKey() >= from && row.getKey() < to) {
+                            count++;
+                            sum += row.getValue();
+                        }
+                    }
+                    ResultSet rs = mock(ResultSet.class);
+                    when(rs.getLong(1)).thenReturn(count);
+                    when(rs.getBigDecimal(2)).thenReturn(count == 0 ? null : BigDecimal.valueOf(sum));
+                    return ((RowMapper<Object>) invocation.getArgument(1)).mapRow(rs, 0);
+                });
+    }
+
+    @Test
+    void matchingTablesAreComparedOneRangePerTransaction() {
+        for (long id : new long[] { 1, 2, 999, 2500 }) {
+            source.put(id, id * 31);
+            target.put(id, id * 31);
+        }
+
+        Map<String, Object> result = service.verify();
+
+        assertEquals(true, result.get("match"));
+        assertEquals(4L, result.get("sourceRows"));
+        assertEquals(4L, result.get("partitionedRows"));
+        // Ranges 0-999 and 2000-2999; the empty range in between is not reported
+        assertEquals(2, result.get("txnIdRanges"));
+        verify(transactionManager, times(3)).getTransaction(argThat(definition -> definition.isReadOnly()
+                && definition.getIsolationLevel() == TransactionDefinition.ISOLATION_REPEATABLE_READ));
+    }
+
+    @Test
+    void differingMissingAndExtraRowsMarkTheirRanges() {
+        source.put(1L, 10L);
+        source.put(1500L, 20L);
+        source.put(2500L, 30L);
+        target.put(1L, 11L);
+        target.put(2500L, 30L);
+        target.put(3100L, 40L);
+
+        Map<String, Object> result = service.verify();
+
+        assertEquals(false, result.get("match"));
+        assertEquals(3, result.get("mismatchedRanges"));
+        assertEquals(List.of("0-999", "1000-1999", "3000-3999"), result.get("mismatchedTxnIdRanges"));
+        assertEquals(4, result.get("txnIdRanges"));
+    }
+
+    @Test
+    void emptyTablesMatch() {
+        Map<String, Object> result = service.verify();
+
+        assertEquals(true, result.get("match"));
+        assertEquals(0, result.get("txnIdRanges"));
+        assertTrue(((List<?>) result.get("mismatchedTxnIdRanges")).isEmpty());
+    }
+
+    private static String startsWithSql(String prefix) {
+        return argThat(sql -> sql != null && sql.startsWith(prefix));
+    }
+}
@@ -0,0 +1,97 @@
+package com.posgateway.aml.service.psp;
+
+import com.posgateway.aml.entity.psp.Psp;
+import com.posgateway.aml.repository.PspRepository;
+import com.posgateway.aml.service.ratelimit.ClusterQuotaSync;
+import com.posgateway.aml.service.ratelimit.TokenBucketRateLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * PSP plan lookups are cached but unknown PSP codes only briefly, and a request over its
+ * merchant limit does not use up the PSP quota.
+ */
+class QuotaServiceTest {
+
+    private final PspRepository pspRepository = mock(PspRepository.class);
+    private final TokenBucketRateLimiter rateLimiter = new TokenBucketRateLimiter(mock(ClusterQuotaSync.class),
+            new SimpleMeterRegistry());
+    private final QuotaService service = new QuotaService(pspRepository, rateLimiter);
+
+    private void init(long unknownPspCacheTtlMs, int merchantLimit) {
+        ReflectionTestUtils.setField(service, "pspCacheTtlMs", 60000L);
+        ReflectionTestUtils.setField(service, "unknownPspCacheTtlMs", unknownPspCacheTtlMs);
+        ReflectionTestUtils.setField(service, "merchantLimit", merchantLimit);
+        rateLimiter.init();
+        service.init();
+    }
+
+    @Test
+    void knownPspIsLookedUpOnce() {
+        init(5000L, 0);
+        when(pspRepository.findByPspCode("ACME")).thenReturn(Optional.of(psp("ENTERPRISE")));
+
+        assertEquals(1000, service.checkQuota("ACME", null).getLimit());
+        assertTrue(service.isRequestAllowed("ACME"));
+
+        verify(pspRepository).findByPspCode("ACME");
+    }
+
+    @Test
+    void unknownPspIsRejectedAndRecheckedAfterTheShortTtl() {
+        init(5000L, 0);
+        when(pspRepository.findByPspCode("NEW")).thenReturn(Optional.empty());
+
+        assertFalse(service.isRequestAllowed("NEW"));
+        assertFalse(service.isRequestAllowed("NEW"));
+        verify(pspRepository).findByPspCode("NEW");
+
+        // Not stored in the plan cache: once the negative entry expires the PSP is found
+        QuotaService recheck = new QuotaService(pspRepository, rateLimiter);
+        ReflectionTestUtils.setField(recheck, "pspCacheTtlMs", 60000L);
+        ReflectionTestUtils.setField(recheck, "unknownPspCacheTtlMs", 0L);
+        recheck.init();
+        assertFalse(recheck.isRequestAllowed("NEW"));
+        when(pspRepository.findByPspCode("NEW")).thenReturn(Optional.of(psp("PAY_AS_YOU_GO")));
+        assertTrue(recheck.isRequestAllowed("NEW"));
+        verify(pspRepository, times(3)).findByPspCode("NEW");
+    }
+
+    @Test
+    void merchantOverItsLimitDoesNotUseUpThePspQuota() {
+        init(5000L, 2);
+        when(pspRepository.findByPspCode("ACME")).thenReturn(Optional.of(psp("BASIC")));
+
+        assertTrue(service.checkQuota("ACME", "M1").isAllowed());
+        assertTrue(service.checkQuota("ACME", "M1").isAllowed());
+        for (int i = 0; i < 100; i++) {
+            assertFalse(service.checkQuota("ACME", "M1").isAllowed());
+        }
+
+        // 50 per minute for the PSP, of which M1 used only two
+        int allowed = 0;
+        for (int i = 0; i < 60; i++) {
+            if (service.checkQuota("ACME", null).isAllowed()) {
+                allowed++;
+            }
+        }
+        assertEquals(48, allowed);
+    }
+
+    private static Psp psp(String billingPlan) {
+        Psp psp = new Psp();
+        psp.setBillingPlan(billingPlan);
+        return psp;
+    }
+}
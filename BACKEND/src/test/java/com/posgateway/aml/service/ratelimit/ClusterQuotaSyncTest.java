@@ -0,0 +1,124 @@
+package com.posgateway.aml.service.ratelimit;
+
+import com.aerospike.client.AerospikeClient;
+import com.aerospike.client.AerospikeException;
+import com.aerospike.client.Key;
+import com.aerospike.client.Operation;
+import com.aerospike.client.Record;
+import com.aerospike.client.policy.WritePolicy;
+import com.posgateway.aml.service.AerospikeConnectionService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Quota slices leased from the shared counter: served locally, never over the limit,
+ * leased outside the lease map and added together when leased concurrently.
+ */
+class ClusterQuotaSyncTest {
+
+    private static final int LIMIT = 10;
+    // Long enough that no test crosses a window boundary
+    private static final Duration PERIOD = Duration.ofDays(1);
+    private static final RateLimitDecision LOCAL = RateLimitDecision.allowed(LIMIT, 9, 0L);
+
+    private final AerospikeConnectionService connectionService = mock(AerospikeConnectionService.class);
+    private final AerospikeClient client = mock(AerospikeClient.class);
+    private final ClusterQuotaSync sync = new ClusterQuotaSync(connectionService, new SimpleMeterRegistry());
+
+    // The shared Aerospike counter
+    private final AtomicLong used = new AtomicLong();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(sync, "enabled", true);
+        ReflectionTestUtils.setField(sync, "setName", "rate_limits");
+        ReflectionTestUtils.setField(sync, "leaseFraction", 0.2);
+        sync.init();
+        when(connectionService.isConnected()).thenReturn(true);
+        when(connectionService.getClient()).thenReturn(client);
+        when(connectionService.getNamespace()).thenReturn("aml");
+        when(client.operate(any(WritePolicy.class), any(Key.class), any(Operation[].class)))
+                .thenAnswer(invocation -> record(used.addAndGet(2)));
+    }
+
+    @Test
+    void servesLeasedSlicesLocallyUpToTheLimit() {
+        int allowed = 0;
+        for (int i = 0; i < 15; i++) {
+            if (sync.tryConsume("psp:A", LIMIT, PERIOD, LOCAL).isAllowed()) {
+                allowed++;
+            }
+        }
+
+        assertEquals(LIMIT, allowed);
+        // Five slices of two; once the counter is exhausted rejections need no round trip
+        verify(client, times(5)).operate(any(WritePolicy.class), any(Key.class), any(Operation[].class));
+        assertEquals(10L, used.get());
+    }
+
+    @Test
+    void sliceLeasedWhileAnotherLeaseIsInFlightIsAdded() {
+        AtomicBoolean nested = new AtomicBoolean();
+        when(client.operate(any(WritePolicy.class), any(Key.class), any(Operation[].class)))
+                .thenAnswer(invocation -> {
+                    long total = used.addAndGet(2);
+                    // A second request for the same key misses while this lease is in flight;
+                    // with the round trip inside the map's compute this would be a recursive update
+                    if (nested.compareAndSet(false, true)) {
+                        assertTrue(sync.tryConsume("psp:A", LIMIT, PERIOD, LOCAL).isAllowed());
+                    }
+                    return record(total);
+                });
+
+        assertTrue(sync.tryConsume("psp:A", LIMIT, PERIOD, LOCAL).isAllowed());
+
+        // Two slices of two, one request each: two left without another round trip
+        assertTrue(sync.tryConsume("psp:A", LIMIT, PERIOD, LOCAL).isAllowed());
+        assertTrue(sync.tryConsume("psp:A", LIMIT, PERIOD, LOCAL).isAllowed());
+        verify(client, times(2)).operate(any(WritePolicy.class), any(Key.class), any(Operation[].class));
+    }
+
+    @Test
+    void releasedRequestIsServedAgainFromTheLease() {
+        // The last slice of the window
+        used.set(8);
+        assertTrue(sync.tryConsume("psp:A", LIMIT, PERIOD, LOCAL).isAllowed());
+        assertTrue(sync.tryConsume("psp:A", LIMIT, PERIOD, LOCAL).isAllowed());
+        assertFalse(sync.tryConsume("psp:A", LIMIT, PERIOD, LOCAL).isAllowed());
+
+        sync.release("psp:A", PERIOD);
+
+        assertTrue(sync.tryConsume("psp:A", LIMIT, PERIOD, LOCAL).isAllowed());
+        assertFalse(sync.tryConsume("psp:A", LIMIT, PERIOD, LOCAL).isAllowed());
+        verify(client).operate(any(WritePolicy.class), any(Key.class), any(Operation[].class));
+    }
+
+    @Test
+    void fallsBackToTheLocalDecisionWhenAerospikeFails() {
+        when(client.operate(any(WritePolicy.class), any(Key.class), any(Operation[].class)))
+                .thenThrow(new AerospikeException("timeout"));
+
+        assertSame(LOCAL, sync.tryConsume("psp:A", LIMIT, PERIOD, LOCAL));
+    }
+
+    private static Record record(long total) {
+        return new Record(Map.of("used", total), 1, 0);
+    }
+}
@@ -0,0 +1,153 @@
+package com.posgateway.aml.service.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * GCRA token bucket: burst up to the limit, even refill over the period, reset and
+ * retry-after hints, nanoTime wrap-around and exactly `limit` grants under contention.
+ */
+class GcraBucketTest {
+
+    private static final long SECOND = 1_000_000_000L;
+    private static final long INTERVAL = SECOND / 10;
+
+    @Test
+    void allowsABurstOfLimitThenRejects() {
+        long now = 42 * SECOND;
+        GcraBucket bucket = new GcraBucket(10, SECOND, now);
+
+        for (int i = 0; i < 10; i++) {
+            RateLimitDecision decision = bucket.tryAcquire(now);
+            assertTrue(decision.isAllowed(), "request " + i);
+            assertEquals(9 - i, decision.getRemaining());
+        }
+        RateLimitDecision rejected = bucket.tryAcquire(now);
+        assertFalse(rejected.isAllowed());
+        assertEquals(0, rejected.getRemaining());
+        // One emission interval (100ms) until the next token, rounded up to whole seconds
+        assertEquals(1, rejected.getRetryAfterSeconds());
+        assertEquals(10, bucket.getUsed(now));
+    }
+
+    @Test
+    void refillsOneTokenPerEmissionInterval() {
+        long now = 0;
+        GcraBucket bucket = new GcraBucket(10, SECOND, now);
+        for (int i = 0; i < 10; i++) {
+            bucket.tryAcquire(now);
+        }
+
+        assertFalse(bucket.tryAcquire(now + INTERVAL - 1).isAllowed());
+        assertTrue(bucket.tryAcquire(now + INTERVAL).isAllowed());
+        assertFalse(bucket.tryAcquire(now + INTERVAL).isAllowed());
+
+        assertEquals(5, bucket.getUsed(now + 6 * INTERVAL));
+        assertEquals(0, bucket.getUsed(now + 2 * SECOND));
+    }
+
+    @Test
+    void fullBucketAfterAnIdlePeriod() {
+        GcraBucket bucket = new GcraBucket(3, SECOND, 0);
+        bucket.tryAcquire(0);
+        bucket.tryAcquire(0);
+
+        assertFalse(bucket.isIdle(SECOND / 2, SECOND));
+        assertTrue(bucket.isIdle(SECOND + SECOND / 3 * 2, SECOND));
+
+        long later = 10 * SECOND;
+        for (int i = 0; i < 3; i++) {
+            assertTrue(bucket.tryAcquire(later).isAllowed());
+        }
+        assertFalse(bucket.tryAcquire(later).isAllowed());
+    }
+
+    @Test
+    void survivesNanoTimeWrapAround() {
+        long now = Long.MAX_VALUE - INTERVAL / 2;
+        GcraBucket bucket = new GcraBucket(10, SECOND, now);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(bucket.tryAcquire(now).isAllowed());
+        }
+        assertFalse(bucket.tryAcquire(now).isAllowed());
+
+        long wrapped = now + INTERVAL; // overflows to a negative value
+        assertTrue(wrapped < 0);
+        assertTrue(bucket.tryAcquire(wrapped).isAllowed());
+        assertFalse(bucket.tryAcquire(wrapped).isAllowed());
+    }
+
+    @Test
+    void grantsExactlyLimitUnderContention() throws Exception {
+        long now = 0;
+        GcraBucket bucket = new GcraBucket(100, SECOND, now);
+        AtomicInteger allowed = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 16; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 100; i++) {
+                        if (bucket.tryAcquire(now).isAllowed()) {
+                            allowed.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(100, allowed.get());
+    }
+
+    @Test
+    void checkDoesNotTakeATokenAndReleaseGivesOneBack() {
+        GcraBucket bucket = new GcraBucket(2, SECOND, 0);
+
+        assertTrue(bucket.check(0).isAllowed());
+        assertEquals(1, bucket.check(0).getRemaining());
+        assertEquals(0, bucket.getUsed(0));
+
+        bucket.tryAcquire(0);
+        bucket.tryAcquire(0);
+        assertFalse(bucket.check(0).isAllowed());
+
+        bucket.release(0);
+        assertEquals(1, bucket.getUsed(0));
+        assertTrue(bucket.tryAcquire(0).isAllowed());
+
+        // Releasing into a full bucket does not add a token past the limit
+        GcraBucket full = new GcraBucket(2, SECOND, 0);
+        full.release(0);
+        assertTrue(full.tryAcquire(0).isAllowed());
+        assertTrue(full.tryAcquire(0).isAllowed());
+        assertFalse(full.tryAcquire(0).isAllowed());
+    }
+
+    @Test
+    void rejectsNonPositiveLimitOrPeriod() {
+        assertThrows(IllegalArgumentException.class, () -> new GcraBucket(0, SECOND, 0));
+        assertThrows(IllegalArgumentException.class, () -> new GcraBucket(10, 0, 0));
+    }
+}
@@ -0,0 +1,78 @@
+package com.posgateway.aml.service.ratelimit;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Several limits on one request are taken together or not at all, locally and against
+ * the cluster quota.
+ */
+class TokenBucketRateLimiterTest {
+
+    private static final Duration MINUTE = Duration.ofMinutes(1);
+
+    private final ClusterQuotaSync clusterQuotaSync = mock(ClusterQuotaSync.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(clusterQuotaSync, meterRegistry);
+
+    @BeforeEach
+    void setUp() {
+        limiter.init();
+    }
+
+    @Test
+    void limitRejectingTheRequestDoesNotUseUpTheOthers() {
+        TokenBucketRateLimiter.Limit psp = new TokenBucketRateLimiter.Limit("psp:A", 3, MINUTE);
+        TokenBucketRateLimiter.Limit merchant = new TokenBucketRateLimiter.Limit("merchant:A:1", 1, MINUTE);
+
+        assertTrue(limiter.tryAcquireAll(psp, merchant).isAllowed());
+        for (int i = 0; i < 5; i++) {
+            assertFalse(limiter.tryAcquireAll(psp, merchant).isAllowed());
+        }
+
+        // The PSP still has the two requests the rejected merchant did not use
+        RateLimitDecision other = limiter.tryAcquireAll(psp,
+                new TokenBucketRateLimiter.Limit("merchant:A:2", 5, MINUTE));
+        assertTrue(other.isAllowed());
+        assertEquals(1, other.getRemaining());
+        assertTrue(limiter.tryAcquire("psp:A", 3, MINUTE).isAllowed());
+        assertFalse(limiter.tryAcquire("psp:A", 3, MINUTE).isAllowed());
+        assertEquals(6.0, meterRegistry.get("aml_rate_limit_requests_total").tag("result", "rejected")
+                .counter().count());
+    }
+
+    @Test
+    void clusterRejectionGivesBackTheTokensAlreadyTaken() {
+        when(clusterQuotaSync.isEnabled()).thenReturn(true);
+        when(clusterQuotaSync.tryConsume(eq("psp:A"), anyInt(), any(), any()))
+                .thenAnswer(invocation -> invocation.getArgument(3));
+        when(clusterQuotaSync.tryConsume(eq("merchant:A:1"), anyInt(), any(), any()))
+                .thenReturn(RateLimitDecision.rejected(1, 0L, 1_000_000_000L));
+        TokenBucketRateLimiter.Limit psp = new TokenBucketRateLimiter.Limit("psp:A", 1, MINUTE);
+
+        RateLimitDecision decision = limiter.tryAcquireAll(psp,
+                new TokenBucketRateLimiter.Limit("merchant:A:1", 1, MINUTE));
+
+        assertFalse(decision.isAllowed());
+        verify(clusterQuotaSync).release("psp:A", MINUTE);
+        verify(clusterQuotaSync, never()).release(eq("merchant:A:1"), any());
+        // Both local buckets were given back
+        when(clusterQuotaSync.isEnabled()).thenReturn(false);
+        assertTrue(limiter.tryAcquireAll(psp, new TokenBucketRateLimiter.Limit("merchant:A:1", 1, MINUTE))
+                .isAllowed());
+    }
+}
@@ -0,0 +1,115 @@
+package com.posgateway.aml.service.reporting;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * RFC 4180 escaping with formula neutralization, and the concurrent export slot being
+ * returned exactly once whether or not the body runs.
+ */
+class CsvExportServiceTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CsvExportService service = new CsvExportService(jdbcTemplate, meterRegistry);
+    private final CsvExportService.ExportFilter filter = new CsvExportService.ExportFilter(null, null, null);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "pageSize", 1000);
+        ReflectionTestUtils.setField(service, "maxConcurrent", 1);
+        ReflectionTestUtils.setField(service, "permitWaitMs", 0L);
+        service.init();
+    }
+
+    @Test
+    void plainValuesAreWrittenAsIs() throws IOException {
+        assertEquals("a,42,,true\r\n", row("a", 42, null, true));
+    }
+
+    @Test
+    void quotesCommasAndLineBreaksAreQuoted() throws IOException {
+        assertEquals("\"say \"\"hi\"\"\",\"a,b\",\"line1\nline2\",\"cr\rlf\"\r\n",
+                row("say \"hi\"", "a,b", "line1\nline2", "cr\rlf"));
+    }
+
+    @Test
+    void formulaPrefixesAreNeutralized() throws IOException {
+        assertEquals("'=SUM(A1:A2),'+1,'-cmd,'@user\r\n", row("=SUM(A1:A2)", "+1", "-cmd", "@user"));
+        assertEquals("\"'=HYPERLINK(\"\"http://x\"\",\"\"y\"\")\"\r\n", row("=HYPERLINK(\"http://x\",\"y\")"));
+        // Numbers are not text a spreadsheet would evaluate
+        assertEquals("-5,-0.25\r\n", row(-5, -0.25));
+    }
+
+    @Test
+    void offsetSkipsTheKeysetColumns() throws IOException {
+        StringWriter writer = new StringWriter();
+        CsvExportService.writeRow(writer, new Object[] { 7L, LocalDateTime.of(2026, 1, 1, 0, 0), "x", "y" }, 2);
+        assertEquals("x,y\r\n", writer.toString());
+    }
+
+    @Test
+    void slotIsReturnedWhenTheBodyNeverRuns() {
+        CsvExportService.Export export = service.open(CsvExportService.ExportType.CASES, filter, false);
+        assertEquals(1.0, active());
+        assertThrows(CsvExportService.ExportLimitExceededException.class,
+                () -> service.open(CsvExportService.ExportType.CASES, filter, false));
+
+        export.release();
+        export.release();
+
+        assertEquals(0.0, active());
+        service.open(CsvExportService.ExportType.CASES, filter, false).release();
+        assertEquals(0.0, active());
+        assertThrows(IllegalStateException.class, () -> export.writeTo(new ByteArrayOutputStream()));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void slotIsReturnedOnceAfterTheBodyRuns() throws IOException {
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), any(Object[].class))).thenReturn(
+                List.<Object[]>of(new Object[] { 1L, LocalDateTime.of(2026, 1, 1, 0, 0), "CASE-1", "OPEN", "HIGH", "=1+1", null,
+                        LocalDateTime.of(2026, 1, 1, 0, 0), null }));
+        CsvExportService.Export export = service.open(CsvExportService.ExportType.CASES, filter, false);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        export.writeTo(out);
+        // The request completing afterwards releases again; the slot is not returned twice
+        export.release();
+
+        assertEquals("caseReference,status,priority,merchantId,assignedTo,createdAt,updatedAt\r\n"
+                + "CASE-1,OPEN,HIGH,'=1+1,,2026-01-01T00:00,\r\n", out.toString(StandardCharsets.UTF_8));
+        assertEquals(0.0, active());
+        service.open(CsvExportService.ExportType.CASES, filter, false);
+        assertThrows(CsvExportService.ExportLimitExceededException.class,
+                () -> service.open(CsvExportService.ExportType.CASES, filter, false));
+    }
+
+    private double active() {
+        return meterRegistry.get("aml_export_active").gauge().value();
+    }
+
+    private static String row(Object... values) throws IOException {
+        StringWriter writer = new StringWriter();
+        CsvExportService.writeRow(writer, values, 0);
+        return writer.toString();
+    }
+}
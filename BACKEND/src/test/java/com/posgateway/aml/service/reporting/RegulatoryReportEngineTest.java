@@ -0,0 +1,176 @@
+package com.posgateway.aml.service.reporting;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.posgateway.aml.entity.merchant.Merchant;
+import com.posgateway.aml.entity.psp.Psp;
+import com.posgateway.aml.repository.MerchantRepository;
+import com.posgateway.aml.repository.PspRepository;
+import com.posgateway.aml.repository.RegulatoryReportRunRepository;
+import com.posgateway.aml.repository.TransactionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Streamed CSV and XML output (field escaping, keyset paging, IFTR selection), the
+ * per-currency totals, and reports across all PSPs.
+ */
+class RegulatoryReportEngineTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2026, 3, 1, 0, 0);
+    private static final LocalDateTime END = LocalDateTime.of(2026, 3, 31, 23, 59);
+
+    private final TransactionRepository transactionRepository = mock(TransactionRepository.class);
+    private final MerchantRepository merchantRepository = mock(MerchantRepository.class);
+    private final PspRepository pspRepository = mock(PspRepository.class);
+    private final RegulatoryReportEngine engine = new RegulatoryReportEngine(transactionRepository,
+            merchantRepository, pspRepository, mock(RegulatoryReportRunRepository.class),
+            mock(ApplicationEventPublisher.class), new SimpleMeterRegistry());
+
+    // Pages returned by findRegulatoryReportRows, in order
+    private final List<List<Object[]>> pages = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(engine, "ctrThreshold", new BigDecimal("10000"));
+        ReflectionTestUtils.setField(engine, "lctrThreshold", new BigDecimal("100000"));
+        ReflectionTestUtils.setField(engine, "pageSize", 2);
+        ReflectionTestUtils.setField(engine, "lookupCacheSize", 100);
+        ReflectionTestUtils.setField(engine, "entityManager", mock(EntityManager.class));
+        when(transactionRepository.findRegulatoryReportRows(any(), any(), any(), any(), any(), any()))
+                .thenAnswer(invocation -> pages.isEmpty() ? List.of() : pages.remove(0));
+
+        Merchant merchant = new Merchant();
+        merchant.setMerchantId(10L);
+        merchant.setLegalName("Acme, \"Global\" Ltd");
+        merchant.setTradingName("Acme\r\nStores");
+        merchant.setAddressCity("Nairobi");
+        merchant.setAddressCountry("KE");
+        Merchant domestic = new Merchant();
+        domestic.setMerchantId(11L);
+        domestic.setLegalName("Local & <Sons>\u0001");
+        domestic.setAddressCountry("US");
+        when(merchantRepository.findAllById(anyIterable())).thenReturn(List.of(merchant, domestic));
+        Psp psp = new Psp();
+        psp.setPspId(5L);
+        psp.setPspCode("PSP5");
+        psp.setLegalName("Five Payments");
+        psp.setCountry("US");
+        when(pspRepository.findAllById(anyIterable())).thenReturn(List.of(psp));
+    }
+
+    @Test
+    void csvRowsAreEscapedAndPagedByKeyset() throws IOException {
+        pages.add(List.of(row(1L, 1_500_000L, "USD", "10"), row(2L, 2_000_050L, " eur ", "11")));
+        pages.add(List.<Object[]>of(row(3L, 1_000_000L, null, null)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        RegulatoryReportEngine.ReportTotals totals = engine.stream(RegulatoryReportEngine.ReportType.CTR,
+                RegulatoryReportEngine.Format.CSV, START, END, 5L, out);
+
+        assertEquals(String.join(",", RegulatoryReportEngine.ReportType.CTR.getColumns()) + "\r\n"
+                + "1,2026-03-01T01:00,15000.00,USD,PURCHASE,T1,hash1,,,\"Acme, \"\"Global\"\" Ltd\","
+                + "\"Acme\r\nStores\",\"Nairobi, KE\",KE,,,,Five Payments,PSP5,,US\r\n"
+                + "2,2026-03-01T02:00,20000.50, eur ,PURCHASE,T2,hash2,,,Local & <Sons>\u0001,,US,US,,,,"
+                + "Five Payments,PSP5,,US\r\n"
+                + "3,2026-03-01T03:00,10000.00,USD,PURCHASE,T3,hash3,,,,,,,,,,Five Payments,PSP5,,US\r\n",
+                out.toString(StandardCharsets.UTF_8));
+
+        // Second page starts after the last row of the first; CTR threshold in cents
+        verify(transactionRepository).findRegulatoryReportRows(eq(START), eq(0L), eq(END), eq(5L),
+                eq(1_000_000L), any());
+        verify(transactionRepository).findRegulatoryReportRows(eq(START.plusHours(2)), eq(2L), eq(END), eq(5L),
+                eq(1_000_000L), any());
+
+        assertEquals(3, totals.getTransactionCount());
+        assertEquals(new BigDecimal("45000.50"), totals.getTotalAmount());
+        Map<String, BigDecimal> byCurrency = new LinkedHashMap<>();
+        byCurrency.put("USD", new BigDecimal("25000.00"));
+        byCurrency.put("EUR", new BigDecimal("20000.50"));
+        assertEquals(byCurrency, totals.getTotalAmountByCurrency());
+    }
+
+    @Test
+    void xmlEscapesMarkupAndDropsControlCharacters() throws IOException {
+        pages.add(List.<Object[]>of(row(2L, 2_000_000L, "USD", "11")));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        engine.stream(RegulatoryReportEngine.ReportType.LCTR, RegulatoryReportEngine.Format.XML, START, END, null,
+                out);
+
+        String xml = out.toString(StandardCharsets.UTF_8);
+        assertTrue(xml.startsWith("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<RegulatoryReport type=\"LCTR\" "
+                + "periodStart=\"2026-03-01T00:00\" periodEnd=\"2026-03-31T23:59\" threshold=\"100000\""), xml);
+        assertTrue(xml.contains("<merchantName>Local &amp; &lt;Sons&gt;</merchantName>"), xml);
+        assertTrue(xml.contains("<Totals transactionCount=\"1\" totalAmount=\"20000.00\">\n"
+                + "    <Total currency=\"USD\">20000.00</Total>\n  </Totals>\n</RegulatoryReport>\n"), xml);
+    }
+
+    @Test
+    void iftrReportsOnlyForeignCurrencyOrForeignMerchants() throws IOException {
+        pages.add(List.of(row(1L, 500L, "USD", "10"), row(2L, 700L, "USD", "11")));
+        pages.add(List.<Object[]>of(row(3L, 900L, "GBP", "11")));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        RegulatoryReportEngine.ReportTotals totals = engine.stream(RegulatoryReportEngine.ReportType.IFTR,
+                RegulatoryReportEngine.Format.CSV, START, END, null, out);
+
+        String csv = out.toString(StandardCharsets.UTF_8);
+        assertTrue(csv.contains("\r\n1,2026-03-01T01:00,5.00,USD,PURCHASE,CROSS_BORDER,"), csv);
+        assertTrue(csv.contains("\r\n3,2026-03-01T03:00,9.00,GBP,PURCHASE,FOREIGN_CURRENCY,"), csv);
+        assertTrue(!csv.contains("\r\n2,"), csv);
+        assertEquals(2, totals.getTransactionCount());
+        // No threshold for IFTR
+        verify(transactionRepository).findRegulatoryReportRows(eq(START), eq(0L), eq(END), isNull(), isNull(),
+                any());
+    }
+
+    @Test
+    void totalsAggregatePerCurrencyAndSurviveACheckpoint() throws IOException {
+        RegulatoryReportEngine.ReportTotals totals = new RegulatoryReportEngine.ReportTotals();
+        totals.add("USD", 1050L);
+        totals.add("KES", 99L);
+        totals.add("USD", 1L);
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        RegulatoryReportEngine.ReportTotals restored = RegulatoryReportEngine.ReportTotals.fromJson(objectMapper,
+                totals.toJson(objectMapper));
+        restored.add("KES", 1L);
+
+        assertEquals(3, totals.getTransactionCount());
+        assertEquals(new BigDecimal("11.50"), totals.getTotalAmount());
+        assertEquals(4, restored.getTransactionCount());
+        assertEquals(new BigDecimal("11.51"), restored.getTotalAmount());
+        assertEquals(Map.of("USD", new BigDecimal("10.51"), "KES", new BigDecimal("1.00")),
+                restored.getTotalAmountByCurrency());
+        assertEquals(0, RegulatoryReportEngine.ReportTotals.fromJson(objectMapper, null).getTransactionCount());
+    }
+
+    private static Object[] row(long txnId, long amountCents, String currency, String merchantId) {
+        return new Object[] { txnId, START.plusHours(txnId), amountCents, currency, "T" + txnId, "hash" + txnId,
+                merchantId, 5L, null, null, "PURCHASE" };
+    }
+}
@@ -0,0 +1,163 @@
+package com.posgateway.aml.service.rescreening;
+
+import com.posgateway.aml.entity.BatchJobCheckpoint;
+import com.posgateway.aml.repository.BatchJobCheckpointRepository;
+import com.posgateway.aml.repository.MerchantRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Keyset paging in chunks, and the checkpoint only moving past chunks that completed,
+ * in ID order, so an interrupted run resumes after the last fully screened chunk.
+ */
+class MerchantRescreeningBatchRunnerTest {
+
+    private static final String JOB = "rescreening";
+
+    private final MerchantRepository merchantRepository = mock(MerchantRepository.class);
+    private final BatchJobCheckpointRepository checkpointRepository = mock(BatchJobCheckpointRepository.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final MerchantRescreeningBatchRunner runner = new MerchantRescreeningBatchRunner(merchantRepository,
+            checkpointRepository, meterRegistry);
+
+    // lastMerchantId of every checkpoint save
+    private final List<Long> savedCheckpoints = new CopyOnWriteArrayList<>();
+    private final List<Long> merchantIds = LongStream.rangeClosed(1, 7).boxed().collect(Collectors.toList());
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(runner, "chunkSize", 3);
+        ReflectionTestUtils.setField(runner, "parallelism", 2);
+        when(checkpointRepository.findById(JOB)).thenReturn(Optional.empty());
+        when(checkpointRepository.save(any(BatchJobCheckpoint.class))).thenAnswer(invocation -> {
+            BatchJobCheckpoint checkpoint = invocation.getArgument(0);
+            savedCheckpoints.add(checkpoint.getLastMerchantId());
+            return checkpoint;
+        });
+        when(merchantRepository.findMerchantIdsNeedingRescreening(any(LocalDate.class), any(LocalDateTime.class),
+                anyLong(), any(Pageable.class))).thenAnswer(invocation -> {
+                    long afterId = invocation.getArgument(2);
+                    Pageable page = invocation.getArgument(3);
+                    return merchantIds.stream().filter(id -> id > afterId).limit(page.getPageSize())
+                            .collect(Collectors.toList());
+                });
+    }
+
+    @Test
+    void checkpointAdvancesChunkByChunk() {
+        List<List<Long>> chunks = new CopyOnWriteArrayList<>();
+
+        BatchJobCheckpoint checkpoint = runner.run(JOB, ids -> {
+            chunks.add(ids);
+            return 0;
+        });
+
+        assertEquals(List.of(List.of(1L, 2L, 3L), List.of(4L, 5L, 6L), List.of(7L)), sorted(chunks));
+        // Started, three chunks, completed
+        assertEquals(List.of(0L, 3L, 6L, 7L, 7L), savedCheckpoints);
+        assertEquals(BatchJobCheckpoint.STATUS_COMPLETED, checkpoint.getStatus());
+        assertEquals(7L, checkpoint.getProcessedCount());
+        assertEquals(7.0, meterRegistry.get("aml_rescreening_merchants_total").tag("outcome", "screened")
+                .counter().count());
+    }
+
+    @Test
+    void checkpointWaitsForAnEarlierChunkThatFinishesLast() {
+        CountDownLatch laterChunksDone = new CountDownLatch(1);
+
+        runner.run(JOB, ids -> {
+            if (ids.get(0) == 1L) {
+                assertTrue(laterChunksDone.await(5, TimeUnit.SECONDS));
+            } else if (ids.get(0) == 4L) {
+                laterChunksDone.countDown();
+            }
+            return 0;
+        });
+
+        assertEquals(List.of(0L, 3L, 6L, 7L, 7L), savedCheckpoints);
+    }
+
+    @Test
+    void failedChunkIsCountedAndTheRunMovesOn() {
+        BatchJobCheckpoint checkpoint = runner.run(JOB, ids -> {
+            if (ids.contains(4L)) {
+                throw new IllegalStateException("screening down");
+            }
+            return ids.contains(7L) ? 1 : 0;
+        });
+
+        assertEquals(BatchJobCheckpoint.STATUS_COMPLETED, checkpoint.getStatus());
+        assertEquals(7L, checkpoint.getProcessedCount());
+        assertEquals(4L, checkpoint.getFailedCount());
+        assertEquals(4.0, meterRegistry.get("aml_rescreening_merchants_total").tag("outcome", "failed")
+                .counter().count());
+    }
+
+    @Test
+    void abortedRunKeepsTheLastCheckpointAndIsResumedFromIt() {
+        // One worker: the first chunk is completed when the second is submitted, and the
+        // second is still screening when paging fails
+        ReflectionTestUtils.setField(runner, "parallelism", 1);
+        CountDownLatch never = new CountDownLatch(1);
+        when(merchantRepository.findMerchantIdsNeedingRescreening(any(LocalDate.class), any(LocalDateTime.class),
+                anyLong(), any(Pageable.class)))
+                .thenReturn(List.of(1L, 2L, 3L), List.of(4L, 5L, 6L))
+                .thenThrow(new IllegalStateException("connection reset"));
+
+        BatchJobCheckpoint stopped = runner.run(JOB, ids -> {
+            if (ids.contains(4L)) {
+                never.await(5, TimeUnit.SECONDS);
+            }
+            return 0;
+        });
+
+        assertTrue(stopped.isRunning());
+        assertEquals(3L, stopped.getLastMerchantId());
+        assertEquals(3L, stopped.getProcessedCount());
+
+        // The next trigger the same day continues after merchant 3, screening 4-6 again
+        when(checkpointRepository.findById(JOB)).thenReturn(Optional.of(stopped));
+        when(merchantRepository.findMerchantIdsNeedingRescreening(any(LocalDate.class), any(LocalDateTime.class),
+                anyLong(), any(Pageable.class))).thenAnswer(invocation -> {
+                    long afterId = invocation.getArgument(2);
+                    return merchantIds.stream().filter(id -> id > afterId).limit(3).collect(Collectors.toList());
+                });
+        List<Long> screened = new CopyOnWriteArrayList<>();
+
+        BatchJobCheckpoint resumed = runner.run(JOB, ids -> {
+            screened.addAll(ids);
+            return 0;
+        });
+
+        assertEquals(List.of(4L, 5L, 6L, 7L), screened.stream().sorted().collect(Collectors.toList()));
+        assertEquals(BatchJobCheckpoint.STATUS_COMPLETED, resumed.getStatus());
+        assertEquals(7L, resumed.getProcessedCount());
+    }
+
+    private static List<List<Long>> sorted(List<List<Long>> chunks) {
+        List<List<Long>> sorted = new ArrayList<>(chunks);
+        sorted.sort((a, b) -> Long.compare(a.get(0), b.get(0)));
+        return sorted;
+    }
+}
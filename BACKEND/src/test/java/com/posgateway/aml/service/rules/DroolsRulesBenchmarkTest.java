@@ -0,0 +1,61 @@
+package com.posgateway.aml.service.rules;
+
+import com.posgateway.aml.repository.rules.RuleDefinitionRepository;
+import com.posgateway.aml.rules.TransactionFact;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Throughput of the bundled DRL per evaluation mode. Not a JMH harness: a warmed-up
+ * wall-clock loop, good enough to compare the modes on one machine.
+ * Run with: mvn test -Dtest=DroolsRulesBenchmarkTest -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class DroolsRulesBenchmarkTest {
+
+    private static final int FACTS = 10_000;
+    private static final int ROUNDS = 5;
+
+    @Test
+    void compareEvaluationModes() {
+        DroolsRulesService service = new DroolsRulesService(null, mock(RuleDefinitionRepository.class));
+        service.initializeRules();
+
+        ReflectionTestUtils.setField(service, "statelessSessions", false);
+        report("stateful session per fact", () -> perFact(service));
+        ReflectionTestUtils.setField(service, "statelessSessions", true);
+        report("stateless session per fact", () -> perFact(service));
+        for (int batchSize : new int[] {10, 100, 1000}) {
+            report("stateless batch of " + batchSize, () -> batched(service, batchSize));
+        }
+    }
+
+    private static void perFact(DroolsRulesService service) {
+        for (TransactionFact fact : DroolsRulesServiceTest.randomFacts(7, FACTS)) {
+            service.batchEvaluate(List.of(fact));
+        }
+    }
+
+    private static void batched(DroolsRulesService service, int batchSize) {
+        List<TransactionFact> facts = DroolsRulesServiceTest.randomFacts(7, FACTS);
+        for (int from = 0; from < facts.size(); from += batchSize) {
+            service.batchEvaluate(facts.subList(from, Math.min(from + batchSize, facts.size())));
+        }
+    }
+
+    private static void report(String mode, Runnable round) {
+        round.run(); // warm-up
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            round.run();
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("%-28s %8.2f us/fact%n", mode, best / 1_000.0 / FACTS);
+    }
+}
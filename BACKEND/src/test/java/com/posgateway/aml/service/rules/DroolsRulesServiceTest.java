@@ -0,0 +1,108 @@
+package com.posgateway.aml.service.rules;
+
+import com.posgateway.aml.repository.rules.RuleDefinitionRepository;
+import com.posgateway.aml.rules.RuleEvaluationResult;
+import com.posgateway.aml.rules.TransactionFact;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Stateful, stateless and batched evaluation of the bundled DRL must reach the same
+ * decision, reasons and flags for every fact.
+ */
+class DroolsRulesServiceTest {
+
+    private static final String[] COUNTRIES = {"US", "GB", "KE", "IR", "RU", "DE"};
+    private static final String[] CURRENCIES = {"USD", "EUR"};
+
+    private static DroolsRulesService service;
+
+    @BeforeAll
+    static void compileRules() {
+        service = new DroolsRulesService(null, mock(RuleDefinitionRepository.class));
+        service.initializeRules();
+    }
+
+    @Test
+    void bundledRulesFire() {
+        ReflectionTestUtils.setField(service, "statelessSessions", true);
+        TransactionFact fact = fact(1L, 12_000, "USD", "IR", 0.95, 0.0, 0.0, 0L, 0.0);
+
+        RuleEvaluationResult result = service.batchEvaluate(List.of(fact)).get(0);
+
+        assertEquals("BLOCK", result.getDecision());
+        assertTrue(result.isCtrRequired());
+        assertTrue(result.isSarRequired());
+        assertEquals(List.of("OFAC_HIGH_RISK_COUNTRY", "CTR_THRESHOLD_10K", "ML_SCORE_HIGH_RISK"),
+                result.getTriggeredRules());
+    }
+
+    @Test
+    void statelessAndBatchedEvaluationMatchStatefulSessions() {
+        // Facts are mutated by the rules, so each mode gets its own copy of the same inputs
+        ReflectionTestUtils.setField(service, "statelessSessions", false);
+        List<RuleEvaluationResult> stateful = new ArrayList<>();
+        for (TransactionFact fact : randomFacts(42, 500)) {
+            stateful.add(service.batchEvaluate(List.of(fact)).get(0));
+        }
+
+        ReflectionTestUtils.setField(service, "statelessSessions", true);
+        List<RuleEvaluationResult> stateless = new ArrayList<>();
+        for (TransactionFact fact : randomFacts(42, 500)) {
+            stateless.add(service.batchEvaluate(List.of(fact)).get(0));
+        }
+        List<RuleEvaluationResult> batched = service.batchEvaluate(randomFacts(42, 500));
+
+        for (int i = 0; i < stateful.size(); i++) {
+            assertSameOutcome(stateful.get(i), stateless.get(i));
+            assertSameOutcome(stateful.get(i), batched.get(i));
+        }
+    }
+
+    private static void assertSameOutcome(RuleEvaluationResult expected, RuleEvaluationResult actual) {
+        assertEquals(expected.getTxnId(), actual.getTxnId());
+        assertEquals(expected.getDecision(), actual.getDecision(), "decision for txn " + expected.getTxnId());
+        assertEquals(expected.getTriggeredRules(), actual.getTriggeredRules(), "rules for txn " + expected.getTxnId());
+        assertEquals(expected.getReasons(), actual.getReasons(), "reasons for txn " + expected.getTxnId());
+        assertEquals(expected.isSarRequired(), actual.isSarRequired());
+        assertEquals(expected.isCtrRequired(), actual.isCtrRequired());
+    }
+
+    /**
+     * Facts spread over every rule of the bundled DRL; the same seed gives the same facts
+     */
+    static List<TransactionFact> randomFacts(long seed, int count) {
+        Random random = new Random(seed);
+        List<TransactionFact> facts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int amount = random.nextInt(4) == 0 ? 9_000 + random.nextInt(2_000) : random.nextInt(20_000);
+            facts.add(fact((long) i, amount,
+                    CURRENCIES[random.nextInt(CURRENCIES.length)],
+                    COUNTRIES[random.nextInt(COUNTRIES.length)],
+                    random.nextDouble(),
+                    random.nextDouble(),
+                    random.nextDouble(),
+                    random.nextInt(15),
+                    random.nextDouble() * 200_000));
+        }
+        return facts;
+    }
+
+    static TransactionFact fact(Long txnId, int amount, String currency, String country, double mlScore,
+            double pageRank, double betweenness, long panTxnCount1h, double merchantAmountSum24h) {
+        return new TransactionFact(txnId, "M-1", BigDecimal.valueOf(amount), currency, country,
+                LocalDateTime.of(2026, 1, 1, 12, 0), "POS", "pan-" + txnId, mlScore, pageRank, 0L,
+                betweenness, 0L, panTxnCount1h, 0.0, merchantAmountSum24h, null, null, null);
+    }
+}
@@ -0,0 +1,174 @@
+package com.posgateway.aml.service.rules;
+
+import com.posgateway.aml.entity.rules.RuleDefinition;
+import com.posgateway.aml.rules.TransactionFact;
+import com.posgateway.aml.service.rules.RuleSetCache.CompiledRule;
+import org.junit.jupiter.api.Test;
+import org.springframework.expression.EvaluationContext;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The indexed rule path must match exactly the rules the linear executor matches, in
+ * the same priority order. Rules and facts are drawn from the same small value pools so
+ * that boundary cases (value equal to a threshold, null fields) come up often.
+ */
+class RulePredicateIndexTest {
+
+    private static final String[] NUMERIC_FIELDS = {"amount", "mlScore", "panTxnCount1h", "merchantAmountSum24h"};
+    private static final double[] THRESHOLDS = {-1, 0, 0.5, 0.9, 3, 10, 1000, 9999.99, 10000};
+    private static final String[] OPERATORS = {">", ">=", "<", "<="};
+    private static final String[] COUNTRIES = {"US", "IR", "KE", "GB"};
+    private static final String[] CHANNELS = {"POS", "ECOM"};
+
+    private final SpelRuleExecutor executor = new SpelRuleExecutor();
+
+    @Test
+    void indexedCandidatesMatchTheSameRulesAsLinearEvaluation() {
+        Random random = new Random(7);
+        for (int round = 0; round < 50; round++) {
+            List<CompiledRule> rules = randomRules(executor, random, 1 + random.nextInt(200));
+            RulePredicateIndex index = RulePredicateIndex.build(rules);
+
+            for (int i = 0; i < 200; i++) {
+                TransactionFact fact = randomFact(random, i);
+                assertEquals(matching(rules, fact), matching(index.candidates(fact), fact),
+                        "round " + round + ", fact " + i);
+            }
+        }
+    }
+
+    @Test
+    void candidatesKeepPriorityOrder() {
+        List<CompiledRule> rules = List.of(
+                rule(0, "amount > 100"),
+                rule(1, "countryCode == 'IR'"),
+                rule(2, "isHighRiskCountry()"),
+                rule(3, "amount > 50 and channel == 'POS'"));
+        RulePredicateIndex index = RulePredicateIndex.build(rules);
+
+        List<CompiledRule> candidates = index.candidates(fact(1L, 500, "IR", "POS", 0.0, 0L, 0.0));
+
+        assertEquals(List.of("r0", "r1", "r2", "r3"), names(candidates));
+        assertEquals(3, index.getIndexedCount());
+    }
+
+    @Test
+    void equalityGuardSelectsOnlyRulesForTheFactValue() {
+        List<CompiledRule> rules = List.of(rule(0, "channel == 'POS'"), rule(1, "#tx.channel == 'ECOM'"));
+        RulePredicateIndex index = RulePredicateIndex.build(rules);
+
+        assertEquals(List.of("r1"), names(index.candidates(fact(1L, 1, "US", "ECOM", 0.0, 0L, 0.0))));
+        // null == 'POS' is false in SpEL, so neither rule can match
+        assertEquals(List.of(), names(index.candidates(fact(1L, 1, "US", null, 0.0, 0L, 0.0))));
+    }
+
+    @Test
+    void everyGuardOfARuleMustHold() {
+        List<CompiledRule> rules = List.of(
+                rule(0, "countryCode == 'IR' and amount > 100"),
+                rule(1, "amount > 10 and #tx.amount > 100"),
+                rule(2, "mlScore >= 0.5 and 1000 > amount and channel == 'POS'"));
+        RulePredicateIndex index = RulePredicateIndex.build(rules);
+
+        assertEquals(List.of("r2"), names(index.candidates(fact(1L, 50, "IR", "POS", 0.5, 0L, 0.0))));
+        assertEquals(List.of("r0", "r1"), names(index.candidates(fact(1L, 5000, "IR", "POS", 0.5, 0L, 0.0))));
+        assertEquals(List.of(), names(index.candidates(fact(1L, 50, "IR", "POS", 0.4, 0L, 0.0))));
+    }
+
+    private List<String> matching(List<CompiledRule> rules, TransactionFact fact) {
+        EvaluationContext context = executor.createContext(fact);
+        List<String> matched = new ArrayList<>();
+        for (CompiledRule rule : rules) {
+            if (executor.evaluate(rule.getName(), rule.getExpression(), context)) {
+                matched.add(rule.getName());
+            }
+        }
+        return matched;
+    }
+
+    private static List<String> names(List<CompiledRule> rules) {
+        List<String> names = new ArrayList<>();
+        for (CompiledRule rule : rules) {
+            names.add(rule.getName());
+        }
+        return names;
+    }
+
+    /**
+     * Rules in priority order: 1-3 conjuncts, each a numeric bound, a string equality,
+     * a mirrored comparison, a #tx reference or a non-indexable term
+     */
+    static List<CompiledRule> randomRules(SpelRuleExecutor executor, Random random, int count) {
+        List<CompiledRule> rules = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int conjuncts = 1 + random.nextInt(3);
+            StringBuilder expression = new StringBuilder();
+            for (int c = 0; c < conjuncts; c++) {
+                if (c > 0) {
+                    expression.append(" and ");
+                }
+                expression.append(randomTerm(random));
+            }
+            rules.add(rule(executor, i, expression.toString()));
+        }
+        return rules;
+    }
+
+    private static String randomTerm(Random random) {
+        switch (random.nextInt(6)) {
+            case 0:
+                return "countryCode == '" + COUNTRIES[random.nextInt(COUNTRIES.length)] + "'";
+            case 1:
+                return "#tx.channel == '" + CHANNELS[random.nextInt(CHANNELS.length)] + "'";
+            case 2:
+                return THRESHOLDS[random.nextInt(THRESHOLDS.length)] + " "
+                        + OPERATORS[random.nextInt(OPERATORS.length)] + " " + randomNumericField(random);
+            case 3:
+                return "(amount > 5000 or isHighRiskCountry())";
+            default:
+                return (random.nextBoolean() ? "#tx." : "") + randomNumericField(random) + " "
+                        + OPERATORS[random.nextInt(OPERATORS.length)] + " " + THRESHOLDS[random.nextInt(THRESHOLDS.length)];
+        }
+    }
+
+    private static String randomNumericField(Random random) {
+        return NUMERIC_FIELDS[random.nextInt(NUMERIC_FIELDS.length)];
+    }
+
+    static TransactionFact randomFact(Random random, long txnId) {
+        return fact(txnId,
+                THRESHOLDS[random.nextInt(THRESHOLDS.length)] + (random.nextInt(3) - 1) * 0.01,
+                COUNTRIES[random.nextInt(COUNTRIES.length)],
+                random.nextInt(5) == 0 ? null : CHANNELS[random.nextInt(CHANNELS.length)],
+                random.nextBoolean() ? THRESHOLDS[random.nextInt(4)] : random.nextDouble(),
+                (long) random.nextInt(12),
+                THRESHOLDS[random.nextInt(THRESHOLDS.length)]);
+    }
+
+    static TransactionFact fact(Long txnId, double amount, String country, String channel, double mlScore,
+            long panTxnCount1h, double merchantAmountSum24h) {
+        return new TransactionFact(txnId, "M-1", BigDecimal.valueOf(amount), "USD", country,
+                LocalDateTime.of(2026, 1, 1, 12, 0), channel, "pan-" + txnId, mlScore, 0.0, 0L, 0.0, 0L,
+                panTxnCount1h, 0.0, merchantAmountSum24h, null, null, null);
+    }
+
+    private CompiledRule rule(int i, String expression) {
+        return rule(executor, i, expression);
+    }
+
+    static CompiledRule rule(SpelRuleExecutor executor, int i, String expression) {
+        RuleDefinition definition = new RuleDefinition();
+        definition.setId((long) i);
+        definition.setName("r" + i);
+        definition.setRuleType("SPEL");
+        definition.setRuleExpression(expression);
+        return new CompiledRule(definition, executor.compile(expression));
+    }
+}
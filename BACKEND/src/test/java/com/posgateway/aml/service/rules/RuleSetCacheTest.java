@@ -0,0 +1,92 @@
+package com.posgateway.aml.service.rules;
+
+import com.posgateway.aml.entity.rules.RuleDefinition;
+import com.posgateway.aml.repository.rules.RuleDefinitionRepository;
+import com.posgateway.aml.service.rules.RuleSetCache.CompiledRule;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Per-rule evaluation timers: tagged by rule id, capped at the configured number of
+ * rules (the rest share rule="other") and removed with their rule.
+ */
+class RuleSetCacheTest {
+
+    private final RuleDefinitionRepository repository = mock(RuleDefinitionRepository.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RuleSetCache cache = new RuleSetCache(repository, new SpelRuleExecutor(), meterRegistry);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(cache, "maxRuleTimers", 2);
+        ReflectionTestUtils.setField(cache, "indexEnabled", true);
+    }
+
+    @Test
+    void rulesPastTheCapShareTheOtherSeries() {
+        when(repository.findByEnabledTrueOrderByPriorityDesc()).thenReturn(List.of(
+                spel(1L), drools(2L), spel(3L), spel(4L)));
+        cache.init();
+
+        assertEquals(Set.of("1", "3", RuleSetCache.OTHER_RULES), ruleTags());
+        List<CompiledRule> rules = cache.getRuleSet().getRules();
+        Timer first = cache.getEvaluationTimer(rules.get(0), true);
+        assertEquals("1", first.getId().getTag("rule"));
+        assertEquals("match", first.getId().getTag("outcome"));
+        assertEquals(RuleSetCache.OTHER_RULES, cache.getEvaluationTimer(rules.get(3), false).getId().getTag("rule"));
+    }
+
+    @Test
+    void seriesFollowTheRulesAcrossReloads() {
+        RuleDefinition kept = spel(3L);
+        when(repository.findByEnabledTrueOrderByPriorityDesc()).thenReturn(List.of(spel(1L), kept));
+        cache.init();
+        Timer keptTimer = cache.getEvaluationTimer(cache.getRuleSet().getRules().get(1), true);
+
+        when(repository.findByEnabledTrueOrderByPriorityDesc()).thenReturn(List.of(kept, spel(5L)));
+        cache.reload();
+
+        assertEquals(Set.of("3", "5", RuleSetCache.OTHER_RULES), ruleTags());
+        assertSame(keptTimer, cache.getEvaluationTimer(cache.getRuleSet().getRules().get(0), true));
+    }
+
+    private Set<String> ruleTags() {
+        Set<String> tags = new TreeSet<>();
+        meterRegistry.find("aml_rule_evaluation_time").timers()
+                .forEach(timer -> tags.add(timer.getId().getTag("rule")));
+        return tags;
+    }
+
+    private static RuleDefinition spel(long id) {
+        RuleDefinition rule = rule(id, "SPEL");
+        rule.setRuleExpression("amount > " + id);
+        return rule;
+    }
+
+    private static RuleDefinition drools(long id) {
+        return rule(id, "DROOLS_DRL");
+    }
+
+    private static RuleDefinition rule(long id, String type) {
+        RuleDefinition rule = new RuleDefinition();
+        rule.setId(id);
+        rule.setName("rule-" + id);
+        rule.setRuleType(type);
+        rule.setEnabled(true);
+        rule.setUpdatedAt(LocalDateTime.of(2026, 1, 1, 0, 0));
+        return rule;
+    }
+}
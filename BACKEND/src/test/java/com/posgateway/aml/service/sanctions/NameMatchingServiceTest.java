@@ -0,0 +1,47 @@
+package com.posgateway.aml.service.sanctions;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The cutoff similarity used by the sanctions index must agree with the plain
+ * similarity score wherever it reports one.
+ */
+class NameMatchingServiceTest {
+
+    private static final NameMatchingService matcher = new NameMatchingService();
+
+    @Test
+    void equalNamesScoreOneIncludingEmptyNames() {
+        assertEquals(1.0, matcher.calculateSimilarityScore("", ""));
+        assertEquals(1.0, matcher.calculateNormalizedSimilarity("", "", 0.8));
+        assertEquals(1.0, matcher.calculateNormalizedSimilarity("JOHN DOE", "JOHN DOE", 0.8));
+    }
+
+    @Test
+    void normalizedSimilarityAgreesWithSimilarityScore() {
+        Random random = new Random(9);
+        for (int i = 0; i < 5_000; i++) {
+            String a = randomName(random);
+            String b = random.nextBoolean()
+                    ? randomName(random)
+                    : matcher.normalizeName(a.substring(0, random.nextInt(a.length() + 1)));
+            double minScore = 0.5 + random.nextInt(5) * 0.1;
+
+            double full = matcher.calculateSimilarityScore(a, b);
+            double cutoff = matcher.calculateNormalizedSimilarity(a, b, minScore);
+            assertEquals(full >= minScore ? full : -1.0, cutoff, 1e-12, a + " / " + b + " at " + minScore);
+        }
+    }
+
+    private static String randomName(Random random) {
+        char[] chars = new char[random.nextInt(12)];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = "ABEILNORST ".charAt(random.nextInt(11));
+        }
+        return matcher.normalizeName(new String(chars));
+    }
+}
@@ -0,0 +1,170 @@
+package com.posgateway.aml.service.sanctions;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Edit distance kernels against a plain dynamic-programming Levenshtein, and
+ * Jaro-Winkler against published reference values.
+ */
+class NameSimilarityTest {
+
+    private static final String ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789 ";
+
+    private final NameSimilarity.Scratch scratch = new NameSimilarity.Scratch();
+
+    @Test
+    void myersMatchesPlainLevenshtein() {
+        Random random = new Random(1);
+        for (int i = 0; i < 20_000; i++) {
+            char[] pattern = randomName(random, random.nextInt(NameSimilarity.MYERS_MAX_LENGTH + 1));
+            char[] text = random.nextBoolean()
+                    ? randomName(random, random.nextInt(90))
+                    : mutate(random, pattern);
+            assertEquals(plainLevenshtein(pattern, text),
+                    NameSimilarity.myersLevenshtein(pattern, pattern.length, text, text.length, scratch),
+                    new String(pattern) + " / " + new String(text));
+        }
+    }
+
+    @Test
+    void boundedLevenshteinIsExactWithinTheBoundAndMinusOneBeyond() {
+        Random random = new Random(2);
+        for (int i = 0; i < 20_000; i++) {
+            char[] a = randomName(random, random.nextInt(40));
+            char[] b = random.nextBoolean() ? randomName(random, random.nextInt(40)) : mutate(random, a);
+            int maxDistance = random.nextInt(8);
+            int expected = plainLevenshtein(a, b);
+            assertEquals(expected <= maxDistance ? expected : -1,
+                    NameSimilarity.boundedLevenshtein(a, a.length, b, b.length, maxDistance, scratch),
+                    new String(a) + " / " + new String(b) + " k=" + maxDistance);
+        }
+    }
+
+    @Test
+    void levenshteinPicksAnExactKernelForAnyLength() {
+        Random random = new Random(3);
+        for (int i = 0; i < 2_000; i++) {
+            char[] a = randomName(random, random.nextInt(150));
+            char[] b = random.nextBoolean() ? randomName(random, random.nextInt(150)) : mutate(random, a);
+            assertEquals(plainLevenshtein(a, b), NameSimilarity.levenshtein(a, a.length, b, b.length, scratch));
+        }
+        // Non-ASCII input takes the banded path
+        char[] accented = "JOSÉ".toCharArray();
+        char[] plain = "JOSE".toCharArray();
+        assertEquals(1, NameSimilarity.levenshtein(accented, 4, plain, 4, scratch));
+    }
+
+    @Test
+    void jaroWinklerMatchesReferenceValues() {
+        // Winkler (1990) examples
+        assertJaroWinkler(0.961, "MARTHA", "MARHTA");
+        assertJaroWinkler(0.840, "DWAYNE", "DUANE");
+        assertJaroWinkler(0.813, "DIXON", "DICKSONX");
+        assertJaroWinkler(1.0, "SMITH", "SMITH");
+        assertJaroWinkler(0.0, "ABC", "XYZ");
+        assertJaroWinkler(1.0, "", "");
+        assertJaroWinkler(0.0, "A", "");
+    }
+
+    @Test
+    void jaroWinklerIsSymmetricAndLeavesNoStateBehind() {
+        Random random = new Random(4);
+        for (int i = 0; i < 5_000; i++) {
+            char[] a = randomName(random, random.nextInt(20));
+            char[] b = mutate(random, a);
+            double ab = NameSimilarity.jaroWinkler(a, a.length, b, b.length, scratch);
+            // Fresh scratch: reused match flags must not leak between calls
+            double fresh = NameSimilarity.jaroWinkler(a, a.length, b, b.length, new NameSimilarity.Scratch());
+            assertEquals(fresh, ab, 1e-12);
+            if (a.length == b.length) {
+                assertEquals(ab, NameSimilarity.jaroWinkler(b, b.length, a, a.length, scratch), 1e-12);
+            }
+        }
+    }
+
+    @Test
+    void matchAllAgreesWithPairwiseMatching() {
+        NameMatchingService matcher = new NameMatchingService();
+        ReflectionTestUtils.setField(matcher, "levenshteinThreshold", 3);
+        ReflectionTestUtils.setField(matcher, "similarityThreshold", 0.8);
+
+        Random random = new Random(5);
+        for (int i = 0; i < 200; i++) {
+            String query = new String(randomName(random, 4 + random.nextInt(16)));
+            List<String> candidates = new ArrayList<>();
+            for (int c = 0; c < 50; c++) {
+                candidates.add(random.nextBoolean()
+                        ? new String(mutate(random, query.toCharArray())).toLowerCase()
+                        : new String(randomName(random, random.nextInt(20))));
+            }
+
+            List<String> expected = new ArrayList<>();
+            for (String candidate : candidates) {
+                if (matcher.isMatch(query, candidate)) {
+                    expected.add(candidate);
+                }
+            }
+            List<String> actual = new ArrayList<>();
+            for (NameMatchingService.MatchResult result : matcher.matchAll(query, candidates)) {
+                actual.add(result.getName2());
+            }
+            assertEquals(expected, actual, query);
+        }
+    }
+
+    private void assertJaroWinkler(double expected, String a, String b) {
+        assertEquals(expected,
+                NameSimilarity.jaroWinkler(a.toCharArray(), a.length(), b.toCharArray(), b.length(), scratch),
+                0.0005, a + " / " + b);
+    }
+
+    private static int plainLevenshtein(char[] a, char[] b) {
+        int[][] d = new int[a.length + 1][b.length + 1];
+        for (int i = 0; i <= a.length; i++) {
+            d[i][0] = i;
+        }
+        for (int j = 0; j <= b.length; j++) {
+            d[0][j] = j;
+        }
+        for (int i = 1; i <= a.length; i++) {
+            for (int j = 1; j <= b.length; j++) {
+                int substitution = d[i - 1][j - 1] + (a[i - 1] == b[j - 1] ? 0 : 1);
+                d[i][j] = Math.min(substitution, Math.min(d[i - 1][j], d[i][j - 1]) + 1);
+            }
+        }
+        return d[a.length][b.length];
+    }
+
+    private static char[] randomName(Random random, int length) {
+        char[] name = new char[length];
+        for (int i = 0; i < length; i++) {
+            // Small alphabet share so repeated characters (the hard cases) are common
+            name[i] = ALPHABET.charAt(random.nextInt(random.nextBoolean() ? 4 : ALPHABET.length()));
+        }
+        return name;
+    }
+
+    private static char[] mutate(Random random, char[] name) {
+        StringBuilder mutated = new StringBuilder(new String(name));
+        int edits = random.nextInt(5);
+        for (int e = 0; e < edits; e++) {
+            int position = random.nextInt(mutated.length() + 1);
+            char c = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+            if (random.nextBoolean() || position == mutated.length()) {
+                mutated.insert(position, c);
+            } else if (random.nextBoolean()) {
+                mutated.deleteCharAt(position);
+            } else {
+                mutated.setCharAt(position, c);
+            }
+        }
+        return mutated.toString().toCharArray();
+    }
+}
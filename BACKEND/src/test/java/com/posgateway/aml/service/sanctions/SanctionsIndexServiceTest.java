@@ -0,0 +1,78 @@
+package com.posgateway.aml.service.sanctions;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.posgateway.aml.model.ScreeningResult.EntityType;
+import com.posgateway.aml.service.AerospikeConnectionService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Publishing a snapshot swaps the index, clears the screening result cache and
+ * announces list changes; an empty snapshot changes nothing.
+ */
+class SanctionsIndexServiceTest {
+
+    private final Cache screeningCache = mock(Cache.class);
+    private final ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+    private SanctionsIndexService service;
+
+    @BeforeEach
+    void setUp() {
+        CacheManager cacheManager = mock(CacheManager.class);
+        when(cacheManager.getCache(SanctionsIndexService.SCREENING_CACHE)).thenReturn(screeningCache);
+        service = new SanctionsIndexService(new NameMatchingService(), mock(AerospikeConnectionService.class),
+                new ObjectMapper(), new SimpleMeterRegistry(), eventPublisher, cacheManager);
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "similarityThreshold", 0.8);
+        service.init();
+    }
+
+    @Test
+    void everyPublishedSnapshotClearsTheScreeningCache() {
+        assertNull(service.publish(builder("JOHN SMITH"), "v1"));
+        verify(screeningCache, times(1)).clear();
+        verify(eventPublisher, never()).publishEvent(any(Object.class));
+        assertTrue(service.isReady());
+
+        WatchlistDiff diff = service.publish(builder("JOHN SMITH", "IVAN PETROV"), "v2");
+        verify(screeningCache, times(2)).clear();
+        verify(eventPublisher).publishEvent(any(WatchlistChangedEvent.class));
+        assertEquals(1, diff.getAdded().size());
+        assertEquals(1, service.screenName("IVAN PETROV", EntityType.PERSON).getMatchCount());
+    }
+
+    @Test
+    void emptySnapshotKeepsTheIndexAndTheCache() {
+        service.publish(builder("JOHN SMITH"), "v1");
+        assertNull(service.publish(builder(), "v2"));
+
+        verify(screeningCache, times(1)).clear();
+        assertEquals("v1", service.getIndex().getVersion());
+    }
+
+    private SanctionsNameIndex.Builder builder(String... names) {
+        SanctionsNameIndex.Builder builder = service.newBuilder();
+        for (String name : names) {
+            service.addEntry(builder, new SanctionsNameIndex.Entry(name.replace(' ', '-'), name, List.of(),
+                    EntityType.PERSON, "TEST", null, List.of(), List.of(), null));
+        }
+        return builder;
+    }
+}
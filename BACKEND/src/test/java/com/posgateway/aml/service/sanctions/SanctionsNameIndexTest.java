@@ -0,0 +1,160 @@
+package com.posgateway.aml.service.sanctions;
+
+import com.posgateway.aml.model.ScreeningResult.EntityType;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Recall of the trigram/phonetic blocking: for every query, the index must return
+ * exactly the entities a brute-force scan over all names and aliases finds at or
+ * above the threshold, with the same best score.
+ */
+class SanctionsNameIndexTest {
+
+    private static final String[] SYLLABLES = {
+            "AL", "AN", "BA", "DI", "EL", "HA", "IB", "KA", "LI", "MA", "MO", "NA", "OR", "RA", "SA", "SH",
+            "TA", "UL", "VO", "YA", "ZA"};
+    private static final char[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZ ".toCharArray();
+
+    private static final NameMatchingService matcher = new NameMatchingService();
+    private static final List<List<String>> entityNames = new ArrayList<>();
+    private static SanctionsNameIndex index;
+
+    @BeforeAll
+    static void buildIndex() {
+        Random random = new Random(3);
+        SanctionsNameIndex.Builder builder = new SanctionsNameIndex.Builder();
+        for (int i = 0; i < 2_000; i++) {
+            List<String> names = new ArrayList<>();
+            names.add(randomName(random));
+            if (random.nextInt(3) == 0) {
+                names.add(mutate(random, names.get(0), 1 + random.nextInt(2)));
+            }
+            List<String[]> codes = new ArrayList<>();
+            for (String name : names) {
+                codes.add(new String[] {
+                        matcher.generatePhoneticCodeNormalized(name, false),
+                        matcher.generatePhoneticCodeNormalized(name, true)});
+            }
+            EntityType type = i % 2 == 0 ? EntityType.PERSON : EntityType.ORGANIZATION;
+            builder.add(new SanctionsNameIndex.Entry("E" + i, names.get(0), names.subList(1, names.size()), type,
+                    "TEST", null, List.of(), List.of(), null), names, codes);
+            entityNames.add(names);
+        }
+        index = builder.build("test");
+    }
+
+    @Test
+    void findsEveryEntityABruteForceScanFinds() {
+        Random random = new Random(5);
+        int queriesWithHits = 0;
+        for (double minScore : new double[] {0.7, 0.8, 0.9}) {
+            for (int q = 0; q < 300; q++) {
+                List<String> target = entityNames.get(random.nextInt(entityNames.size()));
+                String query = q % 4 == 0
+                        ? randomName(random)
+                        : mutate(random, target.get(random.nextInt(target.size())), random.nextInt(4));
+                if (query.isEmpty()) {
+                    continue;
+                }
+
+                Map<String, Double> expected = bruteForce(query, minScore);
+                Map<String, Double> actual = new TreeMap<>();
+                for (SanctionsNameIndex.Hit hit : index.search(query,
+                        matcher.generatePhoneticCodeNormalized(query, false),
+                        matcher.generatePhoneticCodeNormalized(query, true),
+                        null, minScore, matcher)) {
+                    actual.put(hit.getEntry().getEntityId(), hit.getScore());
+                }
+                assertEquals(expected, actual, "query '" + query + "' at " + minScore);
+                if (!expected.isEmpty()) {
+                    queriesWithHits++;
+                }
+            }
+        }
+        // Guard against a vacuous pass: most mutated queries must still hit their entity
+        assertTrue(queriesWithHits > 450, "queries with hits: " + queriesWithHits);
+    }
+
+    @Test
+    void filtersByEntityTypeAndRanksByScore() {
+        String name = entityNames.get(0).get(0);
+        List<SanctionsNameIndex.Hit> hits = index.search(name,
+                matcher.generatePhoneticCodeNormalized(name, false),
+                matcher.generatePhoneticCodeNormalized(name, true),
+                EntityType.PERSON, 0.7, matcher);
+
+        assertEquals("E0", hits.get(0).getEntry().getEntityId());
+        assertEquals(1.0, hits.get(0).getScore());
+        for (int i = 0; i < hits.size(); i++) {
+            assertEquals(EntityType.PERSON, hits.get(i).getEntry().getEntityType());
+            if (i > 0) {
+                assertTrue(hits.get(i - 1).getScore() >= hits.get(i).getScore());
+            }
+        }
+    }
+
+    private static Map<String, Double> bruteForce(String query, double minScore) {
+        Map<String, Double> best = new TreeMap<>();
+        for (int i = 0; i < entityNames.size(); i++) {
+            for (String name : entityNames.get(i)) {
+                double score = matcher.calculateSimilarityScore(query, name);
+                if (score >= minScore) {
+                    best.merge("E" + i, score, Math::max);
+                }
+            }
+        }
+        return best;
+    }
+
+    private static String randomName(Random random) {
+        StringBuilder name = new StringBuilder();
+        int words = 1 + random.nextInt(3);
+        for (int w = 0; w < words; w++) {
+            if (w > 0) {
+                name.append(' ');
+            }
+            int syllables = 2 + random.nextInt(3);
+            for (int s = 0; s < syllables; s++) {
+                name.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+        }
+        return name.toString();
+    }
+
+    /**
+     * Apply random single-char edits, re-normalizing so the result is a valid indexed form
+     */
+    private static String mutate(Random random, String name, int edits) {
+        StringBuilder mutated = new StringBuilder(name);
+        for (int e = 0; e < edits; e++) {
+            int position = random.nextInt(mutated.length() + 1);
+            char c = ALPHABET[random.nextInt(ALPHABET.length)];
+            switch (random.nextInt(3)) {
+                case 0:
+                    mutated.insert(position, c);
+                    break;
+                case 1:
+                    if (position < mutated.length()) {
+                        mutated.deleteCharAt(position);
+                    }
+                    break;
+                default:
+                    if (position < mutated.length()) {
+                        mutated.setCharAt(position, c);
+                    }
+                    break;
+            }
+        }
+        return matcher.normalizeName(mutated.toString());
+    }
+}
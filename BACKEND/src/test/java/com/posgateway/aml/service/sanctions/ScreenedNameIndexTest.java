@@ -0,0 +1,135 @@
+package com.posgateway.aml.service.sanctions;
+
+import com.posgateway.aml.entity.merchant.BeneficialOwner;
+import com.posgateway.aml.entity.merchant.Merchant;
+import com.posgateway.aml.repository.BeneficialOwnerRepository;
+import com.posgateway.aml.repository.MerchantRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Block rows written for merchant and owner names, the scan fallback until the block
+ * index is built, and the listener skipping updates that leave the names untouched.
+ */
+class ScreenedNameIndexTest {
+
+    private final MerchantRepository merchantRepository = mock(MerchantRepository.class);
+    private final BeneficialOwnerRepository ownerRepository = mock(BeneficialOwnerRepository.class);
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final ScreenedNameIndex index = new ScreenedNameIndex(merchantRepository, ownerRepository,
+            new NameMatchingService(), jdbcTemplate);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(index, "pageSize", 100);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void indexMerchantReplacesItsBlocks() {
+        index.indexMerchant(7L, "Acme Trading Ltd", "Acme");
+
+        verify(jdbcTemplate).update("DELETE FROM merchant_name_blocks WHERE merchant_id = ?", 7L);
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), rows.capture());
+
+        Set<String> written = new HashSet<>();
+        for (Object[] row : rows.getValue()) {
+            written.add((String) row[0]);
+            assertEquals(7L, row[1]);
+        }
+        assertEquals(index.blocksOf(List.of("Acme Trading Ltd", "Acme")), written);
+    }
+
+    @Test
+    void blankOwnerNameOnlyClearsItsBlocks() {
+        index.indexOwner(3L, 7L, " ");
+
+        verify(jdbcTemplate).update("DELETE FROM owner_name_blocks WHERE owner_id = ?", 3L);
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    void scansNamesUntilTheBlockIndexIsBuilt() {
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class))).thenReturn(List.of("NOT_BUILT"));
+        when(merchantRepository.findScreeningNameRows(anyLong(), any(Pageable.class))).thenReturn(List.of(
+                new Object[] { 1L, "Ivan Petrov", null },
+                new Object[] { 2L, "Green Fields Farm", "Green Fields" }));
+        when(ownerRepository.findScreeningNameRows(anyLong(), any(Pageable.class))).thenReturn(List.<Object[]>of(
+                new Object[] { 10L, 5L, "Ivan Petrov" }));
+
+        Set<String> blocks = index.blocksOf(List.of("Ivan Petrov"));
+        SortedSet<Long> merchantIds = index.findMerchants(blocks, blocks);
+
+        assertEquals(new TreeSet<>(List.of(1L, 5L)), merchantIds);
+        verify(jdbcTemplate, never()).queryForList(anyString(), eq(Long.class), any(Object.class));
+    }
+
+    @Test
+    void listenerSkipsUpdatesThatLeaveTheNamesUntouched() {
+        ScreenedNameIndex target = mock(ScreenedNameIndex.class);
+        ScreenedNameBlockListener listener = new ScreenedNameBlockListener(mock(EntityManagerFactory.class), target);
+        EntityPersister persister = mock(EntityPersister.class);
+        when(persister.getPropertyNames()).thenReturn(new String[] { "cra", "krs", "legalName", "tradingName" });
+
+        Merchant merchant = new Merchant();
+        merchant.setMerchantId(7L);
+        merchant.setLegalName("Acme Trading Ltd");
+        listener.onPostUpdate(update(merchant, persister, new int[] { 0, 1 }));
+        verify(target, never()).indexMerchant(any(), any(), any());
+
+        listener.onPostUpdate(update(merchant, persister, new int[] { 0, 2 }));
+        verify(target).indexMerchant(7L, "Acme Trading Ltd", null);
+    }
+
+    @Test
+    void listenerReindexesAnOwnerMovedToAnotherMerchant() {
+        ScreenedNameIndex target = mock(ScreenedNameIndex.class);
+        ScreenedNameBlockListener listener = new ScreenedNameBlockListener(mock(EntityManagerFactory.class), target);
+        EntityPersister persister = mock(EntityPersister.class);
+        when(persister.getPropertyNames()).thenReturn(new String[] { "fullName", "merchant", "isPep" });
+
+        Merchant merchant = new Merchant();
+        merchant.setMerchantId(9L);
+        BeneficialOwner owner = new BeneficialOwner();
+        owner.setOwnerId(3L);
+        owner.setFullName("Ivan Petrov");
+        owner.setMerchant(merchant);
+
+        listener.onPostUpdate(update(owner, persister, new int[] { 2 }));
+        verify(target, never()).indexOwner(any(), any(), any());
+
+        listener.onPostUpdate(update(owner, persister, new int[] { 1 }));
+        verify(target).indexOwner(3L, 9L, "Ivan Petrov");
+    }
+
+    private static PostUpdateEvent update(Object entity, EntityPersister persister, int[] dirty) {
+        return new PostUpdateEvent(entity, 1L, new Object[0], new Object[0], dirty, persister,
+                mock(EventSource.class));
+    }
+}
@@ -0,0 +1,229 @@
+package com.posgateway.aml.service.scoring;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.posgateway.aml.features.FeatureVector;
+import com.posgateway.aml.service.Http2FailoverService;
+import com.posgateway.aml.service.Http2HealthMonitorService;
+import com.posgateway.aml.service.RestClientService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Batching (full batch vs linger), matching results to callers by txn_id or position,
+ * queue-full rejection, and a round trip against StubScoringServer.
+ */
+class MicroBatchScoringClientTest {
+
+    private final RestClientService restClientService = mock(RestClientService.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private MicroBatchScoringClient client;
+    private StubScoringServer stub;
+
+    private MicroBatchScoringClient start(RestClientService rest, int maxBatchSize, long lingerMicros,
+                                          int queueCapacity, int maxInFlight) {
+        client = new MicroBatchScoringClient(rest, meterRegistry);
+        ReflectionTestUtils.setField(client, "enabled", true);
+        ReflectionTestUtils.setField(client, "scoringServiceUrl", "http://scoring");
+        ReflectionTestUtils.setField(client, "maxRetries", 1);
+        ReflectionTestUtils.setField(client, "maxBatchSize", maxBatchSize);
+        ReflectionTestUtils.setField(client, "lingerMicros", lingerMicros);
+        ReflectionTestUtils.setField(client, "queueCapacity", queueCapacity);
+        ReflectionTestUtils.setField(client, "maxInFlight", maxInFlight);
+        client.init();
+        return client;
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (client != null) {
+            client.shutdown();
+        }
+        if (stub != null) {
+            stub.stop();
+        }
+    }
+
+    @Test
+    void fullBatchIsSentWithoutWaitingForTheLinger() throws Exception {
+        when(restClientService.postRequestWithRetry(anyString(), anyMap(), anyInt()))
+                .thenAnswer(invocation -> echo(invocation.getArgument(1)));
+        // A linger of a minute: only a full batch can be sent within the test
+        start(restClientService, 3, TimeUnit.MINUTES.toMicros(1), 100, 2);
+
+        List<CompletableFuture<Map<String, Object>>> futures = submit(1L, 2L, 3L);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals((long) i + 1, futures.get(i).get(5, TimeUnit.SECONDS).get("txn_id"));
+        }
+        assertEquals(List.of(List.of(1L, 2L, 3L)), sentBatches(1));
+    }
+
+    @Test
+    void partialBatchIsSentWhenTheLingerExpires() throws Exception {
+        when(restClientService.postRequestWithRetry(anyString(), anyMap(), anyInt()))
+                .thenAnswer(invocation -> echo(invocation.getArgument(1)));
+        start(restClientService, 64, TimeUnit.MILLISECONDS.toMicros(50), 100, 2);
+
+        List<CompletableFuture<Map<String, Object>>> futures = submit(1L, 2L);
+
+        assertEquals(2L, futures.get(1).get(5, TimeUnit.SECONDS).get("txn_id"));
+        assertEquals(List.of(List.of(1L, 2L)), sentBatches(1));
+        assertEquals(2.0 / 64, meterRegistry.get("aml_scoring_batch_fill_ratio").summary().mean(), 1e-9);
+    }
+
+    @Test
+    void resultsAreMatchedByTxnIdInAnyOrder() throws Exception {
+        when(restClientService.postRequestWithRetry(anyString(), anyMap(), anyInt()))
+                .thenReturn(Map.of("results", List.of(result(3L, 0.3), result(1L, 0.1))));
+        start(restClientService, 3, TimeUnit.MINUTES.toMicros(1), 100, 2);
+
+        List<CompletableFuture<Map<String, Object>>> futures = submit(1L, 2L, 3L);
+
+        assertEquals(0.1, futures.get(0).get(5, TimeUnit.SECONDS).get("score"));
+        assertEquals(0.3, futures.get(2).get(5, TimeUnit.SECONDS).get("score"));
+        // txn 2 is missing from the response
+        ExecutionException missing = assertThrows(ExecutionException.class,
+                () -> futures.get(1).get(5, TimeUnit.SECONDS));
+        assertEquals("No score returned for txn 2", missing.getCause().getMessage());
+    }
+
+    @Test
+    void resultsWithoutTxnIdAreMatchedByPosition() throws Exception {
+        when(restClientService.postRequestWithRetry(anyString(), anyMap(), anyInt()))
+                .thenReturn(Map.of("results", List.of(Map.of("score", 0.1), Map.of("score", 0.2))));
+        start(restClientService, 3, TimeUnit.MINUTES.toMicros(1), 100, 2);
+
+        List<CompletableFuture<Map<String, Object>>> futures = submit(10L, 20L, 30L);
+
+        assertEquals(0.1, futures.get(0).get(5, TimeUnit.SECONDS).get("score"));
+        assertEquals(0.2, futures.get(1).get(5, TimeUnit.SECONDS).get("score"));
+        assertThrows(ExecutionException.class, () -> futures.get(2).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void fullQueueRejectsImmediately() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(restClientService.postRequestWithRetry(anyString(), anyMap(), anyInt()))
+                .thenAnswer(invocation -> {
+                    release.await(10, TimeUnit.SECONDS);
+                    return echo(invocation.getArgument(1));
+                });
+        start(restClientService, 1, 0L, 1, 1);
+
+        // The one sender is busy with txn 1 and the dispatcher waits for it holding txn 2
+        List<CompletableFuture<Map<String, Object>>> futures = new ArrayList<>(submit(1L));
+        verify(restClientService, timeout(5000)).postRequestWithRetry(anyString(), anyMap(), anyInt());
+        futures.addAll(submit(2L));
+        awaitQueueDepth(0);
+        // txn 3 fills the queue
+        futures.addAll(submit(3L));
+
+        assertThrows(RejectedExecutionException.class, () -> client.submit(4L, new FeatureVector()));
+        assertEquals(1.0, meterRegistry.get("aml_scoring_batch_rejected_total").counter().count());
+
+        release.countDown();
+        for (CompletableFuture<Map<String, Object>> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void disabledClientRejects() {
+        MicroBatchScoringClient disabled = new MicroBatchScoringClient(restClientService, meterRegistry);
+        disabled.init();
+
+        assertThrows(RejectedExecutionException.class, () -> disabled.submit(1L, new FeatureVector()));
+    }
+
+    @Test
+    void scoresABatchFromTheStubServer() throws Exception {
+        stub = new StubScoringServer(0, 0L, 2);
+        stub.start();
+        RestClientService rest = new RestClientService(new ObjectMapper(), mock(Http2FailoverService.class),
+                mock(Http2HealthMonitorService.class));
+        start(rest, 2, TimeUnit.MINUTES.toMicros(1), 100, 2);
+        ReflectionTestUtils.setField(client, "scoringServiceUrl", "http://localhost:" + stub.getPort());
+
+        List<CompletableFuture<Map<String, Object>>> futures = submit(7L, 8L);
+
+        for (int i = 0; i < 2; i++) {
+            Map<String, Object> result = futures.get(i).get(10, TimeUnit.SECONDS);
+            assertEquals(7 + i, ((Number) result.get("txn_id")).intValue());
+            double score = ((Number) result.get("score")).doubleValue();
+            assertTrue(score >= 0.0 && score < 1.0);
+        }
+    }
+
+    private List<CompletableFuture<Map<String, Object>>> submit(Long... txnIds) {
+        List<CompletableFuture<Map<String, Object>>> futures = new ArrayList<>();
+        for (Long txnId : txnIds) {
+            futures.add(client.submit(txnId, new FeatureVector()));
+        }
+        return futures;
+    }
+
+    private void awaitQueueDepth(double depth) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("aml_scoring_batch_queue_depth").gauge().value() != depth) {
+            assertTrue(System.nanoTime() < deadline, "queue depth " + depth);
+            Thread.sleep(5);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<List<Object>> sentBatches(int count) {
+        ArgumentCaptor<Map<String, Object>> payload = ArgumentCaptor.forClass(Map.class);
+        verify(restClientService, timeout(5000).times(count)).postRequestWithRetry(anyString(),
+                payload.capture(), anyInt());
+        List<List<Object>> batches = new ArrayList<>();
+        for (Map<String, Object> sent : payload.getAllValues()) {
+            List<Object> txnIds = new ArrayList<>();
+            for (Map<String, Object> request : (List<Map<String, Object>>) sent.get("requests")) {
+                txnIds.add(request.get("txn_id"));
+            }
+            batches.add(txnIds);
+        }
+        return batches;
+    }
+
+    // Answers each request with its txn_id, as the scoring service does
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> echo(Map<String, Object> payload) {
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (Map<String, Object> request : (List<Map<String, Object>>) payload.get("requests")) {
+            results.add(result((Long) request.get("txn_id"), 0.5));
+        }
+        return Map.of("results", results);
+    }
+
+    private static Map<String, Object> result(Long txnId, double score) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("txn_id", txnId);
+        result.put("score", score);
+        return result;
+    }
+}
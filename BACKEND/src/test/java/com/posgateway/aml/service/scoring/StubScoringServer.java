@@ -0,0 +1,163 @@
+package com.posgateway.aml.service.scoring;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Stub Scoring Server
+ * Local stand-in for the external ML scoring service, for tests and load tests.
+ *
+ * Serves POST /score and POST /score/batch with a deterministic score derived from the
+ * txn_id. An optional fixed latency simulates model inference time.
+ *
+ * For a load test, run main() from the test classpath (port 8000 is the default
+ * scoring.service.url):
+ *   java -cp target/test-classes:target/classes:... com.posgateway.aml.service.scoring.StubScoringServer
+ *     [port] [latencyMs]
+ */
+public class StubScoringServer {
+
+    private static final Logger logger = LoggerFactory.getLogger(StubScoringServer.class);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final int port;
+    private final long latencyMs;
+    private final int threads;
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * @param port      Port to listen on, 0 for any free port
+     * @param latencyMs Fixed delay before each response
+     * @param threads   Request handler threads
+     */
+    public StubScoringServer(int port, long latencyMs, int threads) {
+        this.port = port;
+        this.latencyMs = latencyMs;
+        this.threads = threads;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8000;
+        long latencyMs = args.length > 1 ? Long.parseLong(args[1]) : 0L;
+        new StubScoringServer(port, latencyMs, 8).start();
+    }
+
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        server.createContext("/score/batch", this::handleBatch);
+        server.createContext("/score", this::handleSingle);
+        executor = Executors.newFixedThreadPool(threads);
+        server.setExecutor(executor);
+        server.start();
+        logger.info("Stub scoring server listening on http://localhost:{}", getPort());
+    }
+
+    /**
+     * Port listened on (the bound port when started with port 0)
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private void handleSingle(HttpExchange exchange) throws IOException {
+        Map<String, Object> request = readBody(exchange);
+        if (request == null) {
+            return;
+        }
+        simulateLatency();
+        respond(exchange, 200, score(request.get("txn_id")));
+    }
+
+    private void handleBatch(HttpExchange exchange) throws IOException {
+        Map<String, Object> request = readBody(exchange);
+        if (request == null) {
+            return;
+        }
+        simulateLatency();
+
+        List<Map<String, Object>> results = new ArrayList<>();
+        Object requests = request.get("requests");
+        if (requests instanceof List) {
+            for (Object item : (List<?>) requests) {
+                Object txnId = item instanceof Map ? ((Map<?, ?>) item).get("txn_id") : null;
+                results.add(score(txnId));
+            }
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("results", results);
+        respond(exchange, 200, response);
+    }
+
+    private Map<String, Object> readBody(HttpExchange exchange) throws IOException {
+        if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+            respond(exchange, 405, Map.of("error", "POST required"));
+            return null;
+        }
+        try (InputStream body = exchange.getRequestBody()) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> request = objectMapper.readValue(body, Map.class);
+            return request;
+        } catch (IOException e) {
+            respond(exchange, 400, Map.of("error", "Invalid JSON: " + e.getMessage()));
+            return null;
+        }
+    }
+
+    private Map<String, Object> score(Object txnId) {
+        long id = txnId instanceof Number ? ((Number) txnId).longValue() : 0L;
+        // Deterministic pseudo-score in [0, 1) so repeated runs are comparable
+        double score = Math.floorMod(id * 2654435761L, 1000L) / 1000.0;
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("txn_id", txnId);
+        result.put("score", score);
+        result.put("latency_ms", latencyMs);
+        return result;
+    }
+
+    private void simulateLatency() {
+        if (latencyMs <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(latencyMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void respond(HttpExchange exchange, int status, Map<String, Object> body) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
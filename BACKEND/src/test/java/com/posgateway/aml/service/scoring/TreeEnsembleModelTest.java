@@ -0,0 +1,127 @@
+package com.posgateway.aml.service.scoring;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.posgateway.aml.features.Feature;
+import com.posgateway.aml.features.FeatureVector;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Scores a small hand-written XGBoost JSON model (save_model format) and checks the
+ * results against XGBoost's prediction rule: base margin plus one leaf per tree,
+ * sigmoid for binary:logistic, float32 split comparisons, default direction when missing.
+ */
+class TreeEnsembleModelTest {
+
+    // Tree 0: amount < 0.1 ? -0.4 : 0.6 (missing -> left)
+    // Tree 1: is_chip_present < 0.5 ? 0.2 : -0.1 (missing -> right)
+    private static final String MODEL = """
+            {"learner": {
+              "feature_names": ["amount", "is_chip_present"],
+              "learner_model_param": {"base_score": "5E-1", "num_class": "0", "num_feature": "2"},
+              "objective": {"name": "binary:logistic"},
+              "gradient_booster": {"name": "gbtree", "model": {"trees": [
+                {"id": 0, "left_children": [1, -1, -1], "right_children": [2, -1, -1],
+                 "split_indices": [0, 0, 0], "split_conditions": [0.1, -0.4, 0.6], "default_left": [1, 0, 0]},
+                {"id": 1, "left_children": [1, -1, -1], "right_children": [2, -1, -1],
+                 "split_indices": [1, 0, 0], "split_conditions": [0.5, 0.2, -0.1], "default_left": [0, 0, 0]}
+              ]}}
+            }}
+            """;
+
+    private static TreeEnsembleModel model;
+
+    @BeforeAll
+    static void load() throws IOException {
+        model = TreeEnsembleModel.load("test", stream(MODEL), new ObjectMapper());
+    }
+
+    @Test
+    void sumsOneLeafPerTreeAndAppliesSigmoid() {
+        FeatureVector features = new FeatureVector()
+                .set(Feature.AMOUNT, 0.05)
+                .set(Feature.IS_CHIP_PRESENT, true);
+
+        assertEquals(2, model.getTreeCount());
+        assertEquals(sigmoid(-0.4f + -0.1f), model.score(features), 1e-7);
+    }
+
+    @Test
+    void missingFeaturesFollowDefaultDirection() {
+        assertEquals(sigmoid(-0.4f + -0.1f), model.score(new FeatureVector()), 1e-7);
+    }
+
+    @Test
+    void comparesSplitsInFloat32LikeXGBoost() {
+        // 0.1 as a double is below the float32 threshold 0.1f, but XGBoost casts the
+        // feature to float32 first, so 0.1f < 0.1f is false and the row goes right
+        FeatureVector atThreshold = new FeatureVector()
+                .set(Feature.AMOUNT, 0.1)
+                .set(Feature.IS_CHIP_PRESENT, false);
+        assertEquals(sigmoid(0.6f + 0.2f), model.score(atThreshold), 1e-7);
+
+        FeatureVector roundsToThreshold = new FeatureVector()
+                .set(Feature.AMOUNT, 0.1000000009)
+                .set(Feature.IS_CHIP_PRESENT, false);
+        assertEquals(sigmoid(0.6f + 0.2f), model.score(roundsToThreshold), 1e-7);
+
+        FeatureVector belowThreshold = new FeatureVector()
+                .set(Feature.AMOUNT, 0.0999999)
+                .set(Feature.IS_CHIP_PRESENT, false);
+        assertEquals(sigmoid(-0.4f + 0.2f), model.score(belowThreshold), 1e-7);
+    }
+
+    @Test
+    void rejectsMultiClassModels() {
+        String multiClass = MODEL.replace("\"num_class\": \"0\"", "\"num_class\": \"3\"");
+        assertThrows(IOException.class, () -> TreeEnsembleModel.load("test", stream(multiClass), new ObjectMapper()));
+    }
+
+    @Test
+    void readsVectorBaseScoreOfNewerXGBoost() throws IOException {
+        String vectorBaseScore = MODEL.replace("\"base_score\": \"5E-1\"", "\"base_score\": \"[2E-1]\"");
+        TreeEnsembleModel shifted = TreeEnsembleModel.load("test", stream(vectorBaseScore), new ObjectMapper());
+
+        double baseMargin = Math.log(0.2 / 0.8);
+        assertEquals(sigmoid(baseMargin + -0.4f + -0.1f), shifted.score(new FeatureVector()), 1e-7);
+        assertEquals(0.5, TreeEnsembleModel.parseBaseScore("5E-1"));
+        assertEquals(0.5, TreeEnsembleModel.parseBaseScore(" [ 5E-1 ] "));
+        assertThrows(IOException.class, () -> TreeEnsembleModel.parseBaseScore("[5E-1,4E-1]"));
+        assertThrows(IOException.class, () -> TreeEnsembleModel.parseBaseScore("[]"));
+    }
+
+    @Test
+    void rejectsCategoricalSplits() {
+        String categorical = MODEL.replace("\"default_left\": [0, 0, 0]",
+                "\"default_left\": [0, 0, 0], \"split_type\": [1, 0, 0]");
+        IOException error = assertThrows(IOException.class,
+                () -> TreeEnsembleModel.load("test", stream(categorical), new ObjectMapper()));
+        assertEquals("Node 0 in tree 1 is a categorical split, which is not supported", error.getMessage());
+
+        String categoryNodes = MODEL.replace("\"default_left\": [1, 0, 0]",
+                "\"default_left\": [1, 0, 0], \"categories_nodes\": [0], \"categories\": [2, 5]");
+        assertThrows(IOException.class,
+                () -> TreeEnsembleModel.load("test", stream(categoryNodes), new ObjectMapper()));
+
+        // Numerical split types, as written by XGBoost 1.6+ for every model
+        String numerical = MODEL.replace("\"default_left\": [0, 0, 0]",
+                "\"default_left\": [0, 0, 0], \"split_type\": [0, 0, 0], \"categories_nodes\": []");
+        assertDoesNotThrow(() -> TreeEnsembleModel.load("test", stream(numerical), new ObjectMapper()));
+    }
+
+    private static double sigmoid(double margin) {
+        return 1.0 / (1.0 + Math.exp(-margin));
+    }
+
+    private static ByteArrayInputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
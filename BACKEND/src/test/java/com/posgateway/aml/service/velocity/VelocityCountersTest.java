@@ -0,0 +1,126 @@
+package com.posgateway.aml.service.velocity;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Bucketed sliding-window counters: window membership at bucket granularity, recycling
+ * of stale buckets, late events and the bounded distinct-terminal sketch.
+ */
+class VelocityCountersTest {
+
+    private static final long MINUTE = 60L;
+    private static final long HOUR = 3_600L;
+    private static final long DAY = 86_400L;
+
+    // Midnight UTC, so every ring's buckets start on this second
+    private static final long T = 19_676L * DAY;
+
+    @Test
+    void countsEachEventInEveryWindowThatCoversIt() {
+        VelocityCounters counters = new VelocityCounters();
+        counters.record(T + 10, 100, null);
+        counters.record(T - 2 * HOUR, 200, null);
+        counters.record(T - 3 * DAY, 300, null);
+        counters.record(T - 10 * DAY, 400, null);
+
+        VelocityStats stats = counters.read(T + 20);
+
+        assertEquals(1, stats.getCount1h());
+        assertEquals(100, stats.getAmount1h());
+        assertEquals(2, stats.getCount24h());
+        assertEquals(300, stats.getAmount24h());
+        assertEquals(3, stats.getCount7d());
+        assertEquals(600, stats.getAmount7d());
+        assertEquals(4, stats.getCount30d());
+        assertEquals(1000, stats.getAmount30d());
+    }
+
+    @Test
+    void windowsAdvanceWithTheReadTime() {
+        VelocityCounters counters = new VelocityCounters();
+        counters.record(T, 100, null);
+
+        assertEquals(1, counters.read(T + 55 * MINUTE).getCount1h());
+        assertEquals(0, counters.read(T + HOUR).getCount1h());
+        assertEquals(1, counters.read(T + 23 * HOUR).getCount24h());
+        assertEquals(0, counters.read(T + DAY).getCount24h());
+        assertEquals(1, counters.read(T + 29 * DAY).getCount30d());
+        assertEquals(0, counters.read(T + 30 * DAY).getCount30d());
+    }
+
+    @Test
+    void staleBucketIsRecycledOnWrite() {
+        VelocityCounters counters = new VelocityCounters();
+        counters.record(T, 100, null);
+        // Same day-ring index, one full ring later
+        counters.record(T + 30 * DAY, 7, null);
+
+        VelocityStats stats = counters.read(T + 30 * DAY);
+        assertEquals(1, stats.getCount30d());
+        assertEquals(7, stats.getAmount30d());
+    }
+
+    @Test
+    void eventOlderThanTheOccupyingBucketIsDropped() {
+        VelocityCounters counters = new VelocityCounters();
+        counters.record(T, 100, null);
+        // Maps to the same day-ring index as T but is a full ring older
+        counters.record(T - 30 * DAY, 500, null);
+
+        VelocityStats stats = counters.read(T);
+        assertEquals(1, stats.getCount30d());
+        assertEquals(100, stats.getAmount30d());
+    }
+
+    @Test
+    void lateEventInsideTheWindowIsCounted() {
+        VelocityCounters counters = new VelocityCounters();
+        counters.record(T + 30 * MINUTE, 100, null);
+        counters.record(T + 10 * MINUTE, 50, null);
+
+        VelocityStats stats = counters.read(T + 40 * MINUTE);
+        assertEquals(2, stats.getCount1h());
+        assertEquals(150, stats.getAmount1h());
+    }
+
+    @Test
+    void lastSeenIsTheLatestEventTime() {
+        VelocityCounters counters = new VelocityCounters();
+        assertNull(counters.read(T).getLastSeen());
+
+        counters.record(T + 30, 1, null);
+        counters.record(T + 10, 1, null);
+
+        assertEquals(T + 30, counters.lastSeenEpochSecond());
+    }
+
+    @Test
+    void distinctTerminalsCountsEachTerminalOnceWithinThirtyDays() {
+        VelocityCounters counters = new VelocityCounters();
+        counters.record(T, 1, "TERM-A");
+        counters.record(T + HOUR, 1, "TERM-B");
+        counters.record(T + 2 * DAY, 1, "TERM-A");
+
+        assertEquals(2, counters.read(T + 2 * DAY).getDistinctTerminals30d());
+        // TERM-B was last seen on day 0, TERM-A on day 2
+        assertEquals(1, counters.read(T + 30 * DAY).getDistinctTerminals30d());
+        assertEquals(0, counters.read(T + 32 * DAY).getDistinctTerminals30d());
+    }
+
+    @Test
+    void terminalSketchIsBoundedAndKeepsTheMostRecentTerminals() {
+        VelocityCounters counters = new VelocityCounters();
+        for (int i = 0; i < 100; i++) {
+            counters.record(T, 1, "OLD-" + i);
+        }
+        assertEquals(64, counters.read(T).getDistinctTerminals30d());
+
+        counters.record(T + 5 * DAY, 1, "NEW");
+        // The new terminal replaced one of the day-0 entries
+        assertEquals(64, counters.read(T + 5 * DAY).getDistinctTerminals30d());
+        assertEquals(1, counters.read(T + 30 * DAY).getDistinctTerminals30d());
+    }
+}